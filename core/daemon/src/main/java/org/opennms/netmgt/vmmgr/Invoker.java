@@ -31,15 +31,23 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 import javax.management.Attribute;
 import javax.management.MBeanServer;
 import javax.management.ObjectInstance;
 import javax.management.ObjectName;
 
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
 import org.opennms.core.logging.Logging;
 import org.opennms.netmgt.config.service.Argument;
 import org.opennms.netmgt.config.service.Invoke;
@@ -82,11 +90,19 @@ import sun.misc.SignalHandler;
 public class Invoker {
 	
 	private static final Logger LOG = LoggerFactory.getLogger(Invoker.class);
+
+    /**
+     * Number of threads used to start and stop the services. With a single
+     * thread, the services are invoked sequentially in configuration order.
+     */
+    protected static final String THREADS_SYS_PROP = "org.opennms.netmgt.vmmgr.invokerThreads";
 	
     private MBeanServer m_server;
     private InvokeAtType m_atType;
     private boolean m_reverse = false;
     private boolean m_failFast = true;
+    private int m_threads = Integer.getInteger(THREADS_SYS_PROP, 1);
+    private StartupProfiler m_profiler;
     private List<InvokerService> m_services;
 
     private final Path m_statusPath;
@@ -210,6 +226,11 @@ public class Invoker {
     /**
      * <p>invokeMethods</p>
      *
+     * <p>With more than one thread configured, the start and stop invocations of
+     * the services run in parallel, each service waiting for the services it
+     * depends on to complete the same pass. Passes are still run one after the
+     * other.</p>
+     *
      * @return a {@link java.util.List} object.
      */
     public List<InvokerResult> invokeMethods() {
@@ -221,41 +242,28 @@ public class Invoker {
             // We can  use the original list
             invokerServicesOrdered = getServices();
         }
-        
+
+        if (getThreads() > 1 && !InvokeAtType.STATUS.equals(getAtType())) {
+            ServiceDependencyGraph graph = null;
+            try {
+                graph = ServiceDependencyGraph.create(getServices(), isReverse());
+            } catch (IllegalStateException e) {
+                LOG.error("{}. The services will be invoked sequentially.", e.getMessage());
+            }
+            if (graph != null) {
+                return invokeMethodsInParallel(graph, getThreads());
+            }
+        }
+
+        final ServiceDependencyGraph sequence = ServiceDependencyGraph.sequential(invokerServicesOrdered);
         List<InvokerResult> resultInfo = new ArrayList<>(invokerServicesOrdered.size());
         for (int pass = 0, end = getLastPass(); pass <= end; pass++) {
         	LOG.debug("starting pass {}", pass);
             
 
             for (InvokerService invokerService : invokerServicesOrdered) {
-                Service service = invokerService.getService();
-                String name = invokerService.getService().getName();
-                ObjectInstance mbean = invokerService.getMbean();
-
-                if (invokerService.isBadService()) {
-                    resultInfo.add(new InvokerResult(service, mbean, null, invokerService.getBadThrowable()));
-                    if (isFailFast()) {
-                        return resultInfo;
-                    }
-                }
-                
-                for (final Invoke invoke : invokerService.getService().getInvokes()) {
-                    if (invoke.getPass() != pass || !getAtType().equals(invoke.getAt())) {
-                        continue;
-                    }
-
-                    LOG.debug("pass {} on service {} will invoke method \"{}\"", pass, name, invoke.getMethod()); 
-                    
-
-                    try {
-                        Object result = invoke(invoke, mbean);
-                        resultInfo.add(new InvokerResult(service, mbean, result, null));
-                    } catch (Throwable t) {
-                        resultInfo.add(new InvokerResult(service, mbean, null, t));
-                        if (isFailFast()) {
-                            return resultInfo;
-                        }
-                    }
+                if (!invokeService(invokerService, pass, sequence.getPredecessors(invokerService), resultInfo)) {
+                    return resultInfo;
                 }
             }
             
@@ -266,6 +274,104 @@ public class Invoker {
         return resultInfo;
     }
 
+    private List<InvokerResult> invokeMethodsInParallel(final ServiceDependencyGraph graph, final int threads) {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new LogPreservingThreadFactory("Invoker", threads));
+        try {
+            final List<InvokerResult> resultInfo = new ArrayList<>(graph.getOrder().size());
+            for (int pass = 0, end = getLastPass(); pass <= end; pass++) {
+                LOG.debug("starting pass {} with {} threads", pass, threads);
+
+                final int currentPass = pass;
+                final AtomicBoolean aborted = new AtomicBoolean(false);
+                final Map<InvokerService, List<InvokerResult>> results = new IdentityHashMap<>();
+                final Map<InvokerService, CompletableFuture<Void>> futures = new IdentityHashMap<>();
+                for (final InvokerService invokerService : graph.getOrder()) {
+                    // Each list is only written by the task of its service
+                    final List<InvokerResult> serviceResults = new ArrayList<>();
+                    results.put(invokerService, serviceResults);
+
+                    final CompletableFuture<?>[] predecessors = graph.getPredecessors(invokerService).stream()
+                            .map(futures::get)
+                            .toArray(CompletableFuture[]::new);
+                    futures.put(invokerService, CompletableFuture.allOf(predecessors).thenRunAsync(() -> {
+                        // Do not start any other service once one failed
+                        if (aborted.get()) {
+                            return;
+                        }
+                        if (!invokeService(invokerService, currentPass, graph.getPredecessors(invokerService), serviceResults)) {
+                            aborted.set(true);
+                        }
+                    }, executor));
+                }
+                CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).join();
+
+                for (final InvokerService invokerService : graph.getOrder()) {
+                    resultInfo.addAll(results.get(invokerService));
+                }
+                if (aborted.get()) {
+                    return resultInfo;
+                }
+
+                LOG.debug("completed pass {}", pass);
+            }
+            return resultInfo;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Runs the invocations of a service for the given pass.
+     *
+     * @param predecessors the services which had to complete the pass first, used for profiling
+     * @param resultInfo the list the results are added to
+     * @return false if a failure occurred and no further service should be invoked
+     */
+    private boolean invokeService(final InvokerService invokerService, final int pass, final Collection<InvokerService> predecessors, final List<InvokerResult> resultInfo) {
+        Service service = invokerService.getService();
+        String name = invokerService.getService().getName();
+        ObjectInstance mbean = invokerService.getMbean();
+
+        if (invokerService.isBadService()) {
+            resultInfo.add(new InvokerResult(service, mbean, null, invokerService.getBadThrowable()));
+            if (isFailFast()) {
+                return false;
+            }
+        }
+
+        final List<String> methods = new ArrayList<>();
+        final long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            for (final Invoke invoke : invokerService.getService().getInvokes()) {
+                if (invoke.getPass() != pass || !getAtType().equals(invoke.getAt())) {
+                    continue;
+                }
+
+                LOG.debug("pass {} on service {} will invoke method \"{}\"", pass, name, invoke.getMethod()); 
+                methods.add(invoke.getMethod());
+
+                try {
+                    Object result = invoke(invoke, mbean);
+                    resultInfo.add(new InvokerResult(service, mbean, result, null));
+                } catch (Throwable t) {
+                    resultInfo.add(new InvokerResult(service, mbean, null, t));
+                    failed = true;
+                    if (isFailFast()) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        } finally {
+            if (m_profiler != null && !methods.isEmpty()) {
+                m_profiler.record(name, pass, methods,
+                        predecessors.stream().map(p -> p.getService().getName()).collect(Collectors.toSet()),
+                        start, System.nanoTime(), failed);
+            }
+        }
+    }
+
     /**
      * Get the last pass for a set of InvokerServices.
      * 
@@ -421,6 +527,42 @@ public class Invoker {
         m_reverse = reverse;
     }
 
+    /**
+     * <p>getThreads</p>
+     *
+     * @return the number of threads used to start and stop the services
+     */
+    public int getThreads() {
+        return m_threads;
+    }
+
+    /**
+     * <p>setThreads</p>
+     *
+     * @param threads the number of threads used to start and stop the services
+     */
+    public void setThreads(int threads) {
+        m_threads = threads;
+    }
+
+    /**
+     * <p>getProfiler</p>
+     *
+     * @return the profiler recording the invocations, or null
+     */
+    public StartupProfiler getProfiler() {
+        return m_profiler;
+    }
+
+    /**
+     * <p>setProfiler</p>
+     *
+     * @param profiler the profiler recording the invocations
+     */
+    public void setProfiler(StartupProfiler profiler) {
+        m_profiler = profiler;
+    }
+
     /**
      * <p>getServer</p>
      *
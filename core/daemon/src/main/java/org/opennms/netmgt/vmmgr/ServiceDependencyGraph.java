@@ -0,0 +1,204 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.vmmgr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.opennms.netmgt.config.service.Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The order in which the services must run each pass.
+ *
+ * Services declare the services they depend on with {@code depends-on}. A
+ * service without any declaration depends on all services configured before
+ * it, which preserves the sequential semantics of service-configuration.xml for
+ * services which were not reviewed for parallel startup.
+ *
+ * When stopping, the edges are reversed: a service is stopped after all the
+ * services depending on it.
+ */
+class ServiceDependencyGraph {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ServiceDependencyGraph.class);
+
+    private final List<InvokerService> m_order;
+
+    private final Map<InvokerService, List<InvokerService>> m_predecessors;
+
+    private ServiceDependencyGraph(final List<InvokerService> order, final Map<InvokerService, List<InvokerService>> predecessors) {
+        m_order = Collections.unmodifiableList(order);
+        m_predecessors = predecessors;
+    }
+
+    /**
+     * Builds the graph from the declared dependencies.
+     *
+     * @param services the services in configuration order
+     * @param reverse true if the services are stopped
+     * @throws IllegalStateException if the dependencies contain a cycle
+     */
+    static ServiceDependencyGraph create(final List<InvokerService> services, final boolean reverse) {
+        final Map<String, InvokerService> byName = new HashMap<>();
+        for (final InvokerService service : services) {
+            byName.put(service.getService().getName(), service);
+            final String shortName = getShortName(service.getService());
+            if (shortName != null) {
+                byName.putIfAbsent(shortName, service);
+            }
+        }
+
+        // Dependencies in the order of configuration
+        final Map<InvokerService, Set<InvokerService>> dependencies = new IdentityHashMap<>();
+        for (int i = 0; i < services.size(); i++) {
+            final InvokerService service = services.get(i);
+            final Set<InvokerService> deps = new LinkedHashSet<>();
+            final List<String> declared = service.getService().getDependsOn();
+            if (declared == null || declared.isEmpty()) {
+                deps.addAll(services.subList(0, i));
+            } else {
+                for (final String name : declared) {
+                    final InvokerService dependency = byName.get(name);
+                    if (dependency == null) {
+                        LOG.info("Service {} depends on {} which is not configured or disabled, ignoring the dependency.", service.getService().getName(), name);
+                    } else if (dependency != service) {
+                        deps.add(dependency);
+                    }
+                }
+            }
+            dependencies.put(service, deps);
+        }
+
+        final Map<InvokerService, List<InvokerService>> predecessors = new IdentityHashMap<>();
+        for (final InvokerService service : services) {
+            predecessors.put(service, new ArrayList<>());
+        }
+        for (final InvokerService service : services) {
+            for (final InvokerService dependency : dependencies.get(service)) {
+                if (reverse) {
+                    predecessors.get(dependency).add(service);
+                } else {
+                    predecessors.get(service).add(dependency);
+                }
+            }
+        }
+
+        return new ServiceDependencyGraph(sort(services, predecessors, reverse), predecessors);
+    }
+
+    /**
+     * Builds the graph running the services one after the other.
+     *
+     * @param ordered the services in the order in which they run
+     */
+    static ServiceDependencyGraph sequential(final List<InvokerService> ordered) {
+        final Map<InvokerService, List<InvokerService>> predecessors = new IdentityHashMap<>();
+        InvokerService previous = null;
+        for (final InvokerService service : ordered) {
+            predecessors.put(service, previous == null ? Collections.emptyList() : Collections.singletonList(previous));
+            previous = service;
+        }
+        return new ServiceDependencyGraph(new ArrayList<>(ordered), predecessors);
+    }
+
+    /**
+     * @return the services in an order in which every service follows its predecessors
+     */
+    List<InvokerService> getOrder() {
+        return m_order;
+    }
+
+    /**
+     * @return the services which must complete a pass before the given service runs it
+     */
+    List<InvokerService> getPredecessors(final InvokerService service) {
+        final List<InvokerService> predecessors = m_predecessors.get(service);
+        return predecessors != null ? predecessors : Collections.emptyList();
+    }
+
+    /**
+     * Sorts the services topologically, keeping the configured order among
+     * services which are ready at the same time.
+     */
+    private static List<InvokerService> sort(final List<InvokerService> services, final Map<InvokerService, List<InvokerService>> predecessors, final boolean reverse) {
+        final Map<InvokerService, Integer> index = new IdentityHashMap<>();
+        for (int i = 0; i < services.size(); i++) {
+            index.put(services.get(i), reverse ? services.size() - 1 - i : i);
+        }
+
+        final Map<InvokerService, Integer> remaining = new IdentityHashMap<>();
+        final Map<InvokerService, List<InvokerService>> successors = new IdentityHashMap<>();
+        final PriorityQueue<InvokerService> ready = new PriorityQueue<>((a, b) -> Integer.compare(index.get(a), index.get(b)));
+        for (final InvokerService service : services) {
+            final List<InvokerService> preds = predecessors.get(service);
+            remaining.put(service, preds.size());
+            for (final InvokerService pred : preds) {
+                successors.computeIfAbsent(pred, k -> new ArrayList<>()).add(service);
+            }
+            if (preds.isEmpty()) {
+                ready.add(service);
+            }
+        }
+
+        final List<InvokerService> order = new ArrayList<>(services.size());
+        while (!ready.isEmpty()) {
+            final InvokerService service = ready.poll();
+            order.add(service);
+            for (final InvokerService successor : successors.getOrDefault(service, Collections.emptyList())) {
+                if (remaining.merge(successor, -1, Integer::sum) == 0) {
+                    ready.add(successor);
+                }
+            }
+        }
+
+        if (order.size() != services.size()) {
+            final List<String> cycle = new ArrayList<>();
+            for (final InvokerService service : services) {
+                if (remaining.get(service) > 0) {
+                    cycle.add(service.getService().getName());
+                }
+            }
+            throw new IllegalStateException("The dependencies of the following services contain a cycle: " + cycle);
+        }
+        return order;
+    }
+
+    private static String getShortName(final Service service) {
+        try {
+            return new ObjectName(service.getName()).getKeyProperty("Name");
+        } catch (final MalformedObjectNameException e) {
+            return null;
+        }
+    }
+}
@@ -26,6 +26,7 @@ import java.net.URL;
 import java.util.List;
 
 import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.opennms.core.logging.Logging;
 import org.opennms.netmgt.config.ServiceConfigFactory;
@@ -147,8 +148,18 @@ public class Starter {
         invoker.setServices(services);
         invoker.instantiateClasses();
 
+        final StartupProfiler profiler = new StartupProfiler();
+        invoker.setProfiler(profiler);
+
         List<InvokerResult> resultInfo = invoker.invokeMethods();
 
+        LOG.info("{}", profiler.getReport());
+        try {
+            server.registerMBean(profiler, new ObjectName(StartupProfiler.OBJECT_NAME));
+        } catch (final Exception e) {
+            LOG.warn("Failed to register the startup profiler: {}", e.getMessage(), e);
+        }
+
         for (InvokerResult result : resultInfo) {
             if (result != null && result.getThrowable() != null) {
                 Service service = result.getService();
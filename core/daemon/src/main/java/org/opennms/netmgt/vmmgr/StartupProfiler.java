@@ -0,0 +1,186 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.vmmgr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long each service took to run the invocations of each pass and
+ * derives the critical path, the chain of invocations which determined the
+ * total time.
+ *
+ * An invocation is on the critical path of the next one if it is one of its
+ * predecessors in the same pass, or part of the previous pass, and it was the
+ * last of them to complete.
+ */
+public class StartupProfiler implements StartupProfilerMBean {
+
+    public static final String OBJECT_NAME = "OpenNMS:Name=StartupProfiler";
+
+    /**
+     * The invocations of one service during one pass.
+     */
+    public static class Timing {
+        private final String m_service;
+        private final int m_pass;
+        private final List<String> m_methods;
+        private final Set<String> m_predecessors;
+        private final long m_startNanos;
+        private final long m_endNanos;
+        private final boolean m_failed;
+
+        Timing(final String service, final int pass, final List<String> methods, final Set<String> predecessors, final long startNanos, final long endNanos, final boolean failed) {
+            m_service = service;
+            m_pass = pass;
+            m_methods = Collections.unmodifiableList(new ArrayList<>(methods));
+            m_predecessors = predecessors;
+            m_startNanos = startNanos;
+            m_endNanos = endNanos;
+            m_failed = failed;
+        }
+
+        public String getService() {
+            return m_service;
+        }
+
+        public int getPass() {
+            return m_pass;
+        }
+
+        public List<String> getMethods() {
+            return m_methods;
+        }
+
+        public long getDurationMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(m_endNanos - m_startNanos);
+        }
+
+        public boolean isFailed() {
+            return m_failed;
+        }
+    }
+
+    private final List<Timing> m_timings = new ArrayList<>();
+
+    private long m_startNanos = -1;
+
+    /**
+     * Records the invocations of a service during a pass.
+     *
+     * @param service the name of the service
+     * @param pass the pass
+     * @param methods the invoked methods
+     * @param predecessors the names of the services which had to complete the pass first
+     * @param startNanos the {@link System#nanoTime()} at which the first method was invoked
+     * @param endNanos the {@link System#nanoTime()} at which the last method returned
+     * @param failed true if one of the methods failed
+     */
+    public synchronized void record(final String service, final int pass, final List<String> methods, final Set<String> predecessors, final long startNanos, final long endNanos, final boolean failed) {
+        if (m_startNanos < 0 || startNanos < m_startNanos) {
+            m_startNanos = startNanos;
+        }
+        m_timings.add(new Timing(service, pass, methods, predecessors, startNanos, endNanos, failed));
+    }
+
+    /**
+     * @return the recorded timings in the order in which they were started
+     */
+    public synchronized List<Timing> getTimings() {
+        final List<Timing> timings = new ArrayList<>(m_timings);
+        timings.sort(Comparator.comparingLong((Timing t) -> t.m_startNanos));
+        return timings;
+    }
+
+    /**
+     * @return the chain of invocations which determined the total time, first invocation first
+     */
+    public synchronized List<Timing> getCriticalPathTimings() {
+        final List<Timing> path = new ArrayList<>();
+        Timing current = m_timings.stream().max(Comparator.comparingLong((Timing t) -> t.m_endNanos)).orElse(null);
+        while (current != null) {
+            path.add(current);
+            Timing previous = null;
+            for (final Timing candidate : m_timings) {
+                if (candidate == current || candidate.m_endNanos > current.m_startNanos) {
+                    continue;
+                }
+                final boolean gating = (candidate.m_pass == current.m_pass && current.m_predecessors.contains(candidate.m_service))
+                        || candidate.m_pass == current.m_pass - 1;
+                if (gating && (previous == null || candidate.m_endNanos > previous.m_endNanos)) {
+                    previous = candidate;
+                }
+            }
+            current = previous;
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    @Override
+    public synchronized long getTotalTime() {
+        if (m_timings.isEmpty()) {
+            return 0;
+        }
+        final long end = m_timings.stream().mapToLong(t -> t.m_endNanos).max().getAsLong();
+        return TimeUnit.NANOSECONDS.toMillis(end - m_startNanos);
+    }
+
+    @Override
+    public String[] getServiceTimings() {
+        return getTimings().stream().map(this::format).toArray(String[]::new);
+    }
+
+    @Override
+    public String[] getCriticalPath() {
+        return getCriticalPathTimings().stream().map(this::format).toArray(String[]::new);
+    }
+
+    @Override
+    public String getReport() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("Startup completed in ").append(getTotalTime()).append("ms\n");
+        sb.append("Service timings:\n");
+        for (final String line : getServiceTimings()) {
+            sb.append("  ").append(line).append('\n');
+        }
+        sb.append("Critical path:\n");
+        for (final String line : getCriticalPath()) {
+            sb.append("  ").append(line).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private synchronized String format(final Timing timing) {
+        return String.format("%s pass %d %s: +%dms, took %dms%s",
+                timing.m_service,
+                timing.m_pass,
+                timing.m_methods,
+                TimeUnit.NANOSECONDS.toMillis(timing.m_startNanos - m_startNanos),
+                timing.getDurationMillis(),
+                timing.m_failed ? " (failed)" : "");
+    }
+}
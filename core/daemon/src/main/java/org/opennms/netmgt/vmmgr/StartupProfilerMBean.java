@@ -0,0 +1,46 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.vmmgr;
+
+public interface StartupProfilerMBean {
+
+    /**
+     * @return the time, in milliseconds, between the first and the last invocation
+     */
+    long getTotalTime();
+
+    /**
+     * @return one line per service and pass with the start offset and the duration
+     *   of the invocations, in the order in which they were started
+     */
+    String[] getServiceTimings();
+
+    /**
+     * @return the chain of invocations which determined the total time
+     */
+    String[] getCriticalPath();
+
+    /**
+     * @return a human readable report of the timings and the critical path
+     */
+    String getReport();
+}
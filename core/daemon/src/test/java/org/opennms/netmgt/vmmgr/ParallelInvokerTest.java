@@ -0,0 +1,252 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.vmmgr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.config.service.Invoke;
+import org.opennms.netmgt.config.service.InvokeAtType;
+import org.opennms.netmgt.config.service.Service;
+
+public class ParallelInvokerTest {
+
+    public interface ProbeMBean {
+        void init();
+        void start();
+        void stop();
+    }
+
+    /**
+     * Records the order of the invocations and lets tests block or fail them.
+     */
+    public static class Probe implements ProbeMBean {
+        private final String m_name;
+        private final List<String> m_log;
+        private final Map<String, Runnable> m_actions;
+
+        public Probe(final String name, final List<String> log, final Map<String, Runnable> actions) {
+            m_name = name;
+            m_log = log;
+            m_actions = actions;
+        }
+
+        @Override
+        public void init() {
+            invoked("init");
+        }
+
+        @Override
+        public void start() {
+            invoked("start");
+        }
+
+        @Override
+        public void stop() {
+            invoked("stop");
+        }
+
+        private void invoked(final String method) {
+            final Runnable action = m_actions.get(m_name + "." + method);
+            if (action != null) {
+                action.run();
+            }
+            m_log.add(m_name + "." + method);
+        }
+    }
+
+    private MBeanServer m_server;
+    private final List<String> m_log = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, Runnable> m_actions = new ConcurrentHashMap<>();
+
+    @Before
+    public void setUp() {
+        if (System.getProperty("opennms.home") == null) {
+            System.setProperty("opennms.home", System.getProperty("java.io.tmpdir"));
+        }
+        m_server = MBeanServerFactory.newMBeanServer();
+    }
+
+    @Test
+    public void undeclaredServicesDependOnAllPreviousServices() {
+        final List<InvokerService> services = createServices(
+                service("A"), service("B", "A"), service("C", "A"), service("D"));
+        final ServiceDependencyGraph graph = ServiceDependencyGraph.create(services, false);
+
+        assertEquals(Arrays.asList("A", "B", "C", "D"), names(graph.getOrder()));
+        assertEquals(Collections.emptyList(), names(graph.getPredecessors(services.get(0))));
+        assertEquals(Arrays.asList("A"), names(graph.getPredecessors(services.get(1))));
+        assertEquals(Arrays.asList("A"), names(graph.getPredecessors(services.get(2))));
+        assertEquals(Arrays.asList("A", "B", "C"), names(graph.getPredecessors(services.get(3))));
+    }
+
+    @Test
+    public void dependenciesAreReversedWhenStopping() {
+        final List<InvokerService> services = createServices(
+                service("A"), service("B", "A"), service("C", "OpenNMS:Name=A", "Missing"), service("D"));
+        final ServiceDependencyGraph graph = ServiceDependencyGraph.create(services, true);
+
+        assertEquals(Arrays.asList("D", "C", "B", "A"), names(graph.getOrder()));
+        assertEquals(Arrays.asList("B", "C", "D"), names(graph.getPredecessors(services.get(0))));
+        assertEquals(Arrays.asList("D"), names(graph.getPredecessors(services.get(1))));
+        assertEquals(Collections.emptyList(), names(graph.getPredecessors(services.get(3))));
+    }
+
+    @Test
+    public void dependenciesMayReferToLaterServicesButNotFormCycles() {
+        final List<InvokerService> services = createServices(service("A", "B"), service("B", "C"), service("C", "D"), service("D", "E"), service("E", "D"));
+        try {
+            ServiceDependencyGraph.create(services, false);
+            fail("The cycle between D and E should have been detected");
+        } catch (final IllegalStateException e) {
+            assertTrue(e.getMessage().contains("OpenNMS:Name=D"));
+        }
+
+        final List<InvokerService> acyclic = createServices(service("Manager"), service("A", "C"), service("B", "Manager"), service("C", "Manager"));
+        assertEquals(Arrays.asList("Manager", "B", "C", "A"), names(ServiceDependencyGraph.create(acyclic, false).getOrder()));
+    }
+
+    @Test(timeout=30000)
+    public void independentServicesStartConcurrently() throws Exception {
+        // B can only complete its init once C started its own
+        final CountDownLatch cStarted = new CountDownLatch(1);
+        m_actions.put("C.init", cStarted::countDown);
+        m_actions.put("B.init", () -> await(cStarted));
+
+        final Invoker invoker = createInvoker(InvokeAtType.START, 4, service("A"), service("B", "A"), service("C", "A"), service("D"));
+        final StartupProfiler profiler = new StartupProfiler();
+        invoker.setProfiler(profiler);
+
+        final List<InvokerResult> results = invoker.invokeMethods();
+
+        assertEquals(8, results.size());
+        results.forEach(r -> assertNull(r.getThrowable()));
+        assertEquals("A.init", m_log.get(0));
+        assertEquals("D.init", m_log.get(3));
+        assertEquals("A.start", m_log.get(4));
+        assertEquals("D.start", m_log.get(7));
+
+        assertEquals(8, profiler.getTimings().size());
+        final List<StartupProfiler.Timing> path = profiler.getCriticalPathTimings();
+        assertEquals("OpenNMS:Name=A", path.get(0).getService());
+        assertEquals(0, path.get(0).getPass());
+        assertEquals("OpenNMS:Name=D", path.get(path.size() - 1).getService());
+        assertEquals(1, path.get(path.size() - 1).getPass());
+        assertNotNull(profiler.getReport());
+    }
+
+    @Test(timeout=30000)
+    public void failuresStopTheStartup() throws Exception {
+        m_actions.put("B.init", () -> { throw new IllegalStateException("B failed"); });
+
+        final Invoker invoker = createInvoker(InvokeAtType.START, 4, service("A"), service("B", "A"), service("C", "A"), service("D"));
+        final List<InvokerResult> results = invoker.invokeMethods();
+
+        assertTrue(results.stream().anyMatch(r -> r.getThrowable() != null && "OpenNMS:Name=B".equals(r.getService().getName())));
+        assertFalse(m_log.contains("D.init"));
+        assertFalse(m_log.stream().anyMatch(l -> l.endsWith(".start")));
+    }
+
+    @Test(timeout=30000)
+    public void servicesStopAfterTheirDependents() throws Exception {
+        final Invoker invoker = createInvoker(InvokeAtType.STOP, 4, service("A"), service("B", "A"), service("C", "A"), service("D"));
+        invoker.setReverse(true);
+        invoker.setFailFast(false);
+
+        final List<InvokerResult> results = invoker.invokeMethods();
+
+        assertEquals(4, results.size());
+        assertEquals("D.stop", m_log.get(0));
+        assertEquals("A.stop", m_log.get(3));
+    }
+
+    @Test
+    public void sequentialInvocationIsUnchanged() throws Exception {
+        final Invoker invoker = createInvoker(InvokeAtType.START, 1, service("A"), service("B", "A"), service("C", "A"), service("D"));
+        invoker.invokeMethods();
+
+        assertEquals(Arrays.asList("A.init", "B.init", "C.init", "D.init", "A.start", "B.start", "C.start", "D.start"), m_log);
+    }
+
+    private Invoker createInvoker(final InvokeAtType at, final int threads, final Service... services) throws Exception {
+        final List<InvokerService> invokerServices = createServices(services);
+        for (final InvokerService invokerService : invokerServices) {
+            final ObjectName name = new ObjectName(invokerService.getService().getName());
+            invokerService.setMbean(m_server.registerMBean(new Probe(name.getKeyProperty("Name"), m_log, m_actions), name));
+        }
+
+        final Invoker invoker = new Invoker();
+        invoker.setServer(m_server);
+        invoker.setAtType(at);
+        invoker.setThreads(threads);
+        invoker.setServices(invokerServices);
+        return invoker;
+    }
+
+    private static List<InvokerService> createServices(final Service... services) {
+        return InvokerService.createServiceList(services);
+    }
+
+    private static Service service(final String name, final String... dependsOn) {
+        final Service service = new Service("OpenNMS:Name=" + name, Probe.class.getName(), null, Arrays.asList(
+                new Invoke(InvokeAtType.START, 0, "init", null),
+                new Invoke(InvokeAtType.START, 1, "start", null),
+                new Invoke(InvokeAtType.STOP, 0, "stop", null)));
+        service.setDependsOn(Arrays.asList(dependsOn));
+        return service;
+    }
+
+    private static List<String> names(final List<InvokerService> services) {
+        return services.stream().map(s -> s.getService().getName().replace("OpenNMS:Name=", "")).collect(Collectors.toList());
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("timed out");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
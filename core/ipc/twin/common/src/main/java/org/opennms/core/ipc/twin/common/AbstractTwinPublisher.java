@@ -25,7 +25,6 @@ import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.fge.jsonpatch.diff.JsonDiff;
 import com.google.common.base.Strings;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
@@ -43,7 +42,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -65,6 +63,7 @@ public abstract class AbstractTwinPublisher implements TwinPublisher {
     private static final String TWIN_EMPTY_RESPONSE_SENT = "twinEmptyResponseSent";
     private final Map<SessionKey, TwinTracker> twinTrackerMap = new HashMap<>();
     protected final ObjectMapper objectMapper = new ObjectMapper();
+    private TwinCodec codec = TwinCodecs.fromSystemProperties();
 
     private final LocalTwinSubscriber localTwinSubscriber;
     private final Tracer tracer;
@@ -184,13 +183,19 @@ public abstract class AbstractTwinPublisher implements TwinPublisher {
                 twinTracker = new TwinTracker(updatedObj);
             } else {
                 // Generate patch and update response with patch.
-                byte[] patchValue = getPatchValue(twinTracker.getObj(), updatedObj, sessionKey);
-                if (patchValue != null) {
-                    twinUpdate.setObject(patchValue);
-                    twinUpdate.setPatch(true);
+                JsonNode updatedTree = null;
+                try {
+                    updatedTree = objectMapper.readTree(updatedObj);
+                    byte[] patchValue = getPatchValue(twinTracker, updatedTree, sessionKey);
+                    if (patchValue != null) {
+                        twinUpdate.setObject(patchValue);
+                        twinUpdate.setPatch(true);
+                    }
+                } catch (IOException e) {
+                    LOG.error("Unable to parse updated object for SessionKey {}", sessionKey, e);
                 }
-                // Update Twin tracker with updated obj.
-                twinTracker.update(updatedObj);
+                // Update Twin tracker with updated obj, keep the parsed obj for the next patch.
+                twinTracker.update(updatedObj, updatedTree);
             }
             twinTrackerMap.put(sessionKey, twinTracker);
             twinUpdate.setVersion(twinTracker.getVersion());
@@ -200,12 +205,10 @@ public abstract class AbstractTwinPublisher implements TwinPublisher {
         return null;
     }
 
-    private byte[] getPatchValue(byte[] originalObj, byte[] updatedObj, SessionKey sessionKey) {
+    private byte[] getPatchValue(TwinTracker twinTracker, JsonNode targetNode, SessionKey sessionKey) {
         try {
-            JsonNode sourceNode = objectMapper.readTree(originalObj);
-            JsonNode targetNode = objectMapper.readTree(updatedObj);
-            JsonNode diffNode = JsonDiff.asJson(sourceNode, targetNode);
-            return diffNode.toString().getBytes(StandardCharsets.UTF_8);
+            JsonNode sourceNode = twinTracker.getTree() != null ? twinTracker.getTree() : objectMapper.readTree(twinTracker.getObj());
+            return codec.diff(sourceNode, targetNode);
         } catch (Exception e) {
             LOG.error("Unable to generate patch for SessionKey {}", sessionKey, e);
         }
@@ -224,6 +227,17 @@ public abstract class AbstractTwinPublisher implements TwinPublisher {
         return tracer;
     }
 
+    public TwinCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * @param codec the codec used to create patches, defaults to the codec named by {@value TwinCodecs#CODEC_SYS_PROP}
+     */
+    public void setCodec(TwinCodec codec) {
+        this.codec = Objects.requireNonNull(codec);
+    }
+
     private class SessionImpl<T> implements Session<T> {
 
         private final SessionKey sessionKey;
@@ -25,8 +25,6 @@ import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.fge.jsonpatch.JsonPatch;
-import com.github.fge.jsonpatch.JsonPatchException;
 import com.google.common.base.Strings;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -69,6 +67,7 @@ public abstract class AbstractTwinSubscriber implements TwinSubscriber {
     private static final String TWIN_REQUEST_SENT = "requestSent";
     private static final String TWIN_UPDATE_RECEIVED = "updateReceived";
     private static final String TWIN_UPDATE_DROPPED = "updateDropped";
+    private static final String TWIN_UPDATE_GAP = "updateGap";
     private final Identity identity;
 
     private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
@@ -351,23 +350,18 @@ public abstract class AbstractTwinSubscriber implements TwinSubscriber {
                                           AbstractTwinSubscriber.this.objectMapper.readTree(update.getObject())));
                 } else {
                     if (update.getVersion() == this.value.version + 1) {
-                        // Version advanced - apply path
-                        try {
-                            final var patchObj = AbstractTwinSubscriber.this.objectMapper.readTree(update.getObject());
-                            final var patch = JsonPatch.fromJson(patchObj);
+                        // Version advanced - apply patch with the codec that created it
+                        final var codec = TwinCodecs.forPatch(update.getObject());
+                        final var value = codec.patch(this.value.value, update.getObject());
 
-                            final var value = patch.apply(this.value.value);
-
-                            this.accept(new Value(update.getSessionId(), update.getVersion(), value));
-
-                        } catch (JsonPatchException e) {
-                            throw new IOException("Unable to apply patch", e);
-                        }
+                        this.accept(new Value(update.getSessionId(), update.getVersion(), value));
 
                     } else {
-                        // Version jumped
+                        // Version jumped - at least one patch is missing, so request the full object
+                        LOG.debug("Missed updates for {}: expected version {}, got {}", this.key, this.value.version + 1, update.getVersion());
 
                         // JMX Metrics
+                        updateCounter(MetricRegistry.name(this.key, TWIN_UPDATE_GAP));
                         updateCounter(MetricRegistry.name(this.key, TWIN_UPDATE_DROPPED));
                         this.request();
                     }
@@ -0,0 +1,692 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.core.ipc.twin.common;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Sends updates as compact binary deltas.
+ *
+ * Every subtree of both versions is reduced to a 64 bit structural hash. Subtrees with equal hashes are skipped and
+ * only the changed object members, array elements or array ranges are encoded. Values are written in a tagged binary
+ * format with varint encoded numbers and lengths, and object keys are written only once per patch.
+ *
+ * The patch carries the hash of the source and of the target. A subscriber refuses patches which were not created for
+ * its current object or which do not reproduce the published object. In both cases the subscriber requests a full
+ * snapshot instead.
+ *
+ * Unchanged subtrees of the source are shared with the patched object, so applying a patch only copies the containers
+ * along the changed paths.
+ */
+public class BinaryDeltaTwinCodec implements TwinCodec {
+
+    public static final String NAME = "binary";
+
+    /**
+     * A JSON document never starts with a zero byte, so the magic can not be confused with a JSON patch.
+     */
+    private static final byte[] MAGIC = {0x00, 'T', 'W', 'D'};
+
+    private static final int FORMAT_VERSION = 1;
+
+    // Value tags
+    private static final int V_NULL = 0;
+    private static final int V_FALSE = 1;
+    private static final int V_TRUE = 2;
+    private static final int V_INT = 3;
+    private static final int V_FLOAT = 4;
+    private static final int V_DOUBLE = 5;
+    private static final int V_BIG_INTEGER = 6;
+    private static final int V_DECIMAL = 7;
+    private static final int V_TEXT = 8;
+    private static final int V_BINARY = 9;
+    private static final int V_ARRAY = 10;
+    private static final int V_OBJECT = 11;
+
+    // Delta tags
+    private static final int D_KEEP = 0;
+    private static final int D_REPLACE = 1;
+    private static final int D_OBJECT = 2;
+    private static final int D_ARRAY = 3;
+    private static final int D_SPLICE = 4;
+
+    private static final JsonNodeFactory FACTORY = JsonNodeFactory.instance;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isPatch(final byte[] patch) {
+        return patch.length >= MAGIC.length && Arrays.equals(MAGIC, 0, MAGIC.length, patch, 0, MAGIC.length);
+    }
+
+    @Override
+    public byte[] diff(final JsonNode source, final JsonNode target) throws IOException {
+        final Hasher hasher = new Hasher();
+        final Output out = new Output();
+        out.writeBytes(MAGIC);
+        out.writeVarint(FORMAT_VERSION);
+        out.writeLong(hasher.hash(source));
+        out.writeLong(hasher.hash(target));
+        writeDelta(out, hasher, source, target);
+        return out.toByteArray();
+    }
+
+    @Override
+    public JsonNode patch(final JsonNode source, final byte[] patch) throws IOException {
+        if (!isPatch(patch)) {
+            throw new IOException("Not a binary twin patch");
+        }
+        final Input in = new Input(patch, MAGIC.length);
+        final long version = in.readVarint();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported binary twin patch version: " + version);
+        }
+        final long sourceHash = in.readLong();
+        final long targetHash = in.readLong();
+
+        final Hasher hasher = new Hasher();
+        if (hasher.hash(source) != sourceHash) {
+            throw new IOException("Patch was not created for the current object");
+        }
+        final JsonNode target = readDelta(in, source);
+        if (in.remaining() != 0) {
+            throw new IOException("Trailing bytes in binary twin patch");
+        }
+        // Unchanged subtrees are shared with the source and their hashes are already known
+        if (hasher.hash(target) != targetHash) {
+            throw new IOException("Patched object does not match the published object");
+        }
+        return target;
+    }
+
+    /**
+     * Encodes a value in the binary format used for changed subtrees.
+     *
+     * @param value the value
+     * @return the encoded value
+     * @throws IOException if the value contains nodes which can not be encoded
+     */
+    public static byte[] encodeValue(final JsonNode value) throws IOException {
+        final Output out = new Output();
+        writeValue(out, value);
+        return out.toByteArray();
+    }
+
+    /**
+     * @param bytes a value encoded by {@link #encodeValue(JsonNode)}
+     * @return the decoded value
+     * @throws IOException if the bytes are not a valid value
+     */
+    public static JsonNode decodeValue(final byte[] bytes) throws IOException {
+        final Input in = new Input(bytes, 0);
+        final JsonNode value = readValue(in);
+        if (in.remaining() != 0) {
+            throw new IOException("Trailing bytes in binary twin value");
+        }
+        return value;
+    }
+
+    private static void writeDelta(final Output out, final Hasher hasher, final JsonNode source, final JsonNode target) throws IOException {
+        if (hasher.hash(source) == hasher.hash(target)) {
+            out.writeVarint(D_KEEP);
+
+        } else if (source.isObject() && target.isObject()) {
+            final List<String> changed = new ArrayList<>();
+            for (final Iterator<Map.Entry<String, JsonNode>> it = target.fields(); it.hasNext(); ) {
+                final Map.Entry<String, JsonNode> field = it.next();
+                final JsonNode previous = source.get(field.getKey());
+                if (previous == null || hasher.hash(previous) != hasher.hash(field.getValue())) {
+                    changed.add(field.getKey());
+                }
+            }
+            final List<String> removed = new ArrayList<>();
+            for (final Iterator<String> it = source.fieldNames(); it.hasNext(); ) {
+                final String name = it.next();
+                if (!target.has(name)) {
+                    removed.add(name);
+                }
+            }
+
+            out.writeVarint(D_OBJECT);
+            out.writeVarint(changed.size());
+            for (final String name : changed) {
+                out.writeKey(name);
+                final JsonNode previous = source.get(name);
+                if (previous == null) {
+                    out.writeVarint(D_REPLACE);
+                    writeValue(out, target.get(name));
+                } else {
+                    writeDelta(out, hasher, previous, target.get(name));
+                }
+            }
+            out.writeVarint(removed.size());
+            for (final String name : removed) {
+                out.writeKey(name);
+            }
+
+        } else if (source.isArray() && target.isArray()) {
+            final int sourceSize = source.size();
+            final int targetSize = target.size();
+            if (sourceSize == targetSize) {
+                // Elements changed in place
+                final List<Integer> changed = new ArrayList<>();
+                for (int i = 0; i < sourceSize; i++) {
+                    if (hasher.hash(source.get(i)) != hasher.hash(target.get(i))) {
+                        changed.add(i);
+                    }
+                }
+                out.writeVarint(D_ARRAY);
+                out.writeVarint(changed.size());
+                int last = 0;
+                for (final int index : changed) {
+                    out.writeVarint(index - last);
+                    writeDelta(out, hasher, source.get(index), target.get(index));
+                    last = index;
+                }
+            } else {
+                // Elements inserted or removed - replace the range between the common prefix and suffix
+                final int limit = Math.min(sourceSize, targetSize);
+                int prefix = 0;
+                while (prefix < limit && hasher.hash(source.get(prefix)) == hasher.hash(target.get(prefix))) {
+                    prefix++;
+                }
+                int suffix = 0;
+                while (suffix < limit - prefix
+                        && hasher.hash(source.get(sourceSize - 1 - suffix)) == hasher.hash(target.get(targetSize - 1 - suffix))) {
+                    suffix++;
+                }
+                out.writeVarint(D_SPLICE);
+                out.writeVarint(prefix);
+                out.writeVarint(sourceSize - prefix - suffix);
+                out.writeVarint(targetSize - prefix - suffix);
+                for (int i = prefix; i < targetSize - suffix; i++) {
+                    writeValue(out, target.get(i));
+                }
+            }
+
+        } else {
+            out.writeVarint(D_REPLACE);
+            writeValue(out, target);
+        }
+    }
+
+    private static JsonNode readDelta(final Input in, final JsonNode source) throws IOException {
+        final int tag = in.readTag();
+        switch (tag) {
+            case D_KEEP:
+                return requireSource(source);
+
+            case D_REPLACE:
+                return readValue(in);
+
+            case D_OBJECT: {
+                if (!requireSource(source).isObject()) {
+                    throw new IOException("Object delta for a " + source.getNodeType());
+                }
+                final ObjectNode target = FACTORY.objectNode();
+                target.setAll((ObjectNode) source);
+                final int changed = in.readLength();
+                for (int i = 0; i < changed; i++) {
+                    final String name = in.readKey();
+                    target.set(name, readDelta(in, source.get(name)));
+                }
+                final int removed = in.readLength();
+                for (int i = 0; i < removed; i++) {
+                    target.remove(in.readKey());
+                }
+                return target;
+            }
+
+            case D_ARRAY: {
+                if (!requireSource(source).isArray()) {
+                    throw new IOException("Array delta for a " + source.getNodeType());
+                }
+                final ArrayNode target = FACTORY.arrayNode(source.size());
+                target.addAll((ArrayNode) source);
+                final int changed = in.readLength();
+                int index = 0;
+                for (int i = 0; i < changed; i++) {
+                    index += in.readLength();
+                    if (index >= source.size()) {
+                        throw new IOException("Array index out of bounds: " + index);
+                    }
+                    target.set(index, readDelta(in, source.get(index)));
+                }
+                return target;
+            }
+
+            case D_SPLICE: {
+                if (!requireSource(source).isArray()) {
+                    throw new IOException("Array delta for a " + source.getNodeType());
+                }
+                final int start = in.readLength();
+                final int deleted = in.readLength();
+                final int inserted = in.readLength();
+                if ((long) start + deleted > source.size()) {
+                    throw new IOException("Array range out of bounds: " + start + "+" + deleted);
+                }
+                final ArrayNode target = FACTORY.arrayNode();
+                for (int i = 0; i < start; i++) {
+                    target.add(source.get(i));
+                }
+                for (int i = 0; i < inserted; i++) {
+                    target.add(readValue(in));
+                }
+                for (int i = start + deleted; i < source.size(); i++) {
+                    target.add(source.get(i));
+                }
+                return target;
+            }
+
+            default:
+                throw new IOException("Unknown delta tag: " + tag);
+        }
+    }
+
+    private static JsonNode requireSource(final JsonNode source) throws IOException {
+        if (source == null) {
+            throw new IOException("Delta refers to a missing value");
+        }
+        return source;
+    }
+
+    private static void writeValue(final Output out, final JsonNode value) throws IOException {
+        switch (value.getNodeType()) {
+            case NULL:
+                out.writeVarint(V_NULL);
+                break;
+            case BOOLEAN:
+                out.writeVarint(value.booleanValue() ? V_TRUE : V_FALSE);
+                break;
+            case NUMBER:
+                switch (value.numberType()) {
+                    case INT:
+                    case LONG:
+                        out.writeVarint(V_INT);
+                        out.writeSignedVarint(value.longValue());
+                        break;
+                    case FLOAT:
+                        out.writeVarint(V_FLOAT);
+                        out.writeLong(Float.floatToRawIntBits(value.floatValue()));
+                        break;
+                    case DOUBLE:
+                        out.writeVarint(V_DOUBLE);
+                        out.writeLong(Double.doubleToRawLongBits(value.doubleValue()));
+                        break;
+                    case BIG_INTEGER:
+                        out.writeVarint(V_BIG_INTEGER);
+                        out.writeByteArray(value.bigIntegerValue().toByteArray());
+                        break;
+                    case BIG_DECIMAL:
+                        out.writeVarint(V_DECIMAL);
+                        out.writeSignedVarint(value.decimalValue().scale());
+                        out.writeByteArray(value.decimalValue().unscaledValue().toByteArray());
+                        break;
+                }
+                break;
+            case STRING:
+                out.writeVarint(V_TEXT);
+                out.writeString(value.textValue());
+                break;
+            case BINARY:
+                out.writeVarint(V_BINARY);
+                out.writeByteArray(value.binaryValue());
+                break;
+            case ARRAY:
+                out.writeVarint(V_ARRAY);
+                out.writeVarint(value.size());
+                for (final JsonNode element : value) {
+                    writeValue(out, element);
+                }
+                break;
+            case OBJECT:
+                out.writeVarint(V_OBJECT);
+                out.writeVarint(value.size());
+                for (final Iterator<Map.Entry<String, JsonNode>> it = value.fields(); it.hasNext(); ) {
+                    final Map.Entry<String, JsonNode> field = it.next();
+                    out.writeKey(field.getKey());
+                    writeValue(out, field.getValue());
+                }
+                break;
+            default:
+                throw new IOException("Unsupported node type: " + value.getNodeType());
+        }
+    }
+
+    private static JsonNode readValue(final Input in) throws IOException {
+        final int tag = in.readTag();
+        switch (tag) {
+            case V_NULL:
+                return FACTORY.nullNode();
+            case V_FALSE:
+                return FACTORY.booleanNode(false);
+            case V_TRUE:
+                return FACTORY.booleanNode(true);
+            case V_INT: {
+                // Same node types as produced by parsing the JSON document
+                final long value = in.readSignedVarint();
+                return value == (int) value ? FACTORY.numberNode((int) value) : FACTORY.numberNode(value);
+            }
+            case V_FLOAT:
+                return FACTORY.numberNode(Float.intBitsToFloat((int) in.readLong()));
+            case V_DOUBLE:
+                return FACTORY.numberNode(Double.longBitsToDouble(in.readLong()));
+            case V_BIG_INTEGER:
+                return FACTORY.numberNode(new BigInteger(in.readByteArray()));
+            case V_DECIMAL: {
+                final int scale = (int) in.readSignedVarint();
+                return FACTORY.numberNode(new BigDecimal(new BigInteger(in.readByteArray()), scale));
+            }
+            case V_TEXT:
+                return FACTORY.textNode(in.readString());
+            case V_BINARY:
+                return FACTORY.binaryNode(in.readByteArray());
+            case V_ARRAY: {
+                final int size = in.readLength();
+                final ArrayNode array = FACTORY.arrayNode(Math.min(size, in.remaining()));
+                for (int i = 0; i < size; i++) {
+                    array.add(readValue(in));
+                }
+                return array;
+            }
+            case V_OBJECT: {
+                final int size = in.readLength();
+                final ObjectNode object = FACTORY.objectNode();
+                for (int i = 0; i < size; i++) {
+                    final String name = in.readKey();
+                    object.set(name, readValue(in));
+                }
+                return object;
+            }
+            default:
+                throw new IOException("Unknown value tag: " + tag);
+        }
+    }
+
+    /**
+     * Computes structural hashes which are consistent with {@link JsonNode#equals(Object)}.
+     *
+     * Object members are combined independent of their order, as the member order of a patched object may differ
+     * from the order of the published one. The hashes of containers are cached by identity.
+     */
+    private static final class Hasher {
+        private static final long PRIME = 0x100000001b3L;
+
+        private final Map<JsonNode, Long> containers = new IdentityHashMap<>();
+
+        long hash(final JsonNode node) {
+            if (!node.isContainerNode()) {
+                return hashValue(node);
+            }
+            final Long cached = containers.get(node);
+            if (cached != null) {
+                return cached;
+            }
+            long hash;
+            if (node.isObject()) {
+                long sum = 0;
+                for (final Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+                    final Map.Entry<String, JsonNode> field = it.next();
+                    sum += mix(hashString(field.getKey()) * PRIME + hash(field.getValue()));
+                }
+                hash = mix(sum + node.size() * PRIME + V_OBJECT);
+            } else {
+                hash = V_ARRAY;
+                for (final JsonNode element : node) {
+                    hash = hash * PRIME + hash(element);
+                }
+                hash = mix(hash + node.size());
+            }
+            containers.put(node, hash);
+            return hash;
+        }
+
+        private static long hashValue(final JsonNode node) {
+            switch (node.getNodeType()) {
+                case NULL:
+                    return mix(V_NULL);
+                case BOOLEAN:
+                    return mix(node.booleanValue() ? V_TRUE : V_FALSE);
+                case NUMBER:
+                    switch (node.numberType()) {
+                        case INT:
+                        case LONG:
+                            return mix(node.longValue() * PRIME + V_INT);
+                        case FLOAT:
+                            return mix(Float.floatToIntBits(node.floatValue()) * PRIME + V_FLOAT);
+                        case DOUBLE:
+                            return mix(Double.doubleToLongBits(node.doubleValue()) * PRIME + V_DOUBLE);
+                        case BIG_INTEGER:
+                            return mix(hashString(node.bigIntegerValue().toString()) * PRIME + V_BIG_INTEGER);
+                        default:
+                            // Decimal nodes are equal if their values compare equal, regardless of the scale
+                            return mix(hashString(node.decimalValue().stripTrailingZeros().toString()) * PRIME + V_DECIMAL);
+                    }
+                case STRING:
+                    return mix(hashString(node.textValue()) * PRIME + V_TEXT);
+                case BINARY:
+                    try {
+                        return mix(Arrays.hashCode(node.binaryValue()) * PRIME + V_BINARY);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                default:
+                    return mix(hashString(node.toString()));
+            }
+        }
+
+        private static long hashString(final String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= PRIME;
+            }
+            return hash;
+        }
+
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
+
+    private static final class Output {
+        private final Map<String, Integer> keys = new HashMap<>();
+
+        private byte[] buffer = new byte[256];
+
+        private int position = 0;
+
+        private void ensure(final int length) {
+            if (position + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+            }
+        }
+
+        void writeBytes(final byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeSignedVarint(final long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        void writeLong(final long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeByteArray(final byte[] bytes) {
+            writeVarint(bytes.length);
+            writeBytes(bytes);
+        }
+
+        void writeString(final String value) {
+            writeByteArray(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Writes the key on first use and its index afterwards.
+         */
+        void writeKey(final String key) {
+            final Integer index = keys.get(key);
+            if (index != null) {
+                writeVarint(index + 1);
+            } else {
+                keys.put(key, keys.size());
+                writeVarint(0);
+                writeString(key);
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    private static final class Input {
+        private final List<String> keys = new ArrayList<>();
+
+        private final byte[] buffer;
+
+        private int position;
+
+        Input(final byte[] buffer, final int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        int remaining() {
+            return buffer.length - position;
+        }
+
+        private byte readByte() throws IOException {
+            if (position >= buffer.length) {
+                throw new EOFException("Unexpected end of binary twin data");
+            }
+            return buffer[position++];
+        }
+
+        long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        long readSignedVarint() throws IOException {
+            final long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        int readTag() throws IOException {
+            return (int) readVarint();
+        }
+
+        int readLength() throws IOException {
+            final long length = readVarint();
+            if (length < 0 || length > Integer.MAX_VALUE) {
+                throw new IOException("Invalid length: " + length);
+            }
+            return (int) length;
+        }
+
+        long readLong() throws IOException {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (readByte() & 0xFF);
+            }
+            return value;
+        }
+
+        byte[] readByteArray() throws IOException {
+            final int length = readLength();
+            if (length > remaining()) {
+                throw new EOFException("Unexpected end of binary twin data");
+            }
+            final byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        String readString() throws IOException {
+            final int length = readLength();
+            if (length > remaining()) {
+                throw new EOFException("Unexpected end of binary twin data");
+            }
+            final String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        String readKey() throws IOException {
+            final int index = readLength();
+            if (index == 0) {
+                final String key = readString();
+                keys.add(key);
+                return key;
+            }
+            if (index > keys.size()) {
+                throw new IOException("Unknown key index: " + index);
+            }
+            return keys.get(index - 1);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.core.ipc.twin.common;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.github.fge.jsonpatch.JsonPatchException;
+import com.github.fge.jsonpatch.diff.JsonDiff;
+
+/**
+ * Sends updates as RFC 6902 JSON patches.
+ */
+public class JsonPatchTwinCodec implements TwinCodec {
+
+    public static final String NAME = "json-patch";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isPatch(final byte[] patch) {
+        // A JSON patch is an array of operations
+        for (final byte b : patch) {
+            if (!Character.isWhitespace(b)) {
+                return b == '[';
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public byte[] diff(final JsonNode source, final JsonNode target) {
+        return JsonDiff.asJson(source, target).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public JsonNode patch(final JsonNode source, final byte[] patch) throws IOException {
+        try {
+            return JsonPatch.fromJson(objectMapper.readTree(patch)).apply(source);
+        } catch (JsonPatchException e) {
+            throw new IOException("Unable to apply patch", e);
+        }
+    }
+}
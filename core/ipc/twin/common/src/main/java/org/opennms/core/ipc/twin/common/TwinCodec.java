@@ -0,0 +1,67 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.core.ipc.twin.common;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Encodes the difference between two versions of a Twin object and applies it on the subscriber side.
+ *
+ * Full snapshots are always sent as JSON. A codec only defines the format of the patches sent for updates within a
+ * session. Subscribers pick the codec by looking at the patch itself, see {@link TwinCodecs#forPatch(byte[])}, so
+ * publishers can switch codecs without coordinating with their subscribers.
+ */
+public interface TwinCodec {
+
+    /**
+     * @return the name used to select the codec
+     */
+    String getName();
+
+    /**
+     * @param patch the patch received by a subscriber
+     * @return true if the patch was created by this codec
+     */
+    boolean isPatch(byte[] patch);
+
+    /**
+     * Creates a patch transforming the source into the target.
+     *
+     * @param source the previously published object
+     * @param target the object to publish
+     * @return the encoded patch
+     * @throws IOException if the patch could not be created
+     */
+    byte[] diff(JsonNode source, JsonNode target) throws IOException;
+
+    /**
+     * Applies a patch. The source is left untouched.
+     *
+     * @param source the current object of the subscriber
+     * @param patch the patch created by {@link #diff(JsonNode, JsonNode)}
+     * @return the patched object
+     * @throws IOException if the patch is invalid or was not created for the given source
+     */
+    JsonNode patch(JsonNode source, byte[] patch) throws IOException;
+}
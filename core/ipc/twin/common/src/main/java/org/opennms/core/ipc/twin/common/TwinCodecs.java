@@ -0,0 +1,86 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.core.ipc.twin.common;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The available {@link TwinCodec}s.
+ *
+ * Publishers use the codec named by the {@value #CODEC_SYS_PROP} system property and fall back to JSON patches.
+ */
+public final class TwinCodecs {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TwinCodecs.class);
+
+    public static final String CODEC_SYS_PROP = "org.opennms.core.ipc.twin.codec";
+
+    public static final TwinCodec JSON_PATCH = new JsonPatchTwinCodec();
+
+    public static final TwinCodec BINARY_DELTA = new BinaryDeltaTwinCodec();
+
+    private static final List<TwinCodec> CODECS = Arrays.asList(BINARY_DELTA, JSON_PATCH);
+
+    private TwinCodecs() {
+    }
+
+    /**
+     * @param name the name of the codec
+     * @return the codec with the given name or the JSON patch codec if there is none
+     */
+    public static TwinCodec forName(final String name) {
+        if (name == null || name.isEmpty()) {
+            return JSON_PATCH;
+        }
+        for (final TwinCodec codec : CODECS) {
+            if (codec.getName().equalsIgnoreCase(name.trim())) {
+                return codec;
+            }
+        }
+        LOG.warn("Unknown twin codec '{}', using {}", name, JSON_PATCH.getName());
+        return JSON_PATCH;
+    }
+
+    /**
+     * @return the codec configured for publishers
+     */
+    public static TwinCodec fromSystemProperties() {
+        return forName(System.getProperty(CODEC_SYS_PROP));
+    }
+
+    /**
+     * @param patch a patch received by a subscriber
+     * @return the codec which created the patch, JSON patch if unknown
+     */
+    public static TwinCodec forPatch(final byte[] patch) {
+        for (final TwinCodec codec : CODECS) {
+            if (codec.isPatch(patch)) {
+                return codec;
+            }
+        }
+        return JSON_PATCH;
+    }
+}
@@ -21,6 +21,8 @@
  */
 package org.opennms.core.ipc.twin.common;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -37,6 +39,7 @@ public class TwinTracker {
 
     private final AtomicInteger version;
     private byte[] obj;
+    private JsonNode tree;
     private final String sessionId;
 
     public TwinTracker(byte[] obj) {
@@ -60,9 +63,21 @@ public class TwinTracker {
         return sessionId;
     }
 
+    /**
+     * @return the parsed object, if known, to spare the publisher from parsing it again for the next patch
+     */
+    public JsonNode getTree() {
+        return tree;
+    }
+
 
     public int update(byte[] obj) {
+        return update(obj, null);
+    }
+
+    public int update(byte[] obj, JsonNode tree) {
         this.obj = obj;
+        this.tree = tree;
         return version.incrementAndGet();
     }
 }
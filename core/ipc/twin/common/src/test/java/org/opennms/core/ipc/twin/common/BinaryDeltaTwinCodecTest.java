@@ -0,0 +1,266 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.core.ipc.twin.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class BinaryDeltaTwinCodecTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final TwinCodec codec = new BinaryDeltaTwinCodec();
+
+    private JsonNode json(final String json) throws IOException {
+        return mapper.readTree(json.replace('\'', '"'));
+    }
+
+    private JsonNode roundTrip(final JsonNode source, final JsonNode target) throws IOException {
+        final byte[] patch = codec.diff(source, target);
+        final JsonNode patched = codec.patch(source, patch);
+        assertEquals(target, patched);
+        return patched;
+    }
+
+    @Test
+    public void shouldPatchChangedMembers() throws IOException {
+        final JsonNode source = json("{'a': 1, 'b': {'c': 'x', 'd': [1, 2, 3]}, 'e': true}");
+        roundTrip(source, json("{'a': 2, 'b': {'c': 'x', 'd': [1, 2, 3]}, 'e': true}"));
+        roundTrip(source, json("{'a': 1, 'b': {'c': 'y', 'd': [1, 2, 3]}}"));
+        roundTrip(source, json("{'a': 1, 'b': {'c': 'x', 'd': [1, 5, 3]}, 'e': true, 'f': null}"));
+        roundTrip(source, json("{'a': 1, 'b': [], 'e': true}"));
+        roundTrip(source, json("[1, 2]"));
+        roundTrip(json("null"), source);
+    }
+
+    @Test
+    public void shouldPatchArrayRanges() throws IOException {
+        final JsonNode source = json("[{'id': 1}, {'id': 2}, {'id': 3}, {'id': 4}]");
+        roundTrip(source, json("[{'id': 0}, {'id': 1}, {'id': 2}, {'id': 3}, {'id': 4}]"));
+        roundTrip(source, json("[{'id': 1}, {'id': 2}, {'id': 2.5}, {'id': 3}, {'id': 4}]"));
+        roundTrip(source, json("[{'id': 1}, {'id': 2}, {'id': 3}, {'id': 4}, {'id': 5}]"));
+        roundTrip(source, json("[{'id': 1}, {'id': 4}]"));
+        roundTrip(source, json("[]"));
+        roundTrip(json("[]"), source);
+        roundTrip(json("[1, 1, 1]"), json("[1, 1]"));
+    }
+
+    @Test
+    public void shouldPreserveNumberTypes() throws IOException {
+        final JsonNode source = json("{'i': 1, 'l': 1, 'd': 1.5, 'b': 1}");
+        final JsonNode target = json("{'i': -7, 'l': 12345678901, 'd': -0.25, 'b': 123456789012345678901234567890}");
+        final JsonNode patched = roundTrip(source, target);
+        assertTrue(patched.get("i").isInt());
+        assertTrue(patched.get("l").isLong());
+        assertTrue(patched.get("d").isDouble());
+        assertTrue(patched.get("b").isBigInteger());
+    }
+
+    @Test
+    public void shouldShareUnchangedSubtrees() throws IOException {
+        final JsonNode source = json("{'a': {'x': [1, 2, 3]}, 'b': {'y': 1}}");
+        final JsonNode patched = roundTrip(source, json("{'a': {'x': [1, 2, 3]}, 'b': {'y': 2}}"));
+        assertSame(source.get("a"), patched.get("a"));
+        // The source must not be modified
+        assertEquals(json("{'a': {'x': [1, 2, 3]}, 'b': {'y': 1}}"), source);
+    }
+
+    @Test
+    public void shouldIgnoreMemberOrder() throws IOException {
+        final JsonNode source = json("{'a': 1, 'b': 2}");
+        final JsonNode target = json("{'b': 2, 'a': 1}");
+        final byte[] patch = codec.diff(source, target);
+        assertSame(source, codec.patch(source, patch));
+
+        // A subscriber which applied the patches in another order can apply patches created from a fresh object
+        final ObjectNode reordered = (ObjectNode) json("{'b': 2}");
+        reordered.put("a", 1);
+        roundTrip(reordered, json("{'a': 1, 'b': 3}"));
+    }
+
+    @Test
+    public void shouldWriteChangesOnly() throws IOException {
+        final ArrayNode source = mapper.createArrayNode();
+        for (int i = 0; i < 1000; i++) {
+            source.addObject().put("id", i).put("label", "node" + i).putArray("categories").add("Servers").add("Production");
+        }
+        final ArrayNode target = source.deepCopy();
+        ((ObjectNode) target.get(500)).put("label", "changed");
+
+        final byte[] patch = codec.diff(source, target);
+        assertTrue("patch has " + patch.length + " bytes", patch.length < 64);
+        assertEquals(target, codec.patch(source, patch));
+    }
+
+    @Test
+    public void shouldRejectPatchForOtherSource() throws IOException {
+        final JsonNode source = json("{'a': 1, 'b': 2}");
+        final byte[] patch = codec.diff(source, json("{'a': 1, 'b': 3}"));
+        try {
+            codec.patch(json("{'a': 2, 'b': 2}"), patch);
+            fail("Patch must not apply to another object");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void shouldRejectCorruptPatches() throws IOException {
+        final JsonNode source = json("{'a': [1, 2, 3], 'b': 'text'}");
+        final byte[] patch = codec.diff(source, json("{'a': [1, 2, 3, 4], 'b': 'other text'}"));
+        for (int length = 0; length < patch.length; length++) {
+            try {
+                codec.patch(source, Arrays.copyOf(patch, length));
+                fail("Truncated patch of " + length + " bytes must be rejected");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+        final byte[] extended = Arrays.copyOf(patch, patch.length + 1);
+        try {
+            codec.patch(source, extended);
+            fail("Trailing bytes must be rejected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void shouldDetectCodecFromPatch() throws IOException {
+        final JsonNode source = json("{'a': 1}");
+        final JsonNode target = json("{'a': 2}");
+
+        final byte[] binary = codec.diff(source, target);
+        final byte[] jsonPatch = TwinCodecs.JSON_PATCH.diff(source, target);
+
+        assertSame(TwinCodecs.BINARY_DELTA, TwinCodecs.forPatch(binary));
+        assertSame(TwinCodecs.JSON_PATCH, TwinCodecs.forPatch(jsonPatch));
+        assertFalse(TwinCodecs.JSON_PATCH.isPatch(binary));
+        assertFalse(codec.isPatch(jsonPatch));
+        assertEquals(target, TwinCodecs.forPatch(jsonPatch).patch(source, jsonPatch));
+
+        assertSame(TwinCodecs.JSON_PATCH, TwinCodecs.forName(null));
+        assertSame(TwinCodecs.BINARY_DELTA, TwinCodecs.forName("binary"));
+        assertSame(TwinCodecs.JSON_PATCH, TwinCodecs.forName("unknown"));
+    }
+
+    @Test
+    public void shouldEncodeValues() throws IOException {
+        final JsonNode value = json("{'s': 'café', 'n': null, 't': true, 'f': false, 'a': [{'s': 'x'}, {'s': 'y'}], 'd': 1e300}");
+        final byte[] encoded = BinaryDeltaTwinCodec.encodeValue(value);
+        assertEquals(value, BinaryDeltaTwinCodec.decodeValue(encoded));
+        assertTrue(encoded.length < mapper.writeValueAsBytes(value).length);
+        assertArrayEquals(encoded, BinaryDeltaTwinCodec.encodeValue(BinaryDeltaTwinCodec.decodeValue(encoded)));
+    }
+
+    @Test
+    public void shouldFollowRandomUpdates() throws IOException {
+        final Random random = new Random(42);
+        JsonNode published = randomNode(random, 0);
+        JsonNode subscribed = mapper.readTree(mapper.writeValueAsString(published));
+        for (int i = 0; i < 2000; i++) {
+            final JsonNode next = mutate(random, published.deepCopy());
+            // The publisher parses every version from its serialized form
+            final JsonNode parsed = mapper.readTree(mapper.writeValueAsBytes(next));
+            subscribed = codec.patch(subscribed, codec.diff(published, parsed));
+            assertEquals(parsed, subscribed);
+            published = parsed;
+        }
+    }
+
+    private JsonNode randomNode(final Random random, final int depth) {
+        final int kind = depth > 3 ? random.nextInt(4) : random.nextInt(6);
+        switch (kind) {
+            case 0:
+                return mapper.getNodeFactory().numberNode(random.nextInt(10));
+            case 1:
+                return mapper.getNodeFactory().textNode("v" + random.nextInt(10));
+            case 2:
+                return mapper.getNodeFactory().booleanNode(random.nextBoolean());
+            case 3:
+                return mapper.getNodeFactory().nullNode();
+            case 4: {
+                final ArrayNode array = mapper.createArrayNode();
+                for (int i = random.nextInt(5); i > 0; i--) {
+                    array.add(randomNode(random, depth + 1));
+                }
+                return array;
+            }
+            default: {
+                final ObjectNode object = mapper.createObjectNode();
+                for (int i = random.nextInt(5); i > 0; i--) {
+                    object.set("k" + random.nextInt(8), randomNode(random, depth + 1));
+                }
+                return object;
+            }
+        }
+    }
+
+    private JsonNode mutate(final Random random, final JsonNode node) {
+        if (!node.isContainerNode() || node.size() == 0 || random.nextInt(4) == 0) {
+            return random.nextInt(3) == 0 ? randomNode(random, 2) : node;
+        }
+        if (node.isArray()) {
+            final ArrayNode array = (ArrayNode) node;
+            switch (random.nextInt(3)) {
+                case 0:
+                    array.insert(random.nextInt(array.size() + 1), randomNode(random, 3));
+                    break;
+                case 1:
+                    array.remove(random.nextInt(array.size()));
+                    break;
+                default:
+                    final int index = random.nextInt(array.size());
+                    array.set(index, mutate(random, array.get(index)));
+            }
+            return array;
+        }
+        final ObjectNode object = (ObjectNode) node;
+        final String name = "k" + random.nextInt(8);
+        switch (random.nextInt(3)) {
+            case 0:
+                object.remove(name);
+                break;
+            case 1:
+                object.set(name, randomNode(random, 3));
+                break;
+            default:
+                object.set(name, object.has(name) ? mutate(random, object.get(name)) : randomNode(random, 3));
+        }
+        return object;
+    }
+}
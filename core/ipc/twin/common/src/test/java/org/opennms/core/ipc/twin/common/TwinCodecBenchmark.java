@@ -0,0 +1,172 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.core.ipc.twin.common;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Compares the JSON patch and the binary delta codec on large synthetic Twin objects.
+ * <p>
+ * The objects mimic an inventory pushed to Minions: a list of nodes with interfaces, services and metadata. Each
+ * benchmark measures one step of the update path: creating the patch on the publisher and applying it on the
+ * subscriber. The size of the patches is printed during setup.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class TwinCodecBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    /**
+     * The number of nodes in the object.
+     */
+    @Param({"1000", "10000"})
+    public int nodes;
+
+    /**
+     * The kind of update: a single changed member, a node appended to the list, or one percent of the nodes changed.
+     */
+    @Param({"member", "append", "bulk"})
+    public String update;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final TwinCodec jsonPatch = new JsonPatchTwinCodec();
+
+    private final TwinCodec binaryDelta = new BinaryDeltaTwinCodec();
+
+    private JsonNode source;
+
+    private JsonNode target;
+
+    private byte[] jsonPatchBytes;
+
+    private byte[] binaryDeltaBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        final Random random = new Random(42);
+        final ArrayNode list = mapper.createArrayNode();
+        for (int i = 0; i < nodes; i++) {
+            list.add(createNode(random, i));
+        }
+        final ObjectNode root = mapper.createObjectNode();
+        root.put("location", "Default");
+        root.set("nodes", list);
+
+        final ObjectNode updated = root.deepCopy();
+        final ArrayNode updatedList = (ArrayNode) updated.get("nodes");
+        switch (update) {
+            case "member":
+                ((ObjectNode) updatedList.get(nodes / 2)).put("label", "renamed");
+                break;
+            case "append":
+                updatedList.add(createNode(random, nodes));
+                break;
+            case "bulk":
+                for (int i = 0; i < nodes; i += 100) {
+                    ((ObjectNode) updatedList.get(i).get("interfaces").get(0)).put("snmpIfAlias", "changed-" + i);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(update);
+        }
+
+        // Both versions are parsed from their serialized form, as done by the publisher
+        source = mapper.readTree(mapper.writeValueAsBytes(root));
+        target = mapper.readTree(mapper.writeValueAsBytes(updated));
+
+        jsonPatchBytes = jsonPatch.diff(source, target);
+        binaryDeltaBytes = binaryDelta.diff(source, target);
+        System.out.printf("%nnodes=%d update=%s object=%d bytes json-patch=%d bytes binary=%d bytes%n",
+                nodes, update, mapper.writeValueAsBytes(target).length, jsonPatchBytes.length, binaryDeltaBytes.length);
+    }
+
+    private ObjectNode createNode(final Random random, final int id) {
+        final ObjectNode node = mapper.createObjectNode();
+        node.put("id", id);
+        node.put("label", "node-" + id);
+        node.put("foreignSource", "Servers");
+        node.put("foreignId", Integer.toHexString(random.nextInt()));
+        final ArrayNode interfaces = node.putArray("interfaces");
+        for (int i = random.nextInt(4) + 1; i > 0; i--) {
+            final ObjectNode iface = interfaces.addObject();
+            iface.put("ipAddress", "10." + (id >> 8 & 0xFF) + "." + (id & 0xFF) + "." + i);
+            iface.put("ifIndex", i);
+            iface.put("snmpIfAlias", "uplink-" + i);
+            final ArrayNode services = iface.putArray("services");
+            services.add("ICMP").add("SNMP");
+            if (random.nextBoolean()) {
+                services.add("HTTP");
+            }
+        }
+        final ObjectNode metadata = node.putObject("metadata");
+        metadata.put("rack", "r" + random.nextInt(40));
+        metadata.put("owner", "team-" + random.nextInt(5));
+        return node;
+    }
+
+    @Benchmark
+    public byte[] jsonPatchDiff() throws IOException {
+        return jsonPatch.diff(source, target);
+    }
+
+    @Benchmark
+    public byte[] binaryDeltaDiff() throws IOException {
+        return binaryDelta.diff(source, target);
+    }
+
+    @Benchmark
+    public JsonNode jsonPatchApply() throws IOException {
+        return jsonPatch.patch(source, jsonPatchBytes);
+    }
+
+    @Benchmark
+    public JsonNode binaryDeltaApply() throws IOException {
+        return binaryDelta.patch(source, binaryDeltaBytes);
+    }
+}
@@ -22,7 +22,9 @@
 package org.opennms.netmgt.jmx.impl;
 
 import java.io.IOException;
+import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -57,6 +59,7 @@ import org.opennms.netmgt.jmx.connection.JmxConnectionManager;
 import org.opennms.netmgt.jmx.connection.JmxServerConnectionException;
 import org.opennms.netmgt.jmx.connection.JmxServerConnectionWrapper;
 import org.opennms.netmgt.jmx.impl.connection.connectors.DefaultConnectionManager;
+import org.opennms.netmgt.jmx.impl.connection.connectors.PooledConnectionManager;
 import org.opennms.netmgt.jmx.samples.JmxAttributeSample;
 import org.opennms.netmgt.jmx.samples.JmxCompositeSample;
 import org.slf4j.Logger;
@@ -65,6 +68,11 @@ import org.slf4j.LoggerFactory;
 /**
  * A implementation of the JmxCollector.
  * It iterates over all configured MBeans, collects either attributes or composite members and creates a sample accordingly.
+ * <p/>
+ * If pooling is enabled (see {@link PooledConnectionManager#isEnabled()}), connections are kept open between
+ * collections and the <code>ObjectName</code>s of the configured MBeans are resolved once per refresh interval
+ * of the {@link ObjectNameCache} instead of on every collection. The pool and the cache are shared by all
+ * collectors, see {@link SharedJmxConnectionPool}.
  *
  * @see org.opennms.netmgt.jmx.JmxCollector
  */
@@ -72,23 +80,64 @@ public class DefaultJmxCollector implements JmxCollector {
 
     protected final Logger logger = LoggerFactory.getLogger(getClass());
 
+    /**
+     * The pool to keep connections in. May be null, in which case a new connection is established for each collection.
+     */
+    private final PooledConnectionManager connectionPool;
+
+    /**
+     * The cache of resolved <code>ObjectName</code>s. May be null, in which case the names are resolved on each collection.
+     */
+    private final ObjectNameCache objectNameCache;
+
+    public DefaultJmxCollector() {
+        this(PooledConnectionManager.isEnabled() ? SharedJmxConnectionPool.getInstance() : null);
+    }
+
+    private DefaultJmxCollector(SharedJmxConnectionPool shared) {
+        this(shared != null ? shared.getConnectionPool() : null, shared != null ? shared.getObjectNameCache() : null);
+    }
+
+    /**
+     * @param connectionPool  the pool to keep connections in. May be null.
+     * @param objectNameCache the cache of resolved <code>ObjectName</code>s. May be null.
+     */
+    public DefaultJmxCollector(PooledConnectionManager connectionPool, ObjectNameCache objectNameCache) {
+        this.connectionPool = connectionPool;
+        this.objectNameCache = objectNameCache;
+    }
+
     @Override
     public void collect(JmxCollectorConfig config, MBeanServer mBeanServer, JmxSampleProcessor sampleProcessor) throws JmxServerConnectionException {
         Map<String, String> mergedStringMap = new HashMap<>(config.getServiceProperties());
         if (mBeanServer != null) {
             mergedStringMap.putAll(mBeanServer.getParameterMap());
         }
-        JmxConnectionManager connectionManager = new DefaultConnectionManager(config.getRetries());
-        try (JmxServerConnectionWrapper connectionWrapper = connectionManager.connect(config.getConnectionName(), InetAddressUtils.addr(config.getAgentAddress()), mergedStringMap, null)) {
+        final InetAddress ipAddress = InetAddressUtils.addr(config.getAgentAddress());
+        JmxConnectionManager connectionManager = createConnectionManager(config.getRetries());
+        try (JmxServerConnectionWrapper connectionWrapper = connectionPool != null
+                ? connectionPool.connect(connectionManager, config.getConnectionName(), ipAddress, mergedStringMap, null)
+                : connectionManager.connect(config.getConnectionName(), ipAddress, mergedStringMap, null)) {
             Objects.requireNonNull(connectionWrapper, "connectionWrapper should never be null");
             Objects.requireNonNull(connectionWrapper.getMBeanServerConnection(), "connectionWrapper.getMBeanServerConnection() should never be null");
 
             final MBeanServerConnection concreteConnection = connectionWrapper.getMBeanServerConnection();
-            collect(concreteConnection, config.getJmxCollection(), sampleProcessor);
+            // the agent is identified by everything that is used to connect to it
+            final Object agent = objectNameCache != null ? Arrays.asList(config.getConnectionName(), ipAddress, mergedStringMap) : null;
+            collect(concreteConnection, agent, config.getJmxCollection(), sampleProcessor);
         }
     }
 
-    private void collect(MBeanServerConnection concreteConnection, JmxCollection jmxCollection, JmxSampleProcessor sampleProcessor) {
+    /**
+     * Creates the connection manager used to establish a new connection.
+     *
+     * @param retries the number of retries as configured for the collection.
+     */
+    protected JmxConnectionManager createConnectionManager(int retries) {
+        return new DefaultConnectionManager(retries);
+    }
+
+    private void collect(MBeanServerConnection concreteConnection, Object agent, JmxCollection jmxCollection, JmxSampleProcessor sampleProcessor) {
         if (jmxCollection == null || jmxCollection.getMbeanCount() < 1) {
             logger.info("No MBeans to collect.");
             return;
@@ -98,13 +147,24 @@ public class DefaultJmxCollector implements JmxCollector {
             for (Mbean eachMbean : jmxCollection.getMbeans()) {
                 logger.debug("Collecting MBean (objectname={}, wildcard={})", eachMbean.getObjectname(), isWildcard(eachMbean.getObjectname()));
 
-                final Collection<ObjectName> objectNames = getObjectNames(concreteConnection, eachMbean.getObjectname());
+                final Collection<ObjectName> objectNames = getObjectNames(concreteConnection, agent, eachMbean.getObjectname());
+                final List<String> attributeNames = extractAttributeNames(eachMbean);
                 for (ObjectName eachObjectName : objectNames) {
                     logger.debug("Collecting ObjectName {}", eachObjectName);
-                    boolean collect = canBeCollected(concreteConnection, eachObjectName, eachMbean.getKeyfield(), eachMbean.getExclude());
+                    // names from the cache were registered when they were resolved
+                    boolean collect = canBeCollected(concreteConnection, eachObjectName, eachMbean.getKeyfield(), eachMbean.getExclude(), agent == null);
                     if (collect) {
-                        List<String> attributeNames = extractAttributeNames(eachMbean);
-                        List<Attribute> attributes = getAttributes(concreteConnection, eachObjectName, attributeNames);
+                        final List<Attribute> attributes;
+                        try {
+                            attributes = getAttributes(concreteConnection, eachObjectName, attributeNames);
+                        } catch (InstanceNotFoundException e) {
+                            if (agent == null) {
+                                throw e;
+                            }
+                            logger.debug("ObjectName {} is no longer registered.", eachObjectName);
+                            objectNameCache.invalidate(agent, eachMbean.getObjectname());
+                            continue;
+                        }
 
                         for (Attribute eachAttribute : attributes) {
                             if (eachAttribute.getValue() instanceof CompositeData) {
@@ -137,15 +197,16 @@ public class DefaultJmxCollector implements JmxCollector {
      * Checks if a given objectName can be collected.
      * It cannot be collected if it is excluded or not registered, otherwise it can be collected.
      *
+     * @param checkRegistered if the registration of the objectName must be verified.
      * @return if it can be collected.
      * @throws IOException If an error while communicating with the MBeanServer occurs.
      */
-    private boolean canBeCollected(MBeanServerConnection connection, ObjectName objectName, String keyField, String excludeList) throws IOException {
+    private boolean canBeCollected(MBeanServerConnection connection, ObjectName objectName, String keyField, String excludeList, boolean checkRegistered) throws IOException {
         if (isExcluded(objectName, keyField, excludeList)) {
             logger.debug("ObjectName {} with key {} is in excludeList {}.", objectName, keyField, excludeList);
             return false;
         }
-        if (!connection.isRegistered(objectName)) {
+        if (checkRegistered && !connection.isRegistered(objectName)) {
             logger.debug("ObjectName {} is not registered.", objectName);
             return false;
         }
@@ -252,13 +313,28 @@ public class DefaultJmxCollector implements JmxCollector {
 
     /**
      * Returns an unmodifiable set of <code>ObjectName</code>s according to the given <code>objectName</code>.
+     * If an agent is given, the set is taken from the {@link ObjectNameCache} and only contains registered names.
      *
+     * @param agent      Identifies the agent in the {@link ObjectNameCache}. May be null.
      * @param objectName The objectName to query the server with. May contain wildcards.
      *                   See {@link javax.management.MBeanServer#queryMBeans(javax.management.ObjectName, javax.management.QueryExp)} for details.
      * @return an unmodifiable set of <code>ObjectName</code>s according to the given <code>objectName</code>.
      * @throws MalformedObjectNameException
      * @throws IOException
      */
+    private Set<ObjectName> getObjectNames(MBeanServerConnection mbeanServer, Object agent, String objectName) throws MalformedObjectNameException, IOException {
+        if (agent == null) {
+            return getObjectNames(mbeanServer, objectName);
+        }
+        return objectNameCache.getObjectNames(agent, objectName, () -> {
+            if (isWildcard(objectName)) {
+                return getObjectNames(mbeanServer, objectName);
+            }
+            final ObjectName name = new ObjectName(objectName);
+            return mbeanServer.isRegistered(name) ? Collections.singleton(name) : Collections.emptySet();
+        });
+    }
+
     private Set<ObjectName> getObjectNames(MBeanServerConnection mbeanServer, String objectName) throws MalformedObjectNameException, IOException {
         Set<ObjectName> objectNames = new HashSet<>();
 
@@ -0,0 +1,197 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.jmx.impl;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * Caches the <code>ObjectName</code>s an object name of the collection configuration resolves to on an agent.
+ * <p/>
+ * Wildcard object names are resolved by querying the server, other object names resolve to themselves
+ * if they are registered. Resolved names are re-used until the refresh interval elapsed, so MBeans
+ * matching a wildcard name registered in the meantime are collected after the next refresh at the latest.
+ * Other object names that are not registered are not cached, they are resolved again on every collection
+ * since checking a single name is cheap. Entries can be invalidated earlier, i.e. if an MBean of a resolved
+ * name disappeared.
+ */
+public class ObjectNameCache {
+
+    protected static final String REFRESH_INTERVAL_SYS_PROP = "org.opennms.netmgt.jmx.objectNameCache.refreshInterval";
+
+    private static final long DEFAULT_REFRESH_INTERVAL = 15 * 60 * 1000L;
+
+    /**
+     * Resolves an object name on the server.
+     */
+    @FunctionalInterface
+    public interface Resolver {
+        Set<ObjectName> resolve() throws MalformedObjectNameException, IOException;
+    }
+
+    /**
+     * Time in milliseconds after which an object name is resolved again.
+     */
+    private final long refreshInterval;
+
+    private final LongSupplier clock;
+
+    private final Map<CacheKey, CacheEntry> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private volatile long lastPurge;
+
+    public ObjectNameCache(long refreshInterval) {
+        this(refreshInterval, System::currentTimeMillis);
+    }
+
+    protected ObjectNameCache(long refreshInterval, LongSupplier clock) {
+        this.refreshInterval = refreshInterval;
+        this.clock = Objects.requireNonNull(clock);
+        this.lastPurge = clock.getAsLong();
+    }
+
+    /**
+     * Creates a cache configured from the system properties.
+     *
+     * @return a new cache
+     */
+    public static ObjectNameCache fromSystemProperties() {
+        return new ObjectNameCache(Long.getLong(REFRESH_INTERVAL_SYS_PROP, DEFAULT_REFRESH_INTERVAL));
+    }
+
+    /**
+     * Returns the resolved names of the given object name on the given agent.
+     *
+     * @param agent      identifies the agent, must implement equals and hashCode.
+     * @param objectName the object name as configured. May contain wildcards.
+     * @param resolver   used to resolve the object name if it is not cached or the cached names are outdated.
+     * @return an unmodifiable set of <code>ObjectName</code>s.
+     */
+    public Set<ObjectName> getObjectNames(Object agent, String objectName, Resolver resolver) throws MalformedObjectNameException, IOException {
+        final long now = clock.getAsLong();
+        final CacheKey key = new CacheKey(agent, objectName);
+        final CacheEntry entry = entries.get(key);
+        if (entry != null && now - entry.resolved < refreshInterval) {
+            hits.increment();
+            return entry.objectNames;
+        }
+
+        misses.increment();
+        purgeExpired(now);
+        final Set<ObjectName> objectNames = Set.copyOf(resolver.resolve());
+        if (objectNames.isEmpty() && !isWildcard(objectName)) {
+            entries.remove(key);
+        } else {
+            entries.put(key, new CacheEntry(objectNames, now));
+        }
+        return objectNames;
+    }
+
+    protected static boolean isWildcard(String objectName) {
+        return objectName.contains("*");
+    }
+
+    /**
+     * Removes the resolved names of the given object name on the given agent.
+     */
+    public void invalidate(Object agent, String objectName) {
+        entries.remove(new CacheKey(agent, objectName));
+    }
+
+    /**
+     * Removes all resolved names of the given agent.
+     */
+    public void invalidate(Object agent) {
+        entries.keySet().removeIf(k -> Objects.equals(k.agent, agent));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Removes outdated entries, i.e. of agents which are no longer collected, once per refresh interval.
+     */
+    private void purgeExpired(long now) {
+        if (now - lastPurge < refreshInterval) {
+            return;
+        }
+        lastPurge = now;
+        entries.values().removeIf(e -> now - e.resolved >= refreshInterval);
+    }
+
+    private static class CacheKey {
+        private final Object agent;
+        private final String objectName;
+
+        private CacheKey(Object agent, String objectName) {
+            this.agent = agent;
+            this.objectName = objectName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final CacheKey that = (CacheKey) o;
+            return Objects.equals(agent, that.agent) && Objects.equals(objectName, that.objectName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(agent, objectName);
+        }
+    }
+
+    private static class CacheEntry {
+        private final Set<ObjectName> objectNames;
+        private final long resolved;
+
+        private CacheEntry(Set<ObjectName> objectNames, long resolved) {
+            this.objectNames = objectNames;
+            this.resolved = resolved;
+        }
+    }
+}
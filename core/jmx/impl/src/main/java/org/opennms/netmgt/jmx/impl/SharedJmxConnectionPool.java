@@ -0,0 +1,109 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.jmx.impl;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.netmgt.jmx.impl.connection.connectors.DefaultConnectionManager;
+import org.opennms.netmgt.jmx.impl.connection.connectors.PooledConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The connection pool and <code>ObjectName</code> cache shared by all {@link DefaultJmxCollector}s.
+ * <p/>
+ * Both are created on first use. Idle connections are closed periodically, not only when the next
+ * connection is requested. The daemon which runs the collections closes them once it stops, see
+ * {@link #close()}. They are created again if collections are performed afterwards.
+ */
+public class SharedJmxConnectionPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedJmxConnectionPool.class);
+
+    private static final long MIN_EVICTION_INTERVAL = 1000L;
+
+    private static SharedJmxConnectionPool instance;
+
+    private final PooledConnectionManager connectionPool;
+
+    private final ObjectNameCache objectNameCache;
+
+    private final ScheduledExecutorService evictor;
+
+    private SharedJmxConnectionPool() {
+        connectionPool = PooledConnectionManager.fromSystemProperties(new DefaultConnectionManager());
+        objectNameCache = ObjectNameCache.fromSystemProperties();
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "JmxConnectionPool-Evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long evictionInterval = Math.max(MIN_EVICTION_INTERVAL, connectionPool.getIdleTimeout() / 4);
+        evictor.scheduleWithFixedDelay(() -> {
+            try {
+                connectionPool.evictIdle();
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to close idle connections", e);
+            }
+        }, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the shared pool, created if it does not exist yet
+     */
+    public static synchronized SharedJmxConnectionPool getInstance() {
+        if (instance == null) {
+            instance = new SharedJmxConnectionPool();
+        }
+        return instance;
+    }
+
+    /**
+     * @return the shared pool, or null if it does not exist
+     */
+    public static synchronized SharedJmxConnectionPool peek() {
+        return instance;
+    }
+
+    /**
+     * Stops the eviction and closes all pooled connections. Connections which are currently in use are
+     * closed once released.
+     */
+    public static synchronized void close() {
+        if (instance != null) {
+            LOG.debug("Closing {} pooled connections", instance.connectionPool.getPoolSize());
+            instance.evictor.shutdownNow();
+            instance.connectionPool.close();
+            instance = null;
+        }
+    }
+
+    public PooledConnectionManager getConnectionPool() {
+        return connectionPool;
+    }
+
+    public ObjectNameCache getObjectNameCache() {
+        return objectNameCache;
+    }
+}
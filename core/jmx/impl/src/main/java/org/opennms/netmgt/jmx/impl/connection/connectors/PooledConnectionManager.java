@@ -0,0 +1,413 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.jmx.impl.connection.connectors;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import javax.management.MBeanServerConnection;
+
+import org.opennms.netmgt.jmx.connection.JmxConnectionManager;
+import org.opennms.netmgt.jmx.connection.JmxConnectors;
+import org.opennms.netmgt.jmx.connection.JmxServerConnectionException;
+import org.opennms.netmgt.jmx.connection.JmxServerConnectionWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link JmxConnectionManager} which keeps the established connections open and hands them
+ * out again on subsequent calls for the same connector, address and connection properties.
+ * <p/>
+ * JMX connections are thread-safe, so a single connection per key is shared by all callers.
+ * Closing the returned {@link JmxServerConnectionWrapper} releases the connection to the pool
+ * instead of closing it.
+ * <p/>
+ * A connection is discarded and re-established if
+ * <ul>
+ *     <li>an invocation on it failed with an {@link IOException},</li>
+ *     <li>the health check, which is performed before handing out a connection which was not checked
+ *     within the health check interval, fails, or</li>
+ *     <li>it was not used within the idle timeout.</li>
+ * </ul>
+ * The pool is enabled with the {@value #POOL_ENABLED_SYS_PROP} system property.
+ */
+public class PooledConnectionManager implements JmxConnectionManager {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PooledConnectionManager.class);
+
+    protected static final String POOL_ENABLED_SYS_PROP = "org.opennms.netmgt.jmx.pool.enabled";
+
+    protected static final String IDLE_TIMEOUT_SYS_PROP = "org.opennms.netmgt.jmx.pool.idleTimeout";
+
+    protected static final String HEALTH_CHECK_INTERVAL_SYS_PROP = "org.opennms.netmgt.jmx.pool.healthCheckInterval";
+
+    private static final long DEFAULT_IDLE_TIMEOUT = 15 * 60 * 1000L;
+
+    private static final long DEFAULT_HEALTH_CHECK_INTERVAL = 60 * 1000L;
+
+    /**
+     * Used to establish new connections, if no connection manager is given on connect.
+     */
+    private final JmxConnectionManager delegate;
+
+    /**
+     * Time in milliseconds after which an unused connection is closed.
+     */
+    private final long idleTimeout;
+
+    /**
+     * Time in milliseconds after which a connection is checked again before it is handed out.
+     */
+    private final long healthCheckInterval;
+
+    private final LongSupplier clock;
+
+    private final Map<PoolKey, Slot> slots = new ConcurrentHashMap<>();
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public PooledConnectionManager(JmxConnectionManager delegate, long idleTimeout, long healthCheckInterval) {
+        this(delegate, idleTimeout, healthCheckInterval, System::currentTimeMillis);
+    }
+
+    protected PooledConnectionManager(JmxConnectionManager delegate, long idleTimeout, long healthCheckInterval, LongSupplier clock) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate must not be null");
+        this.idleTimeout = idleTimeout;
+        this.healthCheckInterval = healthCheckInterval;
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    /**
+     * @return true if JMX connections should be pooled
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(POOL_ENABLED_SYS_PROP);
+    }
+
+    /**
+     * Creates a pool configured from the system properties.
+     *
+     * @param delegate used to establish new connections
+     * @return a new pool
+     */
+    public static PooledConnectionManager fromSystemProperties(JmxConnectionManager delegate) {
+        return new PooledConnectionManager(delegate,
+                Long.getLong(IDLE_TIMEOUT_SYS_PROP, DEFAULT_IDLE_TIMEOUT),
+                Long.getLong(HEALTH_CHECK_INTERVAL_SYS_PROP, DEFAULT_HEALTH_CHECK_INTERVAL));
+    }
+
+    @Override
+    public JmxServerConnectionWrapper connect(JmxConnectors connectionName, InetAddress ipAddress, Map<String, String> connectionProperties, RetryCallback retryCallback) throws JmxServerConnectionException {
+        return connect(delegate, connectionName, ipAddress, connectionProperties, retryCallback);
+    }
+
+    /**
+     * Same as {@link #connect(JmxConnectors, InetAddress, Map, RetryCallback)}, but uses the given
+     * <code>connectionManager</code> if a new connection must be established, i.e. to apply the retries
+     * configured for the caller.
+     */
+    public JmxServerConnectionWrapper connect(JmxConnectionManager connectionManager, JmxConnectors connectionName, InetAddress ipAddress, Map<String, String> connectionProperties, RetryCallback retryCallback) throws JmxServerConnectionException {
+        evictIdle();
+
+        final PoolKey key = new PoolKey(connectionName, ipAddress, connectionProperties);
+        while (true) {
+            final Slot slot = slots.computeIfAbsent(key, k -> new Slot());
+            slot.lock.lock();
+            try {
+                if (slot.removed) {
+                    // evicted in the meantime, try again with a new slot
+                    continue;
+                }
+                final long now = clock.getAsLong();
+                PooledConnection connection = slot.connection;
+                if (connection != null && !isUsable(connection, now)) {
+                    LOG.debug("Discarding connection to {}", ipAddress);
+                    discard(slot, connection);
+                    connection = null;
+                }
+                if (connection == null) {
+                    // the slot stays empty if this fails
+                    connection = new PooledConnection(connectionManager.connect(connectionName, ipAddress, connectionProperties, retryCallback), now);
+                    slot.connection = connection;
+                    created.increment();
+                } else {
+                    reused.increment();
+                }
+                connection.leases++;
+                connection.lastUsed = now;
+                return new Lease(slot, connection);
+            } finally {
+                slot.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Closes all connections which were not used within the idle timeout.
+     */
+    public void evictIdle() {
+        final long now = clock.getAsLong();
+        for (Map.Entry<PoolKey, Slot> entry : slots.entrySet()) {
+            final Slot slot = entry.getValue();
+            // do not wait for slots which are currently connecting
+            if (!slot.lock.tryLock()) {
+                continue;
+            }
+            try {
+                final PooledConnection connection = slot.connection;
+                if (connection == null || (connection.leases == 0 && now - connection.lastUsed >= idleTimeout)) {
+                    if (connection != null) {
+                        LOG.debug("Closing idle connection to {}", entry.getKey().ipAddress);
+                        discard(slot, connection);
+                        evicted.increment();
+                    }
+                    slot.removed = true;
+                    slots.remove(entry.getKey(), slot);
+                }
+            } finally {
+                slot.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Closes all connections. Connections which are currently in use are closed once released.
+     */
+    public void close() {
+        for (Map.Entry<PoolKey, Slot> entry : slots.entrySet()) {
+            final Slot slot = entry.getValue();
+            slot.lock.lock();
+            try {
+                if (slot.connection != null) {
+                    discard(slot, slot.connection);
+                }
+                slot.removed = true;
+                slots.remove(entry.getKey(), slot);
+            } finally {
+                slot.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return the time in milliseconds after which an unused connection is closed
+     */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * @return the number of open connections
+     */
+    public int getPoolSize() {
+        return (int) slots.values().stream().filter(s -> s.connection != null).count();
+    }
+
+    /**
+     * @return the number of connections established by the pool
+     */
+    public long getCreated() {
+        return created.sum();
+    }
+
+    /**
+     * @return the number of times an open connection was handed out again
+     */
+    public long getReused() {
+        return reused.sum();
+    }
+
+    /**
+     * @return the number of connections closed because they were idle
+     */
+    public long getEvicted() {
+        return evicted.sum();
+    }
+
+    /**
+     * @return the number of connections discarded because they failed
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    private boolean isUsable(PooledConnection connection, long now) {
+        if (connection.broken) {
+            failed.increment();
+            return false;
+        }
+        if (now - connection.lastChecked < healthCheckInterval) {
+            return true;
+        }
+        try {
+            connection.wrapper.getMBeanServerConnection().getMBeanCount();
+            connection.lastChecked = now;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Health check failed", e);
+            failed.increment();
+            return false;
+        }
+    }
+
+    /**
+     * Removes the connection from the slot and closes it as soon as it is not used anymore.
+     * Must be called while holding the lock of the slot.
+     */
+    private static void discard(Slot slot, PooledConnection connection) {
+        connection.broken = true;
+        if (slot.connection == connection) {
+            slot.connection = null;
+        }
+        if (connection.leases == 0) {
+            connection.close();
+        }
+    }
+
+    private void release(Slot slot, PooledConnection connection) {
+        slot.lock.lock();
+        try {
+            connection.leases--;
+            connection.lastUsed = clock.getAsLong();
+            if (connection.broken) {
+                if (slot.connection == connection) {
+                    // the communication failed while the connection was in use
+                    failed.increment();
+                }
+                discard(slot, connection);
+            }
+        } finally {
+            slot.lock.unlock();
+        }
+    }
+
+    private static class PoolKey {
+        private final JmxConnectors connectionName;
+        private final InetAddress ipAddress;
+        private final Map<String, String> connectionProperties;
+
+        private PoolKey(JmxConnectors connectionName, InetAddress ipAddress, Map<String, String> connectionProperties) {
+            this.connectionName = connectionName;
+            this.ipAddress = ipAddress;
+            this.connectionProperties = connectionProperties != null ? new HashMap<>(connectionProperties) : null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final PoolKey that = (PoolKey) o;
+            return connectionName == that.connectionName
+                    && Objects.equals(ipAddress, that.ipAddress)
+                    && Objects.equals(connectionProperties, that.connectionProperties);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(connectionName, ipAddress, connectionProperties);
+        }
+    }
+
+    private static class Slot {
+        private final ReentrantLock lock = new ReentrantLock();
+        private PooledConnection connection;
+        private boolean removed;
+    }
+
+    private static class PooledConnection {
+        private final JmxServerConnectionWrapper wrapper;
+        private final MBeanServerConnection connection;
+        private int leases;
+        private long lastUsed;
+        private long lastChecked;
+        private volatile boolean broken;
+        private boolean closed;
+
+        private PooledConnection(JmxServerConnectionWrapper wrapper, long now) throws JmxServerConnectionException {
+            if (wrapper == null) {
+                throw new JmxServerConnectionException("Received null connection");
+            }
+            this.wrapper = wrapper;
+            this.lastUsed = now;
+            this.lastChecked = now;
+            final MBeanServerConnection target = wrapper.getMBeanServerConnection();
+            // mark the connection as broken as soon as the communication with the server fails
+            this.connection = (MBeanServerConnection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{MBeanServerConnection.class}, (proxy, method, args) -> {
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    if (e.getCause() instanceof IOException) {
+                        broken = true;
+                    }
+                    throw e.getCause();
+                }
+            });
+        }
+
+        private void close() {
+            if (!closed) {
+                closed = true;
+                wrapper.close();
+            }
+        }
+    }
+
+    private class Lease implements JmxServerConnectionWrapper {
+        private final Slot slot;
+        private final PooledConnection connection;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(Slot slot, PooledConnection connection) {
+            this.slot = slot;
+            this.connection = connection;
+        }
+
+        @Override
+        public MBeanServerConnection getMBeanServerConnection() {
+            return connection.connection;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(slot, connection);
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.jmx.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.config.collectd.jmx.Attrib;
+import org.opennms.netmgt.config.collectd.jmx.JmxCollection;
+import org.opennms.netmgt.config.collectd.jmx.Mbean;
+import org.opennms.netmgt.jmx.JmxCollectorConfig;
+import org.opennms.netmgt.jmx.JmxSampleProcessor;
+import org.opennms.netmgt.jmx.connection.JmxConnectionManager;
+import org.opennms.netmgt.jmx.connection.JmxConnectors;
+import org.opennms.netmgt.jmx.connection.JmxServerConnectionWrapper;
+import org.opennms.netmgt.jmx.impl.connection.connectors.PooledConnectionManager;
+import org.opennms.netmgt.jmx.samples.JmxAttributeSample;
+import org.opennms.netmgt.jmx.samples.JmxCompositeSample;
+
+public class DefaultJmxCollectorTest {
+
+    public interface CounterMBean {
+        int getValue();
+    }
+
+    public static class Counter implements CounterMBean {
+        @Override
+        public int getValue() {
+            return 42;
+        }
+    }
+
+    private final javax.management.MBeanServer platformMBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+    private ObjectName counterA;
+
+    private ObjectName counterB;
+
+    private ObjectName counterLate;
+
+    /**
+     * The number of invocations of each method of the MBeanServerConnection.
+     */
+    private final Map<String, Integer> invocations = new HashMap<>();
+
+    private final List<ObjectName> collected = new ArrayList<>();
+
+    private int connections;
+
+    private DefaultJmxCollector collector;
+
+    @Before
+    public void setUp() throws Exception {
+        counterA = ObjectName.getInstance("org.opennms.test:type=Counter,name=a");
+        counterB = ObjectName.getInstance("org.opennms.test:type=Counter,name=b");
+        counterLate = ObjectName.getInstance("org.opennms.test:type=LateCounter");
+        platformMBeanServer.registerMBean(new Counter(), counterA);
+        platformMBeanServer.registerMBean(new Counter(), counterB);
+
+        final JmxConnectionManager connectionManager = (connectionName, ipAddress, properties, retryCallback) -> {
+            connections++;
+            return new CountingConnection();
+        };
+        collector = new DefaultJmxCollector(new PooledConnectionManager(connectionManager, 60000, 60000), new ObjectNameCache(60000)) {
+            @Override
+            protected JmxConnectionManager createConnectionManager(int retries) {
+                return connectionManager;
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (ObjectName eachObjectName : new ObjectName[]{counterA, counterB, counterLate}) {
+            if (platformMBeanServer.isRegistered(eachObjectName)) {
+                platformMBeanServer.unregisterMBean(eachObjectName);
+            }
+        }
+    }
+
+    @Test
+    public void canReuseConnectionsAndObjectNames() throws Exception {
+        collect();
+        assertEquals(3, collected.size());
+
+        collect();
+        assertEquals(3, collected.size());
+        assertEquals(1, connections);
+        assertEquals(1, (int) invocations.get("queryNames"));
+        assertEquals(1, (int) invocations.get("isRegistered"));
+        assertEquals(6, (int) invocations.get("getAttributes"));
+
+        // the cached name of the removed MBean is skipped
+        platformMBeanServer.unregisterMBean(counterB);
+        collect();
+        assertEquals(2, collected.size());
+
+        collect();
+        assertEquals(2, collected.size());
+        assertEquals(2, (int) invocations.get("queryNames"));
+        assertEquals(1, connections);
+    }
+
+    @Test
+    public void canCollectMBeansRegisteredAfterFirstCollection() throws Exception {
+        final Mbean lateMbean = createMbean(counterLate.getCanonicalName(), "Value");
+        collect(lateMbean);
+        assertEquals(0, collected.size());
+
+        // the missing name is not cached, so the MBean is collected as soon as it is registered
+        platformMBeanServer.registerMBean(new Counter(), counterLate);
+        collect(lateMbean);
+        assertEquals(1, collected.size());
+
+        collect(lateMbean);
+        assertEquals(1, collected.size());
+        assertEquals(2, (int) invocations.get("isRegistered"));
+    }
+
+    private void collect() throws Exception {
+        collect(createMbean("org.opennms.test:type=Counter,*", "Value"),
+                createMbean("java.lang:type=Memory", "ObjectPendingFinalizationCount"));
+    }
+
+    private void collect(Mbean... mbeans) throws Exception {
+        final JmxCollection jmxCollection = new JmxCollection();
+        for (Mbean eachMbean : mbeans) {
+            jmxCollection.addMbean(eachMbean);
+        }
+
+        final JmxCollectorConfig config = new JmxCollectorConfig();
+        config.setAgentAddress("127.0.0.1");
+        config.setConnectionName(JmxConnectors.platform);
+        config.setRetries(1);
+        config.setServiceProperties(new HashMap<>());
+        config.setJmxCollection(jmxCollection);
+
+        collected.clear();
+        collector.collect(config, null, new JmxSampleProcessor() {
+            @Override
+            public void process(JmxAttributeSample attributeSample, ObjectName objectName) {
+                collected.add(objectName);
+            }
+
+            @Override
+            public void process(JmxCompositeSample compositeSample, ObjectName objectName) {
+                collected.add(objectName);
+            }
+        });
+    }
+
+    private static Mbean createMbean(String objectName, String attributeName) {
+        final Attrib attrib = new Attrib();
+        attrib.setName(attributeName);
+        attrib.setAlias(attributeName);
+
+        final Mbean mbean = new Mbean();
+        mbean.setName(objectName);
+        mbean.setObjectname(objectName);
+        mbean.addAttrib(attrib);
+        return mbean;
+    }
+
+    /**
+     * A connection to the platform MBeanServer, which counts the invocations.
+     */
+    private class CountingConnection implements JmxServerConnectionWrapper {
+        private final MBeanServerConnection connection = (MBeanServerConnection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{MBeanServerConnection.class}, (proxy, method, args) -> {
+            invocations.merge(method.getName(), 1, Integer::sum);
+            try {
+                return method.invoke(platformMBeanServer, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+
+        @Override
+        public MBeanServerConnection getMBeanServerConnection() {
+            return connection;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.jmx.impl.connection.connectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServerConnection;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.jmx.connection.JmxConnectors;
+import org.opennms.netmgt.jmx.connection.JmxServerConnectionWrapper;
+
+public class PooledConnectionManagerTest {
+
+    private static final long IDLE_TIMEOUT = 60000;
+
+    private static final long HEALTH_CHECK_INTERVAL = 10000;
+
+    private final InetAddress localhost = InetAddressUtils.getLocalHostAddress();
+
+    private final AtomicLong now = new AtomicLong(1000);
+
+    /**
+     * All connections established using the platform MBeanServer.
+     */
+    private final List<TestConnection> connections = new ArrayList<>();
+
+    private PooledConnectionManager pool;
+
+    @Before
+    public void setUp() {
+        pool = new PooledConnectionManager((connectionName, ipAddress, properties, retryCallback) -> {
+            final TestConnection connection = new TestConnection();
+            connections.add(connection);
+            return connection;
+        }, IDLE_TIMEOUT, HEALTH_CHECK_INTERVAL, now::get);
+    }
+
+    @Test
+    public void canReuseConnections() throws Exception {
+        try (JmxServerConnectionWrapper wrapper = connect()) {
+            wrapper.getMBeanServerConnection().getMBeanCount();
+        }
+        try (JmxServerConnectionWrapper wrapper = connect()) {
+            wrapper.getMBeanServerConnection().getMBeanCount();
+        }
+
+        assertEquals(1, connections.size());
+        assertEquals(false, connections.get(0).closed);
+        assertEquals(1, pool.getCreated());
+        assertEquals(1, pool.getReused());
+
+        // another agent gets another connection
+        pool.connect(JmxConnectors.platform, InetAddressUtils.addr("127.0.0.2"), Collections.emptyMap(), null).close();
+        assertEquals(2, connections.size());
+        assertEquals(2, pool.getPoolSize());
+    }
+
+    @Test
+    public void canReconnectAfterFailure() throws Exception {
+        try (JmxServerConnectionWrapper wrapper = connect()) {
+            connections.get(0).failing = true;
+            try {
+                wrapper.getMBeanServerConnection().getMBeanCount();
+                fail("Invocation should fail.");
+            } catch (IOException e) {
+                // pass
+            }
+            // still in use
+            assertEquals(false, connections.get(0).closed);
+        }
+        assertEquals(true, connections.get(0).closed);
+
+        try (JmxServerConnectionWrapper wrapper = connect()) {
+            wrapper.getMBeanServerConnection().getMBeanCount();
+        }
+        assertEquals(2, connections.size());
+        assertEquals(1, pool.getFailed());
+    }
+
+    @Test
+    public void canCheckHealthAndEvictIdleConnections() throws Exception {
+        connect().close();
+
+        // not checked within the interval
+        connections.get(0).failing = true;
+        now.addAndGet(HEALTH_CHECK_INTERVAL - 1);
+        final JmxServerConnectionWrapper first = connect();
+        first.close();
+        assertEquals(1, connections.size());
+
+        // the health check fails
+        now.addAndGet(HEALTH_CHECK_INTERVAL);
+        final JmxServerConnectionWrapper second = connect();
+        assertNotSame(first.getMBeanServerConnection(), second.getMBeanServerConnection());
+        assertEquals(2, connections.size());
+        assertEquals(true, connections.get(0).closed);
+
+        // connections in use are not evicted
+        now.addAndGet(IDLE_TIMEOUT);
+        pool.evictIdle();
+        assertEquals(1, pool.getPoolSize());
+
+        second.close();
+        now.addAndGet(IDLE_TIMEOUT);
+        pool.evictIdle();
+        assertEquals(0, pool.getPoolSize());
+        assertEquals(1, pool.getEvicted());
+        assertEquals(true, connections.get(1).closed);
+    }
+
+    @Test
+    public void canShareConnections() throws Exception {
+        try (JmxServerConnectionWrapper first = connect(); JmxServerConnectionWrapper second = connect()) {
+            assertSame(first.getMBeanServerConnection(), second.getMBeanServerConnection());
+            first.close();
+            // closing twice must not release the connection of the second lease
+            first.close();
+            pool.close();
+            assertEquals(false, connections.get(0).closed);
+        }
+        assertEquals(true, connections.get(0).closed);
+    }
+
+    private JmxServerConnectionWrapper connect() throws Exception {
+        return pool.connect(JmxConnectors.platform, localhost, Collections.singletonMap("port", "18980"), null);
+    }
+
+    /**
+     * A connection to the platform MBeanServer, which can be made to fail.
+     */
+    private static class TestConnection implements JmxServerConnectionWrapper {
+        private volatile boolean failing;
+        private volatile boolean closed;
+
+        private final MBeanServerConnection connection = (MBeanServerConnection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{MBeanServerConnection.class}, (proxy, method, args) -> {
+            if (failing || closed) {
+                throw new IOException("Connection lost");
+            }
+            try {
+                return method.invoke(ManagementFactory.getPlatformMBeanServer(), args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+
+        @Override
+        public MBeanServerConnection getMBeanServerConnection() {
+            return connection;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
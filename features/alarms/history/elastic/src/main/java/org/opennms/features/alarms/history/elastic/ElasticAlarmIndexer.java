@@ -60,6 +60,8 @@ import org.opennms.features.alarms.history.elastic.tasks.Task;
 import org.opennms.features.alarms.history.elastic.tasks.TaskVisitor;
 import org.opennms.features.jest.client.JestClientWithCircuitBreaker;
 import org.opennms.features.jest.client.bulk.BulkException;
+import org.opennms.features.jest.client.bulk.BulkIndexer;
+import org.opennms.features.jest.client.bulk.BulkIndexerConfig;
 import org.opennms.features.jest.client.bulk.BulkRequest;
 import org.opennms.features.jest.client.bulk.BulkWrapper;
 import org.opennms.features.jest.client.bulk.FailedItem;
@@ -93,6 +95,9 @@ import io.searchbox.core.search.aggregation.TopHitsAggregation;
  * In order to avoid blocking the callbacks issued via the {@link AlarmLifecycleListener} interface while we communicate
  * with ES, the callbacks create tasks which are added to a queue. Tasks on this queue are then handled by a worker thread
  * and processed in the same order as which they were added.
+ *
+ * The documents are handed off to a {@link BulkIndexer}, which indexes them with multiple concurrent bulk requests.
+ * Pending documents are flushed before the deleted alarms are queried, so the deletes always see the latest documents.
  */
 public class ElasticAlarmIndexer implements AlarmLifecycleListener, Runnable {
     private static final Logger LOG = LoggerFactory.getLogger(ElasticAlarmIndexer.class);
@@ -112,6 +117,8 @@ public class ElasticAlarmIndexer implements AlarmLifecycleListener, Runnable {
 
     private int bulkRetryCount = 3;
     private int batchSize = 200;
+    private final BulkIndexerConfig bulkIndexerConfig = new BulkIndexerConfig();
+    private BulkIndexer<AlarmDocumentDTO> bulkIndexer;
     private boolean usePseudoClock = false;
     private boolean indexAllUpdates = false;
 
@@ -172,6 +179,23 @@ public class ElasticAlarmIndexer implements AlarmLifecycleListener, Runnable {
         if (stopped.get()) {
             throw new IllegalStateException("Already destroyed.");
         }
+        bulkIndexerConfig.setInitialBatchSize(batchSize);
+        bulkIndexerConfig.setRetryCount(bulkRetryCount);
+        bulkIndexer = new BulkIndexer<>("ElasticAlarmIndexer", client, bulkIndexerConfig,
+                this::createIndexAction, ElasticAlarmIndexer::estimateSize, new BulkIndexer.Listener<AlarmDocumentDTO>() {
+                    @Override
+                    public void onBulkExecuted(int size, long bytes, long durationMs) {
+                        alarmsToESMetrics.getBulkIndexTimer().update(durationMs, TimeUnit.MILLISECONDS);
+                        alarmsToESMetrics.getBulkIndexSizeHistogram().update(size);
+                    }
+
+                    @Override
+                    public void onFailed(List<FailedItem<AlarmDocumentDTO>> failedItems) {
+                        LOG.error("Indexing {} documents failed. These documents will be lost.", failedItems.size(), failedItems.get(0).getCause());
+                        alarmsToESMetrics.getTasksFailedCounter().inc();
+                    }
+                });
+        alarmsToESMetrics.registerBulkIndexerGauges(bulkIndexer);
         executor.execute(this);
         timer = new java.util.Timer("ElasticAlarmIndexer");
         timer.schedule(new TimerTask() {
@@ -190,6 +214,14 @@ public class ElasticAlarmIndexer implements AlarmLifecycleListener, Runnable {
         stopped.set(true);
         timer.cancel();
         executor.shutdown();
+        if (bulkIndexer != null) {
+            try {
+                bulkIndexer.close();
+            } catch (InterruptedException e) {
+                LOG.warn("Interrupted while waiting for the pending documents to be indexed.");
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
     @Override
@@ -213,13 +245,12 @@ public class ElasticAlarmIndexer implements AlarmLifecycleListener, Runnable {
                         if (LOG.isDebugEnabled()) {
                             LOG.debug("Indexing documents for alarms with ids: {}", docs.stream().map(AlarmDocumentDTO::getId).collect(Collectors.toList()));
                         }
-                        try (final Timer.Context ctx = alarmsToESMetrics.getBulkIndexTimer().time()) {
-                            bulkInsert(docs);
-                            LOG.debug("Successfully indexed {} documents.", docs.size());
-                            alarmsToESMetrics.getBulkIndexSizeHistogram().update(docs.size());
-                        } catch (PersistenceException|IOException e) {
-                            LOG.error("Indexing {} documents failed. These documents will be lost.", docs.size(), e);
-                            alarmsToESMetrics.getTasksFailedCounter().inc();
+                        try {
+                            // Blocks while the bulk indexer is saturated
+                            bulkIndexer.index(docs);
+                        } catch (InterruptedException e) {
+                            LOG.warn("Interrupted while queuing {} documents. These documents will be lost.", docs.size());
+                            Thread.currentThread().interrupt();
                         }
                     }
 
@@ -235,6 +266,15 @@ public class ElasticAlarmIndexer implements AlarmLifecycleListener, Runnable {
                             includeUpdatesAfter = lastbulkDeleteWithNoChanges.get();
                         }
                         LOG.debug("Marking documents without ids in: {} as deleted for time: {}", alarmIdsToKeep, time);
+                        try {
+                            // The query must see the documents which are still pending
+                            if (!bulkIndexer.flush(1, TimeUnit.MINUTES)) {
+                                LOG.warn("Pending documents were not indexed in time. Marking alarms as deleted anyways.");
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
                         try (final Timer.Context ctx = alarmsToESMetrics.getBulkDeleteTimer().time()) {
                             // Find all of the alarms at time X, excluding ids in Y - handle deletes for each of those
                             final List<AlarmDocumentDTO> alarms = new LinkedList<>();
@@ -313,18 +353,56 @@ public class ElasticAlarmIndexer implements AlarmLifecycleListener, Runnable {
         }
     }
 
+    private Index createIndexAction(AlarmDocumentDTO alarmDocument) {
+        final String index = indexStrategy.getIndex(indexSettings, INDEX_NAME, Instant.ofEpochMilli(alarmDocument.getUpdateTime()));
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Adding index action on index: {} with payload: {}",
+                    index, gson.toJson(alarmDocument));
+        }
+        return new Index.Builder(alarmDocument)
+                .index(index)
+                .build();
+    }
+
+    /**
+     * Roughly estimates the size of the given document, without serializing it.
+     */
+    private static long estimateSize(AlarmDocumentDTO alarmDocument) {
+        long size = 1024;
+        size += length(alarmDocument.getReductionKey());
+        size += length(alarmDocument.getDescription());
+        size += length(alarmDocument.getLogMessage());
+        size += length(alarmDocument.getOperatorInstructions());
+        size += length(alarmDocument.getMouseOverText());
+        if (alarmDocument.getAttributes() != null) {
+            for (Map.Entry<String, String> attribute : alarmDocument.getAttributes().entrySet()) {
+                size += length(attribute.getKey()) + length(attribute.getValue()) + 8;
+            }
+        }
+        if (alarmDocument.getRelatedAlarmReductionKeys() != null) {
+            for (String reductionKey : alarmDocument.getRelatedAlarmReductionKeys()) {
+                size += length(reductionKey) + 8;
+            }
+        }
+        if (alarmDocument.getRelatedAlarms() != null) {
+            size += alarmDocument.getRelatedAlarms().size() * 256L;
+        }
+        if (alarmDocument.getLastEvent() != null) {
+            size += length(alarmDocument.getLastEvent().getDescription());
+            size += length(alarmDocument.getLastEvent().getLogMessage());
+        }
+        return size;
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
     public void bulkInsert(List<AlarmDocumentDTO> alarmDocuments) throws PersistenceException, IOException {
         final BulkRequest<AlarmDocumentDTO> bulkRequest = new BulkRequest<>(client, alarmDocuments, (documents) -> {
             final Bulk.Builder bulkBuilder = new Bulk.Builder();
-            for (AlarmDocumentDTO alarmDocument : alarmDocuments) {
-                final String index = indexStrategy.getIndex(indexSettings, INDEX_NAME, Instant.ofEpochMilli(alarmDocument.getUpdateTime()));
-                final Index.Builder indexBuilder = new Index.Builder(alarmDocument)
-                        .index(index);
-                if (LOG.isTraceEnabled()) {
-                    LOG.trace("Adding index action on index: {} with payload: {}",
-                            index, gson.toJson(alarmDocument));
-                }
-                bulkBuilder.addAction(indexBuilder.build());
+            for (AlarmDocumentDTO alarmDocument : documents) {
+                bulkBuilder.addAction(createIndexAction(alarmDocument));
             }
             return new BulkWrapper(bulkBuilder);
         }, bulkRetryCount);
@@ -502,6 +580,26 @@ public class ElasticAlarmIndexer implements AlarmLifecycleListener, Runnable {
         this.batchSize = batchSize;
     }
 
+    public void setBulkWorkers(int bulkWorkers) {
+        bulkIndexerConfig.setWorkers(bulkWorkers);
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        bulkIndexerConfig.setMaxBatchSize(maxBatchSize);
+    }
+
+    public void setMaxBatchBytes(long maxBatchBytes) {
+        bulkIndexerConfig.setMaxBatchBytes(maxBatchBytes);
+    }
+
+    public void setTargetBulkLatencyMs(long targetBulkLatencyMs) {
+        bulkIndexerConfig.setTargetLatencyMs(targetBulkLatencyMs);
+    }
+
+    public void setBulkQueueCapacity(int bulkQueueCapacity) {
+        bulkIndexerConfig.setQueueCapacity(bulkQueueCapacity);
+    }
+
     public void setAlarmReindexDurationMs(long alarmReindexDurationMs) {
         this.alarmReindexDurationMs = alarmReindexDurationMs;
     }
@@ -24,6 +24,7 @@ package org.opennms.features.alarms.history.elastic;
 import java.util.concurrent.BlockingQueue;
 
 import org.opennms.features.alarms.history.elastic.tasks.Task;
+import org.opennms.features.jest.client.bulk.BulkIndexer;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
@@ -37,8 +38,10 @@ public class ElasticAlarmMetrics {
     private final Timer bulkIndexTimer;
     private final Timer bulkDeleteTimer;
     private final Counter tasksFailedCounter;
+    private final MetricRegistry metrics;
 
     public ElasticAlarmMetrics(MetricRegistry metrics, BlockingQueue<Task> taskQueue) {
+        this.metrics = metrics;
         bulkIndexSizeHistogram = metrics.histogram("bulk-index-size");
         bulkIndexTimer = metrics.timer("bulk-index-timer");
         bulkDeleteTimer = metrics.timer("bulk-delete-timer");
@@ -46,6 +49,16 @@ public class ElasticAlarmMetrics {
         metrics.register("task-queue-size", (Gauge<Integer>) taskQueue::size);
     }
 
+    public void registerBulkIndexerGauges(BulkIndexer<?> bulkIndexer) {
+        metrics.register("bulk-queue-size", (Gauge<Integer>) bulkIndexer::getQueueSize);
+        metrics.register("bulk-active-workers", (Gauge<Integer>) bulkIndexer::getActiveWorkers);
+        metrics.register("bulk-batch-size", (Gauge<Integer>) bulkIndexer::getBatchSize);
+        metrics.register("bulk-last-latency-ms", (Gauge<Long>) bulkIndexer::getLastLatencyMs);
+        metrics.register("bulk-producer-waits", (Gauge<Long>) bulkIndexer::getProducerWaits);
+        metrics.register("bulk-documents-retried", (Gauge<Long>) bulkIndexer::getRetriedCount);
+        metrics.register("bulk-documents-failed", (Gauge<Long>) bulkIndexer::getFailedCount);
+    }
+
     public Histogram getBulkIndexSizeHistogram() {
         return bulkIndexSizeHistogram;
     }
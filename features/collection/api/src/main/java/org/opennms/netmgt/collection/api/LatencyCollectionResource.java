@@ -40,6 +40,7 @@ public class LatencyCollectionResource implements CollectionResource {
     private final String m_ipAddress;
     private final String m_location;
     private final Map<AttributeGroupType, AttributeGroup> m_attributeGroups = Maps.newLinkedHashMap();
+    private TimeKeeper m_timeKeeper;
 
     /**
      * <p>Constructor for LatencyCollectionResource.</p>
@@ -193,8 +194,18 @@ public class LatencyCollectionResource implements CollectionResource {
         return ResourcePath.get(m_ipAddress);
     }
 
+    /**
+     * Sets the time keeper used to stamp the persisted samples. Without one, the
+     * samples are stamped with the time at which they are persisted.
+     *
+     * @param timeKeeper a {@link TimeKeeper} object.
+     */
+    public void setTimeKeeper(TimeKeeper timeKeeper) {
+        m_timeKeeper = timeKeeper;
+    }
+
     @Override
     public TimeKeeper getTimeKeeper() {
-        return null;
+        return m_timeKeeper;
     }
 }
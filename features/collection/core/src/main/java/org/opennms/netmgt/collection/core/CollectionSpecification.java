@@ -27,6 +27,7 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 import org.opennms.core.mate.api.EmptyScope;
@@ -283,50 +284,11 @@ public class CollectionSpecification {
     public CollectionSet collect(CollectionAgent agent) throws CollectionException {
         m_instrumentation.beginCollectorCollect(m_package.getName(), agent.getNodeId(), agent.getHostAddress(), m_svcName);
         try {
-            CollectorRequestBuilder requestBuilder = m_locationAwareCollectorClient.collect();
-            requestBuilder.withAgent(agent)
-                    .withAttributes(getPropertyMap())
-                    .withTimeToLive(getService().getInterval());
-            if(!getCollector().getClass().getCanonicalName().equals(collectorImplClassName)) {
-                requestBuilder.withCollectorClassName(collectorImplClassName);
-            } else {
-                requestBuilder.withCollector(getCollector());
-            }
-            final CollectionSet set = requestBuilder.execute().get();
-
-            // There are collector implementations that never throw an exception just return a collection failed
-            if (CollectionStatus.FAILED.equals(set.getStatus())) {
-                m_instrumentation.reportCollectionException(m_package.getName(), agent.getNodeId(), agent.getHostAddress(), m_svcName, new CollectionFailed(CollectionStatus.FAILED));
-            }
+            final CollectionSet set = buildCollectRequest(agent).execute().get();
+            reportCollectionStatus(agent, set);
             return set;
         } catch (InterruptedException|ExecutionException e) {
-            final CollectionException ce = RpcExceptionUtils.handleException(e, new RpcExceptionHandler<CollectionException>() {
-                @Override
-                public CollectionException onInterrupted(Throwable t) {
-                    return new CollectionUnknown("Interrupted.", t);
-                }
-
-                @Override
-                public CollectionException onTimedOut(Throwable t) {
-                    return new CollectionUnknown("Request timed out.", t);
-                }
-
-                @Override
-                public CollectionException onRejected(Throwable t) {
-                    return new CollectionUnknown("Request rejected.", e);
-                }
-
-                @Override
-                public CollectionException onUnknown(Throwable t) {
-                    if (t instanceof CollectionException) {
-                        return (CollectionException)t;
-                    } else if (t.getCause() != null && t.getCause() instanceof CollectionException) {
-                        return (CollectionException)t.getCause();
-                    }
-                    return new CollectionException("Collection failed : " + t.getClass().getName() +
-                            ": " + t.getMessage(), t);
-                }
-            });
+            final CollectionException ce = toCollectionException(e);
             m_instrumentation.reportCollectionException(m_package.getName(), agent.getNodeId(), agent.getHostAddress(), m_svcName, ce);
             throw ce;
         } finally {
@@ -334,6 +296,97 @@ public class CollectionSpecification {
         }
     }
 
+    /**
+     * Issues the collection request without waiting for the result.
+     *
+     * The returned future is completed on the thread that finishes the collection, and
+     * completes exceptionally with a {@link CollectionException} if the collection failed.
+     * The request cannot be cancelled, the future completes once the request completed or
+     * exceeded its time to live.
+     *
+     * @param agent a {@link org.opennms.netmgt.collection.api.CollectionAgent} object.
+     * @return the pending {@link org.opennms.netmgt.collection.api.CollectionSet}
+     */
+    public CompletableFuture<CollectionSet> collectAsync(CollectionAgent agent) {
+        m_instrumentation.beginCollectorCollect(m_package.getName(), agent.getNodeId(), agent.getHostAddress(), m_svcName);
+        final CompletableFuture<CollectionSet> future = new CompletableFuture<CollectionSet>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                // Completing the future would not stop the request
+                return false;
+            }
+        };
+        try {
+            buildCollectRequest(agent).execute().whenComplete((set, ex) -> {
+                m_instrumentation.endCollectorCollect(m_package.getName(), agent.getNodeId(), agent.getHostAddress(), m_svcName);
+                if (ex != null) {
+                    final CollectionException ce = toCollectionException(ex);
+                    m_instrumentation.reportCollectionException(m_package.getName(), agent.getNodeId(), agent.getHostAddress(), m_svcName, ce);
+                    future.completeExceptionally(ce);
+                } else {
+                    reportCollectionStatus(agent, set);
+                    future.complete(set);
+                }
+            });
+        } catch (RuntimeException e) {
+            m_instrumentation.endCollectorCollect(m_package.getName(), agent.getNodeId(), agent.getHostAddress(), m_svcName);
+            final CollectionException ce = toCollectionException(e);
+            m_instrumentation.reportCollectionException(m_package.getName(), agent.getNodeId(), agent.getHostAddress(), m_svcName, ce);
+            future.completeExceptionally(ce);
+        }
+        return future;
+    }
+
+    private CollectorRequestBuilder buildCollectRequest(CollectionAgent agent) {
+        CollectorRequestBuilder requestBuilder = m_locationAwareCollectorClient.collect();
+        requestBuilder.withAgent(agent)
+                .withAttributes(getPropertyMap())
+                .withTimeToLive(getService().getInterval());
+        if(!getCollector().getClass().getCanonicalName().equals(collectorImplClassName)) {
+            requestBuilder.withCollectorClassName(collectorImplClassName);
+        } else {
+            requestBuilder.withCollector(getCollector());
+        }
+        return requestBuilder;
+    }
+
+    private void reportCollectionStatus(CollectionAgent agent, CollectionSet set) {
+        // There are collector implementations that never throw an exception just return a collection failed
+        if (set != null && CollectionStatus.FAILED.equals(set.getStatus())) {
+            m_instrumentation.reportCollectionException(m_package.getName(), agent.getNodeId(), agent.getHostAddress(), m_svcName, new CollectionFailed(CollectionStatus.FAILED));
+        }
+    }
+
+    private static CollectionException toCollectionException(Throwable e) {
+        return RpcExceptionUtils.handleException(e, new RpcExceptionHandler<CollectionException>() {
+            @Override
+            public CollectionException onInterrupted(Throwable t) {
+                return new CollectionUnknown("Interrupted.", t);
+            }
+
+            @Override
+            public CollectionException onTimedOut(Throwable t) {
+                return new CollectionUnknown("Request timed out.", t);
+            }
+
+            @Override
+            public CollectionException onRejected(Throwable t) {
+                return new CollectionUnknown("Request rejected.", e);
+            }
+
+            @Override
+            public CollectionException onUnknown(Throwable t) {
+                if (t instanceof CollectionException) {
+                    return (CollectionException)t;
+                } else if (t.getCause() != null && t.getCause() instanceof CollectionException) {
+                    return (CollectionException)t.getCause();
+                }
+                return new CollectionException("Collection failed : " + t.getClass().getName() +
+                        ": " + t.getMessage(), t);
+            }
+        });
+    }
+
     /**
      * <p>scheduledOutage</p>
      *
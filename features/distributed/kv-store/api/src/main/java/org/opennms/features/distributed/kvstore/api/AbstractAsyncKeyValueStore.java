@@ -21,6 +21,7 @@
  */
 package org.opennms.features.distributed.kvstore.api;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -77,6 +78,23 @@ public abstract class AbstractAsyncKeyValueStore<T> extends AbstractKeyValueStor
         return CompletableFuture.supplyAsync(() -> get(key, context), executor);
     }
 
+    @Override
+    public CompletableFuture<Long> putManyAsync(Map<String, T> values, String context,
+                                                Map<String, Integer> ttlsInSeconds) {
+        Objects.requireNonNull(values);
+        Objects.requireNonNull(context);
+
+        return CompletableFuture.supplyAsync(() -> putMany(values, context, ttlsInSeconds), executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, T>> getManyAsync(Collection<String> keys, String context) {
+        Objects.requireNonNull(keys);
+        Objects.requireNonNull(context);
+
+        return CompletableFuture.supplyAsync(() -> getMany(keys, context), executor);
+    }
+
     @Override
     public final CompletableFuture<Optional<Optional<T>>> getIfStaleAsync(String key, String context,
                                                                           long timestamp) {
@@ -21,10 +21,16 @@
  */
 package org.opennms.features.distributed.kvstore.api;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalLong;
 import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 /**
  * Abstract representation of a simple key-value store.
@@ -67,6 +73,51 @@ public interface KeyValueStore<T> {
      */
     Optional<T> get(String key, String context);
 
+    /**
+     * Put multiple values in a single operation.
+     * <p>
+     * The default implementation puts the values one by one. Implementations should override this with a native
+     * multi-key operation.
+     *
+     * @param values        the values to put keyed by their key
+     * @param context       a context used to differentiate between keys with the same name (forms a compound key)
+     * @param ttlsInSeconds the time to live in seconds for each key, keys without an entry and all keys if null have no
+     *                      ttl
+     * @return the timestamp the values were persisted with
+     */
+    default long putMany(Map<String, T> values, String context, Map<String, Integer> ttlsInSeconds) {
+        Objects.requireNonNull(values);
+        Objects.requireNonNull(context);
+
+        long timestamp = 0;
+        for (Map.Entry<String, T> entry : values.entrySet()) {
+            Integer ttl = ttlsInSeconds != null ? ttlsInSeconds.get(entry.getKey()) : null;
+            timestamp = Math.max(timestamp, put(entry.getKey(), entry.getValue(), context, ttl));
+        }
+        return timestamp;
+    }
+
+    /**
+     * Get multiple values in a single operation.
+     * <p>
+     * The default implementation gets the values one by one. Implementations should override this with a native
+     * multi-key operation.
+     *
+     * @param keys    the keys to get
+     * @param context a context used to differentiate between keys with the same name (forms a compound key)
+     * @return a map containing the values of the keys that were present
+     */
+    default Map<String, T> getMany(Collection<String> keys, String context) {
+        Objects.requireNonNull(keys);
+        Objects.requireNonNull(context);
+
+        Map<String, T> resultMap = new HashMap<>();
+        for (String key : new LinkedHashSet<>(keys)) {
+            get(key, context).ifPresent(value -> resultMap.put(key, value));
+        }
+        return resultMap;
+    }
+
     /**
      * @param context   a context used to differentiate between keys with the same name (forms a compound key)
      * @param timestamp the timestamp of the last known state such that if an record with a more recent timestamp is
@@ -126,6 +177,51 @@ public interface KeyValueStore<T> {
      */
     CompletableFuture<Optional<T>> getAsync(String key, String context);
 
+    /**
+     * Put multiple values in a single operation.
+     *
+     * @param values        the values to put keyed by their key
+     * @param context       a context used to differentiate between keys with the same name (forms a compound key)
+     * @param ttlsInSeconds the time to live in seconds for each key, keys without an entry and all keys if null have no
+     *                      ttl
+     * @return a future containing the timestamp the values were persisted with
+     */
+    default CompletableFuture<Long> putManyAsync(Map<String, T> values, String context,
+                                                 Map<String, Integer> ttlsInSeconds) {
+        Objects.requireNonNull(values);
+        Objects.requireNonNull(context);
+
+        List<CompletableFuture<Long>> futures = values.entrySet().stream()
+                .map(entry -> putAsync(entry.getKey(), entry.getValue(), context,
+                        ttlsInSeconds != null ? ttlsInSeconds.get(entry.getKey()) : null))
+                .collect(Collectors.toList());
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(v -> futures.stream().mapToLong(CompletableFuture::join).max().orElse(0L));
+    }
+
+    /**
+     * Get multiple values in a single operation.
+     *
+     * @param keys    the keys to get
+     * @param context a context used to differentiate between keys with the same name (forms a compound key)
+     * @return a future containing a map of the values of the keys that were present
+     */
+    default CompletableFuture<Map<String, T>> getManyAsync(Collection<String> keys, String context) {
+        Objects.requireNonNull(keys);
+        Objects.requireNonNull(context);
+
+        Map<String, CompletableFuture<Optional<T>>> futures = new HashMap<>();
+        for (String key : keys) {
+            futures.computeIfAbsent(key, k -> getAsync(k, context));
+        }
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+                .thenApply(v -> {
+                    Map<String, T> resultMap = new HashMap<>();
+                    futures.forEach((key, future) -> future.join().ifPresent(value -> resultMap.put(key, value)));
+                    return resultMap;
+                });
+    }
+
     /**
      * @param context   a context used to differentiate between keys with the same name (forms a compound key)
      * @param timestamp the timestamp of the last known state such that if an record with a more recent timestamp is
@@ -21,7 +21,9 @@
  */
 package org.opennms.features.distributed.kvstore.api;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -57,6 +59,23 @@ public final class SerializingBlobStore<V> {
         return blobStore.get(key, context).map(deserializer::deserialize);
     }
 
+    public long putMany(Map<String, V> values, String context, Map<String, Integer> ttlsInSeconds) {
+        return blobStore.putMany(serializeMap(values), context, ttlsInSeconds);
+    }
+
+    public Map<String, V> getMany(Collection<String> keys, String context) {
+        return deserializeMap(blobStore.getMany(keys, context));
+    }
+
+    public CompletableFuture<Long> putManyAsync(Map<String, V> values, String context,
+                                                Map<String, Integer> ttlsInSeconds) {
+        return blobStore.putManyAsync(serializeMap(values), context, ttlsInSeconds);
+    }
+
+    public CompletableFuture<Map<String, V>> getManyAsync(Collection<String> keys, String context) {
+        return blobStore.getManyAsync(keys, context).thenApply(this::deserializeMap);
+    }
+
     public Optional<Optional<V>> getIfStale(String key, String context, long timestamp) {
         return blobStore.getIfStale(key, context, timestamp).map(o -> o.map(deserializer::deserialize));
     }
@@ -85,6 +104,12 @@ public final class SerializingBlobStore<V> {
         return blobStore.enumerateContextAsync(context).thenApply(this::deserializeMap);
     }
 
+    private Map<String, byte[]> serializeMap(Map<String, V> inputMap) {
+        Map<String, byte[]> serializedMap = new LinkedHashMap<>();
+        inputMap.forEach((key, value) -> serializedMap.put(key, serializer.serialize(value)));
+        return serializedMap;
+    }
+
     private Map<String, V> deserializeMap(Map<String, byte[]> inputMap) {
         return Collections.unmodifiableMap(inputMap.entrySet()
                 .stream()
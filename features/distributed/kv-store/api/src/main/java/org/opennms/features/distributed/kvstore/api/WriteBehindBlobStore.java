@@ -0,0 +1,385 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.features.distributed.kvstore.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A {@link BlobStore} that buffers puts and writes them to the wrapped store in the background.
+ * <p>
+ * Puts for the same key are coalesced so that only the latest value of a key is written per flush. The buffered
+ * values are written with {@link BlobStore#putMany} once per flush interval, or by the putting thread once the
+ * number of buffered keys reaches the configured maximum. Reads see the buffered values.
+ * <p>
+ * The timestamp returned by a put is the time the value was buffered. The wrapped store assigns its own timestamp when
+ * the value is written, so a caller comparing its timestamp with {@link #getIfStale} may read a value it already has
+ * once after a flush.
+ * <p>
+ * Deletes and truncations wait for a running flush, so that a value flushed concurrently cannot be written after
+ * it was deleted.
+ * <p>
+ * Buffered values are lost if the process dies before they are flushed. Write-behind is disabled if the flush
+ * interval is not positive, in which case all calls go straight to the wrapped store.
+ */
+public class WriteBehindBlobStore extends AbstractKeyValueStore<byte[]> implements BlobStore, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBehindBlobStore.class);
+
+    private final BlobStore delegate;
+    private final int maxPendingWrites;
+    private final ScheduledExecutorService flushExecutor;
+
+    /**
+     * The buffered writes keyed by context and key.
+     */
+    private final Map<String, Map<String, PendingWrite>> pendingWrites = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingWriteCount = new AtomicInteger();
+    private final Object flushLock = new Object();
+
+    private static class PendingWrite {
+        private final byte[] value;
+        private final Integer ttlInSeconds;
+        private final long timestamp;
+
+        private PendingWrite(byte[] value, Integer ttlInSeconds, long timestamp) {
+            this.value = value;
+            this.ttlInSeconds = ttlInSeconds;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * @param delegate         the store the values are written to
+     * @param flushIntervalMs  the interval in which the buffered values are written, write-behind is disabled if not
+     *                         positive
+     * @param maxPendingWrites the number of buffered keys after which the putting thread writes them
+     */
+    public WriteBehindBlobStore(BlobStore delegate, long flushIntervalMs, int maxPendingWrites) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.maxPendingWrites = maxPendingWrites;
+
+        if (flushIntervalMs > 0) {
+            flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("kvstore-write-behind-%d")
+                    .setDaemon(true)
+                    .build());
+            flushExecutor.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            flushExecutor = null;
+        }
+    }
+
+    private boolean isEnabled() {
+        return flushExecutor != null;
+    }
+
+    @Override
+    public long put(String key, byte[] value, String context, Integer ttlInSeconds) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(context);
+
+        if (!isEnabled()) {
+            return delegate.put(key, value, context, ttlInSeconds);
+        }
+
+        long timestamp = System.currentTimeMillis();
+        buffer(key, new PendingWrite(value, ttlInSeconds, timestamp), context);
+        flushIfFull();
+        return timestamp;
+    }
+
+    @Override
+    public long putMany(Map<String, byte[]> values, String context, Map<String, Integer> ttlsInSeconds) {
+        Objects.requireNonNull(values);
+        Objects.requireNonNull(context);
+
+        if (!isEnabled()) {
+            return delegate.putMany(values, context, ttlsInSeconds);
+        }
+
+        long timestamp = System.currentTimeMillis();
+        values.forEach((key, value) -> buffer(key, new PendingWrite(Objects.requireNonNull(value),
+                ttlsInSeconds != null ? ttlsInSeconds.get(key) : null, timestamp), context));
+        flushIfFull();
+        return timestamp;
+    }
+
+    private void buffer(String key, PendingWrite write, String context) {
+        if (pendingWrites.computeIfAbsent(context, c -> new ConcurrentHashMap<>()).put(key, write) == null) {
+            pendingWriteCount.incrementAndGet();
+        }
+    }
+
+    private void flushIfFull() {
+        if (pendingWriteCount.get() >= maxPendingWrites) {
+            flush();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to write {} buffered values. Retrying with the next flush.", pendingWriteCount.get(), e);
+        }
+    }
+
+    /**
+     * Writes all buffered values to the wrapped store.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            for (Map.Entry<String, Map<String, PendingWrite>> contextEntry : pendingWrites.entrySet()) {
+                String context = contextEntry.getKey();
+                Map<String, PendingWrite> writes = new HashMap<>(contextEntry.getValue());
+                if (writes.isEmpty()) {
+                    continue;
+                }
+
+                Map<String, byte[]> values = new HashMap<>();
+                Map<String, Integer> ttls = new HashMap<>();
+                writes.forEach((key, write) -> {
+                    values.put(key, write.value);
+                    if (write.ttlInSeconds != null) {
+                        ttls.put(key, write.ttlInSeconds);
+                    }
+                });
+                delegate.putMany(values, context, ttls);
+
+                // Only remove the writes that were flushed, newer puts for the same keys stay buffered
+                writes.forEach((key, write) -> {
+                    if (contextEntry.getValue().remove(key, write)) {
+                        pendingWriteCount.decrementAndGet();
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * @return the number of buffered keys
+     */
+    public int getPendingWriteCount() {
+        return pendingWriteCount.get();
+    }
+
+    private PendingWrite getPendingWrite(String key, String context) {
+        Map<String, PendingWrite> writes = pendingWrites.get(context);
+        return writes != null ? writes.get(key) : null;
+    }
+
+    /**
+     * Must be called while holding the flush lock.
+     */
+    private void discardPendingWrite(String key, String context) {
+        Map<String, PendingWrite> writes = pendingWrites.get(context);
+        if (writes != null && writes.remove(key) != null) {
+            pendingWriteCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Must be called while holding the flush lock. The writes are removed one by one instead of dropping the map of
+     * the context, so that a concurrent put is either discarded or kept, but always counted.
+     */
+    private void discardPendingWrites(String context) {
+        Map<String, PendingWrite> writes = pendingWrites.get(context);
+        if (writes != null) {
+            for (String key : writes.keySet()) {
+                if (writes.remove(key) != null) {
+                    pendingWriteCount.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    @Override
+    public Optional<byte[]> get(String key, String context) {
+        PendingWrite write = getPendingWrite(key, context);
+        return write != null ? Optional.of(write.value) : delegate.get(key, context);
+    }
+
+    @Override
+    public Map<String, byte[]> getMany(Collection<String> keys, String context) {
+        Map<String, byte[]> resultMap = new HashMap<>();
+        Collection<String> missingKeys = new ArrayList<>();
+        for (String key : keys) {
+            PendingWrite write = getPendingWrite(key, context);
+            if (write != null) {
+                resultMap.put(key, write.value);
+            } else {
+                missingKeys.add(key);
+            }
+        }
+        if (!missingKeys.isEmpty()) {
+            delegate.getMany(missingKeys, context).forEach(resultMap::putIfAbsent);
+        }
+        return resultMap;
+    }
+
+    @Override
+    public Optional<Optional<byte[]>> getIfStale(String key, String context, long timestamp) {
+        PendingWrite write = getPendingWrite(key, context);
+        if (write == null) {
+            return delegate.getIfStale(key, context, timestamp);
+        }
+        return timestamp >= write.timestamp ? Optional.of(Optional.empty()) : Optional.of(Optional.of(write.value));
+    }
+
+    @Override
+    public OptionalLong getLastUpdated(String key, String context) {
+        PendingWrite write = getPendingWrite(key, context);
+        return write != null ? OptionalLong.of(write.timestamp) : delegate.getLastUpdated(key, context);
+    }
+
+    @Override
+    public Map<String, byte[]> enumerateContext(String context) {
+        return withPendingWrites(delegate.enumerateContext(context), context);
+    }
+
+    private Map<String, byte[]> withPendingWrites(Map<String, byte[]> values, String context) {
+        Map<String, PendingWrite> writes = pendingWrites.get(context);
+        if (writes == null || writes.isEmpty()) {
+            return values;
+        }
+        Map<String, byte[]> resultMap = new HashMap<>(values);
+        writes.forEach((key, write) -> resultMap.put(key, write.value));
+        return resultMap;
+    }
+
+    @Override
+    public void delete(String key, String context) {
+        synchronized (flushLock) {
+            discardPendingWrite(key, context);
+            delegate.delete(key, context);
+        }
+    }
+
+    @Override
+    public void truncateContext(String context) {
+        synchronized (flushLock) {
+            discardPendingWrites(context);
+            delegate.truncateContext(context);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Long> putAsync(String key, byte[] value, String context, Integer ttlInSeconds) {
+        if (!isEnabled()) {
+            return delegate.putAsync(key, value, context, ttlInSeconds);
+        }
+        try {
+            return CompletableFuture.completedFuture(put(key, value, context, ttlInSeconds));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Long> putManyAsync(Map<String, byte[]> values, String context,
+                                                Map<String, Integer> ttlsInSeconds) {
+        if (!isEnabled()) {
+            return delegate.putManyAsync(values, context, ttlsInSeconds);
+        }
+        try {
+            return CompletableFuture.completedFuture(putMany(values, context, ttlsInSeconds));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Optional<byte[]>> getAsync(String key, String context) {
+        PendingWrite write = getPendingWrite(key, context);
+        return write != null ? CompletableFuture.completedFuture(Optional.of(write.value)) :
+                delegate.getAsync(key, context);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Optional<byte[]>>> getIfStaleAsync(String key, String context, long timestamp) {
+        PendingWrite write = getPendingWrite(key, context);
+        return write != null ? CompletableFuture.completedFuture(getIfStale(key, context, timestamp)) :
+                delegate.getIfStaleAsync(key, context, timestamp);
+    }
+
+    @Override
+    public CompletableFuture<OptionalLong> getLastUpdatedAsync(String key, String context) {
+        PendingWrite write = getPendingWrite(key, context);
+        return write != null ? CompletableFuture.completedFuture(OptionalLong.of(write.timestamp)) :
+                delegate.getLastUpdatedAsync(key, context);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, byte[]>> enumerateContextAsync(String context) {
+        return delegate.enumerateContextAsync(context).thenApply(values -> withPendingWrites(values, context));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAsync(String key, String context) {
+        synchronized (flushLock) {
+            discardPendingWrite(key, context);
+            return delegate.deleteAsync(key, context);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> truncateContextAsync(String context) {
+        synchronized (flushLock) {
+            discardPendingWrites(context);
+            return delegate.truncateContextAsync(context);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return isEnabled() ? delegate.getName() + " (write-behind)" : delegate.getName();
+    }
+
+    /**
+     * Stops the background flushes and writes the buffered values.
+     */
+    @Override
+    public void close() {
+        if (isEnabled()) {
+            flushExecutor.shutdown();
+            flush();
+        }
+    }
+}
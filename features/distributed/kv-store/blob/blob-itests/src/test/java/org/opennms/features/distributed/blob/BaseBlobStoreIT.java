@@ -30,6 +30,9 @@ import static org.junit.Assert.fail;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -127,6 +130,41 @@ public abstract class BaseBlobStoreIT {
                 .ifPresent(f -> fail("Should not have found empty optional"));
     }
 
+    @Test
+    public void canPutAndGetMany() throws InterruptedException, ExecutionException, TimeoutException {
+        String context = "canPutAndGetMany";
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < 1500; i++) {
+            values.put(Integer.toString(i), "value" + i);
+        }
+
+        serializingBlobStore.putMany(values, context, Collections.singletonMap("0", 3600));
+        assertThat(serializingBlobStore.getMany(values.keySet(), context), equalTo(values));
+
+        // Keys that do not exist are omitted
+        Map<String, String> result = serializingBlobStore.getManyAsync(Arrays.asList("1", "missing"), context)
+                .get(5, TimeUnit.SECONDS);
+        assertThat(result, equalTo(Collections.singletonMap("1", "value1")));
+
+        serializingBlobStore.putManyAsync(Collections.singletonMap("1", "updated"), context, null)
+                .get(5, TimeUnit.SECONDS);
+        assertThat(serializingBlobStore.get("1", context).get(), equalTo("updated"));
+    }
+
+    @Test
+    public void keysExpireWithPutMany() throws InterruptedException {
+        String context = "keysExpireWithPutMany";
+        int ttl = 1;
+        Map<String, String> values = new HashMap<>();
+        values.put("expires", "test");
+        values.put("remains", "test");
+
+        serializingBlobStore.putMany(values, context, Collections.singletonMap("expires", ttl));
+        assertThat(serializingBlobStore.getMany(values.keySet(), context).keySet(), hasSize(2));
+        Thread.sleep(ttl * 1000);
+        assertThat(serializingBlobStore.getMany(values.keySet(), context).keySet(), equalTo(Collections.singleton("remains")));
+    }
+
     @Test
     public void canDetermineIfLatest() throws InterruptedException {
         String key = "tesT";
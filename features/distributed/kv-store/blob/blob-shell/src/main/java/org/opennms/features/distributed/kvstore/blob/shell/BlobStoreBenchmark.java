@@ -23,14 +23,16 @@ package org.opennms.features.distributed.kvstore.blob.shell;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.BiConsumer;
-import java.util.function.BiFunction;
 import java.util.function.Supplier;
 
 import org.apache.karaf.shell.api.action.Action;
@@ -40,15 +42,16 @@ import org.apache.karaf.shell.api.action.Option;
 import org.apache.karaf.shell.api.action.lifecycle.Reference;
 import org.apache.karaf.shell.api.action.lifecycle.Service;
 import org.opennms.features.distributed.kvstore.api.BlobStore;
+import org.opennms.features.distributed.kvstore.api.WriteBehindBlobStore;
 
-import com.codahale.metrics.ConsoleReporter;
 import com.codahale.metrics.Histogram;
-import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.UniformReservoir;
 
 import io.github.resilience4j.retry.Retry;
 import io.github.resilience4j.retry.RetryConfig;
 
-@Command(scope = "opennms", name = "kv-benchmark-blob", description = "Benchmark the blob store's throughput")
+@Command(scope = "opennms", name = "kv-benchmark-blob", description = "Benchmark the blob store's throughput and latency")
 @Service
 public class BlobStoreBenchmark implements Action {
     @Reference
@@ -66,16 +69,32 @@ public class BlobStoreBenchmark implements Action {
     @Option(name = "-a", aliases = "--async", description = "Whether or not to use async")
     private boolean async = false;
 
+    @Option(name = "-b", aliases = "--batch-size", description = "The number of keys per operation, uses the multi-key operations if greater than 1")
+    private int batchSize = 1;
+
+    @Option(name = "-c", aliases = "--concurrency", description = "The number of threads issuing synchronous operations, or the number of asynchronous operations in flight")
+    private int concurrency = 1;
+
+    @Option(name = "-w", aliases = "--warmup", description = "The number of records written and read before measuring")
+    private int warmupRecords = 0;
+
+    @Option(name = "--write-behind", description = "Buffer the writes for the given number of milliseconds, 0 disables write-behind")
+    private long writeBehindFlushIntervalMs = 0;
+
     private static final String CONTEXT = "benchmark";
 
     private static final String KEY = "test";
 
-    private final MetricRegistry metrics = new MetricRegistry();
+    private static final int TTL_IN_SECONDS = (int) TimeUnit.SECONDS.convert(1, TimeUnit.HOURS);
+
+    private static final int RESERVOIR_SIZE = 100_000;
+
+    private BlobStore store;
 
     private byte[] writePayload;
-    
+
     // benchmarking indicated using a single thread here performed better than a pool
-    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    private ScheduledExecutorService retryExecutor;
 
     // Since this benchmark can overwhelm a blobstore's connection pool, we will use a retry to limit the rate we send
     // async requests
@@ -84,108 +103,227 @@ public class BlobStoreBenchmark implements Action {
             .waitDuration(Duration.ofMillis(10))
             .build());
 
+    /**
+     * An operation on a batch of keys.
+     */
+    @FunctionalInterface
+    private interface Operation {
+        CompletableFuture<?> apply(List<String> keys);
+    }
+
+    private static class Result {
+        private final String name;
+        private final int requests;
+        private final long elapsedNanos;
+        private final long errors;
+        private final Snapshot latencies;
+
+        private Result(String name, int requests, long elapsedNanos, long errors, Snapshot latencies) {
+            this.name = name;
+            this.requests = requests;
+            this.elapsedNanos = elapsedNanos;
+            this.errors = errors;
+            this.latencies = latencies;
+        }
+    }
+
     @Override
     public Object execute() throws InterruptedException {
-        System.out.println(String.format("BlobStore implementation in use: %s", blobStore.getName()));
-        writePayload = new byte[payloadSize];
-        StringBuilder throughputResultsBuilder = new StringBuilder();
-        throughputResultsBuilder.append(benchmark("write", this::writeAsync, this::write));
-        String readThroughput = benchmark("read", this::readAsync, this::read);
+        if (batchSize < 1 || concurrency < 1) {
+            System.out.println("The batch size and the concurrency must be positive.");
+            return null;
+        }
 
-        // The read throughput is only really meaningful if we are doing a full fetch of the value
-        if (!readJustTimestamp) {
-            throughputResultsBuilder.append('\n').append(readThroughput);
+        WriteBehindBlobStore writeBehindStore = null;
+        if (writeBehindFlushIntervalMs > 0) {
+            writeBehindStore = new WriteBehindBlobStore(blobStore, writeBehindFlushIntervalMs, Integer.MAX_VALUE);
+            store = writeBehindStore;
+        } else {
+            store = blobStore;
         }
 
-        ConsoleReporter reporter = ConsoleReporter.forRegistry(metrics).build();
-        reporter.report();
-        reporter.close();
+        System.out.println(String.format("BlobStore implementation in use: %s", store.getName()));
+        System.out.println(String.format("%d records of %d bytes, %d keys per operation, %s with a concurrency of %d",
+                numberOfRecords, payloadSize, batchSize, async ? "async" : "sync", concurrency));
+        writePayload = new byte[payloadSize];
+
+        retryExecutor = Executors.newSingleThreadScheduledExecutor();
+        final ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            if (warmupRecords > 0) {
+                System.out.print("Warming up...");
+                run(warmupRecords, async ? this::writeAsync : this::write, executor);
+                run(warmupRecords, async ? this::readAsync : this::read, executor);
+                System.out.println("done");
+            }
 
-        System.out.println(throughputResultsBuilder.toString());
+            final List<Result> results = new ArrayList<>();
+            results.add(benchmark("write", async ? this::writeAsync : this::write, executor));
+            if (writeBehindStore != null) {
+                final long start = System.nanoTime();
+                writeBehindStore.flush();
+                System.out.println(String.format("Flushing the buffered writes took %.2f ms",
+                        (System.nanoTime() - start) / 1_000_000.0));
+            }
+            results.add(benchmark("read", async ? this::readAsync : this::read, executor));
+
+            printResults(results);
+        } finally {
+            executor.shutdownNow();
+            retryExecutor.shutdownNow();
+            if (writeBehindStore != null) {
+                writeBehindStore.close();
+            }
+        }
         return null;
     }
 
-    private CompletableFuture<?> timeAsyncOperation(Histogram results, Supplier<CompletableFuture<?>> futureSupplier) {
-        long start = System.currentTimeMillis();
-
-        return Retry.decorateCompletionStage(asyncRetry, executorService,
-                () -> futureSupplier.get()
-                        .thenAccept(v ->
-                                results.update(System.currentTimeMillis() - start))).get().toCompletableFuture();
+    private Map<String, byte[]> payloadsFor(List<String> keys) {
+        final Map<String, byte[]> values = new LinkedHashMap<>();
+        keys.forEach(key -> values.put(key, writePayload));
+        return values;
     }
 
-    private CompletableFuture<?> writeAsync(String key, Histogram results) {
-        return timeAsyncOperation(results, () -> blobStore.putAsync(key, writePayload, CONTEXT,
-                (int) TimeUnit.SECONDS.convert(1, TimeUnit.HOURS)));
+    private Map<String, Integer> ttlsFor(List<String> keys) {
+        final Map<String, Integer> ttls = new LinkedHashMap<>();
+        keys.forEach(key -> ttls.put(key, TTL_IN_SECONDS));
+        return ttls;
     }
 
-    private CompletableFuture<?> readAsync(String key, Histogram results) {
-        return timeAsyncOperation(results, () -> readJustTimestamp ? blobStore.getLastUpdatedAsync(key, CONTEXT) :
-                blobStore.getAsync(key, CONTEXT));
+    private CompletableFuture<?> write(List<String> keys) {
+        if (keys.size() == 1) {
+            store.put(keys.get(0), writePayload, CONTEXT, TTL_IN_SECONDS);
+        } else {
+            store.putMany(payloadsFor(keys), CONTEXT, ttlsFor(keys));
+        }
+        return CompletableFuture.completedFuture(null);
     }
 
-    private void timeOperation(Histogram results, Runnable operation) {
-        long start = System.currentTimeMillis();
-        operation.run();
-        long elapsed = System.currentTimeMillis() - start;
-        results.update(elapsed);
+    private CompletableFuture<?> read(List<String> keys) {
+        if (readJustTimestamp) {
+            keys.forEach(key -> store.getLastUpdated(key, CONTEXT));
+        } else if (keys.size() == 1) {
+            store.get(keys.get(0), CONTEXT);
+        } else {
+            store.getMany(keys, CONTEXT);
+        }
+        return CompletableFuture.completedFuture(null);
     }
 
-    private void write(String key, Histogram results) {
-        timeOperation(results, () -> blobStore.put(key, writePayload, CONTEXT, (int) TimeUnit.SECONDS.convert(1,
-                TimeUnit.HOURS)));
+    private CompletableFuture<?> writeAsync(List<String> keys) {
+        return withRetry(() -> keys.size() == 1 ?
+                store.putAsync(keys.get(0), writePayload, CONTEXT, TTL_IN_SECONDS) :
+                store.putManyAsync(payloadsFor(keys), CONTEXT, ttlsFor(keys)));
     }
 
-    private void read(String key, Histogram results) {
-        timeOperation(results, readJustTimestamp ? () -> blobStore.getLastUpdated(key, CONTEXT) :
-                () -> blobStore.get(key, CONTEXT));
+    private CompletableFuture<?> readAsync(List<String> keys) {
+        if (readJustTimestamp) {
+            return withRetry(() -> CompletableFuture.allOf(keys.stream()
+                    .map(key -> store.getLastUpdatedAsync(key, CONTEXT))
+                    .toArray(CompletableFuture[]::new)));
+        }
+        return withRetry(() -> keys.size() == 1 ?
+                store.getAsync(keys.get(0), CONTEXT) :
+                store.getManyAsync(keys, CONTEXT));
     }
 
-    private String benchmark(String methodType,
-                             BiFunction<String, Histogram, CompletableFuture<?>> asyncFunction,
-                             BiConsumer<String, Histogram> syncFunction) throws InterruptedException {
-        System.out.print(String.format("Benchmarking %s performance...", methodType));
+    private CompletableFuture<?> withRetry(Supplier<CompletableFuture<?>> futureSupplier) {
+        return Retry.decorateCompletionStage(asyncRetry, retryExecutor, futureSupplier::get)
+                .get().toCompletableFuture();
+    }
 
-        Histogram results = metrics.histogram(String.format("%s times", methodType));
-        AtomicLong totalTime = new AtomicLong(0);
+    /**
+     * Issues the operation for all records, limiting the number of operations in flight to the concurrency.
+     *
+     * @return the number of failed operations
+     */
+    private long run(int records, Operation operation, ExecutorService executor, Histogram latencies)
+            throws InterruptedException {
+        final Semaphore inFlight = new Semaphore(concurrency);
+        final AtomicLong errors = new AtomicLong();
+
+        for (int offset = 0; offset < records; offset += batchSize) {
+            final List<String> keys = new ArrayList<>(batchSize);
+            for (int i = offset; i < Math.min(records, offset + batchSize); i++) {
+                keys.add(String.format("%s-%d", KEY, i));
+            }
 
-        // Do the benchmark on another thread so we can provide feedback while it is executing
-        CompletableFuture<Boolean> benchmarkFuture = CompletableFuture.supplyAsync(() -> {
-            List<CompletableFuture<?>> futures = new ArrayList<>();
-            long start = System.currentTimeMillis();
+            inFlight.acquire();
+            final long start = System.nanoTime();
+            final CompletableFuture<?> future = async ?
+                    operation.apply(keys) :
+                    CompletableFuture.supplyAsync(() -> operation.apply(keys), executor).thenCompose(f -> f);
+            future.whenComplete((v, t) -> {
+                if (t != null) {
+                    errors.incrementAndGet();
+                } else if (latencies != null) {
+                    latencies.update(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                }
+                inFlight.release();
+            });
+        }
 
-            for (int i = 0; i < numberOfRecords; i++) {
-                String key = String.format("%s-%d", KEY, i);
+        // Wait for the operations in flight
+        inFlight.acquire(concurrency);
+        inFlight.release(concurrency);
+        return errors.get();
+    }
 
-                if (this.async) {
-                    futures.add(asyncFunction.apply(key, results));
-                } else {
-                    syncFunction.accept(key, results);
-                }
-            }
+    private void run(int records, Operation operation, ExecutorService executor) throws InterruptedException {
+        run(records, operation, executor, null);
+    }
 
-            if (this.async) {
-                try {
-                    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
-            }
+    private Result benchmark(String name, Operation operation, ExecutorService executor)
+            throws InterruptedException {
+        System.out.print(String.format("Benchmarking %s performance...", name));
 
-            totalTime.set(System.currentTimeMillis() - start);
+        final Histogram latencies = new Histogram(new UniformReservoir(RESERVOIR_SIZE));
 
-            return true;
+        // Do the benchmark on another thread so we can provide feedback while it is executing
+        final long start = System.nanoTime();
+        final CompletableFuture<Long> benchmarkFuture = CompletableFuture.supplyAsync(() -> {
+            try {
+                return run(numberOfRecords, operation, executor, latencies);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
         });
 
         // Give user feedback while the benchmark is running
-        while (!benchmarkFuture.getNow(false)) {
+        while (!benchmarkFuture.isDone()) {
             System.out.print('.');
             Thread.sleep(1000);
         }
-
+        final long elapsed = System.nanoTime() - start;
         System.out.println("done");
 
-        double throughPut = ((payloadSize * numberOfRecords) / 1024.0) / (totalTime.get() / 1000.0);
-        return String.format("%s throughput: %.2f KB/s", methodType, throughPut);
+        final int requests = (numberOfRecords + batchSize - 1) / batchSize;
+        return new Result(name, requests, elapsed, benchmarkFuture.join(), latencies.getSnapshot());
+    }
+
+    private void printResults(List<Result> results) {
+        System.out.println();
+        System.out.println(String.format("%-6s %12s %12s %12s %10s %10s %10s %10s %10s %8s",
+                "op", "keys/s", "requests/s", "KB/s", "p50 ms", "p95 ms", "p99 ms", "p99.9 ms", "max ms", "errors"));
+        for (Result result : results) {
+            // The read throughput is only really meaningful if we are doing a full fetch of the value
+            if ("read".equals(result.name) && readJustTimestamp) {
+                continue;
+            }
+            final double seconds = result.elapsedNanos / 1_000_000_000.0;
+            final Snapshot latencies = result.latencies;
+            System.out.println(String.format("%-6s %12.1f %12.1f %12.2f %10.3f %10.3f %10.3f %10.3f %10.3f %8d",
+                    result.name,
+                    numberOfRecords / seconds,
+                    result.requests / seconds,
+                    ((long) payloadSize * numberOfRecords / 1024.0) / seconds,
+                    latencies.getMedian() / 1000.0,
+                    latencies.get95thPercentile() / 1000.0,
+                    latencies.get99thPercentile() / 1000.0,
+                    latencies.get999thPercentile() / 1000.0,
+                    latencies.getMax() / 1000.0,
+                    result.errors));
+        }
     }
 }
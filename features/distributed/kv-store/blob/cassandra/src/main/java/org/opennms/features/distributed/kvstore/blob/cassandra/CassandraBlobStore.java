@@ -25,18 +25,27 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalLong;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
 import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchableStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
 import com.datastax.oss.driver.api.core.cql.Row;
@@ -68,6 +77,12 @@ public class CassandraBlobStore extends AbstractKeyValueStore<byte[]> implements
     private static final String TIMESTAMP_COLUMN = "lastUpdated";
     private static final String TABLE_NAME = "kvstore_blob";
 
+    /**
+     * The maximum number of inserts grouped in a single batch by {@link #putMany}. The keys are spread over different
+     * partitions so the batches are kept small to avoid overloading the coordinator.
+     */
+    private static final int MAX_STATEMENTS_PER_BATCH = 100;
+
     private final CassandraSession session;
     private final PreparedStatement insertStmt;
     private final PreparedStatement insertWithTtlStmt;
@@ -112,6 +127,74 @@ public class CassandraBlobStore extends AbstractKeyValueStore<byte[]> implements
         return timestamp;
     }
 
+    @Override
+    public long putMany(Map<String, byte[]> values, String context, Map<String, Integer> ttlsInSeconds) {
+        try {
+            return putManyAsync(values, context, ttlsInSeconds).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Long> putManyAsync(Map<String, byte[]> values, String context,
+                                                Map<String, Integer> ttlsInSeconds) {
+        Objects.requireNonNull(values);
+        Objects.requireNonNull(context);
+
+        long timestamp = System.currentTimeMillis();
+        List<CompletableFuture<AsyncResultSet>> futures = new ArrayList<>();
+        List<BatchableStatement<?>> statements = new ArrayList<>(MAX_STATEMENTS_PER_BATCH);
+        for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+            statements.add(getStatementForInsert(entry.getKey(), context, ByteBuffer.wrap(entry.getValue()), timestamp,
+                    ttlsInSeconds != null ? ttlsInSeconds.get(entry.getKey()) : null));
+            if (statements.size() == MAX_STATEMENTS_PER_BATCH) {
+                futures.add(executeBatch(statements));
+                statements = new ArrayList<>(MAX_STATEMENTS_PER_BATCH);
+            }
+        }
+        if (!statements.isEmpty()) {
+            futures.add(executeBatch(statements));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(v -> timestamp);
+    }
+
+    private CompletableFuture<AsyncResultSet> executeBatch(List<BatchableStatement<?>> statements) {
+        // Unlogged since the inserts are idempotent and do not need to be applied atomically
+        return session.executeAsync(BatchStatement.newInstance(DefaultBatchType.UNLOGGED, statements))
+                .toCompletableFuture();
+    }
+
+    @Override
+    public Map<String, byte[]> getMany(Collection<String> keys, String context) {
+        try {
+            return getManyAsync(keys, context).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Map<String, byte[]>> getManyAsync(Collection<String> keys, String context) {
+        Objects.requireNonNull(keys);
+        Objects.requireNonNull(context);
+
+        // Each key is a partition of its own, so the selects are issued concurrently rather than with an IN query
+        // which would put the whole load on a single coordinator
+        Map<String, CompletableFuture<Optional<byte[]>>> futures = new HashMap<>();
+        for (String key : new LinkedHashSet<>(keys)) {
+            futures.put(key, getAsync(key, context));
+        }
+
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+                .thenApply(v -> {
+                    Map<String, byte[]> resultMap = new HashMap<>();
+                    futures.forEach((key, future) -> future.join().ifPresent(value -> resultMap.put(key, value)));
+                    return resultMap;
+                });
+    }
+
     @Override
     public Optional<byte[]> get(String key, String context) {
         // Cassandra will throw a runtime exception here if the execution fails
@@ -361,9 +444,9 @@ public class CassandraBlobStore extends AbstractKeyValueStore<byte[]> implements
         return truncateFuture;
     }
 
-    private Statement<?> getStatementForInsert(String key, String context, ByteBuffer serializedValue, long timestamp,
-                                            Integer ttlInSeconds) {
-        Statement<?> statement;
+    private BoundStatement getStatementForInsert(String key, String context, ByteBuffer serializedValue, long timestamp,
+                                                 Integer ttlInSeconds) {
+        BoundStatement statement;
 
         if (ttlInSeconds != null) {
             if (ttlInSeconds <= 0) {
@@ -22,6 +22,7 @@
 package org.opennms.features.distributed.kvstore.blob.inmemory;
 
 import java.util.AbstractMap;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -58,6 +59,30 @@ public class InMemoryMapBlobStore extends AbstractAsyncKeyValueStore<byte[]> imp
         return timestamp;
     }
 
+    @Override
+    public long putMany(Map<String, byte[]> values, String context, Map<String, Integer> ttlsInSeconds) {
+        long timestamp = timestampGenerator.now();
+
+        values.forEach((key, value) -> inMemoryStore.put(new AbstractMap.SimpleImmutableEntry<>(key, context),
+                new AbstractMap.SimpleImmutableEntry<>(value, timestamp)));
+
+        return timestamp;
+    }
+
+    @Override
+    public Map<String, byte[]> getMany(Collection<String> keys, String context) {
+        Map<String, byte[]> resultMap = new HashMap<>();
+
+        for (String key : keys) {
+            Map.Entry<byte[], Long> valueEntry = inMemoryStore.get(new AbstractMap.SimpleImmutableEntry<>(key, context));
+            if (valueEntry != null) {
+                resultMap.put(key, valueEntry.getKey());
+            }
+        }
+
+        return resultMap;
+    }
+
     @Override
     public Optional<byte[]> get(String key, String context) {
         Map.Entry<byte[], Long> valueEntry = inMemoryStore.get(new AbstractMap.SimpleImmutableEntry<>(key, context));
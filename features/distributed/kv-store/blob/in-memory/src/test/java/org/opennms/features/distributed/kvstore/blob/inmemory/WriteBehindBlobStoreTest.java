@@ -0,0 +1,211 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.features.distributed.kvstore.blob.inmemory;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.opennms.features.distributed.kvstore.api.WriteBehindBlobStore;
+
+public class WriteBehindBlobStoreTest {
+    private final CountingStore delegate = new CountingStore();
+
+    @Test
+    public void shouldCoalescePutsPerKey() {
+        try (WriteBehindBlobStore store = new WriteBehindBlobStore(delegate, TimeUnit.HOURS.toMillis(1), 100)) {
+            for (int i = 0; i < 10; i++) {
+                store.put("a", new byte[]{(byte) i}, "test");
+                store.put("b", new byte[]{(byte) i}, "test");
+            }
+
+            // Nothing is written yet, but the buffered values are visible
+            assertThat(delegate.puts.get(), is(0));
+            assertThat(delegate.get("a", "test"), equalTo(Optional.empty()));
+            assertArrayEquals(new byte[]{9}, store.get("a", "test").get());
+            assertThat(store.getPendingWriteCount(), is(2));
+
+            store.flush();
+
+            // Only the latest value of each key is written, with a single call
+            assertThat(delegate.putManyCalls.get(), is(1));
+            assertThat(delegate.puts.get(), is(2));
+            assertArrayEquals(new byte[]{9}, delegate.get("a", "test").get());
+            assertArrayEquals(new byte[]{9}, delegate.get("b", "test").get());
+            assertThat(store.getPendingWriteCount(), is(0));
+        }
+    }
+
+    @Test
+    public void shouldFlushWhenFull() {
+        try (WriteBehindBlobStore store = new WriteBehindBlobStore(delegate, TimeUnit.HOURS.toMillis(1), 3)) {
+            store.put("a", new byte[0], "test");
+            store.put("b", new byte[0], "test");
+            assertThat(delegate.puts.get(), is(0));
+
+            store.put("c", new byte[0], "test");
+            assertThat(delegate.puts.get(), is(3));
+        }
+    }
+
+    @Test
+    public void shouldFlushPeriodically() {
+        try (WriteBehindBlobStore store = new WriteBehindBlobStore(delegate, 10, 100)) {
+            store.putMany(Collections.singletonMap("a", new byte[0]), "test", null);
+            await().atMost(5, TimeUnit.SECONDS).until(() -> delegate.get("a", "test").isPresent());
+        }
+    }
+
+    @Test
+    public void shouldMergeBufferedAndPersistedValues() {
+        delegate.put("a", new byte[]{1}, "test");
+        delegate.put("b", new byte[]{1}, "test");
+        try (WriteBehindBlobStore store = new WriteBehindBlobStore(delegate, TimeUnit.HOURS.toMillis(1), 100)) {
+            store.put("b", new byte[]{2}, "test");
+            store.put("c", new byte[]{2}, "test");
+
+            Map<String, byte[]> values = store.getMany(Arrays.asList("a", "b", "c", "d"), "test");
+            assertThat(values.keySet(), equalTo(new HashSet<>(Arrays.asList("a", "b", "c"))));
+            assertArrayEquals(new byte[]{2}, values.get("b"));
+            assertThat(store.enumerateContext("test").size(), is(3));
+
+            // Deleted keys are not written by a later flush
+            store.delete("c", "test");
+            store.flush();
+            assertThat(delegate.get("c", "test"), equalTo(Optional.empty()));
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void shouldNotWriteDeletedKeysWhenFlushing() throws Exception {
+        BlockingStore blockingStore = new BlockingStore();
+        try (WriteBehindBlobStore store = new WriteBehindBlobStore(blockingStore, TimeUnit.HOURS.toMillis(1), 100)) {
+            store.put("a", new byte[]{1}, "test");
+            store.put("b", new byte[]{1}, "test");
+
+            // Delete and truncate while the buffered values are being written
+            CompletableFuture<Void> flush = CompletableFuture.runAsync(store::flush);
+            blockingStore.writing.await();
+            CompletableFuture<Void> delete = CompletableFuture.runAsync(() -> store.delete("a", "test"));
+            CompletableFuture<Void> truncate = CompletableFuture.runAsync(() -> store.truncateContext("other"));
+            Thread.sleep(100);
+            assertThat(delete.isDone(), is(false));
+
+            blockingStore.release.countDown();
+            CompletableFuture.allOf(flush, delete, truncate).get();
+
+            assertThat(blockingStore.get("a", "test"), equalTo(Optional.empty()));
+            assertThat(store.get("a", "test"), equalTo(Optional.empty()));
+            assertArrayEquals(new byte[]{1}, blockingStore.get("b", "test").get());
+            assertThat(store.getPendingWriteCount(), is(0));
+        }
+    }
+
+    @Test
+    public void shouldCountPendingWritesAfterTruncate() {
+        try (WriteBehindBlobStore store = new WriteBehindBlobStore(delegate, TimeUnit.HOURS.toMillis(1), 100)) {
+            store.put("a", new byte[0], "test");
+            store.put("b", new byte[0], "test");
+            store.truncateContext("test");
+            assertThat(store.getPendingWriteCount(), is(0));
+
+            // The context is still buffered after it was truncated
+            store.put("c", new byte[0], "test");
+            assertThat(store.getPendingWriteCount(), is(1));
+            store.flush();
+            assertThat(delegate.get("c", "test").isPresent(), is(true));
+            assertThat(store.getPendingWriteCount(), is(0));
+        }
+    }
+
+    @Test
+    public void shouldPassThroughWhenDisabled() {
+        try (WriteBehindBlobStore store = new WriteBehindBlobStore(delegate, 0, 100)) {
+            store.put("a", new byte[0], "test");
+            assertThat(delegate.puts.get(), is(1));
+            assertThat(store.getPendingWriteCount(), is(0));
+        }
+    }
+
+    /**
+     * Blocks the first write until released.
+     */
+    private static class BlockingStore extends InMemoryMapBlobStore {
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private BlockingStore() {
+            super(System::currentTimeMillis);
+        }
+
+        @Override
+        public long putMany(Map<String, byte[]> values, String context, Map<String, Integer> ttlsInSeconds) {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.putMany(values, context, ttlsInSeconds);
+        }
+    }
+
+    private static class CountingStore extends InMemoryMapBlobStore {
+        private final AtomicInteger puts = new AtomicInteger();
+        private final AtomicInteger putManyCalls = new AtomicInteger();
+
+        private CountingStore() {
+            super(System::currentTimeMillis);
+        }
+
+        @Override
+        public synchronized long put(String key, byte[] value, String context, Integer ttlInSeconds) {
+            puts.incrementAndGet();
+            return super.put(key, value, context, ttlInSeconds);
+        }
+
+        @Override
+        public synchronized long putMany(Map<String, byte[]> values, String context, Map<String, Integer> ttlsInSeconds) {
+            putManyCalls.incrementAndGet();
+            puts.addAndGet(values.size());
+            return super.putMany(values, context, ttlsInSeconds);
+        }
+
+        @Override
+        public synchronized Optional<byte[]> get(String key, String context) {
+            return super.get(key, context);
+        }
+    }
+}
@@ -39,6 +39,11 @@ public class PostgresBlobStore extends AbstractPostgresKeyValueStore<byte[], byt
         return resultSet.getBytes(columnName);
     }
 
+    @Override
+    protected String getValueArrayType() {
+        return "bytea";
+    }
+
     @Override
     protected String getTableName() {
         return "kvstore_bytea";
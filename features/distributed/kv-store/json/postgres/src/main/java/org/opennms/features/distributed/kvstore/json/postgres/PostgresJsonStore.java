@@ -34,6 +34,11 @@ public class PostgresJsonStore extends AbstractPostgresKeyValueStore<String, Str
         super(dataSource);
     }
 
+    @Override
+    protected String getValueArrayType() {
+        return "text";
+    }
+
     @Override
     protected String getTableName() {
         return "kvstore_jsonb";
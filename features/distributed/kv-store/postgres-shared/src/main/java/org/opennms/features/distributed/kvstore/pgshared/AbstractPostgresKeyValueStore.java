@@ -21,13 +21,18 @@
  */
 package org.opennms.features.distributed.kvstore.pgshared;
 
+import java.lang.reflect.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -53,6 +58,11 @@ public abstract class AbstractPostgresKeyValueStore<T, S> extends AbstractAsyncK
     private static final String LAST_UPDATED_COLUMN = "last_updated";
     private static final String EXPIRES_AT_COLUMN = "expires_at";
 
+    /**
+     * The maximum number of keys sent in a single statement by the multi-key operations.
+     */
+    private static final int MAX_KEYS_PER_STATEMENT = 1000;
+
     private final DataSource dataSource;
 
     public AbstractPostgresKeyValueStore(DataSource dataSource) {
@@ -84,6 +94,26 @@ public abstract class AbstractPostgresKeyValueStore<T, S> extends AbstractAsyncK
         ));
     }
 
+    private PreparedStatement getSelectManyStatement(Connection connection) throws SQLException {
+        return connection.prepareStatement(String.format("SELECT %s, %s, %s FROM %s WHERE %s = ? AND %s = ANY(?)",
+                KEY_COLUMN, VALUE_COLUMN, EXPIRES_AT_COLUMN, getTableName(), CONTEXT_COLUMN, KEY_COLUMN));
+    }
+
+    /**
+     * Upserts all rows of the given arrays with a single statement. The expiry is derived from the ttl of each key,
+     * keys with a null ttl do not expire.
+     */
+    private PreparedStatement getUpsertManyStatement(Connection connection) throws SQLException {
+        return connection.prepareStatement(String.format(
+                "INSERT INTO %s (%s, %s, %s, %s, %s) SELECT u.k, ?, ?, ?::timestamp + u.t * INTERVAL '1 second', " +
+                        getValueStatementPlaceholder().replace("?", "u.v") + " FROM unnest(?::text[], ?::int4[], " +
+                        "?::" + getValueArrayType() + "[]) AS u(k, t, v) ON CONFLICT ON CONSTRAINT " +
+                        getPkConstraintName() + " DO UPDATE SET %s = EXCLUDED.%s, %s = EXCLUDED.%s, %s = EXCLUDED.%s",
+                getTableName(), KEY_COLUMN, CONTEXT_COLUMN, LAST_UPDATED_COLUMN, EXPIRES_AT_COLUMN, VALUE_COLUMN,
+                LAST_UPDATED_COLUMN, LAST_UPDATED_COLUMN, EXPIRES_AT_COLUMN, EXPIRES_AT_COLUMN, VALUE_COLUMN,
+                VALUE_COLUMN));
+    }
+
     private PreparedStatement getLastUpdatedStatement(Connection connection) throws SQLException {
         return connection.prepareStatement(String.format("SELECT %s, %s FROM %s WHERE %s = ? AND %s = ?",
                 LAST_UPDATED_COLUMN, EXPIRES_AT_COLUMN, getTableName(), KEY_COLUMN, CONTEXT_COLUMN));
@@ -136,6 +166,78 @@ public abstract class AbstractPostgresKeyValueStore<T, S> extends AbstractAsyncK
         return now;
     }
 
+    @Override
+    public long putMany(Map<String, T> values, String context, Map<String, Integer> ttlsInSeconds) {
+        Objects.requireNonNull(values);
+        Objects.requireNonNull(context);
+
+        long now = System.currentTimeMillis();
+        if (values.isEmpty()) {
+            return now;
+        }
+
+        withStatement(this::getUpsertManyStatement, upsertStatement -> {
+            Connection connection = upsertStatement.getConnection();
+            for (List<Map.Entry<String, T>> partition : partition(new ArrayList<>(values.entrySet()))) {
+                String[] keys = new String[partition.size()];
+                Integer[] ttls = new Integer[partition.size()];
+                Object[] sqlValues = null;
+                for (int i = 0; i < partition.size(); i++) {
+                    Map.Entry<String, T> entry = partition.get(i);
+                    keys[i] = Objects.requireNonNull(entry.getKey());
+                    ttls[i] = ttlsInSeconds != null ? ttlsInSeconds.get(entry.getKey()) : null;
+                    S sqlValue = getSQLTypeFromValueType(Objects.requireNonNull(entry.getValue()));
+                    if (sqlValues == null) {
+                        // Use an array of the concrete type so that the driver can encode it
+                        sqlValues = (Object[]) Array.newInstance(sqlValue.getClass(), partition.size());
+                    }
+                    sqlValues[i] = sqlValue;
+                }
+
+                upsertStatement.setString(1, context);
+                upsertStatement.setTimestamp(2, new java.sql.Timestamp(now));
+                upsertStatement.setTimestamp(3, new java.sql.Timestamp(now));
+                upsertStatement.setArray(4, connection.createArrayOf("text", keys));
+                upsertStatement.setArray(5, connection.createArrayOf("int4", ttls));
+                upsertStatement.setArray(6, connection.createArrayOf(getValueArrayType(), sqlValues));
+                upsertStatement.execute();
+            }
+            return null;
+        });
+
+        return now;
+    }
+
+    @Override
+    public Map<String, T> getMany(Collection<String> keys, String context) {
+        Objects.requireNonNull(keys);
+        Objects.requireNonNull(context);
+
+        Map<String, T> resultMap = new HashMap<>();
+        if (keys.isEmpty()) {
+            return resultMap;
+        }
+
+        return withStatement(this::getSelectManyStatement, selectStatement -> {
+            Connection connection = selectStatement.getConnection();
+            for (List<String> partition : partition(new ArrayList<>(new LinkedHashSet<>(keys)))) {
+                selectStatement.setString(1, context);
+                selectStatement.setArray(2, connection.createArrayOf("text", partition.toArray(new String[0])));
+
+                try (ResultSet resultSet = selectStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        // Ignore results that are already expired
+                        if (!isExpired(resultSet)) {
+                            resultMap.put(resultSet.getString(KEY_COLUMN),
+                                    getValueTypeFromSQLType(resultSet, VALUE_COLUMN));
+                        }
+                    }
+                }
+            }
+            return resultMap;
+        });
+    }
+
     @Override
     public Optional<T> get(String key, String context) {
         Objects.requireNonNull(key);
@@ -283,6 +385,12 @@ public abstract class AbstractPostgresKeyValueStore<T, S> extends AbstractAsyncK
         return "?";
     }
 
+    /**
+     * @return the name of the Postgres type of the elements of the arrays used to send multiple values at once, this
+     * must match the SQL type returned by {@link #getSQLTypeFromValueType(Object)}
+     */
+    protected abstract String getValueArrayType();
+
     /**
      * @return the name of the table for this store
      */
@@ -298,6 +406,14 @@ public abstract class AbstractPostgresKeyValueStore<T, S> extends AbstractAsyncK
         return "Postgres";
     }
 
+    private static <U> List<List<U>> partition(List<U> list) {
+        List<List<U>> partitions = new ArrayList<>();
+        for (int i = 0; i < list.size(); i += MAX_KEYS_PER_STATEMENT) {
+            partitions.add(list.subList(i, Math.min(list.size(), i + MAX_KEYS_PER_STATEMENT)));
+        }
+        return partitions;
+    }
+
     private <U> U withStatement(ConnectionToStatement connectionToStatement, StatementToResult<U> statementToResult) {
         try (Connection connection = dataSource.getConnection()) {
             try (PreparedStatement statement = connectionToStatement.getStatement(connection)) {
@@ -22,8 +22,12 @@
 package org.opennms.netmgt.dnsresolver.api;
 
 import java.net.InetAddress;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 /**
  * Asynchronous DNS resolution.
@@ -54,4 +58,43 @@ public interface DnsResolver {
      */
     CompletableFuture<Optional<String>> reverseLookup(final InetAddress inetAddress);
 
+    /**
+     * Perform DNS lookups for all of the given hostnames.
+     *
+     * Returns a future that completes once all of the lookups have completed. Every distinct
+     * hostname is queried once. Lookups that failed are mapped to an empty optional, the same
+     * as lookups for which no result was found.
+     *
+     * @param hostnames hostnames to lookup
+     * @return a future containing the results keyed by hostname
+     */
+    default CompletableFuture<Map<String, Optional<InetAddress>>> lookupAll(final Collection<String> hostnames) {
+        return all(hostnames, this::lookup);
+    }
+
+    /**
+     * Perform reverse DNS lookups for all of the given IP addresses.
+     *
+     * Returns a future that completes once all of the lookups have completed. Every distinct
+     * address is queried once. Lookups that failed are mapped to an empty optional, the same
+     * as lookups for which no result was found.
+     *
+     * @param inetAddresses IP addresses to lookup
+     * @return a future containing the results keyed by IP address
+     */
+    default CompletableFuture<Map<InetAddress, Optional<String>>> reverseLookupAll(final Collection<InetAddress> inetAddresses) {
+        return all(inetAddresses, this::reverseLookup);
+    }
+
+    private static <K, V> CompletableFuture<Map<K, Optional<V>>> all(final Collection<K> keys, final Function<K, CompletableFuture<Optional<V>>> lookup) {
+        final Map<K, CompletableFuture<Optional<V>>> futures = new LinkedHashMap<>();
+        for (final K key : keys) {
+            futures.computeIfAbsent(key, k -> lookup.apply(k).exceptionally(ex -> Optional.empty()));
+        }
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).thenApply(any -> {
+            final Map<K, Optional<V>> results = new LinkedHashMap<>(futures.size() * 4 / 3 + 1);
+            futures.forEach((key, future) -> results.put(key, future.join()));
+            return results;
+        });
+    }
 }
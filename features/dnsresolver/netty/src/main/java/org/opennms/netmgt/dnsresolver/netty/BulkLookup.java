@@ -0,0 +1,119 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.dnsresolver.netty;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Performs the lookups for a set of keys with a bounded number of lookups in flight.
+ *
+ * A new lookup is issued whenever one completes, so that a burst of thousands of keys
+ * is pipelined through a fixed window instead of being issued all at once. Lookups
+ * that complete immediately, i.e. cache hits, do not occupy the window.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the results
+ */
+class BulkLookup<K, V> {
+
+    private final Iterator<K> keys;
+    private final Function<K, CompletableFuture<Optional<V>>> lookup;
+    private final Map<K, Optional<V>> results;
+    private final AtomicInteger remaining;
+    private final CompletableFuture<Map<K, Optional<V>>> future = new CompletableFuture<>();
+
+    private BulkLookup(Collection<K> keys, Function<K, CompletableFuture<Optional<V>>> lookup) {
+        // Only query every key once
+        final Collection<K> distinctKeys = new LinkedHashSet<>(keys);
+        distinctKeys.remove(null);
+        this.keys = distinctKeys.iterator();
+        this.lookup = Objects.requireNonNull(lookup);
+        this.results = new ConcurrentHashMap<>(distinctKeys.size() * 4 / 3 + 1);
+        this.remaining = new AtomicInteger(distinctKeys.size());
+    }
+
+    /**
+     * Looks up all of the given keys.
+     *
+     * @param keys the keys to lookup, duplicates are only looked up once
+     * @param window the maximum number of lookups in flight
+     * @param lookup performs the lookup for a single key
+     * @return a future containing the results keyed by key, failed lookups are mapped to an empty optional
+     */
+    static <K, V> CompletableFuture<Map<K, Optional<V>>> lookup(Collection<K> keys, int window, Function<K, CompletableFuture<Optional<V>>> lookup) {
+        final BulkLookup<K, V> bulkLookup = new BulkLookup<>(keys, lookup);
+        if (bulkLookup.remaining.get() == 0) {
+            bulkLookup.future.complete(bulkLookup.results);
+        }
+        for (int i = 0; i < Math.max(1, window); i++) {
+            bulkLookup.next();
+        }
+        return bulkLookup.future;
+    }
+
+    private void next() {
+        while (true) {
+            final K key;
+            synchronized (keys) {
+                if (!keys.hasNext()) {
+                    return;
+                }
+                key = keys.next();
+            }
+
+            CompletableFuture<Optional<V>> lookupFuture;
+            try {
+                lookupFuture = lookup.apply(key);
+            } catch (RuntimeException e) {
+                lookupFuture = CompletableFuture.completedFuture(Optional.empty());
+            }
+
+            if (lookupFuture.isDone()) {
+                // Keep the slot and continue with the next key
+                complete(key, lookupFuture.exceptionally(ex -> Optional.empty()).join());
+                continue;
+            }
+
+            lookupFuture.whenComplete((res, ex) -> {
+                complete(key, ex == null ? res : Optional.empty());
+                next();
+            });
+            return;
+        }
+    }
+
+    private void complete(K key, Optional<V> result) {
+        results.put(key, result != null ? result : Optional.empty());
+        if (remaining.decrementAndGet() == 0) {
+            future.complete(results);
+        }
+    }
+}
@@ -25,6 +25,7 @@ import java.util.Collection;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
@@ -61,9 +62,9 @@ public abstract class CaffeineCache<E> {
 
                     @Override
                     public long expireAfterUpdate(String key, Entries<E> value, long currentTime, long currentDuration) {
-                        // The value has been updated and may now contain an entry with a shorter TTL then what we originally used
-                        // Use the minimum value of the entry TTL and the current expiry duration
-                        return Math.min(TimeUnit.SECONDS.toNanos(value.ttl()), currentDuration);
+                        // The value has been updated and may now contain an entry with a shorter TTL then what we originally used,
+                        // the entries track the minimum of their expiry times, or have been replaced and start over
+                        return Math.max(0L, value.expiresAt() - currentTime);
                     }
 
                     @Override
@@ -106,6 +107,27 @@ public abstract class CaffeineCache<E> {
         cache.put(key, entries);
     }
 
+    /**
+     * Replaces all of the entries for the key, resetting the expiry time.
+     */
+    public void replace(String key, E entry, int ttl) {
+        final Entries<E> entries = new Entries<>(ttl);
+        entries.add(entry, ttl, true);
+        cache.put(key, entries);
+    }
+
+    /**
+     * Returns {@code true} if the entries for the key expire within the given fraction of their TTL.
+     */
+    public boolean isExpiring(String key, double ratio) {
+        final Entries<E> entries = cache.getIfPresent(key);
+        if (entries == null) {
+            return false;
+        }
+        final long remaining = entries.expiresAt() - System.nanoTime();
+        return remaining < (long)(TimeUnit.SECONDS.toNanos(entries.ttl()) * ratio);
+    }
+
     public long size() {
         return cache.estimatedSize();
     }
@@ -116,16 +138,22 @@ public abstract class CaffeineCache<E> {
 
     private static class Entries<E> {
         private final AtomicInteger ttl;
+        private final AtomicLong expiresAt;
         private final CopyOnWriteArraySet<E> container = new CopyOnWriteArraySet<>();
 
         Entries(int initialTtl) {
             ttl = new AtomicInteger(initialTtl);
+            expiresAt = new AtomicLong(System.nanoTime() + TimeUnit.SECONDS.toNanos(initialTtl));
         }
 
         int ttl() {
             return ttl.get();
         }
 
+        long expiresAt() {
+            return expiresAt.get();
+        }
+
         void add(E entry, int ttl, boolean shouldReplaceAll) {
             if (shouldReplaceAll) {
                 container.clear();
@@ -133,6 +161,9 @@ public abstract class CaffeineCache<E> {
             container.add(entry);
             // Update the TTL with the minimum value
             this.ttl.updateAndGet(existingTtl -> Math.min(existingTtl, ttl));
+            // Mirror the expiry computed by the cache, which only ever shortens the expiry time
+            final long expiresAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(ttl);
+            this.expiresAt.updateAndGet(existingExpiresAt -> Math.min(existingExpiresAt, expiresAt));
         }
 
         Collection<E> get() {
@@ -81,10 +81,17 @@ public class CaffeineDnsCache implements ExtendedDnsCache {
 
     private final CaffeineCache<ExtendedDnsCacheEntry> resolveCache;
 
+    /**
+     * Failures are kept apart so that bursts of unresolvable names cannot evict the positive answers.
+     */
+    private final CaffeineCache<ExtendedDnsCacheEntry> negativeCache;
+
     private final int minTtl;
     private final int maxTtl;
     private final int negativeTtl;
     private final long maxSize;
+    private final long maxNegativeSize;
+    private final double refreshAheadRatio;
 
     // Track hits and misses ourselves since the underlying cache doesn't expose these
     private final Meter cacheHits = new Meter();
@@ -105,11 +112,27 @@ public class CaffeineDnsCache implements ExtendedDnsCache {
      * @param negativeTtl the TTL for failed queries
      */
     public CaffeineDnsCache(int minTtl, int maxTtl, int negativeTtl, long maxSize) {
+        this(minTtl, maxTtl, negativeTtl, maxSize, maxSize, 0);
+    }
+
+    /**
+     * Create a cache.
+     * @param minTtl the minimum TTL
+     * @param maxTtl the maximum TTL
+     * @param negativeTtl the TTL for failed queries
+     * @param maxSize the maximum number of cached answers
+     * @param maxNegativeSize the maximum number of cached failures
+     * @param refreshAheadRatio the fraction of the TTL before the expiry in which answers should be refreshed, 0 to disable
+     */
+    public CaffeineDnsCache(int minTtl, int maxTtl, int negativeTtl, long maxSize, long maxNegativeSize, double refreshAheadRatio) {
         this.minTtl = Math.min(MAX_SUPPORTED_TTL_SECS, checkPositiveOrZero(minTtl, "minTtl"));
         this.maxTtl = Math.min(MAX_SUPPORTED_TTL_SECS, checkPositiveOrZero(maxTtl, "maxTtl"));
         Preconditions.checkArgument(minTtl <= maxTtl, "minTtl: " + minTtl + ", maxTtl: " + maxTtl + " (expected: 0 <= minTtl <= maxTtl)");
         this.negativeTtl = checkPositiveOrZero(negativeTtl, "negativeTtl");
         this.maxSize = checkPositiveOrZero(maxSize, "maxSize");
+        this.maxNegativeSize = checkPositiveOrZero(maxNegativeSize, "maxNegativeSize");
+        Preconditions.checkArgument(refreshAheadRatio >= 0 && refreshAheadRatio < 1, "refreshAheadRatio: " + refreshAheadRatio + " (expected: 0 <= refreshAheadRatio < 1)");
+        this.refreshAheadRatio = refreshAheadRatio;
 
         resolveCache = new CaffeineCache<ExtendedDnsCacheEntry>(maxSize) {
             @Override
@@ -117,6 +140,12 @@ public class CaffeineDnsCache implements ExtendedDnsCache {
                 return entry.cause() != null;
             }
         };
+        negativeCache = new CaffeineCache<ExtendedDnsCacheEntry>(maxNegativeSize) {
+            @Override
+            protected boolean shouldReplaceAll(ExtendedDnsCacheEntry entry) {
+                return true;
+            }
+        };
     }
 
     /**
@@ -152,15 +181,32 @@ public class CaffeineDnsCache implements ExtendedDnsCache {
         return maxSize;
     }
 
+    /**
+     * Returns the maximum number of failed queries allowed in the cache.
+     */
+    public long maxNegativeSize() {
+        return maxNegativeSize;
+    }
+
+    /**
+     * Returns the fraction of the TTL before the expiry in which answers should be refreshed.
+     * The default value is {@code 0}, which disables refreshing ahead of the expiry.
+     */
+    public double refreshAheadRatio() {
+        return refreshAheadRatio;
+    }
+
     @Override
     public void clear() {
         resolveCache.clear();
+        negativeCache.clear();
     }
 
     @Override
     public boolean clear(String hostname) {
         checkNotNull(hostname, "hostname");
         resolveCache.clear(ensureTrailingDot(hostname));
+        negativeCache.clear(ensureTrailingDot(hostname));
         // The backing cache doesn't provide a return value for whether or not
         // the value was actually removed, so we always return false
         return false;
@@ -172,7 +218,11 @@ public class CaffeineDnsCache implements ExtendedDnsCache {
         if (!emptyAdditionals(additionals)) {
             return Collections.<DnsCacheEntry>emptyList();
         }
-        final Collection<? extends  DnsCacheEntry> cachedEntries = resolveCache.get(ensureTrailingDot(hostname));
+        final String key = ensureTrailingDot(hostname);
+        Collection<? extends  DnsCacheEntry> cachedEntries = resolveCache.get(key);
+        if (cachedEntries == null) {
+            cachedEntries = negativeCache.get(key);
+        }
         if (cachedEntries == null) {
             cacheMisses.mark();
             return null;
@@ -195,7 +245,9 @@ public class CaffeineDnsCache implements ExtendedDnsCache {
         if (maxTtl == 0 || !emptyAdditionals(additionals)) {
             return e;
         }
-        resolveCache.cache(ensureTrailingDot(hostname), e, Math.max(minTtl, (int) Math.min(maxTtl, originalTtl)));
+        final String key = ensureTrailingDot(hostname);
+        negativeCache.clear(key);
+        resolveCache.cache(key, e, Math.max(minTtl, (int) Math.min(maxTtl, originalTtl)));
         return e;
     }
 
@@ -211,7 +263,10 @@ public class CaffeineDnsCache implements ExtendedDnsCache {
         if (maxTtl == 0) {
             return e;
         }
-        resolveCache.cache(ensureTrailingDot(hostname), e, Math.max(minTtl, (int) Math.min(maxTtl, ptrRecord.timeToLive())));
+        final String key = ensureTrailingDot(hostname);
+        negativeCache.clear(key);
+        // A reverse lookup yields a single record, replace the previous answer so that refreshed answers get a new expiry
+        resolveCache.replace(key, e, Math.max(minTtl, (int) Math.min(maxTtl, ptrRecord.timeToLive())));
         return e;
     }
 
@@ -229,10 +284,18 @@ public class CaffeineDnsCache implements ExtendedDnsCache {
             return e;
         }
 
-        resolveCache.cache(ensureTrailingDot(hostname), e, negativeTtl);
+        final String key = ensureTrailingDot(hostname);
+        resolveCache.clear(key);
+        negativeCache.cache(key, e, negativeTtl);
         return e;
     }
 
+    @Override
+    public boolean shouldRefresh(String hostname) {
+        checkNotNull(hostname, "hostname");
+        return refreshAheadRatio > 0 && resolveCache.isExpiring(ensureTrailingDot(hostname), refreshAheadRatio);
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(getClass())
@@ -240,17 +303,21 @@ public class CaffeineDnsCache implements ExtendedDnsCache {
                 .add("maxTtl", maxTtl)
                 .add("negativeTtl", negativeTtl)
                 .add("cached resolved hostname=", resolveCache.size())
+                .add("cached failed hostname=", negativeCache.size())
                 .toString();
     }
 
     public long getSize() {
-        return resolveCache.size();
+        return resolveCache.size() + negativeCache.size();
     }
 
     private enum CacheMetric {
         SIZE("cacheSize", c -> (Gauge<Long>) c.resolveCache::size),
         MAX_SIZE("cacheMaxSize", c -> (Gauge<Long>) c::maxSize),
         EVICTION_COUNT("cacheEvictionCount", c -> (Gauge<Long>) c.resolveCache.stats()::evictionCount),
+        NEGATIVE_SIZE("negativeCacheSize", c -> (Gauge<Long>) c.negativeCache::size),
+        NEGATIVE_MAX_SIZE("negativeCacheMaxSize", c -> (Gauge<Long>) c::maxNegativeSize),
+        NEGATIVE_EVICTION_COUNT("negativeCacheEvictionCount", c -> (Gauge<Long>) () -> c.negativeCache.stats().evictionCount()),
         HITS("cacheHits", c -> c.cacheHits),
         MISSES("cacheMisses", c -> c.cacheMisses);
 
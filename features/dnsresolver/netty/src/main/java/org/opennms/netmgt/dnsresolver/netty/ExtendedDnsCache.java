@@ -33,4 +33,12 @@ public interface ExtendedDnsCache extends DnsCache {
 
     ExtendedDnsCacheEntry cache(String hostname, DnsPtrRecord ptrRecord, EventLoop loop);
 
+    /**
+     * Returns {@code true} if the cached answer for the hostname is about to expire and should be
+     * refreshed ahead of its expiry.
+     */
+    default boolean shouldRefresh(String hostname) {
+        return false;
+    }
+
 }
@@ -26,12 +26,17 @@ import java.net.InetSocketAddress;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.opennms.netmgt.dnsresolver.api.DnsResolver;
@@ -68,6 +73,11 @@ import io.netty.util.internal.SocketUtils;
  * Uses a circuit breaker in order to ensure that callers do not continue to be bogged down
  * if resolution fails.
  *
+ * Concurrent lookups for the same name or address share a single query. Bulk lookups are
+ * pipelined through a bounded window of queries in flight. Cached answers that are read
+ * shortly before their expiry are refreshed in the background when a refresh-ahead ratio
+ * is configured.
+ *
  * @author jwhite
  */
 public class NettyDnsResolver implements DnsResolver {
@@ -81,6 +91,12 @@ public class NettyDnsResolver implements DnsResolver {
     private final Meter lookupsSuccessful;
     private final Meter lookupsFailed;
     private final Meter lookupsRejectedByCircuitBreaker;
+    private final Meter lookupsDeduplicated;
+    private final Meter lookupsRefreshedAhead;
+
+    private final Map<String, CompletableFuture<Optional<InetAddress>>> pendingLookups = new ConcurrentHashMap<>();
+    private final Map<InetAddress, CompletableFuture<Optional<String>>> pendingReverseLookups = new ConcurrentHashMap<>();
+    private final Set<String> pendingRefreshes = ConcurrentHashMap.newKeySet();
 
     private int numContexts = 0;
     private String nameservers = null;
@@ -89,6 +105,10 @@ public class NettyDnsResolver implements DnsResolver {
     private int maxTtlSeconds = -1;
     private int negativeTtlSeconds = -1;
     private long maxCacheSize = -1;
+    private long maxNegativeCacheSize = -1;
+    private double refreshAheadRatio = 0;
+
+    private int bulkWindowSize = 100;
 
     private boolean breakerEnabled = true;
     private int breakerFailureRateThreshold = 80;
@@ -113,6 +133,8 @@ public class NettyDnsResolver implements DnsResolver {
         lookupsSuccessful = metrics.meter("lookupsSuccessful");
         lookupsFailed = metrics.meter("lookupsFailed");
         lookupsRejectedByCircuitBreaker = metrics.meter("lookupsRejectedByCircuitBreaker");
+        lookupsDeduplicated = metrics.meter("lookupsDeduplicated");
+        lookupsRefreshedAhead = metrics.meter("lookupsRefreshedAhead");
         metrics.register("availableConcurrentCalls", (Gauge<Integer>) () -> bulkhead.getMetrics().getAvailableConcurrentCalls());
         metrics.register("maxAllowedConcurrentCalls", (Gauge<Integer>) () -> bulkhead.getMetrics().getMaxAllowedConcurrentCalls());
     }
@@ -127,10 +149,13 @@ public class NettyDnsResolver implements DnsResolver {
         // Initialize the cache with the given TTL settings - use defaults if the configured values
         // are less than 0
         final CaffeineDnsCache cacheWithDefaults = new CaffeineDnsCache();
+        final long effectiveMaxCacheSize = maxCacheSize < 0 ? cacheWithDefaults.maxSize() : maxCacheSize;
         cache = new CaffeineDnsCache(minTtlSeconds < 0 ? cacheWithDefaults.minTtl() : minTtlSeconds,
                 maxTtlSeconds < 0 ? cacheWithDefaults.maxTtl() : maxTtlSeconds,
                 negativeTtlSeconds < 0 ? cacheWithDefaults.negativeTtl() : negativeTtlSeconds,
-                maxCacheSize < 0 ? cacheWithDefaults.maxSize() : maxCacheSize);
+                effectiveMaxCacheSize,
+                maxNegativeCacheSize < 0 ? effectiveMaxCacheSize : maxNegativeCacheSize,
+                Math.max(0, refreshAheadRatio));
         cache.registerMetrics(metrics);
 
         final BulkheadConfig bulkheadConfig = BulkheadConfig.custom()
@@ -199,9 +224,8 @@ public class NettyDnsResolver implements DnsResolver {
     @Override
     public CompletableFuture<Optional<InetAddress>> lookup(String hostname) {
         return circuitBreaker.executeCompletionStage(() -> {
-            final NettyResolverContext resolverContext = iterator.next();
             final Timer.Context timerContext = lookupTimer.time();
-            return resolverContext.lookup(hostname).whenComplete((res, ex) -> {
+            return deduplicate(pendingLookups, hostname, h -> iterator.next().lookup(h)).whenComplete((res, ex) -> {
                 timerContext.stop();
             });
         }).toCompletableFuture();
@@ -210,14 +234,71 @@ public class NettyDnsResolver implements DnsResolver {
     @Override
     public CompletableFuture<Optional<String>> reverseLookup(InetAddress inetAddress) {
         return circuitBreaker.executeCompletionStage(() -> {
-            final NettyResolverContext resolverContext = iterator.next();
             final Timer.Context timerContext = lookupTimer.time();
-            return resolverContext.reverseLookup(inetAddress).whenComplete((res, ex) -> {
+            return deduplicate(pendingReverseLookups, inetAddress, a -> iterator.next().reverseLookup(a)).whenComplete((res, ex) -> {
                 timerContext.stop();
             });
         }).toCompletableFuture();
     }
 
+    @Override
+    public CompletableFuture<Map<String, Optional<InetAddress>>> lookupAll(Collection<String> hostnames) {
+        return BulkLookup.lookup(hostnames, bulkWindowSize, this::lookup);
+    }
+
+    @Override
+    public CompletableFuture<Map<InetAddress, Optional<String>>> reverseLookupAll(Collection<InetAddress> inetAddresses) {
+        return BulkLookup.lookup(inetAddresses, bulkWindowSize, this::reverseLookup);
+    }
+
+    /**
+     * Issues the lookup unless a lookup for the same key is already in flight, in which case the
+     * pending lookup is shared.
+     *
+     * The shared future is only ever handed out as the source of a dependent stage, so callers
+     * cannot complete it on behalf of each other.
+     */
+    private <K, V> CompletableFuture<V> deduplicate(Map<K, CompletableFuture<V>> pending, K key, Function<K, CompletableFuture<V>> lookup) {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        final CompletableFuture<V> existing = pending.putIfAbsent(key, future);
+        if (existing != null) {
+            lookupsDeduplicated.mark();
+            return existing;
+        }
+        try {
+            lookup.apply(key).whenComplete((res, ex) -> {
+                pending.remove(key, future);
+                if (ex != null) {
+                    future.completeExceptionally(ex);
+                } else {
+                    future.complete(res);
+                }
+            });
+        } catch (RuntimeException e) {
+            // i.e. the bulkhead is full
+            pending.remove(key, future);
+            throw e;
+        }
+        return future;
+    }
+
+    /**
+     * Marks the given name as being refreshed by one of the contexts.
+     *
+     * @return false if the name is already being refreshed
+     */
+    boolean beginRefresh(String name) {
+        if (pendingRefreshes.add(name)) {
+            lookupsRefreshedAhead.mark();
+            return true;
+        }
+        return false;
+    }
+
+    void endRefresh(String name) {
+        pendingRefreshes.remove(name);
+    }
+
     @VisibleForTesting
     CaffeineDnsCache getCache() {
         return cache;
@@ -335,6 +416,30 @@ public class NettyDnsResolver implements DnsResolver {
         this.maxCacheSize = maxCacheSize;
     }
 
+    public long getMaxNegativeCacheSize() {
+        return maxNegativeCacheSize;
+    }
+
+    public void setMaxNegativeCacheSize(long maxNegativeCacheSize) {
+        this.maxNegativeCacheSize = maxNegativeCacheSize;
+    }
+
+    public double getRefreshAheadRatio() {
+        return refreshAheadRatio;
+    }
+
+    public void setRefreshAheadRatio(double refreshAheadRatio) {
+        this.refreshAheadRatio = refreshAheadRatio;
+    }
+
+    public int getBulkWindowSize() {
+        return bulkWindowSize;
+    }
+
+    public void setBulkWindowSize(int bulkWindowSize) {
+        this.bulkWindowSize = bulkWindowSize;
+    }
+
     public CircuitBreaker getCircuitBreaker() {
         return circuitBreaker;
     }
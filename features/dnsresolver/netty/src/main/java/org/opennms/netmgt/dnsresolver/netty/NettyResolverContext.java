@@ -145,7 +145,6 @@ public class NettyResolverContext implements DnsResolver {
 
     @Override
     public CompletableFuture<Optional<String>> reverseLookup(InetAddress inetAddress) {
-        final CompletableFuture<Optional<String>> future = new CompletableFuture<>();
         final String name = ReverseMap.fromAddress(inetAddress).toString();
 
         // Netty does not perform caching when we query directly for DNS questions i.e. PTR requests
@@ -160,7 +159,11 @@ public class NettyResolverContext implements DnsResolver {
                     .filter(Objects::nonNull)
                     .findFirst();
             if (cachedHostname.isPresent()) {
-                // We found a cached hostname
+                // We found a cached hostname, query it again in the background if it is about to expire
+                // so that popular entries do not stall on a miss
+                if (cache.shouldRefresh(name)) {
+                    refresh(name);
+                }
                 return CompletableFuture.completedFuture(Optional.of(removeTrailingDot(cachedHostname.get())));
             } else {
                 // No hostname found return an empty result
@@ -170,6 +173,29 @@ public class NettyResolverContext implements DnsResolver {
 
         // Limit # of concurrent calls using the bulkhead
         bulkhead.acquirePermission();
+        return queryPtr(name);
+    }
+
+    private void refresh(String name) {
+        if (!parent.beginRefresh(name)) {
+            // Already being refreshed
+            return;
+        }
+        // Never wait for the bulkhead, the cached answer is still valid
+        if (!bulkhead.tryAcquirePermission()) {
+            parent.endRefresh(name);
+            return;
+        }
+        queryPtr(name).whenComplete((res, ex) -> parent.endRefresh(name));
+    }
+
+    /**
+     * Issues a PTR query for the given name and caches the answer.
+     *
+     * The caller must have acquired a permission from the bulkhead, which is released once the query completes.
+     */
+    private CompletableFuture<Optional<String>> queryPtr(String name) {
+        final CompletableFuture<Optional<String>> future = new CompletableFuture<>();
         final Future<AddressedEnvelope<DnsResponse, InetSocketAddress>> requestFuture = resolver.query(new DefaultDnsQuestion(name, DnsRecordType.PTR, DnsRecord.CLASS_IN));
         requestFuture.addListener(responseFuture -> {
             try {
@@ -48,6 +48,8 @@ import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
 
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.handler.codec.dns.DefaultDnsPtrRecord;
+import io.netty.handler.codec.dns.DnsRecord;
 import io.netty.resolver.dns.DnsCacheEntry;
 import io.netty.util.NetUtil;
 import org.junit.Test;
@@ -58,9 +60,11 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * DNS cache test largely adopted from https://github.com/netty/netty/blob/netty-4.1.38.Final/resolver-dns/src/test/java/io/netty/resolver/dns/DefaultDnsCacheTest.java
@@ -204,6 +208,67 @@ public class CaffeineDnsCacheTest {
         }
     }
 
+    @Test
+    public void testCacheFailedSeparately() throws Exception {
+        InetAddress addr1 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+
+        try {
+            EventLoop loop = group.next();
+            final CaffeineDnsCache cache = new CaffeineDnsCache(1, 100, 100, 0, 0, 0);
+            cache.cache("netty.io", null, addr1, 10000, loop);
+            cache.cache("private.netty.io", null, new Exception(), loop);
+
+            // Both are cached
+            assertEquals(2, cache.getSize());
+            assertEntry(cache.get("netty.io", null).get(0), addr1);
+            assertNotNull(cache.get("private.netty.io", null).get(0).cause());
+
+            // A successful answer replaces the failure
+            cache.cache("private.netty.io", null, addr1, 10000, loop);
+            List<? extends DnsCacheEntry> entries = cache.get("private.netty.io", null);
+            assertEquals(1, entries.size());
+            assertEntry(entries.get(0), addr1);
+            assertEquals(2, cache.getSize());
+
+            cache.clear();
+            assertNull(cache.get("netty.io", null));
+            assertEquals(0, cache.getSize());
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testShouldRefresh() throws Exception {
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+
+        try {
+            EventLoop loop = group.next();
+            final CaffeineDnsCache cache = new CaffeineDnsCache(0, 100, 100, 0, 0, 0.5);
+            cache.cache("1.0.0.10.in-addr.arpa", new DefaultDnsPtrRecord("1.0.0.10.in-addr.arpa.", DnsRecord.CLASS_IN, 2, "netty.io."), loop);
+
+            // Fresh answers and unknown names are not refreshed
+            assertFalse(cache.shouldRefresh("1.0.0.10.in-addr.arpa"));
+            assertFalse(cache.shouldRefresh("2.0.0.10.in-addr.arpa"));
+
+            // Half of the TTL is left
+            Thread.sleep(1200);
+            assertTrue(cache.shouldRefresh("1.0.0.10.in-addr.arpa"));
+
+            // Replacing the answer starts over
+            cache.cache("1.0.0.10.in-addr.arpa", new DefaultDnsPtrRecord("1.0.0.10.in-addr.arpa.", DnsRecord.CLASS_IN, 2, "netty.io."), loop);
+            assertFalse(cache.shouldRefresh("1.0.0.10.in-addr.arpa"));
+
+            // Disabled by default
+            final CaffeineDnsCache defaultCache = new CaffeineDnsCache();
+            defaultCache.cache("1.0.0.10.in-addr.arpa", new DefaultDnsPtrRecord("1.0.0.10.in-addr.arpa.", DnsRecord.CLASS_IN, 0, "netty.io."), loop);
+            assertFalse(defaultCache.shouldRefresh("1.0.0.10.in-addr.arpa"));
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
     @Test
     public void testDotHandling() throws Exception {
         InetAddress addr1 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
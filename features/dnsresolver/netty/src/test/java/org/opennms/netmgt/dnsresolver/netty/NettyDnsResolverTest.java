@@ -34,6 +34,8 @@ import static org.mockito.Mockito.mock;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -160,6 +162,22 @@ public class NettyDnsResolverTest {
         assertThat(dnsResolver.reverseLookup(InetAddress.getByName("1.1.1.1")).get(), equalTo(Optional.empty()));
     }
 
+    @Test
+    public void canDoBulkReverseLookups() throws UnknownHostException, ExecutionException, InterruptedException {
+        final Map<InetAddress, Optional<String>> hostnames = dnsResolver.reverseLookupAll(Arrays.asList(
+                InetAddress.getByName("173.242.186.51"),
+                InetAddress.getByName("1.1.1.1"),
+                InetAddress.getByName("173.242.186.51"))).get();
+
+        // Every address is only resolved once
+        assertThat(hostnames.size(), equalTo(2));
+        assertThat(hostnames.get(InetAddress.getByName("173.242.186.51")), equalTo(Optional.of("rnd.opennms.ca")));
+        assertThat(hostnames.get(InetAddress.getByName("1.1.1.1")), equalTo(Optional.empty()));
+
+        // Both answers are cached
+        assertThat(dnsResolver.getCache().getSize(), equalTo(2L));
+    }
+
     @Test
     public void canTriggerTimeoutException() throws InterruptedException {
         // Reinitialize the resolver using a non-routable address as the target - we want the queries to fail due to timeouts
@@ -24,14 +24,13 @@ package org.opennms.netmgt.dnsresolver.shell;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 import java.net.InetAddress;
+import java.net.SocketException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -57,6 +56,11 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 /**
  * Used to stress test (reverse) DNS lookups.
  *
+ * Lookups can be issued one by one or in batches using the bulk API, and can be limited to a fixed
+ * set of distinct addresses in order to exercise the cache. When the stub server is started and the
+ * resolver is configured to use it, the cache hit ratio is derived from the number of queries the
+ * server received.
+ *
  * @author jwhite
  */
 @Command(scope = "opennms", name = "stress-dns", description="Stress the DNS lookups")
@@ -78,45 +82,80 @@ public class StressCommand implements Action {
     @Option(name="-r", aliases="--report", description="Number of seconds after which the report should be generated")
     int reportIntervalInSeconds = 5;
 
-    private AtomicInteger nextIpAddress = new AtomicInteger(16843009); // Start at 1.1.1.1
+    @Option(name="-b", aliases="--batch", description="Number of addresses to resolve with a single bulk lookup, lookups are issued one by one when <= 1")
+    int batchSize = 1;
+
+    @Option(name="-d", aliases="--distinct", description="Number of distinct addresses to cycle through, every lookup uses a new address when <= 0")
+    int distinctAddresses = 0;
+
+    @Option(name="-p", aliases="--stub-server-port", description="Start a local stub DNS server on the given port, the resolver must be configured to use 127.0.0.1:<port> as nameserver")
+    int stubServerPort = 0;
+
+    @Option(name="--stub-ttl", description="TTL in seconds of the answers of the stub DNS server")
+    int stubTtlInSeconds = 300;
+
+    @Option(name="--stub-negative-percent", description="Percentage of addresses the stub DNS server answers with NXDOMAIN")
+    int stubNegativePercent = 0;
+
+    private static final int FIRST_IP_ADDRESS = 16843009; // Start at 1.1.1.1
+
+    private AtomicInteger nextIpAddress = new AtomicInteger();
 
     private final MetricRegistry metrics = new MetricRegistry();
 
     private final Meter lookups = metrics.meter("lookups");
     private final Meter responseSuccess = metrics.meter("response-success");
     private final Meter responseFailed = metrics.meter("response-failed");
+    private final Meter stubQueries = metrics.meter("stub-queries");
+
+    private InetAddress nextAddress() {
+        final int offset = nextIpAddress.getAndIncrement();
+        return InetAddresses.fromInteger(FIRST_IP_ADDRESS + (distinctAddresses > 0 ? Math.floorMod(offset, distinctAddresses) : offset));
+    }
 
     private class DNSLookupGenerator implements Runnable {
-        private final Set<CompletableFuture<Optional<String>>> pendingFutures = new HashSet<>();
+        private final Set<CompletableFuture<?>> pendingFutures = new HashSet<>();
 
         @Override
         public void run() {
             final RateLimiter rateLimiter = RateLimiter.create(lookupsPerSecondPerThread);
             while (true) {
-                rateLimiter.acquire(1);
-                final InetAddress addr = InetAddresses.fromInteger(nextIpAddress.incrementAndGet());
-                final CompletableFuture<Optional<String>> future = dnsResolver.reverseLookup(addr);
+                final CompletableFuture<?> future;
+                final int numLookups;
+                if (batchSize > 1) {
+                    rateLimiter.acquire(batchSize);
+                    final List<InetAddress> addrs = new ArrayList<>(batchSize);
+                    for (int i = 0; i < batchSize; i++) {
+                        addrs.add(nextAddress());
+                    }
+                    future = dnsResolver.reverseLookupAll(addrs);
+                    numLookups = batchSize;
+                } else {
+                    rateLimiter.acquire(1);
+                    future = dnsResolver.reverseLookup(nextAddress());
+                    numLookups = 1;
+                }
                 synchronized (pendingFutures) {
                     pendingFutures.add(future);
                 }
-                future.whenComplete((hostnameFromDns, ex) -> {
+                future.whenComplete((hostnamesFromDns, ex) -> {
                     synchronized (pendingFutures) {
                         pendingFutures.remove(future);
                     }
                     if (ex == null) {
-                        responseSuccess.mark();
+                        responseSuccess.mark(numLookups);
                     } else {
-                        responseFailed.mark();
+                        responseFailed.mark(numLookups);
                     }
                 });
-                lookups.mark();
+                lookups.mark(numLookups);
                 if (Thread.interrupted()) {
                     break;
                 }
             }
 
             // Copy the list of pending futures - so they don't change on us
-            final List<CompletableFuture<Optional<String>>> futuresToWaitFor;
+            final List<CompletableFuture<?>> futuresToWaitFor;
             synchronized (pendingFutures) {
                 futuresToWaitFor = new LinkedList<>(pendingFutures);
             }
@@ -143,6 +182,8 @@ public class StressCommand implements Action {
         numberOfThreads = Math.max(1, numberOfThreads);
         durationInSeconds = Math.max(1, durationInSeconds);
         reportIntervalInSeconds = Math.max(1, reportIntervalInSeconds);
+        batchSize = Math.max(1, batchSize);
+        stubNegativePercent = Math.max(0, Math.min(100, stubNegativePercent));
 
         // Display the effective settings and rates
         double lookupsPerSecond = (double)lookupsPerSecondPerThread * (double)numberOfThreads;
@@ -151,6 +192,28 @@ public class StressCommand implements Action {
         System.out.printf("Which will yield an effective\n");
         System.out.printf("\t %.2f lookups per second\n", lookupsPerSecond);
         System.out.printf("\t %.2f total lookups\n", lookupsPerSecond * durationInSeconds);
+        if (batchSize > 1) {
+            System.out.printf("Using bulk lookups of %d addresses\n", batchSize);
+        }
+        if (distinctAddresses > 0) {
+            System.out.printf("Cycling through %d distinct addresses\n", distinctAddresses);
+        }
+
+        // Start the stub server
+        StubDnsServer stubServer = null;
+        if (stubServerPort > 0) {
+            try {
+                stubServer = new StubDnsServer(stubServerPort, stubTtlInSeconds, stubNegativePercent, stubQueries);
+            } catch (SocketException e) {
+                System.err.printf("Failed to start the stub DNS server on port %d: %s\n", stubServerPort, e.getMessage());
+                return null;
+            }
+            stubServer.start();
+            System.out.printf("Stub DNS server listening on 127.0.0.1:%d, make sure the resolver is configured to use it with:\n", stubServer.getPort());
+            System.out.printf("\t config:edit org.opennms.features.dnsresolver.netty\n");
+            System.out.printf("\t property-set nameservers 127.0.0.1:%d\n", stubServer.getPort());
+            System.out.printf("\t config:update\n");
+        }
 
         // Setup the reporter
         ConsoleReporter reporter = ConsoleReporter.forRegistry(metrics)
@@ -189,12 +252,19 @@ public class StressCommand implements Action {
                 }
             } catch (InterruptedException e) { }
         } finally {
-            // Make sure we always stop the reporter
+            // Make sure we always stop the reporter and the stub server
             reporter.stop();
+            if (stubServer != null) {
+                stubServer.close();
+            }
         }
 
         // And display one last report...
         reporter.report();
+        if (stubServer != null && lookups.getCount() > 0) {
+            // Every query that reached the server was a cache miss
+            System.out.printf("Cache hit ratio: %.2f%%\n", 100.0 * Math.max(0, lookups.getCount() - stubQueries.getCount()) / lookups.getCount());
+        }
         return null;
     }
 }
@@ -0,0 +1,167 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.dnsresolver.shell;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.codahale.metrics.Meter;
+
+/**
+ * A minimal DNS server, answering all PTR queries with a generated hostname.
+ *
+ * Used to measure the throughput of the resolver without depending on the performance
+ * of the real DNS infrastructure. A configurable share of the addresses is answered with
+ * NXDOMAIN in order to exercise the negative cache.
+ */
+public class StubDnsServer implements AutoCloseable {
+
+    private static final int TYPE_PTR = 12;
+    private static final int CLASS_IN = 1;
+    private static final int RCODE_NXDOMAIN = 3;
+
+    private final DatagramSocket socket;
+    private final Thread thread;
+    private final int ttl;
+    private final int negativePercent;
+    private final Meter queries;
+
+    /**
+     * @param port the UDP port to listen on
+     * @param ttl the TTL of the answers in seconds
+     * @param negativePercent the percentage of names answered with NXDOMAIN
+     * @param queries marked for every query received
+     */
+    public StubDnsServer(int port, int ttl, int negativePercent, Meter queries) throws SocketException {
+        this.socket = new DatagramSocket(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        this.ttl = ttl;
+        this.negativePercent = negativePercent;
+        this.queries = queries;
+        this.thread = new Thread(this::serve, "Stub DNS Server");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+        thread.interrupt();
+    }
+
+    private void serve() {
+        final byte[] buffer = new byte[512];
+        while (!socket.isClosed()) {
+            final DatagramPacket request = new DatagramPacket(buffer, buffer.length);
+            try {
+                socket.receive(request);
+            } catch (IOException e) {
+                // Closed
+                return;
+            }
+            queries.mark();
+            final byte[] response;
+            try {
+                response = answer(ByteBuffer.wrap(request.getData(), request.getOffset(), request.getLength()));
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                // Malformed query, drop it
+                continue;
+            }
+            try {
+                socket.send(new DatagramPacket(response, response.length, request.getSocketAddress()));
+            } catch (IOException e) {
+                // Closed or unreachable, the resolver will time out
+            }
+        }
+    }
+
+    private byte[] answer(ByteBuffer query) {
+        final int id = query.getShort() & 0xFFFF;
+        final int flags = query.getShort() & 0xFFFF;
+        final int questions = query.getShort() & 0xFFFF;
+        if (questions != 1) {
+            throw new IllegalArgumentException("Expected a single question");
+        }
+        // Skip the answer, authority and additional counts
+        query.position(query.position() + 6);
+
+        // Read the name
+        final int questionStart = query.position();
+        final StringBuilder name = new StringBuilder();
+        int length;
+        while ((length = query.get() & 0xFF) != 0) {
+            final byte[] label = new byte[length];
+            query.get(label);
+            name.append(new String(label, StandardCharsets.US_ASCII)).append('.');
+        }
+        final int type = query.getShort() & 0xFFFF;
+        final int clazz = query.getShort() & 0xFFFF;
+        final int questionEnd = query.position();
+
+        final boolean negative = Math.floorMod(name.toString().hashCode(), 100) < negativePercent;
+        final boolean answer = !negative && type == TYPE_PTR && clazz == CLASS_IN;
+        final byte[] hostname = answer ? encodeName("host-" + Integer.toHexString(name.toString().hashCode()) + ".stub.opennms.org.") : new byte[0];
+
+        final ByteBuffer response = ByteBuffer.allocate(12 + (questionEnd - questionStart) + (answer ? 12 + hostname.length : 0));
+        response.putShort((short) id);
+        // QR, copy opcode and RD, RA
+        response.putShort((short) (0x8000 | (flags & 0x7900) | 0x0080 | (negative ? RCODE_NXDOMAIN : 0)));
+        response.putShort((short) 1);
+        response.putShort((short) (answer ? 1 : 0));
+        response.putShort((short) 0);
+        response.putShort((short) 0);
+        response.put(query.array(), query.arrayOffset() + questionStart, questionEnd - questionStart);
+        if (answer) {
+            // Pointer to the name in the question
+            response.putShort((short) (0xC000 | 12));
+            response.putShort((short) TYPE_PTR);
+            response.putShort((short) CLASS_IN);
+            response.putInt(ttl);
+            response.putShort((short) hostname.length);
+            response.put(hostname);
+        }
+        return response.array();
+    }
+
+    private static byte[] encodeName(String name) {
+        final ByteBuffer buffer = ByteBuffer.allocate(name.length() + 1);
+        for (final String label : name.split("\\.")) {
+            buffer.put((byte) label.length());
+            buffer.put(label.getBytes(StandardCharsets.US_ASCII));
+        }
+        buffer.put((byte) 0);
+        return buffer.array();
+    }
+}
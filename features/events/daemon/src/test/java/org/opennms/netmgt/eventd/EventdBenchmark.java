@@ -0,0 +1,531 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.eventd;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.opennms.core.test.ConfigurationTestUtils;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.config.DefaultEventConfDao;
+import org.opennms.netmgt.dao.api.AssetRecordDao;
+import org.opennms.netmgt.dao.api.DistPollerDao;
+import org.opennms.netmgt.dao.api.EventDao;
+import org.opennms.netmgt.dao.api.HwEntityDao;
+import org.opennms.netmgt.dao.api.IpInterfaceDao;
+import org.opennms.netmgt.dao.api.MonitoringSystemDao;
+import org.opennms.netmgt.dao.api.NodeDao;
+import org.opennms.netmgt.dao.api.ServiceTypeDao;
+import org.opennms.netmgt.eventd.processor.EventIpcBroadcastProcessor;
+import org.opennms.netmgt.eventd.processor.HibernateEventWriter;
+import org.opennms.netmgt.events.api.EventListener;
+import org.opennms.netmgt.events.api.model.IEvent;
+import org.opennms.netmgt.model.OnmsDistPoller;
+import org.opennms.netmgt.model.OnmsEvent;
+import org.opennms.netmgt.model.OnmsIpInterface;
+import org.opennms.netmgt.model.OnmsNode;
+import org.opennms.netmgt.model.OnmsServiceType;
+import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.netmgt.xml.event.Event;
+import org.opennms.netmgt.xml.event.Events;
+import org.opennms.netmgt.xml.event.Log;
+import org.springframework.beans.factory.annotation.AutowiredAnnotationBeanPostProcessor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Use the Java Microbenchmarking Harness (JMH) to measure the throughput and the allocation
+ * rate of the stages of the eventd event path.
+ * <p>
+ * Every benchmark method processes a batch of {@value #BATCH_SIZE} events and is annotated with
+ * {@link OperationsPerInvocation}, so the reported scores are events per second and the
+ * <code>gc.alloc.rate.norm</code> values of the GC profiler are bytes allocated per event.
+ * <p>
+ * The stages are:
+ * <ul>
+ *     <li>create - building the events of the mix, the baseline for the stages that need fresh events</li>
+ *     <li>expand - {@link EventExpander#expandEvent(Event)} against the loaded eventconf</li>
+ *     <li>expandParms - the <code>%parm%</code> expansion of the descr, logmsg and reduction key templates</li>
+ *     <li>write - {@link HibernateEventWriter} with stubbed DAOs, so that only the mapping to the entity is measured</li>
+ *     <li>broadcast - the synchronous broadcast to the registered listeners</li>
+ *     <li>sendNowSync - the whole handler chain as configured for eventd: expand, write and broadcast</li>
+ * </ul>
+ * Events are generated from mixes of internal, trap and syslog events and are expanded either
+ * against the complete eventconf shipped with OpenNMS or against a small subset of it.
+ * <p>
+ * The arguments are passed to JMH, i.e. <code>EventdBenchmark expand -p eventMix=traps -prof gc</code>.
+ */
+@Fork(value = 1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(EventdBenchmark.BATCH_SIZE)
+public class EventdBenchmark {
+
+    // the number of events that are processed in a single benchmark method call
+    static final int BATCH_SIZE = 1000;
+
+    private static final String MINIMAL_EVENTCONF_RESOURCE = "/eventd-benchmark/eventconf.xml";
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @State(Scope.Benchmark)
+    public static class EventdState {
+
+        // "default" is the eventconf.xml with all the event files shipped with OpenNMS
+        @Param({"default", "minimal"})
+        public String eventConf;
+
+        @Param({"mixed", "internal", "traps", "syslog"})
+        public String eventMix;
+
+        // the number of listeners, one listens to all events, the others to a few UEIs each
+        @Param({"8"})
+        public int listeners;
+
+        private final MetricRegistry m_registry = new MetricRegistry();
+
+        private final List<EventListener> m_listeners = new ArrayList<>();
+
+        private List<IntFunction<Event>> m_batch;
+
+        private DefaultEventConfDao m_eventConfDao;
+        private EventUtilDaoImpl m_eventUtil;
+        private EventExpander m_eventExpander;
+        private HibernateEventWriter m_eventWriter;
+        private EventIpcManagerDefaultImpl m_eventIpcManager;
+
+        private Log m_expandedLog;
+        private List<String[]> m_templates;
+
+        @Setup
+        public void setup() throws Exception {
+            m_eventConfDao = new DefaultEventConfDao();
+            m_eventConfDao.setConfigResource("default".equals(eventConf)
+                    ? new FileSystemResource(ConfigurationTestUtils.getFileForConfigFile("eventconf.xml"))
+                    : new ClassPathResource(MINIMAL_EVENTCONF_RESOURCE));
+            m_eventConfDao.afterPropertiesSet();
+
+            final DefaultListableBeanFactory beanFactory = createStubDaos();
+
+            m_eventUtil = new EventUtilDaoImpl(m_registry);
+            beanFactory.autowireBean(m_eventUtil);
+            beanFactory.registerSingleton("eventUtil", m_eventUtil);
+
+            m_eventExpander = new EventExpander(m_registry);
+            m_eventExpander.setEventConfDao(m_eventConfDao);
+            m_eventExpander.setEventUtil(m_eventUtil);
+            m_eventExpander.afterPropertiesSet();
+
+            m_eventWriter = new HibernateEventWriter(m_registry);
+            beanFactory.autowireBean(m_eventWriter);
+
+            m_eventIpcManager = new EventIpcManagerDefaultImpl(m_registry);
+
+            final EventIpcBroadcastProcessor broadcastProcessor = new EventIpcBroadcastProcessor(m_registry);
+            broadcastProcessor.setEventIpcBroadcaster(m_eventIpcManager);
+            broadcastProcessor.afterPropertiesSet();
+
+            final DefaultEventHandlerImpl eventHandler = new DefaultEventHandlerImpl(m_registry);
+            eventHandler.setEventProcessors(Arrays.asList(m_eventExpander, m_eventWriter, broadcastProcessor));
+            eventHandler.afterPropertiesSet();
+
+            m_eventIpcManager.setEventHandler(eventHandler);
+            m_eventIpcManager.setHandlerPoolSize(1);
+            m_eventIpcManager.afterPropertiesSet();
+
+            m_batch = createBatch(eventMix);
+            addListeners();
+
+            // pre-expanded events and their templates for the stages that follow the expansion
+            m_templates = new ArrayList<>(BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                final org.opennms.netmgt.xml.eventconf.Event eventConf = EventExpander.lookup(m_eventConfDao, createEvent(i));
+                m_templates.add(new String[] {
+                        eventConf.getDescr(),
+                        eventConf.getLogmsg() != null ? eventConf.getLogmsg().getContent() : null,
+                        eventConf.getAlarmData() != null ? eventConf.getAlarmData().getReductionKey() : null
+                });
+            }
+            m_expandedLog = createExpandedLog();
+        }
+
+        @TearDown
+        public void tearDown() {
+            // Stops the listener threads. The events are only sent synchronously, so the
+            // event handler pool never started a thread.
+            m_listeners.forEach(m_eventIpcManager::removeEventListener);
+            m_listeners.clear();
+        }
+
+        /**
+         * @return a new log with a batch of expanded events
+         */
+        public Log createExpandedLog() {
+            final Events events = new Events();
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                final Event event = createEvent(i);
+                m_eventExpander.expandEvent(event);
+                events.addEvent(event);
+            }
+            final Log log = new Log();
+            log.setEvents(events);
+            return log;
+        }
+
+        public Event createEvent(final int i) {
+            return m_batch.get(i).apply(i);
+        }
+
+        private void addListeners() {
+            final List<String> ueis = new ArrayList<>();
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                final String uei = m_batch.get(i).apply(i).getUei();
+                if (!ueis.contains(uei)) {
+                    ueis.add(uei);
+                }
+            }
+
+            for (int i = 0; i < listeners; i++) {
+                final EventListener listener = new BenchmarkListener("BenchmarkListener-" + i);
+                if (i == 0) {
+                    m_eventIpcManager.addEventListener(listener);
+                } else {
+                    m_eventIpcManager.addEventListener(listener, Arrays.asList(ueis.get(i % ueis.size()), ueis.get((i + 1) % ueis.size())));
+                }
+                m_listeners.add(listener);
+            }
+        }
+
+        private DefaultListableBeanFactory createStubDaos() {
+            final OnmsNode node = new OnmsNode();
+            node.setLabel("benchmark-node");
+            node.setForeignSource("benchmark");
+            node.setForeignId("1");
+            final OnmsIpInterface ipInterface = new OnmsIpInterface();
+            ipInterface.setIpHostName("benchmark-node.example.org");
+            final OnmsDistPoller distPoller = new OnmsDistPoller("00000000-0000-0000-0000-000000000000");
+
+            final DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+            final AutowiredAnnotationBeanPostProcessor autowiredProcessor = new AutowiredAnnotationBeanPostProcessor();
+            autowiredProcessor.setBeanFactory(beanFactory);
+            beanFactory.addBeanPostProcessor(autowiredProcessor);
+
+            beanFactory.registerSingleton("nodeDao", stubDao(NodeDao.class, node));
+            beanFactory.registerSingleton("ipInterfaceDao", stubDao(IpInterfaceDao.class, ipInterface));
+            beanFactory.registerSingleton("assetRecordDao", stubDao(AssetRecordDao.class, null));
+            beanFactory.registerSingleton("hwEntityDao", stubDao(HwEntityDao.class, null));
+            beanFactory.registerSingleton("distPollerDao", stubDao(DistPollerDao.class, distPoller));
+            beanFactory.registerSingleton("monitoringSystemDao", stubDao(MonitoringSystemDao.class, distPoller));
+            beanFactory.registerSingleton("serviceTypeDao", stubDao(ServiceTypeDao.class, new OnmsServiceType(1, "ICMP")));
+            beanFactory.registerSingleton("eventDao", stubDao(EventDao.class, null));
+            beanFactory.registerSingleton("transactionTemplate", new TransactionOperations() {
+                @Override
+                public <T> T execute(final TransactionCallback<T> action) {
+                    return action.doInTransaction(null);
+                }
+            });
+            return beanFactory;
+        }
+    }
+
+    private static class BenchmarkListener implements EventListener {
+        private final String m_name;
+
+        private volatile IEvent m_lastEvent;
+
+        private BenchmarkListener(final String name) {
+            m_name = name;
+        }
+
+        @Override
+        public String getName() {
+            return m_name;
+        }
+
+        @Override
+        public void onEvent(final IEvent e) {
+            m_lastEvent = e;
+        }
+    }
+
+    /**
+     * Creates a DAO that answers every lookup with the given entity. Stubs are used instead
+     * of mocks to keep the recording of invocations out of the measured allocations.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T stubDao(final Class<T> daoClass, final Object entity) {
+        final AtomicInteger ids = new AtomicInteger();
+        return (T) Proxy.newProxyInstance(daoClass.getClassLoader(), new Class<?>[] { daoClass }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return daoClass.getSimpleName() + "Stub";
+                case "save":
+                    // assign the generated key as the database would
+                    final Integer id = ids.incrementAndGet();
+                    if (args[0] instanceof OnmsEvent) {
+                        ((OnmsEvent) args[0]).setId(id);
+                    }
+                    return id;
+                default:
+                    if (method.getReturnType() == String.class) {
+                        return entity instanceof OnmsNode ? ((OnmsNode) entity).getLabel() : null;
+                    }
+                    return entity != null && method.getReturnType().isInstance(entity) ? entity : null;
+            }
+        });
+    }
+
+    private static List<IntFunction<Event>> createBatch(final String eventMix) {
+        final List<IntFunction<Event>> generators = new ArrayList<>();
+        switch (eventMix) {
+            case "internal":
+                generators.addAll(internalEvents());
+                break;
+            case "traps":
+                generators.addAll(trapEvents());
+                break;
+            case "syslog":
+                generators.addAll(syslogEvents());
+                break;
+            case "mixed":
+                // traps and syslog messages usually outnumber the events generated by the daemons
+                generators.addAll(internalEvents());
+                for (int i = 0; i < 3; i++) {
+                    generators.addAll(trapEvents());
+                    generators.addAll(syslogEvents());
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown event mix: " + eventMix);
+        }
+
+        // fixed seed so that every run processes the same sequence of events
+        final Random random = new Random(42);
+        final List<IntFunction<Event>> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(generators.get(random.nextInt(generators.size())));
+        }
+        return Collections.unmodifiableList(batch);
+    }
+
+    private static List<IntFunction<Event>> internalEvents() {
+        return Arrays.asList(
+                i -> internal("uei.opennms.org/nodes/nodeDown", i)
+                        .addParam("nodelabel", "node-" + nodeId(i))
+                        .addParam("eventReason", "Down")
+                        .getEvent(),
+                i -> internal("uei.opennms.org/nodes/nodeUp", i)
+                        .addParam("nodelabel", "node-" + nodeId(i))
+                        .getEvent(),
+                i -> internal("uei.opennms.org/nodes/nodeLostService", i)
+                        .setInterface(address(i))
+                        .setService("ICMP")
+                        .addParam("eventReason", "Timeout retrying ICMP")
+                        .getEvent(),
+                i -> internal("uei.opennms.org/nodes/interfaceDown", i)
+                        .setInterface(address(i))
+                        .addParam("nodelabel", "node-" + nodeId(i))
+                        .addParam("ifDescr", "GigabitEthernet0/" + (i % 48))
+                        .getEvent());
+    }
+
+    private static List<IntFunction<Event>> trapEvents() {
+        return Arrays.asList(
+                i -> trap("uei.opennms.org/generic/traps/SNMP_Link_Down", ".1.3.6.1.6.3.1.1.5", 2, 0, i)
+                        .addParam(".1.3.6.1.2.1.2.2.1.1." + (i % 48), i % 48)
+                        .getEvent(),
+                i -> ccmGatewayFailed(i, "uei.opennms.org/vendor/Cisco/traps/ccmGatewayFailed", 1),
+                i -> ccmGatewayFailed(i, "uei.opennms.org/vendor/Cisco/traps/ccmGatewayFailedClear", 0),
+                // no matching event definition
+                i -> trap("uei.opennms.org/default/trap", ".1.3.6.1.4.1.99999.1", 6, 17, i)
+                        .addParam(".1.3.6.1.4.1.99999.1.1.0", "value-" + i)
+                        .addParam(".1.3.6.1.4.1.99999.1.2.0", i)
+                        .getEvent());
+    }
+
+    private static List<IntFunction<Event>> syslogEvents() {
+        return Arrays.asList(
+                i -> syslog("uei.opennms.org/vendor/postfix/syslog/postfix/obsoleteDatabase", i)
+                        .addParam("syslogmessage", "database /etc/postfix/virtual.db is older than source file /etc/postfix/virtual")
+                        .addParam("process", "postfix/smtpd")
+                        .addParam("processid", String.valueOf(1000 + i % 100))
+                        .addParam("databaseName", "/etc/postfix/virtual.db")
+                        .addParam("sourceFile", "/etc/postfix/virtual")
+                        .getEvent(),
+                // no matching event definition
+                i -> syslog("uei.opennms.org/syslogd/daemon/Warning", i)
+                        .addParam("syslogmessage", "connection from 10.0.0." + (i % 250) + " refused")
+                        .addParam("process", "sshd")
+                        .addParam("processid", String.valueOf(2000 + i % 100))
+                        .getEvent());
+    }
+
+    private static Event ccmGatewayFailed(final int i, final String uei, final int failCauseCode) {
+        final String prefix = ".1.3.6.1.4.1.9.9.156.1.";
+        return trap(uei, ".1.3.6.1.4.1.9.9.156.2", 6, 4, i)
+                .addParam(prefix + "10.2.1.2.0", 4)
+                .addParam(prefix + "3.1.1.2." + (i % 8), "gateway-" + (i % 8))
+                .addParam(prefix + "3.1.1.3." + (i % 8), 1)
+                .addParam(prefix + "3.1.1.4." + (i % 8), "10.0.1." + (i % 8))
+                .addParam(prefix + "10.2.1.5.0", failCauseCode)
+                .getEvent();
+    }
+
+    private static EventBuilder internal(final String uei, final int i) {
+        return new EventBuilder(uei, "OpenNMS.Poller.DefaultPollContext")
+                .setNodeid(nodeId(i));
+    }
+
+    private static EventBuilder trap(final String uei, final String enterpriseId, final int generic, final int specific, final int i) {
+        final InetAddress address = address(i);
+        return new EventBuilder(uei, "trapd")
+                .setNodeid(nodeId(i))
+                .setInterface(address)
+                .setSnmpHost(InetAddressUtils.str(address))
+                .setHost(InetAddressUtils.str(address))
+                .setCommunity("public")
+                .setSnmpVersion("v2c")
+                .setEnterpriseId(enterpriseId)
+                .setGeneric(generic)
+                .setSpecific(specific)
+                .setSnmpTimeStamp(i);
+    }
+
+    private static EventBuilder syslog(final String uei, final int i) {
+        final InetAddress address = address(i);
+        return new EventBuilder(uei, "syslogd")
+                .setNodeid(nodeId(i))
+                .setInterface(address)
+                .setHost(InetAddressUtils.str(address))
+                .addParam("severity", "Warning")
+                .addParam("timestamp", "2024-01-01T00:00:00Z")
+                .addParam("hostname", "node-" + nodeId(i));
+    }
+
+    private static int nodeId(final int i) {
+        return 1 + i % 250;
+    }
+
+    private static InetAddress address(final int i) {
+        return InetAddressUtils.addr("10.0." + (i / 250 % 250) + "." + (1 + i % 250));
+    }
+
+    @Benchmark
+    public void create(final EventdState state, final Blackhole blackhole) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            blackhole.consume(state.createEvent(i));
+        }
+    }
+
+    @Benchmark
+    public void expand(final EventdState state, final Blackhole blackhole) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            final Event event = state.createEvent(i);
+            state.m_eventExpander.expandEvent(event);
+            blackhole.consume(event);
+        }
+    }
+
+    @Benchmark
+    public void expandParms(final EventdState state, final Blackhole blackhole) {
+        final List<Event> events = state.m_expandedLog.getEvents().getEventCollection();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            final Event event = events.get(i);
+            for (final String template : state.m_templates.get(i)) {
+                if (template != null) {
+                    blackhole.consume(state.m_eventUtil.expandParms(template, event));
+                }
+            }
+        }
+    }
+
+    /**
+     * A fresh batch of expanded events for every invocation, as the writer assigns
+     * the database ids to the events it processes.
+     */
+    @State(Scope.Thread)
+    public static class WriteState {
+
+        private Log m_log;
+
+        @Setup(Level.Invocation)
+        public void setup(final EventdState state) {
+            m_log = state.createExpandedLog();
+        }
+    }
+
+    @Benchmark
+    public void write(final EventdState state, final WriteState writeState) throws Exception {
+        state.m_eventWriter.process(writeState.m_log);
+    }
+
+    @Benchmark
+    public void broadcast(final EventdState state) {
+        for (final Event event : state.m_expandedLog.getEvents().getEventCollection()) {
+            state.m_eventIpcManager.broadcastNow(event, true);
+        }
+    }
+
+    @Benchmark
+    public void sendNowSync(final EventdState state) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            state.m_eventIpcManager.sendNowSync(state.createEvent(i));
+        }
+    }
+}
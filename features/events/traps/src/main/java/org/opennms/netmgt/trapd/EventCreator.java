@@ -55,6 +55,15 @@ class EventCreator {
     }
 
     public Event createEventFrom(final TrapDTO trapDTO, final String systemId, final String location, final InetAddress trapAddress) {
+        return createEventFrom(trapDTO, systemId, location, trapAddress, null);
+    }
+
+    /**
+     * Creates the event for the given trap.
+     *
+     * @param uei the UEI of the event if it is already known, otherwise it is looked up in the event configuration
+     */
+    public Event createEventFrom(final TrapDTO trapDTO, final String systemId, final String location, final InetAddress trapAddress, final String uei) {
         LOG.debug("{} trap - trapInterface: {}", trapDTO.getVersion(), trapDTO.getAgentAddress());
 
         // Set event data
@@ -100,9 +109,13 @@ class EventCreator {
 
         // Get event template and set uei, if unknown
         final Event event = eventBuilder.getEvent();
+        if (uei != null) {
+            event.setUei(uei);
+            return event;
+        }
         final org.opennms.netmgt.xml.eventconf.Event econf = eventConfDao.findByEvent(event);
         if (econf == null || econf.getUei() == null) {
-            event.setUei("uei.opennms.org/default/trap");
+            event.setUei(TrapEventConfResolver.DEFAULT_TRAP_UEI);
         } else {
             event.setUei(econf.getUei());
         }
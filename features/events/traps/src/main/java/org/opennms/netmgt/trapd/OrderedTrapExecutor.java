@@ -0,0 +1,134 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.trapd;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+
+/**
+ * Executes the processing of traps on a pool of single threaded workers.
+ *
+ * Traps are assigned to a worker by their source address, so that all of the traps
+ * sent by an agent are processed in the order in which they were received, while
+ * traps from different agents are processed in parallel.
+ *
+ * The queue of every worker is bounded. Submitting to a full queue blocks the caller,
+ * which pushes back on the Sink consumer threads instead of buffering without bounds.
+ *
+ * The queues are held in memory only. Tasks which are still queued when the workers
+ * are stopped with {@link #shutdownNow()} are not executed.
+ */
+class OrderedTrapExecutor {
+
+    private final ThreadPoolExecutor[] workers;
+
+    public OrderedTrapExecutor(final int threads, final int queueSize) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("queueSize must be positive");
+        }
+        final LogPreservingThreadFactory threadFactory = new LogPreservingThreadFactory(Trapd.LOG4J_CATEGORY + "-Processor", threads);
+        workers = new ThreadPoolExecutor[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize), threadFactory);
+            workers[i].prestartCoreThread();
+        }
+    }
+
+    /**
+     * Queues the task on the worker responsible for the given source, waiting for space in its queue.
+     *
+     * @param source the address the traps were received from
+     * @param task processes the traps
+     * @throws InterruptedException if interrupted while waiting for space in the queue
+     * @throws RejectedExecutionException if the workers were shut down
+     */
+    public void execute(final InetAddress source, final Runnable task) throws InterruptedException {
+        final ThreadPoolExecutor worker = workers[Math.floorMod(Objects.hashCode(source), workers.length)];
+        if (worker.isShutdown()) {
+            throw new RejectedExecutionException("The trap processor was shut down.");
+        }
+        // The single core thread was started up front, so the task can be handed over
+        // to it through the queue directly
+        final BlockingQueue<Runnable> queue = worker.getQueue();
+        queue.put(task);
+
+        // A worker which terminated in the meantime would never take the task
+        if (worker.isTerminated() && queue.remove(task)) {
+            throw new RejectedExecutionException("The trap processor was shut down.");
+        }
+    }
+
+    /**
+     * @return the number of tasks waiting for a worker
+     */
+    public int getQueueSize() {
+        int size = 0;
+        for (final ThreadPoolExecutor worker : workers) {
+            size += worker.getQueue().size();
+        }
+        return size;
+    }
+
+    /**
+     * Stops the workers once the queued tasks are processed.
+     */
+    public void shutdown() {
+        for (final ThreadPoolExecutor worker : workers) {
+            worker.shutdown();
+        }
+    }
+
+    /**
+     * Stops the workers without processing the queued tasks.
+     *
+     * @return the tasks which were still queued
+     */
+    public List<Runnable> shutdownNow() {
+        final List<Runnable> tasks = new ArrayList<>();
+        for (final ThreadPoolExecutor worker : workers) {
+            tasks.addAll(worker.shutdownNow());
+        }
+        return tasks;
+    }
+
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (final ThreadPoolExecutor worker : workers) {
+            if (!worker.awaitTermination(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
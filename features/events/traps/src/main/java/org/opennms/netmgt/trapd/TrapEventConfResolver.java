@@ -0,0 +1,206 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.trapd;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.opennms.netmgt.config.api.EventConfDao;
+import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.netmgt.xml.eventconf.Event;
+import org.opennms.netmgt.xml.eventconf.Events;
+import org.opennms.netmgt.xml.eventconf.LogDestType;
+import org.opennms.netmgt.xml.eventconf.Logmsg;
+import org.opennms.netmgt.xml.eventconf.Mask;
+import org.opennms.netmgt.xml.eventconf.Maskelement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Resolves the event definitions of traps by their identity.
+ *
+ * Most event definitions for traps only match on the enterprise id, the generic and
+ * specific type and the trap OID. When none of the definitions considered for a trap
+ * identity look at anything else, i.e. at the varbinds or the agent address, the
+ * matching definition is the same for every trap with that identity and the result of
+ * the lookup can be reused. This allows traps to be discarded before the varbinds are
+ * decoded and the node is resolved.
+ *
+ * Identities for which the lookup depends on the content of the trap are remembered
+ * as such and always take the full path. The cache is invalidated whenever the event
+ * configuration is reloaded.
+ */
+class TrapEventConfResolver {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TrapEventConfResolver.class);
+
+    protected static final String DEFAULT_TRAP_UEI = "uei.opennms.org/default/trap";
+
+    /**
+     * The mask elements which only depend on the identity of the trap.
+     */
+    private static final Set<String> IDENTITY_MASK_ELEMENTS = ImmutableSet.of(
+            Maskelement.TAG_SNMP_EID,
+            Maskelement.TAG_SNMP_GENERIC,
+            Maskelement.TAG_SNMP_SPECIFIC,
+            Maskelement.TAG_SNMP_TRAPOID,
+            Maskelement.TAG_SOURCE);
+
+    /**
+     * Marks identities for which the event definition depends on the content of the trap.
+     */
+    private static final Resolution UNRESOLVABLE = new Resolution(null, null);
+
+    /**
+     * The event definition resolved for a trap identity.
+     */
+    static class Resolution {
+        private final String uei;
+        private final Boolean discard;
+
+        private Resolution(final String uei, final Boolean discard) {
+            this.uei = uei;
+            this.discard = discard;
+        }
+
+        /**
+         * @return the UEI of the events created for traps with this identity
+         */
+        public String getUei() {
+            return uei;
+        }
+
+        /**
+         * @return true if traps with this identity are discarded, false if they are kept or
+         * empty if this can only be decided once the event was created
+         */
+        public Optional<Boolean> isDiscard() {
+            return Optional.ofNullable(discard);
+        }
+    }
+
+    private final EventConfDao eventConfDao;
+
+    private final Map<TrapIdentityDTO, Resolution> resolutions = new ConcurrentHashMap<>();
+
+    private volatile Events rootEvents;
+
+    private volatile long generation;
+
+    public TrapEventConfResolver(final EventConfDao eventConfDao) {
+        this.eventConfDao = Objects.requireNonNull(eventConfDao);
+    }
+
+    /**
+     * @param trapIdentity the identity of the trap
+     * @return the resolution, or empty if the event definition depends on the content of the trap
+     */
+    public Optional<Resolution> resolve(final TrapIdentityDTO trapIdentity) {
+        if (trapIdentity == null) {
+            return Optional.empty();
+        }
+
+        final Events events = eventConfDao.getRootEvents();
+        if (events == null) {
+            return Optional.empty();
+        }
+        if (events != rootEvents || events.getGeneration() != generation) {
+            synchronized (this) {
+                if (events != rootEvents || events.getGeneration() != generation) {
+                    LOG.debug("Event configuration changed, clearing {} cached trap resolutions.", resolutions.size());
+                    resolutions.clear();
+                    rootEvents = events;
+                    generation = events.getGeneration();
+                }
+            }
+        }
+
+        final Resolution resolution = resolutions.computeIfAbsent(trapIdentity, identity -> resolve(events, identity));
+        return resolution != UNRESOLVABLE ? Optional.of(resolution) : Optional.empty();
+    }
+
+    /**
+     * Decides whether an event, created from a trap, should be discarded.
+     *
+     * @param event the event with its UEI set
+     * @return true if the matching event definition routes the event to discardtraps
+     */
+    public boolean shouldDiscard(final org.opennms.netmgt.xml.event.Event event) {
+        return isDiscard(eventConfDao.findByEvent(event));
+    }
+
+    private Resolution resolve(final Events events, final TrapIdentityDTO trapIdentity) {
+        final org.opennms.netmgt.xml.event.Event probe = new EventBuilder(null, "trapd")
+                .setGeneric(trapIdentity.getGeneric())
+                .setSpecific(trapIdentity.getSpecific())
+                .setEnterpriseId(trapIdentity.getEnterpriseId())
+                .setTrapOID(trapIdentity.getTrapOID())
+                .getEvent();
+
+        // Walk the candidates in the order used by the event configuration, any
+        // definition which looks beyond the identity before the first match makes
+        // the result depend on the content of the trap
+        Event econf = null;
+        for (final Event candidate : events.getPotentialMatches(probe)) {
+            if (!dependsOnIdentityOnly(candidate)) {
+                LOG.debug("Event definition {} depends on more than the trap identity, not caching resolution for {}.", candidate.getUei(), trapIdentity);
+                return UNRESOLVABLE;
+            }
+            if (candidate.matches(probe).matched()) {
+                econf = candidate;
+                break;
+            }
+        }
+
+        final String uei = econf == null || econf.getUei() == null ? DEFAULT_TRAP_UEI : econf.getUei();
+
+        // The discard decision is made with the UEI set on the event, it can only
+        // be made up front if the UEI is indexed and does not require matching
+        final Event ueiEconf = events.getEventByUeiOptimistic(uei);
+        return new Resolution(uei, ueiEconf != null ? isDiscard(ueiEconf) : null);
+    }
+
+    private static boolean dependsOnIdentityOnly(final Event econf) {
+        final Mask mask = econf.getMask();
+        if (mask == null || mask.getMaskelements().isEmpty()) {
+            // Only matched by UEI, which traps do not have
+            return true;
+        }
+        if (!mask.getVarbinds().isEmpty()) {
+            return false;
+        }
+        return mask.getMaskelements().stream().allMatch(element -> IDENTITY_MASK_ELEMENTS.contains(element.getMename()));
+    }
+
+    private static boolean isDiscard(final Event econf) {
+        if (econf != null) {
+            final Logmsg logmsg = econf.getLogmsg();
+            return logmsg != null && LogDestType.DISCARDTRAPS.equals(logmsg.getDest());
+        }
+        return false;
+    }
+}
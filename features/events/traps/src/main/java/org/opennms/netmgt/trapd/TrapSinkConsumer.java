@@ -23,7 +23,12 @@ package org.opennms.netmgt.trapd;
 
 import static org.opennms.core.utils.InetAddressUtils.addr;
 
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.opennms.core.ipc.sink.api.MessageConsumer;
 import org.opennms.core.ipc.sink.api.MessageConsumerManager;
@@ -36,12 +41,11 @@ import org.opennms.netmgt.dao.api.DistPollerDao;
 import org.opennms.netmgt.dao.api.InterfaceToNodeCache;
 import org.opennms.netmgt.events.api.EventForwarder;
 import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.netmgt.trapd.TrapEventConfResolver.Resolution;
 import org.opennms.netmgt.trapd.jmx.TrapdInstrumentation;
 import org.opennms.netmgt.xml.event.Event;
 import org.opennms.netmgt.xml.event.Events;
 import org.opennms.netmgt.xml.event.Log;
-import org.opennms.netmgt.xml.eventconf.LogDestType;
-import org.opennms.netmgt.xml.eventconf.Logmsg;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -58,6 +62,26 @@ public class TrapSinkConsumer implements MessageConsumer<TrapInformationWrapper,
 	 */
 	private static final String LOCALHOST_ADDRESS = InetAddressUtils.getLocalHostName();
 
+	/**
+	 * The number of threads processing traps, partitioned by source address.
+	 * When not set, the traps are processed on the Sink consumer threads.
+	 *
+	 * Trap messages are acknowledged to the Sink as soon as they are queued for
+	 * processing. The queues are held in memory only, so traps still queued when
+	 * Trapd is stopped are processed for up to {@link #SHUTDOWN_TIMEOUT_SECONDS}
+	 * and dropped afterwards, and traps queued when the JVM crashes are lost.
+	 */
+	protected static final String PROCESSING_THREADS_SYS_PROP = "org.opennms.netmgt.trapd.processingThreads";
+
+	/**
+	 * The number of trap messages which can be queued for each processing thread.
+	 */
+	protected static final String PROCESSING_QUEUE_SIZE_SYS_PROP = "org.opennms.netmgt.trapd.processingQueueSize";
+
+	private static final int DEFAULT_PROCESSING_QUEUE_SIZE = 1000;
+
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
 	@Autowired
 	private MessageConsumerManager messageConsumerManager;
 
@@ -79,10 +103,39 @@ public class TrapSinkConsumer implements MessageConsumer<TrapInformationWrapper,
 
 	private EventCreator eventCreator;
 
+	private TrapEventConfResolver eventConfResolver;
+
+	private OrderedTrapExecutor processor;
+
 	@PostConstruct
 	public void init() throws Exception {
-		messageConsumerManager.registerConsumer(this);
 		eventCreator = new EventCreator(interfaceToNodeCache, eventConfDao);
+		eventConfResolver = new TrapEventConfResolver(eventConfDao);
+
+		final int processingThreads = Integer.getInteger(PROCESSING_THREADS_SYS_PROP, 0);
+		if (processingThreads > 0) {
+			LOG.info("Processing traps on {} threads.", processingThreads);
+			processor = new OrderedTrapExecutor(processingThreads, Integer.getInteger(PROCESSING_QUEUE_SIZE_SYS_PROP, DEFAULT_PROCESSING_QUEUE_SIZE));
+		}
+
+		messageConsumerManager.registerConsumer(this);
+	}
+
+	@PreDestroy
+	public void destroy() throws Exception {
+		if (processor != null) {
+			// Stop receiving before draining the queues, the Sink has already acknowledged the queued messages
+			messageConsumerManager.unregisterConsumer(this);
+			processor.shutdown();
+			if (!processor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				int dropped = 0;
+				for (Runnable task : processor.shutdownNow()) {
+					dropped += ((ProcessingTask) task).getTrapCount();
+				}
+				LOG.warn("Timed out while waiting for queued trap messages to be processed, dropping {} traps.", dropped);
+				trapdInstrumentation.incDroppedCount(dropped);
+			}
+		}
 	}
 
 	@Override
@@ -92,10 +145,55 @@ public class TrapSinkConsumer implements MessageConsumer<TrapInformationWrapper,
 
 	@Override
 	public void handleMessage(TrapLogDTO messageLog) {
+		if (processor == null) {
+			process(messageLog);
+			return;
+		}
+
+		// Traps from the same source are processed by the same thread, in order
+		try {
+			processor.execute(messageLog.getTrapAddress(), new ProcessingTask(messageLog));
+		} catch (InterruptedException e) {
+			LOG.warn("Interrupted while queuing traps from {}, dropping {} traps.", messageLog.getTrapAddress(), messageLog.getMessages().size());
+			trapdInstrumentation.incDroppedCount(messageLog.getMessages().size());
+			Thread.currentThread().interrupt();
+		} catch (RejectedExecutionException e) {
+			LOG.warn("Trap processing was stopped, dropping {} traps from {}.", messageLog.getMessages().size(), messageLog.getTrapAddress());
+			trapdInstrumentation.incDroppedCount(messageLog.getMessages().size());
+		}
+	}
+
+	private class ProcessingTask implements Runnable {
+		private final TrapLogDTO messageLog;
+		private final long queuedAt = System.nanoTime();
+
+		private ProcessingTask(TrapLogDTO messageLog) {
+			this.messageLog = messageLog;
+		}
+
+		private int getTrapCount() {
+			return messageLog.getMessages().size();
+		}
+
+		@Override
+		public void run() {
+			trapdInstrumentation.recordQueueTime(System.nanoTime() - queuedAt);
+			try {
+				process(messageLog);
+			} catch (Throwable e) {
+				LOG.error("Unexpected error processing traps from {}", messageLog.getTrapAddress(), e);
+				trapdInstrumentation.incErrorCount();
+			}
+		}
+	}
+
+	private void process(TrapLogDTO messageLog) {
 		try (Logging.MDCCloseable mdc = Logging.withPrefixCloseable(Trapd.LOG4J_CATEGORY)) {
 			final Log eventLog = toLog(messageLog);
 
+			final long sendStart = System.nanoTime();
 			eventForwarder.sendNowSync(eventLog);
+			trapdInstrumentation.recordSendTime(System.nanoTime() - sendStart);
 
 			// If configured, also send events for new suspects
 			if (config.getNewSuspectOnTrap()) {
@@ -116,12 +214,36 @@ public class TrapSinkConsumer implements MessageConsumer<TrapInformationWrapper,
 
 		for (TrapDTO eachMessage : messageLog.getMessages()) {
 			try {
+				// Resolve the event definition by the identity of the trap, if possible,
+				// so that discarded traps are dropped before the event is created
+				final long lookupStart = System.nanoTime();
+				final Optional<Resolution> resolution = eventConfResolver.resolve(eachMessage.getTrapIdentity());
+				final Optional<Boolean> discardByIdentity = resolution.flatMap(Resolution::isDiscard);
+				trapdInstrumentation.recordLookupTime(System.nanoTime() - lookupStart);
+				if (discardByIdentity.orElse(false)) {
+					LOG.debug("Trap discarded due to matching event having logmsg dest == discardtraps");
+					trapdInstrumentation.incEarlyDiscardCount();
+					continue;
+				}
+
+				final long createStart = System.nanoTime();
 				final Event event = eventCreator.createEventFrom(
 						eachMessage,
 						messageLog.getSystemId(),
 						messageLog.getLocation(),
-						messageLog.getTrapAddress());
-				if (!shouldDiscard(event)) {
+						messageLog.getTrapAddress(),
+						resolution.map(Resolution::getUei).orElse(null));
+				trapdInstrumentation.recordCreateTime(System.nanoTime() - createStart);
+
+				final boolean discard;
+				if (discardByIdentity.isPresent()) {
+					discard = false;
+				} else {
+					final long discardStart = System.nanoTime();
+					discard = eventConfResolver.shouldDiscard(event);
+					trapdInstrumentation.recordLookupTime(System.nanoTime() - discardStart);
+				}
+				if (!discard) {
 					if (event.getSnmp() != null) {
 						trapdInstrumentation.incTrapsReceivedCount(event.getSnmp().getVersion());
 					}
@@ -148,13 +270,4 @@ public class TrapSinkConsumer implements MessageConsumer<TrapInformationWrapper,
 		// send the event to eventd
 		eventForwarder.sendNow(bldr.getEvent());
 	}
-
-	private boolean shouldDiscard(Event event) {
-		org.opennms.netmgt.xml.eventconf.Event econf = eventConfDao.findByEvent(event);
-		if (econf != null) {
-			final Logmsg logmsg = econf.getLogmsg();
-			return logmsg != null && LogDestType.DISCARDTRAPS.equals(logmsg.getDest());
-		}
-		return false;
-	}
 }
@@ -85,6 +85,42 @@ public class Trapd extends AbstractSpringContextJmxServiceDaemon<org.opennms.net
         return getTrapdInstrumentation().getTrapsErrored();
     }
     
+    /** {@inheritDoc} */
+    @Override
+    public long getTrapsDiscardedEarly() {
+        return getTrapdInstrumentation().getTrapsDiscardedEarly();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getTrapsDropped() {
+        return getTrapdInstrumentation().getTrapsDropped();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getQueueTime() {
+        return getTrapdInstrumentation().getQueueTime();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getLookupTime() {
+        return getTrapdInstrumentation().getLookupTime();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getCreateTime() {
+        return getTrapdInstrumentation().getCreateTime();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getSendTime() {
+        return getTrapdInstrumentation().getSendTime();
+    }
+
     private TrapdInstrumentation getTrapdInstrumentation() {
         return TrapSinkConsumer.trapdInstrumentation;
     }
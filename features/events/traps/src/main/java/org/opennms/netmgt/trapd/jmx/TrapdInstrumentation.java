@@ -24,7 +24,9 @@ package org.opennms.netmgt.trapd.jmx;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 public class TrapdInstrumentation {
 
@@ -37,6 +39,14 @@ public class TrapdInstrumentation {
     private final AtomicLong vUnknownTrapsReceived = new AtomicLong();
     private final AtomicLong trapsDiscarded = new AtomicLong();
     private final AtomicLong trapsErrored = new AtomicLong();
+    private final AtomicLong trapsDiscardedEarly = new AtomicLong();
+    private final AtomicLong trapsDropped = new AtomicLong();
+
+    // Time spent in the individual processing stages, in nanoseconds
+    private final LongAdder queueTime = new LongAdder();
+    private final LongAdder lookupTime = new LongAdder();
+    private final LongAdder createTime = new LongAdder();
+    private final LongAdder sendTime = new LongAdder();
 
     public void incTrapsReceivedCount(String version) {
         trapsReceived.incrementAndGet();
@@ -60,6 +70,39 @@ public class TrapdInstrumentation {
         trapsErrored.incrementAndGet();
     }
 
+    /**
+     * Counts traps which were discarded based on their identity, before the event was created.
+     * These traps are also included in the discard count.
+     */
+    public void incEarlyDiscardCount() {
+        trapsDiscardedEarly.incrementAndGet();
+        trapsDiscarded.incrementAndGet();
+    }
+
+    /**
+     * Counts traps which were received but never processed, i.e. because they were
+     * still queued for processing when Trapd was stopped.
+     */
+    public void incDroppedCount(long count) {
+        trapsDropped.addAndGet(count);
+    }
+
+    public void recordQueueTime(long nanos) {
+        queueTime.add(nanos);
+    }
+
+    public void recordLookupTime(long nanos) {
+        lookupTime.add(nanos);
+    }
+
+    public void recordCreateTime(long nanos) {
+        createTime.add(nanos);
+    }
+
+    public void recordSendTime(long nanos) {
+        sendTime.add(nanos);
+    }
+
     public long getV1TrapsReceived() {
         return v1TrapsReceived.get();
     }
@@ -87,4 +130,28 @@ public class TrapdInstrumentation {
     public long getTrapsReceived() {
         return trapsReceived.get();
     }
+
+    public long getTrapsDiscardedEarly() {
+        return trapsDiscardedEarly.get();
+    }
+
+    public long getTrapsDropped() {
+        return trapsDropped.get();
+    }
+
+    public long getQueueTime() {
+        return TimeUnit.NANOSECONDS.toMillis(queueTime.sum());
+    }
+
+    public long getLookupTime() {
+        return TimeUnit.NANOSECONDS.toMillis(lookupTime.sum());
+    }
+
+    public long getCreateTime() {
+        return TimeUnit.NANOSECONDS.toMillis(createTime.sum());
+    }
+
+    public long getSendTime() {
+        return TimeUnit.NANOSECONDS.toMillis(sendTime.sum());
+    }
 }
@@ -50,4 +50,22 @@ public interface TrapdMBean extends BaseOnmsMBean {
     
     /** @return The number of traps not processed due to errors since Trapd was last started */
     public long getTrapsErrored();
+
+    /** @return The number of traps discarded based on their identity, before the event was created, since Trapd was last started */
+    public long getTrapsDiscardedEarly();
+
+    /** @return The number of traps dropped before they were processed since Trapd was last started */
+    public long getTrapsDropped();
+
+    /** @return The total time in milliseconds traps waited for a processing thread since Trapd was last started */
+    public long getQueueTime();
+
+    /** @return The total time in milliseconds spent resolving the event definitions of traps since Trapd was last started */
+    public long getLookupTime();
+
+    /** @return The total time in milliseconds spent creating events from traps since Trapd was last started */
+    public long getCreateTime();
+
+    /** @return The total time in milliseconds spent sending the events of traps since Trapd was last started */
+    public long getSendTime();
 }
@@ -0,0 +1,70 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.trapd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class OrderedTrapExecutorTest {
+
+    @Test(timeout = 10000)
+    public void testQueuedTasksAreReturnedOnShutdownNow() throws Exception {
+        final OrderedTrapExecutor executor = new OrderedTrapExecutor(1, 10);
+        final InetAddress source = InetAddress.getLoopbackAddress();
+
+        // Block the worker, so that the following tasks stay queued
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.execute(source, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await();
+        executor.execute(source, () -> {});
+        executor.execute(source, () -> {});
+        assertEquals(2, executor.getQueueSize());
+
+        executor.shutdown();
+        final List<Runnable> queued = executor.shutdownNow();
+        assertEquals(2, queued.size());
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testExecuteAfterShutdownIsRejected() throws Exception {
+        final OrderedTrapExecutor executor = new OrderedTrapExecutor(2, 10);
+        executor.shutdown();
+        executor.execute(InetAddress.getLoopbackAddress(), () -> {});
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.trapd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.config.api.EventConfDao;
+import org.opennms.netmgt.snmp.SnmpObjId;
+import org.opennms.netmgt.snmp.TrapIdentity;
+import org.opennms.netmgt.xml.eventconf.EnterpriseIdPartition;
+import org.opennms.netmgt.xml.eventconf.Event;
+import org.opennms.netmgt.xml.eventconf.EventOrdering;
+import org.opennms.netmgt.xml.eventconf.Events;
+import org.opennms.netmgt.xml.eventconf.LogDestType;
+import org.opennms.netmgt.xml.eventconf.Logmsg;
+import org.opennms.netmgt.xml.eventconf.Mask;
+import org.opennms.netmgt.xml.eventconf.Maskelement;
+import org.opennms.netmgt.xml.eventconf.Varbind;
+
+public class TrapEventConfResolverTest {
+
+    private static final String ENTERPRISE_ID = ".1.3.6.1.4.1.5813";
+
+    private Events events;
+
+    private TrapEventConfResolver resolver;
+
+    @Before
+    public void setUp() {
+        events = new Events();
+        events.addEvent(event("uei.opennms.org/test/discarded", LogDestType.DISCARDTRAPS, mask(ENTERPRISE_ID, 6, 1)));
+        events.addEvent(event("uei.opennms.org/test/logged", LogDestType.LOGNDISPLAY, mask(ENTERPRISE_ID, 6, 2)));
+        final Mask varbindMask = mask(ENTERPRISE_ID, 6, 3);
+        final Varbind varbind = new Varbind();
+        varbind.setVbnumber(1);
+        varbind.addVbvalue("1");
+        varbindMask.addVarbind(varbind);
+        events.addEvent(event("uei.opennms.org/test/varbind", LogDestType.DISCARDTRAPS, varbindMask));
+        events.addEvent(event(TrapEventConfResolver.DEFAULT_TRAP_UEI, LogDestType.DISCARDTRAPS, null));
+        events.initialize(new EnterpriseIdPartition(), new EventOrdering());
+
+        final EventConfDao eventConfDao = mock(EventConfDao.class);
+        when(eventConfDao.getRootEvents()).thenReturn(events);
+        resolver = new TrapEventConfResolver(eventConfDao);
+    }
+
+    @Test
+    public void canResolveByIdentity() {
+        final Optional<TrapEventConfResolver.Resolution> discarded = resolver.resolve(identity(ENTERPRISE_ID, 6, 1));
+        assertTrue(discarded.isPresent());
+        assertEquals("uei.opennms.org/test/discarded", discarded.get().getUei());
+        assertEquals(Optional.of(true), discarded.get().isDiscard());
+
+        final Optional<TrapEventConfResolver.Resolution> logged = resolver.resolve(identity(ENTERPRISE_ID, 6, 2));
+        assertTrue(logged.isPresent());
+        assertEquals("uei.opennms.org/test/logged", logged.get().getUei());
+        assertEquals(Optional.of(false), logged.get().isDiscard());
+    }
+
+    @Test
+    public void canResolveUnmatchedTrapsToTheDefaultEvent() {
+        final Optional<TrapEventConfResolver.Resolution> unmatched = resolver.resolve(identity(".1.3.6.1.4.1.9", 6, 1));
+        assertTrue(unmatched.isPresent());
+        assertEquals(TrapEventConfResolver.DEFAULT_TRAP_UEI, unmatched.get().getUei());
+        assertEquals(Optional.of(true), unmatched.get().isDiscard());
+    }
+
+    @Test
+    public void doesNotResolveIdentitiesMatchedByContent() {
+        // The definition with the varbind mask is considered before the default trap
+        assertFalse(resolver.resolve(identity(ENTERPRISE_ID, 6, 3)).isPresent());
+        assertFalse(resolver.resolve(identity(ENTERPRISE_ID, 6, 4)).isPresent());
+        assertFalse(resolver.resolve(null).isPresent());
+    }
+
+    @Test
+    public void isInvalidatedWhenTheConfigurationChanges() {
+        assertEquals(Optional.of(false), resolver.resolve(identity(ENTERPRISE_ID, 6, 2)).get().isDiscard());
+
+        events.getEvents().stream()
+                .filter(e -> "uei.opennms.org/test/logged".equals(e.getUei()))
+                .forEach(e -> e.getLogmsg().setDest(LogDestType.DISCARDTRAPS));
+        events.initialize(new EnterpriseIdPartition(), new EventOrdering());
+
+        assertEquals(Optional.of(true), resolver.resolve(identity(ENTERPRISE_ID, 6, 2)).get().isDiscard());
+    }
+
+    private static TrapIdentityDTO identity(final String enterpriseId, final int generic, final int specific) {
+        return new TrapIdentityDTO(new TrapIdentity(SnmpObjId.get(enterpriseId), generic, specific));
+    }
+
+    private static Mask mask(final String enterpriseId, final int generic, final int specific) {
+        final Mask mask = new Mask();
+        mask.addMaskelement(maskelement(Maskelement.TAG_SNMP_EID, enterpriseId));
+        mask.addMaskelement(maskelement(Maskelement.TAG_SNMP_GENERIC, Integer.toString(generic)));
+        mask.addMaskelement(maskelement(Maskelement.TAG_SNMP_SPECIFIC, Integer.toString(specific)));
+        return mask;
+    }
+
+    private static Maskelement maskelement(final String name, final String value) {
+        final Maskelement maskelement = new Maskelement();
+        maskelement.setMename(name);
+        maskelement.addMevalue(value);
+        return maskelement;
+    }
+
+    private static Event event(final String uei, final LogDestType dest, final Mask mask) {
+        final Event event = new Event();
+        event.setUei(uei);
+        event.setMask(mask);
+        final Logmsg logmsg = new Logmsg();
+        logmsg.setContent(uei);
+        logmsg.setDest(dest);
+        event.setLogmsg(logmsg);
+        return event;
+    }
+}
@@ -41,7 +41,7 @@ import org.opennms.netmgt.graph.api.VertexRef;
 import org.opennms.netmgt.graph.api.focus.Focus;
 import org.opennms.netmgt.graph.api.focus.FocusStrategy;
 import org.opennms.netmgt.graph.api.info.GraphInfo;
-import org.opennms.netmgt.graph.api.transformer.SemanticZoomLevelTransformer;
+import org.opennms.netmgt.graph.api.updates.ChangeSet;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
@@ -62,6 +62,9 @@ public final class GenericGraph extends GenericElement implements ImmutableGraph
     private final Focus defaultFocus;
     private final GraphInfo graphInfo;
 
+    // built on first use
+    private volatile GraphIndex index;
+
     private GenericGraph(GenericGraphBuilder builder) {
         super(builder.properties);
         this.jungGraph = builder.jungGraph;
@@ -187,7 +190,23 @@ public final class GenericGraph extends GenericElement implements ImmutableGraph
 
     @Override
     public ImmutableGraph<GenericVertex, GenericEdge> getView(Collection<GenericVertex> verticesInFocus, int szl) {
-        return new SemanticZoomLevelTransformer(verticesInFocus, szl).transform(this);
+        return getIndex().getView(verticesInFocus, szl);
+    }
+
+    /**
+     * @return the int indexed adjacency of this graph, which is built on first use
+     */
+    public GraphIndex getIndex() {
+        GraphIndex result = index;
+        if (result == null) {
+            synchronized (this) {
+                result = index;
+                if (result == null) {
+                    index = result = new GraphIndex(this, jungGraph.getEdges());
+                }
+            }
+        }
+        return result;
     }
 
     @Override
@@ -340,14 +359,79 @@ public final class GenericGraph extends GenericElement implements ImmutableGraph
         
         public void removeEdge(GenericEdge edge) {
             Objects.requireNonNull(edge);
-            jungGraph.removeEdge(edge);
-            edgeToIdMap.remove(edge.getId());
+            final GenericEdge knownEdge = edgeToIdMap.remove(edge.getId());
+            jungGraph.removeEdge(knownEdge != null ? knownEdge : edge);
         }
         
         public void removeVertex(GenericVertex vertex) {
             Objects.requireNonNull(vertex);
-            jungGraph.removeVertex(vertex.getVertexRef());
-            vertexToIdMap.remove(vertex.getId());
+            final VertexRef vertexRef = vertex.getVertexRef();
+            if (jungGraph.containsVertex(vertexRef)) {
+                // the jung graph drops the incident edges as well, so must we
+                jungGraph.getIncidentEdges(vertexRef).forEach(edge -> edgeToIdMap.remove(edge.getId()));
+                jungGraph.removeVertex(vertexRef);
+            }
+            final GenericVertex knownVertex = vertexToIdMap.remove(vertex.getId());
+            if (knownVertex != null) {
+                removeNodeRef(knownVertex);
+            }
+        }
+
+        private void removeNodeRef(GenericVertex vertex) {
+            if (vertex.getNodeRef() != null) {
+                final List<GenericVertex> vertices = nodeRefToVertexMap.get(vertex.getNodeRef());
+                if (vertices != null) {
+                    vertices.remove(vertex);
+                    if (vertices.isEmpty()) {
+                        nodeRefToVertexMap.remove(vertex.getNodeRef());
+                    }
+                }
+            }
+        }
+
+        /**
+         * Applies the changes of the given change set to the graph.
+         * Added or updated elements replace known elements with the same id, and removing unknown
+         * elements is ignored, so applying the same change set twice has no further effect.
+         */
+        public GenericGraphBuilder applyChangeSet(ChangeSet<?, ?, ?> changeSet) {
+            Objects.requireNonNull(changeSet);
+            if (!getNamespace().equals(changeSet.getNamespace())) {
+                throw new IllegalArgumentException(
+                        String.format("The namespace of the change set (%s) doesn't match the namespace of this graph (%s)",
+                                changeSet.getNamespace(), getNamespace()));
+            }
+            changeSet.getEdgesRemoved().forEach(edge -> removeEdge(edge.asGenericEdge()));
+            changeSet.getVerticesRemoved().forEach(vertex -> removeVertex(vertex.asGenericVertex()));
+            changeSet.getVerticesAdded().forEach(vertex -> replaceVertex(vertex.asGenericVertex()));
+            changeSet.getVerticesUpdated().forEach(vertex -> replaceVertex(vertex.asGenericVertex()));
+            changeSet.getEdgesAdded().forEach(edge -> replaceEdge(edge.asGenericEdge()));
+            changeSet.getEdgesUpdated().forEach(edge -> replaceEdge(edge.asGenericEdge()));
+            if (changeSet.hasFocusChanged()) {
+                focus(changeSet.getFocus());
+            }
+            if (changeSet.hasGraphInfoChanged()) {
+                graphInfo(changeSet.getGraphInfo());
+            }
+            return this;
+        }
+
+        private void replaceVertex(GenericVertex vertex) {
+            final GenericVertex knownVertex = vertexToIdMap.get(vertex.getId());
+            if (knownVertex != null) {
+                // keep the vertex in the jung graph, otherwise its edges would be lost
+                vertexToIdMap.remove(knownVertex.getId());
+                removeNodeRef(knownVertex);
+            }
+            addVertex(vertex);
+        }
+
+        private void replaceEdge(GenericEdge edge) {
+            final GenericEdge knownEdge = edgeToIdMap.get(edge.getId());
+            if (knownEdge != null) {
+                removeEdge(knownEdge);
+            }
+            addEdge(edge);
         }
         
         public String getNamespace() {
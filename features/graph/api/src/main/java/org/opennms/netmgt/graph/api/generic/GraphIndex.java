@@ -0,0 +1,378 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.graph.api.generic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.opennms.netmgt.graph.api.VertexRef;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Int indexed adjacency of a {@link GenericGraph}.
+ *
+ * Vertices are numbered in the order of their ids and the neighbors and incident edges of each vertex
+ * are kept in compact arrays, so views and searches do not have to walk the vertex and edge collections
+ * of the graph. As the graph is immutable, the index is built once per graph, see {@link GenericGraph#getIndex()}.
+ *
+ * The results are the same as the ones of {@link org.opennms.netmgt.graph.api.transformer.SemanticZoomLevelTransformer}
+ * and a case insensitive "contains" match on the vertex labels.
+ */
+public final class GraphIndex {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final GenericGraph graph;
+    private final String namespace;
+    private final GenericVertex[] vertices;
+    private final Map<String, Integer> vertexIndex;
+    private final GenericEdge[] edges;
+
+    // Index of the vertex with the id of the source/target of each edge, regardless of the namespace, or -1
+    private final int[] edgeSources;
+    private final int[] edgeTargets;
+
+    // The neighbors of vertex i are neighbors[neighborOffsets[i]] to neighbors[neighborOffsets[i + 1] - 1]
+    private final int[] neighborOffsets;
+    private final int[] neighbors;
+
+    // Same for the incident edges
+    private final int[] incidentOffsets;
+    private final int[] incidentEdges;
+
+    private volatile LabelIndex labelIndex;
+
+    /**
+     * @param graph the indexed graph
+     * @param connectedEdges the edges connecting the vertices of the graph. The jung graph backing the graph does not
+     *                       allow parallel edges, so only the first edge between two vertices connects them.
+     */
+    GraphIndex(GenericGraph graph, Collection<GenericEdge> connectedEdges) {
+        this.graph = Objects.requireNonNull(graph);
+        this.namespace = graph.getNamespace();
+
+        final List<GenericVertex> vertexList = graph.getVertices();
+        vertexList.sort(Comparator.comparing(GenericVertex::getId));
+        this.vertices = vertexList.toArray(new GenericVertex[0]);
+        this.vertexIndex = new HashMap<>(Math.max(16, vertices.length * 4 / 3 + 1));
+        for (int i = 0; i < vertices.length; i++) {
+            vertexIndex.put(vertices[i].getId(), i);
+        }
+
+        final List<GenericEdge> edgeList = new ArrayList<>(connectedEdges);
+        edgeList.sort(Comparator.comparing(GenericEdge::getId));
+        this.edges = edgeList.toArray(new GenericEdge[0]);
+        this.edgeSources = new int[edges.length];
+        this.edgeTargets = new int[edges.length];
+
+        // Only vertices of this graph are connected, edges to vertices of other namespaces are incident but lead nowhere
+        final int[] localSources = new int[edges.length];
+        final int[] localTargets = new int[edges.length];
+        final int[] neighborCounts = new int[vertices.length + 1];
+        final int[] incidentCounts = new int[vertices.length + 1];
+        for (int k = 0; k < edges.length; k++) {
+            final VertexRef source = edges[k].getSource();
+            final VertexRef target = edges[k].getTarget();
+            edgeSources[k] = indexOf(source.getId());
+            edgeTargets[k] = indexOf(target.getId());
+            localSources[k] = namespace.equals(source.getNamespace()) ? edgeSources[k] : -1;
+            localTargets[k] = namespace.equals(target.getNamespace()) ? edgeTargets[k] : -1;
+            if (localSources[k] >= 0) {
+                incidentCounts[localSources[k]]++;
+            }
+            if (localTargets[k] >= 0 && localTargets[k] != localSources[k]) {
+                incidentCounts[localTargets[k]]++;
+            }
+            if (localSources[k] >= 0 && localTargets[k] >= 0) {
+                neighborCounts[localSources[k]]++;
+                if (localTargets[k] != localSources[k]) {
+                    neighborCounts[localTargets[k]]++;
+                }
+            }
+        }
+        this.neighborOffsets = toOffsets(neighborCounts);
+        this.incidentOffsets = toOffsets(incidentCounts);
+        this.neighbors = new int[neighborOffsets[vertices.length]];
+        this.incidentEdges = new int[incidentOffsets[vertices.length]];
+
+        // Fill the arrays, the offsets are used as cursor and restored afterwards
+        final int[] neighborCursor = Arrays.copyOf(neighborOffsets, vertices.length);
+        final int[] incidentCursor = Arrays.copyOf(incidentOffsets, vertices.length);
+        for (int k = 0; k < edges.length; k++) {
+            final int source = localSources[k];
+            final int target = localTargets[k];
+            if (source >= 0) {
+                incidentEdges[incidentCursor[source]++] = k;
+            }
+            if (target >= 0 && target != source) {
+                incidentEdges[incidentCursor[target]++] = k;
+            }
+            if (source >= 0 && target >= 0) {
+                neighbors[neighborCursor[source]++] = target;
+                if (target != source) {
+                    neighbors[neighborCursor[target]++] = source;
+                }
+            }
+        }
+    }
+
+    private static int[] toOffsets(int[] counts) {
+        final int[] offsets = new int[counts.length];
+        int offset = 0;
+        for (int i = 0; i < counts.length; i++) {
+            offsets[i] = offset;
+            offset += counts[i];
+        }
+        return offsets;
+    }
+
+    public GenericGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return the number of vertices
+     */
+    public int size() {
+        return vertices.length;
+    }
+
+    /**
+     * @param vertexId the id of the vertex
+     * @return the index of the vertex or -1 if the graph does not contain a vertex with the given id
+     */
+    public int indexOf(String vertexId) {
+        final Integer index = vertexId != null ? vertexIndex.get(vertexId) : null;
+        return index != null ? index : -1;
+    }
+
+    public GenericVertex getVertex(int index) {
+        return vertices[index];
+    }
+
+    /**
+     * Determines the vertices which are at most the given number of hops away from any of the given vertices.
+     *
+     * @param sources the indices of the vertices to start from
+     * @param depth the maximum number of hops
+     * @return the indices of the reached vertices, including the sources, in the order they were reached
+     */
+    public int[] reach(int[] sources, int depth) {
+        Preconditions.checkArgument(depth >= 0, "depth must be >= 0");
+        final BitSet visited = new BitSet(vertices.length);
+        int[] queue = new int[Math.min(vertices.length, Math.max(16, sources.length * 4))];
+        int tail = 0;
+        for (int source : sources) {
+            if (source >= 0 && source < vertices.length && !visited.get(source)) {
+                visited.set(source);
+                queue = ensureCapacity(queue, tail + 1);
+                queue[tail++] = source;
+            }
+        }
+        int head = 0;
+        for (int level = 0; level < depth && head < tail; level++) {
+            final int levelEnd = tail;
+            for (; head < levelEnd; head++) {
+                final int vertex = queue[head];
+                for (int n = neighborOffsets[vertex]; n < neighborOffsets[vertex + 1]; n++) {
+                    final int neighbor = neighbors[n];
+                    if (!visited.get(neighbor)) {
+                        visited.set(neighbor);
+                        queue = ensureCapacity(queue, tail + 1);
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(queue, tail);
+    }
+
+    private static int[] ensureCapacity(int[] array, int capacity) {
+        return capacity <= array.length ? array : Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+    }
+
+    /**
+     * Builds the view of the graph, containing the vertices in focus, all vertices at most <code>szl</code> hops away
+     * from them and the edges between those vertices.
+     *
+     * @param verticesInFocus the vertices in focus, vertices unknown to the graph are ignored
+     * @param szl the semantic zoom level
+     * @return the view
+     */
+    public GenericGraph getView(Collection<GenericVertex> verticesInFocus, int szl) {
+        Preconditions.checkArgument(szl >= 0, "Semantic Zoom Level must be >= 0");
+        Objects.requireNonNull(verticesInFocus);
+        final int[] sources = verticesInFocus.stream()
+                .filter(v -> namespace.equals(v.getNamespace()))
+                .mapToInt(v -> indexOf(v.getId()))
+                .filter(index -> index >= 0)
+                .toArray();
+        final int[] reached = reach(sources, szl);
+
+        final BitSet inView = new BitSet(vertices.length);
+        final GenericGraph.GenericGraphBuilder viewBuilder = GenericGraph.builder()
+                .graphInfo(graph)
+                .properties(graph.getProperties());
+        for (int vertex : reached) {
+            inView.set(vertex);
+            viewBuilder.addVertex(vertices[vertex]);
+        }
+
+        // Add all edges between vertices of the view
+        final BitSet edgesSeen = new BitSet(edges.length);
+        for (int vertex : reached) {
+            for (int i = incidentOffsets[vertex]; i < incidentOffsets[vertex + 1]; i++) {
+                final int edge = incidentEdges[i];
+                if (!edgesSeen.get(edge)) {
+                    edgesSeen.set(edge);
+                    if (edgeSources[edge] >= 0 && inView.get(edgeSources[edge])
+                            && edgeTargets[edge] >= 0 && inView.get(edgeTargets[edge])) {
+                        viewBuilder.addEdge(edges[edge]);
+                    }
+                }
+            }
+        }
+        return viewBuilder.build();
+    }
+
+    /**
+     * Finds the vertices whose label contains the input, ignoring the case.
+     *
+     * @param input the text to search for
+     * @param limit the maximum number of vertices to return
+     * @return the matching vertices in the order of their ids
+     */
+    public List<GenericVertex> findByLabel(String input, int limit) {
+        Objects.requireNonNull(input);
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        final String lowerCaseInput = input.toLowerCase();
+        final LabelIndex labels = getLabelIndex();
+        final int[] candidates = labels.getCandidates(lowerCaseInput);
+        final List<GenericVertex> result = new ArrayList<>();
+        if (candidates == null) {
+            // input too short to use the index
+            for (int i = 0; i < vertices.length && result.size() < limit; i++) {
+                if (labels.labels[i] != null && labels.labels[i].contains(lowerCaseInput)) {
+                    result.add(vertices[i]);
+                }
+            }
+        } else {
+            for (int i = 0; i < candidates.length && result.size() < limit; i++) {
+                if (labels.labels[candidates[i]].contains(lowerCaseInput)) {
+                    result.add(vertices[candidates[i]]);
+                }
+            }
+        }
+        return result;
+    }
+
+    private LabelIndex getLabelIndex() {
+        LabelIndex result = labelIndex;
+        if (result == null) {
+            synchronized (this) {
+                result = labelIndex;
+                if (result == null) {
+                    labelIndex = result = new LabelIndex(vertices);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The lower case labels and a trigram posting list of the vertices containing each trigram.
+     * Built on the first search only, as most graphs are never searched.
+     */
+    private static final class LabelIndex {
+        private final String[] labels;
+        private final Map<Long, int[]> postings;
+
+        private LabelIndex(GenericVertex[] vertices) {
+            labels = new String[vertices.length];
+            final Map<Long, Posting> growingPostings = new HashMap<>();
+            for (int i = 0; i < vertices.length; i++) {
+                final String label = vertices[i].getLabel();
+                if (label == null) {
+                    continue;
+                }
+                labels[i] = label.toLowerCase();
+                for (int c = 0; c + 3 <= labels[i].length(); c++) {
+                    growingPostings.computeIfAbsent(trigram(labels[i], c), k -> new Posting()).add(i);
+                }
+            }
+            postings = new HashMap<>(Math.max(16, growingPostings.size() * 4 / 3 + 1));
+            growingPostings.forEach((trigram, posting) -> postings.put(trigram, Arrays.copyOf(posting.vertices, posting.size)));
+        }
+
+        /**
+         * @return the vertices which contain all trigrams of the input in ascending order, which still have to be verified,
+         *         or null if the input is too short
+         */
+        private int[] getCandidates(String lowerCaseInput) {
+            if (lowerCaseInput.length() < 3) {
+                return null;
+            }
+            int[] shortest = null;
+            for (int c = 0; c + 3 <= lowerCaseInput.length(); c++) {
+                final int[] posting = postings.get(trigram(lowerCaseInput, c));
+                if (posting == null) {
+                    return EMPTY;
+                }
+                if (shortest == null || posting.length < shortest.length) {
+                    shortest = posting;
+                }
+            }
+            return shortest;
+        }
+
+        private static Long trigram(String s, int offset) {
+            return ((long) s.charAt(offset) << 32) | ((long) s.charAt(offset + 1) << 16) | s.charAt(offset + 2);
+        }
+    }
+
+    private static final class Posting {
+        private int[] vertices = new int[4];
+        private int size;
+
+        private void add(int vertex) {
+            // vertices are added in ascending order, so a trigram repeated within the same label is the last entry
+            if (size > 0 && vertices[size - 1] == vertex) {
+                return;
+            }
+            if (size == vertices.length) {
+                vertices = Arrays.copyOf(vertices, size * 2);
+            }
+            vertices[size++] = vertex;
+        }
+    }
+}
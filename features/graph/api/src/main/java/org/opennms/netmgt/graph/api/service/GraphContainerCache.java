@@ -21,9 +21,61 @@
  */
 package org.opennms.netmgt.graph.api.service;
 
+import java.util.List;
+
+import org.opennms.netmgt.graph.api.ImmutableGraph;
 import org.opennms.netmgt.graph.api.ImmutableGraphContainer;
+import org.opennms.netmgt.graph.api.updates.ChangeSet;
+import org.opennms.netmgt.graph.api.updates.VersionedChangeSet;
 
+/**
+ * Caches the containers of the graph providers.
+ *
+ * Each cached container has a version. Providers which know what changed can publish the changes with
+ * {@link #apply(String, ChangeSet)} or {@link #update(String, ImmutableGraph)} instead of invalidating the whole
+ * container. Readers can then fetch the changes since the version they have seen with {@link #getChangesSince(String, long)}.
+ * {@link #invalidate(String)} discards the container and the changes recorded so far.
+ */
 public interface GraphContainerCache {
     void invalidate(String containerId);
     ImmutableGraphContainer get(String containerId);
+
+    /**
+     * @param containerId the id of the container
+     * @return true if the container is cached, without loading it otherwise
+     */
+    boolean isCached(String containerId);
+
+    /**
+     * Applies the changes to the graph of the cached container.
+     * Applying a change set more than once has no further effect on the graph.
+     *
+     * @param containerId the id of the container
+     * @param changeSet the changes of one graph of the container
+     * @return the version of the container after the changes were applied
+     */
+    long apply(String containerId, ChangeSet<?, ?, ?> changeSet);
+
+    /**
+     * Replaces a graph of the cached container and records the difference to the previous graph.
+     *
+     * @param containerId the id of the container
+     * @param graph the new graph
+     * @return the version of the container after the graph was replaced
+     */
+    long update(String containerId, ImmutableGraph<?, ?> graph);
+
+    /**
+     * @param containerId the id of the container
+     * @return the current version of the container
+     */
+    long getVersion(String containerId);
+
+    /**
+     * @param containerId the id of the container
+     * @param version the version the caller has seen
+     * @return the changes applied after the given version, oldest first, or null if they are no longer available
+     *         and the caller has to reload the whole container
+     */
+    List<VersionedChangeSet> getChangesSince(String containerId, long version);
 }
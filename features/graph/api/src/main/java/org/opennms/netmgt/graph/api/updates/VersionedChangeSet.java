@@ -0,0 +1,58 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.graph.api.updates;
+
+import java.util.Objects;
+
+/**
+ * A {@link ChangeSet} which was applied to a graph container, together with the version of the container
+ * it produced.
+ */
+public final class VersionedChangeSet {
+
+    private final String containerId;
+    private final long version;
+    private final ChangeSet<?, ?, ?> changeSet;
+
+    public VersionedChangeSet(final String containerId, final long version, final ChangeSet<?, ?, ?> changeSet) {
+        this.containerId = Objects.requireNonNull(containerId);
+        this.version = version;
+        this.changeSet = Objects.requireNonNull(changeSet);
+    }
+
+    public String getContainerId() {
+        return containerId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public ChangeSet<?, ?, ?> getChangeSet() {
+        return changeSet;
+    }
+
+    @Override
+    public String toString() {
+        return "VersionedChangeSet[containerId=" + containerId + ", version=" + version + ", namespace=" + changeSet.getNamespace() + "]";
+    }
+}
@@ -35,6 +35,7 @@ import org.opennms.netmgt.graph.api.VertexRef;
 import org.opennms.netmgt.graph.api.focus.Focus;
 import org.opennms.netmgt.graph.api.focus.FocusStrategy;
 import org.opennms.netmgt.graph.api.generic.GenericGraph.GenericGraphBuilder;
+import org.opennms.netmgt.graph.api.updates.ChangeSet;
 import org.opennms.netmgt.graph.api.validation.exception.InvalidNamespaceException;
 
 import com.google.common.collect.ImmutableMap;
@@ -188,6 +189,55 @@ public class GenericGraphTest {
         assertThat(emptyGraph.resolveVertices(nodeRef), Matchers.hasSize(0));
     }
 
+    @Test
+    public void shouldRemoveEdgesAndNodeRefsOfRemovedVertex() {
+        final String namespace = "dummy";
+        final GenericVertex v1 = GenericVertex.builder().namespace(namespace).id("v1").nodeRef("test", "node1").build();
+        final GenericVertex v2 = GenericVertex.builder().namespace(namespace).id("v2").build();
+        final GenericGraphBuilder graphBuilder = GenericGraph.builder().namespace(namespace)
+                .addVertex(v1)
+                .addVertex(v2)
+                .addEdge(GenericEdge.builder().namespace(namespace).id("e1").source(v1.getVertexRef()).target(v2.getVertexRef()).build());
+
+        graphBuilder.removeVertex(v1);
+        final GenericGraph graph = graphBuilder.build();
+        assertThat(graph.getVertexIds(), Matchers.contains("v2"));
+        assertThat(graph.getEdges(), Matchers.hasSize(0));
+        assertThat(graph.resolveVertices(NodeRef.from("test:node1")), Matchers.hasSize(0));
+    }
+
+    @Test
+    public void shouldApplyChangeSet() {
+        final String namespace = "dummy";
+        final GenericVertex v1 = GenericVertex.builder().namespace(namespace).id("v1").label("Vertex 1").build();
+        final GenericVertex v2 = GenericVertex.builder().namespace(namespace).id("v2").build();
+        final GenericVertex v3 = GenericVertex.builder().namespace(namespace).id("v3").build();
+        final GenericEdge e1 = GenericEdge.builder().namespace(namespace).id("e1").source(v1.getVertexRef()).target(v2.getVertexRef()).build();
+        final GenericEdge e2 = GenericEdge.builder().namespace(namespace).id("e2").source(v1.getVertexRef()).target(v3.getVertexRef()).build();
+        final GenericGraph graph = GenericGraph.builder().namespace(namespace)
+                .addVertex(v1).addVertex(v2)
+                .addEdge(e1)
+                .build();
+
+        final GenericVertex updatedV1 = GenericVertex.builder().namespace(namespace).id("v1").label("Vertex 1 updated").build();
+        final ChangeSet<GenericGraph, GenericVertex, GenericEdge> changeSet = ChangeSet.<GenericGraph, GenericVertex, GenericEdge>builder(namespace)
+                .vertexRemoved(v2)
+                .vertexAdded(v3)
+                .vertexUpdated(updatedV1)
+                .edgeAdded(e2)
+                .build();
+
+        final GenericGraph changedGraph = GenericGraph.from(graph).applyChangeSet(changeSet).build();
+        assertThat(changedGraph.getVertexIds(), Matchers.contains("v1", "v3"));
+        assertThat(changedGraph.getEdgeIds(), Matchers.contains("e2"));
+        assertThat(changedGraph.getVertex("v1").getLabel(), Matchers.is("Vertex 1 updated"));
+        assertThat(changedGraph.getConnectingEdges(changedGraph.getVertex("v1")), Matchers.contains(e2));
+
+        // The original graph is not affected and applying the same changes again has no further effect
+        assertThat(graph.getVertexIds(), Matchers.contains("v1", "v2"));
+        assertThat(GenericGraph.from(changedGraph).applyChangeSet(changeSet).build(), Matchers.is(changedGraph));
+    }
+
     @Test
     public void verifyCannotSetInvalidNamespace() {
         assertThrowsException(InvalidNamespaceException.class, () -> GenericVertex.builder().namespace("$invalid$").build());
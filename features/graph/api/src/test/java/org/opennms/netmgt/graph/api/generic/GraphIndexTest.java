@@ -0,0 +1,147 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.graph.api.generic;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.opennms.netmgt.graph.api.VertexRef;
+import org.opennms.netmgt.graph.api.transformer.SemanticZoomLevelTransformer;
+
+import com.google.common.collect.Lists;
+
+public class GraphIndexTest {
+
+    private static final String NAMESPACE = "dummy";
+
+    @Test
+    public void shouldReachVerticesWithinDepth() {
+        // v0 - v1 - v2 - v3 and v4 on its own
+        final GenericGraph graph = createGraph(5, new int[][]{{0, 1}, {2, 1}, {2, 3}});
+        final GraphIndex index = graph.getIndex();
+
+        assertEquals(5, index.size());
+        assertEquals(-1, index.indexOf("unknown"));
+        assertThat(toIds(index, index.reach(new int[]{index.indexOf("v0")}, 0)), contains("v0"));
+        assertThat(toIds(index, index.reach(new int[]{index.indexOf("v0")}, 2)), contains("v0", "v1", "v2"));
+        assertThat(toIds(index, index.reach(new int[]{index.indexOf("v0"), index.indexOf("v3")}, 1)), contains("v0", "v3", "v1", "v2"));
+        assertThat(toIds(index, index.reach(new int[]{index.indexOf("v4")}, 10)), contains("v4"));
+    }
+
+    @Test
+    public void shouldCreateSameViewAsSemanticZoomLevelTransformer() {
+        final Random random = new Random(42);
+        for (int run = 0; run < 20; run++) {
+            final int vertexCount = 1 + random.nextInt(50);
+            final int[][] edges = new int[random.nextInt(vertexCount * 2)][];
+            for (int i = 0; i < edges.length; i++) {
+                edges[i] = new int[]{random.nextInt(vertexCount), random.nextInt(vertexCount)};
+            }
+            final GenericGraph graph = createGraph(vertexCount, edges);
+            final List<GenericVertex> focus = Lists.newArrayList(graph.getVertex("v" + random.nextInt(vertexCount)), graph.getVertex("v" + random.nextInt(vertexCount)));
+            for (int szl = 0; szl < 4; szl++) {
+                final GenericGraph expected = new SemanticZoomLevelTransformer(focus, szl).transform(graph);
+                final GenericGraph actual = graph.getIndex().getView(focus, szl);
+                assertEquals(expected.getVertexIds(), actual.getVertexIds());
+                assertEquals(expected.getEdgeIds(), actual.getEdgeIds());
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void shouldIgnoreEdgesToOtherNamespaces() {
+        final GenericVertex v0 = createVertex("v0");
+        final GenericVertex v1 = createVertex("v1");
+        final GenericGraph graph = GenericGraph.builder().namespace(NAMESPACE)
+                .addVertex(v0)
+                .addVertex(v1)
+                .addEdge(GenericEdge.builder().namespace(NAMESPACE).id("e0").source(v0.getVertexRef()).target(new VertexRef("other", "v1")).build())
+                .build();
+        final GenericGraph view = graph.getIndex().getView(Lists.newArrayList(v0), 1);
+        assertEquals(new SemanticZoomLevelTransformer(Lists.newArrayList(v0), 1).transform(graph), view);
+        assertThat(view.getVertexIds(), contains("v0"));
+    }
+
+    @Test
+    public void shouldFindVerticesByLabel() {
+        final GenericGraph graph = GenericGraph.builder().namespace(NAMESPACE)
+                .addVertex(createVertex("v0", "Router Berlin"))
+                .addVertex(createVertex("v1", "router hamburg"))
+                .addVertex(createVertex("v2", "Switch Berlin"))
+                .addVertex(createVertex("v3", null))
+                .addVertex(createVertex("v4", "erer"))
+                .build();
+        final GraphIndex index = graph.getIndex();
+
+        assertThat(toIds(index.findByLabel("ROUTER", 10)), contains("v0", "v1"));
+        assertThat(toIds(index.findByLabel("berlin", 10)), contains("v0", "v2"));
+        assertThat(toIds(index.findByLabel("berlin", 1)), contains("v0"));
+        assertThat(toIds(index.findByLabel("er", 10)), contains("v0", "v1", "v2", "v4"));
+        assertThat(toIds(index.findByLabel("rerer", 10)), hasSize(0));
+        assertThat(toIds(index.findByLabel("erer", 10)), contains("v4"));
+        assertThat(toIds(index.findByLabel("", 10)), contains("v0", "v1", "v2", "v4"));
+        assertThat(index.findByLabel("router", 0), hasSize(0));
+    }
+
+    private static GenericGraph createGraph(int vertexCount, int[][] edges) {
+        final GenericGraph.GenericGraphBuilder graphBuilder = GenericGraph.builder().namespace(NAMESPACE);
+        for (int i = 0; i < vertexCount; i++) {
+            graphBuilder.addVertex(createVertex("v" + i));
+        }
+        for (int i = 0; i < edges.length; i++) {
+            graphBuilder.addEdge(GenericEdge.builder().namespace(NAMESPACE).id("e" + i)
+                    .source(new VertexRef(NAMESPACE, "v" + edges[i][0]))
+                    .target(new VertexRef(NAMESPACE, "v" + edges[i][1]))
+                    .build());
+        }
+        return graphBuilder.build();
+    }
+
+    private static GenericVertex createVertex(String id) {
+        return createVertex(id, "Vertex " + id);
+    }
+
+    private static GenericVertex createVertex(String id, String label) {
+        final GenericVertex.GenericVertexBuilder vertexBuilder = GenericVertex.builder().namespace(NAMESPACE).id(id);
+        if (label != null) {
+            vertexBuilder.label(label);
+        }
+        return vertexBuilder.build();
+    }
+
+    private static List<String> toIds(GraphIndex index, int[] vertices) {
+        return Arrays.stream(vertices).mapToObj(i -> index.getVertex(i).getId()).collect(Collectors.toList());
+    }
+
+    private static List<String> toIds(List<GenericVertex> vertices) {
+        return vertices.stream().map(GenericVertex::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.graph.api.generic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opennms.netmgt.graph.api.VertexRef;
+import org.opennms.netmgt.graph.api.transformer.SemanticZoomLevelTransformer;
+
+/**
+ * Compares building views and searching labels with the {@link GraphIndex} against walking the vertices
+ * and edges of the graph, i.e. the {@link SemanticZoomLevelTransformer} and a scan over all vertices.
+ * <p>
+ * The generated topology has a few core vertices, each connected to a number of distribution vertices
+ * which connect the access vertices, plus random cross links.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class GraphViewBenchmark {
+
+    private static final String NAMESPACE = "benchmark";
+
+    private static final String[] SITES = {"berlin", "hamburg", "munich", "paris", "london", "madrid", "rome", "vienna"};
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @Param({"100000"})
+    public int vertexCount;
+
+    @Param({"300000"})
+    public int edgeCount;
+
+    @Param({"1", "2", "3"})
+    public int szl;
+
+    private GenericGraph graph;
+
+    private List<GenericVertex> focus;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        final GenericGraph.GenericGraphBuilder graphBuilder = GenericGraph.builder().namespace(NAMESPACE);
+        for (int i = 0; i < vertexCount; i++) {
+            graphBuilder.addVertex(GenericVertex.builder().namespace(NAMESPACE).id("v" + i)
+                    .label(SITES[i % SITES.length] + "-" + (i < 10 ? "core" : i < 1000 ? "dist" : "access") + "-" + i)
+                    .build());
+        }
+        int edges = 0;
+        // distribution to core, access to distribution
+        for (int i = 10; i < vertexCount && edges < edgeCount; i++) {
+            final int uplink = i < 1000 ? random.nextInt(10) : 10 + random.nextInt(990);
+            addEdge(graphBuilder, edges++, i, uplink);
+        }
+        // cross links, the jung graph drops parallel edges so there may be slightly less
+        while (edges < edgeCount) {
+            final int source = random.nextInt(vertexCount);
+            final int target = random.nextInt(vertexCount);
+            if (source != target) {
+                addEdge(graphBuilder, edges++, source, target);
+            }
+        }
+        graph = graphBuilder.build();
+
+        // Focus on some access vertices
+        focus = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            focus.add(graph.getVertex("v" + (1000 + random.nextInt(vertexCount - 1000))));
+        }
+
+        // Build the index up front, it is built once per graph
+        graph.getIndex().findByLabel("core", 1);
+    }
+
+    private static void addEdge(GenericGraph.GenericGraphBuilder graphBuilder, int id, int source, int target) {
+        graphBuilder.addEdge(GenericEdge.builder().namespace(NAMESPACE).id("e" + id)
+                .source(new VertexRef(NAMESPACE, "v" + source))
+                .target(new VertexRef(NAMESPACE, "v" + target))
+                .build());
+    }
+
+    @Benchmark
+    public GenericGraph viewWithTransformer() {
+        return new SemanticZoomLevelTransformer(focus, szl).transform(graph);
+    }
+
+    @Benchmark
+    public GenericGraph viewWithIndex() {
+        return graph.getIndex().getView(focus, szl);
+    }
+
+    @Benchmark
+    public List<GenericVertex> searchWithScan() {
+        return graph.getVertices().stream()
+                .filter(v -> v.getLabel() != null && v.getLabel().toLowerCase().contains("paris-dist"))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<GenericVertex> searchWithIndex() {
+        return graph.getIndex().findByLabel("paris-dist", Integer.MAX_VALUE);
+    }
+}
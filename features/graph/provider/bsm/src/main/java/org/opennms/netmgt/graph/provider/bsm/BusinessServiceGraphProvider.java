@@ -115,7 +115,13 @@ public class BusinessServiceGraphProvider implements GraphProvider, EventListene
         if (e.getUei().equals(EventConstants.RELOAD_DAEMON_CONFIG_SUCCESSFUL_UEI)) {
             String daemonName = EventUtils.getParm(e, EventConstants.PARM_DAEMON_NAME);
             if (daemonName != null && "bsmd".equalsIgnoreCase(daemonName)) {
-                graphContainerCache.invalidate(BusinessServiceGraph.NAMESPACE);
+                if (graphContainerCache.isCached(BusinessServiceGraph.NAMESPACE)) {
+                    // Only publish what changed, so the cached container and its readers do not have to start over
+                    graphContainerCache.update(BusinessServiceGraph.NAMESPACE, loadGraph());
+                } else {
+                    // Nobody asked for the graph yet, it is loaded once it is requested
+                    graphContainerCache.invalidate(BusinessServiceGraph.NAMESPACE);
+                }
             }
         }
     }
@@ -27,6 +27,7 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -41,6 +42,14 @@ public interface GraphRestService {
     @Path("/{containerId}")
     Response getContainer(@PathParam("containerId") String containerId);
 
+    /**
+     * Returns the current version of the container and the changes applied since the given version.
+     * Responds with 410 (Gone) if those changes are no longer available and the container has to be fetched again.
+     */
+    @GET
+    @Path("/{containerId}/changes")
+    Response getChanges(@PathParam("containerId") String containerId, @QueryParam("since") Long since);
+
     @GET
     @Path("/{containerId}/{namespace}")
     Response getGraph(@PathParam("containerId") String containerId, @PathParam("namespace") String namespace);
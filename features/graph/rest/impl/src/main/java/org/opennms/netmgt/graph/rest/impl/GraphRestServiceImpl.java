@@ -27,6 +27,7 @@ import java.util.Objects;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.opennms.netmgt.graph.api.ImmutableGraph;
 import org.opennms.netmgt.graph.api.ImmutableGraphContainer;
@@ -34,7 +35,9 @@ import org.opennms.netmgt.graph.api.enrichment.EnrichmentService;
 import org.opennms.netmgt.graph.api.generic.GenericGraph;
 import org.opennms.netmgt.graph.api.generic.GenericVertex;
 import org.opennms.netmgt.graph.api.info.GraphContainerInfo;
+import org.opennms.netmgt.graph.api.service.GraphContainerCache;
 import org.opennms.netmgt.graph.api.service.GraphService;
+import org.opennms.netmgt.graph.api.updates.VersionedChangeSet;
 import org.opennms.netmgt.graph.rest.api.GraphRestService;
 import org.opennms.netmgt.graph.rest.api.Query;
 import org.opennms.netmgt.graph.rest.impl.converter.JsonConverterService;
@@ -45,10 +48,12 @@ public class GraphRestServiceImpl implements GraphRestService {
 
     private final BundleContext bundleContext;
     private final GraphService graphService;
+    private final GraphContainerCache graphContainerCache;
     private final EnrichmentService enrichmentService;
 
-    public GraphRestServiceImpl(final GraphService graphService, final EnrichmentService enrichmentService, final BundleContext bundleContext) {
+    public GraphRestServiceImpl(final GraphService graphService, final GraphContainerCache graphContainerCache, final EnrichmentService enrichmentService, final BundleContext bundleContext) {
         this.graphService = Objects.requireNonNull(graphService);
+        this.graphContainerCache = Objects.requireNonNull(graphContainerCache);
         this.enrichmentService = Objects.requireNonNull(enrichmentService);
         this.bundleContext = Objects.requireNonNull(bundleContext);
     }
@@ -65,12 +70,54 @@ public class GraphRestServiceImpl implements GraphRestService {
 
     @Override
     public Response getContainer(String containerId) {
+        // Loading the container starts a new version, so make sure it is loaded before determining the version
+        if (graphService.getGraphContainer(containerId) == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        // Determine the version first, changes applied in the meantime are already contained in the container.
+        // Clients following up with the changes since this version get them again, which has no further effect.
+        final long version = graphContainerCache.getVersion(containerId);
         final ImmutableGraphContainer container = graphService.getGraphContainer(containerId);
         if (container == null) {
             return Response.status(Response.Status.NOT_FOUND).build();
         }
-        final String rendered = render(container);
-        return Response.ok(rendered).type(MediaType.APPLICATION_JSON_TYPE).build();
+        final JSONObject jsonContainer = new JsonConverterService(bundleContext).convert(container);
+        jsonContainer.put("version", version);
+        return Response.ok(jsonContainer.toString()).type(MediaType.APPLICATION_JSON_TYPE).build();
+    }
+
+    @Override
+    public Response getChanges(String containerId, Long since) {
+        if (graphService.getGraphContainerInfo(containerId) == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        if (since != null && since < 0) {
+            return Response
+                .status(Response.Status.BAD_REQUEST)
+                .entity(new JSONObject().put("error", "since must be >= 0 but was " + since).toString())
+                .build();
+        }
+        // Determine the version first, changes applied in the meantime are included below
+        long version = graphContainerCache.getVersion(containerId);
+        final JSONObject jsonChanges = new JSONObject();
+        jsonChanges.put("containerId", containerId);
+        final JSONArray jsonChangeSets = new JSONArray();
+        if (since != null) {
+            final List<VersionedChangeSet> changes = graphContainerCache.getChangesSince(containerId, since);
+            if (changes == null) {
+                // The changes are gone, the client must fetch the whole container again
+                jsonChanges.put("version", version);
+                return Response.status(Response.Status.GONE).entity(jsonChanges.toString()).type(MediaType.APPLICATION_JSON_TYPE).build();
+            }
+            final JsonConverterService converterService = new JsonConverterService(bundleContext);
+            for (VersionedChangeSet eachChange : changes) {
+                jsonChangeSets.put(converterService.convert(eachChange));
+                version = Math.max(version, eachChange.getVersion());
+            }
+        }
+        jsonChanges.put("version", version);
+        jsonChanges.put("changes", jsonChangeSets);
+        return Response.ok(jsonChanges.toString()).type(MediaType.APPLICATION_JSON_TYPE).build();
     }
 
     @Override
@@ -123,10 +170,6 @@ public class GraphRestServiceImpl implements GraphRestService {
         return new JsonGraphRenderer(bundleContext).render(infos);
     }
 
-    private String render(ImmutableGraphContainer graphContainer) {
-        return new JsonGraphRenderer(bundleContext).render(graphContainer);
-    }
-
     private String render(ImmutableGraph graph) {
         return new JsonGraphRenderer(bundleContext).render(graph);
     }
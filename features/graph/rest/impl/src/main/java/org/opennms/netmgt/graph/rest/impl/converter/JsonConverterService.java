@@ -29,6 +29,8 @@ import org.opennms.netmgt.graph.api.ImmutableGraphContainer;
 import org.opennms.netmgt.graph.api.Vertex;
 import org.opennms.netmgt.graph.api.info.GraphContainerInfo;
 import org.opennms.netmgt.graph.api.info.IpInfo;
+import org.opennms.netmgt.graph.api.updates.VersionedChangeSet;
+import org.opennms.netmgt.graph.rest.impl.converter.json.ChangeSetConverter;
 import org.opennms.netmgt.graph.rest.impl.converter.json.GraphContainerConverter;
 import org.opennms.netmgt.graph.rest.impl.converter.json.GraphContainerInfoConverter;
 import org.opennms.netmgt.graph.rest.impl.converter.json.GraphConverter;
@@ -63,4 +65,8 @@ public class JsonConverterService {
     public JSONObject convert(IpInfo ipInfo) {
         return new IpInfoConverter().convert(ipInfo);
     }
+
+    public JSONObject convert(VersionedChangeSet changeSet) {
+        return new ChangeSetConverter(bundleContext).convert(changeSet);
+    }
 }
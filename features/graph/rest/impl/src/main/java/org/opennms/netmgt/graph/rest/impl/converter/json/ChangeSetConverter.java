@@ -0,0 +1,100 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.graph.rest.impl.converter.json;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.opennms.netmgt.graph.api.Edge;
+import org.opennms.netmgt.graph.api.Vertex;
+import org.opennms.netmgt.graph.api.focus.Focus;
+import org.opennms.netmgt.graph.api.info.GraphInfo;
+import org.opennms.netmgt.graph.api.updates.ChangeSet;
+import org.opennms.netmgt.graph.api.updates.VersionedChangeSet;
+import org.opennms.netmgt.graph.rest.api.Converter;
+import org.osgi.framework.BundleContext;
+
+public class ChangeSetConverter implements Converter<VersionedChangeSet, JSONObject> {
+
+    private final BundleContext bundleContext;
+
+    public ChangeSetConverter(BundleContext bundleContext) {
+        this.bundleContext = Objects.requireNonNull(bundleContext);
+    }
+
+    @Override
+    public boolean canConvert(Class<VersionedChangeSet> type) {
+        return VersionedChangeSet.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public JSONObject convert(VersionedChangeSet input) {
+        final ChangeSet<?, ?, ?> changeSet = input.getChangeSet();
+        final JSONObject jsonChangeSet = new JSONObject();
+        jsonChangeSet.put("version", input.getVersion());
+        jsonChangeSet.put("namespace", changeSet.getNamespace());
+        jsonChangeSet.put("date", changeSet.getChangeSetDate().getTime());
+
+        // Removed elements are only referenced by their id
+        jsonChangeSet.put("verticesAdded", convertVertices(changeSet.getVerticesAdded()));
+        jsonChangeSet.put("verticesUpdated", convertVertices(changeSet.getVerticesUpdated()));
+        jsonChangeSet.put("verticesRemoved", new JSONArray(changeSet.getVerticesRemoved().stream().map(Vertex::getId).sorted().toArray()));
+        jsonChangeSet.put("edgesAdded", convertEdges(changeSet.getEdgesAdded()));
+        jsonChangeSet.put("edgesUpdated", convertEdges(changeSet.getEdgesUpdated()));
+        jsonChangeSet.put("edgesRemoved", new JSONArray(changeSet.getEdgesRemoved().stream().map(Edge::getId).sorted().toArray()));
+
+        if (changeSet.hasGraphInfoChanged()) {
+            final GraphInfo graphInfo = changeSet.getGraphInfo();
+            final JSONObject jsonGraphInfo = new JSONObject();
+            jsonGraphInfo.put("label", graphInfo.getLabel());
+            jsonGraphInfo.put("description", graphInfo.getDescription());
+            jsonChangeSet.put("graphInfo", jsonGraphInfo);
+        }
+        if (changeSet.hasFocusChanged()) {
+            final Focus focus = changeSet.getFocus();
+            final JSONObject jsonFocus = new JSONObject();
+            jsonFocus.put("type", focus.getId());
+            jsonFocus.put("vertexIds", new JSONArray(focus.getVertexRefs()));
+            jsonChangeSet.put("defaultFocus", jsonFocus);
+        }
+        return jsonChangeSet;
+    }
+
+    private JSONArray convertVertices(List<? extends Vertex> vertices) {
+        final JSONArray jsonVertices = new JSONArray();
+        vertices.stream()
+                .sorted(Comparator.comparing(Vertex::getId))
+                .forEach(vertex -> jsonVertices.put(new VertexConverter(bundleContext).convert(vertex)));
+        return jsonVertices;
+    }
+
+    private JSONArray convertEdges(List<? extends Edge> edges) {
+        final JSONArray jsonEdges = new JSONArray();
+        edges.stream()
+                .sorted(Comparator.comparing(Edge::getId))
+                .forEach(edge -> jsonEdges.put(new EdgeConverter(bundleContext).convert(edge)));
+        return jsonEdges;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.graph.rest.impl.converter.json;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.json.JSONObject;
+import org.opennms.netmgt.graph.api.Edge;
+import org.opennms.netmgt.graph.api.generic.GenericEdge;
+import org.opennms.netmgt.graph.rest.api.Converter;
+import org.opennms.netmgt.graph.rest.impl.converter.JsonPropertyConverterService;
+import org.osgi.framework.BundleContext;
+
+public class EdgeConverter implements Converter<Edge, JSONObject> {
+
+    private final BundleContext bundleContext;
+
+    public EdgeConverter(BundleContext bundleContext) {
+        this.bundleContext = Objects.requireNonNull(bundleContext);
+    }
+
+    @Override
+    public boolean canConvert(Class<Edge> type) {
+        return Edge.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public JSONObject convert(Edge input) {
+        final GenericEdge genericEdge = input.asGenericEdge();
+        final Map<String, Object> edgeProperties = new HashMap<>(genericEdge.getProperties());
+        edgeProperties.put("source", genericEdge.getSource());
+        edgeProperties.put("target", genericEdge.getTarget());
+        final JSONObject jsonEdge = new JsonPropertyConverterService(bundleContext).convert(edgeProperties);
+        return jsonEdge;
+    }
+}
@@ -22,7 +22,6 @@
 package org.opennms.netmgt.graph.rest.impl.converter.json;
 
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 
@@ -32,7 +31,6 @@ import org.opennms.netmgt.graph.api.Edge;
 import org.opennms.netmgt.graph.api.ImmutableGraph;
 import org.opennms.netmgt.graph.api.Vertex;
 import org.opennms.netmgt.graph.api.focus.Focus;
-import org.opennms.netmgt.graph.api.generic.GenericEdge;
 import org.opennms.netmgt.graph.rest.api.Converter;
 import org.opennms.netmgt.graph.rest.impl.converter.JsonPropertyConverterService;
 import org.osgi.framework.BundleContext;
@@ -69,11 +67,7 @@ public class GraphConverter implements Converter<ImmutableGraph<?, ?>, JSONObjec
             input.getEdges().stream()
                     .sorted(Comparator.comparing(Edge::getId))
                     .forEach(edge -> {
-                        final GenericEdge genericEdge = edge.asGenericEdge();
-                        final Map<String, Object> edgeProperties = new HashMap<>(genericEdge.getProperties());
-                        edgeProperties.put("source", genericEdge.getSource());
-                        edgeProperties.put("target", genericEdge.getTarget());
-                        final JSONObject jsonEdge = propertyConverterService.convert(edgeProperties);
+                        final JSONObject jsonEdge = new EdgeConverter(bundleContext).convert(edge);
                         jsonEdgesArray.put(jsonEdge);
                     });
 
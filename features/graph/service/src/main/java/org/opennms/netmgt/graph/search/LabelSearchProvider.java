@@ -47,28 +47,23 @@ public class LabelSearchProvider implements SearchProvider {
     @Override
     public List<SearchSuggestion> getSuggestions(SearchContext searchContext, String namespace, String input) {
         Objects.requireNonNull(input);
-        return getVerticesOfGraph(searchContext.getGraphService(), namespace)
+        return findVertices(searchContext.getGraphService(), namespace, input, searchContext.getSuggestionsLimit())
                 .stream()
-                .filter(v -> v.getLabel() != null && v.getLabel().toLowerCase().contains(input.toLowerCase()))
                 .map(v -> new SearchSuggestion(getProviderId(), GenericVertex.class.getSimpleName(), v.getLabel(), v.getLabel()))
-                .limit(searchContext.getSuggestionsLimit())
                 .collect(Collectors.toList());
     }
 
     @Override
     public List<GenericVertex> resolve(GraphService graphService, SearchCriteria searchCriteria) {
-        final List<GenericVertex> vertices = getVerticesOfGraph(graphService, searchCriteria.getNamespace())
-                .stream()
-                .filter(v -> v.getLabel() != null && v.getLabel().toLowerCase().contains(searchCriteria.getCriteria().toLowerCase()))
-                .collect(Collectors.toList());
-        return vertices;
+        return findVertices(graphService, searchCriteria.getNamespace(), searchCriteria.getCriteria(), Integer.MAX_VALUE);
     }
 
-    private List<GenericVertex> getVerticesOfGraph(GraphService graphService, String namespace) {
+    // The label index of the graph is built once per graph, afterwards lookups no longer scan all vertices
+    private List<GenericVertex> findVertices(GraphService graphService, String namespace, String input, int limit) {
         GenericGraph graph = graphService.getGraph(namespace);
         List<GenericVertex> result;
         if (graph != null) {
-            result = graph.getVertices();
+            result = graph.getIndex().findByLabel(input, limit);
         } else {
             LOG.warn("Could not find graph for namespace {}", namespace);
             result = Collections.emptyList();
@@ -21,29 +21,50 @@
  */
 package org.opennms.netmgt.graph.service;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.opennms.netmgt.graph.api.ImmutableGraph;
 import org.opennms.netmgt.graph.api.ImmutableGraphContainer;
+import org.opennms.netmgt.graph.api.generic.GenericEdge;
 import org.opennms.netmgt.graph.api.generic.GenericGraph;
 import org.opennms.netmgt.graph.api.generic.GenericGraphContainer;
+import org.opennms.netmgt.graph.api.generic.GenericVertex;
 import org.opennms.netmgt.graph.api.info.GraphContainerInfo;
 import org.opennms.netmgt.graph.api.info.GraphInfo;
 import org.opennms.netmgt.graph.api.service.GraphContainerCache;
 import org.opennms.netmgt.graph.api.service.GraphContainerProvider;
 import org.opennms.netmgt.graph.api.service.GraphService;
+import org.opennms.netmgt.graph.api.updates.ChangeSet;
+import org.opennms.netmgt.graph.api.updates.VersionedChangeSet;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.Expiry;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 
+/**
+ * Caches the graph containers of the delegate.
+ *
+ * Changes published by the providers are applied to the cached container, which is replaced by a new
+ * container sharing all unchanged graphs and elements with the previous one. Readers therefore always
+ * get an immutable snapshot without blocking the writers. The applied changes are recorded per container
+ * in a {@link GraphChangeLog}, holding at most {@value #DEFAULT_CHANGE_LOG_SIZE} change sets unless
+ * configured otherwise with the {@value #CHANGE_LOG_SIZE_SYS_PROP} system property.
+ */
 public class CachingGraphService implements GraphService, GraphContainerCache {
 
+    protected static final String CHANGE_LOG_SIZE_SYS_PROP = "org.opennms.netmgt.graph.changeLog.size";
+
+    private static final int DEFAULT_CHANGE_LOG_SIZE = 1000;
+
     private final GraphService delegate;
     private final LoadingCache<String, ImmutableGraphContainer> cache;
     private final Map<String, Long> expireMap = new ConcurrentHashMap<>();
+    private final Map<String, GraphChangeLog> changeLogs = new ConcurrentHashMap<>();
+    private final int changeLogSize = Integer.getInteger(CHANGE_LOG_SIZE_SYS_PROP, DEFAULT_CHANGE_LOG_SIZE);
 
     public CachingGraphService(final GraphService delegate) {
         this.delegate = Objects.requireNonNull(delegate);
@@ -66,7 +87,16 @@ public class CachingGraphService implements GraphService, GraphContainerCache {
                 }
             })
             .recordStats()
-            .build(delegate::getGraphContainer);
+            .build(this::load);
+    }
+
+    private ImmutableGraphContainer load(String containerId) {
+        final GenericGraphContainer graphContainer = delegate.getGraphContainer(containerId);
+        if (graphContainer != null) {
+            // the container was (re)loaded as a whole, changes recorded so far no longer apply
+            getChangeLog(containerId).reset();
+        }
+        return graphContainer;
     }
 
     @Override
@@ -114,6 +144,10 @@ public class CachingGraphService implements GraphService, GraphContainerCache {
     @Override
     public void invalidate(String containerId) {
         cache.invalidate(containerId);
+        final GraphChangeLog changeLog = changeLogs.get(containerId);
+        if (changeLog != null) {
+            changeLog.reset();
+        }
     }
 
     @Override
@@ -121,11 +155,80 @@ public class CachingGraphService implements GraphService, GraphContainerCache {
         return cache.get(containerId);
     }
 
+    @Override
+    public boolean isCached(String containerId) {
+        return cache.asMap().containsKey(containerId);
+    }
+
+    @Override
+    public long apply(String containerId, ChangeSet<?, ?, ?> changeSet) {
+        Objects.requireNonNull(containerId);
+        Objects.requireNonNull(changeSet);
+        // If the container is not cached, there is nothing to apply the changes to.
+        // The next load will contain them anyways.
+        cache.asMap().computeIfPresent(containerId, (id, container) -> {
+            final GenericGraphContainer genericGraphContainer = container.asGenericGraphContainer();
+            final GenericGraph graph = genericGraphContainer.getGraph(changeSet.getNamespace());
+            if (graph == null) {
+                throw new IllegalArgumentException(
+                        String.format("Container %s does not contain a graph with namespace %s", id, changeSet.getNamespace()));
+            }
+            final GenericGraph changedGraph = GenericGraph.from(graph).applyChangeSet(changeSet).build();
+            getChangeLog(id).record(changeSet);
+            return replaceGraph(genericGraphContainer, changedGraph);
+        });
+        return getVersion(containerId);
+    }
+
+    @Override
+    public long update(String containerId, ImmutableGraph<?, ?> graph) {
+        Objects.requireNonNull(containerId);
+        final GenericGraph newGraph = Objects.requireNonNull(graph).asGenericGraph();
+        cache.asMap().computeIfPresent(containerId, (id, container) -> {
+            final GenericGraphContainer genericGraphContainer = container.asGenericGraphContainer();
+            final GenericGraph oldGraph = genericGraphContainer.getGraph(newGraph.getNamespace());
+            final ChangeSet<GenericGraph, GenericVertex, GenericEdge> changeSet = ChangeSet.<GenericGraph, GenericVertex, GenericEdge>builder(oldGraph, newGraph).build();
+            if (!changeSet.hasChanges()) {
+                return container;
+            }
+            getChangeLog(id).record(changeSet);
+            return replaceGraph(genericGraphContainer, newGraph);
+        });
+        return getVersion(containerId);
+    }
+
+    @Override
+    public long getVersion(String containerId) {
+        final GraphChangeLog changeLog = changeLogs.get(containerId);
+        return changeLog != null ? changeLog.getVersion() : 0;
+    }
+
+    @Override
+    public List<VersionedChangeSet> getChangesSince(String containerId, long version) {
+        final GraphChangeLog changeLog = changeLogs.get(containerId);
+        if (changeLog == null) {
+            return version == 0 ? Collections.emptyList() : null;
+        }
+        return changeLog.getChangesSince(version);
+    }
+
+    private GraphChangeLog getChangeLog(String containerId) {
+        return changeLogs.computeIfAbsent(containerId, id -> new GraphChangeLog(id, changeLogSize));
+    }
+
+    // The new container shares all other graphs with the old one
+    private static GenericGraphContainer replaceGraph(GenericGraphContainer graphContainer, GenericGraph graph) {
+        final GenericGraphContainer.GenericGraphContainerBuilder builder = GenericGraphContainer.builder().properties(graphContainer.getProperties());
+        graphContainer.getGraphs().forEach(builder::addGraph);
+        return builder.addGraph(graph).build();
+    }
+
     public synchronized void onUnbind(GraphContainerProvider graphContainerProvider, Map<String, String> props) {
         if (graphContainerProvider != null) {
             final String containerId = graphContainerProvider.getContainerInfo().getId();
             cache.invalidate(containerId);
             expireMap.remove(containerId);
+            changeLogs.remove(containerId);
         }
     }
 
@@ -21,6 +21,7 @@
  */
 package org.opennms.netmgt.graph.service;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -84,11 +85,22 @@ public class DefaultNodeService implements NodeService {
                 .filter(nodeRef -> nodeRef.getNodeId() == null)
                 .collect(Collectors.toList());
         final List<OnmsNode> nodes = loadNodes(foreignIdNodeRefs);
+
+        // Look up the matching references instead of testing each reference against each node.
+        // If multiple references match a node, the last one wins, see NodeRef#matches(OnmsNode)
+        final Map<Integer, Integer> refIndexByNodeId = new HashMap<>();
+        final Map<List<String>, Integer> refIndexByForeignId = new HashMap<>();
+        for (int i = 0; i < nodeRefs.size(); i++) {
+            final NodeRef eachRef = nodeRefs.get(i);
+            refIndexByNodeId.put(eachRef.getNodeId(), i);
+            refIndexByForeignId.put(Arrays.asList(eachRef.getForeignSource(), eachRef.getForeignId()), i);
+        }
         for (OnmsNode eachNode : nodes) {
-            for (NodeRef eachRef : nodeRefs) {
-                if (eachRef.matches(eachNode)) {
-                    nodeIdNodeRefMap.put(eachNode.getId(), eachRef);
-                }
+            final int refIndex = Math.max(
+                    refIndexByNodeId.getOrDefault(eachNode.getId(), -1),
+                    refIndexByForeignId.getOrDefault(Arrays.asList(eachNode.getForeignSource(), eachNode.getForeignId()), -1));
+            if (refIndex >= 0) {
+                nodeIdNodeRefMap.put(eachNode.getId(), nodeRefs.get(refIndex));
             }
         }
         // Alarm summary for each node id
@@ -0,0 +1,96 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.graph.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+import org.opennms.netmgt.graph.api.updates.ChangeSet;
+import org.opennms.netmgt.graph.api.updates.VersionedChangeSet;
+
+/**
+ * The version of a graph container and the most recent changes applied to it.
+ *
+ * Each recorded change set and each reset increments the version. A reset discards the recorded
+ * changes, as the container was reloaded and readers have to fetch it as a whole.
+ * Only the latest changes are kept, readers which are too far behind have to reload as well.
+ */
+public class GraphChangeLog {
+
+    private final String containerId;
+    private final int capacity;
+    private final Deque<VersionedChangeSet> changes = new ArrayDeque<>();
+
+    private long version;
+
+    // the oldest version from which all later changes are still recorded
+    private long baseVersion;
+
+    public GraphChangeLog(final String containerId, final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.containerId = Objects.requireNonNull(containerId);
+        this.capacity = capacity;
+    }
+
+    public synchronized long record(final ChangeSet<?, ?, ?> changeSet) {
+        Objects.requireNonNull(changeSet);
+        version++;
+        changes.addLast(new VersionedChangeSet(containerId, version, changeSet));
+        while (changes.size() > capacity) {
+            baseVersion = changes.removeFirst().getVersion();
+        }
+        return version;
+    }
+
+    public synchronized long reset() {
+        version++;
+        baseVersion = version;
+        changes.clear();
+        return version;
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * @param since the version the reader has seen
+     * @return the changes applied after the given version, or null if they are no longer recorded
+     */
+    public synchronized List<VersionedChangeSet> getChangesSince(final long since) {
+        if (since < baseVersion || since > version) {
+            return null;
+        }
+        final List<VersionedChangeSet> result = new ArrayList<>();
+        for (VersionedChangeSet eachChange : changes) {
+            if (eachChange.getVersion() > since) {
+                result.add(eachChange);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.graph.service;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.opennms.netmgt.graph.api.generic.GenericEdge;
+import org.opennms.netmgt.graph.api.generic.GenericGraph;
+import org.opennms.netmgt.graph.api.generic.GenericGraphContainer;
+import org.opennms.netmgt.graph.api.generic.GenericVertex;
+import org.opennms.netmgt.graph.api.service.GraphService;
+import org.opennms.netmgt.graph.api.updates.ChangeSet;
+import org.opennms.netmgt.graph.api.updates.VersionedChangeSet;
+
+public class CachingGraphServiceTest {
+
+    private static final String CONTAINER_ID = "test";
+
+    private GraphService delegate;
+    private CachingGraphService graphService;
+
+    @Before
+    public void setUp() {
+        final GenericGraphContainer graphContainer = GenericGraphContainer.builder()
+                .id(CONTAINER_ID)
+                .label("Test Container")
+                .addGraph(createGraph("ns1", "v1", "v2"))
+                .addGraph(createGraph("ns2", "v1"))
+                .build();
+        delegate = Mockito.mock(GraphService.class);
+        Mockito.when(delegate.getGraphContainer(CONTAINER_ID)).thenReturn(graphContainer);
+        graphService = new CachingGraphService(delegate);
+    }
+
+    @Test
+    public void shouldApplyChangesToCachedContainer() {
+        final GenericGraphContainer loadedContainer = graphService.getGraphContainer(CONTAINER_ID);
+        assertEquals(1, graphService.getVersion(CONTAINER_ID));
+
+        final ChangeSet<GenericGraph, GenericVertex, GenericEdge> changeSet = ChangeSet.<GenericGraph, GenericVertex, GenericEdge>builder("ns1")
+                .vertexAdded(createVertex("ns1", "v3"))
+                .vertexRemoved(createVertex("ns1", "v1"))
+                .build();
+        assertEquals(2, graphService.apply(CONTAINER_ID, changeSet));
+
+        final GenericGraphContainer changedContainer = graphService.getGraphContainer(CONTAINER_ID);
+        assertThat(changedContainer.getGraph("ns1").getVertexIds(), contains("v2", "v3"));
+        assertThat(changedContainer.getGraph("ns2"), sameInstance(loadedContainer.getGraph("ns2")));
+        assertThat(loadedContainer.getGraph("ns1").getVertexIds(), contains("v1", "v2"));
+        Mockito.verify(delegate, Mockito.times(1)).getGraphContainer(CONTAINER_ID);
+
+        final List<VersionedChangeSet> changes = graphService.getChangesSince(CONTAINER_ID, 1);
+        assertThat(changes, hasSize(1));
+        assertEquals(2, changes.get(0).getVersion());
+        assertThat(changes.get(0).getChangeSet(), sameInstance(changeSet));
+        assertThat(graphService.getChangesSince(CONTAINER_ID, 2), hasSize(0));
+        assertThat(graphService.getChangesSince(CONTAINER_ID, 0), nullValue());
+    }
+
+    @Test
+    public void shouldRecordDifferenceOnUpdate() {
+        graphService.getGraphContainer(CONTAINER_ID);
+
+        assertEquals(2, graphService.update(CONTAINER_ID, createGraph("ns1", "v1", "v4")));
+        final ChangeSet<?, ?, ?> changeSet = graphService.getChangesSince(CONTAINER_ID, 1).get(0).getChangeSet();
+        assertThat(changeSet.getVerticesAdded(), hasSize(1));
+        assertEquals("v4", changeSet.getVerticesAdded().get(0).getId());
+        assertThat(changeSet.getVerticesRemoved(), hasSize(1));
+        assertEquals("v2", changeSet.getVerticesRemoved().get(0).getId());
+        assertThat(graphService.getGraph(CONTAINER_ID, "ns1").getVertexIds(), contains("v1", "v4"));
+
+        // Nothing changed, nothing to record
+        assertEquals(2, graphService.update(CONTAINER_ID, createGraph("ns1", "v1", "v4")));
+    }
+
+    @Test
+    public void shouldNotApplyChangesToUncachedContainer() {
+        final ChangeSet<GenericGraph, GenericVertex, GenericEdge> changeSet = ChangeSet.<GenericGraph, GenericVertex, GenericEdge>builder("ns1")
+                .vertexAdded(createVertex("ns1", "v3"))
+                .build();
+        assertEquals(0, graphService.apply(CONTAINER_ID, changeSet));
+        Mockito.verify(delegate, Mockito.never()).getGraphContainer(CONTAINER_ID);
+
+        // The next load contains the changes and starts a new version
+        assertThat(graphService.getGraphContainer(CONTAINER_ID), notNullValue());
+        assertEquals(1, graphService.getVersion(CONTAINER_ID));
+    }
+
+    @Test
+    public void shouldNotLoadContainerWhenCheckingIfCached() {
+        assertFalse(graphService.isCached(CONTAINER_ID));
+        Mockito.verify(delegate, Mockito.never()).getGraphContainer(CONTAINER_ID);
+
+        graphService.getGraphContainer(CONTAINER_ID);
+        assertTrue(graphService.isCached(CONTAINER_ID));
+
+        graphService.invalidate(CONTAINER_ID);
+        assertFalse(graphService.isCached(CONTAINER_ID));
+    }
+
+    @Test
+    public void shouldRequireReloadAfterInvalidate() {
+        graphService.getGraphContainer(CONTAINER_ID);
+        graphService.update(CONTAINER_ID, createGraph("ns1", "v1"));
+        assertThat(graphService.getChangesSince(CONTAINER_ID, 1), hasSize(1));
+
+        graphService.invalidate(CONTAINER_ID);
+        assertThat(graphService.getChangesSince(CONTAINER_ID, 1), nullValue());
+        assertThat(graphService.getChangesSince(CONTAINER_ID, 2), nullValue());
+
+        graphService.getGraphContainer(CONTAINER_ID);
+        assertEquals(4, graphService.getVersion(CONTAINER_ID));
+        assertThat(graphService.getChangesSince(CONTAINER_ID, 4), hasSize(0));
+        Mockito.verify(delegate, Mockito.times(2)).getGraphContainer(CONTAINER_ID);
+    }
+
+    @Test
+    public void shouldOnlyKeepLatestChanges() {
+        final GraphChangeLog changeLog = new GraphChangeLog(CONTAINER_ID, 2);
+        final ChangeSet<GenericGraph, GenericVertex, GenericEdge> changeSet = ChangeSet.<GenericGraph, GenericVertex, GenericEdge>builder("ns1").build();
+        for (int i = 0; i < 5; i++) {
+            changeLog.record(changeSet);
+        }
+        assertEquals(5, changeLog.getVersion());
+        assertThat(changeLog.getChangesSince(2), nullValue());
+        assertThat(changeLog.getChangesSince(3), hasSize(2));
+        assertThat(changeLog.getChangesSince(4), hasSize(1));
+        assertThat(changeLog.getChangesSince(6), nullValue());
+    }
+
+    private static GenericGraph createGraph(String namespace, String... vertexIds) {
+        final GenericGraph.GenericGraphBuilder graphBuilder = GenericGraph.builder().namespace(namespace).label(namespace);
+        for (String eachId : vertexIds) {
+            graphBuilder.addVertex(createVertex(namespace, eachId));
+        }
+        return graphBuilder.build();
+    }
+
+    private static GenericVertex createVertex(String namespace, String id) {
+        return GenericVertex.builder().namespace(namespace).id(id).build();
+    }
+}
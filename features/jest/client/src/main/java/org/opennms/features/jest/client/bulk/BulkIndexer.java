@@ -0,0 +1,432 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.features.jest.client.bulk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.searchbox.action.BulkableAction;
+import io.searchbox.client.JestClient;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
+
+/**
+ * Indexes documents with a pool of concurrent bulk workers.
+ *
+ * Documents are queued and picked up by the workers, which group them into bulk requests.
+ * The size of the requests adapts to the observed latency, see {@link BulkIndexerConfig}.
+ * When only some documents of a request fail, only those documents are retried, and only
+ * if the failure is transient, i.e. Elasticsearch rejected them because it is overloaded.
+ *
+ * The queue is bounded, producers are blocked when it is full, which gives the indexing
+ * backpressure to the producers. The state of the queue and the workers is exposed for
+ * metrics.
+ *
+ * @param <T> the type of the documents
+ */
+public class BulkIndexer<T> implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkIndexer.class);
+
+    /**
+     * Notified of the outcome of the bulk requests. Invoked on the worker threads.
+     */
+    public interface Listener<T> {
+
+        /**
+         * Invoked after a bulk request was executed.
+         *
+         * @param size the number of documents in the request
+         * @param bytes the estimated size of the documents in the request
+         * @param durationMs the time it took to execute the request
+         */
+        default void onBulkExecuted(int size, long bytes, long durationMs) { }
+
+        /**
+         * Invoked with the documents which could not be indexed after all retries.
+         */
+        default void onFailed(List<FailedItem<T>> failedItems) { }
+    }
+
+    private final String name;
+    private final JestClient client;
+    private final BulkIndexerConfig config;
+    private final Function<T, BulkableAction<?>> actionMapper;
+    private final ToLongFunction<T> sizeEstimator;
+    private final Listener<T> listener;
+
+    private final BlockingQueue<T> queue;
+    private final ExecutorService workers;
+    private volatile boolean running = true;
+
+    private final AtomicInteger batchSize;
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final AtomicLong lastLatencyMs = new AtomicLong();
+    private final LongAdder indexed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder producerWaits = new LongAdder();
+
+    /**
+     * Documents which were accepted but are not yet indexed or failed.
+     */
+    private final AtomicLong pending = new AtomicLong();
+    private final Object idle = new Object();
+
+    /**
+     * @param name used to name the worker threads
+     * @param client the client used to execute the bulk requests
+     * @param config the settings
+     * @param actionMapper creates the action for a document, may return null to skip the document
+     * @param sizeEstimator estimates the size of a document in bytes
+     * @param listener notified of the outcome of the bulk requests
+     */
+    public BulkIndexer(String name, JestClient client, BulkIndexerConfig config,
+                       Function<T, BulkableAction<?>> actionMapper, ToLongFunction<T> sizeEstimator, Listener<T> listener) {
+        this.name = Objects.requireNonNull(name);
+        this.client = Objects.requireNonNull(client);
+        this.config = Objects.requireNonNull(config);
+        this.actionMapper = Objects.requireNonNull(actionMapper);
+        this.sizeEstimator = Objects.requireNonNull(sizeEstimator);
+        this.listener = listener != null ? listener : new Listener<T>() {};
+        if (config.getWorkers() < 1) {
+            throw new IllegalArgumentException("workers must be positive");
+        }
+        if (config.getMinBatchSize() < 1 || config.getMinBatchSize() > config.getMaxBatchSize()) {
+            throw new IllegalArgumentException("Expected 0 < minBatchSize <= maxBatchSize");
+        }
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity()));
+        this.batchSize = new AtomicInteger(Math.max(config.getMinBatchSize(), Math.min(config.getMaxBatchSize(), config.getInitialBatchSize())));
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(config.getWorkers(),
+                runnable -> new Thread(runnable, name + "-BulkWorker-" + threadCount.getAndIncrement()));
+        for (int i = 0; i < config.getWorkers(); i++) {
+            workers.execute(this::work);
+        }
+    }
+
+    /**
+     * Queues the document for indexing, blocking while the queue is full.
+     */
+    public void index(T document) throws InterruptedException {
+        Objects.requireNonNull(document);
+        if (!running) {
+            throw new IllegalStateException(name + " is closed.");
+        }
+        pending.incrementAndGet();
+        if (!queue.offer(document)) {
+            producerWaits.increment();
+            try {
+                queue.put(document);
+            } catch (InterruptedException e) {
+                done(1);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Queues the documents for indexing, blocking while the queue is full.
+     */
+    public void index(Collection<T> documents) throws InterruptedException {
+        for (T document : documents) {
+            index(document);
+        }
+    }
+
+    /**
+     * Waits until all of the documents queued so far are either indexed or failed.
+     *
+     * @return false if the timeout elapsed before
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (idle) {
+            while (pending.get() > 0) {
+                final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                idle.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops accepting documents and waits for the workers to index the queued documents.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        workers.shutdown();
+        if (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+            LOG.warn("{} did not finish indexing the queued documents in time. {} documents are lost.", name, queue.size());
+            workers.shutdownNow();
+        }
+    }
+
+    private void work() {
+        final List<T> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                final T first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long bytes = sizeEstimator.applyAsLong(first);
+
+                // Fill the batch up to the current bulk size, waiting a little for more documents to arrive
+                final int targetSize = batchSize.get();
+                final long lingerUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getLingerMs());
+                while (batch.size() < targetSize && bytes < config.getMaxBatchBytes()) {
+                    T next = queue.poll();
+                    if (next == null) {
+                        final long wait = lingerUntil - System.nanoTime();
+                        if (wait <= 0 || (next = queue.poll(wait, TimeUnit.NANOSECONDS)) == null) {
+                            break;
+                        }
+                    }
+                    batch.add(next);
+                    bytes += sizeEstimator.applyAsLong(next);
+                }
+
+                activeWorkers.incrementAndGet();
+                try {
+                    execute(batch, bytes, targetSize);
+                } finally {
+                    activeWorkers.decrementAndGet();
+                    done(batch.size());
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                LOG.info("{} interrupted. Stopping.", name);
+                done(batch.size());
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                LOG.error("{} failed to index {} documents.", name, batch.size(), e);
+                done(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    private void execute(List<T> batch, long bytes, int targetSize) throws InterruptedException {
+        List<T> documents = batch;
+        for (int attempt = 0; ; attempt++) {
+            // Map the documents, skipped documents are considered indexed
+            final List<T> mappedDocuments = new ArrayList<>(documents.size());
+            final List<BulkableAction<?>> actions = new ArrayList<>(documents.size());
+            for (T document : documents) {
+                final BulkableAction<?> action = actionMapper.apply(document);
+                if (action != null) {
+                    mappedDocuments.add(document);
+                    actions.add(action);
+                }
+            }
+            if (actions.isEmpty()) {
+                return;
+            }
+
+            final List<T> retries = new ArrayList<>();
+            final List<FailedItem<T>> failures = new ArrayList<>();
+            final long start = System.nanoTime();
+            try {
+                final BulkResult result = client.execute(new Bulk.Builder().addAction(actions).build());
+                final long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                listener.onBulkExecuted(mappedDocuments.size(), bytes, durationMs);
+                classify(result, mappedDocuments, retries, failures);
+                adapt(durationMs, !retries.isEmpty(), attempt == 0 && batch.size() >= targetSize);
+            } catch (IOException e) {
+                LOG.info("{} failed to execute the bulk request: {}", name, e.getMessage());
+                adapt(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), true, false);
+                for (int i = 0; i < mappedDocuments.size(); i++) {
+                    retries.add(mappedDocuments.get(i));
+                }
+            } catch (RuntimeException e) {
+                // i.e. the connection pool is shut down, there is no point in retrying
+                for (int i = 0; i < mappedDocuments.size(); i++) {
+                    failures.add(new FailedItem<>(i, mappedDocuments.get(i), e));
+                }
+            }
+
+            indexed.add(mappedDocuments.size() - retries.size() - failures.size());
+            if (!retries.isEmpty() && attempt < config.getRetryCount() - 1) {
+                retried.add(retries.size());
+                final long sleepTime = BulkRequest.getSleepTime(attempt);
+                LOG.info("{} retrying {} documents in {} ms.", name, retries.size(), sleepTime);
+                Thread.sleep(sleepTime);
+                documents = retries;
+                continue;
+            }
+
+            for (T document : retries) {
+                failures.add(new FailedItem<>(failures.size(), document, new Exception("Retries exhausted.")));
+            }
+            if (!failures.isEmpty()) {
+                failed.add(failures.size());
+                listener.onFailed(failures);
+            }
+            return;
+        }
+    }
+
+    /**
+     * Sorts the failed documents of the result into documents that should be retried and documents that failed permanently.
+     */
+    private void classify(BulkResult result, List<T> documents, List<T> retries, List<FailedItem<T>> failures) {
+        final List<BulkResult.BulkResultItem> items = result.getItems();
+        if (items.size() != documents.size()) {
+            if (result.isSucceeded()) {
+                return;
+            }
+            // The request failed as a whole
+            if (isTransient(result.getResponseCode())) {
+                retries.addAll(documents);
+            } else {
+                final Exception cause = new Exception(result.getErrorMessage());
+                for (int i = 0; i < documents.size(); i++) {
+                    failures.add(new FailedItem<>(i, documents.get(i), cause));
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < items.size(); i++) {
+            final BulkResult.BulkResultItem item = items.get(i);
+            if (item.error == null || item.error.isEmpty()) {
+                continue;
+            }
+            if (isTransient(item.status)) {
+                retries.add(documents.get(i));
+            } else {
+                failures.add(new FailedItem<>(i, documents.get(i), BulkUtils.convertToException(item.error)));
+            }
+        }
+    }
+
+    private static boolean isTransient(int status) {
+        // Too many requests, or the node is unavailable
+        return status == 429 || status >= 500;
+    }
+
+    /**
+     * Grows the bulk size while full requests are fast, halves it when they are slow or rejected.
+     */
+    private void adapt(long durationMs, boolean throttled, boolean full) {
+        lastLatencyMs.set(durationMs);
+        batchSize.updateAndGet(current -> {
+            if (throttled || durationMs > config.getTargetLatencyMs()) {
+                return Math.max(config.getMinBatchSize(), current / 2);
+            } else if (full) {
+                return Math.min(config.getMaxBatchSize(), current + Math.max(1, current / 10));
+            }
+            return current;
+        });
+    }
+
+    private void done(int count) {
+        if (pending.addAndGet(-count) == 0) {
+            synchronized (idle) {
+                idle.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return the number of documents waiting in the queue
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public int getQueueCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    /**
+     * @return the number of times a producer was blocked because the queue was full
+     */
+    public long getProducerWaits() {
+        return producerWaits.sum();
+    }
+
+    /**
+     * @return the number of bulk requests currently executing
+     */
+    public int getActiveWorkers() {
+        return activeWorkers.get();
+    }
+
+    /**
+     * @return the current number of documents per bulk request
+     */
+    public int getBatchSize() {
+        return batchSize.get();
+    }
+
+    public long getLastLatencyMs() {
+        return lastLatencyMs.get();
+    }
+
+    public long getIndexedCount() {
+        return indexed.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public long getRetriedCount() {
+        return retried.sum();
+    }
+
+    /**
+     * @return the number of documents which were accepted but are not yet indexed or failed
+     */
+    public long getPendingCount() {
+        return pending.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[queued=%d, active=%d, batchSize=%d, indexed=%d, failed=%d]",
+                name, getQueueSize(), getActiveWorkers(), getBatchSize(), getIndexedCount(), getFailedCount());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.features.jest.client.bulk;
+
+/**
+ * Settings of a {@link BulkIndexer}.
+ *
+ * The size of the bulk requests adapts between {@link #getMinBatchSize()} and {@link #getMaxBatchSize()}
+ * documents: it grows while full requests complete within {@link #getTargetLatencyMs()} and is halved when
+ * a request takes longer or Elasticsearch rejects documents because it is overloaded.
+ * A request never exceeds {@link #getMaxBatchBytes()} regardless of the number of documents.
+ */
+public class BulkIndexerConfig {
+
+    private int workers = 2;
+    private int queueCapacity = 5000;
+    private int initialBatchSize = 200;
+    private int minBatchSize = 10;
+    private int maxBatchSize = 5000;
+    private long maxBatchBytes = 5 * 1024 * 1024;
+    private long targetLatencyMs = 1000;
+    private long lingerMs = 50;
+    private int retryCount = 3;
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * @param workers number of bulk requests executed concurrently
+     */
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @param queueCapacity number of documents which can be queued before producers are blocked
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getInitialBatchSize() {
+        return initialBatchSize;
+    }
+
+    public void setInitialBatchSize(int initialBatchSize) {
+        this.initialBatchSize = initialBatchSize;
+    }
+
+    public int getMinBatchSize() {
+        return minBatchSize;
+    }
+
+    public void setMinBatchSize(int minBatchSize) {
+        this.minBatchSize = minBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public long getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    /**
+     * @param maxBatchBytes maximum estimated size of the documents in a single bulk request
+     */
+    public void setMaxBatchBytes(long maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    public long getTargetLatencyMs() {
+        return targetLatencyMs;
+    }
+
+    /**
+     * @param targetLatencyMs the bulk size shrinks when requests take longer than this
+     */
+    public void setTargetLatencyMs(long targetLatencyMs) {
+        this.targetLatencyMs = targetLatencyMs;
+    }
+
+    public long getLingerMs() {
+        return lingerMs;
+    }
+
+    /**
+     * @param lingerMs time to wait for more documents before sending a request which is not full
+     */
+    public void setLingerMs(long lingerMs) {
+        this.lingerMs = lingerMs;
+    }
+
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    /**
+     * @param retryCount number of attempts until a document is considered failed
+     */
+    public void setRetryCount(int retryCount) {
+        this.retryCount = retryCount;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.features.jest.client.bulk;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.findAll;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.stubbing.Scenario.STARTED;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.opennms.features.jest.client.RestClientFactory;
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.http.Fault;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.github.tomakehurst.wiremock.verification.LoggedRequest;
+
+import io.searchbox.client.JestClient;
+import io.searchbox.core.Index;
+
+public class BulkIndexerTest {
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(WireMockConfiguration.wireMockConfig()
+            .dynamicPort());
+
+    private final List<FailedItem<String>> failedItems = new CopyOnWriteArrayList<>();
+
+    private JestClient client;
+
+    private BulkIndexer<String> bulkIndexer;
+
+    @Before
+    public void setUp() throws Exception {
+        final RestClientFactory restClientFactory = new RestClientFactory(wireMockRule.url(""));
+        restClientFactory.setTimeout(3000);
+        restClientFactory.setSocketTimeout(3000);
+        restClientFactory.setRetries(0);
+        client = restClientFactory.createClient();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (bulkIndexer != null) {
+            bulkIndexer.close();
+        }
+        client.close();
+    }
+
+    @Test
+    public void canRetryRejectedDocuments() throws Exception {
+        // The first request rejects the second document, the retry succeeds
+        stubFor(post(urlEqualTo("/_bulk"))
+                .inScenario("retry")
+                .whenScenarioStateIs(STARTED)
+                .willReturn(aResponse().withBody(bulkResponse(item("a", 201), item("b", 429), item("c", 201))))
+                .willSetStateTo("retried"));
+        stubFor(post(urlEqualTo("/_bulk"))
+                .inScenario("retry")
+                .whenScenarioStateIs("retried")
+                .willReturn(aResponse().withBody(bulkResponse(item("b", 201)))));
+
+        bulkIndexer = createBulkIndexer(createConfig());
+        bulkIndexer.index(Arrays.asList("a", "b", "c"));
+        assertTrue(bulkIndexer.flush(30, TimeUnit.SECONDS));
+
+        final List<LoggedRequest> requests = findAll(postRequestedFor(urlEqualTo("/_bulk")));
+        assertThat(requests, hasSize(2));
+        // Only the rejected document is sent again
+        assertThat(requests.get(1).getBodyAsString(), containsString("\"b\""));
+        assertThat(requests.get(1).getBodyAsString(), not(containsString("\"a\"")));
+        assertThat(requests.get(1).getBodyAsString(), not(containsString("\"c\"")));
+
+        assertThat(bulkIndexer.getIndexedCount(), is(3L));
+        assertThat(bulkIndexer.getRetriedCount(), is(1L));
+        assertThat(bulkIndexer.getFailedCount(), is(0L));
+        assertThat(failedItems, hasSize(0));
+    }
+
+    @Test
+    public void canReportPermanentFailures() throws Exception {
+        stubFor(post(urlEqualTo("/_bulk"))
+                .willReturn(aResponse().withBody(bulkResponse(item("a", 201), item("b", 400)))));
+
+        bulkIndexer = createBulkIndexer(createConfig());
+        bulkIndexer.index(Arrays.asList("a", "b"));
+        assertTrue(bulkIndexer.flush(30, TimeUnit.SECONDS));
+
+        // Documents which were not rejected due to load are not retried
+        assertThat(findAll(postRequestedFor(urlEqualTo("/_bulk"))), hasSize(1));
+        assertThat(bulkIndexer.getIndexedCount(), is(1L));
+        assertThat(bulkIndexer.getFailedCount(), is(1L));
+        assertThat(failedItems, hasSize(1));
+        assertThat(failedItems.get(0).getItem(), is("b"));
+    }
+
+    @Test
+    public void canShrinkBatchesWhenRequestsAreSlow() throws Exception {
+        stubFor(post(urlEqualTo("/_bulk"))
+                .willReturn(aResponse()
+                        .withFixedDelay(200)
+                        .withBody(bulkResponse())));
+
+        final BulkIndexerConfig config = createConfig();
+        config.setTargetLatencyMs(50);
+        bulkIndexer = createBulkIndexer(config);
+        bulkIndexer.index("a");
+        assertTrue(bulkIndexer.flush(30, TimeUnit.SECONDS));
+
+        assertThat(bulkIndexer.getBatchSize(), is(50));
+    }
+
+    @Test
+    public void canShrinkBatchesWhenRequestsFail() throws Exception {
+        stubFor(post(urlEqualTo("/_bulk"))
+                .willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)));
+
+        final BulkIndexerConfig config = createConfig();
+        config.setRetryCount(1);
+        bulkIndexer = createBulkIndexer(config);
+        bulkIndexer.index("a");
+        assertTrue(bulkIndexer.flush(30, TimeUnit.SECONDS));
+
+        assertThat(bulkIndexer.getBatchSize(), is(50));
+        assertThat(bulkIndexer.getFailedCount(), is(1L));
+        // The time it took the request to fail is recorded
+        assertThat(bulkIndexer.getLastLatencyMs(), lessThan(TimeUnit.SECONDS.toMillis(30)));
+    }
+
+    @Test
+    public void canGrowBatchesWhenRequestsAreFast() throws Exception {
+        stubFor(post(urlEqualTo("/_bulk"))
+                .willReturn(aResponse().withBody(bulkResponse())));
+
+        final BulkIndexerConfig config = createConfig();
+        config.setInitialBatchSize(10);
+        config.setLingerMs(TimeUnit.SECONDS.toMillis(5));
+        bulkIndexer = createBulkIndexer(config);
+        for (int i = 0; i < 10; i++) {
+            bulkIndexer.index("doc" + i);
+        }
+        assertTrue(bulkIndexer.flush(30, TimeUnit.SECONDS));
+
+        // A full batch was indexed quickly
+        assertThat(bulkIndexer.getBatchSize(), is(11));
+        assertThat(bulkIndexer.getLastLatencyMs(), lessThan(1000L));
+    }
+
+    private BulkIndexerConfig createConfig() {
+        final BulkIndexerConfig config = new BulkIndexerConfig();
+        config.setWorkers(1);
+        config.setInitialBatchSize(100);
+        config.setMinBatchSize(1);
+        config.setLingerMs(500);
+        return config;
+    }
+
+    private BulkIndexer<String> createBulkIndexer(BulkIndexerConfig config) {
+        return new BulkIndexer<>("test", client, config,
+                doc -> new Index.Builder(Collections.singletonMap("name", doc)).index("test").id(doc).build(),
+                String::length,
+                new BulkIndexer.Listener<String>() {
+                    @Override
+                    public void onFailed(List<FailedItem<String>> items) {
+                        failedItems.addAll(items);
+                    }
+                });
+    }
+
+    private static String item(String id, int status) {
+        final StringBuilder sb = new StringBuilder()
+                .append("{\"index\":{\"_index\":\"test\",\"_type\":\"_doc\",\"_id\":\"").append(id)
+                .append("\",\"status\":").append(status);
+        if (status >= 300) {
+            sb.append(",\"error\":{\"type\":\"").append(status == 429 ? "es_rejected_execution_exception" : "mapper_parsing_exception")
+                    .append("\",\"reason\":\"failed\"}");
+        }
+        return sb.append("}}").toString();
+    }
+
+    private static String bulkResponse(String... items) {
+        final boolean errors = Arrays.stream(items).anyMatch(item -> item.contains("\"error\""));
+        return "{\"took\":1,\"errors\":" + errors + ",\"items\":[" + String.join(",", items) + "]}";
+    }
+}
@@ -0,0 +1,423 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.nrtg.web.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.opennms.nrtg.api.NrtBroker;
+import org.opennms.nrtg.api.model.CollectionJob;
+import org.opennms.nrtg.api.model.MeasurementSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shares the collection of identical collection jobs between all graphs showing them.
+ *
+ * Each distinct job is collected by a single stream. Jobs are identified by their id, which
+ * is also the destination of their measurement sets, so the id of a job must be derived from
+ * everything that is collected, including the interval. The results are kept in a bounded ring buffer per stream, from
+ * which every subscription reads the measurement sets it has not seen yet. Subscriptions
+ * can either be read by polling, or register a {@link Listener} to be pushed new results.
+ *
+ * Subscriptions which are neither read nor pushed to within the subscription timeout are
+ * removed, and streams without subscriptions are stopped.
+ */
+public class NrtCollectionStreams implements NrtCollectionStreamsMBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NrtCollectionStreams.class);
+
+    /**
+     * Receives the measurement sets of a subscription as soon as they were collected.
+     */
+    public interface Listener {
+        /**
+         * @param measurementSets the new measurement sets
+         * @return false if the listener is no longer able to receive measurement sets
+         */
+        boolean onMeasurementSets(List<MeasurementSet> measurementSets);
+    }
+
+    private NrtBroker m_nrtBroker;
+
+    private int m_bufferSize = 64;
+
+    private long m_subscriptionTimeout = 120000;
+
+    private long m_minimumInterval = 250;
+
+    private int m_collectorThreads = 4;
+
+    private ScheduledExecutorService m_scheduler;
+
+    private ExecutorService m_fanOut;
+
+    private final Map<String, CollectionStream> m_streams = new ConcurrentHashMap<>();
+
+    private final Map<String, Subscription> m_subscriptions = new ConcurrentHashMap<>();
+
+    private final LongAdder m_issuedCollections = new LongAdder();
+
+    private final LongAdder m_deduplicatedCollections = new LongAdder();
+
+    private final LongAdder m_joinedStreams = new LongAdder();
+
+    private final LongAdder m_droppedMeasurementSets = new LongAdder();
+
+    /**
+     * A single collection job, collected on behalf of all its subscriptions.
+     */
+    private class CollectionStream {
+        private final CollectionJob m_job;
+        private final long m_interval;
+        private final MeasurementSet[] m_buffer;
+        private final Set<Subscription> m_subscribers = ConcurrentHashMap.newKeySet();
+        private long m_next = 0;
+        private ScheduledFuture<?> m_future;
+
+        private CollectionStream(final CollectionJob job, final long interval) {
+            m_job = job;
+            m_interval = interval;
+            m_buffer = new MeasurementSet[m_bufferSize];
+        }
+
+        private void start(final ScheduledExecutorService scheduler) {
+            m_future = scheduler.scheduleWithFixedDelay(this::collect, 0, m_interval, TimeUnit.MILLISECONDS);
+        }
+
+        private void stop() {
+            if (m_future != null) {
+                m_future.cancel(false);
+            }
+        }
+
+        private void collect() {
+            try {
+                m_nrtBroker.publishCollectionJob(m_job);
+                m_issuedCollections.increment();
+                m_deduplicatedCollections.add(Math.max(0, m_subscribers.size() - 1));
+
+                final List<MeasurementSet> measurementSets = m_nrtBroker.receiveMeasurementSets(m_job.getId());
+                if (measurementSets != null && !measurementSets.isEmpty()) {
+                    append(measurementSets);
+                    for (final Subscription subscription : m_subscribers) {
+                        subscription.push();
+                    }
+                }
+            } catch (final Exception e) {
+                LOG.warn("Collection of job {} failed: {}", m_job.getId(), e.getMessage(), e);
+            }
+        }
+
+        private synchronized void append(final List<MeasurementSet> measurementSets) {
+            for (final MeasurementSet measurementSet : measurementSets) {
+                m_buffer[(int) (m_next % m_buffer.length)] = measurementSet;
+                m_next++;
+            }
+        }
+
+        private synchronized long getNext() {
+            return m_next;
+        }
+
+        /**
+         * Adds the measurement sets starting at the given position to the list.
+         *
+         * @return the position following the last added measurement set
+         */
+        private synchronized long read(final long position, final List<MeasurementSet> measurementSets) {
+            final long oldest = Math.max(0, m_next - m_buffer.length);
+            if (position < oldest) {
+                m_droppedMeasurementSets.add(oldest - position);
+            }
+            for (long i = Math.max(position, oldest); i < m_next; i++) {
+                measurementSets.add(m_buffer[(int) (i % m_buffer.length)]);
+            }
+            return m_next;
+        }
+    }
+
+    /**
+     * The position of a subscription in each of the streams it reads from.
+     */
+    private class Subscription {
+        private final String m_id;
+        private final Map<CollectionStream, Long> m_positions = new ConcurrentHashMap<>();
+        private volatile long m_lastAccess = System.currentTimeMillis();
+        private volatile Listener m_listener;
+        private final AtomicInteger m_pendingPushes = new AtomicInteger();
+
+        private Subscription(final String id) {
+            m_id = id;
+        }
+
+        private synchronized List<MeasurementSet> read() {
+            m_lastAccess = System.currentTimeMillis();
+            final List<MeasurementSet> measurementSets = new ArrayList<>();
+            for (final Map.Entry<CollectionStream, Long> entry : m_positions.entrySet()) {
+                entry.setValue(entry.getKey().read(entry.getValue(), measurementSets));
+            }
+            return measurementSets;
+        }
+
+        /**
+         * Hands the new measurement sets to the listener, if any. Pushes are coalesced, so that a
+         * slow listener receives the buffered measurement sets in a single call instead of
+         * delaying the collection.
+         */
+        private void push() {
+            if (m_listener == null || m_fanOut == null || m_pendingPushes.getAndIncrement() > 0) {
+                return;
+            }
+            m_fanOut.execute(() -> {
+                do {
+                    final Listener listener = m_listener;
+                    if (listener == null) {
+                        m_pendingPushes.set(0);
+                        return;
+                    }
+                    final List<MeasurementSet> measurementSets = read();
+                    if (!measurementSets.isEmpty() && !listener.onMeasurementSets(measurementSets)) {
+                        LOG.debug("Listener of subscription {} is gone, falling back to polling.", m_id);
+                        m_listener = null;
+                    }
+                } while (m_pendingPushes.decrementAndGet() > 0);
+            });
+        }
+    }
+
+    public void init() {
+        final AtomicInteger schedulerThreads = new AtomicInteger();
+        m_scheduler = Executors.newScheduledThreadPool(m_collectorThreads, r -> {
+            final Thread thread = new Thread(r, "NrtCollectionStreams-" + schedulerThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Pushes are coalesced per subscription, so at most one task per subscription is queued
+        final AtomicInteger fanOutThreads = new AtomicInteger();
+        final ThreadPoolExecutor fanOut = new ThreadPoolExecutor(m_collectorThreads, m_collectorThreads,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            final Thread thread = new Thread(r, "NrtCollectionStreams-FanOut-" + fanOutThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        fanOut.allowCoreThreadTimeOut(true);
+        m_fanOut = fanOut;
+        final long housekeepingInterval = Math.max(1000, m_subscriptionTimeout / 4);
+        m_scheduler.scheduleWithFixedDelay(this::removeExpiredSubscriptions, housekeepingInterval, housekeepingInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public void destroy() {
+        if (m_scheduler != null) {
+            m_scheduler.shutdownNow();
+        }
+        if (m_fanOut != null) {
+            m_fanOut.shutdownNow();
+        }
+    }
+
+    /**
+     * @param interval the requested collection interval in milliseconds
+     * @return the interval the collection will be performed at
+     */
+    public long getEffectiveInterval(final long interval) {
+        return Math.max(m_minimumInterval, interval);
+    }
+
+    /**
+     * Subscribes to the given collection jobs. Jobs with the same id as an already collected
+     * job join the existing stream instead of being collected again. Subscribing again with
+     * the same id replaces the jobs of the subscription, i.e. to change the interval, and keeps
+     * its listener.
+     *
+     * @param subscriptionId the id used to read the measurement sets
+     * @param jobs the jobs to collect
+     * @param interval the collection interval in milliseconds
+     */
+    public synchronized void subscribe(final String subscriptionId, final Collection<CollectionJob> jobs, final long interval) {
+        final Subscription previous = m_subscriptions.get(subscriptionId);
+        final Listener listener = previous != null ? previous.m_listener : null;
+        unsubscribe(subscriptionId);
+
+        final long effectiveInterval = getEffectiveInterval(interval);
+        final Subscription subscription = new Subscription(subscriptionId);
+        subscription.m_listener = listener;
+        for (final CollectionJob job : jobs) {
+            final String streamId = job.getId();
+            CollectionStream stream = m_streams.get(streamId);
+            if (stream == null) {
+                stream = new CollectionStream(job, effectiveInterval);
+                m_streams.put(streamId, stream);
+                if (m_scheduler != null) {
+                    stream.start(m_scheduler);
+                }
+                LOG.debug("Started stream {} for subscription {}", streamId, subscriptionId);
+            } else {
+                m_joinedStreams.increment();
+                LOG.debug("Subscription {} joined stream {}", subscriptionId, streamId);
+            }
+            subscription.m_positions.put(stream, stream.getNext());
+            stream.m_subscribers.add(subscription);
+        }
+        m_subscriptions.put(subscriptionId, subscription);
+    }
+
+    public synchronized void unsubscribe(final String subscriptionId) {
+        final Subscription subscription = m_subscriptions.remove(subscriptionId);
+        if (subscription == null) {
+            return;
+        }
+        subscription.m_listener = null;
+        for (final CollectionStream stream : subscription.m_positions.keySet()) {
+            stream.m_subscribers.remove(subscription);
+            if (stream.m_subscribers.isEmpty()) {
+                stream.stop();
+                m_streams.values().remove(stream);
+                LOG.debug("Stopped stream for job {}", stream.m_job.getId());
+            }
+        }
+    }
+
+    /**
+     * @return true if the subscription exists
+     */
+    public boolean isSubscribed(final String subscriptionId) {
+        return m_subscriptions.containsKey(subscriptionId);
+    }
+
+    /**
+     * Returns the measurement sets collected since the last read of the subscription.
+     *
+     * @return the measurement sets, or an empty list if the subscription does not exist
+     */
+    public List<MeasurementSet> read(final String subscriptionId) {
+        final Subscription subscription = m_subscriptions.get(subscriptionId);
+        return subscription != null ? subscription.read() : Collections.emptyList();
+    }
+
+    /**
+     * Pushes the measurement sets of the subscription to the listener as soon as they are collected.
+     *
+     * @return false if the subscription does not exist
+     */
+    public boolean setListener(final String subscriptionId, final Listener listener) {
+        final Subscription subscription = m_subscriptions.get(subscriptionId);
+        if (subscription == null) {
+            return false;
+        }
+        subscription.m_lastAccess = System.currentTimeMillis();
+        subscription.m_listener = listener;
+        return true;
+    }
+
+    public void removeListener(final String subscriptionId) {
+        final Subscription subscription = m_subscriptions.get(subscriptionId);
+        if (subscription != null) {
+            subscription.m_listener = null;
+        }
+    }
+
+    protected synchronized void removeExpiredSubscriptions() {
+        final long now = System.currentTimeMillis();
+        for (final Subscription subscription : new ArrayList<>(m_subscriptions.values())) {
+            if (now - subscription.m_lastAccess > m_subscriptionTimeout) {
+                LOG.debug("Subscription {} timed out.", subscription.m_id);
+                unsubscribe(subscription.m_id);
+            }
+        }
+    }
+
+    /**
+     * Collects all streams once, regardless of their interval.
+     */
+    protected void collectAll() {
+        m_streams.values().forEach(CollectionStream::collect);
+    }
+
+    @Override
+    public long getIssuedCollections() {
+        return m_issuedCollections.sum();
+    }
+
+    @Override
+    public long getDeduplicatedCollections() {
+        return m_deduplicatedCollections.sum();
+    }
+
+    @Override
+    public long getJoinedStreams() {
+        return m_joinedStreams.sum();
+    }
+
+    @Override
+    public long getDroppedMeasurementSets() {
+        return m_droppedMeasurementSets.sum();
+    }
+
+    @Override
+    public int getActiveStreams() {
+        return m_streams.size();
+    }
+
+    @Override
+    public int getActiveSubscriptions() {
+        return m_subscriptions.size();
+    }
+
+    public void setNrtBroker(final NrtBroker nrtBroker) {
+        m_nrtBroker = Objects.requireNonNull(nrtBroker);
+    }
+
+    public void setBufferSize(final int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be positive");
+        }
+        m_bufferSize = bufferSize;
+    }
+
+    public void setSubscriptionTimeout(final long subscriptionTimeout) {
+        m_subscriptionTimeout = subscriptionTimeout;
+    }
+
+    public void setMinimumInterval(final long minimumInterval) {
+        m_minimumInterval = minimumInterval;
+    }
+
+    public void setCollectorThreads(final int collectorThreads) {
+        m_collectorThreads = collectorThreads;
+    }
+}
@@ -21,17 +21,20 @@
  */
 package org.opennms.nrtg.web.internal;
 
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
+import java.util.UUID;
 
 import javax.servlet.http.HttpSession;
 
@@ -70,6 +73,32 @@ public class NrtController {
     private ResourceStorageDao m_resourceStorageDao;
     private SnmpAgentConfigFactory m_snmpAgentConfigFactory;
     private NrtBroker m_nrtBroker;
+    private NrtCollectionStreams m_collectionStreams;
+    private long m_defaultInterval = 10000;
+
+    /**
+     * The collection jobs of a graph, kept in the session to subscribe again after the
+     * subscription timed out.
+     */
+    protected static class NrtCollectionTask implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final List<CollectionJob> m_collectionJobs;
+        private final long m_interval;
+
+        public NrtCollectionTask(List<CollectionJob> collectionJobs, long interval) {
+            m_collectionJobs = collectionJobs;
+            m_interval = interval;
+        }
+
+        public List<CollectionJob> getCollectionJobs() {
+            return m_collectionJobs;
+        }
+
+        public long getInterval() {
+            return m_interval;
+        }
+    }
 
     protected static class MetricTuple {
 
@@ -107,6 +136,16 @@ public class NrtController {
     }
 
     public ModelAndView nrtStart(ResourceId resourceId, String report, HttpSession httpSession) {
+        return nrtStart(resourceId, report, null, httpSession);
+    }
+
+    /**
+     * Subscribes to the collection jobs of the report. Graphs of the same report and resource
+     * using the same interval share a single collection.
+     *
+     * @param interval the collection interval in milliseconds, or null to use the default interval
+     */
+    public ModelAndView nrtStart(ResourceId resourceId, String report, Long interval, HttpSession httpSession) {
 
         assert (resourceId != null);
         logger.debug("resourceId: '{}'", resourceId);
@@ -121,13 +160,12 @@ public class NrtController {
         String nrtCollectionTaskId = String.format("NrtCollectionTaskId_%d_%d",
                 System.currentTimeMillis(), new Random().nextInt());
 
-        List<CollectionJob> collectionJobs = createCollectionJobs(reportResource, prefabGraph, nrtCollectionTaskId);
-        for (CollectionJob collectionJob : collectionJobs) {
-            m_nrtBroker.publishCollectionJob(collectionJob);
-            final var jobMap = getCollectionJobMap(httpSession, true);
-            if (jobMap != null) {
-                jobMap.put(nrtCollectionTaskId, collectionJob);
-            }
+        final long effectiveInterval = m_collectionStreams.getEffectiveInterval(interval != null ? interval : m_defaultInterval);
+        List<CollectionJob> collectionJobs = createCollectionJobs(reportResource, prefabGraph, effectiveInterval);
+        m_collectionStreams.subscribe(nrtCollectionTaskId, collectionJobs, effectiveInterval);
+        final var taskMap = getCollectionTaskMap(httpSession, true);
+        if (taskMap != null) {
+            taskMap.put(nrtCollectionTaskId, new NrtCollectionTask(collectionJobs, effectiveInterval));
         }
 
         ModelAndView modelAndView = new ModelAndView("nrt/realtime.json");
@@ -150,29 +188,82 @@ public class NrtController {
     }
 
     /**
-     * Will be called by the JS-Graphing-Frontend as http/GET Publishes the CollectionJob corresponding to the
-     * nrtCollectionTaskId.
+     * Will be called by the JS-Graphing-Frontend as http/GET. The collection jobs are collected by their shared
+     * streams, so this only subscribes to the CollectionJobs corresponding to the nrtCollectionTaskId again if
+     * the subscription timed out.
      *
      * @param nrtCollectionTaskId
      * @param httpSession
+     * @return true if the nrtCollectionTaskId is subscribed
      */
-    public void nrtCollectionJobTrigger(String nrtCollectionTaskId, HttpSession httpSession) {
-        logger.debug("Republish CollectionJobTrigger for '{}'", nrtCollectionTaskId);
+    public boolean nrtCollectionJobTrigger(String nrtCollectionTaskId, HttpSession httpSession) {
+        if (m_collectionStreams.isSubscribed(nrtCollectionTaskId)) {
+            return true;
+        }
+        logger.debug("Resubscribe CollectionJobs for '{}'", nrtCollectionTaskId);
 
-        Map<String, CollectionJob> nrtCollectionTasks = getCollectionJobMap(httpSession, false);
+        Map<String, NrtCollectionTask> nrtCollectionTasks = getCollectionTaskMap(httpSession, false);
 
         if (nrtCollectionTasks != null) {
-            CollectionJob collectionJob = nrtCollectionTasks.get(nrtCollectionTaskId);
-            logger.debug("CollectionJob is '{}'", collectionJob);
-            if (collectionJob != null) {
-                m_nrtBroker.publishCollectionJob(collectionJob);
-                logger.debug("collectionJob was sent!");
+            NrtCollectionTask nrtCollectionTask = nrtCollectionTasks.get(nrtCollectionTaskId);
+            if (nrtCollectionTask != null) {
+                m_collectionStreams.subscribe(nrtCollectionTaskId, nrtCollectionTask.getCollectionJobs(), nrtCollectionTask.getInterval());
+                return true;
             } else {
-                logger.debug("collectionJob for collectionTask not found in session '{}'", nrtCollectionTaskId);
+                logger.debug("collectionJobs for collectionTask not found in session '{}'", nrtCollectionTaskId);
             }
         } else {
             logger.debug("No CollectionTasks map in session found.");
         }
+        return false;
+    }
+
+    /**
+     * Changes the collection interval of the nrtCollectionTaskId, i.e. when the interval of the graph was changed.
+     *
+     * @param interval the collection interval in milliseconds
+     * @return false if the nrtCollectionTaskId is unknown
+     */
+    public boolean nrtUpdateInterval(String nrtCollectionTaskId, long interval, HttpSession httpSession) {
+        final Map<String, NrtCollectionTask> nrtCollectionTasks = getCollectionTaskMap(httpSession, false);
+        final NrtCollectionTask nrtCollectionTask = nrtCollectionTasks != null ? nrtCollectionTasks.get(nrtCollectionTaskId) : null;
+        if (nrtCollectionTask == null) {
+            logger.debug("collectionJobs for collectionTask not found in session '{}'", nrtCollectionTaskId);
+            return false;
+        }
+
+        final long effectiveInterval = m_collectionStreams.getEffectiveInterval(interval);
+        if (effectiveInterval != nrtCollectionTask.getInterval()) {
+            final List<CollectionJob> collectionJobs = new ArrayList<>();
+            for (final CollectionJob collectionJob : nrtCollectionTask.getCollectionJobs()) {
+                collectionJobs.add(withInterval(collectionJob, effectiveInterval));
+            }
+            m_collectionStreams.subscribe(nrtCollectionTaskId, collectionJobs, effectiveInterval);
+            nrtCollectionTasks.put(nrtCollectionTaskId, new NrtCollectionTask(collectionJobs, effectiveInterval));
+        }
+        return true;
+    }
+
+    /**
+     * Stops collecting the CollectionJobs of the nrtCollectionTaskId, i.e. when the graph was paused. The
+     * nrtCollectionTaskId is subscribed again on the next request of the graph.
+     */
+    public void nrtStop(String nrtCollectionTaskId) {
+        m_collectionStreams.unsubscribe(nrtCollectionTaskId);
+    }
+
+    /**
+     * Pushes the MeasurementSets of the nrtCollectionTaskId to the listener as soon as they are collected.
+     *
+     * @return false if the nrtCollectionTaskId is unknown
+     */
+    public boolean addMeasurementSetListener(String nrtCollectionTaskId, HttpSession httpSession, NrtCollectionStreams.Listener listener) {
+        return nrtCollectionJobTrigger(nrtCollectionTaskId, httpSession)
+                && m_collectionStreams.setListener(nrtCollectionTaskId, listener);
+    }
+
+    public void removeMeasurementSetListener(String nrtCollectionTaskId) {
+        m_collectionStreams.removeListener(nrtCollectionTaskId);
     }
 
     /**
@@ -183,8 +274,21 @@ public class NrtController {
      * @return Json Representation of MeasurementeSets for the given nrtCollectionTaskId
      */
     public String getMeasurementSetsForDestination(String nrtCollectionTaskId) {
-        List<MeasurementSet> measurementSets = m_nrtBroker.receiveMeasurementSets(nrtCollectionTaskId);
+        return toJson(m_collectionStreams.read(nrtCollectionTaskId));
+    }
 
+    /**
+     * @return Json Representation of the statistics of the shared collection streams
+     */
+    public String getStatisticsAsJson() {
+        return String.format("{\"issued_collections\":%d, \"deduplicated_collections\":%d, \"joined_streams\":%d, "
+                        + "\"dropped_measurement_sets\":%d, \"active_streams\":%d, \"active_subscriptions\":%d}",
+                m_collectionStreams.getIssuedCollections(), m_collectionStreams.getDeduplicatedCollections(),
+                m_collectionStreams.getJoinedStreams(), m_collectionStreams.getDroppedMeasurementSets(),
+                m_collectionStreams.getActiveStreams(), m_collectionStreams.getActiveSubscriptions());
+    }
+
+    public static String toJson(List<MeasurementSet> measurementSets) {
         final StringBuilder buffer = new StringBuilder();
 
         for (MeasurementSet measurementSet : measurementSets) {
@@ -198,26 +302,26 @@ public class NrtController {
     }
 
     /**
-     * Provides all CollectionJobs resolved by nrtCollectionTaskId from the Session
+     * Provides all NrtCollectionTasks resolved by nrtCollectionTaskId from the Session
      *
      * @param httpSession
      * @param create
-     * @return Map of nrtCollectionTaskId to CollectionJob
+     * @return Map of nrtCollectionTaskId to NrtCollectionTask
      */
     @SuppressWarnings("unchecked") // Since this is caused by the servlet API
-    private Map<String, CollectionJob> getCollectionJobMap(HttpSession httpSession, boolean create) {
-        if (create && httpSession.getAttribute("NrtCollectionTasks") == null) {
-            httpSession.setAttribute("NrtCollectionTasks", new HashMap<String, CollectionJob>());
+    private Map<String, NrtCollectionTask> getCollectionTaskMap(HttpSession httpSession, boolean create) {
+        if (create && httpSession.getAttribute("NrtCollectionStreamTasks") == null) {
+            httpSession.setAttribute("NrtCollectionStreamTasks", new HashMap<String, NrtCollectionTask>());
         }
         try {
-            return (Map<String, CollectionJob>) httpSession.getAttribute("NrtCollectionTasks");
+            return (Map<String, NrtCollectionTask>) httpSession.getAttribute("NrtCollectionStreamTasks");
         } catch (Exception e) {
             logger.error("Session contains incompatible datastructure for NrtCollectionTasks attribute '{}'", e);
             return null;
         }
     }
 
-    private List<CollectionJob> createCollectionJobs(OnmsResource reportResource, PrefabGraph prefabGraph, String nrtCollectionTaskId) {
+    private List<CollectionJob> createCollectionJobs(OnmsResource reportResource, PrefabGraph prefabGraph, long interval) {
         List<CollectionJob> collectionJobs = new ArrayList<CollectionJob>();
         OnmsResource nodeResource = reportResource.getParent();
         OnmsNode node = m_nodeDao.get(nodeResource.getName());
@@ -231,41 +335,83 @@ public class NrtController {
 
         Map<String, List<MetricTuple>> metricsByProtocol = getMetricIdsByProtocol(rrdGraphAttributesMetaData);
 
-        //Destinations for MeasurementSets
-        Set<String> resultDestinations = new HashSet<String>();
-        resultDestinations.add(nrtCollectionTaskId);
-        //resultDestinations.add("NrtPersistMe");
-
         for (final Map.Entry<String,List<MetricTuple>> entry : metricsByProtocol.entrySet()) {
             final String protocol = entry.getKey();
             final List<MetricTuple> tuples = entry.getValue();
 
+            //I know....
+            if (!protocol.equals("SNMP") && !protocol.equals("TCA")) {
+                logger.error("Protocol '{}' is not supported yet. CollectionJob will be ignorred.", protocol);
+                continue;
+            }
+
             final CollectionJob collectionJob = new DefaultCollectionJob();
             collectionJob.setService(protocol);
             collectionJob.setNodeId(nodeId);
             collectionJob.setCreationTimestamp(createTimestamp);
 
+            OnmsMonitoringLocation location = node.getLocation();
+            String locationName = (location == null) ? null : location.getLocationName();
+            final SnmpAgentConfig snmpAgentConfig = m_snmpAgentConfigFactory.getAgentConfig(node.getPrimaryInterface().getIpAddress(), locationName);
+            collectionJob.setProtocolConfiguration(snmpAgentConfig.toProtocolConfigString());
+            collectionJob.setNetInterface(node.getPrimaryInterface().getIpAddress().getHostAddress());
+
+            // Identical jobs share their id, which is also the destination of their MeasurementSets
+            collectionJob.setId(getCollectionJobId(collectionJob, tuples, interval));
+            final Set<String> resultDestinations = Collections.singleton(collectionJob.getId());
+
             for (final MetricTuple metricTuple : tuples) {
                 collectionJob.addMetric(metricTuple.getMetricId(), resultDestinations, metricTuple.getOnmsLogicMetricId());
             }
-
-            //I know....
-            if (protocol.equals("SNMP") || protocol.equals("TCA")) {
-                collectionJob.setNetInterface(protocol);
-                OnmsMonitoringLocation location = node.getLocation();
-                String locationName = (location == null) ? null : location.getLocationName();
-                final SnmpAgentConfig snmpAgentConfig = m_snmpAgentConfigFactory.getAgentConfig(node.getPrimaryInterface().getIpAddress(), locationName);
-                collectionJob.setProtocolConfiguration(snmpAgentConfig.toProtocolConfigString());
-                collectionJob.setNetInterface(node.getPrimaryInterface().getIpAddress().getHostAddress());
-                collectionJobs.add(collectionJob);
-            } else {
-                logger.error("Protocol '{}' is not supported yet. CollectionJob will be ignorred.", protocol);
-            }
+            collectionJobs.add(collectionJob);
         }
 
         return collectionJobs;
     }
 
+    /**
+     * Copies the CollectionJob for another interval. The copy is identified and collected separately.
+     */
+    protected static CollectionJob withInterval(CollectionJob collectionJob, long interval) {
+        final CollectionJob copy = new DefaultCollectionJob();
+        copy.setService(collectionJob.getService());
+        copy.setNodeId(collectionJob.getNodeId());
+        copy.setCreationTimestamp(collectionJob.getCreationTimestamp());
+        copy.setProtocolConfiguration(collectionJob.getProtocolConfiguration());
+        copy.setNetInterface(collectionJob.getNetInterface());
+
+        final List<MetricTuple> tuples = new ArrayList<>();
+        for (final String metricId : collectionJob.getAllMetrics()) {
+            tuples.add(new MetricTuple(metricId, collectionJob.getOnmsLogicMetricId(metricId)));
+        }
+        copy.setId(getCollectionJobId(copy, tuples, interval));
+        final Set<String> resultDestinations = Collections.singleton(copy.getId());
+        for (final MetricTuple metricTuple : tuples) {
+            copy.addMetric(metricTuple.getMetricId(), resultDestinations, metricTuple.getOnmsLogicMetricId());
+        }
+        return copy;
+    }
+
+    /**
+     * Derives the id of a CollectionJob from everything that is collected, so that identical jobs share their id.
+     */
+    protected static String getCollectionJobId(CollectionJob collectionJob, List<MetricTuple> tuples, long interval) {
+        final StringBuilder key = new StringBuilder()
+                .append(collectionJob.getService()).append('|')
+                .append(collectionJob.getNodeId()).append('|')
+                .append(collectionJob.getNetInterface()).append('|')
+                .append(collectionJob.getProtocolConfiguration()).append('|')
+                .append(interval);
+
+        final List<MetricTuple> sortedTuples = new ArrayList<>(tuples);
+        sortedTuples.sort(Comparator.comparing(MetricTuple::getMetricId).thenComparing(MetricTuple::getOnmsLogicMetricId));
+        for (final MetricTuple metricTuple : sortedTuples) {
+            key.append('|').append(metricTuple.getMetricId()).append('=').append(metricTuple.getOnmsLogicMetricId());
+        }
+
+        return "NrtCollectionStream_" + UUID.nameUUIDFromBytes(key.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
     public Set<RrdGraphAttribute> getRequiredRrdGraphAttributes(OnmsResource reportResource, PrefabGraph prefabGraph) {
         Map<String, RrdGraphAttribute> available = reportResource.getRrdGraphAttributes();
         Set<RrdGraphAttribute> reqAttrs = new LinkedHashSet<RrdGraphAttribute>();
@@ -424,6 +570,18 @@ public class NrtController {
         this.m_nrtBroker = nrtBroker;
     }
 
+    public NrtCollectionStreams getCollectionStreams() {
+        return m_collectionStreams;
+    }
+
+    public void setCollectionStreams(NrtCollectionStreams collectionStreams) {
+        m_collectionStreams = collectionStreams;
+    }
+
+    public void setDefaultInterval(long defaultInterval) {
+        m_defaultInterval = defaultInterval;
+    }
+
     public ResourceStorageDao getResourceStorageDao() {
         return m_resourceStorageDao;
     }
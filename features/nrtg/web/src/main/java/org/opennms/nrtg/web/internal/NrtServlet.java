@@ -25,8 +25,12 @@ package org.opennms.nrtg.web.internal;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Map.Entry;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -40,6 +44,11 @@ public class NrtServlet extends HttpServlet {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Streams are closed after this time, the browser reconnects on its own.
+     */
+    private static final long STREAM_TIMEOUT = 300000;
+
     private NrtController m_controller;
 
     public void setController(NrtController controller) {
@@ -50,6 +59,32 @@ public class NrtServlet extends HttpServlet {
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
 
         HttpSession httpSession = req.getSession(true);
+
+        final Long interval;
+        try {
+            interval = req.getParameter("interval") != null ? Long.valueOf(req.getParameter("interval")) : null;
+        } catch (NumberFormatException e) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid interval: " + req.getParameter("interval"));
+            return;
+        }
+
+        if (req.getParameter("nrtCollectionTaskId") != null && "true".equals(req.getParameter("unsubscribe"))) {
+            m_controller.nrtStop(req.getParameter("nrtCollectionTaskId"));
+            resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+            return;
+        }
+
+        if (req.getParameter("nrtCollectionTaskId") != null && interval != null
+                && !m_controller.nrtUpdateInterval(req.getParameter("nrtCollectionTaskId"), interval, httpSession)) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        if (req.getParameter("nrtCollectionTaskId") != null && "true".equals(req.getParameter("stream"))) {
+            streamMeasurementSets(req, resp, req.getParameter("nrtCollectionTaskId"), httpSession);
+            return;
+        }
+
         resp.setContentType(MediaType.JSON_UTF_8.toString());
 
         if (req.getParameter("nrtCollectionTaskId") != null) {
@@ -58,8 +93,10 @@ public class NrtServlet extends HttpServlet {
             if ("true".equals(req.getParameter("poll"))) {
                 resp.getOutputStream().println(m_controller.getMeasurementSetsForDestination(req.getParameter("nrtCollectionTaskId")));
             }
+        } else if ("true".equals(req.getParameter("stats"))) {
+            resp.getOutputStream().println(m_controller.getStatisticsAsJson());
         } else if (req.getParameter("resourceId") != null && req.getParameter("report") != null) {
-            ModelAndView modelAndView = m_controller.nrtStart(ResourceId.fromString(req.getParameter("resourceId")), req.getParameter("report"), httpSession);
+            ModelAndView modelAndView = m_controller.nrtStart(ResourceId.fromString(req.getParameter("resourceId")), req.getParameter("report"), interval, httpSession);
 
             String template = getTemplateAsString(modelAndView.getViewName() + ".template");
 
@@ -72,6 +109,61 @@ public class NrtServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Pushes the MeasurementSets of the collection task to the browser as server-sent events.
+     */
+    private void streamMeasurementSets(HttpServletRequest req, HttpServletResponse resp, String nrtCollectionTaskId, HttpSession httpSession) throws IOException {
+        if (!m_controller.nrtCollectionJobTrigger(nrtCollectionTaskId, httpSession)) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        resp.setContentType("text/event-stream");
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resp.setHeader("Cache-Control", "no-cache");
+
+        final AsyncContext asyncContext = req.startAsync();
+        asyncContext.setTimeout(STREAM_TIMEOUT);
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                m_controller.removeMeasurementSetListener(nrtCollectionTaskId);
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                asyncContext.complete();
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                asyncContext.complete();
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+
+        // Send the headers right away, so that the browser considers the stream open
+        resp.flushBuffer();
+
+        final boolean subscribed = m_controller.addMeasurementSetListener(nrtCollectionTaskId, httpSession, measurementSets -> {
+            try {
+                final String event = "data: " + NrtController.toJson(measurementSets) + "\n\n";
+                asyncContext.getResponse().getOutputStream().write(event.getBytes(StandardCharsets.UTF_8));
+                asyncContext.getResponse().flushBuffer();
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                return false;
+            }
+        });
+
+        if (!subscribed) {
+            asyncContext.complete();
+        }
+    }
+
     public String getTemplateAsString(String templateName) throws IOException {
 
         BufferedReader r = null;
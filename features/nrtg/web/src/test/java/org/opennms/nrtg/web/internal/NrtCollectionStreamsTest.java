@@ -0,0 +1,175 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.nrtg.web.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.nrtg.api.NrtBroker;
+import org.opennms.nrtg.api.model.CollectionJob;
+import org.opennms.nrtg.api.model.DefaultCollectionJob;
+import org.opennms.nrtg.api.model.LightweightMeasurementSet;
+import org.opennms.nrtg.api.model.MeasurementSet;
+
+public class NrtCollectionStreamsTest {
+
+    /**
+     * Answers every collection job with a single measurement set for its destination.
+     */
+    private static class MockNrtBroker implements NrtBroker {
+        private final Map<String, List<MeasurementSet>> m_measurementSets = new HashMap<>();
+        private int m_published = 0;
+
+        @Override
+        public void publishCollectionJob(CollectionJob collectionJob) {
+            m_published++;
+            m_measurementSets.computeIfAbsent(collectionJob.getId(), k -> new ArrayList<>())
+                    .add(new LightweightMeasurementSet(collectionJob.getNodeId(), collectionJob.getService(), collectionJob.getNetInterface(), new Date()));
+        }
+
+        @Override
+        public List<MeasurementSet> receiveMeasurementSets(String destination) {
+            final List<MeasurementSet> measurementSets = m_measurementSets.remove(destination);
+            return measurementSets != null ? measurementSets : Collections.emptyList();
+        }
+    }
+
+    private MockNrtBroker m_broker;
+
+    private NrtCollectionStreams m_streams;
+
+    @Before
+    public void setUp() {
+        m_broker = new MockNrtBroker();
+        m_streams = new NrtCollectionStreams();
+        m_streams.setNrtBroker(m_broker);
+        m_streams.setBufferSize(4);
+    }
+
+    @Test
+    public void identicalJobsShareACollection() {
+        m_streams.subscribe("a", Collections.singletonList(createJob("job1")), 1000);
+        m_streams.subscribe("b", Collections.singletonList(createJob("job1")), 1000);
+        m_streams.subscribe("c", Collections.singletonList(createJob("job2")), 1000);
+        assertEquals(2, m_streams.getActiveStreams());
+        assertEquals(1, m_streams.getJoinedStreams());
+
+        m_streams.collectAll();
+        assertEquals(2, m_broker.m_published);
+        assertEquals(2, m_streams.getIssuedCollections());
+        assertEquals(1, m_streams.getDeduplicatedCollections());
+
+        // Every subscription receives the measurement sets once
+        assertEquals(1, m_streams.read("a").size());
+        assertEquals(1, m_streams.read("b").size());
+        assertEquals(1, m_streams.read("c").size());
+        assertEquals(0, m_streams.read("a").size());
+    }
+
+    @Test
+    public void slowSubscriptionsOnlyReceiveTheBufferedMeasurementSets() {
+        m_streams.subscribe("a", Collections.singletonList(createJob("job1")), 1000);
+        for (int i = 0; i < 6; i++) {
+            m_streams.collectAll();
+        }
+        assertEquals(4, m_streams.read("a").size());
+        assertEquals(2, m_streams.getDroppedMeasurementSets());
+    }
+
+    @Test
+    public void streamsStopWithoutSubscriptions() {
+        m_streams.subscribe("a", Collections.singletonList(createJob("job1")), 1000);
+        m_streams.subscribe("b", Collections.singletonList(createJob("job1")), 1000);
+
+        m_streams.unsubscribe("a");
+        assertEquals(1, m_streams.getActiveStreams());
+        m_streams.unsubscribe("b");
+        assertEquals(0, m_streams.getActiveStreams());
+        assertFalse(m_streams.isSubscribed("b"));
+
+        m_streams.collectAll();
+        assertEquals(0, m_broker.m_published);
+    }
+
+    @Test
+    public void resubscribingKeepsTheListener() throws Exception {
+        final CountDownLatch pushed = new CountDownLatch(1);
+        m_streams.subscribe("a", Collections.singletonList(createJob("job1")), 60000);
+        assertTrue(m_streams.setListener("a", measurementSets -> {
+            pushed.countDown();
+            return true;
+        }));
+
+        // Only streams started from now on are collected
+        m_streams.init();
+        try {
+            // Change the interval of the subscription
+            m_streams.subscribe("a", Collections.singletonList(createJob("job2")), 30000);
+            assertEquals(1, m_streams.getActiveStreams());
+
+            assertTrue(pushed.await(10, TimeUnit.SECONDS));
+        } finally {
+            m_streams.destroy();
+        }
+    }
+
+    @Test
+    public void expiredSubscriptionsAreRemoved() throws Exception {
+        m_streams.setSubscriptionTimeout(0);
+        m_streams.subscribe("a", Collections.singletonList(createJob("job1")), 1000);
+        assertTrue(m_streams.isSubscribed("a"));
+
+        Thread.sleep(5);
+        m_streams.removeExpiredSubscriptions();
+        assertFalse(m_streams.isSubscribed("a"));
+        assertEquals(0, m_streams.getActiveStreams());
+    }
+
+    @Test
+    public void intervalsAreLimited() {
+        m_streams.setMinimumInterval(250);
+        assertEquals(250, m_streams.getEffectiveInterval(10));
+        assertEquals(5000, m_streams.getEffectiveInterval(5000));
+    }
+
+    private static CollectionJob createJob(String id) {
+        final CollectionJob collectionJob = new DefaultCollectionJob();
+        collectionJob.setId(id);
+        collectionJob.setService("SNMP");
+        collectionJob.setNodeId(1);
+        collectionJob.setNetInterface("127.0.0.1");
+        collectionJob.addMetric(".1.3.6.1.2.1.1.3.0", Collections.singleton(id), "sysUpTime");
+        return collectionJob;
+    }
+}
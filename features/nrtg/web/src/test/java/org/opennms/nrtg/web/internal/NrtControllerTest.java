@@ -21,12 +21,16 @@
  */
 package org.opennms.nrtg.web.internal;
 
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.junit.Test;
 import org.junit.Before;
 import static org.junit.Assert.*;
+import org.opennms.nrtg.api.model.CollectionJob;
+import org.opennms.nrtg.api.model.DefaultCollectionJob;
 import org.opennms.nrtg.web.internal.NrtController.MetricTuple;
 
 /**
@@ -66,4 +70,26 @@ public class NrtControllerTest {
         List<MetricTuple> tcaMetrics = metricIdsByProtocol.get("TCA");
         assertEquals(".1.3.6.1.4.1.27091.3.1.6.1.2.171.19.37.60_inboundJitter", tcaMetrics.get(0).getMetricId());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void withIntervalCopiesTheJob() {
+        CollectionJob collectionJob = new DefaultCollectionJob();
+        collectionJob.setService("SNMP");
+        collectionJob.setNodeId(1);
+        collectionJob.setCreationTimestamp(new Date());
+        collectionJob.setProtocolConfiguration("snmpConfig");
+        collectionJob.setNetInterface("SNMP");
+        List<MetricTuple> tuples = Collections.singletonList(new MetricTuple(".1.3.6.1.2.1.5.7.0", "icmpInRedirects"));
+        collectionJob.setId(NrtController.getCollectionJobId(collectionJob, tuples, 1000));
+        collectionJob.addMetric(".1.3.6.1.2.1.5.7.0", Collections.singleton(collectionJob.getId()), "icmpInRedirects");
+
+        CollectionJob copy = NrtController.withInterval(collectionJob, 10000);
+
+        assertEquals(NrtController.getCollectionJobId(collectionJob, tuples, 10000), copy.getId());
+        assertNotEquals(collectionJob.getId(), copy.getId());
+        assertEquals(collectionJob.getAllMetrics(), copy.getAllMetrics());
+        assertEquals("icmpInRedirects", copy.getOnmsLogicMetricId(".1.3.6.1.2.1.5.7.0"));
+        assertEquals(collectionJob.getProtocolConfiguration(), copy.getProtocolConfiguration());
+        assertEquals(collectionJob.getNodeId(), copy.getNodeId());
+    }
+}
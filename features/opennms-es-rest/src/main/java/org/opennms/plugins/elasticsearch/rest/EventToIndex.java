@@ -21,17 +21,12 @@
  */
 package org.opennms.plugins.elasticsearch.rest;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.xml.bind.DatatypeConverter;
@@ -42,9 +37,9 @@ import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 import org.opennms.features.jest.client.ConnectionPoolShutdownException;
 import org.opennms.features.jest.client.JestClientWithCircuitBreaker;
-import org.opennms.features.jest.client.bulk.BulkException;
-import org.opennms.features.jest.client.bulk.BulkRequest;
-import org.opennms.features.jest.client.bulk.BulkWrapper;
+import org.opennms.features.jest.client.bulk.BulkIndexer;
+import org.opennms.features.jest.client.bulk.BulkIndexerConfig;
+import org.opennms.features.jest.client.bulk.FailedItem;
 import org.opennms.features.jest.client.index.IndexStrategy;
 import org.opennms.features.jest.client.template.IndexSettings;
 import org.opennms.netmgt.model.OnmsSeverity;
@@ -54,13 +49,9 @@ import org.opennms.netmgt.xml.event.Parm;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 
-import io.searchbox.action.BulkableAction;
-import io.searchbox.core.Bulk;
-import io.searchbox.core.BulkResult;
-import io.searchbox.core.BulkResult.BulkResultItem;
-import io.searchbox.core.DocumentResult;
 import io.searchbox.core.Index;
 
 public class EventToIndex implements AutoCloseable {
@@ -91,15 +82,14 @@ public class EventToIndex implements AutoCloseable {
 
 	private IndexSettings indexSettings = new IndexSettings();
 
-	private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
-			threads,
-			threads,
-			0L, TimeUnit.MILLISECONDS,
-			new SynchronousQueue<>(true),
-			new ThreadFactoryBuilder().setNameFormat(EventToIndex.class.getSimpleName() + "-Thread-%d").build(),
-			// Throttle incoming tasks by running them on the caller thread
-			new ThreadPoolExecutor.CallerRunsPolicy()
-	);
+	private final BulkIndexerConfig bulkIndexerConfig = new BulkIndexerConfig();
+
+	private MetricRegistry metricRegistry;
+
+	/**
+	 * Created on the first forwarded events, once all properties are set.
+	 */
+	private BulkIndexer<Event> bulkIndexer;
 
 	public EventToIndex(JestClientWithCircuitBreaker jestClient, int bulkRetryCount) {
 		this.jestClient = Objects.requireNonNull(jestClient);
@@ -125,9 +115,6 @@ public class EventToIndex implements AutoCloseable {
 	public void setThreads(int threads) {
 		if (threads > 0) {
 			this.threads = threads;
-			// Resize the executor pool
-			executor.setCorePoolSize(threads);
-			executor.setMaximumPoolSize(threads);
 		} else {
 			setThreads(DEFAULT_NUMBER_OF_THREADS);
 		}
@@ -141,72 +128,127 @@ public class EventToIndex implements AutoCloseable {
 		this.groupOidParameters = groupOidParameters;
 	}
 
+	public void setBulkQueueCapacity(int bulkQueueCapacity) {
+		bulkIndexerConfig.setQueueCapacity(bulkQueueCapacity);
+	}
+
+	public void setMaxBatchSize(int maxBatchSize) {
+		bulkIndexerConfig.setMaxBatchSize(maxBatchSize);
+	}
+
+	public void setTargetBulkLatencyMs(long targetBulkLatencyMs) {
+		bulkIndexerConfig.setTargetLatencyMs(targetBulkLatencyMs);
+	}
+
+	public void setMetricRegistry(MetricRegistry metricRegistry) {
+		this.metricRegistry = metricRegistry;
+	}
+
 	@Override
-	public void close(){
-		// Shutdown the thread pool
-		executor.shutdown();
+	public void close() {
+		final BulkIndexer<Event> indexer;
+		synchronized (this) {
+			indexer = bulkIndexer;
+		}
+		if (indexer != null) {
+			try {
+				indexer.close();
+			} catch (InterruptedException e) {
+				LOG.warn("Interrupted while waiting for the pending events to be indexed.");
+				Thread.currentThread().interrupt();
+			}
+		}
 	}
 
+	/**
+	 * Queues the events for indexing. Blocks while the bulk workers are saturated.
+	 */
 	public void forwardEvents(final List<Event> events) {
-		CompletableFuture.completedFuture(events)
-				// Send the events to Elasticsearch
-				.thenAcceptAsync(this::sendEvents, executor)
-				.exceptionally(e -> {
-					LOG.error("Unexpected exception during task completion: " + e.getMessage(), e);
-					if (e.getCause() instanceof ConnectionPoolShutdownException) {
-						ExceptionUtils.handle(getClass(), (ConnectionPoolShutdownException) e.getCause(), events);
-					}
-					return null;
-				});
+		try {
+			getBulkIndexer().index(events);
+		} catch (InterruptedException e) {
+			LOG.warn("Interrupted while queuing {} events. These events are not forwarded.", events.size());
+			Thread.currentThread().interrupt();
+		} catch (IllegalStateException e) {
+			LOG.warn("Event forwarder is closed. Dropping {} events.", events.size());
+		}
 	}
 
-	private void sendEvents(final List<Event> allEvents) {
-		final BulkRequest<Event> request = new BulkRequest<>(jestClient, allEvents,
-				(events) -> new BulkWrapper(new Bulk.Builder().addAction(convertEventsToEsActions(events))),
-				bulkRetryCount);
-		try {
-			request.execute();
-		} catch (BulkException ex) {
-			final BulkResult result = ex.getBulkResult().getRawResult();
-			LOG.error("Bulk API action failed. Error response was: {}", result.getErrorMessage(), ex);
-			// Log any unsuccessful completions as errors
-			if (LOG.isDebugEnabled() && result != null) {
-				for (BulkResultItem item : result.getItems()) {
-					if (item.status >= 200 && item.status < 300) {
-						logEsDebug(item.operation, item.index, item.type, "none", item.status, item.error);
-					} else {
-						logEsError(item.operation, item.index, item.type, "none", item.status, item.error);
-					}
-				}
+	private synchronized BulkIndexer<Event> getBulkIndexer() {
+		if (bulkIndexer == null) {
+			bulkIndexerConfig.setWorkers(threads);
+			bulkIndexerConfig.setRetryCount(bulkRetryCount);
+			bulkIndexer = new BulkIndexer<>(EventToIndex.class.getSimpleName(), jestClient, bulkIndexerConfig,
+					this::convertEventToEsAction, EventToIndex::estimateSize, new BulkIndexer.Listener<Event>() {
+						@Override
+						public void onFailed(List<FailedItem<Event>> failedItems) {
+							final Exception cause = failedItems.get(0).getCause();
+							final List<Event> events = failedItems.stream().map(FailedItem::getItem).collect(Collectors.toList());
+							if (cause instanceof ConnectionPoolShutdownException) {
+								ExceptionUtils.handle(EventToIndex.class, (ConnectionPoolShutdownException) cause, events);
+								return;
+							}
+							LOG.error("Bulk API action failed for {} events. First error was: {}", events.size(),
+									cause != null ? cause.getMessage() : null, cause);
+							if (LOG.isDebugEnabled()) {
+								for (FailedItem<Event> failedItem : failedItems) {
+									LOG.debug("Event was not indexed: {}", failedItem.getItem(), failedItem.getCause());
+								}
+							}
+						}
+					});
+			if (metricRegistry != null) {
+				registerBulkIndexerGauges(metricRegistry, bulkIndexer);
 			}
-		} catch (IOException ex) {
-			LOG.error("Bulk API action failed. An exception occurred: {}", ex.getMessage(), ex);
 		}
+		return bulkIndexer;
+	}
+
+	private static void registerBulkIndexerGauges(MetricRegistry metrics, BulkIndexer<?> bulkIndexer) {
+		metrics.register("bulk-queue-size", (Gauge<Integer>) bulkIndexer::getQueueSize);
+		metrics.register("bulk-active-workers", (Gauge<Integer>) bulkIndexer::getActiveWorkers);
+		metrics.register("bulk-batch-size", (Gauge<Integer>) bulkIndexer::getBatchSize);
+		metrics.register("bulk-last-latency-ms", (Gauge<Long>) bulkIndexer::getLastLatencyMs);
+		metrics.register("bulk-producer-waits", (Gauge<Long>) bulkIndexer::getProducerWaits);
+		metrics.register("bulk-documents-retried", (Gauge<Long>) bulkIndexer::getRetriedCount);
+		metrics.register("bulk-documents-failed", (Gauge<Long>) bulkIndexer::getFailedCount);
 	}
 
 	/**
-	 * <p>This method converts events into a sequence of Elasticsearch index/update commands.
+	 * <p>This method converts an event into an Elasticsearch index command.
 	 *
-	 * @param events
+	 * @param event
+	 * @return the command, or null if the event should not be indexed
 	 */
-	private List<BulkableAction<DocumentResult>> convertEventsToEsActions(List<Event> events) {
+	private Index convertEventToEsAction(Event event) {
+		refreshCacheIfNecessary(event);
 
-		final List<BulkableAction<DocumentResult>> retval = new ArrayList<>();
-
-		for (Event event : events) {
-
-			refreshCacheIfNecessary(event);
+		// Only send events to ES if they are persisted to database or logAllEvents is set to true
+		if(logAllEvents || (event.getDbid() !=null && event.getDbid()!=0)) {
+			return createEventIndexFromEvent(event);
+		}
+		LOG.debug("Not Sending Event to ES. Event is not persisted to database, or logAllEvents is false. Event: {}", event);
+		return null;
+	}
 
-			// Only send events to ES if they are persisted to database or logAllEvents is set to true
-			if(logAllEvents || (event.getDbid() !=null && event.getDbid()!=0)) {
-				Index eventIndex = createEventIndexFromEvent(event);
-				retval.add(eventIndex);
-			} else {
-				LOG.debug("Not Sending Event to ES. Event is not persisted to database, or logAllEvents is false. Event: {}", event);
+	/**
+	 * Roughly estimates the size of the document of the event, without serializing it.
+	 */
+	private static long estimateSize(Event event) {
+		long size = 512;
+		if (event.getLogmsg() != null && event.getLogmsg().getContent() != null) {
+			size += event.getLogmsg().getContent().length();
+		}
+		if (event.getDescr() != null) {
+			size += event.getDescr().length();
+		}
+		for (Parm parm : event.getParmCollection()) {
+			size += parm.getParmName().length() + 8;
+			if (parm.getValue() != null && parm.getValue().getContent() != null) {
+				size += parm.getValue().getContent().length();
 			}
 		}
-
-		return retval;
+		return size;
 	}
 
 	/**
@@ -378,24 +420,6 @@ public class EventToIndex implements AutoCloseable {
 		this.indexSettings = Objects.requireNonNull(indexSettings);
 	}
 
-	private static final void logEsError(String operation, String index, String type, String result, int responseCode, String errorMessage) {
-		LOG.error("Error while performing {} on Elasticsearch index: {}, type: {}\n" +
-						"   received result: {}\n" +
-						"   response code: {}\n" +
-						"   error message: {}",
-				operation, index, type, result, responseCode, errorMessage
-		);
-	}
-
-	private static final void logEsDebug(String operation, String index, String type, String result, int responseCode, String errorMessage) {
-		LOG.debug("Performed {} on Elasticsearch index: {}, type: {}\n" +
-						"   received result: {}\n" +
-						"   response code: {}\n" +
-						"   error message: {}",
-				operation, index, type, result, responseCode, errorMessage
-		);
-	}
-
 	protected static boolean isOID(String input) {
 		return input.matches("^(\\.[0-9]+)+$");
 	}
@@ -16,10 +16,11 @@
  */
 package org.hawkular.agent.prometheus.text;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -42,8 +43,26 @@ import org.slf4j.LoggerFactory;
 public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<MetricFamily> {
     private static final Logger log = LoggerFactory.getLogger(TextPrometheusMetricDataParser.class);
 
+    private static final int NAME = 0;
+    private static final int END_OF_NAME = 1;
+    private static final int START_OF_LABEL_NAME = 2;
+    private static final int LABEL_NAME = 3;
+    private static final int LABEL_VALUE_EQUALS = 4;
+    private static final int LABEL_VALUE_QUOTE = 5;
+    private static final int LABEL_VALUE = 6;
+    private static final int LABEL_VALUE_SLASH = 7;
+    private static final int NEXT_LABEL = 8;
+    private static final int END_OF_LABELS = 9;
+    private static final int VALUE = 10;
+
     private String lastLineReadFromStream; // this is only set when we break from the while loop in parse()
 
+    // the stream is read in blocks, lines are assembled from the block without reading byte by byte
+    private final byte[] buffer = new byte[8192];
+    private int position = 0;
+    private int limit = 0;
+    private byte[] lineBuffer = new byte[256];
+
     /**
      * Provides the input stream where the parser will look for metric data.
      * NOTE: this object will not own this stream - it should never attempt to close it.
@@ -206,7 +225,7 @@ public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<M
         }
 
         // do a quick check to see if we are getting passed in binary format rather than text
-        if (!line.isEmpty() && !new String(new char[] { line.charAt(0) }).matches("\\p{ASCII}*")) {
+        if (!line.isEmpty() && line.charAt(0) > 0x7F) {
             throw new IOException("Doesn't look like the metric data is in text format");
         }
 
@@ -219,7 +238,7 @@ public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<M
                 if (line.isEmpty()) {
                     // ignore blank lines
                 } else if (line.charAt(0) == '#') {
-                    String[] parts = line.split("[ \t]+", 4); // 0 is #, 1 is HELP or TYPE, 2 is metric name, 3 is doc
+                    String[] parts = splitComment(line); // 0 is #, 1 is HELP or TYPE, 2 is metric name, 3 is doc
                     if (parts.length < 2) {
                         // ignore line - probably a comment
                     } else if (parts[1].equals("HELP")) {
@@ -320,117 +339,157 @@ public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<M
         StringBuilder value = new StringBuilder();
         Map<String, String> labels = new LinkedHashMap<>();
 
-        String state = "name";
+        int state = NAME;
 
         for (int c = 0; c < line.length(); c++) {
             char charAt = line.charAt(c);
-            if (state.equals("name")) {
-                if (charAt == '{') {
-                    state = "startoflabelname";
-                } else if (charAt == ' ' || charAt == '\t') {
-                    state = "endofname";
-                } else {
-                    name.append(charAt);
-                }
-            } else if (state.equals("endofname")) {
-                if (charAt == ' ' || charAt == '\t') {
-                    // do nothing
-                } else if (charAt == '{') {
-                    state = "startoflabelname";
-                } else {
-                    value.append(charAt);
-                    state = "value";
-                }
-            } else if (state.equals("startoflabelname")) {
-                if (charAt == ' ' || charAt == '\t') {
-                    // do nothing
-                } else if (charAt == '}') {
-                    state = "endoflabels";
-                } else {
-                    labelname.append(charAt);
-                    state = "labelname";
-                }
-            } else if (state.equals("labelname")) {
-                if (charAt == '=') {
-                    state = "labelvaluequote";
-                } else if (charAt == '}') {
-                    state = "endoflabels";
-                } else if (charAt == ' ' || charAt == '\t') {
-                    state = "labelvalueequals";
-                } else {
-                    labelname.append(charAt);
-                }
-            } else if (state.equals("labelvalueequals")) {
-                if (charAt == '=') {
-                    state = "labelvaluequote";
-                } else if (charAt == ' ' || charAt == '\t') {
-                    // do nothing
-                } else {
-                    throw new IllegalStateException("Invalid line: " + line);
-                }
-            } else if (state.equals("labelvaluequote")) {
-                if (charAt == '"') {
-                    state = "labelvalue";
-                } else if (charAt == ' ' || charAt == '\t') {
-                    // do nothing
-                } else {
-                    throw new IllegalStateException("Invalid line: " + line);
-                }
-            } else if (state.equals("labelvalue")) {
-                if (charAt == '\\') {
-                    state = "labelvalueslash";
-                } else if (charAt == '"') {
-                    labels.put(labelname.toString(), labelvalue.toString());
-                    labelname.setLength(0);
-                    labelvalue.setLength(0);
-                    state = "nextlabel";
-                } else {
-                    labelvalue.append(charAt);
-                }
-            } else if (state.equals("labelvalueslash")) {
-                state = "labelvalue";
-                if (charAt == '\\') {
-                    labelvalue.append('\\');
-                } else if (charAt == 'n') {
-                    labelvalue.append('\n');
-                } else if (charAt == '"') {
-                    labelvalue.append('"');
-                } else {
-                    labelvalue.append('\\').append(charAt);
-                }
-            } else if (state.equals("nextlabel")) {
-                if (charAt == ',') {
-                    state = "labelname";
-                } else if (charAt == '}') {
-                    state = "endoflabels";
-                } else if (charAt == ' ' || charAt == '\t') {
-                    // do nothing
-                } else {
-                    throw new IllegalStateException("Invalid line: " + line);
-                }
-            } else if (state.equals("endoflabels")) {
-                if (charAt == ' ' || charAt == '\t') {
-                    // do nothing
-                } else {
-                    value.append(charAt);
-                    state = "value";
-                }
-            } else if (state.equals("value")) {
-                if (charAt == ' ' || charAt == '\t') {
-                    break; // timestamps are NOT supported - ignoring
-                } else {
+            boolean blank = charAt == ' ' || charAt == '\t';
+            switch (state) {
+                case NAME:
+                    if (charAt == '{') {
+                        state = START_OF_LABEL_NAME;
+                    } else if (blank) {
+                        state = END_OF_NAME;
+                    } else {
+                        name.append(charAt);
+                    }
+                    break;
+                case END_OF_NAME:
+                    if (blank) {
+                        // do nothing
+                    } else if (charAt == '{') {
+                        state = START_OF_LABEL_NAME;
+                    } else {
+                        value.append(charAt);
+                        state = VALUE;
+                    }
+                    break;
+                case START_OF_LABEL_NAME:
+                    if (blank) {
+                        // do nothing
+                    } else if (charAt == '}') {
+                        state = END_OF_LABELS;
+                    } else {
+                        labelname.append(charAt);
+                        state = LABEL_NAME;
+                    }
+                    break;
+                case LABEL_NAME:
+                    if (charAt == '=') {
+                        state = LABEL_VALUE_QUOTE;
+                    } else if (charAt == '}') {
+                        state = END_OF_LABELS;
+                    } else if (blank) {
+                        state = LABEL_VALUE_EQUALS;
+                    } else {
+                        labelname.append(charAt);
+                    }
+                    break;
+                case LABEL_VALUE_EQUALS:
+                    if (charAt == '=') {
+                        state = LABEL_VALUE_QUOTE;
+                    } else if (blank) {
+                        // do nothing
+                    } else {
+                        throw new IllegalStateException("Invalid line: " + line);
+                    }
+                    break;
+                case LABEL_VALUE_QUOTE:
+                    if (charAt == '"') {
+                        state = LABEL_VALUE;
+                    } else if (blank) {
+                        // do nothing
+                    } else {
+                        throw new IllegalStateException("Invalid line: " + line);
+                    }
+                    break;
+                case LABEL_VALUE:
+                    if (charAt == '\\') {
+                        state = LABEL_VALUE_SLASH;
+                    } else if (charAt == '"') {
+                        labels.put(labelname.toString(), labelvalue.toString());
+                        labelname.setLength(0);
+                        labelvalue.setLength(0);
+                        state = NEXT_LABEL;
+                    } else {
+                        labelvalue.append(charAt);
+                    }
+                    break;
+                case LABEL_VALUE_SLASH:
+                    state = LABEL_VALUE;
+                    if (charAt == '\\') {
+                        labelvalue.append('\\');
+                    } else if (charAt == 'n') {
+                        labelvalue.append('\n');
+                    } else if (charAt == '"') {
+                        labelvalue.append('"');
+                    } else {
+                        labelvalue.append('\\').append(charAt);
+                    }
+                    break;
+                case NEXT_LABEL:
+                    if (charAt == ',') {
+                        state = LABEL_NAME;
+                    } else if (charAt == '}') {
+                        state = END_OF_LABELS;
+                    } else if (blank) {
+                        // do nothing
+                    } else {
+                        throw new IllegalStateException("Invalid line: " + line);
+                    }
+                    break;
+                case END_OF_LABELS:
+                    if (blank) {
+                        // do nothing
+                    } else {
+                        value.append(charAt);
+                        state = VALUE;
+                    }
+                    break;
+                case VALUE:
+                    if (blank) {
+                        // timestamps are NOT supported - ignoring
+                        return buildSample(line, name, value, labels);
+                    }
                     value.append(charAt);
-                }
+                    break;
             }
         }
 
-        TextSample sample = new TextSample.Builder()
+        return buildSample(line, name, value, labels);
+    }
+
+    private static TextSample buildSample(String line, StringBuilder name, StringBuilder value, Map<String, String> labels) {
+        return new TextSample.Builder()
                 .setLine(line)
                 .setName(name.toString())
                 .setValue(value.toString())
                 .addLabels(labels).build();
+    }
 
-        return sample;
+    /**
+     * Splits a comment line on runs of blanks into at most 4 parts, like
+     * <code>line.split("[ \t]+", 4)</code> but without compiling a pattern for every line.
+     */
+    private static String[] splitComment(String line) {
+        final List<String> parts = new ArrayList<>(4);
+        final int length = line.length();
+        int c = 0;
+        while (c < length) {
+            if (parts.size() == 3) {
+                parts.add(line.substring(c));
+                break;
+            }
+            final int start = c;
+            while (c < length && line.charAt(c) != ' ' && line.charAt(c) != '\t') {
+                c++;
+            }
+            parts.add(line.substring(start, c));
+            while (c < length && (line.charAt(c) == ' ' || line.charAt(c) == '\t')) {
+                c++;
+            }
+        }
+        return parts.toArray(new String[0]);
     }
 
     private String unescapeHelp(String text) {
@@ -467,20 +526,41 @@ public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<M
     }
 
     private String readLine(InputStream inputStream) throws IOException {
-        int lineChar;
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-        // Prometheus end of line character is a newline
-        for (lineChar = inputStream.read(); (lineChar != '\n' && lineChar != -1); lineChar = inputStream.read()) {
-            baos.write(lineChar);
-        }
+        int length = 0;
+        while (true) {
+            if (position == limit) {
+                limit = inputStream.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    if (length == 0) {
+                        // EOF
+                        return null;
+                    }
+                    break;
+                }
+            }
 
-        if (lineChar == -1 && baos.size() == 0) {
-            // EOF
-            return null;
+            // Prometheus end of line character is a newline
+            int end = position;
+            while (end < limit && buffer[end] != '\n') {
+                end++;
+            }
+            final int count = end - position;
+            if (length + count > lineBuffer.length) {
+                lineBuffer = Arrays.copyOf(lineBuffer, Math.max(lineBuffer.length * 2, length + count));
+            }
+            System.arraycopy(buffer, position, lineBuffer, length, count);
+            length += count;
+            position = end;
+            if (end < limit) {
+                // skip the newline
+                position++;
+                break;
+            }
         }
 
-        return baos.toString("UTF-8");
+        return new String(lineBuffer, 0, length, StandardCharsets.UTF_8);
     }
 
 }
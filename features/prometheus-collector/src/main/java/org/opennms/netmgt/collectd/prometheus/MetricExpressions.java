@@ -0,0 +1,121 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.collectd.prometheus;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.hawkular.agent.prometheus.types.Metric;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+
+/**
+ * Compiles the SpEL expressions used to filter, group and name metrics.
+ *
+ * Expressions are parsed once and cached by their text. The most common forms,
+ * <code>name matches '...'</code> and <code>labels[...]</code>, are replaced by equivalent
+ * hand-written implementations. All other expressions are compiled to byte code by SpEL
+ * and fall back to interpretation if they cannot be compiled.
+ */
+public final class MetricExpressions {
+
+    /**
+     * A compiled boolean expression.
+     */
+    @FunctionalInterface
+    public interface Filter {
+        boolean test(Metric metric, EvaluationContext context);
+    }
+
+    /**
+     * A compiled string expression.
+     */
+    @FunctionalInterface
+    public interface Value {
+        String apply(Metric metric, EvaluationContext context);
+    }
+
+    private static final Pattern NAME_MATCHES = Pattern.compile("^\\s*name\\s+matches\\s+'((?:[^']|'')*)'\\s*$");
+
+    private static final Pattern LABEL = Pattern.compile("^\\s*labels\\[\\s*([a-zA-Z_][a-zA-Z0-9_]*)\\s*\\]\\s*$");
+
+    private static final SpelExpressionParser PARSER = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, MetricExpressions.class.getClassLoader()));
+
+    private static final Map<String, Filter> FILTERS = new ConcurrentHashMap<>();
+
+    private static final Map<String, Value> VALUES = new ConcurrentHashMap<>();
+
+    private MetricExpressions() {
+    }
+
+    /**
+     * @param expression a boolean expression evaluated against a metric
+     * @return the compiled expression
+     * @throws org.springframework.expression.ParseException if the expression is invalid
+     */
+    public static Filter filter(final String expression) {
+        final Filter filter = FILTERS.get(expression);
+        if (filter != null) {
+            return filter;
+        }
+        return FILTERS.computeIfAbsent(expression, MetricExpressions::compileFilter);
+    }
+
+    /**
+     * @param expression a string expression evaluated against a metric
+     * @return the compiled expression
+     * @throws org.springframework.expression.ParseException if the expression is invalid
+     */
+    public static Value value(final String expression) {
+        final Value value = VALUES.get(expression);
+        if (value != null) {
+            return value;
+        }
+        return VALUES.computeIfAbsent(expression, MetricExpressions::compileValue);
+    }
+
+    private static Filter compileFilter(final String expression) {
+        final Matcher nameMatches = NAME_MATCHES.matcher(expression);
+        if (nameMatches.matches()) {
+            final Pattern pattern = Pattern.compile(nameMatches.group(1).replace("''", "'"));
+            return (metric, context) -> pattern.matcher(metric.getName()).matches();
+        }
+        final Expression exp = PARSER.parseExpression(expression);
+        return (metric, context) -> exp.getValue(context, metric, Boolean.class);
+    }
+
+    private static Value compileValue(final String expression) {
+        final Matcher label = LABEL.matcher(expression);
+        if (label.matches()) {
+            final String key = label.group(1);
+            return (metric, context) -> metric.getLabels().get(key);
+        }
+        final Expression exp = PARSER.parseExpression(expression);
+        return (metric, context) -> exp.getValue(context, metric, String.class);
+    }
+}
@@ -29,7 +29,6 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -66,9 +65,7 @@ import org.opennms.netmgt.dao.prometheus.PrometheusDataCollectionConfigDao;
 import org.opennms.netmgt.rrd.RrdRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.expression.Expression;
-import org.springframework.expression.ExpressionParser;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 
 import com.google.common.base.Strings;
@@ -161,21 +158,29 @@ public class PrometheusCollector extends AbstractRemoteServiceCollector {
 
     protected static CollectionSet toCollectionSet(CollectionAgent agent, PrometheusCollectionRequest request, List<Metric> metrics) {
         final CollectionSetBuilder builder = new CollectionSetBuilder(agent);
-        
+        final EvaluationContext context = new StandardEvaluationContext();
+
+        // Route every metric to the instances and attributes of the groups it belongs to in a single pass
+        final List<GroupRoute> routes = new ArrayList<>(request.getGroups().size());
         for (Group group : request.getGroups()) {
-            // First, we find the metrics that belong to this group
-            final List<Metric> metricsForGroup = filterMetrics(group.getFilterExp(), metrics);
-            if (metricsForGroup.isEmpty()) {
+            routes.add(new GroupRoute(group));
+        }
+        for (Metric metric : metrics) {
+            for (GroupRoute route : routes) {
+                route.accept(metric, context);
+            }
+        }
+
+        final NodeLevelResource nodeLevelResource = new NodeLevelResource(agent.getNodeId());
+        for (GroupRoute route : routes) {
+            final Group group = route.group;
+            if (route.matched == 0) {
                 // Don't bother continuing if we have no metrics
                 LOG.warn("No metrics found in group named '{}' on agent {}.", group.getName(), agent);
                 continue;
             }
 
-            // Next, group the metrics by instance
-            final Map<String, List<Metric>> metricsByInstance = groupMetrics(group, metricsForGroup);
-
             // Build the resource mapper
-            final NodeLevelResource nodeLevelResource = new NodeLevelResource(agent.getNodeId());
             Function<String, Resource> resourceMapper = (instance) -> nodeLevelResource;
             if (!"node".equalsIgnoreCase(group.getResourceType())) {
                 resourceMapper = (instance) -> {
@@ -185,19 +190,16 @@ public class PrometheusCollector extends AbstractRemoteServiceCollector {
             }
 
             // Process the metrics by instance
-            for (Entry<String, List<Metric>> entry : metricsByInstance.entrySet()) {
+            for (Entry<String, InstanceMetrics> entry : route.instances.entrySet()) {
                 final Resource resource = resourceMapper.apply(entry.getKey());
+                final InstanceMetrics instance = entry.getValue();
 
                 // First, process the numeric attributes
-                for (NumericAttribute attribute : group.getNumericAttribute()) {
-                    // Filter
-                    final List<Metric> metricsForAttribute = filterMetrics(attribute.getFilterExp(), entry.getValue());
-
-                    ExpressionParser parser = new SpelExpressionParser();
-                    Expression exp = parser.parseExpression(attribute.getAliasExp());
+                for (int i = 0; i < route.numericAttributes.size(); i++) {
+                    final NumericAttribute attribute = group.getNumericAttribute().get(i);
+                    final MetricExpressions.Value alias = route.aliases.get(i);
                     Function<Metric, String> attributeNameMapper = (metric) -> {
-                        StandardEvaluationContext context = new StandardEvaluationContext(metric);
-                        String name = exp.getValue(context, String.class);
+                        String name = alias.apply(metric, context);
                         if (attribute.isCompressAlias()) {
                             name = CamelCaseCompressor.compress(name, RRD_DS_MAX_SIZE);
                         }
@@ -212,7 +214,7 @@ public class PrometheusCollector extends AbstractRemoteServiceCollector {
                         return knownType;
                     };
 
-                    for (Metric metric : metricsForAttribute) {
+                    for (Metric metric : instance.metricsForAttribute.get(i)) {
                         final String attributeName = attributeNameMapper.apply(metric);
                         if (attributeName == null) {
                             LOG.info("Skipping metric with null attribute name: {}", metric);
@@ -249,12 +251,11 @@ public class PrometheusCollector extends AbstractRemoteServiceCollector {
                 }
 
                 // And next, the process the string attributes
-                for (StringAttribute attribute : group.getStringAttribute()) {
-                    ExpressionParser parser = new SpelExpressionParser();
-                    Expression stringAttributeValueExp = parser.parseExpression(attribute.getValueExp());
-                    for (Metric metric : entry.getValue()) {
-                        StandardEvaluationContext context = new StandardEvaluationContext(metric);
-                        String stringValue = stringAttributeValueExp.getValue(context, String.class);
+                for (int i = 0; i < group.getStringAttribute().size(); i++) {
+                    final StringAttribute attribute = group.getStringAttribute().get(i);
+                    final MetricExpressions.Value stringAttributeValueExp = route.stringValues.get(i);
+                    for (Metric metric : instance.metrics) {
+                        String stringValue = stringAttributeValueExp.apply(metric, context);
                         if (stringValue != null) {
                             builder.withStringAttribute(resource, group.getName(), attribute.getAlias(), stringValue);
                             // Only process the first match
@@ -267,65 +268,96 @@ public class PrometheusCollector extends AbstractRemoteServiceCollector {
         return builder.build();
     }
 
-    private static List<Metric> filterMetrics(String filterExpression, List<Metric> metrics) {
-        if (filterExpression == null) {
-            return metrics;
-        }
-
-        final ExpressionParser parser = new SpelExpressionParser();
-        final Expression exp = parser.parseExpression(filterExpression);
-        final List<Metric> filteredMetrics = new ArrayList<>();
-        for (Metric metric : metrics) {
-            StandardEvaluationContext context = new StandardEvaluationContext(metric);
-
-            boolean passed = false;
-            try {
-                passed = exp.getValue(context, Boolean.class);
-            } catch (Exception e) {
-                LOG.warn("Failed to evaluate expression '{}'. The metric will not be included.",
-                        filterExpression, e);
-            }
-            LOG.debug("Rule '{}' on {} passed? {}", filterExpression, metric, passed);
-
-            if (passed) {
-                filteredMetrics.add(metric);
+    /**
+     * The metrics of a single instance of a group.
+     */
+    private static class InstanceMetrics {
+        private final List<Metric> metrics = new ArrayList<>();
+        private final List<List<Metric>> metricsForAttribute;
+
+        private InstanceMetrics(int numericAttributes) {
+            metricsForAttribute = new ArrayList<>(numericAttributes);
+            for (int i = 0; i < numericAttributes; i++) {
+                metricsForAttribute.add(new ArrayList<>());
             }
         }
-        return filteredMetrics;
     }
 
     /**
-     * Groups the metrics by instance using the given group-by expression.
-     * If no expression is set, all the metrics belong to a single group with instance name 'node'
+     * The compiled expressions of a group and the metrics routed to it.
      */
-    private static Map<String, List<Metric>> groupMetrics(Group group, List<Metric> metrics) {
-        final Map<String, List<Metric>> metricsByInstance = new LinkedHashMap<>();
-        if (group.getGroupByExp() == null) {
-            metricsByInstance.put("node", metrics);
-            return metricsByInstance;
+    private static class GroupRoute {
+        private final Group group;
+        private final MetricExpressions.Filter filter;
+        private final MetricExpressions.Value groupBy;
+        private final List<MetricExpressions.Filter> numericAttributes = new ArrayList<>();
+        private final List<MetricExpressions.Value> aliases = new ArrayList<>();
+        private final List<MetricExpressions.Value> stringValues = new ArrayList<>();
+        private final Map<String, InstanceMetrics> instances = new LinkedHashMap<>();
+        private int matched = 0;
+
+        private GroupRoute(Group group) {
+            this.group = group;
+            this.filter = group.getFilterExp() != null ? MetricExpressions.filter(group.getFilterExp()) : null;
+            this.groupBy = group.getGroupByExp() != null ? MetricExpressions.value(group.getGroupByExp()) : null;
+            for (NumericAttribute attribute : group.getNumericAttribute()) {
+                numericAttributes.add(attribute.getFilterExp() != null ? MetricExpressions.filter(attribute.getFilterExp()) : null);
+                aliases.add(MetricExpressions.value(attribute.getAliasExp()));
+            }
+            for (StringAttribute attribute : group.getStringAttribute()) {
+                stringValues.add(MetricExpressions.value(attribute.getValueExp()));
+            }
         }
 
-        final ExpressionParser parser = new SpelExpressionParser();
-        final Expression exp = parser.parseExpression(group.getGroupByExp());
-        for (Metric metric : metrics) {
-            final StandardEvaluationContext context = new StandardEvaluationContext(metric);
-            try {
-                final String instance = exp.getValue(context, String.class);
-                LOG.debug("Rule '{}' on {} returned instance: {}", group.getGroupByExp(), metric, instance);
-                if (instance == null) {
-                    LOG.info("Rule '{}' on {} did not produce an instance. Result will be ignored.", group.getGroupByExp(), metric);
-                    continue;
+        private void accept(Metric metric, EvaluationContext context) {
+            // First, we check if the metric belongs to this group
+            if (!test(filter, group.getFilterExp(), metric, context)) {
+                return;
+            }
+            matched++;
+
+            // Next, find the instance of the metric using the group-by expression.
+            // If no expression is set, all the metrics belong to a single group with instance name 'node'
+            String instance = "node";
+            if (groupBy != null) {
+                try {
+                    instance = groupBy.apply(metric, context);
+                    LOG.debug("Rule '{}' on {} returned instance: {}", group.getGroupByExp(), metric, instance);
+                    if (instance == null) {
+                        LOG.info("Rule '{}' on {} did not produce an instance. Result will be ignored.", group.getGroupByExp(), metric);
+                        return;
+                    }
+                } catch (Exception e) {
+                    LOG.warn("Failed to evaluate expression '{}' in the group named '{}'. The metric will not be included.",
+                            group.getGroupByExp(), group.getName(), e);
+                    return;
                 }
+            }
 
-                // Insert or append
-                List<Metric> metricsInInstance = metricsByInstance.computeIfAbsent(instance, k -> new LinkedList<>());
-                metricsInInstance.add(metric);
-            } catch (Exception e) {
-                LOG.warn("Failed to evaluate expression '{}' in the group named '{}'. The metric will not be included.",
-                        group.getGroupByExp(), group.getName(), e);
+            final InstanceMetrics metrics = instances.computeIfAbsent(instance, k -> new InstanceMetrics(numericAttributes.size()));
+            metrics.metrics.add(metric);
+            for (int i = 0; i < numericAttributes.size(); i++) {
+                if (test(numericAttributes.get(i), group.getNumericAttribute().get(i).getFilterExp(), metric, context)) {
+                    metrics.metricsForAttribute.get(i).add(metric);
+                }
             }
         }
-        return metricsByInstance;
+    }
+
+    private static boolean test(MetricExpressions.Filter filter, String filterExpression, Metric metric, EvaluationContext context) {
+        if (filter == null) {
+            return true;
+        }
+
+        boolean passed = false;
+        try {
+            passed = filter.test(metric, context);
+        } catch (Exception e) {
+            LOG.warn("Failed to evaluate expression '{}'. The metric will not be included.",
+                    filterExpression, e);
+        }
+        LOG.debug("Rule '{}' on {} passed? {}", filterExpression, metric, passed);
+        return passed;
     }
 
     @Override
@@ -0,0 +1,115 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.hawkular.agent.prometheus;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hawkular.agent.prometheus.text.TextPrometheusMetricDataParser;
+import org.hawkular.agent.prometheus.types.Counter;
+import org.hawkular.agent.prometheus.types.Gauge;
+import org.hawkular.agent.prometheus.types.MetricFamily;
+import org.hawkular.agent.prometheus.types.MetricType;
+import org.hawkular.agent.prometheus.types.Summary;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TextPrometheusMetricDataParserTest {
+
+    @Test
+    public void testParse() throws IOException {
+        List<MetricFamily> families = parse(
+                "# HELP http_requests_total The total number of\\nHTTP requests.\n"
+                + "# TYPE http_requests_total counter\n"
+                + "http_requests_total{method=\"post\",code=\"200\"} 1027 1395066363000\n"
+                + "http_requests_total {method=\"get\",path=\"C:\\\\temp \\\"x\\\"\"} 3\r\n"
+                + "\n"
+                + "# A plain comment\n"
+                + "#\tTYPE\tcpu_temp\tgauge\n"
+                + "cpu_temp{zone=\"z\u00fcrich\"}\t+Inf\n"
+                + "# TYPE rpc_duration_seconds summary\n"
+                + "rpc_duration_seconds{quantile=\"0.5\"} 4773\n"
+                + "rpc_duration_seconds_sum 1.7560473e+07\n"
+                + "rpc_duration_seconds_count 2693");
+        Assert.assertEquals(3, families.size());
+
+        MetricFamily requests = families.get(0);
+        Assert.assertEquals("http_requests_total", requests.getName());
+        Assert.assertEquals("The total number of\nHTTP requests.", requests.getHelp());
+        Assert.assertEquals(MetricType.COUNTER, requests.getType());
+        Assert.assertEquals(2, requests.getMetrics().size());
+        Counter post = (Counter) requests.getMetrics().get(0);
+        Assert.assertEquals(1027, post.getValue(), 0.0);
+        Assert.assertEquals("post", post.getLabels().get("method"));
+        Assert.assertEquals("200", post.getLabels().get("code"));
+        Counter get = (Counter) requests.getMetrics().get(1);
+        Assert.assertEquals(3, get.getValue(), 0.0);
+        Assert.assertEquals("C:\\temp \"x\"", get.getLabels().get("path"));
+
+        MetricFamily temp = families.get(1);
+        Assert.assertEquals(MetricType.GAUGE, temp.getType());
+        Gauge gauge = (Gauge) temp.getMetrics().get(0);
+        Assert.assertEquals(Double.POSITIVE_INFINITY, gauge.getValue(), 0.0);
+        Assert.assertEquals("z\u00fcrich", gauge.getLabels().get("zone"));
+
+        Summary summary = (Summary) families.get(2).getMetrics().get(0);
+        Assert.assertEquals(2693, summary.getSampleCount());
+        Assert.assertEquals(1.7560473e+07, summary.getSampleSum(), 0.0);
+        Assert.assertEquals(1, summary.getQuantiles().size());
+    }
+
+    @Test
+    public void testParseLinesLongerThanTheReadBuffer() throws IOException {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            value.append((char) ('a' + i % 26));
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            text.append("big{v=\"").append(value).append("\"} ").append(i).append('\n');
+        }
+        List<MetricFamily> families = parse("# TYPE big gauge\n" + text);
+        Assert.assertEquals(1, families.size());
+        // all samples have the same labels, the last one wins
+        Assert.assertEquals(1, families.get(0).getMetrics().size());
+        Gauge gauge = (Gauge) families.get(0).getMetrics().get(0);
+        Assert.assertEquals(value.toString(), gauge.getLabels().get("v"));
+        Assert.assertEquals(2, gauge.getValue(), 0.0);
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectBinaryData() throws IOException {
+        parse("\u00ff\u00fe binary");
+    }
+
+    private static List<MetricFamily> parse(String text) throws IOException {
+        TextPrometheusMetricDataParser parser = new TextPrometheusMetricDataParser(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+        List<MetricFamily> families = new ArrayList<>();
+        for (MetricFamily family = parser.parse(); family != null; family = parser.parse()) {
+            families.add(family);
+        }
+        return families;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.collectd.prometheus;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.agent.prometheus.text.TextPrometheusMetricsProcessor;
+import org.hawkular.agent.prometheus.types.Metric;
+import org.hawkular.agent.prometheus.walkers.MetricCollectingWalker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.opennms.netmgt.collection.api.CollectionAgent;
+import org.opennms.netmgt.config.prometheus.Group;
+import org.opennms.netmgt.config.prometheus.NumericAttribute;
+import org.opennms.netmgt.config.prometheus.PrometheusCollectionRequest;
+import org.opennms.netmgt.config.prometheus.StringAttribute;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+/**
+ * Measures a scrape of a generated node exporter payload: parsing the exposition text, and routing
+ * the parsed metrics to the groups and attributes of a collection modelled after the default
+ * node exporter configuration.
+ * <p>
+ * The <code>interpretedFilters</code> benchmark evaluates the group filters the way they were
+ * evaluated before they were compiled, as a baseline for <code>compiledFilters</code>.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class PrometheusScrapeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @Param({"50000"})
+    public int sampleCount;
+
+    private byte[] payload;
+
+    private List<Metric> metrics;
+
+    private PrometheusCollectionRequest request;
+
+    private CollectionAgent agent;
+
+    @Setup
+    public void setUp() throws IOException {
+        payload = generate(sampleCount).getBytes(StandardCharsets.UTF_8);
+        metrics = parse(payload);
+
+        request = new PrometheusCollectionRequest();
+        request.setGroups(Arrays.asList(
+                group("node-load", "name matches 'node_load.*'", null, "name.substring('node_'.length())"),
+                group("node-cpu", "name matches 'node_cpu_seconds_total'", "labels[cpu]", "labels[mode]"),
+                group("node-network", "name matches 'node_network_.*'", "labels[device]", "name.substring('node_network_'.length())"),
+                group("node-filesystem", "name matches 'node_filesystem_.*'", "labels[mountpoint]", "name.substring('node_filesystem_'.length())"),
+                group("node-disk", "name matches 'node_disk_.*'", "labels[device]", "name.substring('node_disk_'.length())")));
+
+        agent = mock(CollectionAgent.class);
+        when(agent.getNodeId()).thenReturn(1);
+    }
+
+    @Benchmark
+    public List<Metric> parse() throws IOException {
+        return parse(payload);
+    }
+
+    @Benchmark
+    public Object route() {
+        return PrometheusCollector.toCollectionSet(agent, request, metrics);
+    }
+
+    @Benchmark
+    public void compiledFilters(final Blackhole bh) {
+        final StandardEvaluationContext context = new StandardEvaluationContext();
+        for (Group group : request.getGroups()) {
+            final MetricExpressions.Filter filter = MetricExpressions.filter(group.getFilterExp());
+            for (Metric metric : metrics) {
+                bh.consume(filter.test(metric, context));
+            }
+        }
+    }
+
+    @Benchmark
+    public void interpretedFilters(final Blackhole bh) {
+        for (Group group : request.getGroups()) {
+            final Expression exp = new SpelExpressionParser().parseExpression(group.getFilterExp());
+            for (Metric metric : metrics) {
+                bh.consume(exp.getValue(new StandardEvaluationContext(metric), Boolean.class));
+            }
+        }
+    }
+
+    private static List<Metric> parse(byte[] payload) throws IOException {
+        final MetricCollectingWalker walker = new MetricCollectingWalker();
+        new TextPrometheusMetricsProcessor(new ByteArrayInputStream(payload), walker).walk();
+        return walker.getMetrics();
+    }
+
+    private static Group group(String name, String filterExp, String groupByExp, String aliasExp) {
+        final Group group = new Group();
+        group.setName(name);
+        group.setFilterExp(filterExp);
+        group.setGroupByExp(groupByExp);
+        group.setResourceType(groupByExp != null ? name : "node");
+        final NumericAttribute attribute = new NumericAttribute();
+        attribute.setAliasExp(aliasExp);
+        group.getNumericAttribute().add(attribute);
+        if (groupByExp != null) {
+            final StringAttribute instance = new StringAttribute();
+            instance.setAlias("instance");
+            instance.setValueExp(groupByExp);
+            group.getStringAttribute().add(instance);
+        }
+        return group;
+    }
+
+    /**
+     * Generates a node exporter like payload with the given number of samples, most of
+     * them belonging to families which are not collected.
+     */
+    static String generate(int sampleCount) {
+        final StringBuilder sb = new StringBuilder(sampleCount * 80);
+        int samples = 0;
+        sb.append("# HELP node_load1 1m load average.\n# TYPE node_load1 gauge\nnode_load1 0.42\n");
+        samples++;
+
+        sb.append("# HELP node_cpu_seconds_total Seconds the CPUs spent in each mode.\n# TYPE node_cpu_seconds_total counter\n");
+        for (int cpu = 0; cpu < 64; cpu++) {
+            for (String mode : new String[]{"idle", "iowait", "irq", "nice", "softirq", "steal", "system", "user"}) {
+                sb.append("node_cpu_seconds_total{cpu=\"").append(cpu).append("\",mode=\"").append(mode).append("\"} ").append(cpu * 1000.5).append('\n');
+                samples++;
+            }
+        }
+
+        for (String counter : new String[]{"receive_bytes_total", "receive_packets_total", "transmit_bytes_total", "transmit_packets_total"}) {
+            sb.append("# HELP node_network_").append(counter).append(" Network device statistic.\n# TYPE node_network_").append(counter).append(" counter\n");
+            for (int device = 0; device < 256; device++) {
+                sb.append("node_network_").append(counter).append("{device=\"veth").append(device).append("\"} ").append(device * 12345.0).append('\n');
+                samples++;
+            }
+        }
+
+        for (String gauge : new String[]{"avail_bytes", "free_bytes", "size_bytes"}) {
+            sb.append("# HELP node_filesystem_").append(gauge).append(" Filesystem statistic.\n# TYPE node_filesystem_").append(gauge).append(" gauge\n");
+            for (int fs = 0; fs < 128; fs++) {
+                sb.append("node_filesystem_").append(gauge).append("{device=\"/dev/sd").append(fs).append("\",fstype=\"ext4\",mountpoint=\"/mnt/").append(fs).append("\"} ").append(fs * 4096.0).append('\n');
+                samples++;
+            }
+        }
+
+        // fill up with application metrics which are not collected
+        int family = 0;
+        while (samples < sampleCount) {
+            sb.append("# HELP app_requests_").append(family).append(" Requests handled.\n# TYPE app_requests_").append(family).append(" counter\n");
+            for (int i = 0; i < 100 && samples < sampleCount; i++) {
+                sb.append("app_requests_").append(family).append("{handler=\"/api/v1/resource/").append(i).append("\",code=\"200\",method=\"GET\"} ").append(i * 3.0).append('\n');
+                samples++;
+            }
+            family++;
+        }
+        return sb.toString();
+    }
+}
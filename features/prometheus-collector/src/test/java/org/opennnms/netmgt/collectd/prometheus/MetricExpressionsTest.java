@@ -0,0 +1,88 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennnms.netmgt.collectd.prometheus;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.hawkular.agent.prometheus.types.Gauge;
+import org.hawkular.agent.prometheus.types.Metric;
+import org.junit.Test;
+import org.opennms.netmgt.collectd.prometheus.MetricExpressions;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+public class MetricExpressionsTest {
+
+    private static final List<Metric> METRICS = Arrays.asList(
+            new Gauge.Builder().setName("node_filesystem_free_bytes").setValue(1).addLabel("mountpoint", "/home").build(),
+            new Gauge.Builder().setName("node_filesystem_size_bytes").setValue(2).addLabel("mountpoint", "/").build(),
+            new Gauge.Builder().setName("node_load1").setValue(3).build(),
+            new Gauge.Builder().setName("it's").setValue(4).addLabel("device", "eth0").build());
+
+    @Test
+    public void canEvaluateFiltersLikeSpel() {
+        for (String expression : Arrays.asList(
+                "name matches 'node_filesystem_.*'",
+                "  name   matches 'node_load.*' ",
+                "name matches 'it''s'",
+                "name matches 'node_filesystem_.*' and name.endsWith('free_bytes')",
+                "!(name matches 'node_load1')")) {
+            final MetricExpressions.Filter filter = MetricExpressions.filter(expression);
+            final EvaluationContext context = new StandardEvaluationContext();
+            for (Metric metric : METRICS) {
+                final Boolean expected = new SpelExpressionParser().parseExpression(expression).getValue(new StandardEvaluationContext(metric), Boolean.class);
+                assertThat(expression + " on " + metric.getName(), filter.test(metric, context), equalTo(expected));
+            }
+        }
+    }
+
+    @Test
+    public void canEvaluateValuesLikeSpel() {
+        for (String expression : Arrays.asList(
+                "labels[mountpoint]",
+                "labels[ device ]",
+                "name.substring('node_'.length())",
+                "'fs_'.concat(name)")) {
+            final MetricExpressions.Value value = MetricExpressions.value(expression);
+            final EvaluationContext context = new StandardEvaluationContext();
+            for (Metric metric : METRICS) {
+                if (metric.getName().length() < 5) {
+                    continue;
+                }
+                final String expected = new SpelExpressionParser().parseExpression(expression).getValue(new StandardEvaluationContext(metric), String.class);
+                assertThat(expression + " on " + metric.getName(), value.apply(metric, context), equalTo(expected));
+            }
+        }
+    }
+
+    @Test
+    public void compilesExpressionsOnce() {
+        assertThat(MetricExpressions.filter("name matches 'a.*'"), sameInstance(MetricExpressions.filter("name matches 'a.*'")));
+        assertThat(MetricExpressions.value("labels[a]"), sameInstance(MetricExpressions.value("labels[a]")));
+    }
+}
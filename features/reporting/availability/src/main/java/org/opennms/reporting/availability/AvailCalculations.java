@@ -39,6 +39,7 @@ import org.opennms.core.logging.Logging;
 import org.opennms.reporting.datablock.IfService;
 import org.opennms.reporting.datablock.Interface;
 import org.opennms.reporting.datablock.Node;
+import org.opennms.reporting.datablock.OutageIntervals;
 import org.opennms.reporting.datablock.OutageSince;
 import org.opennms.reporting.datablock.OutageSvcTimesList;
 import org.opennms.reporting.datablock.Service;
@@ -100,9 +101,14 @@ public class AvailCalculations extends Object {
     private static final int NMONTHS = 12;
 
     /**
-     * Nodes that match this category.
+     * The outages of all services of all nodes that match this category.
      */
-    private List<Node> m_nodes;
+    private OutageIntervals m_outages;
+
+    /**
+     * The number of services of all nodes in the category.
+     */
+    private int m_serviceCount;
 
     /**
      * Monitored Services for the category
@@ -172,7 +178,16 @@ public class AvailCalculations extends Object {
                 m_daysInLastMonth = getDaysForMonth(m_endLastMonthTime);
                 m_report = report;
 
-                m_nodes = nodes;
+                final OutageIntervals.Builder builder = OutageIntervals.builder();
+                m_serviceCount = 0;
+                for (final Node node : nodes) {
+                    if (node != null) {
+                        builder.add(node);
+                        m_serviceCount += node.getServiceCount();
+                    }
+                }
+                m_outages = builder.build();
+                LOG.debug("Loaded {} outages of {} services", m_outages.size(), m_serviceCount);
 
                 String label;
                 String descr;
@@ -351,7 +366,7 @@ public class AvailCalculations extends Object {
                 }
 
                 LOG.debug("Services {}", m_services);
-                m_nodes = null;
+                m_outages = null;
                 //
                 // N Days Daily Service Availability
                 //
@@ -734,10 +749,8 @@ public class AvailCalculations extends Object {
             //
             // get the outage and service count.
             //
-            for(Node node : m_nodes) {
-                outage += node.getOutage(endTime, ROLLING_WINDOW);
-                serviceCount += node.getServiceCount();
-            }
+            outage += m_outages.getDownTime(endTime, ROLLING_WINDOW);
+            serviceCount += m_serviceCount;
             double percentAvail;
             if (serviceCount > 0){
 
@@ -813,10 +826,8 @@ public class AvailCalculations extends Object {
             //
             // get the outage and service count.
             //
-            for(Node node : m_nodes) {
-                outage += node.getOutage(endTime, ROLLING_WINDOW);
-                serviceCount += node.getServiceCount();
-            }
+            outage += m_outages.getDownTime(endTime, ROLLING_WINDOW);
+            serviceCount += m_serviceCount;
             double percentAvail;
             if (serviceCount > 0)
                 percentAvail = 100.0 * (1 - (outage * 1.0) / (1.0 * serviceCount * ROLLING_WINDOW));
@@ -894,10 +905,8 @@ public class AvailCalculations extends Object {
             //
             // get the outage and service count.
             //
-            for(Node node : m_nodes) {
-                serviceCount += node.getServiceCount();
-                outage += node.getOutage(endTime, ROLLING_WINDOW);
-            }
+            serviceCount += m_serviceCount;
+            outage += m_outages.getDownTime(endTime, ROLLING_WINDOW);
             periodFrom = fmt.format(new java.util.Date(endTime)) + " to " + periodEnd;
             endTime -= ROLLING_WINDOW;
         }
@@ -979,10 +988,8 @@ public class AvailCalculations extends Object {
             //
             // get the outage and service count.
             //
-            for(Node node : m_nodes) {
-                serviceCount += node.getServiceCount();
-                outage += node.getOutage(endTime, rollingWindow);
-            }
+            serviceCount += m_serviceCount;
+            outage += m_outages.getDownTime(endTime, rollingWindow);
             double percentAvail;
             if (serviceCount > 0)
                 percentAvail = 100.0 * (1 - (outage * 1.0) / (1.0 * serviceCount * rollingWindow));
@@ -1111,7 +1118,6 @@ public class AvailCalculations extends Object {
 
         final SimpleDateFormat fmtmp = new SimpleDateFormat("dd MMM, yyyy");
 
-        long outage;
         String periodFrom = "";
         String periodTo = "";
         periodTo = fmtmp.format(new java.util.Date(endTime));
@@ -1169,29 +1175,20 @@ public class AvailCalculations extends Object {
                 m_sectionIndex++;
                 catSections.addSection(section);
             } else {
+                // Keep track of the number of services being monitored and
+                // merge the outages of all of them.
+                //
+                final int serviceCnt = svcOutages.size();
+                final OutageIntervals.Builder builder = OutageIntervals.builder();
+                for (final OutageSvcTimesList outageList : svcOutages.values()) {
+                    builder.add(outageList);
+                }
+                final OutageIntervals svcIntervals = builder.build();
+
                 int daysCnt = 0;
                 while (daysCnt++ < days) {
                     LOG.debug("DAy : {} end time {} ROLLING_WINDOW {}", daysCnt, new Date(curTime), ROLLING_WINDOW);
-                    int serviceCnt = 0;
-                    long outageTime = 0;
-                    // For each node in the service table.
-                    //
-                    // Iterate each svc node for getting the ifservice
-                    for (final Map.Entry<IfService, OutageSvcTimesList> entry : svcOutages.entrySet()) {
-                        final IfService ifservice = entry.getKey();
-                        final OutageSvcTimesList outageList = entry.getValue();
-
-                        LOG.debug(ifservice.toString());
-
-                        if (outageList != null) {
-                            outage = outageList.getDownTime(curTime, ROLLING_WINDOW);
-                            // Keep track of the number of services being
-                            // monitored.
-                            //
-                            outageTime += outage;
-                        }
-                        serviceCnt++;
-                    }
+                    final long outageTime = svcIntervals.getDownTime(curTime, ROLLING_WINDOW);
                     LOG.debug("Outage Time {}", outageTime);
                     long den = (ROLLING_WINDOW * serviceCnt);
                     double outag = 1.0 * outageTime;
@@ -0,0 +1,109 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.reporting.datablock;
+
+import static org.opennms.reporting.datablock.SyntheticOutages.DAY;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares computing the down time of a category by walking the outages of
+ * every node against building the outage intervals of the category once.
+ * <p>
+ * Each iteration computes the buckets of a monthly category report: the
+ * daily down time of the last two months and the down time of the last 12
+ * months.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class AvailabilityKernelBenchmark {
+
+    private static final long END = 1700000000000L;
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @Param({"1000", "10000"})
+    public int nodeCount;
+
+    @Param({"10"})
+    public int outagesPerService;
+
+    private List<Node> nodes;
+
+    @Setup
+    public void setUp() {
+        nodes = new SyntheticOutages(nodeCount).withOutagesPerService(outagesPerService).generate(nodeCount, END);
+    }
+
+    @Benchmark
+    public void nodes(final Blackhole bh) {
+        for (int day = 0; day < 62; day++) {
+            long outage = 0;
+            for (final Node node : nodes) {
+                outage += node.getOutage(END - day * DAY, DAY);
+            }
+            bh.consume(outage);
+        }
+        for (int month = 0; month < 12; month++) {
+            long outage = 0;
+            for (final Node node : nodes) {
+                outage += node.getOutage(END - month * 30 * DAY, 30 * DAY);
+            }
+            bh.consume(outage);
+        }
+    }
+
+    @Benchmark
+    public void intervals(final Blackhole bh) {
+        final OutageIntervals.Builder builder = OutageIntervals.builder();
+        for (final Node node : nodes) {
+            builder.add(node);
+        }
+        final OutageIntervals intervals = builder.build();
+        for (int day = 0; day < 62; day++) {
+            bh.consume(intervals.getDownTime(END - day * DAY, DAY));
+        }
+        for (int month = 0; month < 12; month++) {
+            bh.consume(intervals.getDownTime(END - month * 30 * DAY, 30 * DAY));
+        }
+    }
+}
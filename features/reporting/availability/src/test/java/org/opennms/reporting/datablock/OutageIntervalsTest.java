@@ -0,0 +1,111 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.reporting.datablock;
+
+import static org.junit.Assert.assertEquals;
+import static org.opennms.reporting.datablock.SyntheticOutages.DAY;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class OutageIntervalsTest {
+
+    private static final long END = 1700000000000L;
+
+    @Test
+    public void testClosedOutage() {
+        final OutageIntervals intervals = OutageIntervals.builder().add(END - 2 * DAY, END - DAY / 2).build();
+
+        assertEquals(DAY / 2, intervals.getDownTime(END, DAY));
+        assertEquals(DAY, intervals.getDownTime(END - DAY / 2, DAY));
+        assertEquals(DAY / 2, intervals.getDownTime(END - DAY, DAY / 2));
+        assertEquals(0, intervals.getDownTime(END - 2 * DAY, DAY));
+        assertEquals(0, intervals.getDownTime(END + DAY, DAY / 2));
+        assertEquals(3 * DAY / 2, intervals.getDownTime(END, 10 * DAY));
+    }
+
+    @Test
+    public void testOpenOutage() {
+        final OutageIntervals intervals = OutageIntervals.builder().add(END - DAY / 4, -1).build();
+
+        assertEquals(DAY / 4, intervals.getDownTime(END, DAY));
+        assertEquals(DAY, intervals.getDownTime(END + DAY, DAY));
+        assertEquals(0, intervals.getDownTime(END - DAY / 4, DAY));
+    }
+
+    @Test
+    public void testOverlappingOutagesAreCountedEach() {
+        final OutageIntervals intervals = OutageIntervals.builder()
+                .add(END - DAY, END)
+                .add(END - DAY / 2, END)
+                .add(END - 3 * DAY, -1)
+                .build();
+
+        assertEquals(3, intervals.size());
+        assertEquals(DAY + DAY / 2 + DAY, intervals.getDownTime(END, DAY));
+    }
+
+    @Test
+    public void testIgnoresInvalidOutages() {
+        final OutageIntervals intervals = OutageIntervals.builder().add(END, END - DAY).build();
+
+        assertEquals(0, intervals.size());
+        assertEquals(0, intervals.getDownTime(END, DAY));
+        assertEquals(0, OutageIntervals.builder().build().getDownTime(END, DAY));
+    }
+
+    @Test
+    public void testMatchesServiceOutages() {
+        final List<Node> nodes = new SyntheticOutages(42).withOutagesPerService(25).generate(50, END);
+        for (final Node node : nodes) {
+            for (final Interface intf : node.getInterfaces()) {
+                for (final Service service : intf.getServices()) {
+                    final OutageIntervals intervals = OutageIntervals.builder().add(service).build();
+                    for (long window : new long[] { DAY / 3, DAY, 31 * DAY }) {
+                        for (long time = END; time > END - 400 * DAY; time -= DAY - 7) {
+                            assertEquals(service.getDownTime(time, window), intervals.getDownTime(time, window));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesNodeOutages() {
+        final List<Node> nodes = new SyntheticOutages(7).withOpenRatio(0.1).generate(500, END);
+        final OutageIntervals.Builder builder = OutageIntervals.builder();
+        nodes.forEach(builder::add);
+        final OutageIntervals intervals = builder.build();
+
+        for (long window : new long[] { DAY, 30 * DAY }) {
+            for (long time = END; time > END - 400 * DAY; time -= DAY) {
+                long outage = 0;
+                for (final Node node : nodes) {
+                    outage += node.getOutage(time, window);
+                }
+                assertEquals(outage, intervals.getDownTime(time, window));
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.reporting.datablock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates nodes with random outages for testing and benchmarking the
+ * availability calculations.
+ *
+ * Outages are spread over a period ending at a given time. Some of them are
+ * still open, some overlap and some start before or end after the period.
+ */
+public class SyntheticOutages {
+
+    public static final long DAY = 86400000L;
+
+    private final Random m_random;
+
+    private int m_interfacesPerNode = 2;
+
+    private int m_servicesPerInterface = 3;
+
+    private int m_outagesPerService = 10;
+
+    private long m_period = 400 * DAY;
+
+    private double m_openRatio = 0.02;
+
+    public SyntheticOutages(final long seed) {
+        m_random = new Random(seed);
+    }
+
+    public SyntheticOutages withInterfacesPerNode(final int interfacesPerNode) {
+        m_interfacesPerNode = interfacesPerNode;
+        return this;
+    }
+
+    public SyntheticOutages withServicesPerInterface(final int servicesPerInterface) {
+        m_servicesPerInterface = servicesPerInterface;
+        return this;
+    }
+
+    public SyntheticOutages withOutagesPerService(final int outagesPerService) {
+        m_outagesPerService = outagesPerService;
+        return this;
+    }
+
+    public SyntheticOutages withPeriod(final long period) {
+        m_period = period;
+        return this;
+    }
+
+    public SyntheticOutages withOpenRatio(final double openRatio) {
+        m_openRatio = openRatio;
+        return this;
+    }
+
+    /**
+     * Generates nodes with outages before the given time.
+     *
+     * @param nodeCount the number of nodes
+     * @param endTime the end of the period
+     * @return the nodes
+     */
+    public List<Node> generate(final int nodeCount, final long endTime) {
+        final List<Node> nodes = new ArrayList<>(nodeCount);
+        for (int n = 1; n <= nodeCount; n++) {
+            final Node node = new Node("node" + n, n);
+            for (int i = 0; i < m_interfacesPerNode; i++) {
+                final String intf = "10." + (n >> 16 & 0xff) + "." + (n >> 8 & 0xff) + "." + (n & 0xff) + "/" + i;
+                for (int s = 0; s < m_servicesPerInterface; s++) {
+                    final String service = "SVC" + s;
+                    // Nodes without outages still count their services
+                    node.addInterface(intf, service);
+                    for (int o = 0; o < m_outagesPerService; o++) {
+                        addOutage(node, intf, service, endTime);
+                    }
+                }
+            }
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    private void addOutage(final Node node, final String intf, final String service, final long endTime) {
+        // Start up to a month before the period and last from a second up to a few days
+        final long lost = endTime - (long) (m_random.nextDouble() * (m_period + 30 * DAY));
+        final double r = m_random.nextDouble();
+        if (r < m_openRatio) {
+            node.addInterface(intf, service, lost);
+            return;
+        }
+        final long duration;
+        if (r < 0.5) {
+            duration = 1000L + m_random.nextInt(3600000);
+        } else if (r < 0.9) {
+            duration = 1000L + (long) (m_random.nextDouble() * DAY);
+        } else {
+            duration = 1000L + (long) (m_random.nextDouble() * 5 * DAY);
+        }
+        node.addInterface(intf, service, lost, lost + duration);
+    }
+}
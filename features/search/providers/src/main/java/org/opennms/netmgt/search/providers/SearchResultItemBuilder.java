@@ -28,6 +28,7 @@ import org.opennms.core.mate.api.Interpolator;
 import org.opennms.netmgt.model.OnmsNode;
 import org.opennms.netmgt.search.api.Match;
 import org.opennms.netmgt.search.api.SearchResultItem;
+import org.opennms.netmgt.search.providers.index.NodeDocument;
 
 import com.google.common.collect.ImmutableMap;
 
@@ -58,6 +59,27 @@ public class SearchResultItemBuilder {
         return this;
     }
 
+    public SearchResultItemBuilder withNodeDocument(final NodeDocument document, final EntityScopeProvider entityScopeProvider) {
+        Objects.requireNonNull(document);
+
+        searchResultItem.setIdentifier(Integer.toString(document.getId()));
+        searchResultItem.setUrl("element/node.jsp?node=" + document.getId());
+        searchResultItem.setLabel(document.getLabel());
+        searchResultItem.setInfo(Interpolator.interpolate(CUSTOM_INFO, entityScopeProvider.getScopeForNode(document.getId())).output);
+
+        final var properties = ImmutableMap.<String, String>builder()
+                .put("label", document.getLabel());
+        if (document.getForeignId() != null) {
+            properties.put("foreignId", document.getForeignId());
+        }
+        if (document.getForeignSource() != null) {
+            properties.put("foreignSource", document.getForeignSource());
+        }
+        searchResultItem.setProperties(properties.build());
+
+        return this;
+    }
+
     public SearchResultItemBuilder withMatch(String id, String label, String value) {
         searchResultItem.addMatch(new Match(id, label, value));
         return this;
@@ -0,0 +1,183 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.search.providers.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.model.OnmsCategory;
+import org.opennms.netmgt.model.OnmsIpInterface;
+import org.opennms.netmgt.model.OnmsMetaData;
+import org.opennms.netmgt.model.OnmsNode;
+import org.opennms.netmgt.search.api.Match;
+import org.opennms.netmgt.search.api.Matcher;
+import org.opennms.netmgt.search.providers.node.NodeAssetSearchProvider;
+
+/**
+ * The searchable values of a node.
+ *
+ * Documents are immutable snapshots taken from the node entity so that they can be indexed and queried without a
+ * session.
+ */
+public class NodeDocument {
+
+    /**
+     * Meta-data with keys matching this pattern is never indexed.
+     */
+    public static final Pattern SECRET_META_DATA_KEY = Pattern.compile(".*([pP]assword|[sS]ecret).*");
+
+    public enum Kind {
+        LABEL,
+        FOREIGN_SOURCE,
+        FOREIGN_ID,
+        LOCATION,
+        IP_ADDRESS,
+        CATEGORY,
+        ASSET,
+        META_DATA
+    }
+
+    public static class Field {
+        private final Kind kind;
+        private final String id;
+        private final String label;
+        private final String value;
+        private final String lowerCaseValue;
+
+        public Field(final Kind kind, final String id, final String label, final String value) {
+            this.kind = Objects.requireNonNull(kind);
+            this.id = Objects.requireNonNull(id);
+            this.label = Objects.requireNonNull(label);
+            this.value = Objects.requireNonNull(value);
+            this.lowerCaseValue = value.toLowerCase(Locale.ROOT);
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        String getLowerCaseValue() {
+            return lowerCaseValue;
+        }
+
+        public Match toMatch() {
+            return new Match(id, label, value);
+        }
+
+        @Override
+        public String toString() {
+            return kind + "[" + id + "=" + value + "]";
+        }
+    }
+
+    private final int id;
+    private final String label;
+    private final String foreignSource;
+    private final String foreignId;
+    private final List<Field> fields;
+
+    public NodeDocument(final int id, final String label, final String foreignSource, final String foreignId, final List<Field> fields) {
+        this.id = id;
+        this.label = label;
+        this.foreignSource = foreignSource;
+        this.foreignId = foreignId;
+        this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+    }
+
+    /**
+     * Takes a snapshot of the searchable values of the given node.
+     *
+     * Must be called within a transaction as the interfaces, categories, assets and meta-data are loaded lazily.
+     *
+     * @param node the node
+     * @return the document of the node
+     */
+    public static NodeDocument from(final OnmsNode node) {
+        final List<Field> fields = new ArrayList<>();
+        add(fields, Kind.LABEL, "label", "Node Label", node.getLabel());
+        add(fields, Kind.FOREIGN_SOURCE, "foreignSource", "Foreign Source", node.getForeignSource());
+        add(fields, Kind.FOREIGN_ID, "foreignId", "Foreign ID", node.getForeignId());
+        if (node.getLocation() != null) {
+            add(fields, Kind.LOCATION, "location.name", "Node Location", node.getLocation().getLocationName());
+        }
+        for (final OnmsIpInterface ipInterface : node.getIpInterfaces()) {
+            if (ipInterface.getIpAddress() != null) {
+                add(fields, Kind.IP_ADDRESS, "ipInterface.ipAddress", "IP Address", InetAddressUtils.str(ipInterface.getIpAddress()));
+            }
+        }
+        for (final OnmsCategory category : node.getCategories()) {
+            add(fields, Kind.CATEGORY, "category.name", "Category", category.getName());
+        }
+        if (node.getAssetRecord() != null) {
+            for (final Matcher matcher : NodeAssetSearchProvider.getAssetMatchers(node.getAssetRecord())) {
+                add(fields, Kind.ASSET, matcher.getLabel(), matcher.getLabel(), matcher.getValue());
+            }
+        }
+        for (final OnmsMetaData metaData : node.getMetaData()) {
+            if (!SECRET_META_DATA_KEY.matcher(metaData.getKey()).matches()) {
+                final String key = metaData.getContext() + ":" + metaData.getKey();
+                add(fields, Kind.META_DATA, key, "Meta-Data '" + key + "'", metaData.getValue());
+            }
+        }
+        return new NodeDocument(node.getId(), node.getLabel(), node.getForeignSource(), node.getForeignId(), fields);
+    }
+
+    private static void add(final List<Field> fields, final Kind kind, final String id, final String label, final String value) {
+        if (value != null && !value.isEmpty()) {
+            fields.add(new Field(kind, id, label, value));
+        }
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getForeignSource() {
+        return foreignSource;
+    }
+
+    public String getForeignId() {
+        return foreignId;
+    }
+
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    @Override
+    public String toString() {
+        return "NodeDocument[id=" + id + ", label=" + label + ", fields=" + fields + "]";
+    }
+}
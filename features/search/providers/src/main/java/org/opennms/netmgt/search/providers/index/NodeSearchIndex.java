@@ -0,0 +1,521 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.search.providers.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.opennms.netmgt.search.api.Contexts;
+import org.opennms.netmgt.search.api.SearchResult;
+import org.opennms.netmgt.search.api.SearchResultItem;
+
+import org.opennms.netmgt.search.providers.index.NodeDocument.Field;
+import org.opennms.netmgt.search.providers.index.NodeDocument.Kind;
+
+/**
+ * An in-memory trigram index over the searchable values of all nodes.
+ *
+ * For every kind of value the index keeps the sorted ids of the nodes containing each trigram of the lower-cased
+ * value. A query intersects the postings of the trigrams of its input to find the candidate nodes, then verifies
+ * the candidates against the values of their documents. Inputs shorter than a trigram are verified against all
+ * documents. The number of matching nodes is therefore exact and the results can be ranked before they are
+ * limited.
+ *
+ * Queries never block. Updates and rebuilds are serialized.
+ */
+public class NodeSearchIndex {
+
+    /**
+     * How a value must match the input of a query.
+     */
+    public enum Mode {
+        /**
+         * The value contains the input, ignoring the case.
+         */
+        CONTAINS_IGNORE_CASE,
+        /**
+         * The value contains the input.
+         */
+        CONTAINS,
+        /**
+         * The value is equal to the input.
+         */
+        EQUALS
+    }
+
+    /**
+     * A node matching a query.
+     */
+    public static class Hit {
+        private final NodeDocument document;
+        private final List<Field> fields;
+        private final int score;
+
+        private Hit(final NodeDocument document, final List<Field> fields, final int score) {
+            this.document = document;
+            this.fields = fields;
+            this.score = score;
+        }
+
+        public NodeDocument getDocument() {
+            return document;
+        }
+
+        /**
+         * @return the values of the node which matched the query, in the order of the document
+         */
+        public List<Field> getFields() {
+            return fields;
+        }
+
+        /**
+         * @return 3 if a value is equal to the input, 2 if a value starts with the input and 1 otherwise
+         */
+        public int getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * The ranked nodes matching a query.
+     */
+    public static class Hits {
+        private final int totalCount;
+        private final List<Hit> hits;
+
+        private Hits(final int totalCount, final List<Hit> hits) {
+            this.totalCount = totalCount;
+            this.hits = hits;
+        }
+
+        /**
+         * @return the number of nodes matching the query, regardless of the limit
+         */
+        public int getTotalCount() {
+            return totalCount;
+        }
+
+        /**
+         * @return the best matching nodes, up to the limit of the query
+         */
+        public List<Hit> getHits() {
+            return hits;
+        }
+
+        /**
+         * @param mapper converts each hit to the item shown to the user
+         * @return the node search result of the hits
+         */
+        public SearchResult toSearchResult(final Function<Hit, SearchResultItem> mapper) {
+            final List<SearchResultItem> items = hits.stream().map(mapper).collect(Collectors.toList());
+            return new SearchResult(Contexts.Node).withMore(totalCount > items.size()).withResults(items);
+        }
+    }
+
+    public class Query {
+        private final String input;
+        private final Map<Kind, Mode> kinds = new EnumMap<>(Kind.class);
+        private boolean matchId = false;
+        private int limit = Integer.MAX_VALUE;
+
+        private Query(final String input) {
+            this.input = Objects.requireNonNull(input);
+        }
+
+        public Query match(final Kind kind, final Mode mode) {
+            kinds.put(kind, mode);
+            return this;
+        }
+
+        public Query match(final Kind kind) {
+            return match(kind, Mode.CONTAINS_IGNORE_CASE);
+        }
+
+        /**
+         * Also matches the node whose id is equal to the input.
+         */
+        public Query matchId() {
+            matchId = true;
+            return this;
+        }
+
+        public Query limit(final int limit) {
+            this.limit = limit;
+            return this;
+        }
+
+        public Hits execute() {
+            return NodeSearchIndex.this.execute(this);
+        }
+    }
+
+    private static final Comparator<Hit> RANKING = Comparator.comparingInt(Hit::getScore).reversed()
+            .thenComparing(hit -> hit.getDocument().getLabel(), Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+            .thenComparingInt(hit -> hit.getDocument().getId());
+
+    private static final int[] EMPTY = new int[0];
+
+    /**
+     * The documents and postings, replaced as a whole on rebuild.
+     */
+    private static class State {
+        private final Map<Integer, NodeDocument> documents;
+        private final Map<Kind, Map<Long, int[]>> postings = new EnumMap<>(Kind.class);
+
+        private State(final Map<Integer, NodeDocument> documents) {
+            this.documents = documents;
+            for (final Kind kind : Kind.values()) {
+                postings.put(kind, new ConcurrentHashMap<>());
+            }
+        }
+    }
+
+    private volatile State state = new State(new ConcurrentHashMap<>());
+
+    private volatile boolean ready = false;
+
+    private final Object writeLock = new Object();
+
+    /**
+     * @return true once the index was built
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return the number of indexed nodes
+     */
+    public int size() {
+        return state.documents.size();
+    }
+
+    public NodeDocument get(final int id) {
+        return state.documents.get(id);
+    }
+
+    /**
+     * Replaces the content of the index.
+     *
+     * @param documents the documents of all nodes
+     */
+    public void rebuild(final Collection<NodeDocument> documents) {
+        final State next = new State(new ConcurrentHashMap<>(Math.max(16, documents.size() * 4 / 3)));
+        final Map<Kind, Map<Long, IntList>> postings = new EnumMap<>(Kind.class);
+        for (final NodeDocument document : documents) {
+            next.documents.put(document.getId(), document);
+            trigrams(document).forEach((kind, trigrams) -> {
+                final Map<Long, IntList> kindPostings = postings.computeIfAbsent(kind, k -> new HashMap<>());
+                for (final long trigram : trigrams) {
+                    kindPostings.computeIfAbsent(trigram, t -> new IntList()).add(document.getId());
+                }
+            });
+        }
+        postings.forEach((kind, kindPostings) -> {
+            final Map<Long, int[]> target = next.postings.get(kind);
+            kindPostings.forEach((trigram, ids) -> target.put(trigram, ids.toSortedArray()));
+        });
+
+        synchronized (writeLock) {
+            state = next;
+            ready = true;
+        }
+    }
+
+    /**
+     * Adds or replaces the document of a node.
+     *
+     * @param document the document
+     */
+    public void update(final NodeDocument document) {
+        synchronized (writeLock) {
+            final State current = state;
+            final NodeDocument previous = current.documents.put(document.getId(), document);
+            final Map<Kind, Set<Long>> before = previous != null ? trigrams(previous) : Collections.emptyMap();
+            final Map<Kind, Set<Long>> after = trigrams(document);
+            for (final Kind kind : Kind.values()) {
+                final Set<Long> removed = new HashSet<>(before.getOrDefault(kind, Collections.emptySet()));
+                final Set<Long> added = new HashSet<>(after.getOrDefault(kind, Collections.emptySet()));
+                removed.removeAll(after.getOrDefault(kind, Collections.emptySet()));
+                added.removeAll(before.getOrDefault(kind, Collections.emptySet()));
+                final Map<Long, int[]> postings = current.postings.get(kind);
+                for (final Long trigram : removed) {
+                    postings.computeIfPresent(trigram, (t, ids) -> without(ids, document.getId()));
+                }
+                for (final Long trigram : added) {
+                    postings.compute(trigram, (t, ids) -> with(ids != null ? ids : EMPTY, document.getId()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the document of a node.
+     *
+     * @param id the id of the node
+     */
+    public void remove(final int id) {
+        synchronized (writeLock) {
+            final State current = state;
+            final NodeDocument previous = current.documents.remove(id);
+            if (previous == null) {
+                return;
+            }
+            trigrams(previous).forEach((kind, trigrams) -> {
+                final Map<Long, int[]> postings = current.postings.get(kind);
+                for (final Long trigram : trigrams) {
+                    postings.computeIfPresent(trigram, (t, ids) -> without(ids, id));
+                }
+            });
+        }
+    }
+
+    /**
+     * Starts a query.
+     *
+     * @param input the text to search for
+     * @return the query, matching no values until kinds are added
+     */
+    public Query query(final String input) {
+        return new Query(input);
+    }
+
+    private Hits execute(final Query query) {
+        final State current = state;
+        final String input = query.input;
+        final String lowerCaseInput = input.toLowerCase(Locale.ROOT);
+
+        final PriorityQueue<Hit> top = new PriorityQueue<>(RANKING.reversed());
+        int totalCount = 0;
+
+        NodeDocument idMatch = null;
+        if (query.matchId) {
+            try {
+                idMatch = current.documents.get(Integer.parseInt(input));
+            } catch (final NumberFormatException e) {
+                // not an id
+            }
+        }
+
+        final Iterable<NodeDocument> candidates;
+        if (lowerCaseInput.length() < 3) {
+            candidates = current.documents.values();
+        } else {
+            final BitSet ids = new BitSet();
+            final long[] trigrams = trigrams(lowerCaseInput).stream().mapToLong(Long::longValue).toArray();
+            for (final Kind kind : query.kinds.keySet()) {
+                final int[] matching = intersect(current.postings.get(kind), trigrams);
+                for (final int id : matching) {
+                    ids.set(id);
+                }
+            }
+            if (idMatch != null) {
+                ids.set(idMatch.getId());
+            }
+            final List<NodeDocument> documents = new ArrayList<>(ids.cardinality());
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                final NodeDocument document = current.documents.get(id);
+                if (document != null) {
+                    documents.add(document);
+                }
+            }
+            candidates = documents;
+        }
+
+        for (final NodeDocument document : candidates) {
+            final Hit hit = verify(query, document, input, lowerCaseInput, document == idMatch);
+            if (hit == null) {
+                continue;
+            }
+            totalCount++;
+            if (query.limit <= 0) {
+                continue;
+            }
+            top.add(hit);
+            if (top.size() > query.limit) {
+                top.poll();
+            }
+        }
+
+        final List<Hit> hits = new ArrayList<>(top);
+        hits.sort(RANKING);
+        return new Hits(totalCount, hits);
+    }
+
+    private static Hit verify(final Query query, final NodeDocument document, final String input, final String lowerCaseInput, final boolean idMatch) {
+        List<Field> fields = null;
+        int score = idMatch ? 3 : 0;
+        for (final Field field : document.getFields()) {
+            final Mode mode = query.kinds.get(field.getKind());
+            if (mode == null) {
+                continue;
+            }
+            final int fieldScore = score(mode, field, input, lowerCaseInput);
+            if (fieldScore > 0) {
+                if (fields == null) {
+                    fields = new ArrayList<>(2);
+                }
+                fields.add(field);
+                score = Math.max(score, fieldScore);
+            }
+        }
+        if (score == 0) {
+            return null;
+        }
+        return new Hit(document, fields != null ? fields : Collections.emptyList(), score);
+    }
+
+    private static int score(final Mode mode, final Field field, final String input, final String lowerCaseInput) {
+        switch (mode) {
+            case EQUALS:
+                return field.getValue().equals(input) ? 3 : 0;
+            case CONTAINS:
+                if (!field.getValue().contains(input)) {
+                    return 0;
+                }
+                break;
+            case CONTAINS_IGNORE_CASE:
+            default:
+                if (!field.getLowerCaseValue().contains(lowerCaseInput)) {
+                    return 0;
+                }
+                break;
+        }
+        if (field.getLowerCaseValue().equals(lowerCaseInput)) {
+            return 3;
+        }
+        return field.getLowerCaseValue().startsWith(lowerCaseInput) ? 2 : 1;
+    }
+
+    private static int[] intersect(final Map<Long, int[]> postings, final long[] trigrams) {
+        final int[][] lists = new int[trigrams.length][];
+        for (int i = 0; i < trigrams.length; i++) {
+            lists[i] = postings.get(trigrams[i]);
+            if (lists[i] == null) {
+                return EMPTY;
+            }
+        }
+        // Start with the shortest list to keep the intermediate results small
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.length));
+        int[] result = lists[0];
+        for (int i = 1; i < lists.length && result.length > 0; i++) {
+            result = intersect(result, lists[i]);
+        }
+        return result;
+    }
+
+    private static int[] intersect(final int[] a, final int[] b) {
+        final int[] result = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        int j = 0;
+        for (int i = 0; i < a.length && j < b.length; i++) {
+            while (j < b.length && b[j] < a[i]) {
+                j++;
+            }
+            if (j < b.length && b[j] == a[i]) {
+                result[n++] = a[i];
+                j++;
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    private static int[] with(final int[] ids, final int id) {
+        final int index = Arrays.binarySearch(ids, id);
+        if (index >= 0) {
+            return ids;
+        }
+        final int insert = -index - 1;
+        final int[] result = new int[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, insert);
+        result[insert] = id;
+        System.arraycopy(ids, insert, result, insert + 1, ids.length - insert);
+        return result;
+    }
+
+    private static int[] without(final int[] ids, final int id) {
+        final int index = Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            return ids;
+        }
+        if (ids.length == 1) {
+            // Removes the mapping
+            return null;
+        }
+        final int[] result = new int[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, index);
+        System.arraycopy(ids, index + 1, result, index, ids.length - index - 1);
+        return result;
+    }
+
+    private static Map<Kind, Set<Long>> trigrams(final NodeDocument document) {
+        final Map<Kind, Set<Long>> trigrams = new EnumMap<>(Kind.class);
+        for (final Field field : document.getFields()) {
+            if (field.getLowerCaseValue().length() >= 3) {
+                trigrams.computeIfAbsent(field.getKind(), k -> new HashSet<>()).addAll(trigrams(field.getLowerCaseValue()));
+            }
+        }
+        return trigrams;
+    }
+
+    private static Set<Long> trigrams(final String value) {
+        final Set<Long> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= value.length(); i++) {
+            trigrams.add(((long) value.charAt(i) << 32) | ((long) value.charAt(i + 1) << 16) | value.charAt(i + 2));
+        }
+        return trigrams;
+    }
+
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size = 0;
+
+        private void add(final int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private int[] toSortedArray() {
+            final int[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.search.providers.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.opennms.core.criteria.CriteriaBuilder;
+import org.opennms.netmgt.dao.api.NodeDao;
+import org.opennms.netmgt.dao.api.SessionUtils;
+import org.opennms.netmgt.events.api.EventConstants;
+import org.opennms.netmgt.events.api.EventListener;
+import org.opennms.netmgt.events.api.EventSubscriptionService;
+import org.opennms.netmgt.events.api.model.IEvent;
+import org.opennms.netmgt.events.api.model.IParm;
+import org.opennms.netmgt.model.OnmsNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Builds the {@link NodeSearchIndex} on start and keeps it current by re-indexing the nodes referenced by node,
+ * interface, category and asset events.
+ *
+ * The index is only maintained if the {@value #INDEX_SYS_PROP} system property is set to true, otherwise the
+ * providers keep querying the database. Building and updating is performed on a single thread, so updates are
+ * applied in the order the events were received and never race with the initial build.
+ */
+public class NodeSearchIndexUpdater implements EventListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NodeSearchIndexUpdater.class);
+
+    protected static final String INDEX_SYS_PROP = "org.opennms.netmgt.search.index";
+
+    protected static final String PAGE_SIZE_SYS_PROP = "org.opennms.netmgt.search.index.pageSize";
+
+    private static final List<String> UEIS = ImmutableList.of(
+            EventConstants.NODE_ADDED_EVENT_UEI,
+            EventConstants.NODE_UPDATED_EVENT_UEI,
+            EventConstants.NODE_DELETED_EVENT_UEI,
+            EventConstants.DUP_NODE_DELETED_EVENT_UEI,
+            EventConstants.NODE_LABEL_CHANGED_EVENT_UEI,
+            EventConstants.NODE_LOCATION_CHANGED_EVENT_UEI,
+            EventConstants.NODE_CATEGORY_MEMBERSHIP_CHANGED_EVENT_UEI,
+            EventConstants.NODE_GAINED_INTERFACE_EVENT_UEI,
+            EventConstants.INTERFACE_DELETED_EVENT_UEI,
+            EventConstants.INTERFACE_REPARENTED_EVENT_UEI,
+            EventConstants.ASSET_INFO_CHANGED_EVENT_UEI);
+
+    private final NodeSearchIndex index;
+    private final NodeDao nodeDao;
+    private final SessionUtils sessionUtils;
+    private final EventSubscriptionService eventSubscriptionService;
+    private final int pageSize;
+    private final boolean enabled;
+
+    private ExecutorService executor;
+
+    public NodeSearchIndexUpdater(final NodeSearchIndex index, final NodeDao nodeDao, final SessionUtils sessionUtils, final EventSubscriptionService eventSubscriptionService) {
+        this.index = Objects.requireNonNull(index);
+        this.nodeDao = Objects.requireNonNull(nodeDao);
+        this.sessionUtils = Objects.requireNonNull(sessionUtils);
+        this.eventSubscriptionService = Objects.requireNonNull(eventSubscriptionService);
+        this.pageSize = Math.max(1, Integer.getInteger(PAGE_SIZE_SYS_PROP, 1000));
+        this.enabled = Boolean.getBoolean(INDEX_SYS_PROP);
+    }
+
+    public void start() {
+        if (!enabled) {
+            LOG.debug("The node search index is disabled, searches will query the database.");
+            return;
+        }
+        executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("search-index-updater")
+                .setDaemon(true)
+                .build());
+        // Subscribe first, so no change is missed while the index is built
+        eventSubscriptionService.addEventListener(this, UEIS);
+        executor.execute(this::rebuild);
+    }
+
+    public void stop() {
+        if (executor == null) {
+            return;
+        }
+        eventSubscriptionService.removeEventListener(this, UEIS);
+        executor.shutdownNow();
+        executor = null;
+    }
+
+    @Override
+    public String getName() {
+        return getClass().getSimpleName();
+    }
+
+    @Override
+    public void onEvent(final IEvent event) {
+        final ExecutorService executor = this.executor;
+        if (executor == null || event.getNodeid() == null) {
+            return;
+        }
+        final int nodeId = event.getNodeid().intValue();
+        final Integer oldNodeId = getOldNodeId(event);
+        executor.execute(() -> {
+            if (EventConstants.NODE_DELETED_EVENT_UEI.equals(event.getUei())
+                    || EventConstants.DUP_NODE_DELETED_EVENT_UEI.equals(event.getUei())) {
+                index.remove(nodeId);
+            } else {
+                update(nodeId);
+            }
+            if (oldNodeId != null) {
+                update(oldNodeId);
+            }
+        });
+    }
+
+    /**
+     * Loads all nodes in pages ordered by id and replaces the content of the index.
+     */
+    protected void rebuild() {
+        final long start = System.currentTimeMillis();
+        try {
+            final List<NodeDocument> documents = new ArrayList<>();
+            int lastId = 0;
+            while (true) {
+                final int afterId = lastId;
+                final List<NodeDocument> page = sessionUtils.withReadOnlyTransaction(() -> {
+                    final List<NodeDocument> result = new ArrayList<>(pageSize);
+                    for (final OnmsNode node : nodeDao.findMatching(new CriteriaBuilder(OnmsNode.class)
+                            .gt("id", afterId)
+                            .orderBy("id")
+                            .limit(pageSize)
+                            .toCriteria())) {
+                        result.add(NodeDocument.from(node));
+                    }
+                    return result;
+                });
+                if (page.isEmpty()) {
+                    break;
+                }
+                documents.addAll(page);
+                lastId = page.get(page.size() - 1).getId();
+            }
+            index.rebuild(documents);
+            LOG.info("Indexed {} nodes for search in {}ms.", documents.size(), System.currentTimeMillis() - start);
+        } catch (final Exception e) {
+            LOG.error("Failed to build the node search index, searches will query the database.", e);
+        }
+    }
+
+    private void update(final int nodeId) {
+        try {
+            final NodeDocument document = sessionUtils.withReadOnlyTransaction(() -> {
+                final OnmsNode node = nodeDao.get(nodeId);
+                return node != null ? NodeDocument.from(node) : null;
+            });
+            if (document != null) {
+                index.update(document);
+            } else {
+                index.remove(nodeId);
+            }
+        } catch (final Exception e) {
+            LOG.warn("Failed to update node {} in the search index.", nodeId, e);
+        }
+    }
+
+    private static Integer getOldNodeId(final IEvent event) {
+        if (!EventConstants.INTERFACE_REPARENTED_EVENT_UEI.equals(event.getUei())) {
+            return null;
+        }
+        final IParm parm = event.getParm(EventConstants.PARM_OLD_NODEID);
+        if (parm == null || parm.getValue() == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(parm.getValue().getContent());
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -47,6 +47,8 @@ import org.opennms.netmgt.search.api.SearchResult;
 import org.opennms.netmgt.search.api.SearchResultItem;
 import org.opennms.netmgt.search.api.QueryUtils;
 import org.opennms.netmgt.search.providers.SearchResultItemBuilder;
+import org.opennms.netmgt.search.providers.index.NodeDocument.Kind;
+import org.opennms.netmgt.search.providers.index.NodeSearchIndex;
 
 import com.google.common.collect.Lists;
 
@@ -54,10 +56,16 @@ public class NodeAssetSearchProvider implements SearchProvider {
 
     private final NodeDao nodeDao;
     private final EntityScopeProvider entityScopeProvider;
+    private final NodeSearchIndex index;
 
     public NodeAssetSearchProvider(final NodeDao nodeDao, final EntityScopeProvider entityScopeProvider) {
+        this(nodeDao, entityScopeProvider, null);
+    }
+
+    public NodeAssetSearchProvider(final NodeDao nodeDao, final EntityScopeProvider entityScopeProvider, final NodeSearchIndex index) {
         this.nodeDao = Objects.requireNonNull(nodeDao);
         this.entityScopeProvider = Objects.requireNonNull(entityScopeProvider);
+        this.index = index;
     }
 
     @Override
@@ -68,6 +76,17 @@ public class NodeAssetSearchProvider implements SearchProvider {
     @Override
     public SearchResult query(SearchQuery query) {
         final String input = query.getInput();
+        if (index != null && index.isReady()) {
+            return index.query(input)
+                    .match(Kind.ASSET)
+                    .limit(query.getMaxResults())
+                    .execute()
+                    .toSearchResult(hit -> {
+                        final SearchResultItem result = new SearchResultItemBuilder().withNodeDocument(hit.getDocument(), entityScopeProvider).build();
+                        hit.getFields().forEach(field -> result.addMatch(field.toMatch()));
+                        return result;
+                    });
+        }
         final CriteriaBuilder criteriaBuilder = new CriteriaBuilder(OnmsNode.class)
             .alias("assetRecord", "assetRecord")
             .and(
@@ -130,63 +149,69 @@ public class NodeAssetSearchProvider implements SearchProvider {
         final List<SearchResultItem> results = matchingNodes.stream()
             .map(node -> {
                 final SearchResultItem result = new SearchResultItemBuilder().withOnmsNode(node, entityScopeProvider).build();
-                final OnmsAssetRecord record = node.getAssetRecord();
-                final List<Matcher> matcherList = Lists.newArrayList(
-                        new Matcher("Category", record.getCategory()),
-                        new Matcher("ManuFacturer", record.getManufacturer()),
-                        new Matcher("Vendor", record.getVendor()),
-                        new Matcher("Model Number", record.getModelNumber()),
-                        new Matcher("Serial Number", record.getSerialNumber()),
-                        new Matcher("Description", record.getDescription()),
-                        new Matcher("Circuit Id", record.getCircuitId()),
-                        new Matcher("Asset Number", record.getAssetNumber()),
-                        new Matcher("OS", record.getOperatingSystem()),
-                        new Matcher("Rack", record.getRack()),
-                        new Matcher("Slot", record.getSlot()),
-                        new Matcher("Port", record.getPort()),
-                        new Matcher("Region", record.getRegion()),
-                        new Matcher("Division", record.getDivision()),
-                        new Matcher("Department", record.getDepartment()),
-                        new Matcher("Building", record.getBuilding()),
-                        new Matcher("Floor", record.getFloor()),
-                        new Matcher("Room", record.getRoom()),
-                        new Matcher("Vendor Phone", record.getVendorPhone()),
-                        new Matcher("Vendor Fax", record.getVendorFax()),
-                        new Matcher("Vendor Asset Number", record.getVendorAssetNumber()),
-                        new Matcher("Username", record.getUsername()),
-                        new Matcher("Connection", record.getConnection()),
-                        new Matcher("Lease", record.getLease()),
-                        new Matcher("Lease Expires", record.getLeaseExpires()),
-                        new Matcher("Support Phone", record.getSupportPhone()),
-                        new Matcher("Maint. Contract Expiration", record.getMaintContractExpiration()),
-                        new Matcher("Maint. Contract", record.getMaintcontract()),
-                        new Matcher("Display Category", record.getDisplayCategory()),
-                        new Matcher("Poller Category", record.getPollerCategory()),
-                        new Matcher("Threshold Category", record.getThresholdCategory()),
-                        new Matcher("Comment", record.getComment()),
-                        new Matcher("CPU", record.getCpu()),
-                        new Matcher("Ram", record.getRam()),
-                        new Matcher("HDD1", record.getHdd1()),
-                        new Matcher("HDD2", record.getHdd2()),
-                        new Matcher("HDD3", record.getHdd3()),
-                        new Matcher("HDD4", record.getHdd4()),
-                        new Matcher("HDD5", record.getHdd5()),
-                        new Matcher("HDD6", record.getHdd6()),
-                        new Matcher("# Power Supplies", record.getNumpowersupplies()),
-                        new Matcher("Input Power", record.getInputpower()),
-                        new Matcher("Additional Hardware", record.getAdditionalhardware()),
-                        new Matcher("admin", record.getAdmin()),
-                        new Matcher("SNMP Community", record.getSnmpcommunity()),
-                        new Matcher("RU Height", record.getRackunitheight()),
-                        new Matcher("Managed Object Type", record.getManagedObjectType()),
-                        new Matcher("Managed Object Instance", record.getManagedObjectInstance()),
-                        new Matcher("Storage Controller", record.getStoragectrl())
-                );
-                result.addMatches(matcherList, input);
+                result.addMatches(getAssetMatchers(node.getAssetRecord()), input);
                 return result;
             })
             .collect(Collectors.toList());
         final SearchResult searchResult = new SearchResult(Contexts.Node).withMore(totalCount > results.size()).withResults(results);
         return searchResult;
     }
+
+    /**
+     * @param record the asset record of a node
+     * @return the searchable asset fields of the record, labeled as shown to the user
+     */
+    public static List<Matcher> getAssetMatchers(final OnmsAssetRecord record) {
+        return Lists.newArrayList(
+                new Matcher("Category", record.getCategory()),
+                new Matcher("ManuFacturer", record.getManufacturer()),
+                new Matcher("Vendor", record.getVendor()),
+                new Matcher("Model Number", record.getModelNumber()),
+                new Matcher("Serial Number", record.getSerialNumber()),
+                new Matcher("Description", record.getDescription()),
+                new Matcher("Circuit Id", record.getCircuitId()),
+                new Matcher("Asset Number", record.getAssetNumber()),
+                new Matcher("OS", record.getOperatingSystem()),
+                new Matcher("Rack", record.getRack()),
+                new Matcher("Slot", record.getSlot()),
+                new Matcher("Port", record.getPort()),
+                new Matcher("Region", record.getRegion()),
+                new Matcher("Division", record.getDivision()),
+                new Matcher("Department", record.getDepartment()),
+                new Matcher("Building", record.getBuilding()),
+                new Matcher("Floor", record.getFloor()),
+                new Matcher("Room", record.getRoom()),
+                new Matcher("Vendor Phone", record.getVendorPhone()),
+                new Matcher("Vendor Fax", record.getVendorFax()),
+                new Matcher("Vendor Asset Number", record.getVendorAssetNumber()),
+                new Matcher("Username", record.getUsername()),
+                new Matcher("Connection", record.getConnection()),
+                new Matcher("Lease", record.getLease()),
+                new Matcher("Lease Expires", record.getLeaseExpires()),
+                new Matcher("Support Phone", record.getSupportPhone()),
+                new Matcher("Maint. Contract Expiration", record.getMaintContractExpiration()),
+                new Matcher("Maint. Contract", record.getMaintcontract()),
+                new Matcher("Display Category", record.getDisplayCategory()),
+                new Matcher("Poller Category", record.getPollerCategory()),
+                new Matcher("Threshold Category", record.getThresholdCategory()),
+                new Matcher("Comment", record.getComment()),
+                new Matcher("CPU", record.getCpu()),
+                new Matcher("Ram", record.getRam()),
+                new Matcher("HDD1", record.getHdd1()),
+                new Matcher("HDD2", record.getHdd2()),
+                new Matcher("HDD3", record.getHdd3()),
+                new Matcher("HDD4", record.getHdd4()),
+                new Matcher("HDD5", record.getHdd5()),
+                new Matcher("HDD6", record.getHdd6()),
+                new Matcher("# Power Supplies", record.getNumpowersupplies()),
+                new Matcher("Input Power", record.getInputpower()),
+                new Matcher("Additional Hardware", record.getAdditionalhardware()),
+                new Matcher("admin", record.getAdmin()),
+                new Matcher("SNMP Community", record.getSnmpcommunity()),
+                new Matcher("RU Height", record.getRackunitheight()),
+                new Matcher("Managed Object Type", record.getManagedObjectType()),
+                new Matcher("Managed Object Instance", record.getManagedObjectInstance()),
+                new Matcher("Storage Controller", record.getStoragectrl())
+        );
+    }
 }
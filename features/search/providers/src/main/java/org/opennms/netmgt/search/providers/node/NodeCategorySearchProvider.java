@@ -46,15 +46,23 @@ import org.opennms.netmgt.search.api.SearchResult;
 import org.opennms.netmgt.search.api.SearchResultItem;
 import org.opennms.netmgt.search.api.QueryUtils;
 import org.opennms.netmgt.search.providers.SearchResultItemBuilder;
+import org.opennms.netmgt.search.providers.index.NodeDocument.Kind;
+import org.opennms.netmgt.search.providers.index.NodeSearchIndex;
 
 public class NodeCategorySearchProvider implements SearchProvider {
 
     private final NodeDao nodeDao;
     private final EntityScopeProvider entityScopeProvider;
+    private final NodeSearchIndex index;
 
     public NodeCategorySearchProvider(final NodeDao nodeDao, final EntityScopeProvider entityScopeProvider) {
+        this(nodeDao, entityScopeProvider, null);
+    }
+
+    public NodeCategorySearchProvider(final NodeDao nodeDao, final EntityScopeProvider entityScopeProvider, final NodeSearchIndex index) {
         this.nodeDao = Objects.requireNonNull(nodeDao);
         this.entityScopeProvider = Objects.requireNonNull(entityScopeProvider);
+        this.index = index;
     }
 
     @Override
@@ -65,6 +73,17 @@ public class NodeCategorySearchProvider implements SearchProvider {
     @Override
     public SearchResult query(final SearchQuery query) {
         final String input = query.getInput();
+        if (index != null && index.isReady()) {
+            return index.query(input)
+                    .match(Kind.CATEGORY)
+                    .limit(query.getMaxResults())
+                    .execute()
+                    .toSearchResult(hit -> {
+                        final SearchResultItem searchResultItem = new SearchResultItemBuilder().withNodeDocument(hit.getDocument(), entityScopeProvider).build();
+                        hit.getFields().forEach(field -> searchResultItem.addMatch(field.toMatch()));
+                        return searchResultItem;
+                    });
+        }
         final CriteriaBuilder criteriaBuilder = new CriteriaBuilder(OnmsNode.class)
                 .alias("categories", "categories", Alias.JoinType.INNER_JOIN)
                 .ilike("categories.name", QueryUtils.ilike(input))
@@ -47,15 +47,23 @@ import org.opennms.netmgt.search.api.SearchResult;
 import org.opennms.netmgt.search.api.SearchResultItem;
 import org.opennms.netmgt.search.api.QueryUtils;
 import org.opennms.netmgt.search.providers.SearchResultItemBuilder;
+import org.opennms.netmgt.search.providers.index.NodeDocument.Kind;
+import org.opennms.netmgt.search.providers.index.NodeSearchIndex;
 
 public class NodeIpSearchProvider implements SearchProvider {
 
     private final NodeDao nodeDao;
     private final EntityScopeProvider entityScopeProvider;
+    private final NodeSearchIndex index;
 
     public NodeIpSearchProvider(final NodeDao nodeDao, final EntityScopeProvider entityScopeProvider) {
+        this(nodeDao, entityScopeProvider, null);
+    }
+
+    public NodeIpSearchProvider(final NodeDao nodeDao, final EntityScopeProvider entityScopeProvider, final NodeSearchIndex index) {
         this.nodeDao = Objects.requireNonNull(nodeDao);
         this.entityScopeProvider = Objects.requireNonNull(entityScopeProvider);
+        this.index = index;
     }
 
     @Override
@@ -66,6 +74,17 @@ public class NodeIpSearchProvider implements SearchProvider {
     @Override
     public SearchResult query(final SearchQuery query) {
         final String input = query.getInput();
+        if (index != null && index.isReady()) {
+            return index.query(input)
+                    .match(Kind.IP_ADDRESS)
+                    .limit(query.getMaxResults())
+                    .execute()
+                    .toSearchResult(hit -> {
+                        final SearchResultItem searchResultItem = new SearchResultItemBuilder().withNodeDocument(hit.getDocument(), entityScopeProvider).build();
+                        hit.getFields().forEach(field -> searchResultItem.addMatch(field.toMatch()));
+                        return searchResultItem;
+                    });
+        }
         final CriteriaBuilder criteriaBuilder = new CriteriaBuilder(OnmsNode.class)
                 .alias("ipInterfaces", "ipInterfaces")
                 .ilike("ipInterfaces.ipAddress", QueryUtils.ilike(input))
@@ -48,6 +48,9 @@ import org.opennms.netmgt.search.api.SearchResult;
 import org.opennms.netmgt.search.api.SearchResultItem;
 import org.opennms.netmgt.search.api.QueryUtils;
 import org.opennms.netmgt.search.providers.SearchResultItemBuilder;
+import org.opennms.netmgt.search.providers.index.NodeDocument;
+import org.opennms.netmgt.search.providers.index.NodeDocument.Kind;
+import org.opennms.netmgt.search.providers.index.NodeSearchIndex;
 
 import com.google.common.collect.Lists;
 
@@ -55,10 +58,16 @@ public class NodeLabelSearchProvider implements SearchProvider {
 
     private final NodeDao nodeDao;
     private final EntityScopeProvider entityScopeProvider;
+    private final NodeSearchIndex index;
 
     public NodeLabelSearchProvider(final NodeDao nodeDao, final EntityScopeProvider entityScopeProvider) {
+        this(nodeDao, entityScopeProvider, null);
+    }
+
+    public NodeLabelSearchProvider(final NodeDao nodeDao, final EntityScopeProvider entityScopeProvider, final NodeSearchIndex index) {
         this.nodeDao = Objects.requireNonNull(nodeDao);
         this.entityScopeProvider = Objects.requireNonNull(entityScopeProvider);
+        this.index = index;
     }
 
     @Override
@@ -69,6 +78,33 @@ public class NodeLabelSearchProvider implements SearchProvider {
     @Override
     public SearchResult query(final SearchQuery query) {
         final String input = query.getInput();
+        if (index != null && index.isReady()) {
+            return index.query(input)
+                    .match(Kind.LABEL)
+                    .match(Kind.FOREIGN_SOURCE, NodeSearchIndex.Mode.EQUALS)
+                    .match(Kind.FOREIGN_ID, NodeSearchIndex.Mode.EQUALS)
+                    .matchId()
+                    .limit(query.getMaxResults())
+                    .execute()
+                    .toSearchResult(hit -> {
+                        final NodeDocument document = hit.getDocument();
+                        final SearchResultItem searchResultItem = new SearchResultItemBuilder().withNodeDocument(document, entityScopeProvider).build();
+                        if (QueryUtils.equals(document.getId(), input)) {
+                            searchResultItem.addMatch(new Match("id", "Node ID", Integer.toString(document.getId())));
+                        }
+                        if (QueryUtils.matches(document.getForeignId(), input)) {
+                            searchResultItem.addMatch(new Match("foreignId", "Foreign ID", document.getForeignId()));
+                        }
+                        if (QueryUtils.matches(document.getForeignSource(), input)) {
+                            searchResultItem.addMatch(new Match("foreignSource", "Foreign Source", document.getForeignSource()));
+                        }
+                        if (QueryUtils.matches(document.getLabel(), input)) {
+                            searchResultItem.addMatch(new Match("label", "Node Label", document.getLabel()));
+                        }
+                        searchResultItem.setWeight(100);
+                        return searchResultItem;
+                    });
+        }
         final List<Restriction> restrictions = Lists.newArrayList(
                 Restrictions.ilike("label", QueryUtils.ilike(input)),
                 Restrictions.eq("foreignSource", input),
@@ -37,6 +37,8 @@ import org.opennms.netmgt.model.OnmsMetaData;
 import org.opennms.netmgt.model.OnmsNode;
 import org.opennms.netmgt.search.api.*;
 import org.opennms.netmgt.search.providers.SearchResultItemBuilder;
+import org.opennms.netmgt.search.providers.index.NodeDocument.Kind;
+import org.opennms.netmgt.search.providers.index.NodeSearchIndex;
 
 import java.util.List;
 import java.util.Objects;
@@ -46,10 +48,16 @@ public class NodeMetaDataSearchProvider implements SearchProvider {
 
     private final NodeDao nodeDao;
     private final EntityScopeProvider entityScopeProvider;
+    private final NodeSearchIndex index;
 
     public NodeMetaDataSearchProvider(final NodeDao nodeDao, final EntityScopeProvider entityScopeProvider) {
+        this(nodeDao, entityScopeProvider, null);
+    }
+
+    public NodeMetaDataSearchProvider(final NodeDao nodeDao, final EntityScopeProvider entityScopeProvider, final NodeSearchIndex index) {
         this.nodeDao = Objects.requireNonNull(nodeDao);
         this.entityScopeProvider = Objects.requireNonNull(entityScopeProvider);
+        this.index = index;
     }
 
     @Override
@@ -61,6 +69,19 @@ public class NodeMetaDataSearchProvider implements SearchProvider {
     public SearchResult query(final SearchQuery query) {
         final String input = query.getInput();
 
+        if (index != null && index.isReady()) {
+            return index.query(input)
+                    .match(Kind.META_DATA, NodeSearchIndex.Mode.CONTAINS)
+                    .limit(query.getMaxResults())
+                    .execute()
+                    .toSearchResult(hit -> {
+                        final SearchResultItem searchResultItem = new SearchResultItemBuilder().withNodeDocument(hit.getDocument(), entityScopeProvider).build();
+                        searchResultItem.addMatch(hit.getFields().get(0).toMatch());
+                        searchResultItem.setWeight(100);
+                        return searchResultItem;
+                    });
+        }
+
         final CriteriaBuilder criteriaBuilder = new CriteriaBuilder(OnmsNode.class)
                 .sql("{alias}.nodeid IN (SELECT m.id FROM node_metadata m WHERE m.key !~ '.*([pP]assword|[sS]ecret).*' AND m.value LIKE '%" + StringEscapeUtils.escapeSql(input) + "%')")
                 .distinct();
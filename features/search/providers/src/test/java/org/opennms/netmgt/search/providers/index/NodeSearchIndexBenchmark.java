@@ -0,0 +1,146 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.search.providers.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.opennms.netmgt.search.providers.index.NodeDocument.Field;
+import org.opennms.netmgt.search.providers.index.NodeDocument.Kind;
+
+/**
+ * Compares answering a global search query from the {@link NodeSearchIndex} against verifying every node of a
+ * generated inventory, which is what the database does for the "%input%" patterns of the providers.
+ * <p>
+ * Each invocation runs the queries of the label, IP, category, asset and meta-data providers for one input.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class NodeSearchIndexBenchmark {
+
+    private static final String[] SITES = {"berlin", "hamburg", "munich", "paris", "london", "madrid", "rome", "vienna"};
+
+    private static final String[] ROLES = {"router", "switch", "firewall", "server", "ap", "ups"};
+
+    private static final String[] VENDORS = {"Cisco", "Juniper", "Arista", "HP", "Dell", "APC"};
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @Param({"100000"})
+    public int nodeCount;
+
+    @Param({"router-berlin-12", "10.3.", "juniper", "rack"})
+    public String input;
+
+    private List<NodeDocument> documents;
+
+    private NodeSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        documents = generate(nodeCount, new Random(42));
+        index = new NodeSearchIndex();
+        index.rebuild(documents);
+    }
+
+    @Benchmark
+    public void index(final Blackhole bh) {
+        bh.consume(index.query(input).match(Kind.LABEL).match(Kind.FOREIGN_ID, NodeSearchIndex.Mode.EQUALS).limit(10).execute());
+        bh.consume(index.query(input).match(Kind.IP_ADDRESS).limit(10).execute());
+        bh.consume(index.query(input).match(Kind.CATEGORY).limit(10).execute());
+        bh.consume(index.query(input).match(Kind.ASSET).limit(10).execute());
+        bh.consume(index.query(input).match(Kind.META_DATA, NodeSearchIndex.Mode.CONTAINS).limit(10).execute());
+    }
+
+    @Benchmark
+    public void scan(final Blackhole bh) {
+        final String lowerCaseInput = input.toLowerCase(Locale.ROOT);
+        for (final Kind kind : new Kind[]{Kind.LABEL, Kind.IP_ADDRESS, Kind.CATEGORY, Kind.ASSET, Kind.META_DATA}) {
+            int count = 0;
+            for (final NodeDocument document : documents) {
+                for (final Field field : document.getFields()) {
+                    if (field.getKind() == kind && (kind == Kind.META_DATA
+                            ? field.getValue().contains(input)
+                            : field.getValue().toLowerCase(Locale.ROOT).contains(lowerCaseInput))) {
+                        count++;
+                        break;
+                    }
+                }
+            }
+            bh.consume(count);
+        }
+    }
+
+    /**
+     * Generates the documents of an inventory with a handful of interfaces, categories, asset fields and meta-data
+     * entries per node.
+     */
+    static List<NodeDocument> generate(final int nodeCount, final Random random) {
+        final List<NodeDocument> documents = new ArrayList<>(nodeCount);
+        for (int id = 1; id <= nodeCount; id++) {
+            final String site = SITES[random.nextInt(SITES.length)];
+            final String role = ROLES[random.nextInt(ROLES.length)];
+            final String vendor = VENDORS[random.nextInt(VENDORS.length)];
+            final String label = role + "-" + site + "-" + id;
+            final List<Field> fields = new ArrayList<>();
+            fields.add(new Field(Kind.LABEL, "label", "Node Label", label));
+            fields.add(new Field(Kind.FOREIGN_SOURCE, "foreignSource", "Foreign Source", site));
+            fields.add(new Field(Kind.FOREIGN_ID, "foreignId", "Foreign ID", Integer.toString(id)));
+            fields.add(new Field(Kind.LOCATION, "location.name", "Node Location", site.toUpperCase(Locale.ROOT)));
+            for (int i = 0, n = 1 + random.nextInt(4); i < n; i++) {
+                fields.add(new Field(Kind.IP_ADDRESS, "ipInterface.ipAddress", "IP Address",
+                        "10." + (id >> 16 & 0xff) + "." + (id >> 8 & 0xff) + "." + ((id + i) & 0xff)));
+            }
+            fields.add(new Field(Kind.CATEGORY, "category.name", "Category", role.substring(0, 1).toUpperCase(Locale.ROOT) + role.substring(1) + "s"));
+            fields.add(new Field(Kind.CATEGORY, "category.name", "Category", site.equals("berlin") ? "Production" : "Test"));
+            fields.add(new Field(Kind.ASSET, "Vendor", "Vendor", vendor));
+            fields.add(new Field(Kind.ASSET, "Serial Number", "Serial Number", Long.toHexString(random.nextLong())));
+            fields.add(new Field(Kind.ASSET, "Rack", "Rack", "Rack " + random.nextInt(200)));
+            fields.add(new Field(Kind.ASSET, "Building", "Building", site + " DC " + random.nextInt(3)));
+            fields.add(new Field(Kind.META_DATA, "requisition:owner", "Meta-Data 'requisition:owner'", "team-" + random.nextInt(50)));
+            fields.add(new Field(Kind.META_DATA, "requisition:sla", "Meta-Data 'requisition:sla'", random.nextBoolean() ? "gold" : "silver"));
+            documents.add(new NodeDocument(id, label, site, Integer.toString(id), fields));
+        }
+        return documents;
+    }
+}
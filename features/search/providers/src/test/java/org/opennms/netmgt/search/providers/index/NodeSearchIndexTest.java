@@ -0,0 +1,127 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.search.providers.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.search.providers.index.NodeDocument.Field;
+import org.opennms.netmgt.search.providers.index.NodeDocument.Kind;
+import org.opennms.netmgt.search.providers.index.NodeSearchIndex.Hits;
+import org.opennms.netmgt.search.providers.index.NodeSearchIndex.Mode;
+
+public class NodeSearchIndexTest {
+
+    private NodeSearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new NodeSearchIndex();
+        index.rebuild(Arrays.asList(
+                node(1, "router-berlin", "10.0.0.1", "Routers"),
+                node(2, "router-hamburg", "10.0.0.2", "Routers"),
+                node(3, "switch-berlin", "10.0.1.1", "Switches"),
+                node(4, "Berlin", "192.168.0.1", "Servers"),
+                node(5, "db", "192.168.0.2", "Servers")));
+    }
+
+    @Test
+    public void testQueryRanksExactAndPrefixMatchesFirst() {
+        assertTrue(index.isReady());
+        final Hits hits = index.query("berlin").match(Kind.LABEL).execute();
+        assertEquals(3, hits.getTotalCount());
+        assertEquals(Arrays.asList(4, 1, 3), ids(hits));
+        assertEquals(3, hits.getHits().get(0).getScore());
+        assertEquals(1, hits.getHits().get(1).getScore());
+    }
+
+    @Test
+    public void testLimitKeepsExactCount() {
+        final Hits hits = index.query("10.0.").match(Kind.IP_ADDRESS).limit(2).execute();
+        assertEquals(3, hits.getTotalCount());
+        assertEquals(Arrays.asList(1, 2), ids(hits));
+        assertEquals("10.0.0.1", hits.getHits().get(0).getFields().get(0).getValue());
+    }
+
+    @Test
+    public void testShortInputScansAllDocuments() {
+        assertEquals(Arrays.asList(5), ids(index.query("DB").match(Kind.LABEL).execute()));
+        assertEquals(4, index.query("r").match(Kind.CATEGORY).execute().getTotalCount());
+    }
+
+    @Test
+    public void testModes() {
+        assertEquals(0, index.query("ROUTERS").match(Kind.CATEGORY, Mode.CONTAINS).execute().getTotalCount());
+        assertEquals(2, index.query("Routers").match(Kind.CATEGORY, Mode.CONTAINS).execute().getTotalCount());
+        assertEquals(0, index.query("Route").match(Kind.CATEGORY, Mode.EQUALS).execute().getTotalCount());
+        assertEquals(2, index.query("Routers").match(Kind.CATEGORY, Mode.EQUALS).execute().getTotalCount());
+    }
+
+    @Test
+    public void testMatchId() {
+        assertEquals(0, index.query("3").match(Kind.LABEL).execute().getTotalCount());
+        final Hits hits = index.query("3").match(Kind.LABEL).matchId().execute();
+        assertEquals(Arrays.asList(3), ids(hits));
+        assertTrue(hits.getHits().get(0).getFields().isEmpty());
+    }
+
+    @Test
+    public void testUpdateAndRemove() {
+        index.update(node(2, "router-munich", "10.0.0.2", "Routers"));
+        assertEquals(Arrays.asList(4), ids(index.query("berlin").match(Kind.LABEL).match(Kind.CATEGORY).limit(1).execute()));
+        assertEquals(0, index.query("hamburg").match(Kind.LABEL).execute().getTotalCount());
+        assertEquals(Arrays.asList(2), ids(index.query("munich").match(Kind.LABEL).execute()));
+
+        index.update(node(6, "router-paris", "10.0.2.1", "Routers"));
+        assertEquals(3, index.query("router").match(Kind.LABEL).execute().getTotalCount());
+
+        index.remove(1);
+        index.remove(42);
+        assertEquals(Arrays.asList(2, 6), ids(index.query("router").match(Kind.LABEL).execute()));
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    public void testNotReadyUntilBuilt() {
+        assertFalse(new NodeSearchIndex().isReady());
+    }
+
+    private static NodeDocument node(final int id, final String label, final String ipAddress, final String category) {
+        final List<Field> fields = new ArrayList<>();
+        fields.add(new Field(Kind.LABEL, "label", "Node Label", label));
+        fields.add(new Field(Kind.IP_ADDRESS, "ipInterface.ipAddress", "IP Address", ipAddress));
+        fields.add(new Field(Kind.CATEGORY, "category.name", "Category", category));
+        return new NodeDocument(id, label, "fs", "node" + id, fields);
+    }
+
+    private static List<Integer> ids(final Hits hits) {
+        return hits.getHits().stream().map(hit -> hit.getDocument().getId()).collect(Collectors.toList());
+    }
+}
@@ -22,8 +22,11 @@
 package org.opennms.netmgt.telemetry.listeners;
 
 import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ExecutionException;
@@ -36,15 +39,18 @@ import org.opennms.netmgt.telemetry.api.receiver.Listener;
 import org.opennms.netmgt.telemetry.api.receiver.Parser;
 import org.opennms.netmgt.telemetry.listeners.utils.BufferUtils;
 import org.opennms.netmgt.telemetry.listeners.utils.NettyEventListener;
+import org.opennms.netmgt.telemetry.listeners.utils.SocketDrops;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.swrve.ratelimitedlogger.RateLimitedLog;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
@@ -53,13 +59,30 @@ import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.FixedRecvByteBufAllocator;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.DatagramPacket;
+import io.netty.channel.socket.nio.NioChannelOption;
 import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.unix.UnixChannel;
 import io.netty.util.ReferenceCountUtil;
 import io.netty.util.internal.SocketUtils;
 
+/**
+ * Receives datagrams and hands them to the configured parsers.
+ *
+ * By default, a single socket is bound using the NIO transport. Setting {@code sockets} to a value greater than one
+ * binds multiple sockets to the same address with {@code SO_REUSEPORT}, each serviced by its own event loop. The
+ * kernel selects the socket by hashing the addresses and ports of a datagram, so all datagrams of an exporter are
+ * received by the same socket and processed in order, which keeps template state consistent for the parsers.
+ *
+ * Setting {@code nativeTransport} uses the Linux epoll transport if it is available. It reads up to
+ * {@code receiveBatchSize} datagrams per system call using {@code recvmmsg}.
+ */
 public class UdpListener implements GracefulShutdownListener {
     private static final Logger LOG = LoggerFactory.getLogger(UdpListener.class);
 
@@ -71,21 +94,28 @@ public class UdpListener implements GracefulShutdownListener {
     private final String name;
     private final List<UdpParser> parsers;
 
+    private final MetricRegistry metrics;
     private final Meter packetsReceived;
 
     private EventLoopGroup bossGroup;
-    private ChannelFuture socketFuture;
+    private final List<ChannelFuture> socketFutures = new ArrayList<>();
+    private final List<SocketStats> socketStats = new ArrayList<>();
 
     private String host = null;
     private int port = 50000;
     private int maxPacketSize = 8096;
+    private int sockets = 1;
+    private int threads = 0;
+    private boolean nativeTransport = false;
+    private int receiveBatchSize = 16;
+    private int receiveBufferSize = Integer.MAX_VALUE;
 
     private Future<String> stopFuture;
 
     public UdpListener(final String name, final List<UdpParser> parsers, final MetricRegistry metrics) {
         this.name = Objects.requireNonNull(name);
         this.parsers = Objects.requireNonNull(parsers);
-        Objects.requireNonNull(metrics);
+        this.metrics = Objects.requireNonNull(metrics);
 
         if (this.parsers.isEmpty()) {
             throw new IllegalArgumentException("At least 1 parsers must be defined");
@@ -100,26 +130,91 @@ public class UdpListener implements GracefulShutdownListener {
     }
 
     public void start() throws InterruptedException {
+        if (this.sockets < 1) {
+            throw new IllegalArgumentException("At least 1 socket must be bound");
+        }
+
+        final boolean epoll = this.nativeTransport && isEpollAvailable();
+
         // Netty defaults to 2 * num cores when the number of threads is set to 0
-        this.bossGroup = new NioEventLoopGroup(0, new ThreadFactoryBuilder()
-                .setNameFormat("telemetryd-nio-" + name + "-%d")
-                .build() );
+        final int threads = this.threads > 0 ? Math.max(this.threads, this.sockets) : 0;
+        final ThreadFactoryBuilder threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat("telemetryd-" + (epoll ? "epoll" : "nio") + "-" + name + "-%d");
+        this.bossGroup = epoll
+                ? new EpollEventLoopGroup(threads, threadFactory.build())
+                : new NioEventLoopGroup(threads, threadFactory.build());
 
         this.parsers.forEach(parser -> parser.start(this.bossGroup));
 
-        final InetSocketAddress address = this.host != null
+        try {
+            bindSockets(epoll);
+        } catch (final Exception e) {
+            // Do not leave the sockets bound so far behind, the listener is not started
+            LOG.warn("Failed to bind the sockets of listener {}, releasing the resources", name);
+            closeSockets();
+            this.parsers.forEach(Parser::stop);
+            this.bossGroup.shutdownGracefully();
+            this.bossGroup = null;
+            throw e;
+        }
+    }
+
+    private void bindSockets(final boolean epoll) throws InterruptedException {
+        InetSocketAddress address = this.host != null
                 ? SocketUtils.socketAddress(this.host, this.port)
                 : new InetSocketAddress(this.port);
 
-        this.socketFuture = new Bootstrap()
-                .group(this.bossGroup)
-                .channel(NioDatagramChannel.class)
-                .option(ChannelOption.SO_REUSEADDR, true)
-                .option(ChannelOption.SO_RCVBUF, Integer.MAX_VALUE)
-                .option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(this.maxPacketSize))
-                .handler(new DefaultChannelInitializer())
-                .bind(address)
-                .sync();
+        for (int i = 0; i < this.sockets; i++) {
+            final SocketStats stats = new SocketStats(i);
+            final Bootstrap bootstrap = new Bootstrap()
+                    .group(this.bossGroup)
+                    .option(ChannelOption.SO_REUSEADDR, true)
+                    .option(ChannelOption.SO_RCVBUF, this.receiveBufferSize)
+                    .handler(new DefaultChannelInitializer(stats));
+
+            if (epoll) {
+                // Size the buffer to hold a batch of datagrams, which allows to receive them with a single recvmmsg
+                final int batchSize = Math.max(1, this.receiveBatchSize);
+                bootstrap.channel(EpollDatagramChannel.class)
+                        .option(EpollChannelOption.SO_REUSEPORT, this.sockets > 1)
+                        .option(EpollChannelOption.MAX_DATAGRAM_PAYLOAD_SIZE, batchSize > 1 ? this.maxPacketSize : 0)
+                        .option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(this.maxPacketSize * batchSize));
+            } else {
+                bootstrap.channel(NioDatagramChannel.class)
+                        .option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(this.maxPacketSize));
+                if (this.sockets > 1) {
+                    bootstrap.option(NioChannelOption.of(StandardSocketOptions.SO_REUSEPORT), true);
+                }
+            }
+
+            final ChannelFuture socketFuture = bind(bootstrap, address);
+            this.socketFutures.add(socketFuture);
+
+            // Bind all other sockets to the same port, even if an ephemeral port was requested
+            address = (InetSocketAddress) socketFuture.channel().localAddress();
+
+            stats.bound(socketFuture.channel());
+            this.socketStats.add(stats);
+        }
+
+        if (this.sockets > 1 || epoll) {
+            LOG.info("Listener {} bound {} socket(s) to {} using the {} transport", name, this.sockets, address, epoll ? "epoll" : "NIO");
+        }
+    }
+
+    /**
+     * Binds a single socket and waits for the bind to complete.
+     */
+    protected ChannelFuture bind(final Bootstrap bootstrap, final InetSocketAddress address) throws InterruptedException {
+        return bootstrap.bind(address).sync();
+    }
+
+    private boolean isEpollAvailable() {
+        if (Epoll.isAvailable()) {
+            return true;
+        }
+        LOG.warn("Native transport requested for listener {} but epoll is not available, falling back to NIO", name, Epoll.unavailabilityCause());
+        return false;
     }
 
     public void stop() throws InterruptedException {
@@ -131,13 +226,7 @@ public class UdpListener implements GracefulShutdownListener {
             this.bossGroup.shutdownGracefully().addListener(bossListener);
         }
 
-        if (this.socketFuture != null) {
-            LOG.info("Closing channel...");
-            this.socketFuture.channel().close().sync();
-            if (this.socketFuture.channel().parent() != null) {
-                this.socketFuture.channel().parent().close().sync();
-            }
-        }
+        closeSockets();
 
         this.parsers.forEach(Parser::stop);
 
@@ -169,6 +258,20 @@ public class UdpListener implements GracefulShutdownListener {
         };
     }
 
+    private void closeSockets() throws InterruptedException {
+        for (final ChannelFuture socketFuture : this.socketFutures) {
+            LOG.info("Closing channel...");
+            socketFuture.channel().close().sync();
+            if (socketFuture.channel().parent() != null) {
+                socketFuture.channel().parent().close().sync();
+            }
+        }
+        this.socketFutures.clear();
+
+        this.socketStats.forEach(SocketStats::unregister);
+        this.socketStats.clear();
+    }
+
     public String getHost() {
         return host;
     }
@@ -193,6 +296,68 @@ public class UdpListener implements GracefulShutdownListener {
         this.maxPacketSize = maxPacketSize;
     }
 
+    public int getSockets() {
+        return sockets;
+    }
+
+    /**
+     * @param sockets the number of sockets bound to the address using {@code SO_REUSEPORT}
+     */
+    public void setSockets(int sockets) {
+        this.sockets = sockets;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @param threads the number of event loop threads, at least one per socket. Netty's default is used for 0.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public boolean isNativeTransport() {
+        return nativeTransport;
+    }
+
+    /**
+     * @param nativeTransport use the epoll transport if it is available
+     */
+    public void setNativeTransport(boolean nativeTransport) {
+        this.nativeTransport = nativeTransport;
+    }
+
+    public int getReceiveBatchSize() {
+        return receiveBatchSize;
+    }
+
+    /**
+     * @param receiveBatchSize the maximum number of datagrams received per system call with the epoll transport
+     */
+    public void setReceiveBatchSize(int receiveBatchSize) {
+        this.receiveBatchSize = receiveBatchSize;
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    /**
+     * @param receiveBufferSize the requested size of the socket receive buffer, limited by the kernel
+     */
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    /**
+     * @return the statistics of the bound sockets
+     */
+    public List<SocketStats> getSocketStats() {
+        return Collections.unmodifiableList(new ArrayList<>(this.socketStats));
+    }
+
     @Override
     public String getName() {
         return name;
@@ -214,12 +379,71 @@ public class UdpListener implements GracefulShutdownListener {
     }
 
 
+    /**
+     * Statistics of a single socket.
+     */
+    public class SocketStats {
+        private final int index;
+        private final Meter packetsReceived;
+        private final String dropsGaugeName;
+        private InetSocketAddress localAddress;
+        private long inode = -1;
+
+        private SocketStats(final int index) {
+            this.index = index;
+            this.packetsReceived = metrics.meter(MetricRegistry.name("listeners", name, "sockets", Integer.toString(index), "packetsReceived"));
+            this.dropsGaugeName = MetricRegistry.name("listeners", name, "sockets", Integer.toString(index), "packetsDropped");
+        }
+
+        private void bound(final Channel channel) {
+            this.localAddress = (InetSocketAddress) channel.localAddress();
+            if (channel instanceof UnixChannel) {
+                this.inode = SocketDrops.inode(((UnixChannel) channel).fd().intValue());
+            }
+            metrics.remove(dropsGaugeName);
+            metrics.register(dropsGaugeName, (Gauge<Long>) this::getPacketsDropped);
+        }
+
+        private void unregister() {
+            metrics.remove(dropsGaugeName);
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public InetSocketAddress getLocalAddress() {
+            return localAddress;
+        }
+
+        /**
+         * @return the number of datagrams received by the socket
+         */
+        public long getPacketsReceived() {
+            return packetsReceived.getCount();
+        }
+
+        /**
+         * @return the number of datagrams dropped by the kernel, i.e. because the receive buffer was full, or -1 if
+         * not known. The number is only known for the epoll transport on Linux.
+         */
+        public long getPacketsDropped() {
+            return SocketDrops.drops(inode);
+        }
+    }
+
     private class DefaultChannelInitializer extends ChannelInitializer<DatagramChannel> {
 
+        private final SocketStats stats;
+
+        private DefaultChannelInitializer(final SocketStats stats) {
+            this.stats = Objects.requireNonNull(stats);
+        }
+
         @Override
         protected void initChannel(DatagramChannel ch) {
             // Accounting
-            ch.pipeline().addFirst(new AccountingHandler());
+            ch.pipeline().addFirst(new AccountingHandler(stats.packetsReceived));
 
             if (parsers.size() == 1) {
                 final UdpParser parser = parsers.get(0);
@@ -253,9 +477,16 @@ public class UdpListener implements GracefulShutdownListener {
     }
 
     private class AccountingHandler extends ChannelInboundHandlerAdapter {
+        private final Meter socketPacketsReceived;
+
+        private AccountingHandler(final Meter socketPacketsReceived) {
+            this.socketPacketsReceived = socketPacketsReceived;
+        }
+
         @Override
         public  void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
             packetsReceived.mark();
+            socketPacketsReceived.mark();
             super.channelRead(ctx, msg);
         }
     }
@@ -0,0 +1,111 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.telemetry.listeners.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Reads the number of datagrams the Linux kernel dropped for a UDP socket.
+ *
+ * The socket is identified by its file descriptor, which is resolved to the socket inode and looked up in
+ * {@code /proc/net/udp} and {@code /proc/net/udp6}. The counters are not available on other platforms.
+ */
+public final class SocketDrops {
+
+    private static final Path FD_DIR = Paths.get("/proc/self/fd");
+
+    private static final Path[] UDP_TABLES = {
+            Paths.get("/proc/net/udp"),
+            Paths.get("/proc/net/udp6")
+    };
+
+    // Columns of the /proc/net/udp table
+    private static final int INODE_COLUMN = 9;
+    private static final int DROPS_COLUMN = 12;
+
+    private SocketDrops() {
+    }
+
+    /**
+     * @param fd the file descriptor of the socket
+     * @return the inode of the socket or -1 if unknown
+     */
+    public static long inode(final int fd) {
+        try {
+            final String link = Files.readSymbolicLink(FD_DIR.resolve(Integer.toString(fd))).toString();
+            if (link.startsWith("socket:[") && link.endsWith("]")) {
+                return Long.parseLong(link.substring(8, link.length() - 1));
+            }
+        } catch (final IOException | UnsupportedOperationException | NumberFormatException e) {
+            // Not available
+        }
+        return -1;
+    }
+
+    /**
+     * @param inode the inode of the socket, see {@link #inode(int)}
+     * @return the number of datagrams dropped by the kernel or -1 if unknown
+     */
+    public static long drops(final long inode) {
+        if (inode < 0) {
+            return -1;
+        }
+        for (final Path table : UDP_TABLES) {
+            final List<String> lines;
+            try {
+                lines = Files.readAllLines(table);
+            } catch (final IOException e) {
+                continue;
+            }
+            final long drops = drops(inode, lines);
+            if (drops >= 0) {
+                return drops;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param inode the inode of the socket
+     * @param lines the lines of a {@code /proc/net/udp} table
+     * @return the number of datagrams dropped by the kernel or -1 if the socket is not in the table
+     */
+    static long drops(final long inode, final List<String> lines) {
+        final String inodeValue = Long.toString(inode);
+        // The first line holds the column headers
+        for (int i = 1; i < lines.size(); i++) {
+            final String[] columns = lines.get(i).trim().split("\\s+");
+            if (columns.length > DROPS_COLUMN && inodeValue.equals(columns[INODE_COLUMN])) {
+                try {
+                    return Long.parseLong(columns[DROPS_COLUMN]);
+                } catch (final NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+}
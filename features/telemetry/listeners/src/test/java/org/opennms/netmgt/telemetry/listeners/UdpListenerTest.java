@@ -0,0 +1,140 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.telemetry.listeners;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelFuture;
+
+public class UdpListenerTest {
+
+    @Test
+    public void canBindAndReleaseSockets() throws InterruptedException {
+        final MetricRegistry metrics = new MetricRegistry();
+        final StubParser parser = new StubParser();
+        final UdpListener listener = new UdpListener("test", Collections.singletonList(parser), metrics);
+        listener.setHost("127.0.0.1");
+        listener.setPort(0);
+
+        listener.start();
+        try {
+            assertEquals(1, listener.getSocketStats().size());
+            assertTrue(listener.getSocketStats().get(0).getLocalAddress().getPort() > 0);
+            assertEquals(1, metrics.getGauges().size());
+            assertTrue(parser.started);
+        } finally {
+            listener.stop();
+        }
+
+        assertTrue(listener.getSocketStats().isEmpty());
+        assertTrue(metrics.getGauges().isEmpty());
+        assertTrue(parser.stopped);
+    }
+
+    @Test
+    public void canReleaseBoundSocketsIfBindFails() throws InterruptedException {
+        final MetricRegistry metrics = new MetricRegistry();
+        final StubParser parser = new StubParser();
+        final List<Channel> bound = new ArrayList<>();
+        final UdpListener listener = new UdpListener("test", Collections.singletonList(parser), metrics) {
+            @Override
+            protected ChannelFuture bind(final Bootstrap bootstrap, final InetSocketAddress address) throws InterruptedException {
+                // Fail every socket but the first one
+                if (!bound.isEmpty()) {
+                    throw new ChannelException("Address already in use");
+                }
+                final ChannelFuture future = super.bind(bootstrap, address);
+                bound.add(future.channel());
+                return future;
+            }
+        };
+        listener.setHost("127.0.0.1");
+        listener.setPort(0);
+        listener.setSockets(2);
+
+        try {
+            listener.start();
+            fail("The listener must not start if a socket cannot be bound");
+        } catch (final ChannelException e) {
+            // expected
+        }
+
+        assertEquals(1, bound.size());
+        assertFalse(bound.get(0).isOpen());
+        assertTrue(listener.getSocketStats().isEmpty());
+        assertTrue(metrics.getGauges().isEmpty());
+        assertTrue(parser.stopped);
+    }
+
+    private static class StubParser implements UdpParser {
+        private boolean started;
+        private boolean stopped;
+
+        @Override
+        public CompletableFuture<?> parse(final ByteBuf buffer, final InetSocketAddress remoteAddress, final InetSocketAddress localAddress) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public String getName() {
+            return "stub";
+        }
+
+        @Override
+        public String getDescription() {
+            return "stub";
+        }
+
+        @Override
+        public Object dumpInternalState() {
+            return null;
+        }
+
+        @Override
+        public void start(final ScheduledExecutorService executorService) {
+            started = true;
+        }
+
+        @Override
+        public void stop() {
+            stopped = true;
+        }
+    }
+}
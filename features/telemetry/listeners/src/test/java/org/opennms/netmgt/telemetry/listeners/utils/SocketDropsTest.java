@@ -0,0 +1,56 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.telemetry.listeners.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SocketDropsTest {
+
+    private static final List<String> UDP_TABLE = Arrays.asList(
+            "   sl  local_address rem_address   st tx_queue rx_queue tr tm->when retrnsmt   uid  timeout inode ref pointer drops",
+            "  411: 00000000:C350 00000000:0000 07 00000000:00000000 00:00000000 00000000   998        0 48213 2 0000000000000000 0",
+            "  412: 00000000:C350 00000000:0000 07 00000000:00034000 00:00000000 00000000   998        0 48214 2 0000000000000000 1387",
+            " 1024: 0100007F:0035 00000000:0000 07 00000000:00000000 00:00000000 00000000   101        0 17362 2 0000000000000000 x");
+
+    @Test
+    public void canReadDropsOfSocket() {
+        assertEquals(0L, SocketDrops.drops(48213L, UDP_TABLE));
+        assertEquals(1387L, SocketDrops.drops(48214L, UDP_TABLE));
+    }
+
+    @Test
+    public void canHandleUnknownSockets() {
+        assertEquals(-1L, SocketDrops.drops(99999L, UDP_TABLE));
+        assertEquals(-1L, SocketDrops.drops(48213L, Collections.emptyList()));
+        // The header line is never matched
+        assertEquals(-1L, SocketDrops.drops(48213L, UDP_TABLE.subList(0, 1)));
+        // Malformed counters
+        assertEquals(-1L, SocketDrops.drops(17362L, UDP_TABLE));
+        assertEquals(-1L, SocketDrops.drops(-1L));
+    }
+}
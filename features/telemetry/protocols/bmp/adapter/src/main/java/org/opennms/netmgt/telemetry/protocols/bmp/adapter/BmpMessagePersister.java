@@ -30,6 +30,9 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -44,6 +47,12 @@ import org.opennms.netmgt.telemetry.protocols.bmp.adapter.openbmp.proto.records.
 import org.opennms.netmgt.telemetry.protocols.bmp.adapter.openbmp.proto.records.Peer;
 import org.opennms.netmgt.telemetry.protocols.bmp.adapter.openbmp.proto.records.Router;
 import org.opennms.netmgt.telemetry.protocols.bmp.adapter.openbmp.proto.records.UnicastPrefix;
+import org.opennms.netmgt.telemetry.protocols.bmp.adapter.rib.BmpRib;
+import org.opennms.netmgt.telemetry.protocols.bmp.adapter.rib.PeerRib;
+import org.opennms.netmgt.telemetry.protocols.bmp.adapter.rib.Prefix;
+import org.opennms.netmgt.telemetry.protocols.bmp.adapter.rib.RibSnapshot;
+import org.opennms.netmgt.telemetry.protocols.bmp.adapter.rib.Route;
+import org.opennms.netmgt.telemetry.protocols.bmp.adapter.rib.RouteChange;
 import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpAsnPathAnalysis;
 import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpAsnPathAnalysisDao;
 import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpBaseAttribute;
@@ -65,9 +74,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.SetMultimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.swrve.ratelimitedlogger.RateLimitedLog;
 
 public class BmpMessagePersister implements BmpMessageHandler {
@@ -79,6 +90,15 @@ public class BmpMessagePersister implements BmpMessageHandler {
             .maxRate(1).every(Duration.ofSeconds(60))
             .build();
 
+    /**
+     * Keeps the unicast prefixes of all peers in memory and persists them in batches.
+     */
+    protected static final String RIB_SYS_PROP = "org.opennms.features.telemetry.bmp.rib";
+
+    protected static final String RIB_FLUSH_INTERVAL_SYS_PROP = "org.opennms.features.telemetry.bmp.rib.flushInterval";
+
+    protected static final String RIB_BATCH_SIZE_SYS_PROP = "org.opennms.features.telemetry.bmp.rib.batchSize";
+
     @Autowired
     private BmpCollectorDao bmpCollectorDao;
 
@@ -108,6 +128,19 @@ public class BmpMessagePersister implements BmpMessageHandler {
 
     private SetMultimap<String, BmpPeer> peerMultimap = HashMultimap.create();
 
+    private boolean ribEnabled = Boolean.getBoolean(RIB_SYS_PROP);
+
+    /**
+     * Interval in milliseconds in which pending RIB changes are persisted.
+     */
+    private long ribFlushInterval = Long.getLong(RIB_FLUSH_INTERVAL_SYS_PROP, 1000L);
+
+    private int ribBatchSize = Integer.getInteger(RIB_BATCH_SIZE_SYS_PROP, 5000);
+
+    private final BmpRib rib = new BmpRib();
+
+    private ScheduledExecutorService ribFlusher;
+
     @Override
     public synchronized void handle(Message message, Context context) {
         sessionUtils.withTransaction(() -> {
@@ -164,6 +197,11 @@ public class BmpMessagePersister implements BmpMessageHandler {
                         } catch (Exception e) {
                             LOG.error("Exception while persisting BMP peer {}", peer, e);
                         }
+                        // Drop the same routes from memory
+                        final PeerRib peerRib = rib.getPeer(peer.getHashId());
+                        if (peerRib != null) {
+                            peerRib.retainAfter(peer.getTimestamp().toInstant());
+                        }
                     });
                     break;
                 case BASE_ATTRIBUTE:
@@ -187,6 +225,10 @@ public class BmpMessagePersister implements BmpMessageHandler {
                     });
                     break;
                 case UNICAST_PREFIX:
+                    if (ribEnabled) {
+                        applyToRib(message);
+                        break;
+                    }
                     List<BmpUnicastPrefix> bmpUnicastPrefixes = buildBmpUnicastPrefix(message);
                     bmpUnicastPrefixes.forEach(unicastPrefix -> {
                         try {
@@ -224,8 +266,159 @@ public class BmpMessagePersister implements BmpMessageHandler {
     }
 
 
+    private void applyToRib(Message message) {
+        startRibFlusher();
+        message.getRecords().forEach(record -> {
+            if (record.getType().equals(Type.UNICAST_PREFIX)) {
+                UnicastPrefix unicastPrefix = (UnicastPrefix) record;
+                try {
+                    PeerRib peerRib = getPeerRib(unicastPrefix.peerHash);
+                    if (peerRib == null) {
+                        RATE_LIMITED_LOGGER.warn("Peer entity with hashId '{}', IpAddress = {} doesn't exist yet",
+                                unicastPrefix.peerHash, unicastPrefix.peerIp);
+                        return;
+                    }
+                    peerRib.apply(Route.from(unicastPrefix));
+                } catch (Exception e) {
+                    LOG.error("Exception while applying Unicast prefix with prefix {} to RIB",
+                            InetAddressUtils.str(unicastPrefix.prefix), e);
+                }
+            }
+        });
+    }
+
+    private PeerRib getPeerRib(String peerHashId) {
+        if (Strings.isNullOrEmpty(peerHashId)) {
+            return null;
+        }
+        PeerRib peerRib = rib.getPeer(peerHashId);
+        if (peerRib == null && bmpPeerDao.findByPeerHashId(peerHashId) != null) {
+            peerRib = rib.getPeer(peerHashId, this::loadPeerRib);
+        }
+        return peerRib;
+    }
+
+    private PeerRib loadPeerRib(String peerHashId) {
+        PeerRib peerRib = new PeerRib(peerHashId);
+        bmpUnicastPrefixDao.forEachByPeerHashId(peerHashId, prefix -> peerRib.load(new Route(prefix.getHashId(),
+                peerHashId,
+                Prefix.of(InetAddressUtils.addr(prefix.getPrefix()), prefix.getPrefixLen()),
+                prefix.getBaseAttrHashId(),
+                prefix.getOriginAs(),
+                prefix.getPathId(),
+                prefix.getLabels(),
+                prefix.isPrePolicy(),
+                prefix.isAdjRibIn(),
+                prefix.isWithDrawn(),
+                prefix.getTimestamp().toInstant(),
+                prefix.getFirstAddedTimestamp() != null ? prefix.getFirstAddedTimestamp().toInstant() : null)));
+        RibSnapshot snapshot = peerRib.snapshot();
+        LOG.debug("Loaded RIB of peer {} with {} IPv4 and {} IPv6 routes", peerHashId, snapshot.getIpv4Routes(), snapshot.getIpv6Routes());
+        return peerRib;
+    }
+
+    private synchronized void startRibFlusher() {
+        if (ribFlusher == null) {
+            ribFlusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("BmpRibFlusher-%d")
+                    .build());
+            ribFlusher.scheduleWithFixedDelay(this::flushRib, ribFlushInterval, ribFlushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Persists all pending RIB changes.
+     *
+     * Every batch is written in its own transaction. The lock is released in between,
+     * so incoming messages are not blocked while a large table dump is flushed. If a
+     * batch fails, its changes are requeued and the flush stops until the next interval.
+     */
+    public void flushRib() {
+        try {
+            while (flushRibBatch()) {
+                // Continue until all pending changes are written
+            }
+        } catch (Exception e) {
+            LOG.error("Exception while flushing BMP RIB", e);
+        }
+    }
+
+    private synchronized boolean flushRibBatch() {
+        List<RouteChange> changes = rib.drain(ribBatchSize);
+        if (changes.isEmpty()) {
+            return false;
+        }
+        try {
+            sessionUtils.withTransaction(() -> {
+                int inserted = bmpUnicastPrefixDao.upsert(changes.stream()
+                        .map(change -> buildBmpUnicastPrefix(change.getCurrent()))
+                        .collect(Collectors.toList()));
+                bmpIpRibLogDao.insert(changes.stream()
+                        .filter(RouteChange::isSignificant)
+                        .map(change -> buildBmpIpRibLog(change.getCurrent()))
+                        .collect(Collectors.toList()));
+                LOG.debug("Persisted {} BMP unicast prefixes, {} new", changes.size(), inserted);
+            });
+        } catch (Exception e) {
+            // Keep the changes for the next flush, otherwise the database would diverge from the RIB
+            LOG.error("Exception while persisting {} BMP unicast prefixes, will retry", changes.size(), e);
+            rib.requeue(changes);
+            return false;
+        }
+        return true;
+    }
+
+    private static BmpUnicastPrefix buildBmpUnicastPrefix(Route route) {
+        BmpPeer bmpPeer = new BmpPeer();
+        bmpPeer.setHashId(route.getPeerHashId());
+
+        BmpUnicastPrefix bmpUnicastPrefix = new BmpUnicastPrefix();
+        bmpUnicastPrefix.setBmpPeer(bmpPeer);
+        bmpUnicastPrefix.setHashId(route.getHashId());
+        bmpUnicastPrefix.setBaseAttrHashId(route.getBaseAttrHashId());
+        bmpUnicastPrefix.setIpv4(route.getPrefix().isIpv4());
+        bmpUnicastPrefix.setOriginAs(route.getOriginAs());
+        bmpUnicastPrefix.setPrefix(InetAddressUtils.str(route.getPrefix().getAddress()));
+        bmpUnicastPrefix.setPrefixLen(route.getPrefix().getLength());
+        bmpUnicastPrefix.setTimestamp(Date.from(route.getTimestamp()));
+        bmpUnicastPrefix.setFirstAddedTimestamp(Date.from(route.getFirstAdded()));
+        bmpUnicastPrefix.setWithDrawn(route.isWithdrawn());
+        bmpUnicastPrefix.setPathId(route.getPathId());
+        bmpUnicastPrefix.setLabels(route.getLabels());
+        bmpUnicastPrefix.setPrePolicy(route.isPrePolicy());
+        bmpUnicastPrefix.setAdjRibIn(route.isAdjRibIn());
+        return bmpUnicastPrefix;
+    }
+
+    private static BmpIpRibLog buildBmpIpRibLog(Route route) {
+        BmpIpRibLog bmpIpRibLog = new BmpIpRibLog();
+        bmpIpRibLog.setPeerHashId(route.getPeerHashId());
+        bmpIpRibLog.setBaseAttrHashId(route.getBaseAttrHashId());
+        bmpIpRibLog.setPrefix(InetAddressUtils.str(route.getPrefix().getAddress()));
+        bmpIpRibLog.setPrefixLen(route.getPrefix().getLength());
+        bmpIpRibLog.setOriginAs(route.getOriginAs());
+        bmpIpRibLog.setTimestamp(new Date());
+        bmpIpRibLog.setWithDrawn(route.isWithdrawn());
+        return bmpIpRibLog;
+    }
+
+    /**
+     * @return the in-memory RIB, only populated if enabled
+     */
+    public BmpRib getRib() {
+        return rib;
+    }
+
     @Override
     public void close() {
+        synchronized (this) {
+            if (ribFlusher == null) {
+                return;
+            }
+            ribFlusher.shutdown();
+            ribFlusher = null;
+        }
+        flushRib();
     }
 
     private List<BmpCollector> buildBmpCollectors(Message message) {
@@ -562,6 +755,30 @@ public class BmpMessagePersister implements BmpMessageHandler {
         this.bmpIpRibLogDao = bmpIpRibLogDao;
     }
 
+    public boolean isRibEnabled() {
+        return ribEnabled;
+    }
+
+    public void setRibEnabled(boolean ribEnabled) {
+        this.ribEnabled = ribEnabled;
+    }
+
+    public long getRibFlushInterval() {
+        return ribFlushInterval;
+    }
+
+    public void setRibFlushInterval(long ribFlushInterval) {
+        this.ribFlushInterval = ribFlushInterval;
+    }
+
+    public int getRibBatchSize() {
+        return ribBatchSize;
+    }
+
+    public void setRibBatchSize(int ribBatchSize) {
+        this.ribBatchSize = ribBatchSize;
+    }
+
     public SessionUtils getSessionUtils() {
         return sessionUtils;
     }
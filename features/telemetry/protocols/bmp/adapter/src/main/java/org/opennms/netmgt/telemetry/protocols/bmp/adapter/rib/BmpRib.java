@@ -0,0 +1,140 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.telemetry.protocols.bmp.adapter.rib;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.StatsPeerRib;
+
+/**
+ * The in-memory RIBs of all peers.
+ */
+public class BmpRib {
+
+    private final ConcurrentMap<String, PeerRib> peers = new ConcurrentHashMap<>();
+
+    /**
+     * @return the RIB of the peer or null if the peer is not known
+     */
+    public PeerRib getPeer(final String peerHashId) {
+        return this.peers.get(peerHashId);
+    }
+
+    /**
+     * Returns the RIB of the peer, creating it if required.
+     *
+     * @param peerHashId the hash of the peer
+     * @param loader creates and populates the RIB of a peer not known yet
+     * @return the RIB of the peer
+     */
+    public PeerRib getPeer(final String peerHashId, final Function<String, PeerRib> loader) {
+        return this.peers.computeIfAbsent(peerHashId, loader);
+    }
+
+    public void removePeer(final String peerHashId) {
+        this.peers.remove(peerHashId);
+    }
+
+    /**
+     * @return a snapshot of the RIB of the given peer
+     */
+    public Optional<RibSnapshot> snapshot(final String peerHashId) {
+        return Optional.ofNullable(this.peers.get(peerHashId)).map(PeerRib::snapshot);
+    }
+
+    /**
+     * @return snapshots of the RIBs of all peers, keyed by peer hash
+     */
+    public Map<String, RibSnapshot> snapshot() {
+        return this.peers.values().stream()
+                .collect(Collectors.toMap(PeerRib::getPeerHashId, PeerRib::snapshot));
+    }
+
+    /**
+     * Removes up to the given number of pending changes over all peers.
+     *
+     * @param max the maximum number of changes to return
+     * @return the drained changes
+     */
+    public List<RouteChange> drain(final int max) {
+        final List<RouteChange> changes = new ArrayList<>();
+        for (final PeerRib peer : this.peers.values()) {
+            if (changes.size() >= max) {
+                break;
+            }
+            changes.addAll(peer.drain(max - changes.size()));
+        }
+        return changes;
+    }
+
+    /**
+     * Puts drained changes which could not be persisted back into the RIBs of their peers.
+     * Changes of peers which have been removed in the meantime are discarded.
+     *
+     * @param changes the drained changes
+     */
+    public void requeue(final List<RouteChange> changes) {
+        changes.stream()
+                .collect(Collectors.groupingBy(change -> change.getCurrent().getPeerHashId()))
+                .forEach((peerHashId, peerChanges) -> {
+                    final PeerRib peer = this.peers.get(peerHashId);
+                    if (peer != null) {
+                        peer.requeue(peerChanges);
+                    }
+                });
+    }
+
+    /**
+     * @return the number of routes with changes not drained yet
+     */
+    public int getPending() {
+        return this.peers.values().stream().mapToInt(PeerRib::getPending).sum();
+    }
+
+    /**
+     * Counts the announced routes of every peer. This is equivalent to
+     * {@link org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpUnicastPrefixDao#getPeerRibCountsByPeer()}
+     * without querying the database.
+     *
+     * @return the route counts by peer
+     */
+    public List<StatsPeerRib> getPeerRibCounts() {
+        // Align to the same 15 minute interval used by the database query
+        final Date intervalTime = Date.from(Instant.ofEpochSecond(Instant.now().getEpochSecond() / 900 * 900));
+        return this.peers.values().stream()
+                .map(PeerRib::snapshot)
+                .filter(snapshot -> snapshot.getIpv4Routes() + snapshot.getIpv6Routes() > 0)
+                .map(snapshot -> new StatsPeerRib(intervalTime, snapshot.getPeerHashId(),
+                        BigInteger.valueOf(snapshot.getIpv4Routes()), BigInteger.valueOf(snapshot.getIpv6Routes())))
+                .collect(Collectors.toList());
+    }
+}
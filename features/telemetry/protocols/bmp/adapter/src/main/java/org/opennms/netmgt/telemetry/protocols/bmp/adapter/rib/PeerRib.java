@@ -0,0 +1,232 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.telemetry.protocols.bmp.adapter.rib;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * The routes received from a single peer.
+ *
+ * Routes are indexed by prefix. Updates and withdraws are applied immediately,
+ * so queries always reflect the latest state, while the resulting changes are
+ * queued until they are drained for persistence. Multiple updates of the same
+ * route in between are coalesced.
+ *
+ * Withdrawn routes are retained as long as the peer does not reset its
+ * session, the same way they are retained in the database.
+ */
+public class PeerRib {
+
+    private final String peerHashId;
+
+    private PrefixTrie<Map<String, Route>> ipv4 = PrefixTrie.empty();
+
+    private PrefixTrie<Map<String, Route>> ipv6 = PrefixTrie.empty();
+
+    private int ipv4Routes;
+
+    private int ipv6Routes;
+
+    private final Map<String, RouteChange> pending = new LinkedHashMap<>();
+
+    public PeerRib(final String peerHashId) {
+        this.peerHashId = Objects.requireNonNull(peerHashId);
+    }
+
+    public String getPeerHashId() {
+        return this.peerHashId;
+    }
+
+    /**
+     * Adds a route which is already persisted.
+     *
+     * @param route the persisted route
+     */
+    public synchronized void load(final Route route) {
+        final Map<String, Route> routes = trie(route.getPrefix()).get(route.getPrefix());
+        store(routes, routes != null ? routes.get(route.getHashId()) : null, route);
+    }
+
+    /**
+     * Applies an update or a withdraw of a route.
+     *
+     * @param route the received route
+     */
+    public synchronized void apply(final Route route) {
+        if (!this.peerHashId.equals(route.getPeerHashId())) {
+            throw new IllegalArgumentException("Route " + route.getHashId() + " does not belong to peer " + this.peerHashId);
+        }
+
+        final Map<String, Route> routes = trie(route.getPrefix()).get(route.getPrefix());
+        final Route previous = routes != null ? routes.get(route.getHashId()) : null;
+        final Route current = previous != null ? previous.updatedBy(route) : route;
+        store(routes, previous, current);
+
+        final RouteChange change = this.pending.get(current.getHashId());
+        this.pending.put(current.getHashId(), new RouteChange(change != null ? change.getPrevious() : previous, current));
+    }
+
+    /**
+     * Removes all routes which have not been updated after the given time. This
+     * mirrors the removal of the routes from the database when the peer session
+     * is reset.
+     *
+     * @param timestamp the time of the reset
+     * @return the number of removed routes
+     */
+    public synchronized int retainAfter(final Instant timestamp) {
+        int removed = 0;
+        for (final PrefixTrie<Map<String, Route>> trie : List.of(this.ipv4, this.ipv6)) {
+            for (final Map.Entry<Prefix, Map<String, Route>> entry : trie) {
+                for (final Route route : entry.getValue().values()) {
+                    if (!route.getTimestamp().isAfter(timestamp)) {
+                        store(trie(route.getPrefix()).get(route.getPrefix()), route, null);
+                        removed++;
+                    }
+                }
+            }
+        }
+
+        final Iterator<Map.Entry<String, RouteChange>> it = this.pending.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<String, RouteChange> entry = it.next();
+            final RouteChange change = entry.getValue();
+            if (!change.getCurrent().getTimestamp().isAfter(timestamp)) {
+                it.remove();
+            } else if (change.getPrevious() != null && !change.getPrevious().getTimestamp().isAfter(timestamp)) {
+                // The persisted state has been removed along with the session
+                entry.setValue(new RouteChange(null, change.getCurrent()));
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes up to the given number of pending changes in the order the routes were first changed.
+     *
+     * @param max the maximum number of changes to return
+     * @return the drained changes
+     */
+    public synchronized List<RouteChange> drain(final int max) {
+        final List<RouteChange> changes = new ArrayList<>(Math.min(max, this.pending.size()));
+        final Iterator<RouteChange> it = this.pending.values().iterator();
+        while (changes.size() < max && it.hasNext()) {
+            changes.add(it.next());
+            it.remove();
+        }
+        return changes;
+    }
+
+    /**
+     * Puts drained changes which could not be persisted back in front of the pending changes.
+     *
+     * Changes received for the same route since the drain are merged into the requeued
+     * change. Changes of routes which have been removed in the meantime, i.e. by a
+     * session reset, are discarded.
+     *
+     * @param changes the drained changes of this peer
+     */
+    public synchronized void requeue(final List<RouteChange> changes) {
+        final Map<String, RouteChange> requeued = new LinkedHashMap<>();
+        for (final RouteChange change : changes) {
+            final Route route = change.getCurrent();
+            final RouteChange newer = this.pending.remove(route.getHashId());
+            if (newer != null) {
+                requeued.put(route.getHashId(), new RouteChange(change.getPrevious(), newer.getCurrent()));
+            } else {
+                final Map<String, Route> routes = trie(route.getPrefix()).get(route.getPrefix());
+                if (routes != null && routes.containsKey(route.getHashId())) {
+                    requeued.put(route.getHashId(), change);
+                }
+            }
+        }
+        requeued.putAll(this.pending);
+        this.pending.clear();
+        this.pending.putAll(requeued);
+    }
+
+    /**
+     * @return the number of routes with changes not drained yet
+     */
+    public synchronized int getPending() {
+        return this.pending.size();
+    }
+
+    /**
+     * @return a consistent view of the current routes
+     */
+    public synchronized RibSnapshot snapshot() {
+        return new RibSnapshot(this.peerHashId, Instant.now(), this.ipv4, this.ipv6, this.ipv4Routes, this.ipv6Routes);
+    }
+
+    /**
+     * Replaces the previous state of a route by the current one.
+     *
+     * @param existing the routes currently stored for the prefix of the route
+     * @param previous the stored state of the route or null if it is new
+     * @param current the new state of the route or null if it must be removed
+     */
+    private void store(final Map<String, Route> existing, final Route previous, final Route current) {
+        final Route route = current != null ? current : previous;
+        final Prefix prefix = route.getPrefix();
+        final PrefixTrie<Map<String, Route>> trie = trie(prefix);
+
+        final Map<String, Route> routes;
+        if (existing == null || (existing.size() == 1 && previous != null)) {
+            // The common case of a single path per prefix
+            routes = current != null ? ImmutableMap.of(current.getHashId(), current) : ImmutableMap.of();
+        } else {
+            final Map<String, Route> copy = new LinkedHashMap<>(existing);
+            if (current != null) {
+                copy.put(current.getHashId(), current);
+            } else {
+                copy.remove(previous.getHashId());
+            }
+            routes = ImmutableMap.copyOf(copy);
+        }
+
+        final PrefixTrie<Map<String, Route>> updated = routes.isEmpty()
+                ? trie.remove(prefix)
+                : trie.put(prefix, routes);
+        final int delta = (current != null && !current.isWithdrawn() ? 1 : 0)
+                - (previous != null && !previous.isWithdrawn() ? 1 : 0);
+        if (prefix.isIpv4()) {
+            this.ipv4 = updated;
+            this.ipv4Routes += delta;
+        } else {
+            this.ipv6 = updated;
+            this.ipv6Routes += delta;
+        }
+    }
+
+    private PrefixTrie<Map<String, Route>> trie(final Prefix prefix) {
+        return prefix.isIpv4() ? this.ipv4 : this.ipv6;
+    }
+}
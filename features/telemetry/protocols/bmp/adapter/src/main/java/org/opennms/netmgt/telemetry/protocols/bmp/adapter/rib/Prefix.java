@@ -0,0 +1,141 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.telemetry.protocols.bmp.adapter.rib;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.opennms.core.utils.InetAddressUtils;
+
+/**
+ * An IPv4 or IPv6 prefix. Host bits beyond the prefix length are always zero.
+ */
+public final class Prefix {
+
+    private final byte[] bits;
+
+    private final int length;
+
+    private Prefix(final byte[] bits, final int length) {
+        this.bits = bits;
+        this.length = length;
+    }
+
+    public static Prefix of(final InetAddress address, final int length) {
+        return of(address.getAddress(), length);
+    }
+
+    public static Prefix of(final byte[] address, final int length) {
+        Objects.requireNonNull(address);
+        if (address.length != 4 && address.length != 16) {
+            throw new IllegalArgumentException("Invalid address length: " + address.length);
+        }
+        if (length < 0 || length > address.length * 8) {
+            throw new IllegalArgumentException("Invalid prefix length: " + length);
+        }
+        return new Prefix(mask(address, length), length);
+    }
+
+    public boolean isIpv4() {
+        return this.bits.length == 4;
+    }
+
+    public int getLength() {
+        return this.length;
+    }
+
+    public InetAddress getAddress() {
+        try {
+            return InetAddress.getByAddress(this.bits);
+        } catch (final UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return true if the given prefix is equal to or more specific than this one
+     */
+    public boolean contains(final Prefix other) {
+        return this.bits.length == other.bits.length
+                && other.length >= this.length
+                && commonLength(other) == this.length;
+    }
+
+    int bit(final int index) {
+        return (this.bits[index >>> 3] >>> (7 - (index & 7))) & 1;
+    }
+
+    /**
+     * @return the number of leading bits both prefixes have in common, limited by the shorter prefix length
+     */
+    int commonLength(final Prefix other) {
+        final int max = Math.min(this.length, other.length);
+        int common = 0;
+        for (int i = 0; common < max && i < this.bits.length; i++) {
+            final int diff = (this.bits[i] ^ other.bits[i]) & 0xFF;
+            if (diff != 0) {
+                common += Integer.numberOfLeadingZeros(diff) - 24;
+                break;
+            }
+            common += 8;
+        }
+        return Math.min(common, max);
+    }
+
+    Prefix truncate(final int length) {
+        return new Prefix(mask(this.bits, length), length);
+    }
+
+    private static byte[] mask(final byte[] address, final int length) {
+        final byte[] bits = new byte[address.length];
+        final int bytes = length >>> 3;
+        System.arraycopy(address, 0, bits, 0, bytes);
+        if ((length & 7) != 0) {
+            bits[bytes] = (byte) (address[bytes] & (0xFF00 >>> (length & 7)));
+        }
+        return bits;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Prefix)) {
+            return false;
+        }
+        final Prefix that = (Prefix) o;
+        return this.length == that.length && Arrays.equals(this.bits, that.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(this.bits) + this.length;
+    }
+
+    @Override
+    public String toString() {
+        return InetAddressUtils.str(getAddress()) + "/" + this.length;
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.telemetry.protocols.bmp.adapter.rib;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An immutable, path compressed binary trie mapping prefixes to values.
+ *
+ * Modifications return a new trie which shares all untouched nodes with the
+ * original one. Holding on to a trie therefore gives a consistent point-in-time
+ * view at no cost, while updates only copy the nodes along the path to the
+ * modified prefix.
+ *
+ * All prefixes stored in one trie must be of the same address family.
+ *
+ * @param <V> the type of the values
+ */
+public final class PrefixTrie<V> implements Iterable<Map.Entry<Prefix, V>> {
+
+    private static final PrefixTrie<?> EMPTY = new PrefixTrie<>(null, 0);
+
+    private static final class Node<V> {
+        private final Prefix prefix;
+        private final V value;
+        private final Node<V> left;
+        private final Node<V> right;
+
+        private Node(final Prefix prefix, final V value, final Node<V> left, final Node<V> right) {
+            this.prefix = prefix;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    private final Node<V> root;
+
+    private final int size;
+
+    private PrefixTrie(final Node<V> root, final int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> PrefixTrie<V> empty() {
+        return (PrefixTrie<V>) EMPTY;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * @return the value stored for exactly the given prefix or null
+     */
+    public V get(final Prefix prefix) {
+        Node<V> node = this.root;
+        while (node != null) {
+            final int common = node.prefix.commonLength(prefix);
+            if (common < node.prefix.getLength()) {
+                return null;
+            }
+            if (common == prefix.getLength()) {
+                return node.value;
+            }
+            node = prefix.bit(common) == 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * @return a trie containing all entries of this trie and the given one, replacing an existing value
+     */
+    public PrefixTrie<V> put(final Prefix prefix, final V value) {
+        Objects.requireNonNull(value);
+        final boolean[] added = new boolean[1];
+        final Node<V> root = put(this.root, prefix, value, added);
+        return new PrefixTrie<>(root, added[0] ? this.size + 1 : this.size);
+    }
+
+    /**
+     * @return a trie containing all entries of this trie except the given prefix
+     */
+    public PrefixTrie<V> remove(final Prefix prefix) {
+        final Node<V> root = remove(this.root, prefix);
+        if (root == this.root) {
+            return this;
+        }
+        return new PrefixTrie<>(root, this.size - 1);
+    }
+
+    /**
+     * Finds the most specific prefix containing the given one.
+     *
+     * @param prefix the prefix to look up, i.e. a host address with full length
+     * @return the matching entry
+     */
+    public Optional<Map.Entry<Prefix, V>> longestMatch(final Prefix prefix) {
+        return longestMatch(prefix, value -> true);
+    }
+
+    /**
+     * Finds the most specific prefix containing the given one whose value is accepted by the filter.
+     *
+     * @param prefix the prefix to look up, i.e. a host address with full length
+     * @param filter the values to consider
+     * @return the matching entry
+     */
+    public Optional<Map.Entry<Prefix, V>> longestMatch(final Prefix prefix, final Predicate<? super V> filter) {
+        Node<V> match = null;
+        Node<V> node = this.root;
+        while (node != null) {
+            final int common = node.prefix.commonLength(prefix);
+            if (common < node.prefix.getLength()) {
+                break;
+            }
+            if (node.value != null && filter.test(node.value)) {
+                match = node;
+            }
+            if (common == prefix.getLength()) {
+                break;
+            }
+            node = prefix.bit(common) == 0 ? node.left : node.right;
+        }
+        return Optional.ofNullable(match).map(PrefixTrie::entry);
+    }
+
+    /**
+     * @return all entries equal to or more specific than the given prefix in prefix order
+     */
+    public Stream<Map.Entry<Prefix, V>> covered(final Prefix prefix) {
+        Node<V> node = this.root;
+        while (node != null) {
+            final int common = node.prefix.commonLength(prefix);
+            if (common == prefix.getLength()) {
+                return stream(node);
+            }
+            if (common < node.prefix.getLength()) {
+                break;
+            }
+            node = prefix.bit(common) == 0 ? node.left : node.right;
+        }
+        return Stream.empty();
+    }
+
+    /**
+     * @return all entries in prefix order
+     */
+    public Stream<Map.Entry<Prefix, V>> stream() {
+        return stream(this.root);
+    }
+
+    @Override
+    public Iterator<Map.Entry<Prefix, V>> iterator() {
+        return new NodeIterator<>(this.root);
+    }
+
+    private static <V> Stream<Map.Entry<Prefix, V>> stream(final Node<V> node) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new NodeIterator<>(node),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    private static <V> Node<V> put(final Node<V> node, final Prefix prefix, final V value, final boolean[] added) {
+        if (node == null) {
+            added[0] = true;
+            return new Node<>(prefix, value, null, null);
+        }
+
+        final int common = node.prefix.commonLength(prefix);
+        if (common == node.prefix.getLength()) {
+            if (common == prefix.getLength()) {
+                added[0] = node.value == null;
+                return new Node<>(node.prefix, value, node.left, node.right);
+            }
+            if (prefix.bit(common) == 0) {
+                return new Node<>(node.prefix, node.value, put(node.left, prefix, value, added), node.right);
+            } else {
+                return new Node<>(node.prefix, node.value, node.left, put(node.right, prefix, value, added));
+            }
+        }
+
+        added[0] = true;
+
+        // The new prefix covers the node
+        if (common == prefix.getLength()) {
+            return node.prefix.bit(common) == 0
+                    ? new Node<>(prefix, value, node, null)
+                    : new Node<>(prefix, value, null, node);
+        }
+
+        // Both diverge after the common bits
+        final Node<V> leaf = new Node<>(prefix, value, null, null);
+        return prefix.bit(common) == 0
+                ? new Node<>(prefix.truncate(common), null, leaf, node)
+                : new Node<>(prefix.truncate(common), null, node, leaf);
+    }
+
+    private static <V> Node<V> remove(final Node<V> node, final Prefix prefix) {
+        if (node == null) {
+            return null;
+        }
+
+        final int common = node.prefix.commonLength(prefix);
+        if (common < node.prefix.getLength()) {
+            return node;
+        }
+
+        if (common == prefix.getLength()) {
+            if (node.value == null) {
+                return node;
+            }
+            return join(node.prefix, null, node.left, node.right);
+        }
+
+        if (prefix.bit(common) == 0) {
+            final Node<V> left = remove(node.left, prefix);
+            return left == node.left ? node : join(node.prefix, node.value, left, node.right);
+        } else {
+            final Node<V> right = remove(node.right, prefix);
+            return right == node.right ? node : join(node.prefix, node.value, node.left, right);
+        }
+    }
+
+    private static <V> Node<V> join(final Prefix prefix, final V value, final Node<V> left, final Node<V> right) {
+        // Drop glue nodes which do not separate two branches anymore
+        if (value == null) {
+            if (left == null) {
+                return right;
+            }
+            if (right == null) {
+                return left;
+            }
+        }
+        return new Node<>(prefix, value, left, right);
+    }
+
+    private static <V> Map.Entry<Prefix, V> entry(final Node<V> node) {
+        return new AbstractMap.SimpleImmutableEntry<>(node.prefix, node.value);
+    }
+
+    private static final class NodeIterator<V> implements Iterator<Map.Entry<Prefix, V>> {
+        private final Deque<Node<V>> stack = new ArrayDeque<>();
+
+        private Node<V> next;
+
+        private NodeIterator(final Node<V> root) {
+            if (root != null) {
+                this.stack.push(root);
+            }
+            this.next = advance();
+        }
+
+        private Node<V> advance() {
+            while (!this.stack.isEmpty()) {
+                final Node<V> node = this.stack.pop();
+                if (node.right != null) {
+                    this.stack.push(node.right);
+                }
+                if (node.left != null) {
+                    this.stack.push(node.left);
+                }
+                if (node.value != null) {
+                    return node;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        public Map.Entry<Prefix, V> next() {
+            if (this.next == null) {
+                throw new NoSuchElementException();
+            }
+            final Node<V> node = this.next;
+            this.next = advance();
+            return entry(node);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.telemetry.protocols.bmp.adapter.rib;
+
+import java.net.InetAddress;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A point-in-time view of the routes of a peer.
+ *
+ * Snapshots are immutable and stay valid while the RIB of the peer keeps being
+ * updated. Withdrawn routes are not visible.
+ */
+public final class RibSnapshot {
+
+    private static final Predicate<Map<String, Route>> ACTIVE = routes -> routes.values().stream().anyMatch(route -> !route.isWithdrawn());
+
+    private final String peerHashId;
+    private final Instant timestamp;
+    private final PrefixTrie<Map<String, Route>> ipv4;
+    private final PrefixTrie<Map<String, Route>> ipv6;
+    private final int ipv4Routes;
+    private final int ipv6Routes;
+
+    RibSnapshot(final String peerHashId, final Instant timestamp,
+                final PrefixTrie<Map<String, Route>> ipv4, final PrefixTrie<Map<String, Route>> ipv6,
+                final int ipv4Routes, final int ipv6Routes) {
+        this.peerHashId = peerHashId;
+        this.timestamp = timestamp;
+        this.ipv4 = ipv4;
+        this.ipv6 = ipv6;
+        this.ipv4Routes = ipv4Routes;
+        this.ipv6Routes = ipv6Routes;
+    }
+
+    public String getPeerHashId() {
+        return this.peerHashId;
+    }
+
+    /**
+     * @return the time the snapshot was taken
+     */
+    public Instant getTimestamp() {
+        return this.timestamp;
+    }
+
+    /**
+     * @return the number of announced IPv4 routes
+     */
+    public int getIpv4Routes() {
+        return this.ipv4Routes;
+    }
+
+    /**
+     * @return the number of announced IPv6 routes
+     */
+    public int getIpv6Routes() {
+        return this.ipv6Routes;
+    }
+
+    /**
+     * @return the routes announced for exactly the given prefix
+     */
+    public List<Route> getRoutes(final Prefix prefix) {
+        final Map<String, Route> routes = trie(prefix).get(prefix);
+        return routes != null ? active(routes.values().stream()).collect(Collectors.toList()) : Collections.emptyList();
+    }
+
+    /**
+     * @return the routes of the most specific announced prefix containing the given address
+     */
+    public List<Route> lookup(final InetAddress address) {
+        final Prefix host = Prefix.of(address, address.getAddress().length * 8);
+        return trie(host).longestMatch(host, ACTIVE)
+                .map(entry -> active(entry.getValue().values().stream()).collect(Collectors.toList()))
+                .orElse(Collections.emptyList());
+    }
+
+    /**
+     * @return the routes announced for the given prefix or any more specific one
+     */
+    public Stream<Route> covered(final Prefix prefix) {
+        return active(trie(prefix).covered(prefix).flatMap(entry -> entry.getValue().values().stream()));
+    }
+
+    /**
+     * @return all announced routes in prefix order, IPv4 first
+     */
+    public Stream<Route> routes() {
+        return active(Stream.concat(this.ipv4.stream(), this.ipv6.stream())
+                .flatMap(entry -> entry.getValue().values().stream()));
+    }
+
+    private PrefixTrie<Map<String, Route>> trie(final Prefix prefix) {
+        return prefix.isIpv4() ? this.ipv4 : this.ipv6;
+    }
+
+    private static Stream<Route> active(final Stream<Route> routes) {
+        return routes.filter(route -> !route.isWithdrawn());
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.telemetry.protocols.bmp.adapter.rib;
+
+import java.time.Instant;
+import java.util.Objects;
+
+import org.opennms.netmgt.telemetry.protocols.bmp.adapter.openbmp.proto.records.UnicastPrefix;
+
+/**
+ * The state of a unicast prefix as announced or withdrawn by a peer.
+ */
+public final class Route {
+
+    private final String hashId;
+    private final String peerHashId;
+    private final Prefix prefix;
+    private final String baseAttrHashId;
+    private final Long originAs;
+    private final Long pathId;
+    private final String labels;
+    private final boolean prePolicy;
+    private final boolean adjRibIn;
+    private final boolean withdrawn;
+    private final Instant timestamp;
+    private final Instant firstAdded;
+
+    public Route(final String hashId, final String peerHashId, final Prefix prefix, final String baseAttrHashId,
+                 final Long originAs, final Long pathId, final String labels, final boolean prePolicy,
+                 final boolean adjRibIn, final boolean withdrawn, final Instant timestamp, final Instant firstAdded) {
+        this.hashId = Objects.requireNonNull(hashId);
+        this.peerHashId = Objects.requireNonNull(peerHashId);
+        this.prefix = Objects.requireNonNull(prefix);
+        this.baseAttrHashId = baseAttrHashId;
+        this.originAs = originAs;
+        this.pathId = pathId;
+        this.labels = labels;
+        this.prePolicy = prePolicy;
+        this.adjRibIn = adjRibIn;
+        this.withdrawn = withdrawn;
+        this.timestamp = Objects.requireNonNull(timestamp);
+        this.firstAdded = firstAdded != null ? firstAdded : timestamp;
+    }
+
+    public static Route from(final UnicastPrefix unicastPrefix) {
+        return new Route(unicastPrefix.hash,
+                unicastPrefix.peerHash,
+                Prefix.of(unicastPrefix.prefix, unicastPrefix.length),
+                unicastPrefix.baseAttrHash,
+                unicastPrefix.originAs,
+                unicastPrefix.pathId,
+                unicastPrefix.labels,
+                unicastPrefix.prePolicy,
+                unicastPrefix.adjIn,
+                !unicastPrefix.action.equals(UnicastPrefix.Action.ADD),
+                unicastPrefix.timestamp,
+                null);
+    }
+
+    /**
+     * @return this route updated by the given one, keeping the time the route was first added
+     */
+    Route updatedBy(final Route route) {
+        return new Route(route.hashId, route.peerHashId, route.prefix, route.baseAttrHashId, route.originAs,
+                route.pathId, route.labels, route.prePolicy, route.adjRibIn, route.withdrawn,
+                route.timestamp, this.firstAdded);
+    }
+
+    public String getHashId() {
+        return this.hashId;
+    }
+
+    public String getPeerHashId() {
+        return this.peerHashId;
+    }
+
+    public Prefix getPrefix() {
+        return this.prefix;
+    }
+
+    public String getBaseAttrHashId() {
+        return this.baseAttrHashId;
+    }
+
+    public Long getOriginAs() {
+        return this.originAs;
+    }
+
+    public Long getPathId() {
+        return this.pathId;
+    }
+
+    public String getLabels() {
+        return this.labels;
+    }
+
+    public boolean isPrePolicy() {
+        return this.prePolicy;
+    }
+
+    public boolean isAdjRibIn() {
+        return this.adjRibIn;
+    }
+
+    public boolean isWithdrawn() {
+        return this.withdrawn;
+    }
+
+    public Instant getTimestamp() {
+        return this.timestamp;
+    }
+
+    public Instant getFirstAdded() {
+        return this.firstAdded;
+    }
+
+    @Override
+    public String toString() {
+        return "Route{" +
+                "hashId='" + this.hashId + '\'' +
+                ", peerHashId='" + this.peerHashId + '\'' +
+                ", prefix=" + this.prefix +
+                ", baseAttrHashId='" + this.baseAttrHashId + '\'' +
+                ", originAs=" + this.originAs +
+                ", withdrawn=" + this.withdrawn +
+                ", timestamp=" + this.timestamp +
+                '}';
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.telemetry.protocols.bmp.adapter.rib;
+
+import java.util.Objects;
+
+/**
+ * The change of a route since it was last flushed.
+ *
+ * All updates received for the same route between two flushes are coalesced
+ * into a single change.
+ */
+public final class RouteChange {
+
+    private final Route previous;
+
+    private final Route current;
+
+    RouteChange(final Route previous, final Route current) {
+        this.previous = previous;
+        this.current = Objects.requireNonNull(current);
+    }
+
+    /**
+     * @return the state of the route as of the last flush or null if the route is new
+     */
+    public Route getPrevious() {
+        return this.previous;
+    }
+
+    public Route getCurrent() {
+        return this.current;
+    }
+
+    /**
+     * A change is significant if the route is new, was withdrawn or re-announced,
+     * or is announced with other attributes. Updates only refreshing the
+     * timestamp of the route are not.
+     *
+     * @return true if the change must be recorded in the RIB log
+     */
+    public boolean isSignificant() {
+        return this.previous == null
+                || this.previous.isWithdrawn() != this.current.isWithdrawn()
+                || (!this.current.isWithdrawn() && !Objects.equals(this.previous.getBaseAttrHashId(), this.current.getBaseAttrHashId()));
+    }
+
+    @Override
+    public String toString() {
+        return "RouteChange{previous=" + this.previous + ", current=" + this.current + '}';
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.telemetry.protocols.bmp.adapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.dao.api.SessionUtils;
+import org.opennms.netmgt.telemetry.protocols.bmp.adapter.rib.PeerRib;
+import org.opennms.netmgt.telemetry.protocols.bmp.adapter.rib.Prefix;
+import org.opennms.netmgt.telemetry.protocols.bmp.adapter.rib.Route;
+import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpIpRibLogDao;
+import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.BmpUnicastPrefixDao;
+
+public class BmpMessagePersisterTest {
+
+    private static final String PEER = "peer";
+
+    private final BmpUnicastPrefixDao bmpUnicastPrefixDao = mock(BmpUnicastPrefixDao.class);
+
+    private final BmpIpRibLogDao bmpIpRibLogDao = mock(BmpIpRibLogDao.class);
+
+    private BmpMessagePersister persister;
+
+    @Before
+    public void setUp() {
+        persister = new BmpMessagePersister();
+        persister.setRibEnabled(true);
+        persister.setBmpUnicastPrefixDao(bmpUnicastPrefixDao);
+        persister.setBmpIpRibLogDao(bmpIpRibLogDao);
+        persister.setSessionUtils(new SessionUtils() {
+            @Override
+            public <V> V withTransaction(Supplier<V> supplier) {
+                return supplier.get();
+            }
+
+            @Override
+            public <V> V withReadOnlyTransaction(Supplier<V> supplier) {
+                return supplier.get();
+            }
+
+            @Override
+            public <V> V withManualFlush(Supplier<V> supplier) {
+                return supplier.get();
+            }
+        });
+    }
+
+    private static Route route(final String hash, final String prefix, final String attr, final long time) {
+        final String[] parts = prefix.split("/");
+        return new Route(hash, PEER, Prefix.of(InetAddressUtils.addr(parts[0]), Integer.parseInt(parts[1])), attr,
+                65000L, null, null, true, true, false, Instant.ofEpochSecond(time), null);
+    }
+
+    @Test
+    public void testFailedBatchIsRetried() {
+        final PeerRib peerRib = persister.getRib().getPeer(PEER, PeerRib::new);
+        peerRib.apply(route("a", "10.0.0.0/8", "attr1", 1));
+        peerRib.apply(route("b", "10.1.0.0/16", "attr1", 1));
+
+        when(bmpUnicastPrefixDao.upsert(anyCollection()))
+                .thenThrow(new RuntimeException("Connection refused"))
+                .thenReturn(2);
+
+        // The failed batch must be kept in memory
+        persister.flushRib();
+        assertEquals(2, persister.getRib().getPending());
+
+        // An update received in between is merged with the failed change
+        peerRib.apply(route("a", "10.0.0.0/8", "attr2", 2));
+        assertEquals(2, persister.getRib().getPending());
+
+        persister.flushRib();
+        assertEquals(0, persister.getRib().getPending());
+        verify(bmpUnicastPrefixDao, times(2)).upsert(anyCollection());
+        verify(bmpIpRibLogDao, times(1)).insert(anyCollection());
+    }
+}
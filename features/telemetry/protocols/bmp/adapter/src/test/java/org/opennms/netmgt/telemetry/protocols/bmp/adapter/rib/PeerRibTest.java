@@ -0,0 +1,168 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.telemetry.protocols.bmp.adapter.rib;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.opennms.core.utils.InetAddressUtils;
+
+public class PeerRibTest {
+
+    private static final String PEER = "peer";
+
+    private static Route route(final String hash, final String prefix, final String attr, final boolean withdrawn, final long time) {
+        final String[] parts = prefix.split("/");
+        return new Route(hash, PEER, Prefix.of(InetAddressUtils.addr(parts[0]), Integer.parseInt(parts[1])), attr,
+                65000L, null, null, true, true, withdrawn, Instant.ofEpochSecond(time), null);
+    }
+
+    private static List<String> hashes(final List<Route> routes) {
+        return routes.stream().map(Route::getHashId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testUpdatesAreCoalesced() {
+        final PeerRib rib = new PeerRib(PEER);
+        rib.apply(route("a", "10.0.0.0/8", "attr1", false, 1));
+        rib.apply(route("b", "10.1.0.0/16", "attr1", false, 1));
+        rib.apply(route("a", "10.0.0.0/8", "attr2", false, 2));
+        rib.apply(route("a", "10.0.0.0/8", "attr3", false, 3));
+        assertEquals(2, rib.getPending());
+
+        final List<RouteChange> changes = rib.drain(10);
+        assertEquals(2, changes.size());
+        assertNull(changes.get(0).getPrevious());
+        assertEquals("attr3", changes.get(0).getCurrent().getBaseAttrHashId());
+        assertEquals(Instant.ofEpochSecond(1), changes.get(0).getCurrent().getFirstAdded());
+        assertTrue(changes.get(0).isSignificant());
+        assertEquals(0, rib.getPending());
+
+        // Refreshing a route with the same attributes is persisted but not significant
+        rib.apply(route("a", "10.0.0.0/8", "attr3", false, 4));
+        RouteChange change = rib.drain(10).get(0);
+        assertEquals("attr3", change.getPrevious().getBaseAttrHashId());
+        assertFalse(change.isSignificant());
+
+        // Withdraw and re-announce in the same window results in a single insignificant change
+        rib.apply(route("a", "10.0.0.0/8", "attr3", true, 5));
+        rib.apply(route("a", "10.0.0.0/8", "attr3", false, 6));
+        change = rib.drain(10).get(0);
+        assertFalse(change.isSignificant());
+        assertEquals(Instant.ofEpochSecond(6), change.getCurrent().getTimestamp());
+    }
+
+    @Test
+    public void testDrainIsLimited() {
+        final PeerRib rib = new PeerRib(PEER);
+        for (int i = 0; i < 10; i++) {
+            rib.apply(route("h" + i, "10.0." + i + ".0/24", "attr", false, 1));
+        }
+        assertEquals(4, rib.drain(4).size());
+        assertEquals(4, rib.drain(4).size());
+        assertEquals(2, rib.drain(4).size());
+        assertThat(rib.drain(4), empty());
+    }
+
+    @Test
+    public void testSnapshot() {
+        final PeerRib rib = new PeerRib(PEER);
+        rib.load(route("a", "10.0.0.0/8", "attr", false, 1));
+        rib.apply(route("b", "10.1.0.0/16", "attr", false, 1));
+        rib.apply(route("c", "10.1.2.0/24", "attr", false, 1));
+        rib.apply(route("d", "2001:db8::/32", "attr", false, 1));
+        // Loaded routes are not pending
+        assertEquals(3, rib.getPending());
+
+        final RibSnapshot before = rib.snapshot();
+        rib.apply(route("c", "10.1.2.0/24", "attr", true, 2));
+        final RibSnapshot after = rib.snapshot();
+
+        assertEquals(3, before.getIpv4Routes());
+        assertEquals(1, before.getIpv6Routes());
+        assertEquals(2, after.getIpv4Routes());
+
+        assertThat(hashes(before.lookup(InetAddressUtils.addr("10.1.2.3"))), contains("c"));
+        assertThat(hashes(after.lookup(InetAddressUtils.addr("10.1.2.3"))), contains("b"));
+        assertThat(hashes(after.lookup(InetAddressUtils.addr("10.2.2.3"))), contains("a"));
+        assertThat(after.lookup(InetAddressUtils.addr("11.2.2.3")), empty());
+        assertThat(hashes(after.lookup(InetAddressUtils.addr("2001:db8::1"))), contains("d"));
+
+        assertThat(hashes(before.covered(Prefix.of(InetAddressUtils.addr("10.1.0.0"), 16)).collect(Collectors.toList())), contains("b", "c"));
+        assertThat(hashes(after.covered(Prefix.of(InetAddressUtils.addr("10.1.0.0"), 16)).collect(Collectors.toList())), contains("b"));
+        assertThat(after.getRoutes(Prefix.of(InetAddressUtils.addr("10.1.2.0"), 24)), empty());
+        assertThat(hashes(after.routes().collect(Collectors.toList())), contains("a", "b", "d"));
+    }
+
+    @Test
+    public void testRetainAfter() {
+        final PeerRib rib = new PeerRib(PEER);
+        rib.load(route("a", "10.0.0.0/8", "attr", false, 1));
+        rib.load(route("b", "10.1.0.0/16", "attr", false, 1));
+        rib.apply(route("b", "10.1.0.0/16", "attr", false, 5));
+        rib.apply(route("c", "10.2.0.0/16", "attr", false, 2));
+
+        assertEquals(2, rib.retainAfter(Instant.ofEpochSecond(3)));
+
+        // The update of b survives, but its persisted state has been removed along with the session
+        final List<RouteChange> changes = rib.drain(10);
+        assertEquals(1, changes.size());
+        assertEquals("b", changes.get(0).getCurrent().getHashId());
+        assertNull(changes.get(0).getPrevious());
+        assertThat(hashes(rib.snapshot().routes().collect(Collectors.toList())), contains("b"));
+    }
+
+    @Test
+    public void testRequeue() {
+        final PeerRib rib = new PeerRib(PEER);
+        rib.apply(route("a", "10.0.0.0/8", "attr1", false, 1));
+        rib.apply(route("b", "10.1.0.0/16", "attr1", false, 1));
+        final List<RouteChange> failed = rib.drain(10);
+
+        rib.apply(route("c", "10.2.0.0/16", "attr1", false, 2));
+        rib.apply(route("a", "10.0.0.0/8", "attr2", false, 2));
+        rib.requeue(failed);
+
+        // The requeued changes come first and keep the persisted state from before the failed flush
+        final List<RouteChange> changes = rib.drain(10);
+        assertThat(changes.stream().map(change -> change.getCurrent().getHashId()).collect(Collectors.toList()), contains("a", "b", "c"));
+        assertNull(changes.get(0).getPrevious());
+        assertEquals("attr2", changes.get(0).getCurrent().getBaseAttrHashId());
+
+        // Changes of routes removed by a session reset are not requeued
+        rib.apply(route("a", "10.0.0.0/8", "attr3", false, 3));
+        final List<RouteChange> stale = rib.drain(10);
+        rib.retainAfter(Instant.ofEpochSecond(4));
+        rib.requeue(stale);
+        assertEquals(0, rib.getPending());
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.telemetry.protocols.bmp.adapter.rib;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.opennms.core.utils.InetAddressUtils;
+
+public class PrefixTrieTest {
+
+    private static Prefix prefix(final String prefix) {
+        final String[] parts = prefix.split("/");
+        return Prefix.of(InetAddressUtils.addr(parts[0]), Integer.parseInt(parts[1]));
+    }
+
+    private static List<String> keys(final PrefixTrie<String> trie) {
+        return trie.stream().map(e -> e.getKey().toString()).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testPrefix() {
+        assertEquals("10.1.0.0/16", prefix("10.1.2.3/16").toString());
+        assertEquals("10.1.2.0/23", prefix("10.1.3.255/23").toString());
+        assertEquals("0.0.0.0/0", prefix("192.168.0.1/0").toString());
+        assertEquals(prefix("10.1.0.0/16"), prefix("10.1.255.1/16"));
+        assertTrue(prefix("10.0.0.0/8").contains(prefix("10.1.0.0/16")));
+        assertFalse(prefix("10.1.0.0/16").contains(prefix("10.0.0.0/8")));
+        assertFalse(prefix("10.0.0.0/8").contains(prefix("11.0.0.0/16")));
+        assertFalse(prefix("::/0").contains(prefix("10.0.0.0/8")));
+        assertEquals(7, prefix("10.0.0.0/8").commonLength(prefix("11.0.0.0/8")));
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        PrefixTrie<String> trie = PrefixTrie.empty();
+        trie = trie.put(prefix("10.0.0.0/8"), "a");
+        trie = trie.put(prefix("10.1.0.0/16"), "b");
+        trie = trie.put(prefix("10.2.0.0/16"), "c");
+        trie = trie.put(prefix("0.0.0.0/0"), "d");
+        trie = trie.put(prefix("10.1.2.0/24"), "e");
+        trie = trie.put(prefix("192.168.0.0/16"), "f");
+
+        assertEquals(6, trie.size());
+        assertEquals("a", trie.get(prefix("10.0.0.0/8")));
+        assertEquals("b", trie.get(prefix("10.1.0.0/16")));
+        assertEquals("d", trie.get(prefix("0.0.0.0/0")));
+        assertEquals("e", trie.get(prefix("10.1.2.0/24")));
+        assertNull(trie.get(prefix("10.0.0.0/15")));
+        assertNull(trie.get(prefix("10.3.0.0/16")));
+
+        assertThat(keys(trie), contains("0.0.0.0/0", "10.0.0.0/8", "10.1.0.0/16", "10.1.2.0/24", "10.2.0.0/16", "192.168.0.0/16"));
+
+        // Replacing a value keeps the size
+        trie = trie.put(prefix("10.1.0.0/16"), "B");
+        assertEquals(6, trie.size());
+        assertEquals("B", trie.get(prefix("10.1.0.0/16")));
+
+        trie = trie.remove(prefix("10.1.0.0/16"));
+        assertEquals(5, trie.size());
+        assertNull(trie.get(prefix("10.1.0.0/16")));
+        assertEquals("e", trie.get(prefix("10.1.2.0/24")));
+
+        // Removing unknown prefixes returns the same trie
+        assertSame(trie, trie.remove(prefix("10.1.0.0/16")));
+        assertSame(trie, trie.remove(prefix("172.16.0.0/12")));
+
+        trie = trie.remove(prefix("0.0.0.0/0"));
+        trie = trie.remove(prefix("10.0.0.0/8"));
+        trie = trie.remove(prefix("10.1.2.0/24"));
+        trie = trie.remove(prefix("10.2.0.0/16"));
+        trie = trie.remove(prefix("192.168.0.0/16"));
+        assertTrue(trie.isEmpty());
+        assertThat(keys(trie), empty());
+    }
+
+    @Test
+    public void testSnapshotsAreImmutable() {
+        final PrefixTrie<String> before = PrefixTrie.<String>empty()
+                .put(prefix("10.0.0.0/8"), "a")
+                .put(prefix("10.1.0.0/16"), "b");
+        final PrefixTrie<String> after = before
+                .put(prefix("10.1.2.0/24"), "c")
+                .remove(prefix("10.0.0.0/8"));
+
+        assertThat(keys(before), contains("10.0.0.0/8", "10.1.0.0/16"));
+        assertThat(keys(after), contains("10.1.0.0/16", "10.1.2.0/24"));
+    }
+
+    @Test
+    public void testLongestMatch() {
+        final PrefixTrie<String> trie = PrefixTrie.<String>empty()
+                .put(prefix("0.0.0.0/0"), "default")
+                .put(prefix("10.0.0.0/8"), "a")
+                .put(prefix("10.1.0.0/16"), "b")
+                .put(prefix("10.1.2.0/24"), "c");
+
+        assertEquals("c", trie.longestMatch(prefix("10.1.2.3/32")).get().getValue());
+        assertEquals("b", trie.longestMatch(prefix("10.1.3.3/32")).get().getValue());
+        assertEquals("a", trie.longestMatch(prefix("10.2.3.3/32")).get().getValue());
+        assertEquals("default", trie.longestMatch(prefix("11.2.3.3/32")).get().getValue());
+        assertEquals("a", trie.longestMatch(prefix("10.1.2.3/32"), v -> !v.equals("b") && !v.equals("c")).get().getValue());
+        assertFalse(trie.remove(prefix("0.0.0.0/0")).longestMatch(prefix("11.2.3.3/32")).isPresent());
+    }
+
+    @Test
+    public void testCovered() {
+        final PrefixTrie<String> trie = PrefixTrie.<String>empty()
+                .put(prefix("10.0.0.0/8"), "a")
+                .put(prefix("10.1.0.0/16"), "b")
+                .put(prefix("10.1.2.0/24"), "c")
+                .put(prefix("10.2.0.0/16"), "d")
+                .put(prefix("2001:db8::/32"), "x");
+
+        assertThat(trie.covered(prefix("10.1.0.0/16")).map(Map.Entry::getValue).collect(Collectors.toList()), contains("b", "c"));
+        assertThat(trie.covered(prefix("10.0.0.0/12")).map(Map.Entry::getValue).collect(Collectors.toList()), contains("b", "c", "d"));
+        assertThat(trie.covered(prefix("10.1.2.0/25")).collect(Collectors.toList()), empty());
+        assertThat(trie.covered(prefix("11.0.0.0/8")).collect(Collectors.toList()), empty());
+    }
+
+    @Test
+    public void testRandomAgainstTreeMap() {
+        final Random random = new Random(42);
+        final Map<String, String> expected = new TreeMap<>();
+        final List<Prefix> prefixes = new ArrayList<>();
+        PrefixTrie<String> trie = PrefixTrie.empty();
+
+        for (int i = 0; i < 20000; i++) {
+            if (prefixes.isEmpty() || random.nextInt(3) > 0) {
+                final byte[] address = new byte[16];
+                random.nextBytes(address);
+                // Use few distinct leading bytes to get deep tries with shared paths
+                address[0] = (byte) 0x20;
+                address[1] = (byte) random.nextInt(4);
+                final Prefix prefix = Prefix.of(address, random.nextInt(129));
+                trie = trie.put(prefix, prefix.toString());
+                expected.put(prefix.toString(), prefix.toString());
+                prefixes.add(prefix);
+            } else {
+                final Prefix prefix = prefixes.remove(random.nextInt(prefixes.size()));
+                trie = trie.remove(prefix);
+                expected.remove(prefix.toString());
+                prefixes.removeIf(prefix::equals);
+            }
+            assertEquals(expected.size(), trie.size());
+        }
+
+        final List<String> actual = new ArrayList<>(keys(trie));
+        Collections.sort(actual);
+        assertEquals(new ArrayList<>(expected.keySet()), actual);
+        for (final Prefix prefix : prefixes) {
+            assertEquals(prefix.toString(), trie.get(prefix));
+        }
+    }
+}
@@ -21,6 +21,7 @@
  */
 package org.opennms.netmgt.telemetry.protocols.bmp.persistence.api;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.opennms.netmgt.dao.api.OnmsDao;
@@ -32,4 +33,11 @@ public interface BmpIpRibLogDao extends OnmsDao<BmpIpRibLog, Long> {
     List<StatsByAsn> getStatsByAsnForInterval(String interval);
 
     List<StatsByPrefix> getStatsByPrefixForInterval(String interval);
+
+    /**
+     * Inserts the given log entries using batched statements.
+     *
+     * @param logs the entries to insert
+     */
+    void insert(Collection<BmpIpRibLog> logs);
 }
@@ -22,8 +22,10 @@
 package org.opennms.netmgt.telemetry.protocols.bmp.persistence.api;
 
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.opennms.netmgt.dao.api.OnmsDao;
 
@@ -36,4 +38,24 @@ public interface BmpUnicastPrefixDao extends OnmsDao<BmpUnicastPrefix, Long> {
     List<PrefixByAS> getPrefixesGroupedByAS();
 
     List<StatsPeerRib> getPeerRibCountsByPeer();
+
+    /**
+     * Inserts or updates the given prefixes, matched by their hash id, using batched statements.
+     *
+     * The prefixes are written without being attached to the session.
+     *
+     * @param prefixes the prefixes to persist
+     * @return the number of inserted prefixes
+     */
+    int upsert(Collection<BmpUnicastPrefix> prefixes);
+
+    /**
+     * Reads all prefixes of a peer without attaching them to the session.
+     *
+     * The returned prefixes do not reference their peer.
+     *
+     * @param peerHashId the hash id of the peer
+     * @param consumer invoked for every prefix
+     */
+    void forEachByPeerHashId(String peerHashId, Consumer<BmpUnicastPrefix> consumer);
 }
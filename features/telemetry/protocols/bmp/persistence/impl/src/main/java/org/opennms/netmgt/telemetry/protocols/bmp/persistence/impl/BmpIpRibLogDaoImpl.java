@@ -22,6 +22,10 @@
 package org.opennms.netmgt.telemetry.protocols.bmp.persistence.impl;
 
 import java.math.BigInteger;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -34,6 +38,10 @@ import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.StatsByPeer;
 import org.opennms.netmgt.telemetry.protocols.bmp.persistence.api.StatsByPrefix;
 
 public class BmpIpRibLogDaoImpl extends AbstractDaoHibernate<BmpIpRibLog, Long> implements BmpIpRibLogDao {
+
+    private static final String INSERT_LOG_SQL = "INSERT INTO bmp_ip_rib_log (id, peer_hash_id, base_attr_hash_id, last_updated, " +
+            "prefix, prefix_len, origin_as, is_withdrawn) VALUES (nextval('bmpipriblognxtid'), ?, ?, ?, ?, ?, ?, ?)";
+
     public BmpIpRibLogDaoImpl() {
         super(BmpIpRibLog.class);
     }
@@ -136,4 +144,33 @@ public class BmpIpRibLogDaoImpl extends AbstractDaoHibernate<BmpIpRibLog, Long>
 
         return statsByPrefixList;
     }
+
+    @Override
+    public void insert(final Collection<BmpIpRibLog> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        getHibernateTemplate().execute(session -> {
+            session.doWork(connection -> {
+                try (final PreparedStatement insert = connection.prepareStatement(INSERT_LOG_SQL)) {
+                    for (final BmpIpRibLog log : logs) {
+                        insert.setString(1, log.getPeerHashId());
+                        insert.setString(2, log.getBaseAttrHashId());
+                        insert.setTimestamp(3, new Timestamp(log.getTimestamp().getTime()));
+                        insert.setString(4, log.getPrefix());
+                        insert.setInt(5, log.getPrefixLen());
+                        if (log.getOriginAs() != null) {
+                            insert.setLong(6, log.getOriginAs());
+                        } else {
+                            insert.setNull(6, Types.BIGINT);
+                        }
+                        insert.setBoolean(7, log.isWithDrawn());
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                }
+            });
+            return null;
+        });
+    }
 }
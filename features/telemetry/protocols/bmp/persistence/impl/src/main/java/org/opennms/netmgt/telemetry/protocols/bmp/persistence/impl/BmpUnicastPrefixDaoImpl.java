@@ -22,8 +22,16 @@
 package org.opennms.netmgt.telemetry.protocols.bmp.persistence.impl;
 
 import java.math.BigInteger;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.hibernate.transform.ResultTransformer;
 import org.opennms.core.criteria.Criteria;
@@ -40,6 +48,20 @@ import com.google.common.base.Strings;
 
 public class BmpUnicastPrefixDaoImpl extends AbstractDaoHibernate<BmpUnicastPrefix, Long> implements BmpUnicastPrefixDao {
 
+    private static final String UPDATE_PREFIX_SQL = "UPDATE bmp_ip_ribs SET peer_hash_id = ?, base_attr_hash_id = ?, is_ipv4 = ?, origin_as = ?, " +
+            "prefix = ?, prefix_len = ?, last_updated = ?, is_withdrawn = ?, path_id = ?, labels = ?, is_pre_policy = ?, is_adj_ribin = ? " +
+            "WHERE hash_id = ?";
+
+    private static final String INSERT_PREFIX_SQL = "INSERT INTO bmp_ip_ribs (id, peer_hash_id, base_attr_hash_id, is_ipv4, origin_as, " +
+            "prefix, prefix_len, last_updated, is_withdrawn, path_id, labels, is_pre_policy, is_adj_ribin, hash_id, first_added_timestamp) " +
+            "VALUES (nextval('bmpunicastnxtid'), ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SELECT_BY_PEER_SQL = "SELECT hash_id, base_attr_hash_id, is_ipv4, origin_as, prefix, prefix_len, " +
+            "last_updated, first_added_timestamp, is_withdrawn, path_id, labels, is_pre_policy, is_adj_ribin " +
+            "FROM bmp_ip_ribs WHERE peer_hash_id = ?";
+
+    private static final int FETCH_SIZE = 10000;
+
     public BmpUnicastPrefixDaoImpl() {
         super(BmpUnicastPrefix.class);
     }
@@ -102,4 +124,107 @@ public class BmpUnicastPrefixDaoImpl extends AbstractDaoHibernate<BmpUnicastPref
             }
         }).list());
     }
+
+    @Override
+    public int upsert(final Collection<BmpUnicastPrefix> prefixes) {
+        if (prefixes.isEmpty()) {
+            return 0;
+        }
+        return getHibernateTemplate().execute(session -> {
+            final List<BmpUnicastPrefix> missing = new ArrayList<>();
+            session.doWork(connection -> {
+                // Update the existing rows first and insert the ones which did not match
+                try (final PreparedStatement update = connection.prepareStatement(UPDATE_PREFIX_SQL)) {
+                    for (final BmpUnicastPrefix prefix : prefixes) {
+                        setColumns(update, prefix);
+                        update.addBatch();
+                    }
+                    final int[] counts = update.executeBatch();
+                    int i = 0;
+                    for (final BmpUnicastPrefix prefix : prefixes) {
+                        if (counts[i++] == 0) {
+                            missing.add(prefix);
+                        }
+                    }
+                }
+
+                if (!missing.isEmpty()) {
+                    try (final PreparedStatement insert = connection.prepareStatement(INSERT_PREFIX_SQL)) {
+                        for (final BmpUnicastPrefix prefix : missing) {
+                            setColumns(insert, prefix);
+                            final Date firstAdded = prefix.getFirstAddedTimestamp() != null ? prefix.getFirstAddedTimestamp() : prefix.getTimestamp();
+                            insert.setTimestamp(14, new Timestamp(firstAdded.getTime()));
+                            insert.addBatch();
+                        }
+                        insert.executeBatch();
+                    }
+                }
+            });
+            return missing.size();
+        });
+    }
+
+    @Override
+    public void forEachByPeerHashId(final String peerHashId, final Consumer<BmpUnicastPrefix> consumer) {
+        getHibernateTemplate().execute(session -> {
+            session.doWork(connection -> {
+                try (final PreparedStatement select = connection.prepareStatement(SELECT_BY_PEER_SQL)) {
+                    select.setFetchSize(FETCH_SIZE);
+                    select.setString(1, peerHashId);
+                    try (final ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            final BmpUnicastPrefix prefix = new BmpUnicastPrefix();
+                            prefix.setHashId(rs.getString("hash_id"));
+                            prefix.setBaseAttrHashId(rs.getString("base_attr_hash_id"));
+                            prefix.setIpv4(rs.getBoolean("is_ipv4"));
+                            prefix.setOriginAs(getLong(rs, "origin_as"));
+                            prefix.setPrefix(rs.getString("prefix"));
+                            prefix.setPrefixLen(rs.getInt("prefix_len"));
+                            prefix.setTimestamp(rs.getTimestamp("last_updated"));
+                            prefix.setFirstAddedTimestamp(rs.getTimestamp("first_added_timestamp"));
+                            prefix.setWithDrawn(rs.getBoolean("is_withdrawn"));
+                            prefix.setPathId(getLong(rs, "path_id"));
+                            prefix.setLabels(rs.getString("labels"));
+                            prefix.setPrePolicy(rs.getBoolean("is_pre_policy"));
+                            prefix.setAdjRibIn(rs.getBoolean("is_adj_ribin"));
+                            consumer.accept(prefix);
+                        }
+                    }
+                }
+            });
+            return null;
+        });
+    }
+
+    /**
+     * Binds the columns shared by the update and the insert statement. The hash id is bound last.
+     */
+    private static void setColumns(final PreparedStatement statement, final BmpUnicastPrefix prefix) throws SQLException {
+        statement.setString(1, prefix.getBmpPeer().getHashId());
+        statement.setString(2, prefix.getBaseAttrHashId());
+        statement.setBoolean(3, prefix.isIpv4());
+        setLong(statement, 4, prefix.getOriginAs());
+        statement.setString(5, prefix.getPrefix());
+        statement.setInt(6, prefix.getPrefixLen());
+        statement.setTimestamp(7, new Timestamp(prefix.getTimestamp().getTime()));
+        statement.setBoolean(8, prefix.isWithDrawn());
+        setLong(statement, 9, prefix.getPathId());
+        statement.setString(10, prefix.getLabels());
+        statement.setBoolean(11, prefix.isPrePolicy());
+        statement.setBoolean(12, prefix.isAdjRibIn());
+        statement.setString(13, prefix.getHashId());
+    }
+
+    private static void setLong(final PreparedStatement statement, final int index, final Long value) throws SQLException {
+        if (value != null) {
+            statement.setLong(index, value);
+        } else {
+            statement.setNull(index, Types.BIGINT);
+        }
+    }
+
+    private static Long getLong(final ResultSet rs, final String column) throws SQLException {
+        final long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
 }
@@ -85,7 +85,7 @@ public class IpfixTcpParser extends ParserBase implements TcpParser {
 
                 final Packet packet;
                 if (buffer.isReadable(header.payloadLength())) {
-                    packet = new Packet(session, header, slice(buffer, header.payloadLength()));
+                    packet = new Packet(session, header, slice(buffer, header.payloadLength()), getCompiledTemplates());
                 } else {
                     buffer.resetReaderIndex();
                     return Optional.empty();
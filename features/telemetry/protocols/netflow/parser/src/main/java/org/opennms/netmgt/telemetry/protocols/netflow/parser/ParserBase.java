@@ -126,6 +126,8 @@ public abstract class ParserBase implements Parser {
 
     private boolean dnsLookupsEnabled = true;
 
+    private boolean compiledTemplates = false;
+
     private LoadingCache<InetAddress, RateLimiter> clockSkewEventLimiters;
 
     private LoadingCache<InetAddress, RateLimiter> illegalFlowEventLimiters;
@@ -250,6 +252,17 @@ public abstract class ParserBase implements Parser {
         this.dnsLookupsEnabled = dnsLookupsEnabled;
     }
 
+    /**
+     * Whether data sets are read using compiled templates instead of decoding each field to a value.
+     */
+    public boolean getCompiledTemplates() {
+        return this.compiledTemplates;
+    }
+
+    public void setCompiledTemplates(final boolean compiledTemplates) {
+        this.compiledTemplates = compiledTemplates;
+    }
+
     public int getThreads() {
         return threads;
     }
@@ -32,20 +32,8 @@ import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 import org.opennms.netmgt.dnsresolver.api.DnsResolver;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.FieldCursor;
 import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.Value;
-import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.values.BooleanValue;
-import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.values.DateTimeValue;
-import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.values.FloatValue;
-import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.values.IPv4AddressValue;
-import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.values.IPv6AddressValue;
-import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.values.ListValue;
-import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.values.MacAddressValue;
-import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.values.NullValue;
-import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.values.OctetArrayValue;
-import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.values.SignedValue;
-import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.values.StringValue;
-import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.values.UndeclaredValue;
-import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.values.UnsignedValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -69,11 +57,14 @@ public class RecordEnricher {
             emptyFuture.complete(emptyEnrichment);
             return emptyFuture;
         }
-        final IpAddressCapturingVisitor ipAddressCapturingVisitor = new IpAddressCapturingVisitor();
-        for (final Value<?> value : record) {
-            value.visit(ipAddressCapturingVisitor);
+        final Set<InetAddress> addressesToReverseLookup = new HashSet<>();
+        final FieldCursor cursor = FieldCursor.of(record);
+        while (cursor.next()) {
+            final InetAddress address = cursor.getInetAddress();
+            if (address != null) {
+                addressesToReverseLookup.add(address);
+            }
         }
-        final Set<InetAddress> addressesToReverseLookup = ipAddressCapturingVisitor.getAddresses();
         final Map<InetAddress, String> hostnamesByAddress = new HashMap<>(addressesToReverseLookup.size());
         final CompletableFuture reverseLookupFutures[] = addressesToReverseLookup.stream()
                 .map(addr -> {
@@ -119,77 +110,4 @@ public class RecordEnricher {
             return Optional.ofNullable(hostnamesByAddress.get(address));
         }
     }
-
-    private static class IpAddressCapturingVisitor implements Value.Visitor {
-        private final Set<InetAddress> addresses = new HashSet<>();
-
-        public Set<InetAddress> getAddresses() {
-            return addresses;
-        }
-
-        @Override
-        public void accept(IPv4AddressValue value) {
-            addresses.add(value.getValue());
-        }
-
-        @Override
-        public void accept(IPv6AddressValue value) {
-            addresses.add(value.getValue());
-        }
-
-        @Override
-        public void accept(NullValue value) {
-            // pass
-        }
-
-        @Override
-        public void accept(BooleanValue value) {
-            // pass
-        }
-
-        @Override
-        public void accept(DateTimeValue value) {
-            // pass
-        }
-
-        @Override
-        public void accept(FloatValue value) {
-            // pass
-        }
-
-        @Override
-        public void accept(MacAddressValue value) {
-            // pass
-        }
-
-        @Override
-        public void accept(OctetArrayValue value) {
-            // pass
-        }
-
-        @Override
-        public void accept(SignedValue value) {
-            // pass
-        }
-
-        @Override
-        public void accept(StringValue value) {
-            // pass
-        }
-
-        @Override
-        public void accept(UnsignedValue value) {
-            // pass
-        }
-
-        @Override
-        public void accept(ListValue value) {
-            // pass
-        }
-
-        @Override
-        public void accept(UndeclaredValue value) {
-            // pass
-        }
-    }
 }
@@ -0,0 +1,134 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.telemetry.protocols.netflow.parser.ie;
+
+import java.net.InetAddress;
+import java.time.Instant;
+import java.util.Iterator;
+
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.values.DateTimeValue;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.values.IPv4AddressValue;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.values.IPv6AddressValue;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.values.UnsignedValue;
+
+/**
+ * Iterates over the fields of a record and gives typed access to the current field.
+ *
+ * Other than iterating over the values of a record, the cursor does not require the fields to be decoded to
+ * {@link Value} objects if the record was read by a compiled template.
+ */
+public interface FieldCursor {
+
+    /**
+     * Moves to the next field.
+     *
+     * @return false if there are no more fields
+     */
+    boolean next();
+
+    String getName();
+
+    /**
+     * @return the value of the field or {@code null} if the field is not an unsigned value
+     */
+    Long getUnsignedValue();
+
+    /**
+     * @return the value of the field or {@code null} if the field is not an address
+     */
+    InetAddress getInetAddress();
+
+    /**
+     * @return the value of the field or {@code null} if the field is not a date-time value
+     */
+    Instant getTime();
+
+    static FieldCursor of(final Iterable<Value<?>> values) {
+        if (values instanceof FlowRecord) {
+            return ((FlowRecord) values).cursor();
+        }
+        return new ValueCursor(values.iterator());
+    }
+
+    /**
+     * A cursor over decoded values.
+     */
+    class ValueCursor implements FieldCursor {
+        private final Iterator<Value<?>> values;
+
+        private Value<?> current;
+
+        public ValueCursor(final Iterator<Value<?>> values) {
+            this.values = values;
+        }
+
+        @Override
+        public boolean next() {
+            if (this.values.hasNext()) {
+                this.current = this.values.next();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public String getName() {
+            return this.current.getName();
+        }
+
+        @Override
+        public Long getUnsignedValue() {
+            return unsignedValue(this.current);
+        }
+
+        @Override
+        public InetAddress getInetAddress() {
+            return inetAddress(this.current);
+        }
+
+        @Override
+        public Instant getTime() {
+            return time(this.current);
+        }
+
+        static Long unsignedValue(final Value<?> value) {
+            if (value instanceof UnsignedValue) {
+                return ((UnsignedValue) value).getValue().longValue();
+            }
+            return null;
+        }
+
+        static InetAddress inetAddress(final Value<?> value) {
+            if (value instanceof IPv4AddressValue || value instanceof IPv6AddressValue) {
+                return (InetAddress) value.getValue();
+            }
+            return null;
+        }
+
+        static Instant time(final Value<?> value) {
+            if (value instanceof DateTimeValue) {
+                return ((DateTimeValue) value).getValue();
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.telemetry.protocols.netflow.parser.ie;
+
+import java.net.InetAddress;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.InvalidPacketException;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.MissingTemplateException;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.values.UnsignedValue;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.Iterables;
+
+/**
+ * A single record of a {@link RecordBuffer}, prefixed by the packet header fields and followed by the options
+ * matching the record.
+ *
+ * Iterating over the record decodes all fields to {@link Value} objects and yields the same values as a record read
+ * without a compiled template. This is meant for scripting and debugging - consumers interested in single fields
+ * should use the {@link #cursor()} instead.
+ */
+public final class FlowRecord implements Iterable<Value<?>> {
+
+    private final String[] headerNames;
+    private final long[] headerValues;
+
+    private final RecordBuffer buffer;
+    private final int index;
+
+    private final List<Value<?>> options;
+
+    public FlowRecord(final String[] headerNames,
+                      final long[] headerValues,
+                      final RecordBuffer buffer,
+                      final int index,
+                      final List<Value<?>> options) {
+        this.headerNames = Objects.requireNonNull(headerNames);
+        this.headerValues = Objects.requireNonNull(headerValues);
+        this.buffer = Objects.requireNonNull(buffer);
+        this.index = index;
+        this.options = Objects.requireNonNull(options);
+    }
+
+    /**
+     * Decodes the fields of the record, excluding the header fields and options.
+     */
+    public static List<Value<?>> decodeFields(final RecordBuffer buffer, final int index) throws InvalidPacketException, MissingTemplateException {
+        final List<Value<?>> fields = new ArrayList<>(buffer.template.size());
+        for (int i = 0; i < buffer.template.size(); i++) {
+            fields.add(buffer.getValue(index, i));
+        }
+        return fields;
+    }
+
+    public List<Value<?>> getOptions() {
+        return Collections.unmodifiableList(this.options);
+    }
+
+    @Override
+    public Iterator<Value<?>> iterator() {
+        final List<Value<?>> header = new ArrayList<>(this.headerNames.length);
+        for (int i = 0; i < this.headerNames.length; i++) {
+            header.add(new UnsignedValue(this.headerNames[i], this.headerValues[i]));
+        }
+
+        final List<Value<?>> fields;
+        try {
+            fields = decodeFields(this.buffer, this.index);
+        } catch (final InvalidPacketException | MissingTemplateException e) {
+            throw new IllegalStateException("Failed to decode record", e);
+        }
+
+        return Iterables.concat(header, fields, this.options).iterator();
+    }
+
+    public FieldCursor cursor() {
+        return new Cursor();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("template", this.buffer.template.template.id)
+                .add("index", this.index)
+                .add("options", this.options)
+                .toString();
+    }
+
+    private final class Cursor implements FieldCursor {
+        private final int fields = FlowRecord.this.buffer.template.size();
+
+        // Position over header fields, record fields and options
+        private int position = -1;
+
+        @Override
+        public boolean next() {
+            return ++this.position < headerNames.length + this.fields + options.size();
+        }
+
+        private int field() {
+            return this.position - headerNames.length;
+        }
+
+        private Value<?> option() {
+            return options.get(this.position - headerNames.length - this.fields);
+        }
+
+        @Override
+        public String getName() {
+            if (this.position < headerNames.length) {
+                return headerNames[this.position];
+            }
+            if (this.field() < this.fields) {
+                return buffer.template.getName(this.field());
+            }
+            return this.option().getName();
+        }
+
+        @Override
+        public Long getUnsignedValue() {
+            if (this.position < headerNames.length) {
+                return headerValues[this.position];
+            }
+            if (this.field() < this.fields) {
+                return buffer.template.getKind(this.field()) == InformationElement.Kind.UNSIGNED
+                        ? buffer.getUnsigned(index, this.field())
+                        : null;
+            }
+            return ValueCursor.unsignedValue(this.option());
+        }
+
+        @Override
+        public InetAddress getInetAddress() {
+            if (this.position < headerNames.length) {
+                return null;
+            }
+            if (this.field() < this.fields) {
+                switch (buffer.template.getKind(this.field())) {
+                    case IPV4_ADDRESS:
+                    case IPV6_ADDRESS:
+                        return buffer.getInetAddress(index, this.field());
+                    default:
+                        return null;
+                }
+            }
+            return ValueCursor.inetAddress(this.option());
+        }
+
+        @Override
+        public Instant getTime() {
+            if (this.position < headerNames.length) {
+                return null;
+            }
+            if (this.field() < this.fields) {
+                switch (buffer.template.getKind(this.field())) {
+                    case DATE_TIME_SECONDS:
+                    case DATE_TIME_MILLISECONDS:
+                    case DATE_TIME_MICROSECONDS:
+                    case DATE_TIME_NANOSECONDS:
+                        return buffer.getTime(index, this.field());
+                    default:
+                        return null;
+                }
+            }
+            return ValueCursor.time(this.option());
+        }
+    }
+}
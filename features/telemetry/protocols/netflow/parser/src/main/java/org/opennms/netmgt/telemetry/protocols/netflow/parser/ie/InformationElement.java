@@ -29,6 +29,32 @@ import io.netty.buffer.ByteBuf;
 
 public interface InformationElement {
 
+    /**
+     * The primitive representation of the values of an element.
+     *
+     * Values with a primitive representation can be read straight from the raw record without creating a
+     * {@link Value} first.
+     */
+    enum Kind {
+        UNSIGNED,
+        IPV4_ADDRESS,
+        IPV6_ADDRESS,
+        DATE_TIME_SECONDS,
+        DATE_TIME_MILLISECONDS,
+        DATE_TIME_MICROSECONDS,
+        DATE_TIME_NANOSECONDS,
+
+        /**
+         * Values without a primitive representation which can be decoded without access to the session.
+         */
+        OPAQUE,
+
+        /**
+         * Values which require the session to be decoded, i.e. lists referring to other templates.
+         */
+        STATEFUL,
+    }
+
     Value<?> parse(final Session.Resolver resolver,
                    final ByteBuf buffer) throws InvalidPacketException, MissingTemplateException;
 
@@ -37,4 +63,8 @@ public interface InformationElement {
     int getMinimumFieldLength();
 
     int getMaximumFieldLength();
+
+    default Kind getKind() {
+        return Kind.OPAQUE;
+    }
 }
@@ -0,0 +1,253 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.telemetry.protocols.netflow.parser.ie;
+
+import static org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.values.DateTimeValue.SECONDS_TO_EPOCH;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.BufferUnderflowException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.InvalidPacketException;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.MissingTemplateException;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.session.CompiledTemplate;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.session.Session;
+
+import com.google.common.base.MoreObjects;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * The records of a data set read by a {@link CompiledTemplate}.
+ *
+ * The raw bytes of the set are copied once and the values are read from there on access. No per field objects are
+ * created while reading the set. Values are only decoded to {@link Value} objects on request.
+ */
+public final class RecordBuffer {
+
+    private static final int VARIABLE_SIZED_EXTENDED = 0xFF;
+
+    public final CompiledTemplate template;
+
+    private final Session.Resolver resolver;
+
+    private final byte[] data;
+
+    private final int count;
+
+    // Offsets and lengths of all fields of all records - only used for templates with variable sized fields
+    private final int[] offsets;
+    private final int[] lengths;
+
+    private RecordBuffer(final CompiledTemplate template,
+                         final Session.Resolver resolver,
+                         final byte[] data,
+                         final int count,
+                         final int[] offsets,
+                         final int[] lengths) {
+        this.template = Objects.requireNonNull(template);
+        this.resolver = Objects.requireNonNull(resolver);
+        this.data = Objects.requireNonNull(data);
+        this.count = count;
+        this.offsets = offsets;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Reads all records of a data set.
+     *
+     * @param template the compiled template of the set
+     * @param resolver the resolver used to decode values on request
+     * @param buffer the payload of the set
+     * @return the records of the set
+     * @throws InvalidPacketException if the set does not contain any record
+     */
+    public static RecordBuffer read(final CompiledTemplate template,
+                                    final Session.Resolver resolver,
+                                    final ByteBuf buffer) throws InvalidPacketException {
+        if (!buffer.isReadable(template.getMinimumRecordLength())) {
+            throw new InvalidPacketException(buffer, "Empty set");
+        }
+
+        final byte[] data = new byte[buffer.readableBytes()];
+        buffer.readBytes(data);
+
+        if (template.isFixedLength()) {
+            // Trailing bytes not making up a full record are padding
+            return new RecordBuffer(template, resolver, data, data.length / template.getRecordLength(), null, null);
+        }
+
+        final int fields = template.size();
+
+        int[] offsets = new int[fields * 8];
+        int[] lengths = new int[fields * 8];
+
+        int count = 0;
+        int position = 0;
+        while (data.length - position >= template.getMinimumRecordLength()) {
+            if ((count + 1) * fields > offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                lengths = Arrays.copyOf(lengths, lengths.length * 2);
+            }
+
+            for (int i = 0; i < fields; i++) {
+                int length = template.getLength(i);
+                if (length < 0) {
+                    if (position + 1 > data.length) {
+                        throw new BufferUnderflowException();
+                    }
+                    length = uint(data, position, 1);
+                    position += 1;
+                    if (length == VARIABLE_SIZED_EXTENDED) {
+                        if (position + 2 > data.length) {
+                            throw new BufferUnderflowException();
+                        }
+                        length = uint(data, position, 2);
+                        position += 2;
+                    }
+                }
+
+                if (position + length > data.length) {
+                    throw new BufferUnderflowException();
+                }
+
+                offsets[count * fields + i] = position;
+                lengths[count * fields + i] = length;
+                position += length;
+            }
+
+            count++;
+        }
+
+        return new RecordBuffer(template, resolver, data, count, offsets, lengths);
+    }
+
+    private static int uint(final byte[] data, final int offset, final int length) {
+        int result = 0;
+        for (int i = 0; i < length; i++) {
+            result = (result << 8) | (data[offset + i] & 0xFF);
+        }
+        return result;
+    }
+
+    public int count() {
+        return this.count;
+    }
+
+    private int offset(final int record, final int field) {
+        if (this.offsets == null) {
+            return record * this.template.getRecordLength() + this.template.getOffset(field);
+        }
+        return this.offsets[record * this.template.size() + field];
+    }
+
+    private int length(final int record, final int field) {
+        if (this.lengths == null) {
+            return this.template.getLength(field);
+        }
+        return this.lengths[record * this.template.size() + field];
+    }
+
+    /**
+     * Reads an unsigned value. Only valid for fields of kind {@link InformationElement.Kind#UNSIGNED}.
+     */
+    public long getUnsigned(final int record, final int field) {
+        final int offset = this.offset(record, field);
+        final int length = this.length(record, field);
+
+        long result = 0;
+        for (int i = 0; i < length; i++) {
+            result = (result << 8) | (this.data[offset + i] & 0xFFL);
+        }
+        return result;
+    }
+
+    /**
+     * Reads an address. Only valid for fields of kind {@link InformationElement.Kind#IPV4_ADDRESS} and
+     * {@link InformationElement.Kind#IPV6_ADDRESS}.
+     */
+    public InetAddress getInetAddress(final int record, final int field) {
+        final int offset = this.offset(record, field);
+        final int length = this.template.getKind(field) == InformationElement.Kind.IPV4_ADDRESS ? 4 : 16;
+        try {
+            return InetAddress.getByAddress(Arrays.copyOfRange(this.data, offset, offset + length));
+        } catch (final UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads a timestamp. Only valid for fields of the date-time kinds.
+     */
+    public Instant getTime(final int record, final int field) {
+        final int offset = this.offset(record, field);
+        switch (this.template.getKind(field)) {
+            case DATE_TIME_SECONDS:
+                return Instant.ofEpochSecond(uint32(offset));
+
+            case DATE_TIME_MILLISECONDS:
+                return Instant.ofEpochMilli(uint32(offset) << 32 | uint32(offset + 4));
+
+            case DATE_TIME_MICROSECONDS: {
+                final long seconds = uint32(offset);
+                final long fraction = uint32(offset + 4) & (0xFFFFFFFF << 11);
+                return Instant.ofEpochSecond(seconds - SECONDS_TO_EPOCH, fraction * 1_000_000_000L / (1L << 32));
+            }
+
+            case DATE_TIME_NANOSECONDS: {
+                final long seconds = uint32(offset);
+                final long fraction = uint32(offset + 4);
+                return Instant.ofEpochSecond(seconds - SECONDS_TO_EPOCH, fraction * 1_000_000_000L / (1L << 32));
+            }
+
+            default:
+                throw new IllegalArgumentException("Not a date-time field: " + this.template.getName(field));
+        }
+    }
+
+    private long uint32(final int offset) {
+        return (this.data[offset] & 0xFFL) << 24
+                | (this.data[offset + 1] & 0xFFL) << 16
+                | (this.data[offset + 2] & 0xFFL) << 8
+                | (this.data[offset + 3] & 0xFFL);
+    }
+
+    /**
+     * Decodes the field to a value as the field would have been decoded without the compiled template.
+     */
+    public Value<?> getValue(final int record, final int field) throws InvalidPacketException, MissingTemplateException {
+        final ByteBuf buffer = Unpooled.wrappedBuffer(this.data, this.offset(record, field), this.length(record, field));
+        return this.template.getField(field).parse(this.resolver, buffer);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("template", this.template)
+                .add("count", this.count)
+                .toString();
+    }
+}
@@ -86,6 +86,11 @@ public class DateTimeValue extends Value<Instant> {
             public int getMaximumFieldLength() {
                 return 4;
             }
+
+            @Override
+            public Kind getKind() {
+                return Kind.DATE_TIME_SECONDS;
+            }
         };
     }
 
@@ -110,6 +115,11 @@ public class DateTimeValue extends Value<Instant> {
             public int getMaximumFieldLength() {
                 return 8;
             }
+
+            @Override
+            public Kind getKind() {
+                return Kind.DATE_TIME_MILLISECONDS;
+            }
         };
     }
 
@@ -139,6 +149,11 @@ public class DateTimeValue extends Value<Instant> {
             public int getMaximumFieldLength() {
                 return 8;
             }
+
+            @Override
+            public Kind getKind() {
+                return Kind.DATE_TIME_MICROSECONDS;
+            }
         };
     }
 
@@ -168,6 +183,11 @@ public class DateTimeValue extends Value<Instant> {
             public int getMaximumFieldLength() {
                 return 8;
             }
+
+            @Override
+            public Kind getKind() {
+                return Kind.DATE_TIME_NANOSECONDS;
+            }
         };
     }
 
@@ -85,6 +85,11 @@ public class IPv4AddressValue extends Value<Inet4Address> {
             public int getMaximumFieldLength() {
                 return 4;
             }
+
+            @Override
+            public Kind getKind() {
+                return Kind.IPV4_ADDRESS;
+            }
         };
     }
 
@@ -131,6 +131,11 @@ public class ListValue extends Value<List<List<Value<?>>>> {
             public int getMaximumFieldLength() {
                 return 0xFFFF;
             }
+
+            @Override
+            public Kind getKind() {
+                return Kind.STATEFUL;
+            }
         };
     }
 
@@ -180,6 +185,11 @@ public class ListValue extends Value<List<List<Value<?>>>> {
             public int getMaximumFieldLength() {
                 return 0xFFFF;
             }
+
+            @Override
+            public Kind getKind() {
+                return Kind.STATEFUL;
+            }
         };
     }
 
@@ -274,6 +284,11 @@ public class ListValue extends Value<List<List<Value<?>>>> {
             public int getMaximumFieldLength() {
                 return 0xFFFF;
             }
+
+            @Override
+            public Kind getKind() {
+                return Kind.STATEFUL;
+            }
         };
     }
 
@@ -101,6 +101,11 @@ public final class FieldSpecifier implements Field, Scope {
         return this.fieldLength;
     }
 
+    @Override
+    public Optional<InformationElement> getInformationElement() {
+        return Optional.of(this.informationElement);
+    }
+
     @Override
     public String getName() {
         return this.informationElement.getName();
@@ -88,6 +88,11 @@ public final class FieldSpecifier implements Field {
         return this.fieldLength;
     }
 
+    @Override
+    public Optional<InformationElement> getInformationElement() {
+        return Optional.of(this.informationElement);
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
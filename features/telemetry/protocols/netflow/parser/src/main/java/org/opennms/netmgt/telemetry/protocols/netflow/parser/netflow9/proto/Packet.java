@@ -23,18 +23,23 @@ package org.opennms.netmgt.telemetry.protocols.netflow.parser.netflow9.proto;
 
 import static org.opennms.netmgt.telemetry.listeners.utils.BufferUtils.slice;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 import org.opennms.netmgt.telemetry.protocols.netflow.parser.InvalidPacketException;
 import org.opennms.netmgt.telemetry.protocols.netflow.parser.MissingTemplateException;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.FlowRecord;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.RecordBuffer;
 import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.RecordProvider;
 import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.Value;
 import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.values.UnsignedValue;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.session.CompiledTemplate;
 import org.opennms.netmgt.telemetry.protocols.netflow.parser.session.Session;
 import org.opennms.netmgt.telemetry.protocols.netflow.parser.session.Template;
 import org.slf4j.Logger;
@@ -66,11 +71,35 @@ public final class Packet implements Iterable<FlowSet<?>>, RecordProvider {
     public final List<OptionsTemplateSet> optionTemplateSets;
     public final List<DataSet> dataSets;
 
+    /**
+     * The records of data sets read by compiled templates. These sets are not part of {@link #dataSets}.
+     */
+    public final List<FlowRecord> flowRecords;
+
+    private static final String[] HEADER_NAMES = {"@recordCount", "@sequenceNumber", "@sysUpTime", "@unixSecs", "@sourceId"};
+
+    private final long[] headerValues;
+
     public Packet(final Session session,
                   final Header header,
                   final ByteBuf buffer) throws InvalidPacketException {
+        this(session, header, buffer, false);
+    }
+
+    /**
+     * @param compiled whether data sets should be read using compiled templates, see {@link CompiledTemplate}
+     */
+    public Packet(final Session session,
+                  final Header header,
+                  final ByteBuf buffer,
+                  final boolean compiled) throws InvalidPacketException {
         this.header = Objects.requireNonNull(header);
 
+        // The record count is filled in after all sets have been read
+        this.headerValues = new long[]{0L, this.header.sequenceNumber, this.header.sysUpTime, this.header.unixSecs, this.header.sourceId};
+
+        final List<FlowRecord> flowRecords = new ArrayList<>();
+
         final List<TemplateSet> templateSets = new LinkedList<>();
         final List<OptionsTemplateSet> optionTemplateSets = new LinkedList<>();
         final List<DataSet> dataSets = new LinkedList<>();
@@ -127,6 +156,21 @@ public final class Packet implements Iterable<FlowSet<?>>, RecordProvider {
                 case DATA_FLOWSET: {
                     final Session.Resolver resolver = session.getResolver(header.sourceId);
 
+                    if (compiled) {
+                        final Optional<CompiledTemplate> compiledTemplate;
+                        try {
+                            compiledTemplate = resolver.lookupTemplate(setHeader.setId).compiled(false);
+                        } catch (final MissingTemplateException ex) {
+                            LOG.debug("Skipping data-set due to missing template: {}", ex.getMessage());
+                            break;
+                        }
+
+                        if (compiledTemplate.isPresent()) {
+                            readRecords(compiledTemplate.get(), resolver, payloadBuffer, flowRecords);
+                            break;
+                        }
+                    }
+
                     final DataSet dataSet;
                     try {
                         dataSet = new DataSet(this, setHeader, resolver, payloadBuffer);
@@ -155,6 +199,24 @@ public final class Packet implements Iterable<FlowSet<?>>, RecordProvider {
         this.templateSets = Collections.unmodifiableList(templateSets);
         this.optionTemplateSets = Collections.unmodifiableList(optionTemplateSets);
         this.dataSets = Collections.unmodifiableList(dataSets);
+        this.flowRecords = Collections.unmodifiableList(flowRecords);
+
+        this.headerValues[0] = this.dataSets.stream().mapToInt(s -> s.records.size()).sum() + this.flowRecords.size();
+    }
+
+    private void readRecords(final CompiledTemplate template,
+                             final Session.Resolver resolver,
+                             final ByteBuf buffer,
+                             final List<FlowRecord> flowRecords) throws InvalidPacketException {
+        final RecordBuffer records = RecordBuffer.read(template, resolver, buffer);
+
+        // The scope values only depend on the packet and the template and therefore the options are the same for all
+        // records of the set
+        final List<Value<?>> options = resolver.lookupOptions(ScopeFieldSpecifier.buildScopeValues(this.header.sourceId, template.template.id));
+
+        for (int i = 0; i < records.count(); i++) {
+            flowRecords.add(new FlowRecord(HEADER_NAMES, this.headerValues, records, i, options));
+        }
     }
 
     @Override
@@ -166,11 +228,9 @@ public final class Packet implements Iterable<FlowSet<?>>, RecordProvider {
 
     @Override
     public Stream<Iterable<Value<?>>> getRecords() {
-        final int recordCount = this.dataSets.stream()
-                .mapToInt(s -> s.records.size())
-                .sum();
+        final long recordCount = this.headerValues[0];
 
-        return this.dataSets.stream()
+        final Stream<Iterable<Value<?>>> records = this.dataSets.stream()
                 .flatMap(s -> s.records.stream())
                 .map(r -> Iterables.concat(
                         ImmutableList.of(
@@ -182,6 +242,8 @@ public final class Packet implements Iterable<FlowSet<?>>, RecordProvider {
                         r.fields,
                         r.options
                 ));
+
+        return Stream.concat(records, this.flowRecords.stream());
     }
 
     @Override
@@ -201,6 +263,7 @@ public final class Packet implements Iterable<FlowSet<?>>, RecordProvider {
                 .add("templateSets", this.templateSets)
                 .add("optionTemplateSets", this.optionTemplateSets)
                 .add("dataTemplateSets", this.dataSets)
+                .add("flowRecords", this.flowRecords.size())
                 .toString();
     }
 }
@@ -0,0 +1,203 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.telemetry.protocols.netflow.parser.session;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.InformationElement;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * A template compiled to a fixed layout.
+ *
+ * The compiled template describes the position, length and primitive representation of each field of a data record.
+ * This allows to read the values of a record straight from the raw bytes without decoding each field to a
+ * {@link org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.Value} first.
+ *
+ * If the template does not contain variable sized fields, the offsets of all fields relative to the start of the
+ * record are fixed. Otherwise the offsets are resolved per record while the data set is read.
+ *
+ * Templates containing fields which can only be decoded with access to the session (i.e. lists referring to other
+ * templates) are not compiled.
+ */
+public final class CompiledTemplate {
+
+    /**
+     * Marks a field as variable sized (IPFIX only).
+     */
+    public static final int VARIABLE_SIZED = 0xFFFF;
+
+    public final Template template;
+
+    private final Field[] fields;
+    private final String[] names;
+    private final InformationElement.Kind[] kinds;
+    private final int[] lengths;
+    private final int[] offsets;
+    private final Set<String> nameSet;
+
+    private final boolean fixedLength;
+    private final int recordLength;
+    private final int minimumRecordLength;
+
+    private CompiledTemplate(final Template template,
+                             final Field[] fields,
+                             final InformationElement[] elements,
+                             final boolean variableLengthEncoding) {
+        this.template = Objects.requireNonNull(template);
+        this.fields = fields;
+        this.names = new String[fields.length];
+        this.kinds = new InformationElement.Kind[fields.length];
+        this.lengths = new int[fields.length];
+        this.offsets = new int[fields.length];
+
+        boolean fixedLength = true;
+        int offset = 0;
+        int minimumRecordLength = 0;
+        for (int i = 0; i < fields.length; i++) {
+            final int length = fields[i].length();
+
+            this.names[i] = elements[i].getName();
+            this.lengths[i] = length;
+            this.offsets[i] = offset;
+            this.kinds[i] = kindOf(elements[i].getKind(), length);
+
+            if (variableLengthEncoding && length == VARIABLE_SIZED) {
+                // The length prefix takes at least one byte
+                fixedLength = false;
+                this.lengths[i] = -1;
+                minimumRecordLength += 1;
+            } else {
+                offset += length;
+                minimumRecordLength += length;
+            }
+        }
+
+        this.nameSet = ImmutableSet.copyOf(this.names);
+        this.fixedLength = fixedLength;
+        this.recordLength = fixedLength ? offset : -1;
+        this.minimumRecordLength = minimumRecordLength;
+    }
+
+    private static InformationElement.Kind kindOf(final InformationElement.Kind kind, final int length) {
+        // Reduced size encoding allows unsigned values to be shortened down to zero bytes. As the 8 bit parser
+        // insists on reading a single byte, these are left to the value based decoding.
+        if (kind == InformationElement.Kind.UNSIGNED && (length == 0 || length > 8)) {
+            return InformationElement.Kind.OPAQUE;
+        }
+        return kind;
+    }
+
+    /**
+     * Compiles the given template.
+     *
+     * @param template the template to compile
+     * @param variableLengthEncoding whether fields with a length of {@link #VARIABLE_SIZED} carry a length prefix
+     * @return the compiled template or {@link Optional#empty()} if the template can not be compiled
+     */
+    public static Optional<CompiledTemplate> compile(final Template template, final boolean variableLengthEncoding) {
+        if (template.type != Template.Type.TEMPLATE || !template.scopes.isEmpty()) {
+            return Optional.empty();
+        }
+
+        final Field[] fields = template.fields.toArray(new Field[0]);
+        final InformationElement[] elements = new InformationElement[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            final Optional<InformationElement> element = fields[i].getInformationElement();
+            if (!element.isPresent() || element.get().getKind() == InformationElement.Kind.STATEFUL) {
+                return Optional.empty();
+            }
+            elements[i] = element.get();
+        }
+
+        final CompiledTemplate compiled = new CompiledTemplate(template, fields, elements, variableLengthEncoding);
+
+        // A record without any data would never end
+        if (compiled.minimumRecordLength == 0) {
+            return Optional.empty();
+        }
+
+        return Optional.of(compiled);
+    }
+
+    public int size() {
+        return this.fields.length;
+    }
+
+    public Field getField(final int index) {
+        return this.fields[index];
+    }
+
+    public String getName(final int index) {
+        return this.names[index];
+    }
+
+    public InformationElement.Kind getKind(final int index) {
+        return this.kinds[index];
+    }
+
+    /**
+     * @return the length of the field or {@code -1} if the field is variable sized
+     */
+    public int getLength(final int index) {
+        return this.lengths[index];
+    }
+
+    /**
+     * @return the offset of the field relative to the start of the record, only valid for fixed length templates
+     */
+    public int getOffset(final int index) {
+        return this.offsets[index];
+    }
+
+    public Set<String> getNames() {
+        return this.nameSet;
+    }
+
+    public boolean isFixedLength() {
+        return this.fixedLength;
+    }
+
+    /**
+     * @return the length of each record or {@code -1} if the template contains variable sized fields
+     */
+    public int getRecordLength() {
+        return this.recordLength;
+    }
+
+    public int getMinimumRecordLength() {
+        return this.minimumRecordLength;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("template", this.template.id)
+                .add("fields", this.fields.length)
+                .add("recordLength", this.recordLength)
+                .toString();
+    }
+}
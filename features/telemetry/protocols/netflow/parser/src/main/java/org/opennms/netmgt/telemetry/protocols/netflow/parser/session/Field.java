@@ -21,8 +21,11 @@
  */
 package org.opennms.netmgt.telemetry.protocols.netflow.parser.session;
 
+import java.util.Optional;
+
 import org.opennms.netmgt.telemetry.protocols.netflow.parser.InvalidPacketException;
 import org.opennms.netmgt.telemetry.protocols.netflow.parser.MissingTemplateException;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.InformationElement;
 import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.Value;
 
 import io.netty.buffer.ByteBuf;
@@ -32,4 +35,12 @@ public interface Field {
 
     Value<?> parse(final Session.Resolver resolver,
                    final ByteBuf buffer) throws InvalidPacketException, MissingTemplateException;
+
+    /**
+     * Returns the element decoded by this field, if the field decodes a single element.
+     * Fields without an element are not eligible for {@link CompiledTemplate compilation}.
+     */
+    default Optional<InformationElement> getInformationElement() {
+        return Optional.empty();
+    }
 }
@@ -24,6 +24,7 @@ package org.opennms.netmgt.telemetry.protocols.netflow.parser.session;
 import java.net.InetAddress;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 import org.opennms.netmgt.telemetry.protocols.netflow.parser.MissingTemplateException;
 import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.Value;
@@ -33,6 +34,17 @@ public interface Session {
     interface Resolver {
         Template lookupTemplate(final int templateId) throws MissingTemplateException;
         List<Value<?>> lookupOptions(final List<Value<?>> values);
+
+        /**
+         * Checks if options are known for records carrying the given fields. This allows to skip the decoding of the
+         * values required for {@link #lookupOptions(List)} if there is nothing to find anyway.
+         *
+         * @param names the names of the fields of the record
+         * @return false if {@link #lookupOptions(List)} would not return any options for such a record
+         */
+        default boolean hasOptions(final Set<String> names) {
+            return true;
+        }
     }
 
     void addTemplate(final long observationDomainId, final Template template);
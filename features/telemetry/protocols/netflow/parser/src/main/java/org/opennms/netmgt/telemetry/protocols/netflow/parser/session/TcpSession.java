@@ -93,6 +93,21 @@ public class TcpSession implements Session {
 
             return new ArrayList<>(options.values());
         }
+
+        @Override
+        public boolean hasOptions(final Set<String> names) {
+            for (final Map.Entry<TemplateKey, Map<Set<Value<?>>, List<Value<?>>>> e : TcpSession.this.options.entrySet()) {
+                if (e.getKey().observationDomainId != this.observationDomainId || e.getValue().isEmpty()) {
+                    continue;
+                }
+
+                final Template template = TcpSession.this.templates.get(e.getKey());
+                if (template == null || names.containsAll(template.scopeNames)) {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 
     private final static class TemplateKey {
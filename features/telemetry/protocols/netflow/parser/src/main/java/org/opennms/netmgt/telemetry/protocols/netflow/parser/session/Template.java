@@ -25,6 +25,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -46,6 +47,8 @@ public final class Template implements Iterable<Field> {
     public final List<Field> fields;
     public final Set<String> scopeNames;
 
+    private volatile Optional<CompiledTemplate> compiled;
+
     private Template(final int id,
                      final Type type,
                      final List<Scope> scopes,
@@ -72,6 +75,22 @@ public final class Template implements Iterable<Field> {
         return StreamSupport.stream(this.spliterator(), false);
     }
 
+    /**
+     * Returns the compiled form of this template. The template is compiled on first use and the result is kept as
+     * long as the template lives in the session. As templates are bound to a session, a template is always used with
+     * the same encoding.
+     *
+     * @param variableLengthEncoding whether fields may be variable sized (IPFIX)
+     * @return the compiled template or {@link Optional#empty()} if the template can not be compiled
+     */
+    public Optional<CompiledTemplate> compiled(final boolean variableLengthEncoding) {
+        Optional<CompiledTemplate> compiled = this.compiled;
+        if (compiled == null) {
+            this.compiled = compiled = CompiledTemplate.compile(this, variableLengthEncoding);
+        }
+        return compiled;
+    }
+
     public static class Builder {
         private final int id;
         private final Type type;
@@ -309,6 +309,18 @@ public class UdpSessionManager {
 
                 return new ArrayList<>(options.values());
             }
+
+            @Override
+            public boolean hasOptions(final Set<String> names) {
+                for (final var e : Iterables.filter(UdpSessionManager.this.templates.entrySet(),
+                        e -> Objects.equals(e.getKey().observationDomainId.sessionKey, UdpSession.this.sessionKey) &&
+                                Objects.equals(e.getKey().observationDomainId.observationDomainId, this.observationDomainId))) {
+                    if (!e.getValue().wrapped.options.isEmpty() && names.containsAll(e.getValue().wrapped.template.scopeNames)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
         }
     }
 }
@@ -22,9 +22,6 @@
 package org.opennms.netmgt.telemetry.protocols.netflow.parser.transport;
 
 import static org.opennms.netmgt.telemetry.protocols.netflow.parser.transport.MessageUtils.first;
-import static org.opennms.netmgt.telemetry.protocols.netflow.parser.transport.MessageUtils.getInetAddress;
-import static org.opennms.netmgt.telemetry.protocols.netflow.parser.transport.MessageUtils.getLongValue;
-import static org.opennms.netmgt.telemetry.protocols.netflow.parser.transport.MessageUtils.getTime;
 import static org.opennms.netmgt.telemetry.protocols.netflow.parser.transport.MessageUtils.getUInt32Value;
 import static org.opennms.netmgt.telemetry.protocols.netflow.parser.transport.MessageUtils.getUInt64Value;
 import static org.opennms.netmgt.telemetry.protocols.netflow.parser.transport.MessageUtils.setDoubleValue;
@@ -36,6 +33,7 @@ import java.time.Instant;
 import java.util.Optional;
 
 import org.opennms.netmgt.telemetry.protocols.netflow.parser.RecordEnrichment;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.FieldCursor;
 import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.Value;
 import org.opennms.netmgt.telemetry.protocols.netflow.transport.Direction;
 import org.opennms.netmgt.telemetry.protocols.netflow.transport.FlowMessage;
@@ -123,28 +121,29 @@ public class IpFixMessageBuilder implements MessageBuilder {
         UInt32Value outputSnmp = null;
 
 
-        for (Value<?> value : values) {
-            switch (value.getName()) {
+        final FieldCursor cursor = FieldCursor.of(values);
+        while (cursor.next()) {
+            switch (cursor.getName()) {
                 case "@exportTime":
-                    exportTime = getLongValue(value);
+                    exportTime = cursor.getUnsignedValue();
                     break;
                 case "octetDeltaCount":
-                    octetDeltaCount = getLongValue(value);
+                    octetDeltaCount = cursor.getUnsignedValue();
                     break;
                 case "postOctetDeltaCount":
-                    postOctetDeltaCount = getLongValue(value);
+                    postOctetDeltaCount = cursor.getUnsignedValue();
                     break;
                 case "layer2OctetDeltaCount":
-                    layer2OctetDeltaCount = getLongValue(value);
+                    layer2OctetDeltaCount = cursor.getUnsignedValue();
                     break;
                 case "postLayer2OctetDeltaCount":
-                    postLayer2OctetDeltaCount = getLongValue(value);
+                    postLayer2OctetDeltaCount = cursor.getUnsignedValue();
                     break;
                 case "transportOctetDeltaCount":
-                    transportOctetDeltaCount = getLongValue(value);
+                    transportOctetDeltaCount = cursor.getUnsignedValue();
                     break;
                 case "flowDirection":
-                    Long directionValue = getLongValue(value);
+                    Long directionValue = cursor.getUnsignedValue();
                     Direction direction = Direction.UNKNOWN;
                     if (directionValue != null) {
                         switch (directionValue.intValue()) {
@@ -159,214 +158,214 @@ public class IpFixMessageBuilder implements MessageBuilder {
                     builder.setDirection(direction);
                     break;
                 case "destinationIPv6Address":
-                    destinationIPv6Address = getInetAddress(value);
+                    destinationIPv6Address = cursor.getInetAddress();
                     break;
                 case "destinationIPv4Address":
-                    destinationIPv4Address = getInetAddress(value);
+                    destinationIPv4Address = cursor.getInetAddress();
                     break;
                 case "bgpDestinationAsNumber":
-                    getUInt64Value(value).ifPresent(builder::setDstAs);
+                    getUInt64Value(cursor.getUnsignedValue()).ifPresent(builder::setDstAs);
                     break;
                 case "destinationIPv6PrefixLength":
-                    destinationIPv6PrefixLength = getLongValue(value);
+                    destinationIPv6PrefixLength = cursor.getUnsignedValue();
                     break;
                 case "destinationIPv4PrefixLength":
-                    destinationIPv4PrefixLength = getLongValue(value);
+                    destinationIPv4PrefixLength = cursor.getUnsignedValue();
                     break;
                 case "destinationTransportPort":
-                    getUInt32Value(value).ifPresent(builder::setDstPort);
+                    getUInt32Value(cursor.getUnsignedValue()).ifPresent(builder::setDstPort);
                     break;
                 case "engineId":
-                    getUInt32Value(value).ifPresent(builder::setEngineId);
+                    getUInt32Value(cursor.getUnsignedValue()).ifPresent(builder::setEngineId);
                     break;
                 case "engineType":
-                    getUInt32Value(value).ifPresent(builder::setEngineType);
+                    getUInt32Value(cursor.getUnsignedValue()).ifPresent(builder::setEngineType);
                     break;
                 case "@recordCount":
-                    getUInt32Value(value).ifPresent(builder::setNumFlowRecords);
+                    getUInt32Value(cursor.getUnsignedValue()).ifPresent(builder::setNumFlowRecords);
                     break;
                 case "@sequenceNumber":
-                    getUInt64Value(value).ifPresent(builder::setFlowSeqNum);
+                    getUInt64Value(cursor.getUnsignedValue()).ifPresent(builder::setFlowSeqNum);
                     break;
                 case "ingressInterface":
-                    inputSnmp = getUInt32Value(value).orElse(null);
+                    inputSnmp = getUInt32Value(cursor.getUnsignedValue()).orElse(null);
                     break;
                 case "ipVersion":
-                    Long ipVersion = getLongValue(value);
+                    Long ipVersion = cursor.getUnsignedValue();
                     if (ipVersion != null) {
                         builder.setIpProtocolVersion(setIntValue(ipVersion.intValue()));
                     }
                     break;
                 case "egressInterface":
-                    outputSnmp = getUInt32Value(value).orElse(null);
+                    outputSnmp = getUInt32Value(cursor.getUnsignedValue()).orElse(null);
                     break;
                 case "protocolIdentifier":
-                    getUInt32Value(value).ifPresent(builder::setProtocol);
+                    getUInt32Value(cursor.getUnsignedValue()).ifPresent(builder::setProtocol);
                     break;
                 case "tcpControlBits":
-                    getUInt32Value(value).ifPresent(builder::setTcpFlags);
+                    getUInt32Value(cursor.getUnsignedValue()).ifPresent(builder::setTcpFlags);
                     break;
                 case "ipClassOfService":
-                    getUInt32Value(value).ifPresent(builder::setTos);
+                    getUInt32Value(cursor.getUnsignedValue()).ifPresent(builder::setTos);
                     break;
                 case "@observationDomainId":
-                    Long observationDomainId = getLongValue(value);
+                    Long observationDomainId = cursor.getUnsignedValue();
                     if (observationDomainId != null) {
                         builder.setNodeIdentifier(String.valueOf(observationDomainId));
                     }
                     break;
 
                 case "flowStartSeconds":
-                    flowStartSeconds = getTime(value);
+                    flowStartSeconds = cursor.getTime();
                     break;
                 case "flowStartMilliseconds":
-                    flowStartMilliseconds = getTime(value);
+                    flowStartMilliseconds = cursor.getTime();
                     break;
                 case "flowStartMicroseconds":
-                    flowStartMicroseconds = getTime(value);
+                    flowStartMicroseconds = cursor.getTime();
                     break;
                 case "flowStartNanoseconds":
-                    flowStartNanoseconds = getTime(value);
+                    flowStartNanoseconds = cursor.getTime();
                     break;
                 case "flowStartDeltaMicroseconds":
-                    flowStartDeltaMicroseconds = getLongValue(value);
+                    flowStartDeltaMicroseconds = cursor.getUnsignedValue();
                     break;
                 case "flowStartSysUpTime":
-                    flowStartSysUpTime = getLongValue(value);
+                    flowStartSysUpTime = cursor.getUnsignedValue();
                     break;
                 case "systemInitTimeMilliseconds":
-                    systemInitTimeMilliseconds = getTime(value);
+                    systemInitTimeMilliseconds = cursor.getTime();
                     break;
                 case "flowEndSeconds":
-                    flowEndSeconds = getTime(value);
+                    flowEndSeconds = cursor.getTime();
                     break;
                 case "flowEndMilliseconds":
-                    flowEndMilliseconds = getTime(value);
+                    flowEndMilliseconds = cursor.getTime();
                     break;
                 case "flowEndMicroseconds":
-                    flowEndMicroseconds = getTime(value);
+                    flowEndMicroseconds = cursor.getTime();
                     break;
                 case "flowEndNanoseconds":
-                    flowEndNanoseconds = getTime(value);
+                    flowEndNanoseconds = cursor.getTime();
                 case "flowEndDeltaMicroseconds":
-                    flowEndDeltaMicroseconds = getLongValue(value);
+                    flowEndDeltaMicroseconds = cursor.getUnsignedValue();
                     break;
                 case "flowEndSysUpTime":
-                    flowEndSysUpTime = getLongValue(value);
+                    flowEndSysUpTime = cursor.getUnsignedValue();
                     break;
                 case "ipNextHopIPv6Address":
-                    ipNextHopIPv6Address = getInetAddress(value);
+                    ipNextHopIPv6Address = cursor.getInetAddress();
                     break;
                 case "ipNextHopIPv4Address":
-                    ipNextHopIPv4Address = getInetAddress(value);
+                    ipNextHopIPv4Address = cursor.getInetAddress();
                     break;
                 case "bgpNextHopIPv6Address":
-                    bgpNextHopIPv6Address = getInetAddress(value);
+                    bgpNextHopIPv6Address = cursor.getInetAddress();
                     break;
                 case "bgpNextHopIPv4Address":
-                    bgpNextHopIPv4Address = getInetAddress(value);
+                    bgpNextHopIPv4Address = cursor.getInetAddress();
                     break;
                 case "packetDeltaCount":
-                    packetDeltaCount = getLongValue(value);
+                    packetDeltaCount = cursor.getUnsignedValue();
                     break;
                 case "postPacketDeltaCount":
-                    postPacketDeltaCount = getLongValue(value);
+                    postPacketDeltaCount = cursor.getUnsignedValue();
                     break;
                 case "transportPacketDeltaCount":
-                    transportPacketDeltaCount = getLongValue(value);
+                    transportPacketDeltaCount = cursor.getUnsignedValue();
                     break;
                 case "samplingAlgorithm":
-                    samplingAlgorithm = getLongValue(value);
+                    samplingAlgorithm = cursor.getUnsignedValue();
                     break;
                 case "samplerMode":
-                    samplerMode = getLongValue(value);
+                    samplerMode = cursor.getUnsignedValue();
                     break;
                 case "selectorAlgorithm":
-                    selectorAlgorithm = getLongValue(value);
+                    selectorAlgorithm = cursor.getUnsignedValue();
                     break;
                 case "samplingInterval":
-                    samplingInterval = getLongValue(value);
+                    samplingInterval = cursor.getUnsignedValue();
                     break;
                 case "samplerRandomInterval":
-                    samplerRandomInterval = getLongValue(value);
+                    samplerRandomInterval = cursor.getUnsignedValue();
                     break;
                 case "samplingFlowInterval":
-                    samplingFlowInterval = getLongValue(value);
+                    samplingFlowInterval = cursor.getUnsignedValue();
                     break;
                 case "samplingFlowSpacing":
-                    samplingFlowSpacing = getLongValue(value);
+                    samplingFlowSpacing = cursor.getUnsignedValue();
                     break;
                 case "flowSamplingTimeInterval":
-                    flowSamplingTimeInterval = getLongValue(value);
+                    flowSamplingTimeInterval = cursor.getUnsignedValue();
                     break;
                 case "flowSamplingTimeSpacing":
-                    flowSamplingTimeSpacing = getLongValue(value);
+                    flowSamplingTimeSpacing = cursor.getUnsignedValue();
                     break;
                 case "samplingSize":
-                    samplingSize = getLongValue(value);
+                    samplingSize = cursor.getUnsignedValue();
                     break;
                 case "samplingPopulation":
-                    samplingPopulation = getLongValue(value);
+                    samplingPopulation = cursor.getUnsignedValue();
                     break;
                 case "samplingProbability":
-                    samplingProbability = getLongValue(value);
+                    samplingProbability = cursor.getUnsignedValue();
                     break;
                 case "hashSelectedRangeMin":
-                    hashSelectedRangeMin = getLongValue(value);
+                    hashSelectedRangeMin = cursor.getUnsignedValue();
                     break;
                 case "hashSelectedRangeMax":
-                    hashSelectedRangeMax = getLongValue(value);
+                    hashSelectedRangeMax = cursor.getUnsignedValue();
                     break;
                 case "hashOutputRangeMin":
-                    hashOutputRangeMin = getLongValue(value);
+                    hashOutputRangeMin = cursor.getUnsignedValue();
                     break;
                 case "hashOutputRangeMax":
-                    hashOutputRangeMax = getLongValue(value);
+                    hashOutputRangeMax = cursor.getUnsignedValue();
                     break;
                 case "sourceIPv6Address":
-                    sourceIPv6Address = getInetAddress(value);
+                    sourceIPv6Address = cursor.getInetAddress();
                     break;
                 case "sourceIPv4Address":
-                    sourceIPv4Address = getInetAddress(value);
+                    sourceIPv4Address = cursor.getInetAddress();
                     break;
                 case "sourceIPv6PrefixLength":
-                    sourceIPv6PrefixLength = getLongValue(value);
+                    sourceIPv6PrefixLength = cursor.getUnsignedValue();
                     break;
                 case "sourceIPv4PrefixLength":
-                    sourceIPv4PrefixLength = getLongValue(value);
+                    sourceIPv4PrefixLength = cursor.getUnsignedValue();
                     break;
                 case "sourceTransportPort":
-                    getUInt32Value(value).ifPresent(builder::setSrcPort);
+                    getUInt32Value(cursor.getUnsignedValue()).ifPresent(builder::setSrcPort);
                     break;
                 case "vlanId":
-                    vlanId = getLongValue(value);
+                    vlanId = cursor.getUnsignedValue();
                     break;
                 case "postVlanId":
-                    postVlanId = getLongValue(value);
+                    postVlanId = cursor.getUnsignedValue();
                     break;
                 case "dot1qVlanId":
-                    dot1qVlanId = getLongValue(value);
+                    dot1qVlanId = cursor.getUnsignedValue();
                     break;
                 case "dot1qCustomerVlanId":
-                    dot1qCustomerVlanId = getLongValue(value);
+                    dot1qCustomerVlanId = cursor.getUnsignedValue();
                     break;
                 case "postDot1qVlanId":
-                    postDot1qVlanId = getLongValue(value);
+                    postDot1qVlanId = cursor.getUnsignedValue();
                     break;
                 case "postDot1qCustomerVlanId":
-                    postDot1qCustomerVlanId = getLongValue(value);
+                    postDot1qCustomerVlanId = cursor.getUnsignedValue();
                     break;
                 case "flowActiveTimeout":
-                    flowActiveTimeout = getLongValue(value);
+                    flowActiveTimeout = cursor.getUnsignedValue();
                     break;
                 case "flowInactiveTimeout":
-                    flowInactiveTimeout = getLongValue(value);
+                    flowInactiveTimeout = cursor.getUnsignedValue();
                     break;
                 case "ingressPhysicalInterface":
-                    ingressPhysicalInterface = getUInt32Value(value).orElse(null);
+                    ingressPhysicalInterface = getUInt32Value(cursor.getUnsignedValue()).orElse(null);
                     break;
                 case "egressPhysicalInterface":
-                    egressPhysicalInterface = getUInt32Value(value).orElse(null);
+                    egressPhysicalInterface = getUInt32Value(cursor.getUnsignedValue()).orElse(null);
                     break;
             }
         }
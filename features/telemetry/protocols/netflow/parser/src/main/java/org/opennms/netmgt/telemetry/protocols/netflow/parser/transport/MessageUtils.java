@@ -106,6 +106,13 @@ public interface MessageUtils {
         return Optional.empty();
     }
 
+    static Optional<UInt32Value> getUInt32Value(Long value) {
+        if (value != null) {
+            return Optional.of(UInt32Value.newBuilder().setValue(value.intValue()).build());
+        }
+        return Optional.empty();
+    }
+
 
     static Optional<DoubleValue> getDoubleValue(Value<?> value) {
         Long longValue = getLongValue(value);
@@ -115,6 +122,13 @@ public interface MessageUtils {
         return Optional.empty();
     }
 
+    static Optional<DoubleValue> getDoubleValue(Long value) {
+        if (value != null) {
+            return Optional.of(DoubleValue.newBuilder().setValue(value.doubleValue()).build());
+        }
+        return Optional.empty();
+    }
+
     static Optional<String> getString(String value) {
         if (!Strings.isNullOrEmpty(value)) {
             return Optional.of(value);
@@ -0,0 +1,180 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.telemetry.protocols.netflow.parser.session;
+
+import static org.opennms.netmgt.telemetry.listeners.utils.BufferUtils.slice;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.RecordEnrichment;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.RecordProvider;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.transport.IpFixMessageBuilder;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.transport.MessageBuilder;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.transport.Netflow9MessageBuilder;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Compares reading data sets with compiled templates against decoding each field to a value.
+ * <p>
+ * The templates of a captured exporter are loaded into a session once, then the captured data packets are parsed
+ * repeatedly. The {@code decode} benchmark measures parsing only, {@code build} additionally converts each record to
+ * a flow message like the parser does. Run with {@code -prof gc} to compare the allocation rate.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class CompiledTemplateBenchmark {
+    private final static Path FOLDER = Paths.get("src/test/resources/flows");
+
+    private final static RecordEnrichment NO_ENRICHMENT = address -> Optional.empty();
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    /**
+     * The captured exporter.
+     */
+    @Param({"ipfix_mikrotik", "ipfix_openbsd_pflow", "netflow9_cisco_asa", "netflow9_paloalto_panos"})
+    public String capture;
+
+    @Param({"false", "true"})
+    public boolean compiled;
+
+    private boolean ipfix;
+
+    private Session session;
+
+    private MessageBuilder messageBuilder;
+
+    private final List<byte[]> packets = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws Exception {
+        final List<String> templates;
+        final List<String> data;
+        switch (capture) {
+            case "ipfix_mikrotik":
+                templates = Arrays.asList("ipfix_test_mikrotik_tpl.dat");
+                data = Arrays.asList("ipfix_test_mikrotik_data258.dat", "ipfix_test_mikrotik_data259.dat");
+                break;
+            case "ipfix_openbsd_pflow":
+                templates = Arrays.asList("ipfix_test_openbsd_pflow_tpl.dat");
+                data = Arrays.asList("ipfix_test_openbsd_pflow_data.dat");
+                break;
+            case "netflow9_cisco_asa":
+                templates = Arrays.asList("netflow9_test_cisco_asa_1_tpl.dat");
+                data = Arrays.asList("netflow9_test_cisco_asa_1_data.dat");
+                break;
+            case "netflow9_paloalto_panos":
+                templates = Arrays.asList("netflow9_test_paloalto_panos_tpl.dat");
+                data = Arrays.asList("netflow9_test_paloalto_panos_data.dat");
+                break;
+            default:
+                throw new IllegalArgumentException(capture);
+        }
+
+        this.ipfix = capture.startsWith("ipfix");
+        this.session = new TcpSession(InetAddress.getLoopbackAddress(), () -> new SequenceNumberTracker(32));
+        this.messageBuilder = this.ipfix ? new IpFixMessageBuilder() : new Netflow9MessageBuilder();
+
+        for (final String file : templates) {
+            for (final byte[] packet : packets(file)) {
+                parse(packet);
+            }
+        }
+        for (final String file : data) {
+            this.packets.addAll(packets(file));
+        }
+    }
+
+    private List<byte[]> packets(final String file) throws IOException {
+        final byte[] bytes = Files.readAllBytes(FOLDER.resolve(file));
+        if (!this.ipfix) {
+            // Each capture holds a single packet
+            return Arrays.asList(bytes);
+        }
+
+        final List<byte[]> packets = new ArrayList<>();
+        final ByteBuf buffer = Unpooled.wrappedBuffer(bytes);
+        while (buffer.isReadable()) {
+            final int length = buffer.getUnsignedShort(buffer.readerIndex() + 2);
+            final byte[] packet = new byte[length];
+            buffer.readBytes(packet);
+            packets.add(packet);
+        }
+        return packets;
+    }
+
+    private RecordProvider parse(final byte[] packet) throws Exception {
+        final ByteBuf buffer = Unpooled.wrappedBuffer(packet);
+        if (this.ipfix) {
+            final org.opennms.netmgt.telemetry.protocols.netflow.parser.ipfix.proto.Header header =
+                    new org.opennms.netmgt.telemetry.protocols.netflow.parser.ipfix.proto.Header(slice(buffer, org.opennms.netmgt.telemetry.protocols.netflow.parser.ipfix.proto.Header.SIZE));
+            return new org.opennms.netmgt.telemetry.protocols.netflow.parser.ipfix.proto.Packet(this.session, header, slice(buffer, header.payloadLength()), this.compiled);
+        } else {
+            final org.opennms.netmgt.telemetry.protocols.netflow.parser.netflow9.proto.Header header =
+                    new org.opennms.netmgt.telemetry.protocols.netflow.parser.netflow9.proto.Header(slice(buffer, org.opennms.netmgt.telemetry.protocols.netflow.parser.netflow9.proto.Header.SIZE));
+            return new org.opennms.netmgt.telemetry.protocols.netflow.parser.netflow9.proto.Packet(this.session, header, buffer, this.compiled);
+        }
+    }
+
+    @Benchmark
+    public void decode(final Blackhole blackhole) throws Exception {
+        for (final byte[] packet : this.packets) {
+            parse(packet).getRecords().forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void build(final Blackhole blackhole) throws Exception {
+        for (final byte[] packet : this.packets) {
+            parse(packet).getRecords().forEach(record -> blackhole.consume(this.messageBuilder.buildMessage(record, NO_ENRICHMENT).build()));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.telemetry.protocols.netflow.parser.session;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.opennms.netmgt.telemetry.listeners.utils.BufferUtils.slice;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.Protocol;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.RecordEnrichment;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.FlowRecord;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.RecordProvider;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.Value;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.transport.IpFixMessageBuilder;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.transport.MessageBuilder;
+import org.opennms.netmgt.telemetry.protocols.netflow.parser.transport.Netflow9MessageBuilder;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Iterables;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Verifies that records read by compiled templates are equal to records read field by field.
+ */
+@RunWith(Parameterized.class)
+public class CompiledTemplateTest {
+    private final static Path FOLDER = Paths.get("src/test/resources/flows");
+
+    private final static RecordEnrichment NO_ENRICHMENT = address -> Optional.empty();
+
+    @Parameterized.Parameters(name = "{0}: {1}")
+    public static Iterable<Object[]> data() throws IOException {
+        return Arrays.asList(
+                new Object[]{Protocol.IPFIX, Arrays.asList("ipfix.dat")},
+                new Object[]{Protocol.IPFIX, Arrays.asList("ipfix_test_openbsd_pflow_tpl.dat", "ipfix_test_openbsd_pflow_data.dat")},
+                new Object[]{Protocol.IPFIX, Arrays.asList("ipfix_test_mikrotik_tpl.dat", "ipfix_test_mikrotik_data258.dat", "ipfix_test_mikrotik_data259.dat")},
+                new Object[]{Protocol.IPFIX, Arrays.asList("ipfix_test_vmware_vds_tpl.dat", "ipfix_test_vmware_vds_data264.dat", "ipfix_test_vmware_vds_data266.dat", "ipfix_test_vmware_vds_data266_267.dat")},
+                new Object[]{Protocol.IPFIX, Arrays.asList("ipfix_test_barracuda_tpl.dat", "ipfix_test_barracuda_data256.dat")},
+                new Object[]{Protocol.NETFLOW9, Arrays.asList("netflow9_test_valid01.dat")},
+                new Object[]{Protocol.NETFLOW9, Arrays.asList("netflow9_test_macaddr_tpl.dat", "netflow9_test_macaddr_data.dat")},
+                new Object[]{Protocol.NETFLOW9, Arrays.asList("netflow9_test_cisco_asa_1_tpl.dat", "netflow9_test_cisco_asa_1_data.dat")},
+                new Object[]{Protocol.NETFLOW9, Arrays.asList("netflow9_test_nprobe_tpl.dat", "netflow9_test_softflowd_tpl_data.dat", "netflow9_test_nprobe_data.dat")},
+                new Object[]{Protocol.NETFLOW9, Arrays.asList("netflow9_test_ubnt_edgerouter_tpl.dat", "netflow9_test_ubnt_edgerouter_data1024.dat", "netflow9_test_ubnt_edgerouter_data1025.dat")},
+                new Object[]{Protocol.NETFLOW9, Arrays.asList("netflow9_test_fortigate_fortios_521_tpl.dat", "netflow9_test_fortigate_fortios_521_data256.dat", "netflow9_test_fortigate_fortios_521_data257.dat")},
+                new Object[]{Protocol.NETFLOW9, Arrays.asList("netflow9_test_0length_fields_tpl_data.dat")},
+                new Object[]{Protocol.NETFLOW9, Arrays.asList("netflow9_test_cisco_nbar_opttpl260.dat", "netflow9_test_cisco_nbar_tpl262.dat", "netflow9_test_cisco_nbar_data262.dat")},
+                new Object[]{Protocol.NETFLOW9, Arrays.asList("netflow9_test_paloalto_panos_tpl.dat", "netflow9_test_paloalto_panos_data.dat")}
+        );
+    }
+
+    private final Protocol protocol;
+    private final List<String> files;
+
+    public CompiledTemplateTest(final Protocol protocol, final List<String> files) {
+        this.protocol = protocol;
+        this.files = files;
+    }
+
+    @Test
+    public void testRecordsAreEqual() throws Exception {
+        final List<Iterable<Value<?>>> expected = parse(false);
+        final List<Iterable<Value<?>>> actual = parse(true);
+
+        assertThat(actual.size(), is(expected.size()));
+
+        // Compiled and non-compiled sets may be reported in a different order if a packet contains both
+        assertThat(HashMultiset.create(toStrings(actual)), is(HashMultiset.create(toStrings(expected))));
+
+        final MessageBuilder messageBuilder = this.protocol == Protocol.IPFIX
+                ? new IpFixMessageBuilder()
+                : new Netflow9MessageBuilder();
+        assertThat(HashMultiset.create(toMessages(messageBuilder, actual)), is(HashMultiset.create(toMessages(messageBuilder, expected))));
+    }
+
+    @Test
+    public void testRecordsAreCompiled() throws Exception {
+        // The captures are dominated by plain templates, at least some records must have been compiled
+        assertTrue(parse(true).stream().anyMatch(r -> r instanceof FlowRecord));
+        assertTrue(parse(false).stream().noneMatch(r -> r instanceof FlowRecord));
+    }
+
+    private static List<String> toStrings(final List<Iterable<Value<?>>> records) {
+        return records.stream()
+                .map(Iterables::toString)
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> toMessages(final MessageBuilder messageBuilder, final List<Iterable<Value<?>>> records) {
+        return records.stream()
+                .map(r -> messageBuilder.buildMessage(r, NO_ENRICHMENT).build().toString())
+                .collect(Collectors.toList());
+    }
+
+    private List<Iterable<Value<?>>> parse(final boolean compiled) throws Exception {
+        final Session session = new TcpSession(InetAddress.getLoopbackAddress(), () -> new SequenceNumberTracker(32));
+
+        final List<Iterable<Value<?>>> records = new ArrayList<>();
+        for (final String file : this.files) {
+            try (final FileChannel channel = FileChannel.open(FOLDER.resolve(file))) {
+                final ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+                channel.read(buffer);
+                buffer.flip();
+
+                final ByteBuf buf = Unpooled.wrappedBuffer(buffer);
+
+                do {
+                    final RecordProvider packet;
+                    if (this.protocol == Protocol.IPFIX) {
+                        final org.opennms.netmgt.telemetry.protocols.netflow.parser.ipfix.proto.Header header =
+                                new org.opennms.netmgt.telemetry.protocols.netflow.parser.ipfix.proto.Header(slice(buf, org.opennms.netmgt.telemetry.protocols.netflow.parser.ipfix.proto.Header.SIZE));
+                        packet = new org.opennms.netmgt.telemetry.protocols.netflow.parser.ipfix.proto.Packet(session, header, slice(buf, header.length - org.opennms.netmgt.telemetry.protocols.netflow.parser.ipfix.proto.Header.SIZE), compiled);
+                    } else {
+                        final org.opennms.netmgt.telemetry.protocols.netflow.parser.netflow9.proto.Header header =
+                                new org.opennms.netmgt.telemetry.protocols.netflow.parser.netflow9.proto.Header(slice(buf, org.opennms.netmgt.telemetry.protocols.netflow.parser.netflow9.proto.Header.SIZE));
+                        packet = new org.opennms.netmgt.telemetry.protocols.netflow.parser.netflow9.proto.Packet(session, header, buf, compiled);
+                    }
+
+                    packet.getRecords().forEach(records::add);
+                } while (buf.isReadable());
+            }
+        }
+
+        return records;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.telemetry.shell;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.karaf.shell.api.action.Action;
+import org.apache.karaf.shell.api.action.Argument;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Completion;
+import org.apache.karaf.shell.api.action.Option;
+import org.apache.karaf.shell.api.action.lifecycle.Reference;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.opennms.netmgt.telemetry.api.TelemetryManager;
+import org.opennms.netmgt.telemetry.api.receiver.Listener;
+import org.opennms.netmgt.telemetry.listeners.UdpListener;
+
+import io.pkts.Pcap;
+import io.pkts.packet.UDPPacket;
+import io.pkts.protocol.Protocol;
+
+@Command(scope = "opennms", name = "telemetry-udp-load", description = "Send the UDP payloads of a packet capture to a local UDP listener in a loop and measure the achieved packet rate.")
+@Service
+public class UdpLoad implements Action {
+    @Reference
+    public TelemetryManager manager;
+
+    @Argument(index = 0, name = "listener", description = "Listener name", required = true)
+    @Completion(value = Parsers.ListenerCompleter.class)
+    public String listenerName;
+
+    @Argument(index = 1, name = "pcap", description = "Path to .pcap file with the payloads to send", required = true)
+    public File pcapFile;
+
+    @Option(name = "-e", aliases = "--exporters", description = "Number of simulated exporters, each sending from its own socket and thread")
+    public int exporters = 4;
+
+    @Option(name = "-d", aliases = "--duration", description = "Duration of the test in seconds")
+    public int duration = 10;
+
+    @Option(name = "-r", aliases = "--rate", description = "Packets per second sent by each exporter. Set to <= 0 to send as fast as possible.")
+    public int rate = 0;
+
+    @Override
+    @SuppressWarnings("java:S106")
+    public Object execute() throws Exception {
+        final Listener listener = this.manager.getListeners().stream()
+                .filter(l -> Objects.equals(l.getName(), this.listenerName))
+                .min(Comparator.comparing(Listener::getName))
+                .orElseThrow(() -> new RuntimeException(String.format("No listener with name '%s' found.", listenerName)));
+        if (!(listener instanceof UdpListener)) {
+            throw new RuntimeException("Listener must be a UDP listener.");
+        }
+        final UdpListener udpListener = (UdpListener) listener;
+
+        final List<byte[]> payloads = new ArrayList<>();
+        try (final InputStream in = new FileInputStream(pcapFile)) {
+            Pcap.openStream(in).loop(packet -> {
+                if (packet.hasProtocol(Protocol.UDP)) {
+                    payloads.add(((UDPPacket) packet.getPacket(Protocol.UDP)).getPayload().getArray());
+                }
+                return true;
+            });
+        }
+        if (payloads.isEmpty()) {
+            throw new RuntimeException(String.format("No UDP packets found in '%s'.", pcapFile));
+        }
+
+        final InetAddress host = udpListener.getHost() != null && !InetAddress.getByName(udpListener.getHost()).isAnyLocalAddress()
+                ? InetAddress.getByName(udpListener.getHost())
+                : InetAddress.getLoopbackAddress();
+        final InetSocketAddress target = new InetSocketAddress(host, udpListener.getPort());
+
+        final List<UdpListener.SocketStats> before = udpListener.getSocketStats();
+        final long[] receivedBefore = before.stream().mapToLong(UdpListener.SocketStats::getPacketsReceived).toArray();
+        final long[] droppedBefore = before.stream().mapToLong(UdpListener.SocketStats::getPacketsDropped).toArray();
+
+        System.out.printf("Sending %d payloads to %s from %d exporters for %d seconds.%n", payloads.size(), target, exporters, duration);
+
+        final AtomicLong sent = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(duration);
+        final long interval = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+
+        final long start = System.nanoTime();
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < exporters; i++) {
+            final int offset = i;
+            final Thread thread = new Thread(() -> {
+                try (final DatagramChannel channel = DatagramChannel.open()) {
+                    channel.connect(target);
+                    long next = System.nanoTime();
+                    long count = 0;
+                    for (int n = offset; System.nanoTime() < deadline; n++) {
+                        if (interval > 0) {
+                            next += interval;
+                            final long delay = next - System.nanoTime();
+                            if (delay > 0) {
+                                LockSupport.parkNanos(delay);
+                            }
+                        }
+                        try {
+                            channel.write(ByteBuffer.wrap(payloads.get(n % payloads.size())));
+                            count++;
+                        } catch (final Exception e) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                    sent.addAndGet(count);
+                } catch (final Exception e) {
+                    System.err.printf("Exporter %d failed: %s%n", offset, e.getMessage());
+                }
+            }, "telemetry-udp-load-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        final double elapsed = (System.nanoTime() - start) / 1e9;
+
+        // Give the listener some time to drain its receive buffers
+        Thread.sleep(1000);
+
+        final List<UdpListener.SocketStats> after = udpListener.getSocketStats();
+        long received = 0;
+        System.out.println();
+        System.out.printf("%-8s %-24s %12s %12s%n", "Socket", "Address", "Received", "Dropped");
+        for (int i = 0; i < after.size(); i++) {
+            final UdpListener.SocketStats stats = after.get(i);
+            final long socketReceived = stats.getPacketsReceived() - (i < receivedBefore.length ? receivedBefore[i] : 0);
+            final long dropped = stats.getPacketsDropped();
+            received += socketReceived;
+            System.out.printf("%-8d %-24s %12d %12s%n", stats.getIndex(), stats.getLocalAddress(), socketReceived,
+                    dropped < 0 ? "n/a" : Long.toString(dropped - (i < droppedBefore.length ? Math.max(0, droppedBefore[i]) : 0)));
+        }
+        System.out.println();
+        System.out.printf("Sent:     %d packets (%d failed), %.0f packets/s%n", sent.get(), failed.get(), sent.get() / elapsed);
+        System.out.printf("Received: %d packets, %.0f packets/s, %.2f%% loss%n", received, received / elapsed,
+                sent.get() > 0 ? 100.0 * (sent.get() - received) / sent.get() : 0.0);
+        return null;
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.timeseries.samplewrite;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.opennms.integration.api.v1.timeseries.Metric;
+import org.opennms.integration.api.v1.timeseries.Sample;
+import org.opennms.integration.api.v1.timeseries.Tag;
+import org.opennms.integration.api.v1.timeseries.immutables.ImmutableMetric;
+import org.opennms.integration.api.v1.timeseries.immutables.ImmutableSample;
+
+/**
+ * Compact columnar encoding for the sample batches held by the off-heap queue.
+ *
+ * The batch is stored as a dictionary of all tag keys and values, followed by the
+ * distinct metrics of the batch as indexes into the dictionary, and one column each
+ * for the metric index, the timestamp and the value of the samples. Timestamps are
+ * delta-encoded in milliseconds, with an additional column for the sub-millisecond
+ * part which is only written if present. Values are stored as packed doubles.
+ *
+ * Samples of the same metric share a single {@link Metric} instance once decoded.
+ * Metrics are told apart by all of their tags, not only by the intrinsic tags
+ * {@link Metric#equals(Object)} compares, so that no meta or external tags are lost.
+ *
+ * Encoded batches start with a magic header, so that batches written by other
+ * codecs can be told apart, see {@link #isEncoded(byte[])}.
+ */
+public final class ColumnarSampleCodec {
+
+    private static final byte[] MAGIC = {(byte) 0xC5, 'T', 'S', 1};
+
+    private static final int FLAG_NANOS = 0x01;
+
+    private static final int NANOS_PER_MILLI = 1_000_000;
+
+    private ColumnarSampleCodec() {
+    }
+
+    /**
+     * @param bytes the serialized batch
+     * @return true if the batch was encoded by this codec
+     */
+    public static boolean isEncoded(final byte[] bytes) {
+        if (bytes == null || bytes.length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static byte[] encode(final List<Sample> samples) {
+        final Map<String, Integer> strings = new HashMap<>();
+        final List<String> stringList = new ArrayList<>();
+        final Map<Metric, Integer> metricInstances = new IdentityHashMap<>();
+        final Map<List<Collection<Tag>>, Integer> metrics = new HashMap<>();
+        final List<Metric> metricList = new ArrayList<>();
+
+        final int size = samples.size();
+        final int[] metricColumn = new int[size];
+        boolean hasNanos = false;
+        for (int i = 0; i < size; i++) {
+            final Sample sample = samples.get(i);
+            final Metric metric = sample.getMetric();
+            // Samples usually share their metric instance, which avoids hashing the tags
+            Integer metricIndex = metricInstances.get(metric);
+            if (metricIndex == null) {
+                metricIndex = metrics.computeIfAbsent(Arrays.asList(metric.getIntrinsicTags(), metric.getMetaTags(), metric.getExternalTags()), k -> {
+                    metricList.add(metric);
+                    intern(metric.getIntrinsicTags(), strings, stringList);
+                    intern(metric.getMetaTags(), strings, stringList);
+                    intern(metric.getExternalTags(), strings, stringList);
+                    return metricList.size() - 1;
+                });
+                metricInstances.put(metric, metricIndex);
+            }
+            metricColumn[i] = metricIndex;
+            hasNanos |= sample.getTime().getNano() % NANOS_PER_MILLI != 0;
+        }
+
+        final Output out = new Output(64 + size * 12);
+        out.writeBytes(MAGIC);
+        out.writeByte(hasNanos ? FLAG_NANOS : 0);
+
+        out.writeVarInt(stringList.size());
+        for (final String string : stringList) {
+            out.writeString(string);
+        }
+
+        out.writeVarInt(metricList.size());
+        for (final Metric metric : metricList) {
+            writeTags(out, metric.getIntrinsicTags(), strings);
+            writeTags(out, metric.getMetaTags(), strings);
+            writeTags(out, metric.getExternalTags(), strings);
+        }
+
+        out.writeVarInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeVarInt(metricColumn[i]);
+        }
+        long previous = 0L;
+        for (int i = 0; i < size; i++) {
+            final long time = samples.get(i).getTime().toEpochMilli();
+            out.writeVarLong(zigZag(time - previous));
+            previous = time;
+        }
+        if (hasNanos) {
+            for (int i = 0; i < size; i++) {
+                out.writeVarInt(samples.get(i).getTime().getNano() % NANOS_PER_MILLI);
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            out.writeLong(Double.doubleToRawLongBits(samples.get(i).getValue()));
+        }
+        return out.toByteArray();
+    }
+
+    public static List<Sample> decode(final byte[] bytes) {
+        if (!isEncoded(bytes)) {
+            throw new IllegalArgumentException("Not a columnar sample batch");
+        }
+        final Input in = new Input(bytes, MAGIC.length);
+        final int flags = in.readByte();
+
+        final String[] strings = new String[in.readVarInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readString();
+        }
+
+        final Metric[] metrics = new Metric[in.readVarInt()];
+        for (int i = 0; i < metrics.length; i++) {
+            final ImmutableMetric.MetricBuilder builder = ImmutableMetric.builder();
+            for (int n = in.readVarInt(); n > 0; n--) {
+                builder.intrinsicTag(strings[in.readVarInt()], readValue(in, strings));
+            }
+            for (int n = in.readVarInt(); n > 0; n--) {
+                builder.metaTag(strings[in.readVarInt()], readValue(in, strings));
+            }
+            for (int n = in.readVarInt(); n > 0; n--) {
+                builder.externalTag(strings[in.readVarInt()], readValue(in, strings));
+            }
+            metrics[i] = builder.build();
+        }
+
+        final int size = in.readVarInt();
+        final int[] metricColumn = new int[size];
+        for (int i = 0; i < size; i++) {
+            metricColumn[i] = in.readVarInt();
+        }
+        final long[] times = new long[size];
+        long previous = 0L;
+        for (int i = 0; i < size; i++) {
+            previous += unZigZag(in.readVarLong());
+            times[i] = previous;
+        }
+        final int[] nanos = new int[size];
+        if ((flags & FLAG_NANOS) != 0) {
+            for (int i = 0; i < size; i++) {
+                nanos[i] = in.readVarInt();
+            }
+        }
+
+        final List<Sample> samples = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            samples.add(ImmutableSample.builder()
+                    .metric(metrics[metricColumn[i]])
+                    .time(Instant.ofEpochMilli(times[i]).plusNanos(nanos[i]))
+                    .value(Double.longBitsToDouble(in.readLong()))
+                    .build());
+        }
+        return samples;
+    }
+
+    private static void intern(final Collection<Tag> tags, final Map<String, Integer> strings, final List<String> stringList) {
+        for (final Tag tag : tags) {
+            intern(tag.getKey(), strings, stringList);
+            if (tag.getValue() != null) {
+                intern(tag.getValue(), strings, stringList);
+            }
+        }
+    }
+
+    private static void intern(final String string, final Map<String, Integer> strings, final List<String> stringList) {
+        if (!strings.containsKey(string)) {
+            strings.put(string, stringList.size());
+            stringList.add(string);
+        }
+    }
+
+    private static void writeTags(final Output out, final Collection<Tag> tags, final Map<String, Integer> strings) {
+        out.writeVarInt(tags.size());
+        for (final Tag tag : tags) {
+            out.writeVarInt(strings.get(tag.getKey()));
+            // Reserve 0 for tags without a value
+            out.writeVarInt(tag.getValue() != null ? strings.get(tag.getValue()) + 1 : 0);
+        }
+    }
+
+    private static String readValue(final Input in, final String[] strings) {
+        final int index = in.readVarInt();
+        return index > 0 ? strings[index - 1] : null;
+    }
+
+    private static long zigZag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static class Output {
+        private byte[] buffer;
+        private int position;
+
+        private Output(final int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        private void ensure(final int length) {
+            if (position + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+            }
+        }
+
+        private void writeByte(final int value) {
+            ensure(1);
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeBytes(final byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private void writeVarInt(final int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        private void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeLong(final long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void writeString(final String value) {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            writeBytes(bytes);
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    private static class Input {
+        private final byte[] buffer;
+        private int position;
+
+        private Input(final byte[] buffer, final int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        private int readByte() {
+            return buffer[position++] & 0xFF;
+        }
+
+        private int readVarInt() {
+            return (int) readVarLong();
+        }
+
+        private long readVarLong() {
+            long value = 0L;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final byte b = buffer[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed variable length integer");
+        }
+
+        private long readLong() {
+            long value = 0L;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFFL);
+            }
+            return value;
+        }
+
+        private String readString() {
+            final int length = readVarInt();
+            final String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
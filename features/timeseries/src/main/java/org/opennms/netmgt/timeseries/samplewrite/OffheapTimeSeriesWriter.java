@@ -89,10 +89,10 @@ public class OffheapTimeSeriesWriter implements TimeseriesWriter {
         droppedSamples = registry.meter(MetricRegistry.name(OFFHEAP_NAME, "dropped-samples"));
         sampleWriteTsTimer = registry.timer(MetricRegistry.name(OFFHEAP_NAME, "samples.write.ts"));
 
-        LOG.info("ringBufferSize: {}, numWriterThreads: {}, batchSize: {}, path: {}, maxFileSize: {}",
+        LOG.info("ringBufferSize: {}, numWriterThreads: {}, batchSize: {}, path: {}, maxFileSize: {}, codec: {}",
                 timeseriesWriterConfig.getBufferSize(), timeseriesWriterConfig.getNumWriterThreads(),
                 timeseriesWriterConfig.getBatchSize(), timeseriesWriterConfig.getPath(),
-                timeseriesWriterConfig.getMaxFileSize());
+                timeseriesWriterConfig.getMaxFileSize(), timeseriesWriterConfig.getOffheapCodec());
 
         // Set up Q's
         this.queue = createQueue(timeseriesWriterConfig);
@@ -121,12 +121,19 @@ public class OffheapTimeSeriesWriter implements TimeseriesWriter {
                 timeseriesWriterConfig.getMaxFileSize());
     }
 
-    private <T> Function<byte[], T> createDeSerializer() {
-        return t -> (T) fstConf.asObject(t);
+    /**
+     * Batches are decoded by the codec they were written with, so that batches queued on disk
+     * remain readable when the codec is changed.
+     */
+    private Function<byte[], List<Sample>> createDeSerializer() {
+        return t -> ColumnarSampleCodec.isEncoded(t) ? ColumnarSampleCodec.decode(t) : (List<Sample>) fstConf.asObject(t);
     }
 
-    private <T> Function<T, byte[]> createSerializer() {
-        return t -> fstConf.asByteArray(t);
+    private Function<List<Sample>, byte[]> createSerializer() {
+        if (timeseriesWriterConfig.getOffheapCodec() == TimeseriesWriterConfig.OffheapCodec.FST) {
+            return t -> fstConf.asByteArray(t);
+        }
+        return ColumnarSampleCodec::encode;
     }
 
     @Override
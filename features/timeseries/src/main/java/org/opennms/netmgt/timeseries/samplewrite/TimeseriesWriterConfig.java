@@ -24,6 +24,8 @@ package org.opennms.netmgt.timeseries.samplewrite;
 public class TimeseriesWriterConfig {
     public enum BufferType {RINGBUFFER, OFFHEAP}
 
+    public enum OffheapCodec {COLUMNAR, FST}
+
     /**
      * Special comment about bufferSize and ringBufferSize.
      * If bufferSize defined return bufferSize, otherwise return ringBufferSize
@@ -45,6 +47,8 @@ public class TimeseriesWriterConfig {
 
     private long maxFileSize = -1;
 
+    private OffheapCodec offheapCodec = OffheapCodec.COLUMNAR;
+
     public int getBufferSize() {
         return bufferSize == -1 ? ringBufferSize : bufferSize;
     }
@@ -96,4 +100,12 @@ public class TimeseriesWriterConfig {
     public void setMaxFileSize(Long maxFileSize) {
         this.maxFileSize = maxFileSize;
     }
+
+    public OffheapCodec getOffheapCodec() {
+        return offheapCodec;
+    }
+
+    public void setOffheapCodec(OffheapCodec offheapCodec) {
+        this.offheapCodec = offheapCodec;
+    }
 }
@@ -0,0 +1,152 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.timeseries.samplewrite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.nustaq.serialization.FSTConfiguration;
+import org.opennms.integration.api.v1.timeseries.IntrinsicTagNames;
+import org.opennms.integration.api.v1.timeseries.MetaTagNames;
+import org.opennms.integration.api.v1.timeseries.Metric;
+import org.opennms.integration.api.v1.timeseries.Sample;
+import org.opennms.integration.api.v1.timeseries.immutables.ImmutableMetric;
+import org.opennms.integration.api.v1.timeseries.immutables.ImmutableSample;
+
+public class ColumnarSampleCodecTest {
+
+    @Test
+    public void canRoundtripSamples() {
+        final Metric ifInOctets = createMetric("snmp/1/eth0/mib2-interfaces", "ifInOctets")
+                .externalTag("ifAlias", "uplink äöü")
+                .build();
+        final Metric ifOutOctets = createMetric("snmp/1/eth0/mib2-interfaces", "ifOutOctets")
+                .externalTag("ifAlias", "uplink äöü")
+                .build();
+        final Metric loadAvg = createMetric("snmp/2/ucd-loadavg", "loadavg1").build();
+
+        final Instant now = Instant.ofEpochMilli(1_700_000_000_123L);
+        final List<Sample> samples = new ArrayList<>();
+        samples.add(sample(ifInOctets, now, 42.0));
+        samples.add(sample(ifOutOctets, now, -0.5));
+        // Timestamps are not required to be ordered
+        samples.add(sample(loadAvg, now.minusSeconds(300), Double.NaN));
+        samples.add(sample(ifInOctets, now.plusSeconds(300), Double.MAX_VALUE));
+        samples.add(sample(loadAvg, Instant.EPOCH, Double.NEGATIVE_INFINITY));
+
+        final byte[] bytes = ColumnarSampleCodec.encode(samples);
+        assertTrue(ColumnarSampleCodec.isEncoded(bytes));
+
+        final List<Sample> decoded = ColumnarSampleCodec.decode(bytes);
+        assertEquals(samples, decoded);
+
+        // Samples of the same metric share the metric
+        assertSame(decoded.get(0).getMetric(), decoded.get(3).getMetric());
+        assertSame(decoded.get(2).getMetric(), decoded.get(4).getMetric());
+    }
+
+    @Test
+    public void canRoundtripMetricsWhichOnlyDifferInMetaAndExternalTags() {
+        final Metric uplink = createMetric("snmp/1/eth0/mib2-interfaces", "ifInOctets")
+                .externalTag("ifAlias", "uplink")
+                .build();
+        final Metric downlink = createMetric("snmp/1/eth0/mib2-interfaces", "ifInOctets")
+                .externalTag("ifAlias", "downlink")
+                .build();
+        final Metric tagged = createMetric("snmp/1/eth0/mib2-interfaces", "ifInOctets")
+                .metaTag("site", "dc1")
+                .externalTag("ifAlias", "uplink")
+                .build();
+        // Metric equality only covers the intrinsic tags
+        assertEquals(uplink, downlink);
+
+        final Instant now = Instant.ofEpochMilli(1_700_000_000_123L);
+        final List<Sample> samples = new ArrayList<>();
+        samples.add(sample(uplink, now, 1.0));
+        samples.add(sample(downlink, now, 2.0));
+        samples.add(sample(tagged, now, 3.0));
+
+        final List<Sample> decoded = ColumnarSampleCodec.decode(ColumnarSampleCodec.encode(samples));
+        assertEquals(samples.size(), decoded.size());
+        for (int i = 0; i < samples.size(); i++) {
+            final Metric expected = samples.get(i).getMetric();
+            final Metric actual = decoded.get(i).getMetric();
+            assertEquals(expected.getIntrinsicTags(), actual.getIntrinsicTags());
+            assertEquals(expected.getMetaTags(), actual.getMetaTags());
+            assertEquals(expected.getExternalTags(), actual.getExternalTags());
+            assertEquals(samples.get(i).getValue(), decoded.get(i).getValue(), 0.0d);
+        }
+    }
+
+    @Test
+    public void canRoundtripSubMillisecondTimestamps() {
+        final Metric metric = createMetric("a/b", "c").build();
+        final List<Sample> samples = new ArrayList<>();
+        samples.add(sample(metric, Instant.ofEpochSecond(1_700_000_000L, 123_456_789), 1.0));
+        samples.add(sample(metric, Instant.ofEpochSecond(1_700_000_000L, 0), 2.0));
+
+        assertEquals(samples, ColumnarSampleCodec.decode(ColumnarSampleCodec.encode(samples)));
+    }
+
+    @Test
+    public void canRoundtripEmptyBatch() {
+        assertEquals(Collections.emptyList(), ColumnarSampleCodec.decode(ColumnarSampleCodec.encode(Collections.emptyList())));
+    }
+
+    @Test
+    public void isSmallerThanFst() {
+        final FSTConfiguration fstConf = FSTConfiguration.createDefaultConfiguration();
+        fstConf.registerClass(ArrayList.class, ImmutableSample.class);
+
+        final Instant now = Instant.now();
+        final List<Sample> samples = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            final Metric metric = createMetric("snmp/1/if" + (i / 10) + "/mib2-interfaces", "metric" + (i % 10)).build();
+            samples.add(sample(metric, now, i));
+        }
+
+        final byte[] fst = fstConf.asByteArray(samples);
+        final byte[] columnar = ColumnarSampleCodec.encode(samples);
+        assertFalse(ColumnarSampleCodec.isEncoded(fst));
+        assertTrue(columnar.length < fst.length);
+    }
+
+    private static ImmutableMetric.MetricBuilder createMetric(final String resourceId, final String name) {
+        return ImmutableMetric.builder()
+                .intrinsicTag(IntrinsicTagNames.resourceId, resourceId)
+                .intrinsicTag(IntrinsicTagNames.name, name)
+                .metaTag(MetaTagNames.mtype, Metric.Mtype.counter.name())
+                .metaTag("node", "NODES:srv-" + resourceId.length());
+    }
+
+    private static Sample sample(final Metric metric, final Instant time, final double value) {
+        return ImmutableSample.builder().metric(metric).time(time).value(value).build();
+    }
+}
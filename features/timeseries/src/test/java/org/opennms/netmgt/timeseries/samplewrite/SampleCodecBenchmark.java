@@ -0,0 +1,152 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.timeseries.samplewrite;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.nustaq.serialization.FSTConfiguration;
+import org.opennms.integration.api.v1.timeseries.IntrinsicTagNames;
+import org.opennms.integration.api.v1.timeseries.MetaTagNames;
+import org.opennms.integration.api.v1.timeseries.Metric;
+import org.opennms.integration.api.v1.timeseries.Sample;
+import org.opennms.integration.api.v1.timeseries.immutables.ImmutableMetric;
+import org.opennms.integration.api.v1.timeseries.immutables.ImmutableSample;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the FST and the columnar encoding of the sample batches queued by the
+ * {@link OffheapTimeSeriesWriter}.
+ * <p>
+ * The batches mimic an SNMP collection: interfaces with a handful of counters each,
+ * sharing meta and external tags, collected at the same time. The throughput is reported
+ * in samples per millisecond, the size of the encoded batches is printed during setup.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class SampleCodecBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    /**
+     * The number of samples per metric in a batch, i.e. how many collection intervals
+     * are queued before the batch is written.
+     */
+    @Param({"1", "10"})
+    public int samplesPerMetric;
+
+    private final FSTConfiguration fstConf = FSTConfiguration.createDefaultConfiguration();
+
+    private List<Sample> samples;
+
+    private byte[] fstBytes;
+
+    private byte[] columnarBytes;
+
+    @Setup
+    public void setUp() {
+        fstConf.registerClass(ArrayList.class, ImmutableSample.class);
+
+        final Random random = new Random(42);
+        final Instant start = Instant.ofEpochMilli(1_700_000_000_000L);
+        final List<Metric> metrics = new ArrayList<>();
+        for (int i = 0; metrics.size() < BATCH_SIZE / samplesPerMetric; i++) {
+            for (final String name : new String[]{"ifHCInOctets", "ifHCOutOctets", "ifInErrors", "ifOutErrors", "ifInDiscards"}) {
+                metrics.add(ImmutableMetric.builder()
+                        .intrinsicTag(IntrinsicTagNames.resourceId, "snmp/fs/Servers/srv-" + (i / 16) + "/eth" + (i % 16) + "-0050568" + i + "/mib2-X-interfaces")
+                        .intrinsicTag(IntrinsicTagNames.name, name)
+                        .metaTag(MetaTagNames.mtype, Metric.Mtype.counter.name())
+                        .metaTag("node", "Servers:srv-" + (i / 16))
+                        .metaTag("location", "Default")
+                        .externalTag("ifAlias", "uplink to core-" + (i % 4))
+                        .externalTag("ifDescr", "eth" + (i % 16))
+                        .build());
+            }
+        }
+
+        samples = new ArrayList<>(BATCH_SIZE);
+        for (int interval = 0; interval < samplesPerMetric; interval++) {
+            final Instant time = start.plusSeconds(300L * interval);
+            for (final Metric metric : metrics) {
+                if (samples.size() == BATCH_SIZE) {
+                    break;
+                }
+                samples.add(ImmutableSample.builder()
+                        .metric(metric)
+                        .time(time.plusMillis(random.nextInt(50)))
+                        .value((double) random.nextInt(1_000_000_000))
+                        .build());
+            }
+        }
+
+        fstBytes = fstConf.asByteArray(samples);
+        columnarBytes = ColumnarSampleCodec.encode(samples);
+        System.out.printf("%nsamplesPerMetric=%d fst=%.1f bytes/sample columnar=%.1f bytes/sample%n",
+                samplesPerMetric, (double) fstBytes.length / samples.size(), (double) columnarBytes.length / samples.size());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public byte[] fstEncode() {
+        return fstConf.asByteArray(samples);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public byte[] columnarEncode() {
+        return ColumnarSampleCodec.encode(samples);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Object fstDecode() {
+        return fstConf.asObject(fstBytes);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<Sample> columnarDecode() {
+        return ColumnarSampleCodec.decode(columnarBytes);
+    }
+}
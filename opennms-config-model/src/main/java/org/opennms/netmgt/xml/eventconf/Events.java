@@ -113,6 +113,9 @@ public class Events implements Serializable {
     @XmlTransient
     private EventOrdering m_ordering;
 
+    @XmlTransient
+    private volatile long m_generation;
+
     public Global getGlobal() {
         return m_global;
     }
@@ -278,17 +281,7 @@ public class Events implements Serializable {
         }
 
         // If the UEI match failed, fallback to searching with the matchers through the partitions
-        final String key = m_partition.group(matchingEvent);
-        Collection<Event> potentialMatches = m_nullPartitionedEvents;
-        if (key != null) {
-            final List<Event> events = m_partitionedEvents.get(key);
-            if (events != null) {
-                potentialMatches = new TreeSet<Event>(m_nullPartitionedEvents);
-                potentialMatches.addAll(events);
-            }
-        }
-
-        for (final Event event : potentialMatches) {
+        for (final Event event : getPartitionMatches(matchingEvent)) {
             if (event.matches(matchingEvent).matched()) {
                 return event;
             }
@@ -304,6 +297,45 @@ public class Events implements Serializable {
         return null;
     }
 
+    /**
+     * Returns the event definitions whose matchers are evaluated by
+     * {@link #findFirstMatchingEvent(org.opennms.netmgt.xml.event.Event)} when the
+     * event cannot be matched by UEI, in the order in which they are evaluated.
+     *
+     * @param matchingEvent the event to match
+     * @return the candidate event definitions, including the ones of the loaded event files
+     */
+    public List<Event> getPotentialMatches(final org.opennms.netmgt.xml.event.Event matchingEvent) {
+        final List<Event> potentialMatches = new ArrayList<>(getPartitionMatches(matchingEvent));
+        for (final Events subEvents : m_loadedEventFiles.values()) {
+            potentialMatches.addAll(subEvents.getPotentialMatches(matchingEvent));
+        }
+        return potentialMatches;
+    }
+
+    private Collection<Event> getPartitionMatches(final org.opennms.netmgt.xml.event.Event matchingEvent) {
+        final String key = m_partition.group(matchingEvent);
+        Collection<Event> potentialMatches = m_nullPartitionedEvents;
+        if (key != null) {
+            final List<Event> events = m_partitionedEvents.get(key);
+            if (events != null) {
+                potentialMatches = new TreeSet<Event>(m_nullPartitionedEvents);
+                potentialMatches.addAll(events);
+            }
+        }
+        return potentialMatches;
+    }
+
+    /**
+     * The generation is incremented every time the event definitions are (re-)initialized
+     * and can be used to invalidate anything derived from them.
+     *
+     * @return the current generation of the event definitions
+     */
+    public long getGeneration() {
+        return m_generation;
+    }
+
     public Set<Event> findMatchingEvents(final EventCriteria criteria) {
         final Set<Event> results = new HashSet<>();
         for (final Event event : m_events) {
@@ -382,6 +414,8 @@ public class Events implements Serializable {
         m_nullPartitionedEvents.sort(Comparator.naturalOrder());
 
         indexEventsByUei();
+
+        m_generation++;
     }
 
     // Recurse through the configuration and return Event Definitions with priority > 0
@@ -32,8 +32,11 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.collections.ListUtils;
 import org.apache.commons.io.IOUtils;
@@ -78,6 +81,17 @@ public class CollectdConfigFactory implements org.opennms.netmgt.config.api.Coll
     private List<Collector> extendedCollectors = Collections.emptyList();
     private List<Collector> mergedCollectors = Collections.emptyList();
 
+    /**
+     * An index of the IPs selected via the filter rules of the packages, so as
+     * to avoid repetitive database access. Built lazily on the first lookup.
+     *
+     * The index is only used once enabled by a caller which keeps it up to date,
+     * i.e. Collectd, all other callers evaluate the filter rules.
+     */
+    private final PackageMembershipIndex m_pkgIpIndex = new PackageMembershipIndex();
+    private volatile boolean m_pkgIpIndexEnabled = false;
+    private volatile boolean m_pkgIpIndexBuilt = false;
+
     public CollectdConfigFactory() throws IOException {
         m_fileName = ConfigFileConstants.getFile(ConfigFileConstants.COLLECTD_CONFIG_FILE_NAME).getPath();
 
@@ -121,6 +135,93 @@ public class CollectdConfigFactory implements org.opennms.netmgt.config.api.Coll
         synchronized (this.m_collectdConfigMutex) {
             this.mergedCollectors = ListUtils.union(localCollectdConfig.getCollectors(), this.extendedCollectors);
             this.mergedPackages = ListUtils.union(localCollectdConfig.getPackages(), this.extendedPackages);
+            this.m_pkgIpIndexBuilt = false;
+        }
+    }
+
+    /**
+     * Answers package membership lookups from an index of the IPs selected by the
+     * filter rules instead of evaluating the filter rules for every lookup.
+     *
+     * The index is not aware of changes to nodes and interfaces, so the caller must
+     * keep it up to date with {@link #updatePackageIpListMap(int, Collection)} and
+     * {@link #rebuildPackageIpListMap()}.
+     */
+    public void enablePackageIpListMap() {
+        m_pkgIpIndexEnabled = true;
+    }
+
+    /**
+     * Discards the package against IP list mapping. The mapping is rebuilt from
+     * the filter rules of all packages on the next lookup.
+     */
+    public void rebuildPackageIpListMap() {
+        synchronized (m_collectdConfigMutex) {
+            m_pkgIpIndexBuilt = false;
+        }
+    }
+
+    /**
+     * Re-evaluates the filter rules of all packages for the interfaces of a single
+     * node only, i.e. when the node gained a service or changed its categories. The
+     * filter rules are restricted to the node, so the interfaces of other nodes are
+     * not evaluated.
+     *
+     * @param nodeId the id of the node
+     * @param addresses the addresses of the interfaces of the node
+     * @return the interfaces which started or stopped being selected by a package
+     */
+    public List<PackageMembershipIndex.Delta> updatePackageIpListMap(final int nodeId, final Collection<InetAddress> addresses) {
+        if (!m_pkgIpIndexEnabled || addresses.isEmpty()) {
+            return Collections.emptyList();
+        }
+        ensurePackageIpListMap();
+
+        final List<Package> packages;
+        synchronized (m_collectdConfigMutex) {
+            packages = mergedPackages;
+        }
+
+        final Map<String, List<InetAddress>> pkgIpMap = new HashMap<>();
+        for (final Package pkg : packages) {
+            final String filter = PackageMembershipIndex.getNodeRule(pkg.getFilter().getContent(), nodeId);
+            try {
+                pkgIpMap.put(pkg.getName(), FilterDaoFactory.getInstance().getActiveIPAddressList(filter));
+            } catch (final Throwable t) {
+                LOG.error("updatePackageIpListMap: Failed to map package: {} to an IP List with filter \"{}\"", pkg.getName(), filter, t);
+                pkgIpMap.put(pkg.getName(), Collections.emptyList());
+            }
+        }
+
+        final List<PackageMembershipIndex.Delta> deltas = new ArrayList<>();
+        for (final PackageMembershipIndex.Delta delta : m_pkgIpIndex.update(addresses, pkgIpMap)) {
+            if (!delta.isEmpty()) {
+                LOG.debug("updatePackageIpListMap: {}", delta);
+                deltas.add(delta);
+            }
+        }
+        return deltas;
+    }
+
+    private void ensurePackageIpListMap() {
+        if (m_pkgIpIndexBuilt) {
+            return;
+        }
+        synchronized (m_collectdConfigMutex) {
+            if (m_pkgIpIndexBuilt) {
+                return;
+            }
+            final Map<String, List<InetAddress>> pkgIpMap = new HashMap<>();
+            for (final Package pkg : mergedPackages) {
+                LOG.debug("ensurePackageIpListMap: package is {}. filter rules are {}", pkg.getName(), pkg.getFilter().getContent());
+                try {
+                    pkgIpMap.put(pkg.getName(), FilterDaoFactory.getInstance().getActiveIPAddressList(pkg.getFilter().getContent()));
+                } catch (Throwable t) {
+                    LOG.error("ensurePackageIpListMap: Failed to map package: {} to an IP List with filter \"{}\"", pkg.getName(), pkg.getFilter().getContent(), t);
+                }
+            }
+            m_pkgIpIndex.rebuild(pkgIpMap);
+            m_pkgIpIndexBuilt = true;
         }
     }
 
@@ -327,20 +428,28 @@ public class CollectdConfigFactory implements org.opennms.netmgt.config.api.Coll
 
         boolean filterPassed = false;
 
-        //
-        // Get a list of IP address per package against the filter rules from
-        // database and populate the package, IP list map.
-        //
-
         LOG.debug("interfaceInFilter: package is {}. filter rules are {}", pkg.getName(), filter);
-        try {
-            final List<InetAddress> ipList = FilterDaoFactory.getInstance().getActiveIPAddressList(filter);
-            filterPassed = ipList.contains(ifaceAddress);
-            if (!filterPassed) {
-                LOG.debug("interfaceInFilter: Interface {} passed filter for package {}?: false", iface, pkg.getName());
+        if (m_pkgIpIndexEnabled) {
+            //
+            // Look up the interface in the index of IP addresses per package
+            // against the filter rules.
+            //
+            ensurePackageIpListMap();
+            filterPassed = m_pkgIpIndex.isSelected(pkg.getName(), ifaceAddress);
+        } else {
+            //
+            // Get a list of IP address per package against the filter rules from
+            // database and populate the package, IP list map.
+            //
+            try {
+                final List<InetAddress> ipList = FilterDaoFactory.getInstance().getActiveIPAddressList(filter);
+                filterPassed = ipList.contains(ifaceAddress);
+            } catch (Throwable t) {
+                LOG.error("interfaceInFilter: Failed to map package: {} to an IP List with filter \"{}\"", pkg.getName(), pkg.getFilter().getContent(), t);
             }
-        } catch (Throwable t) {
-            LOG.error("interfaceInFilter: Failed to map package: {} to an IP List with filter \"{}\"", pkg.getName(), pkg.getFilter().getContent(), t);
+        }
+        if (!filterPassed) {
+            LOG.debug("interfaceInFilter: Interface {} passed filter for package {}?: false", iface, pkg.getName());
         }
 
         return filterPassed;
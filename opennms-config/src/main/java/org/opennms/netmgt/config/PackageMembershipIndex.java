@@ -0,0 +1,222 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.config;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+/**
+ * An inverted index of the interfaces selected by the filter rules of the
+ * configured packages.
+ *
+ * The index answers "which packages select this interface" with a single map
+ * lookup. It is built in bulk with one filter evaluation per package and can then
+ * be maintained incrementally by re-evaluating the filters of the interfaces
+ * that changed, i.e. the interfaces of a node that gained a service or changed
+ * its categories. The filter rules are then restricted to that node, see
+ * {@link #getNodeRule(String, int)}.
+ *
+ * Lookups never block. Updates and rebuilds are serialized.
+ */
+public class PackageMembershipIndex {
+
+    /**
+     * The packages of an interface before and after an update.
+     */
+    public static class Delta {
+        private final InetAddress m_address;
+        private final Set<String> m_added;
+        private final Set<String> m_removed;
+
+        private Delta(final InetAddress address, final Set<String> before, final Set<String> after) {
+            m_address = address;
+            m_added = ImmutableSet.copyOf(Sets.difference(after, before));
+            m_removed = ImmutableSet.copyOf(Sets.difference(before, after));
+        }
+
+        public InetAddress getAddress() {
+            return m_address;
+        }
+
+        /**
+         * @return the names of the packages which now select the interface
+         */
+        public Set<String> getAdded() {
+            return m_added;
+        }
+
+        /**
+         * @return the names of the packages which no longer select the interface
+         */
+        public Set<String> getRemoved() {
+            return m_removed;
+        }
+
+        public boolean isEmpty() {
+            return m_added.isEmpty() && m_removed.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "Delta[address=" + m_address + ", added=" + m_added + ", removed=" + m_removed + "]";
+        }
+    }
+
+    private volatile Map<InetAddress, Set<String>> m_packagesByAddress = new ConcurrentHashMap<>();
+
+    private final Object m_writeLock = new Object();
+
+    /**
+     * Replaces the content of the index.
+     *
+     * @param addressesByPackage the addresses selected by the filter rule of each package, keyed by package name
+     */
+    public void rebuild(final Map<String, ? extends Collection<InetAddress>> addressesByPackage) {
+        final Map<InetAddress, Set<String>> packagesByAddress = new HashMap<>();
+        for (final Map.Entry<String, ? extends Collection<InetAddress>> entry : addressesByPackage.entrySet()) {
+            for (final InetAddress address : entry.getValue()) {
+                packagesByAddress.computeIfAbsent(address, k -> new HashSet<>()).add(entry.getKey());
+            }
+        }
+
+        final Map<InetAddress, Set<String>> index = new ConcurrentHashMap<>(Math.max(16, packagesByAddress.size() * 4 / 3));
+        packagesByAddress.forEach((address, packages) -> index.put(address, ImmutableSet.copyOf(packages)));
+
+        synchronized (m_writeLock) {
+            m_packagesByAddress = index;
+        }
+    }
+
+    /**
+     * Re-evaluates the package membership of the given interface.
+     *
+     * @param address the address of the interface
+     * @param packageNames the names of all configured packages
+     * @param filter evaluates whether the filter rule of the named package selects the address
+     * @return the packages which started or stopped selecting the interface
+     */
+    public Delta update(final InetAddress address, final Collection<String> packageNames, final BiPredicate<String, InetAddress> filter) {
+        Objects.requireNonNull(address);
+        final Set<String> packages = new HashSet<>();
+        for (final String packageName : packageNames) {
+            if (filter.test(packageName, address)) {
+                packages.add(packageName);
+            }
+        }
+        return put(address, packages);
+    }
+
+    /**
+     * Re-evaluates the package membership of the given interfaces against the
+     * result of a single filter evaluation per package.
+     *
+     * @param addresses the addresses of the interfaces
+     * @param addressesByPackage the addresses selected by the filter rule of each package, keyed by package name
+     * @return the packages which started or stopped selecting each interface
+     */
+    public List<Delta> update(final Collection<InetAddress> addresses, final Map<String, ? extends Collection<InetAddress>> addressesByPackage) {
+        final Map<String, Set<InetAddress>> selected = new HashMap<>();
+        addressesByPackage.forEach((packageName, packageAddresses) -> selected.put(packageName, new HashSet<>(packageAddresses)));
+
+        final List<Delta> deltas = new ArrayList<>(addresses.size());
+        for (final InetAddress address : addresses) {
+            deltas.add(update(address, selected.keySet(), (packageName, addr) -> selected.get(packageName).contains(addr)));
+        }
+        return deltas;
+    }
+
+    /**
+     * Restricts a filter rule to the interfaces of a single node, so that the
+     * membership of the node can be re-evaluated without evaluating the rule for
+     * all interfaces.
+     *
+     * @param rule the filter rule of a package
+     * @param nodeId the id of the node
+     * @return the filter rule selecting only interfaces of the node
+     */
+    public static String getNodeRule(final String rule, final int nodeId) {
+        if (rule == null || rule.trim().isEmpty()) {
+            return "(nodeId == " + nodeId + ")";
+        }
+        return "(" + rule + ") & (nodeId == " + nodeId + ")";
+    }
+
+    /**
+     * Removes the interface from all packages.
+     *
+     * @param address the address of the interface
+     * @return the packages which stopped selecting the interface
+     */
+    public Delta remove(final InetAddress address) {
+        return put(address, Collections.emptySet());
+    }
+
+    private Delta put(final InetAddress address, final Set<String> packages) {
+        synchronized (m_writeLock) {
+            final Set<String> before = packages.isEmpty()
+                    ? m_packagesByAddress.remove(address)
+                    : m_packagesByAddress.put(address, ImmutableSet.copyOf(packages));
+            return new Delta(address, before != null ? before : Collections.emptySet(), packages);
+        }
+    }
+
+    /**
+     * @param address the address of the interface
+     * @return the names of the packages whose filter rule selects the interface
+     */
+    public Set<String> getPackages(final InetAddress address) {
+        if (address == null) {
+            return Collections.emptySet();
+        }
+        final Set<String> packages = m_packagesByAddress.get(address);
+        return packages != null ? packages : Collections.emptySet();
+    }
+
+    /**
+     * @param packageName the name of the package
+     * @param address the address of the interface
+     * @return true if the filter rule of the package selects the interface
+     */
+    public boolean isSelected(final String packageName, final InetAddress address) {
+        return getPackages(address).contains(packageName);
+    }
+
+    /**
+     * @return the number of interfaces selected by at least one package
+     */
+    public int size() {
+        return m_packagesByAddress.size();
+    }
+}
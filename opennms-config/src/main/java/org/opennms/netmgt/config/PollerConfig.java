@@ -113,6 +113,22 @@ public interface PollerConfig extends PathOutageConfig {
      */
     void rebuildPackageIpListMap();
 
+    /**
+     * This method is used to update the package against ip list mapping for
+     * the interfaces of a single node only, i.e. when the node gained a service
+     * or changed its categories. Implementations which do not support
+     * incremental updates rebuild the whole mapping.
+     *
+     * @param nodeId the id of the node
+     * @param addresses the addresses of the interfaces of the node
+     * @return the interfaces which started or stopped being selected by a
+     *         package, or null if the whole mapping was rebuilt
+     */
+    default List<PackageMembershipIndex.Delta> updatePackageIpListMap(final int nodeId, final Collection<InetAddress> addresses) {
+        rebuildPackageIpListMap();
+        return null;
+    }
+
     Iterable<Parameter> parameters(final Service svc);
 
     /**
@@ -43,7 +43,6 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentSkipListMap;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -330,10 +329,10 @@ abstract public class PollerConfigManager implements PollerConfig  {
      */
     private Map<String, List<String>> m_urlIPMap;
     /**
-     * A mapping of the configured package to a list of IPs selected via filter
-     * rules, so as to avoid repetitive database access.
+     * An index of the IPs selected via the filter rules of the configured
+     * packages, so as to avoid repetitive database access.
      */
-    private AtomicReference<Map<Package, Set<InetAddress>>> m_pkgIpMap = new AtomicReference<>();
+    private final PackageMembershipIndex m_pkgIpIndex = new PackageMembershipIndex();
 
     /**
      * Go through the poller configuration and build a mapping of each
@@ -595,7 +594,7 @@ abstract public class PollerConfigManager implements PollerConfig  {
         getReadLock().lock();
         
         try {
-            Map<Package, Set<InetAddress>> pkgIpMap = new HashMap<>();
+            Map<String, Set<InetAddress>> pkgIpMap = new HashMap<>();
             
             for(final Package pkg : packages()) {
         
@@ -607,7 +606,7 @@ abstract public class PollerConfigManager implements PollerConfig  {
                     LOG.debug("createPackageIpMap: package {}: ipList size = {}", pkg.getName(), ipList.size());
         
                     if (ipList.size() > 0) {
-                        pkgIpMap.put(pkg, ipList);
+                        pkgIpMap.put(pkg.getName(), ipList);
                     }
                     
                 } catch (final Throwable t) {
@@ -617,7 +616,7 @@ abstract public class PollerConfigManager implements PollerConfig  {
                 
             }
             
-            m_pkgIpMap.set(pkgIpMap);
+            m_pkgIpIndex.rebuild(pkgIpMap);
             
         } finally {
             getReadLock().unlock();
@@ -650,6 +649,44 @@ abstract public class PollerConfigManager implements PollerConfig  {
         createPackageIpListMap();
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The filter rule of every package is restricted to the node, the
+     * membership of the interfaces of all other nodes is left untouched.
+     */
+    @Override
+    public List<PackageMembershipIndex.Delta> updatePackageIpListMap(final int nodeId, final Collection<InetAddress> addresses) {
+        if (addresses.isEmpty()) {
+            return Collections.emptyList();
+        }
+        FilterDaoFactory.getInstance().flushActiveIpAddressListCache();
+        getReadLock().lock();
+        try {
+            final Map<String, List<InetAddress>> pkgIpMap = new HashMap<>();
+            for (final Package pkg : packages()) {
+                final String filterRules = PackageMembershipIndex.getNodeRule(pkg.getFilter().getContent(), nodeId);
+                try {
+                    pkgIpMap.put(pkg.getName(), FilterDaoFactory.getInstance().getActiveIPAddressList(filterRules));
+                } catch (final Throwable t) {
+                    LOG.error("updatePackageIpListMap: failed to map package: {} to an IP List with filter \"{}\"", pkg.getName(), filterRules, t);
+                    pkgIpMap.put(pkg.getName(), Collections.emptyList());
+                }
+            }
+
+            final List<PackageMembershipIndex.Delta> deltas = new ArrayList<>();
+            for (final PackageMembershipIndex.Delta delta : m_pkgIpIndex.update(addresses, pkgIpMap)) {
+                if (!delta.isEmpty()) {
+                    LOG.debug("updatePackageIpListMap: {}", delta);
+                    deltas.add(delta);
+                }
+            }
+            return deltas;
+        } finally {
+            getReadLock().unlock();
+        }
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -666,11 +703,8 @@ abstract public class PollerConfigManager implements PollerConfig  {
         boolean filterPassed = false;
         final InetAddress ifaceAddr = addr(iface);
     
-        // get list of IPs in this package
-        final Set<InetAddress> ipList = m_pkgIpMap.get().get(pkg);
-        if (ipList != null && ipList.size() > 0) {
-			filterPassed = ipList.contains(ifaceAddr);
-        }
+        // is the interface selected by the filter of this package
+        filterPassed = m_pkgIpIndex.isSelected(pkg.getName(), ifaceAddr);
 
         LOG.debug("interfaceInPackage: Interface {} passed filter for package {}?: {}", iface, pkg.getName(), Boolean.valueOf(filterPassed));
     
@@ -0,0 +1,111 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.opennms.core.utils.InetAddressUtils.addr;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+public class PackageMembershipIndexTest {
+
+    private static final List<String> PACKAGES = Arrays.asList("example1", "example2");
+
+    @Test
+    public void canLookupPackagesOfInterface() {
+        final PackageMembershipIndex index = new PackageMembershipIndex();
+        final Map<String, List<InetAddress>> ipsByPackage = ImmutableMap.of(
+                "example1", Arrays.asList(addr("10.0.0.1"), addr("10.0.0.2")),
+                "example2", Collections.singletonList(addr("10.0.0.2")));
+        index.rebuild(ipsByPackage);
+
+        assertEquals(2, index.size());
+        assertEquals(ImmutableSet.of("example1"), index.getPackages(addr("10.0.0.1")));
+        assertEquals(ImmutableSet.of("example1", "example2"), index.getPackages(addr("10.0.0.2")));
+        assertEquals(Collections.emptySet(), index.getPackages(addr("10.0.0.3")));
+        assertTrue(index.isSelected("example2", addr("10.0.0.2")));
+        assertFalse(index.isSelected("example2", addr("10.0.0.1")));
+    }
+
+    @Test
+    public void canUpdateSingleInterface() {
+        final PackageMembershipIndex index = new PackageMembershipIndex();
+        index.rebuild(ImmutableMap.of("example1", Collections.singletonList(addr("10.0.0.1"))));
+
+        // The interface moved from one package to the other
+        PackageMembershipIndex.Delta delta = index.update(addr("10.0.0.1"), PACKAGES, (pkg, addr) -> "example2".equals(pkg));
+        assertEquals(ImmutableSet.of("example2"), delta.getAdded());
+        assertEquals(ImmutableSet.of("example1"), delta.getRemoved());
+        assertEquals(ImmutableSet.of("example2"), index.getPackages(addr("10.0.0.1")));
+
+        // Nothing changed
+        delta = index.update(addr("10.0.0.1"), PACKAGES, (pkg, addr) -> "example2".equals(pkg));
+        assertTrue(delta.isEmpty());
+
+        // A new interface is added without touching the others
+        delta = index.update(addr("10.0.0.5"), PACKAGES, (pkg, addr) -> true);
+        assertEquals(ImmutableSet.of("example1", "example2"), delta.getAdded());
+        assertEquals(2, index.size());
+
+        // The interface is no longer selected by any package
+        delta = index.remove(addr("10.0.0.1"));
+        assertEquals(ImmutableSet.of("example2"), delta.getRemoved());
+        assertEquals(1, index.size());
+        assertFalse(index.isSelected("example2", addr("10.0.0.1")));
+    }
+
+    @Test
+    public void canUpdateInterfacesFromFilterResults() {
+        final PackageMembershipIndex index = new PackageMembershipIndex();
+        index.rebuild(ImmutableMap.of("example1", Arrays.asList(addr("10.0.0.1"), addr("10.0.0.9"))));
+
+        // Only the given interfaces are updated, even though the filter results contain others
+        final List<PackageMembershipIndex.Delta> deltas = index.update(Arrays.asList(addr("10.0.0.1"), addr("10.0.0.2")), ImmutableMap.of(
+                "example1", Collections.singletonList(addr("10.0.0.2")),
+                "example2", Arrays.asList(addr("10.0.0.1"), addr("10.0.0.3"))));
+        assertEquals(2, deltas.size());
+        assertEquals(ImmutableSet.of("example2"), deltas.get(0).getAdded());
+        assertEquals(ImmutableSet.of("example1"), deltas.get(0).getRemoved());
+        assertEquals(ImmutableSet.of("example1"), deltas.get(1).getAdded());
+
+        assertEquals(ImmutableSet.of("example1"), index.getPackages(addr("10.0.0.9")));
+        assertEquals(Collections.emptySet(), index.getPackages(addr("10.0.0.3")));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void canRestrictRuleToNode() {
+        assertEquals("(IPADDR != '0.0.0.0') & (nodeId == 5)", PackageMembershipIndex.getNodeRule("IPADDR != '0.0.0.0'", 5));
+        assertEquals("(nodeId == 5)", PackageMembershipIndex.getNodeRule("", 5));
+    }
+}
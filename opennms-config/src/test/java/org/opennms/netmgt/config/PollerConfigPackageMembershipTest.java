@@ -0,0 +1,133 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.opennms.core.utils.InetAddressUtils.addr;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.config.poller.Package;
+import org.opennms.netmgt.filter.FilterDaoFactory;
+import org.opennms.netmgt.filter.api.FilterDao;
+
+import com.google.common.collect.ImmutableSet;
+
+public class PollerConfigPackageMembershipTest {
+
+    private static final String SUBNET_RULE = "IPADDR IPLIKE 10.*.*.*";
+
+    private static final String SERVERS_RULE = "catincServers";
+
+    private static final String CONFIG = "<?xml version=\"1.0\"?>\n"
+            + "<poller-configuration threads=\"30\" serviceUnresponsiveEnabled=\"false\" nextOutageId=\"SELECT nextval('outageNxtId')\">\n"
+            + "  <node-outage status=\"on\" pollAllIfNoCriticalServiceDefined=\"true\">\n"
+            + "    <critical-service name=\"ICMP\" />\n"
+            + "  </node-outage>\n"
+            + "  <package name=\"subnet\">\n"
+            + "    <filter>" + SUBNET_RULE + "</filter>\n"
+            + "    <rrd step=\"300\"><rra>RRA:AVERAGE:0.5:1:2016</rra></rrd>\n"
+            + "    <service name=\"ICMP\" interval=\"300000\" user-defined=\"false\" status=\"on\" />\n"
+            + "  </package>\n"
+            + "  <package name=\"servers\">\n"
+            + "    <filter>" + SERVERS_RULE + "</filter>\n"
+            + "    <rrd step=\"300\"><rra>RRA:AVERAGE:0.5:1:2016</rra></rrd>\n"
+            + "    <service name=\"ICMP\" interval=\"300000\" user-defined=\"false\" status=\"on\" />\n"
+            + "  </package>\n"
+            + "</poller-configuration>";
+
+    private FilterDao filterDao;
+
+    private PollerConfigManager pollerConfig;
+
+    @Before
+    public void setUp() {
+        filterDao = mock(FilterDao.class);
+        when(filterDao.getActiveIPAddressList(SUBNET_RULE)).thenReturn(Arrays.asList(addr("10.0.0.1"), addr("10.0.0.2")));
+        when(filterDao.getActiveIPAddressList(SERVERS_RULE)).thenReturn(Arrays.asList(addr("10.0.0.2"), addr("192.168.0.1")));
+        FilterDaoFactory.setInstance(filterDao);
+
+        pollerConfig = new PollerConfigManager(IOUtils.toInputStream(CONFIG, StandardCharsets.UTF_8)) {
+            @Override
+            protected void saveXml(String xml) throws IOException {
+                // pass
+            }
+        };
+    }
+
+    @Test
+    public void canUpdateSingleInterfaceWithoutEvaluatingFullRules() {
+        final Package servers = pollerConfig.getPackage("servers");
+        assertFalse(pollerConfig.isInterfaceInPackage("10.0.0.1", servers));
+
+        // Node 1 joined the servers category
+        when(filterDao.getActiveIPAddressList(PackageMembershipIndex.getNodeRule(SUBNET_RULE, 1))).thenReturn(Collections.singletonList(addr("10.0.0.1")));
+        when(filterDao.getActiveIPAddressList(PackageMembershipIndex.getNodeRule(SERVERS_RULE, 1))).thenReturn(Collections.singletonList(addr("10.0.0.1")));
+
+        final List<PackageMembershipIndex.Delta> deltas = pollerConfig.updatePackageIpListMap(1, Collections.singleton(addr("10.0.0.1")));
+        assertEquals(1, deltas.size());
+        assertEquals(addr("10.0.0.1"), deltas.get(0).getAddress());
+        assertEquals(ImmutableSet.of("servers"), deltas.get(0).getAdded());
+        assertEquals(Collections.emptySet(), deltas.get(0).getRemoved());
+
+        assertTrue(pollerConfig.isInterfaceInPackage("10.0.0.1", servers));
+        assertTrue(pollerConfig.isInterfaceInPackage("10.0.0.2", servers));
+        assertTrue(pollerConfig.isInterfaceInPackage("192.168.0.1", servers));
+
+        // The full rules were only evaluated when the configuration was loaded
+        verify(filterDao, times(1)).getActiveIPAddressList(SUBNET_RULE);
+        verify(filterDao, times(1)).getActiveIPAddressList(SERVERS_RULE);
+        verify(filterDao, times(1)).getActiveIPAddressList("(" + SUBNET_RULE + ") & (nodeId == 1)");
+        verify(filterDao, times(1)).getActiveIPAddressList("(" + SERVERS_RULE + ") & (nodeId == 1)");
+    }
+
+    @Test
+    public void canRemoveInterfaceFromPackage() {
+        final Package subnet = pollerConfig.getPackage("subnet");
+        assertTrue(pollerConfig.isInterfaceInPackage("10.0.0.2", subnet));
+
+        // Node 2 left the servers category, the subnet rule still selects it
+        when(filterDao.getActiveIPAddressList(PackageMembershipIndex.getNodeRule(SUBNET_RULE, 2))).thenReturn(Collections.singletonList(addr("10.0.0.2")));
+
+        final List<PackageMembershipIndex.Delta> deltas = pollerConfig.updatePackageIpListMap(2, Collections.singleton(addr("10.0.0.2")));
+        assertEquals(1, deltas.size());
+        assertEquals(ImmutableSet.of("servers"), deltas.get(0).getRemoved());
+        assertTrue(pollerConfig.isInterfaceInPackage("10.0.0.2", subnet));
+        assertFalse(pollerConfig.isInterfaceInPackage("10.0.0.2", pollerConfig.getPackage("servers")));
+
+        // Nothing changed
+        assertTrue(pollerConfig.updatePackageIpListMap(2, Collections.singleton(addr("10.0.0.2"))).isEmpty());
+    }
+}
@@ -51,6 +51,11 @@ public interface InterfaceToNodeCache {
 
 	void removeInterfacesForNode(int nodeId);
 
+	/**
+	 * Replaces the cached interfaces of the given node with its current interfaces.
+	 */
+	void refreshNode(int nodeId);
+
 	class Entry {
 		public final int nodeId;
 		public final int interfaceId;
@@ -66,6 +66,10 @@ public class MockInterfaceToNodeCache extends AbstractInterfaceToNodeCache {
     public void removeInterfacesForNode(int nodeId) {
     }
 
+    @Override
+    public void refreshNode(int nodeId) {
+    }
+
     private static class Key {
         private String location;
         private InetAddress ipAddr;
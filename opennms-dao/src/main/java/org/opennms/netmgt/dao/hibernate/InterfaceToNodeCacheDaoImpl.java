@@ -23,22 +23,28 @@ package org.opennms.netmgt.dao.hibernate;
 
 import static org.opennms.core.utils.InetAddressUtils.str;
 
+import java.net.Inet4Address;
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -60,15 +66,20 @@ import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.google.common.collect.ComparisonChain;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Multimaps;
-import com.google.common.collect.SortedSetMultimap;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * This class represents a singular instance that is used to map IP
  * addresses to known nodes.
  *
+ * The cache is maintained incrementally from the node and interface events. The
+ * periodic {@link #dataSourceSync()} only reconciles the cache with the database:
+ * it builds a new table in the background and swaps it in once complete. Changes
+ * applied while the table is built are replayed onto the new table before the swap.
+ * {@link #clear()} is not replayed, the rebuilt table replaces the cleared one.
+ *
+ * Lookups never block. Changes and rebuilds are serialized.
+ *
  * @author Seth
  * @author <a href="mailto:joed@opennms.org">Johan Edstrom</a>
  * @author <a href="mailto:weave@oculan.com">Brian Weaver </a>
@@ -78,6 +89,8 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 public class InterfaceToNodeCacheDaoImpl extends AbstractInterfaceToNodeCache implements InterfaceToNodeCache {
     private static final Logger LOG = LoggerFactory.getLogger(InterfaceToNodeCacheDaoImpl.class);
 
+    private static final Value[] NO_VALUES = new Value[0];
+
     private final ThreadFactory threadFactory = new ThreadFactoryBuilder()
             .setNameFormat("sync-interface-to-node-cache")
             .build();
@@ -192,6 +205,117 @@ public class InterfaceToNodeCacheDaoImpl extends AbstractInterfaceToNodeCache im
         }
     }
 
+    /**
+     * The entries of all locations.
+     *
+     * IPv4 addresses are keyed by the index of the location and the address packed
+     * into a single long, all other addresses by their {@link Key}. The values of an
+     * address are stored as a sorted array which is replaced on every change, so that
+     * readers always see a consistent array without locking.
+     *
+     * The node index and the size are only accessed while holding the write lock.
+     */
+    private class Table {
+        private final Map<Long, Value[]> m_ipv4Addresses = new ConcurrentHashMap<>();
+        private final Map<Key, Value[]> m_otherAddresses = new ConcurrentHashMap<>();
+        private final Map<Integer, Set<Key>> m_keysByNode = new HashMap<>();
+        private volatile int m_size = 0;
+
+        private Value[] get(final String location, final InetAddress ipAddr) {
+            final Value[] values;
+            if (ipAddr instanceof Inet4Address) {
+                final Integer locationIndex = m_locationIndexes.get(location);
+                if (locationIndex == null) {
+                    return NO_VALUES;
+                }
+                values = m_ipv4Addresses.get(pack(locationIndex, (Inet4Address) ipAddr));
+            } else {
+                values = m_otherAddresses.get(new Key(location, ipAddr));
+            }
+            return values != null ? values : NO_VALUES;
+        }
+
+        private void set(final Key key, final Value[] values) {
+            if (key.getIpAddress() instanceof Inet4Address) {
+                final long packed = pack(getLocationIndex(key.getLocation()), (Inet4Address) key.getIpAddress());
+                if (values.length == 0) {
+                    m_ipv4Addresses.remove(packed);
+                } else {
+                    m_ipv4Addresses.put(packed, values);
+                }
+            } else {
+                if (values.length == 0) {
+                    m_otherAddresses.remove(key);
+                } else {
+                    m_otherAddresses.put(key, values);
+                }
+            }
+        }
+
+        private boolean add(final Key key, final Value value) {
+            final Value[] values = get(key.getLocation(), key.getIpAddress());
+            final int pos = Arrays.binarySearch(values, value);
+            if (pos >= 0) {
+                return false;
+            }
+            final int insertAt = -(pos + 1);
+            final Value[] updated = new Value[values.length + 1];
+            System.arraycopy(values, 0, updated, 0, insertAt);
+            updated[insertAt] = value;
+            System.arraycopy(values, insertAt, updated, insertAt + 1, values.length - insertAt);
+            set(key, updated);
+            m_keysByNode.computeIfAbsent(value.getNodeId(), k -> new HashSet<>()).add(key);
+            m_size++;
+            return true;
+        }
+
+        private boolean remove(final Key key, final int nodeId) {
+            if (!removeValues(key, nodeId)) {
+                return false;
+            }
+            final Set<Key> keys = m_keysByNode.get(nodeId);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    m_keysByNode.remove(nodeId);
+                }
+            }
+            return true;
+        }
+
+        private void removeNode(final int nodeId) {
+            final Set<Key> keys = m_keysByNode.remove(nodeId);
+            if (keys == null) {
+                return;
+            }
+            for (final Key key : keys) {
+                if (removeValues(key, nodeId)) {
+                    LOG.debug("removeInterfacesForNode: removed IP address from cache: {}", str(key.getIpAddress()));
+                }
+            }
+        }
+
+        private boolean removeValues(final Key key, final int nodeId) {
+            final Value[] values = get(key.getLocation(), key.getIpAddress());
+            final Value[] updated = Arrays.stream(values)
+                    .filter(v -> v.getNodeId() != nodeId)
+                    .toArray(Value[]::new);
+            if (updated.length == values.length) {
+                return false;
+            }
+            set(key, updated);
+            m_size -= values.length - updated.length;
+            return true;
+        }
+
+        private void clear() {
+            m_ipv4Addresses.clear();
+            m_otherAddresses.clear();
+            m_keysByNode.clear();
+            m_size = 0;
+        }
+    }
+
     @Autowired
     private NodeDao m_nodeDao;
 
@@ -201,8 +325,25 @@ public class InterfaceToNodeCacheDaoImpl extends AbstractInterfaceToNodeCache im
     @Autowired
     private TransactionOperations transactionOperations;
 
-    private final ReadWriteLock m_lock = new ReentrantReadWriteLock();
-    private SortedSetMultimap<Key, Value> m_managedAddresses = Multimaps.newSortedSetMultimap(Maps.newHashMap(), TreeSet::new);
+    /**
+     * Small indexes for the location names, used to pack the location and an IPv4
+     * address into a single key. Indexes are never reused.
+     */
+    private final Map<String, Integer> m_locationIndexes = new ConcurrentHashMap<>();
+
+    private final AtomicInteger m_nextLocationIndex = new AtomicInteger();
+
+    private volatile Table m_table = new Table();
+
+    private final Object m_writeLock = new Object();
+
+    private final Object m_rebuildLock = new Object();
+
+    /**
+     * The changes applied while a rebuild is in progress, guarded by the write lock.
+     * These are replayed onto the rebuilt table before it is swapped in.
+     */
+    private List<Function<Table, ?>> m_journal = null;
 
     private final Timer refreshTimer = new Timer(getClass().getSimpleName());
 
@@ -241,6 +382,7 @@ public class InterfaceToNodeCacheDaoImpl extends AbstractInterfaceToNodeCache im
     public void destroy() {
         initialNodeSyncDone.countDown();
         executorService.shutdownNow();
+        refreshTimer.cancel();
     }
 
     public NodeDao getNodeDao() {
@@ -259,14 +401,16 @@ public class InterfaceToNodeCacheDaoImpl extends AbstractInterfaceToNodeCache im
         m_ipInterfaceDao = ipInterfaceDao;
     }
 
+    public void setTransactionOperations(TransactionOperations transactionOperations) {
+        this.transactionOperations = transactionOperations;
+    }
+
     /**
-     * Clears and synchronizes the internal known IP address cache with the
-     * current information contained in the database. To synchronize the cache
-     * the method opens a new connection to the database, loads the address,
-     * and then closes it's connection.
-     *
-     * @throws java.sql.SQLException Thrown if the connection cannot be created or a database
-     *                               error occurs.
+     * Rebuilds the internal known IP address cache from the current information
+     * contained in the database. The cache is built into a new table which replaces
+     * the existing one once complete, that way lookups are served from the existing
+     * table in the meantime and if something goes wrong with the DB we won't lose
+     * whatever was already in there.
      */
     @Override
     @Transactional
@@ -288,37 +432,72 @@ public class InterfaceToNodeCacheDaoImpl extends AbstractInterfaceToNodeCache im
     }
 
     private void dataSourceSyncWithinTransaction() {
-        /*
-         * Make a new list with which we'll replace the existing one, that way
-         * if something goes wrong with the DB we won't lose whatever was already
-         * in there
-         */
-        final SortedSetMultimap<Key, Value> newAlreadyDiscovered = Multimaps.newSortedSetMultimap(Maps.newHashMap(), TreeSet::new);
-
-        // Fetch all non-deleted nodes
-        final CriteriaBuilder builder = new CriteriaBuilder(OnmsNode.class);
-        builder.ne("type", String.valueOf(OnmsNode.NodeType.DELETED.value()));
-
-        for (OnmsNode node : m_nodeDao.findMatching(builder.toCriteria())) {
-            for (final OnmsIpInterface iface : node.getIpInterfaces()) {
-                // Skip deleted interfaces
-                // TODO: Refactor the 'D' value with an enumeration
-                if ("D".equals(iface.getIsManaged())) {
-                    continue;
+        synchronized (m_rebuildLock) {
+            synchronized (m_writeLock) {
+                m_journal = new ArrayList<>();
+            }
+            try {
+                final Table table = new Table();
+
+                // Fetch all non-deleted nodes
+                final CriteriaBuilder builder = new CriteriaBuilder(OnmsNode.class);
+                builder.ne("type", String.valueOf(OnmsNode.NodeType.DELETED.value()));
+
+                for (OnmsNode node : m_nodeDao.findMatching(builder.toCriteria())) {
+                    forEachEntry(node, (key, value) -> {
+                        LOG.debug("Adding entry: {}:{} -> {}", key.getLocation(), key.getIpAddress(), value.getNodeId());
+                        table.add(key, value);
+                    });
+                }
+
+                final int replayed;
+                synchronized (m_writeLock) {
+                    replayed = m_journal.size();
+                    m_journal.forEach(change -> change.apply(table));
+                    m_table = table;
+                }
+
+                LOG.info("dataSourceSync: initialized list of managed IP addresses with {} members, replayed {} changes", table.m_size, replayed);
+            } finally {
+                synchronized (m_writeLock) {
+                    m_journal = null;
                 }
-                LOG.debug("Adding entry: {}:{} -> {}", node.getLocation().getLocationName(), iface.getIpAddress(), node.getId());
-                newAlreadyDiscovered.put(new Key(node.getLocation().getLocationName(), iface.getIpAddress()), new Value(node.getId(), iface.getId(), iface.getIsSnmpPrimary()));
             }
         }
+    }
 
-        try {
-            m_lock.writeLock().lock();
-            m_managedAddresses = newAlreadyDiscovered;
-        } finally {
-            m_lock.writeLock().unlock();
+    private static void forEachEntry(final OnmsNode node, final BiConsumer<Key, Value> consumer) {
+        for (final OnmsIpInterface iface : node.getIpInterfaces()) {
+            // Skip deleted interfaces
+            // TODO: Refactor the 'D' value with an enumeration
+            if ("D".equals(iface.getIsManaged())) {
+                continue;
+            }
+            consumer.accept(new Key(node.getLocation().getLocationName(), iface.getIpAddress()), new Value(node.getId(), iface.getId(), iface.getIsSnmpPrimary()));
         }
+    }
 
-        LOG.info("dataSourceSync: initialized list of managed IP addresses with {} members", m_managedAddresses.size());
+    /**
+     * Applies a change to the current table and records it for replay if a rebuild
+     * is in progress.
+     */
+    private <T> T applyChange(final Function<Table, T> change) {
+        synchronized (m_writeLock) {
+            if (m_journal != null) {
+                m_journal.add(change);
+            }
+            return change.apply(m_table);
+        }
+    }
+
+    private int getLocationIndex(final String location) {
+        return m_locationIndexes.computeIfAbsent(location, k -> m_nextLocationIndex.getAndIncrement());
+    }
+
+    private static long pack(final int locationIndex, final Inet4Address ipAddr) {
+        final byte[] b = ipAddr.getAddress();
+        final long address = ((b[0] & 0xFFL) << 24) | ((b[1] & 0xFFL) << 16) | ((b[2] & 0xFFL) << 8) | (b[3] & 0xFFL);
+        return ((long) locationIndex << 32) | address;
     }
 
     @Override
@@ -327,13 +506,8 @@ public class InterfaceToNodeCacheDaoImpl extends AbstractInterfaceToNodeCache im
             return Optional.empty();
         }
         waitForInitialNodeSync();
-        m_lock.readLock().lock();
-        try {
-            var values = m_managedAddresses.get(new Key(location, ipAddr));
-            return values.isEmpty() ? Optional.empty() : Optional.of(new Entry(values.first().nodeId, values.first().interfaceId));
-        } finally {
-            m_lock.readLock().unlock();
-        }
+        final Value[] values = m_table.get(LocationUtils.getEffectiveLocationName(location), ipAddr);
+        return values.length == 0 ? Optional.empty() : Optional.of(new Entry(values[0].getNodeId(), values[0].getInterfaceId()));
     }
 
     private void waitForInitialNodeSync() {
@@ -365,12 +539,9 @@ public class InterfaceToNodeCacheDaoImpl extends AbstractInterfaceToNodeCache im
 
         LOG.debug("setNodeId: adding IP address to cache: {}:{} -> {}", location, str(addr), nodeid);
 
-        m_lock.writeLock().lock();
-        try {
-            return m_managedAddresses.put(new Key(location, addr), new Value(nodeid, iface.getId(), iface.getIsSnmpPrimary()));
-        } finally {
-            m_lock.writeLock().unlock();
-        }
+        final Key key = new Key(location, addr);
+        final Value value = new Value(nodeid, iface.getId(), iface.getIsSnmpPrimary());
+        return applyChange(table -> table.add(key, value));
     }
 
     /**
@@ -388,51 +559,55 @@ public class InterfaceToNodeCacheDaoImpl extends AbstractInterfaceToNodeCache im
 
         LOG.debug("removeNodeId: removing IP address from cache: {}:{}", location, str(address));
 
-        m_lock.writeLock().lock();
-        try {
-            final Key key = new Key(location, address);
-            return m_managedAddresses.get(key).removeIf(e -> e.nodeId == nodeId);
-        } finally {
-            m_lock.writeLock().unlock();
+        final Key key = new Key(location, address);
+        return applyChange(table -> table.remove(key, nodeId));
+    }
+
+    /**
+     * Replaces the entries of the given node with its current interfaces from the database.
+     *
+     * @param nodeId the ID of the node to refresh
+     */
+    @Override
+    @Transactional
+    public void refreshNode(final int nodeId) {
+        final Map<Key, Value> entries = new HashMap<>();
+        final OnmsNode node = m_nodeDao.get(nodeId);
+        if (node != null && node.getType() != OnmsNode.NodeType.DELETED) {
+            forEachEntry(node, entries::put);
         }
+
+        LOG.debug("refreshNode: refreshing node {} with {} IP addresses", nodeId, entries.size());
+
+        applyChange(table -> {
+            table.removeNode(nodeId);
+            entries.forEach(table::add);
+            return null;
+        });
     }
 
     @Override
     public int size() {
         waitForInitialNodeSync();
-        m_lock.readLock().lock();
-        try {
-            return m_managedAddresses.size();
-        } finally {
-            m_lock.readLock().unlock();
-        }
+        return m_table.m_size;
     }
 
+    /**
+     * Removes all entries from the current table. A rebuild in progress is not
+     * affected, its table reflects the database and replaces the cleared one.
+     */
     @Override
     public void clear() {
-        m_lock.writeLock().lock();
-        try {
-            m_managedAddresses.clear();
-        } finally {
-            m_lock.writeLock().unlock();
+        synchronized (m_writeLock) {
+            m_table.clear();
         }
     }
 
     @Override
     public void removeInterfacesForNode(int nodeId) {
-        m_lock.writeLock().lock();
-        try {
-            List<Map.Entry<Key, Value>> keyValues = m_managedAddresses.entries().stream()
-                    .filter(keyValueEntry -> keyValueEntry.getValue().getNodeId() == nodeId)
-                    .collect(Collectors.toList());
-            keyValues.forEach(keyValue -> {
-                boolean succeeded = m_managedAddresses.remove(keyValue.getKey(), keyValue.getValue());
-                if (succeeded) {
-                    LOG.debug("removeInterfacesForNode: removed IP address from cache: {}", str(keyValue.getKey().getIpAddress()));
-                }
-            });
-        } finally {
-            m_lock.writeLock().unlock();
-        }
+        applyChange(table -> {
+            table.removeNode(nodeId);
+            return null;
+        });
     }
 }
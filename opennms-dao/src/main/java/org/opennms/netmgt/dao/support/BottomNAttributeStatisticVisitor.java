@@ -34,13 +34,17 @@ import org.springframework.util.Assert;
 /**
  * <p>BottomNAttributeStatisticVisitor class.</p>
  *
+ * <p>Only the first {@link #getCount()} statistics are retained while visiting, so
+ * the memory used does not depend on the number of visited attributes. Visits may
+ * happen concurrently.</p>
+ *
  * @author <a href="mailto:dj@opennms.org">DJ Gregor</a>
  * @version $Id: $
  */
 public class BottomNAttributeStatisticVisitor implements AttributeStatisticVisitorWithResults, InitializingBean {
 
     private Integer m_count;
-    private SortedSet<AttributeStatistic> m_results = new TreeSet<AttributeStatistic>(new AttributeStatisticComparator());
+    private final TreeSet<AttributeStatistic> m_results = new TreeSet<AttributeStatistic>(new AttributeStatisticComparator());
     protected Comparator<Double> m_comparator = new DoubleComparator();
 
     /**
@@ -54,8 +58,17 @@ public class BottomNAttributeStatisticVisitor implements AttributeStatisticVisit
     @Override
     public void visit(OnmsAttribute attribute, double statistic) {
         Assert.notNull(attribute, "attribute argument must not be null");
-        
-        m_results.add(new AttributeStatistic(attribute, statistic));
+
+        final AttributeStatistic stat = new AttributeStatistic(attribute, statistic);
+        synchronized (m_results) {
+            if (m_count != null && m_results.size() >= m_count) {
+                if (m_count < 1 || m_results.comparator().compare(stat, m_results.last()) >= 0) {
+                    return;
+                }
+                m_results.pollLast();
+            }
+            m_results.add(stat);
+        }
     }
 
     /**
@@ -92,15 +105,16 @@ public class BottomNAttributeStatisticVisitor implements AttributeStatisticVisit
     @Override
     public SortedSet<AttributeStatistic> getResults() {
         SortedSet<AttributeStatistic> top = new TreeSet<AttributeStatistic>(new AttributeStatisticComparator());
-        
-        for (AttributeStatistic stat : m_results) {
-            top.add(stat);
-            
-            if (top.size() >= m_count) {
-                break;
+
+        synchronized (m_results) {
+            for (AttributeStatistic stat : m_results) {
+                if (top.size() >= m_count) {
+                    break;
+                }
+                top.add(stat);
             }
         }
-        
+
         return top;
     }
 
@@ -139,4 +139,20 @@ public class InterfaceToNodeCacheEventProcessor implements InitializingBean {
         // remove all interfaces for this node.
         m_cache.removeInterfacesForNode(nodeId.intValue());
     }
+
+    @EventHandler(ueis = {
+            EventConstants.NODE_LOCATION_CHANGED_EVENT_UEI,
+            EventConstants.PRIMARY_SNMP_INTERFACE_CHANGED_EVENT_UEI
+    })
+    @Transactional
+    public void handleNodeChanged(IEvent event) {
+        Long nodeId = event.getNodeid();
+        LOG.debug("Received event: {} with nodeId = {}", event.getUei(), nodeId);
+        if (nodeId == null) {
+            LOG.error("{} : Event with no node ID: {}", event.getUei(), event.toString());
+            return;
+        }
+        // replace the interfaces of this node, as their location or order changed.
+        m_cache.refreshNode(nodeId.intValue());
+    }
 }
@@ -35,11 +35,21 @@ import org.springframework.util.Assert;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 
 /**
  * <p>RrdStatisticAttributeVisitor class.</p>
  *
+ * <p>Statistics are fetched on the visiting thread unless an executor is set. With an
+ * executor, at most {@link #getMaxInFlight()} fetches are outstanding at any time and
+ * {@link #visit(OnmsAttribute)} blocks the walker until a slot is free. The statistic
+ * visitor must be thread-safe in this case and {@link #awaitCompletion()} must be
+ * called before the results are read.</p>
+ *
  * @author <a href="mailto:dj@opennms.org">DJ Gregor</a>
  * @version $Id: $
  */
@@ -53,6 +63,14 @@ public class RrdStatisticAttributeVisitor implements AttributeVisitor, Initializ
     private Long m_endTime;
     private AttributeStatisticVisitor m_statisticVisitor;
 
+    private Executor m_executor;
+    private int m_maxInFlight = 1;
+    private Semaphore m_inFlight;
+
+    private final LongAdder m_fetched = new LongAdder();
+    private final LongAdder m_failed = new LongAdder();
+    private final LongAdder m_empty = new LongAdder();
+
     private interface Aggregator {
         double getValue();
         void aggregate(final double v);
@@ -139,6 +157,39 @@ public class RrdStatisticAttributeVisitor implements AttributeVisitor, Initializ
             return;
         }
 
+        if (m_executor == null) {
+            fetch(attribute);
+            return;
+        }
+
+        m_inFlight.acquireUninterruptibly();
+        try {
+            m_executor.execute(() -> {
+                try {
+                    fetch(attribute);
+                } finally {
+                    m_inFlight.release();
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            m_inFlight.release();
+            LOG.warn("Fetch of {} rejected by the executor, fetching on the calling thread", attribute, e);
+            fetch(attribute);
+        }
+    }
+
+    /**
+     * Waits until all fetches submitted to the executor completed.
+     */
+    public void awaitCompletion() {
+        if (m_inFlight == null) {
+            return;
+        }
+        m_inFlight.acquireUninterruptibly(m_maxInFlight);
+        m_inFlight.release(m_maxInFlight);
+    }
+
+    private void fetch(final OnmsAttribute attribute) {
         final Source source = new Source();
         source.setLabel("result");
         source.setResourceId(attribute.getResource().getId().toString());
@@ -157,17 +208,21 @@ public class RrdStatisticAttributeVisitor implements AttributeVisitor, Initializ
                                             false);
         } catch (final Exception e) {
             LOG.warn("Failed to fetch statistic: {}", source, e);
+            m_failed.increment();
             return;
         }
+        m_fetched.increment();
 
         if (results == null) {
             LOG.warn("No statistic found: {}", source);
+            m_empty.increment();
             return;
         }
 
         final double[] statistics = results.getColumns().get(source.getLabel());
         if (statistics == null || statistics.length == 0) {
             LOG.warn("Statistic is empty: {}", source);
+            m_empty.increment();
             return;
         }
 
@@ -193,6 +248,7 @@ public class RrdStatisticAttributeVisitor implements AttributeVisitor, Initializ
          * values at the top.
          */
         if (Double.isNaN(statistic)) {
+            m_empty.increment();
             return;
         }
         
@@ -211,6 +267,52 @@ public class RrdStatisticAttributeVisitor implements AttributeVisitor, Initializ
         Assert.state(m_startTime != null, "property startTime must be set to a non-null value");
         Assert.state(m_endTime != null, "property endTime must be set to a non-null value");
         Assert.state(m_statisticVisitor != null, "property statisticVisitor must be set to a non-null value");
+        Assert.state(m_maxInFlight > 0, "property maxInFlight must be positive");
+
+        m_inFlight = m_executor != null ? new Semaphore(m_maxInFlight) : null;
+    }
+
+    /**
+     * @return the executor used to fetch statistics, or null if they are fetched on the visiting thread
+     */
+    public Executor getExecutor() {
+        return m_executor;
+    }
+
+    public void setExecutor(Executor executor) {
+        m_executor = executor;
+    }
+
+    /**
+     * @return the maximum number of fetches submitted to the executor at the same time
+     */
+    public int getMaxInFlight() {
+        return m_maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        m_maxInFlight = maxInFlight;
+    }
+
+    /**
+     * @return the number of statistics fetched successfully, including the ones without data
+     */
+    public long getFetched() {
+        return m_fetched.sum();
+    }
+
+    /**
+     * @return the number of fetches which failed
+     */
+    public long getFailed() {
+        return m_failed.sum();
+    }
+
+    /**
+     * @return the number of fetched statistics which had no data
+     */
+    public long getEmpty() {
+        return m_empty.sum();
     }
 
     public MeasurementFetchStrategy getFetchStrategy() {
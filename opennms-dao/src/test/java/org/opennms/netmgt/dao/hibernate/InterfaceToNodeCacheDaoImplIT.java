@@ -255,6 +255,32 @@ public class InterfaceToNodeCacheDaoImplIT implements InitializingBean {
         Assert.assertEquals(0, m_cache.size());
     }
 
+    @Test
+    @Transactional
+    public void testRefreshNode() throws Exception {
+        final OnmsMonitoringLocation defaultLocation = m_monitoringLocationDao.getDefaultLocation();
+        final String nodeLocation = defaultLocation.getLocationName();
+
+        final OnmsNode node = new OnmsNode(defaultLocation, "node1");
+        final InetAddress ipAddr1 = InetAddress.getByName("192.168.0.2");
+        addInterface(node, ipAddr1, nodeLocation);
+        final int nodeId = m_databasePopulator.getNodeDao().save(node);
+        m_cache.setNodeId(nodeLocation, ipAddr1, nodeId);
+        Assert.assertEquals(nodeId, (int) m_cache.getFirstNodeId(nodeLocation, ipAddr1).get());
+
+        // Delete the first interface and add a second one without notifying the cache
+        node.getIpInterfaceByIpAddress(ipAddr1).setIsManaged("D");
+        final InetAddress ipAddr2 = InetAddress.getByName("2001:db8::1");
+        addInterface(node, ipAddr2, nodeLocation);
+        m_databasePopulator.getNodeDao().saveOrUpdate(node);
+        m_databasePopulator.getNodeDao().flush();
+
+        m_cache.refreshNode(nodeId);
+        Assert.assertEquals(false, m_cache.getFirstNodeId(nodeLocation, ipAddr1).isPresent());
+        Assert.assertEquals(nodeId, (int) m_cache.getFirstNodeId(nodeLocation, ipAddr2).get());
+        Assert.assertEquals(1, m_cache.size());
+    }
+
     private void addInterface(OnmsNode node, InetAddress inetAddress, String location) {
         final OnmsIpInterface iface = new OnmsIpInterface();
         iface.setIpAddress(inetAddress);
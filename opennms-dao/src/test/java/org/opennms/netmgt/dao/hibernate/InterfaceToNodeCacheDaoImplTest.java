@@ -0,0 +1,130 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.dao.hibernate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.opennms.core.utils.InetAddressUtils.addr;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.dao.api.IpInterfaceDao;
+import org.opennms.netmgt.dao.api.MonitoringLocationDao;
+import org.opennms.netmgt.dao.api.NodeDao;
+import org.opennms.netmgt.model.OnmsIpInterface;
+import org.opennms.netmgt.model.OnmsNode;
+import org.opennms.netmgt.model.PrimaryType;
+import org.opennms.netmgt.model.monitoringLocations.OnmsMonitoringLocation;
+
+public class InterfaceToNodeCacheDaoImplTest {
+
+    private static final String LOCATION = MonitoringLocationDao.DEFAULT_MONITORING_LOCATION_ID;
+
+    private final AtomicReference<Runnable> m_duringRebuild = new AtomicReference<>();
+
+    private List<OnmsNode> m_nodes = Collections.emptyList();
+
+    private InterfaceToNodeCacheDaoImpl m_cache;
+
+    @Before
+    public void setUp() {
+        final NodeDao nodeDao = mock(NodeDao.class);
+        when(nodeDao.findMatching(any())).thenAnswer(invocation -> {
+            final Runnable changes = m_duringRebuild.getAndSet(null);
+            if (changes != null) {
+                changes.run();
+            }
+            return m_nodes;
+        });
+
+        final IpInterfaceDao ipInterfaceDao = mock(IpInterfaceDao.class);
+        when(ipInterfaceDao.findByNodeIdAndIpAddress(anyInt(), anyString())).thenAnswer(invocation -> {
+            final OnmsIpInterface iface = new OnmsIpInterface(addr(invocation.getArgument(1)), null);
+            iface.setId(invocation.getArgument(0));
+            return iface;
+        });
+
+        m_cache = new InterfaceToNodeCacheDaoImpl();
+        m_cache.setNodeDao(nodeDao);
+        m_cache.setIpInterfaceDao(ipInterfaceDao);
+        m_cache.setTransactionOperations(callback -> callback.doInTransaction(null));
+        m_cache.init();
+        // Wait for the initial synchronization
+        assertEquals(0, m_cache.size());
+    }
+
+    @After
+    public void tearDown() {
+        m_cache.destroy();
+    }
+
+    @Test
+    public void canReplayChangesAppliedDuringRebuild() {
+        m_nodes = Arrays.asList(node(1, "10.0.0.1"), node(3, "10.0.0.3"));
+
+        m_duringRebuild.set(() -> {
+            // Not part of the table being built
+            m_cache.clear();
+            m_cache.setNodeId(LOCATION, addr("10.0.0.2"), 2);
+            m_cache.removeNodeId(LOCATION, addr("10.0.0.3"), 3);
+            assertEquals(1, m_cache.size());
+        });
+        m_cache.dataSourceSync();
+
+        assertEquals(1, (int) m_cache.getFirstNodeId(LOCATION, addr("10.0.0.1")).get());
+        assertEquals(2, (int) m_cache.getFirstNodeId(LOCATION, addr("10.0.0.2")).get());
+        assertFalse(m_cache.getFirstNodeId(LOCATION, addr("10.0.0.3")).isPresent());
+        assertEquals(2, m_cache.size());
+    }
+
+    @Test
+    public void canClearCache() {
+        m_nodes = Arrays.asList(node(1, "10.0.0.1"));
+        m_cache.dataSourceSync();
+        assertEquals(1, m_cache.size());
+
+        m_cache.clear();
+        assertEquals(0, m_cache.size());
+        assertFalse(m_cache.getFirstNodeId(LOCATION, addr("10.0.0.1")).isPresent());
+    }
+
+    private static OnmsNode node(final int nodeId, final String ipAddress) {
+        final OnmsNode node = new OnmsNode(new OnmsMonitoringLocation(LOCATION, LOCATION), "node" + nodeId);
+        node.setId(nodeId);
+        final OnmsIpInterface iface = new OnmsIpInterface(addr(ipAddress), node);
+        iface.setId(nodeId * 100);
+        iface.setIsManaged("M");
+        iface.setIsSnmpPrimary(PrimaryType.PRIMARY);
+        return node;
+    }
+}
@@ -21,7 +21,9 @@
  */
 package org.opennms.netmgt.dao.support;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -30,6 +32,10 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.After;
 import org.junit.Test;
@@ -37,6 +43,7 @@ import org.opennms.netmgt.measurements.api.FetchResults;
 import org.opennms.netmgt.measurements.api.MeasurementFetchStrategy;
 import org.opennms.netmgt.measurements.model.Source;
 import org.opennms.netmgt.mock.MockResourceType;
+import org.opennms.netmgt.model.AttributeStatistic;
 import org.opennms.netmgt.model.AttributeStatisticVisitor;
 import org.opennms.netmgt.model.OnmsAttribute;
 import org.opennms.netmgt.model.OnmsResource;
@@ -345,4 +352,61 @@ public class RrdStatisticAttributeVisitorTest {
         verify(m_statisticVisitor, times(1)).visit(any(OnmsAttribute.class), eq(1.0));
         verify(m_statisticVisitor, times(3)).visit(any(OnmsAttribute.class), eq(2.0));
     }
+
+    @Test
+    public void testVisitWithExecutor() throws Exception {
+        final TopNAttributeStatisticVisitor topN = new TopNAttributeStatisticVisitor();
+        topN.setCount(5);
+        topN.afterPropertiesSet();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            RrdStatisticAttributeVisitor attributeVisitor = new RrdStatisticAttributeVisitor();
+            attributeVisitor.setFetchStrategy(m_fetchStrategy);
+            attributeVisitor.setConsolidationFunction("AVERAGE");
+            attributeVisitor.setStartTime(m_startTime);
+            attributeVisitor.setEndTime(m_endTime);
+            attributeVisitor.setStatisticVisitor(topN);
+            attributeVisitor.setExecutor(executor);
+            attributeVisitor.setMaxInFlight(2);
+            attributeVisitor.afterPropertiesSet();
+
+            when(m_fetchStrategy.fetch(eq(m_startTime), eq(m_endTime), eq(1L), eq(0), any(), any(), anyList(), eq(false)))
+                    .thenAnswer(invocation -> {
+                        final List<Source> sources = invocation.getArgument(6);
+                        final double value = Double.parseDouble(sources.get(0).getResourceId());
+                        if (value == 13.0) {
+                            throw new IllegalStateException("unlucky");
+                        }
+                        return new FetchResults(new long[] {m_startTime},
+                                                Collections.singletonMap("result", new double[] {value}),
+                                                m_endTime - m_startTime,
+                                                Collections.emptyMap(),
+                                                null);
+                    });
+
+            MockResourceType resourceType = new MockResourceType();
+            resourceType.setName("interfaceSnmp");
+            for (int i = 0; i < 100; i++) {
+                OnmsAttribute attribute = new RrdGraphAttribute("ifInOctets", "something", "something else");
+                attribute.setResource(new OnmsResource(Integer.toString(i), "Node " + i, resourceType, Collections.singleton(attribute), ResourcePath.get("foo")));
+                attributeVisitor.visit(attribute);
+            }
+            attributeVisitor.awaitCompletion();
+
+            verify(m_fetchStrategy, times(100)).fetch(eq(m_startTime), eq(m_endTime), eq(1L), eq(0), any(), any(), anyList(), eq(false));
+            assertEquals(99, attributeVisitor.getFetched());
+            assertEquals(1, attributeVisitor.getFailed());
+
+            final SortedSet<AttributeStatistic> top = topN.getResults();
+            assertEquals(5, top.size());
+            int i = 0;
+            for (AttributeStatistic stat : top) {
+                assertEquals(99.0 - i, stat.getStatistic(), 0.0);
+                i++;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
@@ -21,7 +21,10 @@
  */
 package org.opennms.netmgt.dao.support;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.Map.Entry;
@@ -200,6 +203,42 @@ public class TopNAttributeStatisticVisitorTest extends TestCase {
     }
     
     
+    public void testVisitConcurrently() throws Exception {
+        final BottomNAttributeStatisticVisitor visitor = new BottomNAttributeStatisticVisitor();
+        visitor.setCount(10);
+        visitor.afterPropertiesSet();
+
+        final List<OnmsAttribute> attributes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            final OnmsAttribute attribute = new MockAttribute("foo");
+            new OnmsResource(Integer.toString(i), "Node " + i, new MockResourceType(), Collections.singleton(attribute), ResourcePath.get("foo")).getAttributes();
+            attributes.add(attribute);
+        }
+
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread(() -> {
+                for (int i = offset; i < attributes.size(); i += threads.length) {
+                    visitor.visit(attributes.get(i), 1000.0 - i);
+                }
+            });
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        SortedSet<AttributeStatistic> bottom = visitor.getResults();
+        assertEquals("bottomN list size", 10, bottom.size());
+
+        int i = 0;
+        for (AttributeStatistic stat : bottom) {
+            assertEquals("bottomN[" + i + "] value", 1.0 + i, stat.getStatistic());
+            i++;
+        }
+    }
+
     public class MockAttribute implements OnmsAttribute {
         private String m_name;
         private OnmsResource m_resource;
@@ -0,0 +1,366 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.collectd;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.netmgt.collection.api.CollectionSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs collections as asynchronous tasks instead of blocking a scheduler thread
+ * for the whole collection.
+ *
+ * The scheduler thread only issues the collection request. Persistence, thresholding
+ * and rescheduling are performed on a small carrier pool once the collection completes.
+ * The number of collections in flight is bounded per collector. Collections that do
+ * not complete within their timeout are reported as failed right away, so the service
+ * is rescheduled, and are cancelled. A collection keeps its slot until the underlying
+ * request actually completes, so requests which cannot be cancelled, i.e. RPCs to hung
+ * agents, still count against the limit. For the same reason a service is not collected
+ * again while its previous collection is still running.
+ *
+ * The mode is enabled with the {@value #ASYNC_COLLECTION_SYS_PROP} system property.
+ * Limits and timeouts can be overridden per collector by appending the service name
+ * to the property name, i.e. <code>org.opennms.netmgt.collectd.async.maxInFlight.JMX=50</code>.
+ */
+public class AsyncCollectionExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncCollectionExecutor.class);
+
+    protected static final String ASYNC_COLLECTION_SYS_PROP = "org.opennms.netmgt.collectd.asyncCollection";
+
+    protected static final String CARRIER_THREADS_SYS_PROP = "org.opennms.netmgt.collectd.async.carrierThreads";
+
+    protected static final String MAX_IN_FLIGHT_SYS_PROP = "org.opennms.netmgt.collectd.async.maxInFlight";
+
+    protected static final String TIMEOUT_SYS_PROP = "org.opennms.netmgt.collectd.async.timeout";
+
+    protected static final String SHUTDOWN_TIMEOUT_SYS_PROP = "org.opennms.netmgt.collectd.async.shutdownTimeout";
+
+    private static final int DEFAULT_CARRIER_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private static final int DEFAULT_MAX_IN_FLIGHT = 1000;
+
+    private static final long DEFAULT_SHUTDOWN_TIMEOUT = 30000L;
+
+    /**
+     * The carrier pool used to process completed collections.
+     */
+    private final ExecutorService m_carrier;
+
+    private final int m_defaultMaxInFlight;
+
+    /**
+     * Default timeout in milliseconds, a value < 1 uses the interval of the service.
+     */
+    private final long m_defaultTimeout;
+
+    private final Map<String, Semaphore> m_permits = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> m_timeouts = new ConcurrentHashMap<>();
+
+    private final Map<String, PackageStats> m_packageStats = new ConcurrentHashMap<>();
+
+    /**
+     * The services with a collection in flight.
+     */
+    private final Set<Object> m_running = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The collections which have not been processed on the carrier pool yet.
+     */
+    private final Set<CompletableFuture<Void>> m_pending = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean m_shutdown = false;
+
+    /**
+     * Collection statistics for a single package.
+     */
+    public static class PackageStats {
+        private final AtomicInteger m_inFlight = new AtomicInteger();
+        private final LongAdder m_completed = new LongAdder();
+        private final LongAdder m_rejected = new LongAdder();
+        private final LongAdder m_skipped = new LongAdder();
+        private final LongAdder m_timedOut = new LongAdder();
+        private final LongAdder m_lagSamples = new LongAdder();
+        private final LongAdder m_totalLag = new LongAdder();
+        private final AtomicLong m_maxLag = new AtomicLong();
+        private volatile long m_lastLag;
+
+        public int getInFlight() {
+            return m_inFlight.get();
+        }
+
+        public long getCompleted() {
+            return m_completed.sum();
+        }
+
+        public long getRejected() {
+            return m_rejected.sum();
+        }
+
+        /**
+         * @return the number of collections skipped because the previous collection of the service was still running
+         */
+        public long getSkipped() {
+            return m_skipped.sum();
+        }
+
+        public long getTimedOut() {
+            return m_timedOut.sum();
+        }
+
+        public long getLastLagMs() {
+            return m_lastLag;
+        }
+
+        public long getMaxLagMs() {
+            return m_maxLag.get();
+        }
+
+        public long getAverageLagMs() {
+            final long samples = m_lagSamples.sum();
+            return samples > 0 ? m_totalLag.sum() / samples : 0L;
+        }
+    }
+
+    public AsyncCollectionExecutor(final String name, final int carrierThreads, final int defaultMaxInFlight, final long defaultTimeout) {
+        if (carrierThreads < 1) {
+            throw new IllegalArgumentException("carrierThreads must be positive");
+        }
+        if (defaultMaxInFlight < 1) {
+            throw new IllegalArgumentException("defaultMaxInFlight must be positive");
+        }
+        m_carrier = Executors.newFixedThreadPool(carrierThreads, new LogPreservingThreadFactory(name + "-Async", carrierThreads));
+        m_defaultMaxInFlight = defaultMaxInFlight;
+        m_defaultTimeout = defaultTimeout;
+    }
+
+    /**
+     * @return true if collections should be executed asynchronously
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ASYNC_COLLECTION_SYS_PROP);
+    }
+
+    /**
+     * Creates an executor configured from the system properties.
+     *
+     * @param name the name used for the carrier threads
+     * @return a new executor
+     */
+    public static AsyncCollectionExecutor fromSystemProperties(final String name) {
+        return new AsyncCollectionExecutor(name,
+                Integer.getInteger(CARRIER_THREADS_SYS_PROP, DEFAULT_CARRIER_THREADS),
+                Integer.getInteger(MAX_IN_FLIGHT_SYS_PROP, DEFAULT_MAX_IN_FLIGHT),
+                Long.getLong(TIMEOUT_SYS_PROP, 0L));
+    }
+
+    /**
+     * Starts a collection if the collector has a free slot and the previous collection of
+     * the service completed.
+     *
+     * The completion callback is invoked on the carrier pool exactly once with either the
+     * collected set or the failure. A {@link java.util.concurrent.TimeoutException} is
+     * passed to the callback when the collection exceeds its timeout, in which case the
+     * future of the collection is cancelled. The slot of the collection is only released
+     * once that future completed.
+     *
+     * @param service identifies the collected service
+     * @param collectorName the name of the collected service, used to apply the limits
+     * @param packageName the name of the package, used to group the statistics
+     * @param interval the interval of the service in milliseconds
+     * @param collection issues the collection
+     * @param completion invoked once the collection completed
+     * @return false if the collection was not started, because the executor was shut down, the collector has
+     * too many collections in flight or the previous collection of the service is still running
+     */
+    public boolean execute(final Object service, final String collectorName, final String packageName, final long interval,
+                           final Supplier<CompletableFuture<CollectionSet>> collection,
+                           final BiConsumer<CollectionSet, Throwable> completion) {
+        if (m_shutdown) {
+            return false;
+        }
+        final PackageStats stats = getPackageStats(packageName);
+        if (!m_running.add(service)) {
+            LOG.info("execute: previous collection of {} is still running, skipping collection for package {}.", service, packageName);
+            stats.m_skipped.increment();
+            return false;
+        }
+        final Semaphore permits = m_permits.computeIfAbsent(collectorName,
+                k -> new Semaphore(Integer.getInteger(MAX_IN_FLIGHT_SYS_PROP + "." + k, m_defaultMaxInFlight)));
+        if (!permits.tryAcquire()) {
+            LOG.warn("execute: too many collections in flight for {}, skipping collection for package {}.", collectorName, packageName);
+            stats.m_rejected.increment();
+            m_running.remove(service);
+            return false;
+        }
+        stats.m_inFlight.incrementAndGet();
+
+        CompletableFuture<CollectionSet> source;
+        try {
+            source = collection.get();
+        } catch (final Throwable t) {
+            source = CompletableFuture.failedFuture(t);
+        }
+
+        // Time out a dependent future, as completing the source would hide whether the
+        // underlying request is still running
+        final CompletableFuture<CollectionSet> future = new CompletableFuture<>();
+        source.whenComplete((result, ex) -> {
+            permits.release();
+            stats.m_inFlight.decrementAndGet();
+            m_running.remove(service);
+            if (ex != null) {
+                future.completeExceptionally(ex);
+            } else {
+                future.complete(result);
+            }
+        });
+
+        final long timeout = getTimeout(collectorName, interval);
+        if (timeout > 0) {
+            final CompletableFuture<CollectionSet> pending = source;
+            future.orTimeout(timeout, TimeUnit.MILLISECONDS).whenComplete((result, ex) -> {
+                if (ex != null && isTimeout(ex)) {
+                    pending.cancel(true);
+                }
+            });
+        }
+
+        final CompletableFuture<Void> processed = new CompletableFuture<>();
+        m_pending.add(processed);
+        future.whenCompleteAsync((result, ex) -> {
+            try {
+                stats.m_completed.increment();
+                if (ex != null && isTimeout(ex)) {
+                    stats.m_timedOut.increment();
+                }
+                completion.accept(result, ex);
+            } finally {
+                m_pending.remove(processed);
+                processed.complete(null);
+            }
+        }, m_carrier);
+        return true;
+    }
+
+    /**
+     * Records the delay between the time a collection was due and the time it was started.
+     *
+     * @param packageName the name of the package
+     * @param lagMs the delay in milliseconds
+     */
+    public void recordSchedulingLag(final String packageName, final long lagMs) {
+        final PackageStats stats = getPackageStats(packageName);
+        final long lag = Math.max(0L, lagMs);
+        stats.m_lastLag = lag;
+        stats.m_lagSamples.increment();
+        stats.m_totalLag.add(lag);
+        stats.m_maxLag.accumulateAndGet(lag, Math::max);
+    }
+
+    /**
+     * @return the statistics of all packages, keyed by package name
+     */
+    public Map<String, PackageStats> getPackageStats() {
+        return Collections.unmodifiableMap(new TreeMap<>(m_packageStats));
+    }
+
+    /**
+     * @return the number of collections currently in flight over all packages
+     */
+    public int getInFlight() {
+        return m_packageStats.values().stream().mapToInt(PackageStats::getInFlight).sum();
+    }
+
+    /**
+     * Stops starting collections and waits for the collections in flight to be processed
+     * before stopping the carrier pool. Collections in flight complete with a timeout at
+     * the latest, the wait is bounded by the {@value #SHUTDOWN_TIMEOUT_SYS_PROP} system
+     * property. Collections not processed by then are dropped.
+     */
+    public void shutdown() {
+        shutdown(Long.getLong(SHUTDOWN_TIMEOUT_SYS_PROP, DEFAULT_SHUTDOWN_TIMEOUT), TimeUnit.MILLISECONDS);
+    }
+
+    protected void shutdown(final long timeout, final TimeUnit unit) {
+        m_shutdown = true;
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            CompletableFuture.allOf(m_pending.toArray(new CompletableFuture<?>[0])).get(timeout, unit);
+        } catch (final TimeoutException e) {
+            LOG.warn("shutdown: dropping {} collections which were not processed within {}ms.", m_pending.size(), unit.toMillis(timeout));
+        } catch (final ExecutionException e) {
+            // Failures are handled by the completion callbacks
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        m_carrier.shutdown();
+        try {
+            if (!m_carrier.awaitTermination(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                LOG.warn("shutdown: carrier pool did not terminate within {}ms.", unit.toMillis(timeout));
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private PackageStats getPackageStats(final String packageName) {
+        return m_packageStats.computeIfAbsent(packageName, k -> new PackageStats());
+    }
+
+    private long getTimeout(final String collectorName, final long interval) {
+        final long timeout = m_timeouts.computeIfAbsent(collectorName, k -> Long.getLong(TIMEOUT_SYS_PROP + "." + k, m_defaultTimeout));
+        return timeout > 0 ? timeout : interval;
+    }
+
+    protected static boolean isTimeout(final Throwable t) {
+        Throwable cause = t;
+        while (cause != null) {
+            if (cause instanceof java.util.concurrent.TimeoutException) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+}
@@ -24,6 +24,7 @@ package org.opennms.netmgt.collectd;
 import java.io.File;
 import java.net.InetAddress;
 import java.util.Date;
+import java.util.concurrent.CompletionException;
 
 import org.opennms.core.logging.Logging;
 import org.opennms.core.utils.InetAddressUtils;
@@ -101,6 +102,11 @@ public class CollectableService implements ReadyRunnable {
      */
     private volatile long m_lastScheduledCollectionTime;
 
+    /**
+     * The time at which the next collection is due, 0 if it has not been rescheduled yet.
+     */
+    private volatile long m_nextCollectionDueTime;
+
     /**
      * The scheduler for collectd
      */
@@ -127,6 +133,11 @@ public class CollectableService implements ReadyRunnable {
 
     private ThresholdingSession m_thresholdingSession;
 
+    /**
+     * Executes the collections asynchronously when set
+     */
+    private final AsyncCollectionExecutor m_asyncExecutor;
+
     /**
      * Constructs a new instance of a CollectableService object.
      *
@@ -141,6 +152,20 @@ public class CollectableService implements ReadyRunnable {
     protected CollectableService(OnmsIpInterface iface, IpInterfaceDao ifaceDao, CollectionSpecification spec,
             Scheduler scheduler, SchedulingCompletedFlag schedulingCompletedFlag, PlatformTransactionManager transMgr,
             PersisterFactory persisterFactory, ThresholdingService thresholdingService) throws CollectionInitializationException {
+        this(iface, ifaceDao, spec, scheduler, schedulingCompletedFlag, transMgr, persisterFactory, thresholdingService, null);
+    }
+
+    /**
+     * Constructs a new instance of a CollectableService object which performs its
+     * collections using the given executor.
+     *
+     * @param asyncExecutor the executor used to run the collections asynchronously,
+     *            or <code>null</code> to collect on the scheduler thread
+     */
+    protected CollectableService(OnmsIpInterface iface, IpInterfaceDao ifaceDao, CollectionSpecification spec,
+            Scheduler scheduler, SchedulingCompletedFlag schedulingCompletedFlag, PlatformTransactionManager transMgr,
+            PersisterFactory persisterFactory, ThresholdingService thresholdingService,
+            AsyncCollectionExecutor asyncExecutor) throws CollectionInitializationException {
 
         m_agent = DefaultSnmpCollectionAgent.create(iface.getId(), ifaceDao, transMgr);
         m_spec = spec;
@@ -149,6 +174,7 @@ public class CollectableService implements ReadyRunnable {
         m_ifaceDao = ifaceDao;
         m_transMgr = transMgr;
         m_persisterFactory = persisterFactory;
+        m_asyncExecutor = asyncExecutor;
 
         m_nodeId = iface.getNode().getId().intValue();
         m_status = CollectionStatus.SUCCEEDED;
@@ -156,6 +182,7 @@ public class CollectableService implements ReadyRunnable {
         m_updates = new CollectorUpdates();
 
         m_lastScheduledCollectionTime = 0L;
+        m_nextCollectionDueTime = 0L;
 
         m_spec.initialize(m_agent);
 
@@ -304,6 +331,10 @@ public class CollectableService implements ReadyRunnable {
      */
     @Override
     public void run() {
+        withLoggingContext(this::doRun);
+    }
+
+    private void withLoggingContext(Runnable runnable) {
         Logging.withPrefix(Collectd.LOG4J_CATEGORY, () -> {
             Logging.putThreadContext("service", m_spec.getServiceName());
             Logging.putThreadContext("ipAddress", m_agent.getAddress().getHostAddress());
@@ -311,7 +342,7 @@ public class CollectableService implements ReadyRunnable {
             Logging.putThreadContext("nodeLabel", m_agent.getNodeLabel());
             Logging.putThreadContext("foreignSource", m_agent.getForeignSource());
             Logging.putThreadContext("foreignId", m_agent.getForeignId());
-            doRun();
+            runnable.run();
         });
     }
 
@@ -322,6 +353,12 @@ public class CollectableService implements ReadyRunnable {
             return;
         }
 
+        if (m_asyncExecutor != null && m_nextCollectionDueTime != 0) {
+            // Measured from the time the collection was rescheduled for, which excludes
+            // the duration of the previous collection when not using strict interval
+            m_asyncExecutor.recordSchedulingLag(m_spec.getPackageName(), System.currentTimeMillis() - m_nextCollectionDueTime);
+        }
+
         // Update last scheduled poll time; if we are not doing strict interval,
         // it is the current time; if we are, it is the previous time plus the
         // interval
@@ -336,27 +373,84 @@ public class CollectableService implements ReadyRunnable {
          * that the collection should be skipped.
          */
         if (!m_spec.scheduledOutage(m_agent)) {
+            if (m_asyncExecutor != null) {
+                doAsyncCollection();
+                return;
+            }
             try {
                 doCollection();
                 updateStatus(CollectionStatus.SUCCEEDED, null);
-            } catch (CollectionTimedOut e) {
-                LOG.info(e.getMessage());
-                updateStatus(CollectionStatus.FAILED, e);
-            } catch (CollectionWarning e) {
-                LOG.warn(e.getMessage(), e);
-                updateStatus(CollectionStatus.FAILED, e);
-            } catch (CollectionUnknown e) {
-                LOG.warn(e.getMessage(), e);
-                // Omit any status updates
-            } catch (CollectionException e) {
-                LOG.error(e.getMessage(), e);
-                updateStatus(CollectionStatus.FAILED, e);
             } catch (Throwable e) {
-                LOG.error(e.getMessage(), e);
-                updateStatus(CollectionStatus.FAILED, new CollectionException("Collection failed unexpectedly: " + e.getClass().getSimpleName() + ": " + e.getMessage(), e));
+                handleCollectionFailure(e);
             }
         }
 
+        reschedule();
+    }
+
+    /**
+     * Issues the collection without waiting for it. The collected set is persisted and
+     * the service is rescheduled once the collection completed.
+     */
+    private void doAsyncCollection() {
+        LOG.info("run: starting new asynchronous collection for {}/{}/{}/{}", m_nodeId, getHostAddress(), m_spec.getServiceName(), m_spec.getPackageName());
+        final boolean started = m_asyncExecutor.execute(this, m_spec.getServiceName(), m_spec.getPackageName(), m_spec.getInterval(),
+                () -> m_spec.collectAsync(m_agent),
+                (result, ex) -> withLoggingContext(() -> {
+                    try {
+                        if (ex != null) {
+                            throw unwrapCollectionFailure(ex);
+                        }
+                        handleCollectionResult(result);
+                        LOG.info("run: finished collection for {}/{}/{}/{}", m_nodeId, getHostAddress(), m_spec.getServiceName(), m_spec.getPackageName());
+                        updateStatus(CollectionStatus.SUCCEEDED, null);
+                    } catch (Throwable e) {
+                        LOG.warn("run: failed collection for {}/{}/{}/{}", m_nodeId, getHostAddress(), m_spec.getServiceName(), m_spec.getPackageName());
+                        handleCollectionFailure(e);
+                    } finally {
+                        reschedule();
+                    }
+                }));
+        if (!started) {
+            // The collector is saturated or the previous collection is still running, try again on the next interval
+            reschedule();
+        }
+    }
+
+    private CollectionException unwrapCollectionFailure(Throwable ex) {
+        if (AsyncCollectionExecutor.isTimeout(ex)) {
+            return new CollectionTimedOut("Collection timed out for interface " + m_nodeId + "/" + getHostAddress() + "/" + m_spec.getServiceName());
+        }
+        Throwable cause = ex;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof CollectionException) {
+            return (CollectionException)cause;
+        }
+        return new CollectionException("An undeclared throwable was caught during data collection for interface " + m_nodeId + "/" + getHostAddress() + "/" + m_spec.getServiceName(), cause);
+    }
+
+    private void handleCollectionFailure(Throwable e) {
+        if (e instanceof CollectionTimedOut) {
+            LOG.info(e.getMessage());
+            updateStatus(CollectionStatus.FAILED, (CollectionException)e);
+        } else if (e instanceof CollectionWarning) {
+            LOG.warn(e.getMessage(), e);
+            updateStatus(CollectionStatus.FAILED, (CollectionException)e);
+        } else if (e instanceof CollectionUnknown) {
+            LOG.warn(e.getMessage(), e);
+            // Omit any status updates
+        } else if (e instanceof CollectionException) {
+            LOG.error(e.getMessage(), e);
+            updateStatus(CollectionStatus.FAILED, (CollectionException)e);
+        } else {
+            LOG.error(e.getMessage(), e);
+            updateStatus(CollectionStatus.FAILED, new CollectionException("Collection failed unexpectedly: " + e.getClass().getSimpleName() + ": " + e.getMessage(), e));
+        }
+    }
+
+    private void reschedule() {
         // If we are doing strict interval, determine how long the collection
         // has taken, so we can cut that off of the service interval
         long diff = 0;
@@ -365,6 +459,7 @@ public class CollectableService implements ReadyRunnable {
             diff = Math.min(diff, m_spec.getInterval());
         }
     	// Reschedule the service
+        m_nextCollectionDueTime = System.currentTimeMillis() + m_spec.getInterval() - diff;
         m_scheduler.schedule(m_spec.getInterval() - diff, getReadyRunnable());
     }
 
@@ -405,38 +500,8 @@ public class CollectableService implements ReadyRunnable {
         LOG.info("run: starting new collection for {}/{}/{}/{}", m_nodeId, getHostAddress(), m_spec.getServiceName(), m_spec.getPackageName());
         CollectionSet result = null;
         try {
-            final ServiceParameters serviceParameters = m_spec.getServiceParameters();
-            final RrdRepository rrdRepository = m_spec.getRrdRepository(serviceParameters.getCollectionName());
             result = m_spec.collect(m_agent);
-            if (result != null) {
-                Collectd.instrumentation().beginPersistingServiceData(m_spec.getPackageName(), m_nodeId, getHostAddress(), m_spec.getServiceName());
-                try {
-                    CollectionSetVisitor persister = m_persisterFactory.createPersister(serviceParameters, rrdRepository, result.ignorePersist(), false, false);
-                    if (Boolean.getBoolean(USE_COLLECTION_START_TIME_SYS_PROP)) {
-                        final ConstantTimeKeeper timeKeeper = new ConstantTimeKeeper(new Date(m_lastScheduledCollectionTime));
-                        // Wrap the persister visitor such that calls to CollectionResource.getTimeKeeper() return the given timeKeeper
-                        persister = wrapResourcesWithTimekeeper(persister, timeKeeper);
-                    }
-                    result.visit(persister);
-                } finally {
-                    Collectd.instrumentation().endPersistingServiceData(m_spec.getPackageName(), m_nodeId, getHostAddress(), m_spec.getServiceName());
-                }
-
-                // Do thresholding
-                if (m_thresholdingSession != null) {
-                    try {
-                        m_thresholdingSession.accept(result);
-                    } catch (ThresholdInitializationException e) {
-                        LOG.warn("ThresholdInitializationException for {}. Thresholding skipped.", this, e);
-                    }
-                } else {
-                    LOG.warn("No thresholding session for {}. Thresholding skipped.", this);
-                }
-
-                if (!CollectionStatus.SUCCEEDED.equals(result.getStatus())) {
-                    throw new CollectionFailed(result.getStatus());
-                }
-            }
+            handleCollectionResult(result);
         } catch (IllegalArgumentException e) {
             LOG.warn("run: failed collection for {}/{}/{}/{}", m_nodeId, getHostAddress(), m_spec.getServiceName(), m_spec.getPackageName());
             throw new CollectionException("Illegal Argument Exception was caught during data collection for interface " + m_nodeId + "/" + getHostAddress() + "/" + m_spec.getServiceName()
@@ -451,6 +516,43 @@ public class CollectableService implements ReadyRunnable {
         LOG.info("run: finished collection for {}/{}/{}/{}", m_nodeId, getHostAddress(), m_spec.getServiceName(), m_spec.getPackageName());
     }
 
+    /**
+     * Persists and thresholds the collected set.
+     */
+    private void handleCollectionResult(CollectionSet result) throws CollectionException {
+        if (result != null) {
+            final ServiceParameters serviceParameters = m_spec.getServiceParameters();
+            final RrdRepository rrdRepository = m_spec.getRrdRepository(serviceParameters.getCollectionName());
+            Collectd.instrumentation().beginPersistingServiceData(m_spec.getPackageName(), m_nodeId, getHostAddress(), m_spec.getServiceName());
+            try {
+                CollectionSetVisitor persister = m_persisterFactory.createPersister(serviceParameters, rrdRepository, result.ignorePersist(), false, false);
+                if (Boolean.getBoolean(USE_COLLECTION_START_TIME_SYS_PROP)) {
+                    final ConstantTimeKeeper timeKeeper = new ConstantTimeKeeper(new Date(m_lastScheduledCollectionTime));
+                    // Wrap the persister visitor such that calls to CollectionResource.getTimeKeeper() return the given timeKeeper
+                    persister = wrapResourcesWithTimekeeper(persister, timeKeeper);
+                }
+                result.visit(persister);
+            } finally {
+                Collectd.instrumentation().endPersistingServiceData(m_spec.getPackageName(), m_nodeId, getHostAddress(), m_spec.getServiceName());
+            }
+
+            // Do thresholding
+            if (m_thresholdingSession != null) {
+                try {
+                    m_thresholdingSession.accept(result);
+                } catch (ThresholdInitializationException e) {
+                    LOG.warn("ThresholdInitializationException for {}. Thresholding skipped.", this, e);
+                }
+            } else {
+                LOG.warn("No thresholding session for {}. Thresholding skipped.", this);
+            }
+
+            if (!CollectionStatus.SUCCEEDED.equals(result.getStatus())) {
+                throw new CollectionFailed(result.getStatus());
+            }
+        }
+    }
+
 	/**
      * Process any outstanding updates.
      * 
@@ -61,6 +61,7 @@ import org.opennms.netmgt.collection.core.CollectionSpecification;
 import org.opennms.netmgt.collection.core.DefaultCollectdInstrumentation;
 import org.opennms.netmgt.config.CollectdConfigFactory;
 import org.opennms.netmgt.config.DataCollectionConfigFactory;
+import org.opennms.netmgt.config.PackageMembershipIndex;
 import org.opennms.netmgt.config.SnmpEventInfo;
 import org.opennms.netmgt.config.SnmpPeerFactory;
 import org.opennms.netmgt.config.collectd.Collector;
@@ -76,6 +77,7 @@ import org.opennms.netmgt.events.api.model.IEvent;
 import org.opennms.netmgt.events.api.model.IParm;
 import org.opennms.netmgt.events.api.model.IValue;
 import org.opennms.netmgt.filter.api.FilterDao;
+import org.opennms.netmgt.jmx.impl.SharedJmxConnectionPool;
 import org.opennms.netmgt.model.AbstractEntityVisitor;
 import org.opennms.netmgt.model.OnmsIpInterface;
 import org.opennms.netmgt.model.OnmsMonitoredService;
@@ -149,6 +151,11 @@ public class Collectd extends AbstractServiceDaemon implements
      */
     private volatile Scheduler m_scheduler;
 
+    /**
+     * Runs the collections asynchronously when enabled
+     */
+    private volatile AsyncCollectionExecutor m_asyncCollectionExecutor;
+
     /**
      * Indicates if scheduling of existing interfaces has been completed
      */
@@ -227,6 +234,9 @@ public class Collectd extends AbstractServiceDaemon implements
         Assert.notNull(m_filterDao, "filterDao must not be null");
 
         LOG.debug("init: Initializing collection daemon");
+
+        // The package membership of interfaces is kept up to date by the event handlers
+        m_collectdConfigFactory.enablePackageIpListMap();
         
         // make sure the instrumentation gets initialized
         instrumentation();
@@ -318,6 +328,10 @@ public class Collectd extends AbstractServiceDaemon implements
             try {
                 LOG.debug("init: Creating collectd scheduler");
                 setScheduler(new LegacyScheduler("Collectd", m_collectdConfigFactory.getThreads()));
+                if (AsyncCollectionExecutor.isEnabled() && m_asyncCollectionExecutor == null) {
+                    LOG.info("init: Collections will be executed asynchronously");
+                    m_asyncCollectionExecutor = AsyncCollectionExecutor.fromSystemProperties("Collectd");
+                }
             } catch (final RuntimeException e) {
                 LOG.error("init: Failed to create collectd scheduler", e);
                 throw e;
@@ -346,6 +360,11 @@ public class Collectd extends AbstractServiceDaemon implements
         deinstallMessageSelectors();
 
         setScheduler(null);
+        if (m_asyncCollectionExecutor != null) {
+            m_asyncCollectionExecutor.shutdown();
+            m_asyncCollectionExecutor = null;
+        }
+        SharedJmxConnectionPool.close();
     }
 
     /** {@inheritDoc} */
@@ -416,6 +435,9 @@ public class Collectd extends AbstractServiceDaemon implements
     
 	private void scheduleNode(final int nodeId) {
 		OnmsNode node = m_nodeDao.getHierarchy(nodeId);
+		// Only re-evaluate the package filters for the interfaces of this node
+		m_filterDao.flushActiveIpAddressListCache();
+		m_collectdConfigFactory.updatePackageIpListMap(nodeId, getAddresses(node));
 		node.visit(new AbstractEntityVisitor() {
 
 			@Override
@@ -426,6 +448,45 @@ public class Collectd extends AbstractServiceDaemon implements
 		});
 	}
 
+	/**
+	 * Returns the addresses of the interfaces of the node, including those of
+	 * collected interfaces which may no longer be part of the node.
+	 */
+	private Set<InetAddress> getAddresses(final OnmsNode node) {
+		final Set<InetAddress> addresses = node.getIpInterfaces().stream()
+		        .map(OnmsIpInterface::getIpAddress)
+		        .filter(Objects::nonNull)
+		        .collect(Collectors.toSet());
+		synchronized (getCollectableServices()) {
+			for (final CollectableService cSvc : getCollectableServices()) {
+				if (cSvc.getNodeId() == node.getId()) {
+					addresses.add(cSvc.getAddress());
+				}
+			}
+		}
+		return addresses;
+	}
+
+	/**
+	 * Schedules and unschedules the services of the interfaces which joined or
+	 * left a package. The services of all other interfaces are left untouched.
+	 */
+	private void applyPackageMembershipChanges(final int nodeId, final List<PackageMembershipIndex.Delta> deltas) {
+		for (final PackageMembershipIndex.Delta delta : deltas) {
+			if (!delta.getRemoved().isEmpty()) {
+				unscheduleInterface(nodeId, delta.getAddress(), delta.getRemoved());
+			}
+			if (!delta.getAdded().isEmpty()) {
+				final OnmsIpInterface iface = getIpInterface(nodeId, str(delta.getAddress()));
+				if (iface != null) {
+					for (final OnmsMonitoredService monSvc : iface.getMonitoredServices()) {
+						scheduleInterface(iface, monSvc.getServiceName());
+					}
+				}
+			}
+		}
+	}
+
 	private OnmsIpInterface getIpInterface(int nodeId, String ipAddress) {
 		OnmsNode node = m_nodeDao.load(nodeId);
 		return node.getIpInterfaceByIpAddress(ipAddress);
@@ -474,7 +535,8 @@ public class Collectd extends AbstractServiceDaemon implements
                     m_schedulingCompletedFlag,
                     m_transTemplate.getTransactionManager(),
                     m_persisterFactory,
-                    m_thresholdingService
+                    m_thresholdingService,
+                    getAsyncCollectionExecutor()
                 );
 
                 // Add new collectable service to the collectable service list.
@@ -944,11 +1006,18 @@ public class Collectd extends AbstractServiceDaemon implements
 
         Long nodeId = event.getNodeid();
 
-        unscheduleNodeAndMarkForDeletion(nodeId);
-
-        LOG.debug("nodeCategoryMembershipChanged: unscheduling nodeid {} completed.", nodeId);
+        // Only the interfaces which joined or left a package are rescheduled,
+        // thresholding re-evaluates its own packages on this event
+        final OnmsNode node = m_nodeDao.getHierarchy(nodeId.intValue());
+        if (node == null) {
+            LOG.warn("nodeCategoryMembershipChanged: node {} not found.", nodeId);
+            return;
+        }
+        m_filterDao.flushActiveIpAddressListCache();
+        final List<PackageMembershipIndex.Delta> deltas = m_collectdConfigFactory.updatePackageIpListMap(nodeId.intValue(), getAddresses(node));
+        applyPackageMembershipChanges(nodeId.intValue(), deltas);
 
-        scheduleNode(nodeId.intValue());
+        LOG.debug("nodeCategoryMembershipChanged: rescheduling {} interfaces of nodeid {} completed.", deltas.size(), nodeId);
     }
 
     /**
@@ -974,6 +1043,7 @@ public class Collectd extends AbstractServiceDaemon implements
         //Remove all collectable services
         Collection<Integer> nodeIds = m_nodeDao.getNodeIds();
         m_filterDao.flushActiveIpAddressListCache();
+        m_collectdConfigFactory.rebuildPackageIpListMap();
         for (Integer nodeId : nodeIds) {
             unscheduleNodeAndMarkForDeletion(Long.valueOf(nodeId));
         }
@@ -996,6 +1066,29 @@ public class Collectd extends AbstractServiceDaemon implements
         instantiateCollectors();
     }
 
+    /**
+     * Marks the services of the interface which are collected for one of the
+     * given packages for deletion.
+     */
+    private void unscheduleInterface(int nodeId, InetAddress address, Set<String> packageNames) {
+        synchronized (getCollectableServices()) {
+            final ListIterator<CollectableService> liter = getCollectableServices().listIterator();
+            while (liter.hasNext()) {
+                final CollectableService cSvc = liter.next();
+                if (!(cSvc.getNodeId() == nodeId &&
+                        address.equals(cSvc.getAddress()) &&
+                        packageNames.contains(cSvc.getPackageName())))
+                    continue;
+
+                synchronized (cSvc) {
+                    LOG.debug("Marking CollectableService for deletion because the interface left the package: Service nodeid={}, address={}, package={}", nodeId, InetAddrUtils.str(address), cSvc.getPackageName());
+                    cSvc.getCollectorUpdates().markForDeletion();
+                }
+                liter.remove();
+            }
+        }
+    }
+
     private void unscheduleNodeAndMarkForDeletion(Long nodeId) {
 		// Iterate over the collectable service list and mark any entries
         // which match the deleted nodeId for deletion.
@@ -1117,6 +1210,9 @@ public class Collectd extends AbstractServiceDaemon implements
         // during initialization
         
         m_filterDao.flushActiveIpAddressListCache();
+        final int nodeId = event.getNodeid().intValue();
+        applyPackageMembershipChanges(nodeId, m_collectdConfigFactory.updatePackageIpListMap(nodeId,
+                Collections.singleton(InetAddressUtils.addr(event.getInterface()))));
 
         scheduleInterface(event.getNodeid().intValue(), event.getInterface(),
                           event.getService());
@@ -1370,6 +1466,15 @@ public class Collectd extends AbstractServiceDaemon implements
         return m_scheduler;
     }
 
+    /**
+     * Returns the executor used to run collections asynchronously.
+     *
+     * @return the executor, or <code>null</code> if collections are executed on the scheduler threads
+     */
+    public AsyncCollectionExecutor getAsyncCollectionExecutor() {
+        return m_asyncCollectionExecutor;
+    }
+
     /**
      * <p>setCollectorConfigDao</p>
      *
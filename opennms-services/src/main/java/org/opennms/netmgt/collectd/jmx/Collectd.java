@@ -24,6 +24,7 @@ package org.opennms.netmgt.collectd.jmx;
 import static org.opennms.core.utils.InetAddressUtils.str;
 
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import javax.management.openmbean.CompositeDataSupport;
@@ -35,8 +36,10 @@ import javax.management.openmbean.TabularData;
 import javax.management.openmbean.TabularDataSupport;
 import javax.management.openmbean.TabularType;
 
+import org.opennms.netmgt.collectd.AsyncCollectionExecutor;
 import org.opennms.netmgt.collectd.CollectableService;
 import org.opennms.netmgt.daemon.AbstractSpringContextJmxServiceDaemon;
+import org.opennms.netmgt.jmx.impl.SharedJmxConnectionPool;
 import org.opennms.netmgt.scheduler.LegacyScheduler;
 
 /**
@@ -214,6 +217,94 @@ public class Collectd extends AbstractSpringContextJmxServiceDaemon<org.opennms.
         }
     }
 
+    private static final String[] PACKAGE_STATS_ITEMS = new String[]{"package", "inFlight", "completed", "rejected", "skipped", "timedOut", "lastLagMs", "averageLagMs", "maxLagMs"};
+    private static final String[] PACKAGE_STATS_DESCS = new String[]{"package", "inFlight", "completed", "rejected", "skipped", "timedOut", "lastLagMs", "averageLagMs", "maxLagMs"};
+    private static final OpenType<?>[] PACKAGE_STATS_TYPES = new OpenType<?>[]{SimpleType.STRING, SimpleType.INTEGER, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG};
+
+    public final static CompositeType PACKAGE_STATS_COMPOSITE_TYPE;
+    public final static TabularType PACKAGE_STATS_TABULAR_TYPE;
+
+    static {
+        try {
+            PACKAGE_STATS_COMPOSITE_TYPE = new CompositeType("Package Collection Stats", "Asynchronous collection statistics of a package",
+                    PACKAGE_STATS_ITEMS,
+                    PACKAGE_STATS_DESCS,
+                    PACKAGE_STATS_TYPES
+            );
+            PACKAGE_STATS_TABULAR_TYPE = new TabularType("Package Collection Stats", "Asynchronous collection statistics by package", PACKAGE_STATS_COMPOSITE_TYPE, new String[]{"package"});
+        } catch (OpenDataException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public long getInFlightCollections() {
+        final AsyncCollectionExecutor executor = getDaemon().getAsyncCollectionExecutor();
+        return executor != null ? executor.getInFlight() : 0L;
+    }
+
+    @Override
+    public TabularData getPackageCollectionStats() throws OpenDataException {
+        final TabularData tabularData = new TabularDataSupport(PACKAGE_STATS_TABULAR_TYPE);
+        final AsyncCollectionExecutor executor = getDaemon().getAsyncCollectionExecutor();
+        if (executor == null) {
+            return tabularData;
+        }
+
+        for (final Map.Entry<String, AsyncCollectionExecutor.PackageStats> entry : executor.getPackageStats().entrySet()) {
+            final AsyncCollectionExecutor.PackageStats stats = entry.getValue();
+            tabularData.put(new CompositeDataSupport(
+                    PACKAGE_STATS_COMPOSITE_TYPE,
+                    PACKAGE_STATS_ITEMS,
+                    new Object[]{entry.getKey(), stats.getInFlight(), stats.getCompleted(), stats.getRejected(), stats.getSkipped(), stats.getTimedOut(),
+                            stats.getLastLagMs(), stats.getAverageLagMs(), stats.getMaxLagMs()}
+            ));
+        }
+        return tabularData;
+    }
+
+    @Override
+    public long getJmxPoolSize() {
+        final SharedJmxConnectionPool pool = SharedJmxConnectionPool.peek();
+        return pool != null ? pool.getConnectionPool().getPoolSize() : 0L;
+    }
+
+    @Override
+    public long getJmxPoolCreated() {
+        final SharedJmxConnectionPool pool = SharedJmxConnectionPool.peek();
+        return pool != null ? pool.getConnectionPool().getCreated() : 0L;
+    }
+
+    @Override
+    public long getJmxPoolReused() {
+        final SharedJmxConnectionPool pool = SharedJmxConnectionPool.peek();
+        return pool != null ? pool.getConnectionPool().getReused() : 0L;
+    }
+
+    @Override
+    public long getJmxPoolEvicted() {
+        final SharedJmxConnectionPool pool = SharedJmxConnectionPool.peek();
+        return pool != null ? pool.getConnectionPool().getEvicted() : 0L;
+    }
+
+    @Override
+    public long getJmxPoolFailed() {
+        final SharedJmxConnectionPool pool = SharedJmxConnectionPool.peek();
+        return pool != null ? pool.getConnectionPool().getFailed() : 0L;
+    }
+
+    @Override
+    public long getJmxObjectNameCacheHits() {
+        final SharedJmxConnectionPool pool = SharedJmxConnectionPool.peek();
+        return pool != null ? pool.getObjectNameCache().getHits() : 0L;
+    }
+
+    @Override
+    public long getJmxObjectNameCacheMisses() {
+        final SharedJmxConnectionPool pool = SharedJmxConnectionPool.peek();
+        return pool != null ? pool.getObjectNameCache().getMisses() : 0L;
+    }
+
     @Override
     public long getCollectableServiceCount() {
         return getDaemon().getCollectableServiceCount();
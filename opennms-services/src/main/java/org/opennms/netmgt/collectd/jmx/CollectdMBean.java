@@ -89,4 +89,49 @@ public interface CollectdMBean extends BaseOnmsMBean {
     public long getTaskQueueRemainingCapacity();
 
     TabularData getSchedule() throws OpenDataException;
+
+    /**
+     * @return The number of collections currently in flight when collections are executed asynchronously
+     */
+    public long getInFlightCollections();
+
+    /**
+     * @return The in-flight collections and the scheduling lag by package when collections are executed asynchronously
+     */
+    TabularData getPackageCollectionStats() throws OpenDataException;
+
+    /**
+     * @return The number of open connections in the JMX connection pool
+     */
+    public long getJmxPoolSize();
+
+    /**
+     * @return The number of connections established by the JMX connection pool
+     */
+    public long getJmxPoolCreated();
+
+    /**
+     * @return The number of times the JMX connection pool handed out an open connection again
+     */
+    public long getJmxPoolReused();
+
+    /**
+     * @return The number of idle connections closed by the JMX connection pool
+     */
+    public long getJmxPoolEvicted();
+
+    /**
+     * @return The number of failed connections discarded by the JMX connection pool
+     */
+    public long getJmxPoolFailed();
+
+    /**
+     * @return The number of object names of JMX collections resolved from the cache
+     */
+    public long getJmxObjectNameCacheHits();
+
+    /**
+     * @return The number of object names of JMX collections resolved on the server
+     */
+    public long getJmxObjectNameCacheMisses();
 }
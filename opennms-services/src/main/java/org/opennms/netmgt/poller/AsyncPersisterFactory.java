@@ -0,0 +1,499 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.poller;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.netmgt.collection.api.CollectionAttribute;
+import org.opennms.netmgt.collection.api.CollectionResource;
+import org.opennms.netmgt.collection.api.CollectionSet;
+import org.opennms.netmgt.collection.api.Persister;
+import org.opennms.netmgt.collection.api.PersisterFactory;
+import org.opennms.netmgt.collection.api.ServiceParameters;
+import org.opennms.netmgt.collection.support.AbstractCollectionSetVisitor;
+import org.opennms.netmgt.rrd.RrdRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link PersisterFactory} which takes the persistence of the response time and
+ * status samples off the polling threads.
+ *
+ * The persisters returned by this factory only record the collection sets they visit.
+ * The samples are queued per resource and written in batches by a small pool of writer
+ * threads, using the persisters of the delegate factory, i.e. the configured time-series
+ * strategy. Each resource is always handled by the same writer, so the samples of a
+ * resource are written in order. Samples of a resource which fall into the same step
+ * of the repository replace each other while queued, as only one of them would end up
+ * in the time series anyway.
+ *
+ * Each batch is replayed with a single delegate persister per distinct set of
+ * persister parameters, instead of a new persister per sample, so the samples of a
+ * batch reach the time-series strategy back to back. The samples keep the time of
+ * their collection as long as their resources carry it, see
+ * {@link CollectionResource#getTimeKeeper()}.
+ *
+ * The number of queued samples is bounded. Samples which do not fit into the queue,
+ * or which are recorded after the factory was shut down, are dropped and counted.
+ */
+public class AsyncPersisterFactory implements PersisterFactory {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncPersisterFactory.class);
+
+    protected static final String ASYNC_PERSISTENCE_SYS_PROP = "org.opennms.netmgt.poller.asyncPersistence";
+
+    protected static final String THREADS_SYS_PROP = "org.opennms.netmgt.poller.asyncPersistence.threads";
+
+    protected static final String MAX_PENDING_SYS_PROP = "org.opennms.netmgt.poller.asyncPersistence.maxPending";
+
+    protected static final String BATCH_SIZE_SYS_PROP = "org.opennms.netmgt.poller.asyncPersistence.batchSize";
+
+    protected static final String FLUSH_INTERVAL_SYS_PROP = "org.opennms.netmgt.poller.asyncPersistence.flushInterval";
+
+    protected static final String SHUTDOWN_TIMEOUT_SYS_PROP = "org.opennms.netmgt.poller.asyncPersistence.shutdownTimeout";
+
+    private static final int DEFAULT_THREADS = 2;
+
+    private static final int DEFAULT_MAX_PENDING = 100000;
+
+    private static final int DEFAULT_BATCH_SIZE = 500;
+
+    private static final long DEFAULT_FLUSH_INTERVAL = 1000L;
+
+    private static final long DEFAULT_SHUTDOWN_TIMEOUT = 30000L;
+
+    private final PersisterFactory m_delegate;
+
+    private final Writer[] m_writers;
+
+    private final Thread[] m_writerThreads;
+
+    private final int m_maxPending;
+
+    private final int m_batchSize;
+
+    private final long m_flushInterval;
+
+    private final AtomicInteger m_pending = new AtomicInteger();
+
+    private final LongAdder m_written = new LongAdder();
+
+    private final LongAdder m_coalesced = new LongAdder();
+
+    private final LongAdder m_dropped = new LongAdder();
+
+    private final LongAdder m_failed = new LongAdder();
+
+    private final LongAdder m_batches = new LongAdder();
+
+    private volatile boolean m_stopped = false;
+
+    public AsyncPersisterFactory(final PersisterFactory delegate, final int threads, final int maxPending, final int batchSize, final long flushInterval) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        if (maxPending < 1) {
+            throw new IllegalArgumentException("maxPending must be positive");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        m_delegate = Objects.requireNonNull(delegate);
+        m_maxPending = maxPending;
+        m_batchSize = batchSize;
+        m_flushInterval = flushInterval;
+
+        final LogPreservingThreadFactory threadFactory = new LogPreservingThreadFactory("Poller-Persister", threads);
+        m_writers = new Writer[threads];
+        m_writerThreads = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            m_writers[i] = new Writer();
+            m_writerThreads[i] = threadFactory.newThread(m_writers[i]);
+            m_writerThreads[i].start();
+        }
+    }
+
+    /**
+     * @return true if the samples of the poller should be persisted asynchronously
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ASYNC_PERSISTENCE_SYS_PROP);
+    }
+
+    /**
+     * Creates a factory configured from the system properties.
+     *
+     * @param delegate the factory used to create the persisters that write the samples
+     * @return a new factory
+     */
+    public static AsyncPersisterFactory fromSystemProperties(final PersisterFactory delegate) {
+        return new AsyncPersisterFactory(delegate,
+                Integer.getInteger(THREADS_SYS_PROP, DEFAULT_THREADS),
+                Integer.getInteger(MAX_PENDING_SYS_PROP, DEFAULT_MAX_PENDING),
+                Integer.getInteger(BATCH_SIZE_SYS_PROP, DEFAULT_BATCH_SIZE),
+                Long.getLong(FLUSH_INTERVAL_SYS_PROP, DEFAULT_FLUSH_INTERVAL));
+    }
+
+    @Override
+    public Persister createPersister(final ServiceParameters params, final RrdRepository repository) {
+        return new QueueingPersister(new PersisterSpec(params, repository, null, null, null));
+    }
+
+    @Override
+    public Persister createPersister(final ServiceParameters params, final RrdRepository repository,
+                                     final boolean dontPersistCounters, final boolean forceStoreByGroup, final boolean dontReorderAttributes) {
+        return new QueueingPersister(new PersisterSpec(params, repository, dontPersistCounters, forceStoreByGroup, dontReorderAttributes));
+    }
+
+    /**
+     * Writes all queued samples and stops the writers. Waits for the writers at most
+     * for the time given by the {@value #SHUTDOWN_TIMEOUT_SYS_PROP} system property.
+     */
+    public void shutdown() {
+        shutdown(Long.getLong(SHUTDOWN_TIMEOUT_SYS_PROP, DEFAULT_SHUTDOWN_TIMEOUT), TimeUnit.MILLISECONDS);
+    }
+
+    protected void shutdown(final long timeout, final TimeUnit unit) {
+        m_stopped = true;
+        for (final Writer writer : m_writers) {
+            writer.wakeUp();
+        }
+
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            for (final Thread writerThread : m_writerThreads) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining > 0) {
+                    TimeUnit.NANOSECONDS.timedJoin(writerThread, remaining);
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (m_pending.get() > 0) {
+            LOG.warn("shutdown: {} samples were not written within {}ms and are dropped.", m_pending.get(), unit.toMillis(timeout));
+        } else {
+            LOG.info("shutdown: wrote all queued samples, {} samples were dropped in total.", m_dropped.sum());
+        }
+    }
+
+    /**
+     * @return the number of samples waiting to be written
+     */
+    public int getPending() {
+        return m_pending.get();
+    }
+
+    /**
+     * @return the number of samples written
+     */
+    public long getWritten() {
+        return m_written.sum();
+    }
+
+    /**
+     * @return the number of samples replaced by a later sample of the same resource and step
+     */
+    public long getCoalesced() {
+        return m_coalesced.sum();
+    }
+
+    /**
+     * @return the number of samples dropped because the queue was full or the factory was shut down
+     */
+    public long getDropped() {
+        return m_dropped.sum();
+    }
+
+    /**
+     * @return the number of samples which failed to be written
+     */
+    public long getFailed() {
+        return m_failed.sum();
+    }
+
+    /**
+     * @return the number of batches written
+     */
+    public long getBatches() {
+        return m_batches.sum();
+    }
+
+    private void enqueue(final Sample sample) {
+        if (m_stopped) {
+            LOG.debug("enqueue: persister was shut down, dropping sample for {}.", sample.m_key);
+            m_dropped.increment();
+            return;
+        }
+        m_writers[Math.floorMod(sample.m_key.hashCode(), m_writers.length)].enqueue(sample);
+    }
+
+    /**
+     * The arguments a persister was requested with. Samples with equal specs can be
+     * written by the same delegate persister.
+     */
+    private static class PersisterSpec {
+        private final ServiceParameters m_params;
+        private final RrdRepository m_repository;
+        private final Boolean m_dontPersistCounters;
+        private final Boolean m_forceStoreByGroup;
+        private final Boolean m_dontReorderAttributes;
+
+        private PersisterSpec(final ServiceParameters params, final RrdRepository repository,
+                              final Boolean dontPersistCounters, final Boolean forceStoreByGroup, final Boolean dontReorderAttributes) {
+            m_params = params;
+            m_repository = repository;
+            m_dontPersistCounters = dontPersistCounters;
+            m_forceStoreByGroup = forceStoreByGroup;
+            m_dontReorderAttributes = dontReorderAttributes;
+        }
+
+        private Persister create(final PersisterFactory factory) {
+            if (m_dontPersistCounters == null) {
+                return factory.createPersister(m_params, m_repository);
+            }
+            return factory.createPersister(m_params, m_repository, m_dontPersistCounters, m_forceStoreByGroup, m_dontReorderAttributes);
+        }
+
+        private long getStepMillis() {
+            return TimeUnit.SECONDS.toMillis(m_repository.getStep());
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof PersisterSpec)) {
+                return false;
+            }
+            final PersisterSpec other = (PersisterSpec) obj;
+            return Objects.equals(m_params == null ? null : m_params.getParameters(), other.m_params == null ? null : other.m_params.getParameters())
+                    && Objects.equals(m_repository.getRrdBaseDir(), other.m_repository.getRrdBaseDir())
+                    && m_repository.getStep() == other.m_repository.getStep()
+                    && m_repository.getHeartBeat() == other.m_repository.getHeartBeat()
+                    && Objects.equals(m_repository.getRraList(), other.m_repository.getRraList())
+                    && Objects.equals(m_dontPersistCounters, other.m_dontPersistCounters)
+                    && Objects.equals(m_forceStoreByGroup, other.m_forceStoreByGroup)
+                    && Objects.equals(m_dontReorderAttributes, other.m_dontReorderAttributes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(m_params == null ? null : m_params.getParameters(), m_repository.getRrdBaseDir(),
+                    m_repository.getStep(), m_dontPersistCounters, m_forceStoreByGroup, m_dontReorderAttributes);
+        }
+    }
+
+    /**
+     * A single queued collection set.
+     */
+    private static class Sample {
+        private final String m_key;
+        private final CollectionSet m_collectionSet;
+        private final PersisterSpec m_spec;
+        private final long m_step;
+
+        private Sample(final String key, final CollectionSet collectionSet, final PersisterSpec spec) {
+            m_key = key;
+            m_collectionSet = collectionSet;
+            m_spec = spec;
+            m_step = spec.getStepMillis();
+        }
+
+        private boolean isSameStep(final Sample other) {
+            if (m_step < 1 || m_collectionSet.getCollectionTimestamp() == null || other.m_collectionSet.getCollectionTimestamp() == null) {
+                return false;
+            }
+            return m_collectionSet.getCollectionTimestamp().getTime() / m_step == other.m_collectionSet.getCollectionTimestamp().getTime() / m_step;
+        }
+    }
+
+    /**
+     * Records the visited collection set and queues it once the visit is complete.
+     */
+    private class QueueingPersister extends AbstractCollectionSetVisitor implements Persister {
+        private final PersisterSpec m_spec;
+        private final StringBuilder m_key = new StringBuilder();
+
+        private QueueingPersister(final PersisterSpec spec) {
+            m_spec = spec;
+            m_key.append(spec.m_repository.getRrdBaseDir());
+        }
+
+        @Override
+        public void visitResource(final CollectionResource resource) {
+            m_key.append(':').append(resource.getResourceTypeName())
+                 .append(':').append(resource.getPath())
+                 .append(':').append(resource.getInstance());
+        }
+
+        @Override
+        public void completeCollectionSet(final CollectionSet set) {
+            enqueue(new Sample(m_key.toString(), set, m_spec));
+        }
+
+        @Override
+        public void persistNumericAttribute(final CollectionAttribute attribute) {
+            // Attributes are persisted by the writers
+        }
+
+        @Override
+        public void persistStringAttribute(final CollectionAttribute attribute) {
+            // Attributes are persisted by the writers
+        }
+    }
+
+    /**
+     * Queues the samples of a subset of the resources and writes them in batches.
+     */
+    private class Writer implements Runnable {
+        private final ReentrantLock m_lock = new ReentrantLock();
+        private final Condition m_ready = m_lock.newCondition();
+        private final Map<String, Deque<Sample>> m_samplesByResource = new LinkedHashMap<>();
+        private int m_size = 0;
+
+        private void enqueue(final Sample sample) {
+            m_lock.lock();
+            try {
+                if (m_stopped) {
+                    // The final drain of this writer may already be done
+                    m_dropped.increment();
+                    LOG.debug("enqueue: persister was shut down, dropping sample for {}.", sample.m_key);
+                    return;
+                }
+
+                final Deque<Sample> samples = m_samplesByResource.get(sample.m_key);
+                if (samples != null && !samples.isEmpty() && samples.peekLast().isSameStep(sample)) {
+                    samples.pollLast();
+                    samples.addLast(sample);
+                    m_coalesced.increment();
+                    return;
+                }
+
+                if (m_pending.incrementAndGet() > m_maxPending) {
+                    m_pending.decrementAndGet();
+                    m_dropped.increment();
+                    LOG.debug("enqueue: too many samples pending, dropping sample for {}.", sample.m_key);
+                    return;
+                }
+
+                m_samplesByResource.computeIfAbsent(sample.m_key, k -> new ArrayDeque<>()).addLast(sample);
+                if (++m_size >= m_batchSize) {
+                    m_ready.signal();
+                }
+            } finally {
+                m_lock.unlock();
+            }
+        }
+
+        private void wakeUp() {
+            m_lock.lock();
+            try {
+                m_ready.signal();
+            } finally {
+                m_lock.unlock();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                final List<Deque<Sample>> batch;
+                final boolean stopped;
+                m_lock.lock();
+                try {
+                    if (m_size < m_batchSize && !m_stopped) {
+                        m_ready.await(m_flushInterval, TimeUnit.MILLISECONDS);
+                    }
+                    stopped = m_stopped;
+                    batch = drain(stopped ? Integer.MAX_VALUE : m_batchSize);
+                } catch (final InterruptedException e) {
+                    LOG.warn("Interrupted while waiting for samples, {} samples will not be written.", m_size);
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    m_lock.unlock();
+                }
+
+                write(batch);
+
+                if (stopped) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Removes the samples of up to the given number of resources, oldest first.
+         */
+        private List<Deque<Sample>> drain(final int maxResources) {
+            final List<Deque<Sample>> batch = new ArrayList<>(Math.min(maxResources, m_samplesByResource.size()));
+            final Iterator<Deque<Sample>> it = m_samplesByResource.values().iterator();
+            while (it.hasNext() && batch.size() < maxResources) {
+                final Deque<Sample> samples = it.next();
+                it.remove();
+                m_size -= samples.size();
+                batch.add(samples);
+            }
+            return batch;
+        }
+
+        private void write(final List<Deque<Sample>> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            // The persisters keep no state between resources, so one of them is used for
+            // all samples of the batch which were requested with the same arguments
+            final Map<PersisterSpec, Persister> persisters = new HashMap<>();
+            for (final Deque<Sample> samples : batch) {
+                for (final Sample sample : samples) {
+                    try {
+                        sample.m_collectionSet.visit(persisters.computeIfAbsent(sample.m_spec, spec -> spec.create(m_delegate)));
+                        m_written.increment();
+                    } catch (final Throwable t) {
+                        LOG.warn("write: failed to persist sample for {}.", sample.m_key, t);
+                        m_failed.increment();
+                    } finally {
+                        m_pending.decrementAndGet();
+                    }
+                }
+            }
+            m_batches.increment();
+        }
+    }
+}
@@ -81,8 +81,6 @@ public class Poller extends AbstractServiceDaemon {
 
     private static final String LOG4J_CATEGORY = "poller";
 
-    private boolean m_initialized = false;
-
     private LegacyScheduler m_scheduler = null;
 
     private PollerEventProcessor m_eventProcessor;
@@ -108,6 +106,8 @@ public class Poller extends AbstractServiceDaemon {
     @Autowired
     private PersisterFactory m_persisterFactory;
 
+    private AsyncPersisterFactory m_asyncPersisterFactory;
+
     @Autowired
     private ThresholdingService m_thresholdingService;
 
@@ -294,6 +294,11 @@ public class Poller extends AbstractServiceDaemon {
 
         createScheduler();
 
+        if (AsyncPersisterFactory.isEnabled()) {
+            LOG.debug("init: Persisting response times and status asynchronously");
+            m_asyncPersisterFactory = AsyncPersisterFactory.fromSystemProperties(m_persisterFactory);
+        }
+
         try {
             LOG.debug("init: Closing outages for unmanaged services");
 
@@ -327,8 +332,6 @@ public class Poller extends AbstractServiceDaemon {
             throw new UndeclaredThrowableException(t);
         }
 
-        m_initialized = true;
-
     }
 
     private void createScheduler() {
@@ -375,6 +378,10 @@ public class Poller extends AbstractServiceDaemon {
         if(getEventProcessor()!=null) {
             getEventProcessor().close();
         }
+        if (m_asyncPersisterFactory != null) {
+            // Waits for the queued samples to be written
+            m_asyncPersisterFactory.shutdown();
+        }
 
         setScheduler(null);
     }
@@ -518,7 +525,7 @@ public class Poller extends AbstractServiceDaemon {
 
         PollableService svc = getNetwork().createService(service.getNodeId(), iface.getNode().getLabel(), iface.getNode().getLocation().getLocationName(), addr, serviceName);
         PollableServiceConfig pollConfig = new PollableServiceConfig(svc, m_pollerConfig, pkg,
-                                                                     getScheduler(), m_persisterFactory, m_thresholdingService,
+                                                                     getScheduler(), getPollerPersisterFactory(), m_thresholdingService,
                                                                      m_locationAwarePollerClient, m_pollOutagesDao, serviceMonitorAdaptor);
         svc.setPollConfig(pollConfig);
         synchronized(svc) {
@@ -550,10 +557,8 @@ public class Poller extends AbstractServiceDaemon {
     }
 
     private Package findPackageForService(String ipAddr, String serviceName) {
-        if (m_initialized) {
-            // Only rebuild the map when services are scheduled after the initial initialization
-            m_pollerConfig.rebuildPackageIpListMap();
-        }
+        // Services scheduled after the initial initialization are scheduled by the
+        // event processor, which updates the map for the interfaces of the node
         return this.m_pollerConfig.findPackageForService(ipAddr, serviceName);
     }
 
@@ -613,6 +618,20 @@ public class Poller extends AbstractServiceDaemon {
         }
     }
 
+    /**
+     * @return the factory used to persist response times and status, asynchronously if enabled
+     */
+    private PersisterFactory getPollerPersisterFactory() {
+        return m_asyncPersisterFactory != null ? m_asyncPersisterFactory : m_persisterFactory;
+    }
+
+    /**
+     * @return the asynchronous persister, or null if samples are persisted on the polling threads
+     */
+    public AsyncPersisterFactory getAsyncPersisterFactory() {
+        return m_asyncPersisterFactory;
+    }
+
     public static String getLoggingCategory() {
         return LOG4J_CATEGORY;
     }
@@ -26,13 +26,16 @@ import static org.opennms.core.utils.InetAddressUtils.str;
 
 import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.opennms.core.utils.ConfigFileConstants;
+import org.opennms.netmgt.config.PackageMembershipIndex;
 import org.opennms.netmgt.config.PollerConfig;
 import org.opennms.netmgt.events.api.EventConstants;
 import org.opennms.netmgt.events.api.EventIpcManager;
@@ -208,6 +211,7 @@ final class PollerEventProcessor implements EventListener {
                 return;
             }
         }
+        getPollerConfig().updatePackageIpListMap(nodeId.intValue(), Collections.singleton(addr(ipAddr)));
         getPoller().scheduleService(nodeId.intValue(), nodeLabel, nodeLocation, ipAddr, svcName, pnode);
 
     }
@@ -640,8 +644,34 @@ final class PollerEventProcessor implements EventListener {
             LOG.error("Unable to retrieve nodeLocation for node {}", nodeId, e);
         }
 
-        getPollerConfig().rebuildPackageIpListMap();
-        serviceReschedule(nodeId, nodeLabel, nodeLocation, event, rescheduleExisting);
+        final List<PackageMembershipIndex.Delta> deltas = updatePackageIpListMap(nodeId);
+        final Set<InetAddress> changedAddresses = deltas != null
+                ? deltas.stream().map(PackageMembershipIndex.Delta::getAddress).collect(Collectors.toSet())
+                : null;
+        serviceReschedule(nodeId, nodeLabel, nodeLocation, event, rescheduleExisting, changedAddresses);
+    }
+
+    /**
+     * Re-evaluates the package membership of the interfaces of the given node only,
+     * instead of evaluating the filter rules for all interfaces.
+     *
+     * @return the interfaces whose package membership changed, or null if unknown
+     */
+    private List<PackageMembershipIndex.Delta> updatePackageIpListMap(final Long nodeId) {
+        final Set<InetAddress> addresses = new HashSet<>();
+        for (final String[] s : getPoller().getQueryManager().getNodeServices(nodeId.intValue())) {
+            addresses.add(new Service(s).getInetAddress());
+        }
+
+        // Interfaces which are currently polled may no longer be part of the node
+        final PollableNode pnode = getNetwork().getNode(nodeId.intValue());
+        if (pnode != null) {
+            for (final PollableInterface iface : pnode.getInterfaces()) {
+                addresses.add(iface.getAddress());
+            }
+        }
+
+        return getPollerConfig().updatePackageIpListMap(nodeId.intValue(), addresses);
     }
 
     private void rescheduleAllServices(IEvent event) {
@@ -662,12 +692,19 @@ final class PollerEventProcessor implements EventListener {
                 LOG.error("Unable to retrieve nodeLocation for node {}", nodeId, e);
             }
 
-            serviceReschedule(nodeId, nodeLabel, nodeLocation, event, true);
+            serviceReschedule(nodeId, nodeLabel, nodeLocation, event, true, null);
         }
     }
 
+    /**
+     * Reconciles the polled services of the node with the services in the database.
+     *
+     * @param changedAddresses the interfaces whose package membership changed, their
+     *                         services are rescheduled. If null, the membership of any
+     *                         interface may have changed.
+     */
     private void serviceReschedule(Long nodeId, String nodeLabel, String nodeLocation,
-                                   IEvent sourceEvent, boolean rescheduleExisting) {
+                                   IEvent sourceEvent, boolean rescheduleExisting, Set<InetAddress> changedAddresses) {
         if (nodeId == null || nodeId <= 0) {
             LOG.warn("Invalid node ID for event, skipping service reschedule: {}", sourceEvent);
             return;
@@ -730,10 +767,14 @@ final class PollerEventProcessor implements EventListener {
             }
         }
 
-        // Delete the remaining services if we which to reschedule those that are already active
-        if (rescheduleExisting && pnode != null) {
+        // Delete the remaining services if we which to reschedule those that are already active,
+        // otherwise only those of the interfaces which joined or left a package
+        if (pnode != null && (rescheduleExisting || changedAddresses != null)) {
             for (final Iterator<Service> iter = polledServices.iterator(); iter.hasNext(); ) {
                 final Service polledService = iter.next();
+                if (!rescheduleExisting && !changedAddresses.contains(polledService.getInetAddress())) {
+                    continue;
+                }
                 final PollableService service = pnode.getService(polledService.getInetAddress(), polledService.getServiceName());
                 // Delete the service
                 service.delete();
@@ -755,6 +796,10 @@ final class PollerEventProcessor implements EventListener {
                 LOG.debug("{} is being skipped. Already scheduled.", databaseService);
                 continue;
             }
+            if (!rescheduleExisting && changedAddresses != null && !changedAddresses.contains(databaseService.getInetAddress())) {
+                LOG.debug("{} is being skipped. Package membership did not change.", databaseService);
+                continue;
+            }
 
             LOG.debug("{} is being scheduled (or rescheduled) for polling.", databaseService);
             getPoller().scheduleService(nodeId.intValue(), nodeLabel, nodeLocation, databaseService.getAddress(), databaseService.getServiceName(), pnode);
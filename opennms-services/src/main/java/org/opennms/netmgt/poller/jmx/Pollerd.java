@@ -37,6 +37,7 @@ import javax.management.openmbean.TabularDataSupport;
 import javax.management.openmbean.TabularType;
 
 import org.opennms.netmgt.daemon.AbstractSpringContextJmxServiceDaemon;
+import org.opennms.netmgt.poller.AsyncPersisterFactory;
 import org.opennms.netmgt.poller.pollables.PollableService;
 import org.opennms.netmgt.scheduler.LegacyScheduler;
 import org.opennms.netmgt.scheduler.ReadyRunnable;
@@ -173,6 +174,30 @@ public class Pollerd extends AbstractSpringContextJmxServiceDaemon<org.opennms.n
         return getDaemon().getNetwork().getContext().getAsyncPollingEngine().getNumPollsInFlight();
     }
 
+    @Override
+    public long getPersistQueuePendingCount() {
+        final AsyncPersisterFactory persisterFactory = getDaemon().getAsyncPersisterFactory();
+        return persisterFactory != null ? persisterFactory.getPending() : 0L;
+    }
+
+    @Override
+    public long getPersistedSamples() {
+        final AsyncPersisterFactory persisterFactory = getDaemon().getAsyncPersisterFactory();
+        return persisterFactory != null ? persisterFactory.getWritten() : 0L;
+    }
+
+    @Override
+    public long getPersistDroppedSamples() {
+        final AsyncPersisterFactory persisterFactory = getDaemon().getAsyncPersisterFactory();
+        return persisterFactory != null ? persisterFactory.getDropped() : 0L;
+    }
+
+    @Override
+    public long getPersistCoalescedSamples() {
+        final AsyncPersisterFactory persisterFactory = getDaemon().getAsyncPersisterFactory();
+        return persisterFactory != null ? persisterFactory.getCoalesced() : 0L;
+    }
+
     private static final String[] SCHEDULE_ITEMS = new String[]{"nodeId", "nodeLabel", "nodeLocation", "ipAddress", "service", "readyTimeMs", "readyTimeAbsoluteMs", "status", "statusChangeTimeMs"};
     private static final String[] SCHEDULE_DESCS = new String[]{"nodeId", "nodeLabel", "nodeLocation", "ipAddress", "service", "readyTimeMs", "readyTimeAbsoluteMs", "status", "statusChangeTimeMs"};
     private static final OpenType<?>[] SCHEDULE_TYPES = new OpenType<?>[]{SimpleType.INTEGER, SimpleType.STRING, SimpleType.STRING, SimpleType.STRING, SimpleType.STRING, SimpleType.LONG, SimpleType.LONG, SimpleType.STRING, SimpleType.LONG};
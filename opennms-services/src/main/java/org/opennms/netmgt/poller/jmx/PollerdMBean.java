@@ -92,5 +92,25 @@ public interface PollerdMBean extends BaseOnmsMBean {
 
     public long getNumPollsInFlight();
 
+    /**
+     * @return The number of response time and status samples waiting to be persisted
+     */
+    public long getPersistQueuePendingCount();
+
+    /**
+     * @return The number of response time and status samples persisted asynchronously
+     */
+    public long getPersistedSamples();
+
+    /**
+     * @return The number of response time and status samples dropped because the persistence queue was full
+     */
+    public long getPersistDroppedSamples();
+
+    /**
+     * @return The number of response time and status samples replaced by a later sample for the same step
+     */
+    public long getPersistCoalescedSamples();
+
     public TabularData getSchedule() throws OpenDataException;
 }
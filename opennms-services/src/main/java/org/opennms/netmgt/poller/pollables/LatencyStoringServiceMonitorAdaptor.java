@@ -37,6 +37,7 @@ import org.opennms.netmgt.collection.api.LatencyCollectionAttributeType;
 import org.opennms.netmgt.collection.api.LatencyCollectionResource;
 import org.opennms.netmgt.collection.api.PersisterFactory;
 import org.opennms.netmgt.collection.api.ServiceParameters;
+import org.opennms.netmgt.collection.support.ConstantTimeKeeper;
 import org.opennms.netmgt.collection.support.SingleResourceCollectionSet;
 import org.opennms.netmgt.config.PollerConfig;
 import org.opennms.netmgt.config.poller.Package;
@@ -152,7 +153,10 @@ public class LatencyStoringServiceMonitorAdaptor implements ServiceMonitorAdapto
         //     This happens whether or not storeByGroup is enabled.
         // 2) If multiple entries are present, the DSs are created in the same order that they
         //    appear in the map
+        final Date timestamp = new Date();
         LatencyCollectionResource latencyResource = new LatencyCollectionResource(service.getSvcName(), service.getIpAddr(), service.getNodeLocation());
+        // Keep the time of the poll, the samples may be persisted later on
+        latencyResource.setTimeKeeper(new ConstantTimeKeeper(timestamp));
         for (final Entry<String, Number> entry : entries.entrySet()) {
             final String ds = entry.getKey();
             final Number value = entry.getValue() != null ? entry.getValue() : Double.NaN;
@@ -160,7 +164,7 @@ public class LatencyStoringServiceMonitorAdaptor implements ServiceMonitorAdapto
             latencyResource.addAttribute(new LatencyCollectionAttribute(latencyResource, latencyType, ds, value.doubleValue()));
         }
 
-        SingleResourceCollectionSet collectionSet = new SingleResourceCollectionSet(latencyResource, new Date());
+        SingleResourceCollectionSet collectionSet = new SingleResourceCollectionSet(latencyResource, timestamp);
         collectionSet.setStatus(CollectionStatus.SUCCEEDED);
 
         return collectionSet;
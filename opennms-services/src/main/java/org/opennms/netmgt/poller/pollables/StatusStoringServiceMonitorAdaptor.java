@@ -23,6 +23,7 @@ package org.opennms.netmgt.poller.pollables;
 
 import java.io.File;
 import java.util.Collections;
+import java.util.Date;
 import java.util.Map;
 import java.util.Objects;
 
@@ -90,8 +91,11 @@ public class StatusStoringServiceMonitorAdaptor implements ServiceMonitorAdaptor
         agent.setStoreByForeignSource(false);
 
         // Create collection set from response times as gauges and persist
-        final CollectionSetBuilder collectionSetBuilder = new CollectionSetBuilder(agent);
+        // Keep the time of the poll, the samples may be persisted later on
+        final Date timestamp = new Date();
+        final CollectionSetBuilder collectionSetBuilder = new CollectionSetBuilder(agent).withTimestamp(timestamp);
         final LatencyTypeResource resource = new LatencyTypeResource(svc.getSvcName(), svc.getIpAddr(), svc.getNodeLocation());
+        resource.setTimestamp(timestamp);
         collectionSetBuilder.withGauge(resource, rrdBaseName, dsName, buildPollStatusValue(status));
 
         final CollectionSetDTO collectionSetDTO = collectionSetBuilder.build();
@@ -23,7 +23,11 @@ package org.opennms.netmgt.statsd;
 
 import java.util.Date;
 import java.util.SortedSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
 import org.opennms.netmgt.dao.api.ResourceDao;
 import org.opennms.netmgt.dao.support.AttributeMatchingResourceVisitor;
 import org.opennms.netmgt.dao.support.ResourceAttributeFilteringResourceVisitor;
@@ -33,6 +37,8 @@ import org.opennms.netmgt.dao.support.RrdStatisticAttributeVisitor;
 import org.opennms.netmgt.measurements.api.MeasurementFetchStrategy;
 import org.opennms.netmgt.model.AttributeStatistic;
 import org.opennms.netmgt.model.AttributeStatisticVisitorWithResults;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 
 /**
@@ -40,9 +46,23 @@ import org.springframework.beans.factory.InitializingBean;
  * 
  * TODO: Merge this class with {@link AbstractReportInstance}.
  *
+ * <p>Resources are filtered by type, resource attribute and attribute name on the
+ * walking thread before any statistic is fetched. When more than one fetch thread is
+ * configured with the {@value #FETCH_THREADS_SYS_PROP} system property, the
+ * statistics are fetched on a pool created for the run, with at most
+ * {@value #MAX_IN_FLIGHT_SYS_PROP} fetches outstanding.</p>
+ *
  * @author <a href="mailto:dj@opennms.org">DJ Gregor</a>
  */
 public abstract class BaseReportInstance extends AbstractReportInstance implements InitializingBean {
+    private static final Logger LOG = LoggerFactory.getLogger(BaseReportInstance.class);
+
+    protected static final String FETCH_THREADS_SYS_PROP = "org.opennms.netmgt.statsd.fetchThreads";
+
+    protected static final String MAX_IN_FLIGHT_SYS_PROP = "org.opennms.netmgt.statsd.maxInFlight";
+
+    private static final int PROGRESS_INTERVAL = 10000;
+
     private final AttributeStatisticVisitorWithResults m_attributeStatisticVisitor;
     private final RrdStatisticAttributeVisitor m_rrdVisitor = new RrdStatisticAttributeVisitor();
     private final AttributeMatchingResourceVisitor m_attributeVisitor = new AttributeMatchingResourceVisitor();
@@ -50,6 +70,10 @@ public abstract class BaseReportInstance extends AbstractReportInstance implemen
     private String m_resourceAttributeKey;
     private String m_resourceAttributeValueMatch;
     private ResourceAttributeFilteringResourceVisitor m_resourceAttributeVisitor;
+    private int m_fetchThreads = Integer.getInteger(FETCH_THREADS_SYS_PROP, 1);
+    private int m_maxInFlight = Integer.getInteger(MAX_IN_FLIGHT_SYS_PROP, 0);
+    private final LongAdder m_resourcesVisited = new LongAdder();
+    private long m_runTime;
     
     /**
      * <p>Constructor for UnfilteredReportInstance.</p>
@@ -81,8 +105,78 @@ public abstract class BaseReportInstance extends AbstractReportInstance implemen
     @Override
     public void walk() {
         setJobStartedDate(new Date());
-        getWalker().walk();
+        final long start = System.currentTimeMillis();
+
+        ExecutorService executor = null;
+        if (m_fetchThreads > 1) {
+            executor = Executors.newFixedThreadPool(m_fetchThreads, new LogPreservingThreadFactory("Statsd-Fetch-" + getName(), m_fetchThreads));
+        }
+        m_rrdVisitor.setExecutor(executor);
+        m_rrdVisitor.setMaxInFlight(m_maxInFlight > 0 ? m_maxInFlight : m_fetchThreads * 4);
+        m_rrdVisitor.afterPropertiesSet();
+        try {
+            getWalker().walk();
+            m_rrdVisitor.awaitCompletion();
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        m_runTime = System.currentTimeMillis() - start;
         setJobCompletedDate(new Date());
+        LOG.info("Report {} visited {} resources and fetched {} statistics ({} failed, {} without data) in {}ms",
+                 getName(), getResourcesVisited(), getStatisticsFetched(), getFetchesFailed(), m_rrdVisitor.getEmpty(), m_runTime);
+    }
+
+    /**
+     * @return the number of resources visited by the current or last run
+     */
+    public long getResourcesVisited() {
+        return m_resourcesVisited.sum();
+    }
+
+    /**
+     * @return the number of statistics fetched by the current or last run
+     */
+    public long getStatisticsFetched() {
+        return m_rrdVisitor.getFetched();
+    }
+
+    /**
+     * @return the number of statistics which could not be fetched by the current or last run
+     */
+    public long getFetchesFailed() {
+        return m_rrdVisitor.getFailed();
+    }
+
+    /**
+     * @return the time, in milliseconds, spent walking the resources and fetching the statistics of the last run
+     */
+    public long getRunTime() {
+        return m_runTime;
+    }
+
+    /**
+     * @return the number of threads used to fetch statistics, 1 fetches on the walking thread
+     */
+    public int getFetchThreads() {
+        return m_fetchThreads;
+    }
+
+    public void setFetchThreads(int fetchThreads) {
+        m_fetchThreads = fetchThreads;
+    }
+
+    /**
+     * @return the maximum number of outstanding fetches, a value < 1 uses four times the number of fetch threads
+     */
+    public int getMaxInFlight() {
+        return m_maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        m_maxInFlight = maxInFlight;
     }
 
     /**
@@ -252,7 +346,13 @@ public abstract class BaseReportInstance extends AbstractReportInstance implemen
             m_resourceTypeVisitor.setDelegatedVisitor(m_attributeVisitor);
         }
         
-        getWalker().setVisitor(m_resourceTypeVisitor);
+        getWalker().setVisitor(resource -> {
+            m_resourcesVisited.increment();
+            if (m_resourcesVisited.sum() % PROGRESS_INTERVAL == 0) {
+                LOG.debug("Report {} visited {} resources and fetched {} statistics so far", getName(), getResourcesVisited(), getStatisticsFetched());
+            }
+            m_resourceTypeVisitor.visit(resource);
+        });
 
         m_attributeStatisticVisitor.afterPropertiesSet();
         m_rrdVisitor.afterPropertiesSet();
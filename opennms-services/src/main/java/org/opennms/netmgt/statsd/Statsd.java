@@ -86,6 +86,8 @@ public class Statsd implements SpringServiceDaemon {
     private long m_reportsCompleted = 0;
     private long m_reportsPersisted = 0;
     private long m_reportRunTime = 0;
+    private long m_statisticsFetched = 0;
+    private long m_fetchesFailed = 0;
 
     /**
      * <p>handleReloadConfigEvent</p>
@@ -236,6 +238,9 @@ public class Statsd implements SpringServiceDaemon {
                 report.walk();
                 LOG.debug("Completed report {}", report);
                 accountReportComplete();
+                if (report instanceof BaseReportInstance) {
+                    accountReportFetches((BaseReportInstance)report);
+                }
                 
                 m_reportPersister.persist(report);
                 LOG.debug("Report {} persisted", report);
@@ -398,6 +403,11 @@ public class Statsd implements SpringServiceDaemon {
         m_reportRunTime += runtime;
     }
 
+    private synchronized void accountReportFetches(BaseReportInstance report) {
+        m_statisticsFetched += report.getStatisticsFetched();
+        m_fetchesFailed += report.getFetchesFailed();
+    }
+
     public long getReportsStarted() {
         return m_reportsStarted;
     }
@@ -413,4 +423,12 @@ public class Statsd implements SpringServiceDaemon {
     public long getReportRunTime() {
         return m_reportRunTime;
     }
+
+    public long getStatisticsFetched() {
+        return m_statisticsFetched;
+    }
+
+    public long getFetchesFailed() {
+        return m_fetchesFailed;
+    }
 }
@@ -66,4 +66,16 @@ public class Statsd extends AbstractSpringContextJmxServiceDaemon<org.opennms.ne
         return getDaemon().getReportRunTime();
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public long getStatisticsFetched() {
+        return getDaemon().getStatisticsFetched();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getFetchesFailed() {
+        return getDaemon().getFetchesFailed();
+    }
+
 }
@@ -49,4 +49,14 @@ public interface StatsdMBean extends BaseOnmsMBean {
      * @return The time, in milliseconds, spent running reports since Statsd was last started
      */
     public long getReportRunTime();
+
+    /**
+     * @return The number of statistics fetched by report runs since Statsd was last started
+     */
+    public long getStatisticsFetched();
+
+    /**
+     * @return The number of statistics which could not be fetched by report runs since Statsd was last started
+     */
+    public long getFetchesFailed();
     }
@@ -0,0 +1,180 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.collectd;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.collection.api.CollectionSet;
+
+public class AsyncCollectionExecutorTest {
+
+    private AsyncCollectionExecutor executor;
+
+    @Before
+    public void setUp() {
+        executor = new AsyncCollectionExecutor("Test", 2, 2, 0L);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void canLimitCollectionsInFlightPerCollector() throws InterruptedException {
+        final CompletableFuture<CollectionSet> first = new CompletableFuture<>();
+        final CompletableFuture<CollectionSet> second = new CompletableFuture<>();
+        final CountDownLatch completed = new CountDownLatch(2);
+
+        assertTrue(executor.execute(new Object(), "JMX", "jmx", 60000L, () -> first, (result, ex) -> completed.countDown()));
+        assertTrue(executor.execute(new Object(), "JMX", "jmx", 60000L, () -> second, (result, ex) -> completed.countDown()));
+        // The limit is applied per collector
+        assertFalse(executor.execute(new Object(), "JMX", "jmx", 60000L, CompletableFuture::new, (result, ex) -> {}));
+        assertTrue(executor.execute(new Object(), "SNMP", "snmp", 60000L, () -> CompletableFuture.completedFuture(null), (result, ex) -> {}));
+
+        assertEquals(2, executor.getPackageStats().get("jmx").getInFlight());
+        assertEquals(1, executor.getPackageStats().get("jmx").getRejected());
+
+        first.complete(null);
+        second.completeExceptionally(new IllegalStateException());
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+
+        assertEquals(0, executor.getPackageStats().get("jmx").getInFlight());
+        assertEquals(2, executor.getPackageStats().get("jmx").getCompleted());
+        // A slot is available again
+        assertTrue(executor.execute(new Object(), "JMX", "jmx", 60000L, () -> CompletableFuture.completedFuture(null), (result, ex) -> {}));
+    }
+
+    @Test
+    public void canTimeoutCollections() throws InterruptedException {
+        final CountDownLatch completed = new CountDownLatch(1);
+        final Throwable[] failure = new Throwable[1];
+        final CollectionSet[] collected = new CollectionSet[1];
+
+        executor.execute(new Object(), "HTTP", "http", 100L, CompletableFuture::new, (result, ex) -> {
+            collected[0] = result;
+            failure[0] = ex;
+            completed.countDown();
+        });
+
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertNull(collected[0]);
+        assertTrue(AsyncCollectionExecutor.isTimeout(failure[0]));
+        assertEquals(1, executor.getPackageStats().get("http").getTimedOut());
+    }
+
+    @Test
+    public void canCancelTimedOutCollections() throws InterruptedException {
+        final CompletableFuture<CollectionSet> source = new CompletableFuture<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        executor.execute(new Object(), "HTTP", "http", 100L, () -> source, (result, ex) -> completed.countDown());
+
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        await().atMost(5, TimeUnit.SECONDS).until(source::isCancelled);
+        assertEquals(0, executor.getPackageStats().get("http").getInFlight());
+    }
+
+    @Test
+    public void canHoldSlotUntilTimedOutCollectionCompletes() throws InterruptedException {
+        // Mimics a request which cannot be cancelled, i.e. an RPC to a hung agent
+        final CompletableFuture<CollectionSet> source = new CompletableFuture<CollectionSet>() {
+            @Override
+            public boolean cancel(final boolean mayInterruptIfRunning) {
+                return false;
+            }
+        };
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        executor.execute(new Object(), "HTTP", "http", 100L, () -> source, (result, ex) -> completed.countDown());
+
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, executor.getPackageStats().get("http").getTimedOut());
+        assertEquals(1, executor.getPackageStats().get("http").getInFlight());
+
+        source.complete(null);
+        assertEquals(0, executor.getPackageStats().get("http").getInFlight());
+    }
+
+    @Test
+    public void canSkipServiceWhilePreviousCollectionIsRunning() throws InterruptedException {
+        final Object service = new Object();
+        final CompletableFuture<CollectionSet> source = new CompletableFuture<CollectionSet>() {
+            @Override
+            public boolean cancel(final boolean mayInterruptIfRunning) {
+                return false;
+            }
+        };
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        assertTrue(executor.execute(service, "HTTP", "http", 100L, () -> source, (result, ex) -> completed.countDown()));
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+
+        // The collection timed out, but the request is still running
+        assertFalse(executor.execute(service, "HTTP", "http", 100L, () -> CompletableFuture.completedFuture(null), (result, ex) -> {}));
+        assertEquals(1, executor.getPackageStats().get("http").getSkipped());
+        // Other services are not affected
+        assertTrue(executor.execute(new Object(), "HTTP", "http", 100L, () -> CompletableFuture.completedFuture(null), (result, ex) -> {}));
+
+        source.complete(null);
+        assertTrue(executor.execute(service, "HTTP", "http", 100L, () -> CompletableFuture.completedFuture(null), (result, ex) -> {}));
+    }
+
+    @Test
+    public void canProcessCollectionsInFlightOnShutdown() {
+        final CompletableFuture<CollectionSet> source = new CompletableFuture<>();
+        final AtomicBoolean processed = new AtomicBoolean();
+
+        assertTrue(executor.execute(new Object(), "JMX", "jmx", 60000L, () -> source, (result, ex) -> processed.set(true)));
+
+        CompletableFuture.runAsync(() -> source.complete(null), CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS));
+        executor.shutdown(5, TimeUnit.SECONDS);
+
+        assertTrue(processed.get());
+        // No collections are started after the shutdown
+        assertFalse(executor.execute(new Object(), "JMX", "jmx", 60000L, () -> CompletableFuture.completedFuture(null), (result, ex) -> {}));
+    }
+
+    @Test
+    public void canRecordSchedulingLag() {
+        executor.recordSchedulingLag("default", 100L);
+        executor.recordSchedulingLag("default", 300L);
+        executor.recordSchedulingLag("default", -50L);
+
+        final AsyncCollectionExecutor.PackageStats stats = executor.getPackageStats().get("default");
+        assertEquals(0L, stats.getLastLagMs());
+        assertEquals(300L, stats.getMaxLagMs());
+        assertEquals(133L, stats.getAverageLagMs());
+    }
+}
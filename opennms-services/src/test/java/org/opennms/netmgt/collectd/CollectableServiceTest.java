@@ -24,8 +24,11 @@ package org.opennms.netmgt.collectd;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -35,6 +38,7 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.jrobin.core.RrdDb;
 import org.jrobin.core.RrdException;
@@ -217,7 +221,44 @@ public class CollectableServiceTest {
                 lastUpdateTimeInSecs < (afterInSecs - (collectionDelayInSecs / 2d)));
     }
 
+    /**
+     * Verifies that the service is only rescheduled once the asynchronous
+     * collection completed, and that collections exceeding the timeout fail.
+     */
+    @Test
+    public void collectAsynchronously() throws CollectionInitializationException, IOException {
+        System.setProperty(CollectableService.STRICT_INTERVAL_SYS_PROP, Boolean.FALSE.toString());
+        final AsyncCollectionExecutor asyncExecutor = new AsyncCollectionExecutor("Test", 1, 1, 500L);
+        try {
+            createCollectableService(asyncExecutor);
+
+            Long serviceIntervalInMs = 300 * 1000L;
+            when(spec.getInterval()).thenReturn(serviceIntervalInMs);
+            when(spec.getServiceName()).thenReturn("SNMP");
+            when(spec.getPackageName()).thenReturn("default");
+            final CompletableFuture<CollectionSet> pending = new CompletableFuture<>();
+            when(spec.collectAsync(any())).thenReturn(pending);
+
+            service.run();
+            verify(scheduler, never()).schedule(anyLong(), any());
+            assertEquals(1, asyncExecutor.getPackageStats().get("default").getInFlight());
+
+            // The collection never completes and must be timed out
+            ArgumentCaptor<Long> intervalCaptor = ArgumentCaptor.forClass(Long.class);
+            verify(scheduler, timeout(5000).times(1)).schedule(intervalCaptor.capture(), any());
+            assertEquals(serviceIntervalInMs, intervalCaptor.getValue());
+            assertEquals(0, asyncExecutor.getPackageStats().get("default").getInFlight());
+            assertEquals(1, asyncExecutor.getPackageStats().get("default").getTimedOut());
+        } finally {
+            asyncExecutor.shutdown();
+        }
+    }
+
     private void createCollectableService() throws CollectionInitializationException, IOException {
+        createCollectableService(null);
+    }
+
+    private void createCollectableService(AsyncCollectionExecutor asyncExecutor) throws CollectionInitializationException, IOException {
         // Mock it all!
         OnmsIpInterface iface = mock(OnmsIpInterface.class, RETURNS_DEEP_STUBS);
         IpInterfaceDao ifaceDao = mock(IpInterfaceDao.class);
@@ -242,7 +283,7 @@ public class CollectableServiceTest {
 
         ThresholdingService mockThresholdingService = mock(ThresholdingService.class, RETURNS_DEEP_STUBS);
 
-        service = new CollectableService(iface, ifaceDao, spec, scheduler, schedulingCompletedFlag, transMgr, persisterFactory, mockThresholdingService);
+        service = new CollectableService(iface, ifaceDao, spec, scheduler, schedulingCompletedFlag, transMgr, persisterFactory, mockThresholdingService, asyncExecutor);
     }
 
     private RrdRepository createRrdRepository() throws IOException {
@@ -0,0 +1,188 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.netmgt.poller;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.opennms.netmgt.collection.api.CollectionAttribute;
+import org.opennms.netmgt.collection.api.CollectionResource;
+import org.opennms.netmgt.collection.api.CollectionSet;
+import org.opennms.netmgt.collection.api.CollectionStatus;
+import org.opennms.netmgt.collection.api.LatencyCollectionResource;
+import org.opennms.netmgt.collection.api.Persister;
+import org.opennms.netmgt.collection.api.PersisterFactory;
+import org.opennms.netmgt.collection.api.ServiceParameters;
+import org.opennms.netmgt.collection.support.AbstractCollectionSetVisitor;
+import org.opennms.netmgt.collection.support.SingleResourceCollectionSet;
+import org.opennms.netmgt.rrd.RrdRepository;
+
+public class AsyncPersisterFactoryTest {
+
+    private final List<String> m_persisted = Collections.synchronizedList(new ArrayList<>());
+
+    private AsyncPersisterFactory m_persisterFactory;
+
+    @After
+    public void tearDown() {
+        if (m_persisterFactory != null) {
+            m_persisterFactory.shutdown();
+        }
+    }
+
+    @Test
+    public void canPersistAsynchronously() {
+        m_persisterFactory = new AsyncPersisterFactory(createDelegate(), 2, 100, 1, 10);
+
+        persist("10.0.0.1", "ICMP", 0L);
+        persist("10.0.0.2", "ICMP", 0L);
+        persist("10.0.0.1", "HTTP", 0L);
+
+        await().atMost(5, TimeUnit.SECONDS).until(m_persisted::size, equalTo(3));
+        assertEquals(3, m_persisterFactory.getWritten());
+        assertEquals(0, m_persisterFactory.getPending());
+        assertEquals(0, m_persisterFactory.getDropped());
+    }
+
+    @Test
+    public void canCoalesceAndDropSamples() {
+        // Do not flush until shut down
+        m_persisterFactory = new AsyncPersisterFactory(createDelegate(), 1, 2, 100, TimeUnit.HOURS.toMillis(1));
+
+        // Same resource and step, replaces the first sample
+        persist("10.0.0.1", "ICMP", 0L);
+        persist("10.0.0.1", "ICMP", 1000L);
+        // Next step of the same resource
+        persist("10.0.0.1", "ICMP", 300000L);
+        // No more room
+        persist("10.0.0.2", "ICMP", 0L);
+
+        assertEquals(2, m_persisterFactory.getPending());
+        assertEquals(1, m_persisterFactory.getCoalesced());
+        assertEquals(1, m_persisterFactory.getDropped());
+
+        m_persisterFactory.shutdown();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> m_persisterFactory.getWritten(), equalTo(2L));
+        assertEquals("10.0.0.1[ICMP]@1000", m_persisted.get(0));
+        assertEquals("10.0.0.1[ICMP]@300000", m_persisted.get(1));
+    }
+
+    @Test
+    public void canWriteBatchWithSinglePersister() {
+        final PersisterFactory delegate = createDelegate();
+        m_persisterFactory = new AsyncPersisterFactory(delegate, 1, 100, 100, TimeUnit.HOURS.toMillis(1));
+
+        persist("10.0.0.1", "ICMP", 0L);
+        persist("10.0.0.2", "ICMP", 0L);
+        persist("10.0.0.3", "ICMP", 0L);
+
+        m_persisterFactory.shutdown();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> m_persisterFactory.getWritten(), equalTo(3L));
+        assertEquals(1, m_persisterFactory.getBatches());
+        verify(delegate, times(1)).createPersister(any(), any(), anyBoolean(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    public void canWaitForQueuedSamplesOnShutdown() {
+        m_persisterFactory = new AsyncPersisterFactory(createDelegate(), 2, 100, 100, TimeUnit.HOURS.toMillis(1));
+
+        persist("10.0.0.1", "ICMP", 0L);
+        persist("10.0.0.2", "ICMP", 0L);
+        persist("10.0.0.3", "ICMP", 0L);
+
+        m_persisterFactory.shutdown(5, TimeUnit.SECONDS);
+        // The samples are written once the shutdown returns
+        assertEquals(3, m_persisterFactory.getWritten());
+        assertEquals(0, m_persisterFactory.getPending());
+        assertEquals(3, m_persisted.size());
+    }
+
+    @Test
+    public void canDropSamplesAfterShutdown() {
+        m_persisterFactory = new AsyncPersisterFactory(createDelegate(), 1, 100, 100, 10);
+        m_persisterFactory.shutdown();
+
+        persist("10.0.0.1", "ICMP", 0L);
+
+        assertEquals(0, m_persisterFactory.getPending());
+        assertEquals(1, m_persisterFactory.getDropped());
+        assertEquals(0, m_persisterFactory.getWritten());
+    }
+
+    private void persist(final String ipAddress, final String serviceName, final long timestamp) {
+        final RrdRepository repository = new RrdRepository();
+        repository.setStep(300);
+        repository.setRrdBaseDir(new File("target/response"));
+
+        final LatencyCollectionResource resource = new LatencyCollectionResource(serviceName, ipAddress, null);
+        final SingleResourceCollectionSet collectionSet = new SingleResourceCollectionSet(resource, new Date(timestamp));
+        collectionSet.setStatus(CollectionStatus.SUCCEEDED);
+
+        collectionSet.visit(m_persisterFactory.createPersister(new ServiceParameters(Collections.emptyMap()), repository, false, true, true));
+    }
+
+    private PersisterFactory createDelegate() {
+        final PersisterFactory delegate = mock(PersisterFactory.class);
+        when(delegate.createPersister(any(), any(), anyBoolean(), anyBoolean(), anyBoolean())).thenAnswer(invocation -> new RecordingPersister());
+        return delegate;
+    }
+
+    private class RecordingPersister extends AbstractCollectionSetVisitor implements Persister {
+        private CollectionSet m_collectionSet;
+
+        @Override
+        public void visitCollectionSet(final CollectionSet set) {
+            m_collectionSet = set;
+        }
+
+        @Override
+        public void visitResource(final CollectionResource resource) {
+            m_persisted.add(resource.getInstance() + "@" + m_collectionSet.getCollectionTimestamp().getTime());
+        }
+
+        @Override
+        public void persistNumericAttribute(final CollectionAttribute attribute) {
+            // pass
+        }
+
+        @Override
+        public void persistStringAttribute(final CollectionAttribute attribute) {
+            // pass
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.web.rest.support;
+
+import java.beans.PropertyDescriptor;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+import org.opennms.core.criteria.Order;
+import org.opennms.core.criteria.restrictions.Restriction;
+import org.opennms.core.criteria.restrictions.Restrictions;
+import org.opennms.core.utils.InetAddressUtils;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.NullValueInNestedPathException;
+
+import com.google.common.primitives.Primitives;
+
+/**
+ * The position of the last row of a page in keyset (cursor) pagination.
+ *
+ * Instead of skipping {@code offset} rows, the next page is selected with a
+ * restriction that only matches rows which sort after the values of the ordering
+ * columns of the last row. The ordering is always completed with the identifier of
+ * the entity so that the position is unique.
+ *
+ * NULL values are expected to sort like they do in PostgreSQL: last when ascending
+ * and first when descending.
+ *
+ * Cursors are opaque to the client. They carry a fingerprint of the ordering they
+ * were created for and are rejected if used with a different ordering.
+ */
+public class KeysetCursor {
+
+    private static final char SEPARATOR = '|';
+
+    private static final String NULL_VALUE = "~";
+
+    private final List<Order> m_orders;
+
+    private final List<Object> m_values;
+
+    private KeysetCursor(final List<Order> orders, final List<Object> values) {
+        m_orders = Collections.unmodifiableList(orders);
+        m_values = Collections.unmodifiableList(values);
+    }
+
+    /**
+     * Completes the given ordering with the identifier of the entity.
+     *
+     * @param orders the requested ordering
+     * @param idProperty the name of the identifier property
+     * @return the ordering used for keyset pagination
+     */
+    public static List<Order> withTiebreaker(final Collection<Order> orders, final String idProperty) {
+        final List<Order> retval = new ArrayList<>(orders);
+        if (retval.stream().noneMatch(o -> idProperty.equals(o.getAttribute()))) {
+            retval.add(Order.asc(idProperty));
+        }
+        return retval;
+    }
+
+    /**
+     * Verifies that all ordering attributes can be carried by a cursor.
+     *
+     * @throws IllegalArgumentException if an attribute is not a bean property of the entity
+     *   or has a type which can not be encoded
+     */
+    public static void validate(final List<Order> orders, final Class<?> entityClass) {
+        for (final Order order : orders) {
+            getPropertyType(entityClass, order.getAttribute());
+        }
+    }
+
+    /**
+     * Creates the cursor positioned after the given entity.
+     */
+    public static KeysetCursor after(final List<Order> orders, final Object entity) {
+        final BeanWrapper wrapper = new BeanWrapperImpl(entity);
+        final List<Object> values = new ArrayList<>(orders.size());
+        for (final Order order : orders) {
+            Object value;
+            try {
+                value = wrapper.getPropertyValue(order.getAttribute());
+            } catch (final NullValueInNestedPathException e) {
+                value = null;
+            }
+            values.add(value);
+        }
+        return new KeysetCursor(orders, values);
+    }
+
+    /**
+     * Decodes a cursor created by {@link #encode()}.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed or was created for another ordering
+     */
+    public static KeysetCursor decode(final String cursor, final List<Order> orders, final Class<?> entityClass) {
+        final String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (final IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+
+        final List<String> fields = split(decoded);
+        if (fields.size() != orders.size() + 1 || !fingerprint(orders).equals(fields.get(0))) {
+            throw new IllegalArgumentException("The cursor does not match the requested ordering");
+        }
+
+        final List<Object> values = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            final String field = fields.get(i + 1);
+            if (NULL_VALUE.equals(field)) {
+                values.add(null);
+            } else {
+                final Class<?> type = getPropertyType(entityClass, orders.get(i).getAttribute());
+                try {
+                    values.add(fromString(type, URLDecoder.decode(field, StandardCharsets.UTF_8)));
+                } catch (final RuntimeException e) {
+                    throw new IllegalArgumentException("Invalid cursor value for " + orders.get(i).getAttribute() + ": " + field);
+                }
+            }
+        }
+        return new KeysetCursor(orders, values);
+    }
+
+    /**
+     * @return the URL-safe representation of the cursor
+     */
+    public String encode() {
+        final StringBuilder sb = new StringBuilder(fingerprint(m_orders));
+        for (final Object value : m_values) {
+            sb.append(SEPARATOR);
+            sb.append(value == null ? NULL_VALUE : URLEncoder.encode(toString(value), StandardCharsets.UTF_8));
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Builds the restriction matching the rows which sort after this cursor.
+     *
+     * For the ordering (a, b, id) this is the lexicographic comparison
+     * {@code a > :a OR (a = :a AND (b > :b OR (b = :b AND id > :id)))}.
+     *
+     * @return the restriction, or null if no row can follow the cursor
+     */
+    public Restriction toRestriction() {
+        Restriction retval = null;
+        for (int i = m_orders.size() - 1; i >= 0; i--) {
+            final Order order = m_orders.get(i);
+            final Object value = m_values.get(i);
+            final Restriction after = strictlyAfter(order, value);
+            final Restriction tail = retval == null ? null : Restrictions.and(equalTo(order.getAttribute(), value), retval);
+            if (after == null) {
+                retval = tail;
+            } else if (tail == null) {
+                retval = after;
+            } else {
+                retval = Restrictions.or(after, tail);
+            }
+        }
+        return retval;
+    }
+
+    public List<Object> getValues() {
+        return m_values;
+    }
+
+    private static Restriction strictlyAfter(final Order order, final Object value) {
+        final String attribute = order.getAttribute();
+        if (order.asc()) {
+            // NULLs sort last: nothing follows a NULL, NULLs follow every value
+            return value == null ? null : Restrictions.or(Restrictions.gt(attribute, value), Restrictions.isNull(attribute));
+        } else {
+            // NULLs sort first: every value follows a NULL
+            return value == null ? Restrictions.isNotNull(attribute) : Restrictions.lt(attribute, value);
+        }
+    }
+
+    private static Restriction equalTo(final String attribute, final Object value) {
+        return value == null ? Restrictions.isNull(attribute) : Restrictions.eq(attribute, value);
+    }
+
+    private static String fingerprint(final List<Order> orders) {
+        final StringJoiner joiner = new StringJoiner(",");
+        for (final Order order : orders) {
+            joiner.add(order.getAttribute() + (order.asc() ? "+" : "-"));
+        }
+        return Integer.toHexString(joiner.toString().hashCode());
+    }
+
+    private static List<String> split(final String value) {
+        final List<String> fields = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == SEPARATOR) {
+                fields.add(value.substring(start, i));
+                start = i + 1;
+            }
+        }
+        fields.add(value.substring(start));
+        return fields;
+    }
+
+    private static Class<?> getPropertyType(final Class<?> entityClass, final String attribute) {
+        Class<?> type = entityClass;
+        for (final String name : attribute.split("\\.")) {
+            final PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(type, name);
+            if (descriptor == null || descriptor.getReadMethod() == null) {
+                throw new IllegalArgumentException("Ordering by " + attribute + " is not supported with a cursor");
+            }
+            type = descriptor.getPropertyType();
+        }
+        type = Primitives.wrap(type);
+        if (!isSupported(type)) {
+            throw new IllegalArgumentException("Ordering by " + attribute + " is not supported with a cursor");
+        }
+        return type;
+    }
+
+    private static boolean isSupported(final Class<?> type) {
+        return String.class.equals(type)
+                || Number.class.isAssignableFrom(type)
+                || Boolean.class.equals(type)
+                || Character.class.equals(type)
+                || Date.class.isAssignableFrom(type)
+                || InetAddress.class.isAssignableFrom(type)
+                || type.isEnum();
+    }
+
+    private static String toString(final Object value) {
+        if (value instanceof Timestamp) {
+            // Keep the sub-millisecond part, the database compares with microsecond precision
+            return ((Timestamp) value).getTime() + ":" + ((Timestamp) value).getNanos();
+        } else if (value instanceof Date) {
+            return Long.toString(((Date) value).getTime());
+        } else if (value instanceof InetAddress) {
+            return InetAddressUtils.str((InetAddress) value);
+        } else if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        return Objects.toString(value);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object fromString(final Class<?> type, final String value) {
+        if (String.class.equals(type)) {
+            return value;
+        } else if (Integer.class.equals(type)) {
+            return Integer.valueOf(value);
+        } else if (Long.class.equals(type)) {
+            return Long.valueOf(value);
+        } else if (Short.class.equals(type)) {
+            return Short.valueOf(value);
+        } else if (Byte.class.equals(type)) {
+            return Byte.valueOf(value);
+        } else if (Double.class.equals(type)) {
+            return Double.valueOf(value);
+        } else if (Float.class.equals(type)) {
+            return Float.valueOf(value);
+        } else if (BigDecimal.class.equals(type)) {
+            return new BigDecimal(value);
+        } else if (BigInteger.class.equals(type)) {
+            return new BigInteger(value);
+        } else if (Boolean.class.equals(type)) {
+            return Boolean.valueOf(value);
+        } else if (Character.class.equals(type) && value.length() == 1) {
+            return value.charAt(0);
+        } else if (Date.class.isAssignableFrom(type)) {
+            final int nanos = value.indexOf(':');
+            if (nanos >= 0) {
+                final Timestamp timestamp = new Timestamp(Long.parseLong(value.substring(0, nanos)));
+                timestamp.setNanos(Integer.parseInt(value.substring(nanos + 1)));
+                return timestamp;
+            }
+            return new Date(Long.parseLong(value));
+        } else if (InetAddress.class.isAssignableFrom(type)) {
+            return InetAddressUtils.addr(value);
+        } else if (type.isEnum()) {
+            return Enum.valueOf((Class<Enum>) type, value);
+        }
+        throw new IllegalArgumentException("Unsupported type " + type.getName());
+    }
+}
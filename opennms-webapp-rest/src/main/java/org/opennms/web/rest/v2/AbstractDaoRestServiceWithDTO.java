@@ -21,14 +21,20 @@
  */
 package org.opennms.web.rest.v2;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
 import java.io.Serializable;
+import java.io.Writer;
 import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -50,8 +56,10 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.apache.cxf.jaxrs.ext.search.SearchBean;
@@ -59,16 +67,28 @@ import org.apache.cxf.jaxrs.ext.search.SearchCondition;
 import org.apache.cxf.jaxrs.ext.search.SearchConditionVisitor;
 import org.apache.cxf.jaxrs.ext.search.SearchContext;
 import org.apache.cxf.jaxrs.ext.search.SearchParseException;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.hibernate.FlushMode;
 import org.hibernate.HibernateException;
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.criterion.Projections;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.AbstractEntityPersister;
 import org.opennms.core.config.api.JaxbListWrapper;
+import org.opennms.core.criteria.Alias.JoinType;
 import org.opennms.core.criteria.Criteria;
 import org.opennms.core.criteria.CriteriaBuilder;
 import org.opennms.core.criteria.Order;
+import org.opennms.core.criteria.restrictions.Restriction;
 import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.core.xml.JacksonUtils;
 import org.opennms.netmgt.dao.api.OnmsDao;
+import org.opennms.netmgt.dao.hibernate.HibernateCriteriaConverter;
 import org.opennms.netmgt.events.api.EventProxy;
 import org.opennms.netmgt.events.api.EventProxyException;
 import org.opennms.netmgt.xml.event.Event;
@@ -79,6 +99,7 @@ import org.opennms.web.rest.support.CriteriaBuilderSearchVisitor;
 import org.opennms.web.rest.support.DateCollection;
 import org.opennms.web.rest.support.FloatCollection;
 import org.opennms.web.rest.support.IntegerCollection;
+import org.opennms.web.rest.support.KeysetCursor;
 import org.opennms.web.rest.support.LongCollection;
 import org.opennms.web.rest.support.MultivaluedMapImpl;
 import org.opennms.web.rest.support.SearchProperty;
@@ -90,13 +111,18 @@ import org.opennms.web.utils.QueryParametersBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.helpers.MessageFormatter;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
 import org.springframework.orm.hibernate3.HibernateCallback;
 import org.springframework.orm.hibernate3.HibernateTemplate;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
 import com.googlecode.concurentlocks.ReadWriteUpdateLock;
 import com.googlecode.concurentlocks.ReentrantReadWriteUpdateLock;
 
@@ -133,6 +159,54 @@ public abstract class AbstractDaoRestServiceWithDTO<T,D,Q,K extends Serializable
 
     protected static final int DEFAULT_LIMIT = 10;
 
+    /**
+     * Query parameter enabling keyset pagination. The value is the cursor returned
+     * in the {@code next} link of the previous page, or empty for the first page.
+     */
+    public static final String CURSOR_PARAM = "cursor";
+
+    /**
+     * Query parameter selecting how the total count is computed, see {@link TotalCount}.
+     */
+    public static final String TOTAL_COUNT_PARAM = "totalCount";
+
+    public static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
+    /**
+     * Number of rows fetched per round trip and kept in the session while exporting.
+     */
+    private static final int EXPORT_BATCH_SIZE = 500;
+
+    /**
+     * Number of identifiers per bulk statement.
+     */
+    private static final int BULK_BATCH_SIZE = 1000;
+
+    private static final ObjectMapper EXPORT_MAPPER = JacksonUtils.createDefaultObjectMapper();
+
+    /**
+     * How the total count of a collection request is computed.
+     */
+    protected enum TotalCount {
+        /** Count the matching rows */
+        EXACT,
+        /** Use the statistics of the database for unrestricted requests, count otherwise */
+        ESTIMATED,
+        /** Do not count */
+        NONE;
+
+        protected static TotalCount fromParameter(final String value) {
+            if (Strings.isNullOrEmpty(value)) {
+                return EXACT;
+            }
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (final IllegalArgumentException e) {
+                throw getException(Status.BAD_REQUEST, "Invalid value for {}: {}", TOTAL_COUNT_PARAM, value);
+            }
+        }
+    }
+
     protected abstract OnmsDao<T,K> getDao();
     protected abstract Class<T> getDaoClass();
     protected abstract Class<Q> getQueryBeanClass();
@@ -247,18 +321,60 @@ public abstract class AbstractDaoRestServiceWithDTO<T,D,Q,K extends Serializable
     @GET
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MediaType.APPLICATION_ATOM_XML})
     public Response get(@Context final UriInfo uriInfo, @Context final SearchContext searchContext) {
+        final MultivaluedMap<String, String> params = uriInfo.getQueryParameters();
+        final TotalCount totalCountMode = TotalCount.fromParameter(params.getFirst(TOTAL_COUNT_PARAM));
+        final boolean keyset = params.containsKey(CURSOR_PARAM);
+
         Criteria crit = getCriteria(uriInfo, searchContext);
+        // The total is counted without the ordering, the paging and the cursor restriction
+        final Criteria countCrit = crit.clone();
+        countCrit.setLimit(null);
+        countCrit.setOffset(null);
+        countCrit.setOrders(new ArrayList<Order>());
+
+        String cursor = null;
+        List<Order> orders = null;
+        if (keyset) {
+            if (crit.getOffset() != null) {
+                throw getException(Status.BAD_REQUEST, "The offset parameter can not be combined with a cursor");
+            }
+            orders = KeysetCursor.withTiebreaker(crit.getOrders(), getIdProperty());
+            try {
+                KeysetCursor.validate(orders, getDaoClass());
+            } catch (final IllegalArgumentException e) {
+                throw getException(Status.BAD_REQUEST, e.getMessage());
+            }
+            crit.setOrders(orders);
+            cursor = params.getFirst(CURSOR_PARAM);
+            if (!Strings.isNullOrEmpty(cursor)) {
+                final Restriction after;
+                try {
+                    after = KeysetCursor.decode(cursor, orders, getDaoClass()).toRestriction();
+                } catch (final IllegalArgumentException e) {
+                    throw getException(Status.BAD_REQUEST, e.getMessage());
+                }
+                if (after == null) {
+                    return Response.status(Status.NO_CONTENT).build();
+                }
+                crit.addRestriction(after);
+            }
+        }
+
         final List<T> coll = getDao().findMatching(crit);
         if (coll == null || coll.size() < 1) {
             return Response.status(Status.NO_CONTENT).build();
         } else {
-            Integer offset = crit.getOffset();
-
-            // Remove limit, offset and ordering when fetching count
-            crit.setLimit(null);
-            crit.setOffset(null);
-            crit.setOrders(new ArrayList<Order>());
-            int totalCount = getDao().countMatching(crit);
+            Integer offset = keyset ? null : crit.getOffset();
+            final Integer limit = crit.getLimit();
+            final boolean lastPage = limit == null || coll.size() < limit;
+
+            final Integer totalCount;
+            if (lastPage && Strings.isNullOrEmpty(cursor)) {
+                // The whole result set ends on this page, counting it again is not necessary
+                totalCount = (offset == null ? 0 : offset) + coll.size();
+            } else {
+                totalCount = getTotalCount(countCrit, totalCountMode);
+            }
 
             // Map the entities to the corresponding DTOs
             final List<D> collOfDtos = coll.stream()
@@ -268,12 +384,77 @@ public abstract class AbstractDaoRestServiceWithDTO<T,D,Q,K extends Serializable
             list.setTotalCount(totalCount);
             list.setOffset(offset);
 
-            // Make sure that offset is set to a numeric value when setting the Content-Range header
-            offset = (offset == null ? 0 : offset);
-            return Response.ok(list).header("Content-Range", String.format("items %d-%d/%d", offset, offset + coll.size() - 1, totalCount)).build();
+            final ResponseBuilder response = Response.ok(list);
+            if (keyset) {
+                if (!lastPage) {
+                    final String next = KeysetCursor.after(orders, coll.get(coll.size() - 1)).encode();
+                    response.link(uriInfo.getRequestUriBuilder().replaceQueryParam(CURSOR_PARAM, next).build(), "next");
+                }
+            } else {
+                // Make sure that offset is set to a numeric value when setting the Content-Range header
+                offset = (offset == null ? 0 : offset);
+                response.header("Content-Range", String.format("items %d-%d/%s", offset, offset + coll.size() - 1, totalCount == null ? "*" : totalCount.toString()));
+            }
+            return response.build();
+        }
+    }
+
+    /**
+     * Counts the matching entities according to the requested mode.
+     *
+     * @return the total, or null if it was not requested
+     */
+    private Integer getTotalCount(final Criteria crit, final TotalCount mode) {
+        switch (mode) {
+            case NONE:
+                return null;
+            case ESTIMATED:
+                // The planner statistics only describe the table as a whole
+                if (crit.getRestrictions().isEmpty() && crit.getAliases().stream().allMatch(a -> a.getType() == JoinType.LEFT_JOIN)) {
+                    final Integer estimate = getEstimatedRowCount();
+                    if (estimate != null) {
+                        return estimate;
+                    }
+                }
+                return getDao().countMatching(crit);
+            case EXACT:
+            default:
+                return getDao().countMatching(crit);
         }
     }
 
+    /**
+     * @return the number of rows of the entity table according to the
+     *   statistics of the database, or null if there are none
+     */
+    private Integer getEstimatedRowCount() {
+        final ClassMetadata metadata = m_sessionFactory.getClassMetadata(getDaoClass());
+        if (!(metadata instanceof AbstractEntityPersister)) {
+            return null;
+        }
+        final String tableName = ((AbstractEntityPersister)metadata).getTableName();
+        try {
+            final Number estimate = new HibernateTemplate(m_sessionFactory).execute(session -> (Number)session
+                    .createSQLQuery("SELECT reltuples FROM pg_class WHERE oid = to_regclass(:table)")
+                    .setParameter("table", tableName)
+                    .uniqueResult());
+            // reltuples is negative (or zero) for tables which have never been analyzed
+            return estimate != null && estimate.longValue() > 0 ? (int)Math.min(Integer.MAX_VALUE, Math.round(estimate.doubleValue())) : null;
+        } catch (final DataAccessException e) {
+            LOG.debug("Unable to estimate the row count of {}: {}", tableName, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return the name of the identifier property of the entity, used to
+     *   make the ordering unique when paginating with a cursor
+     */
+    protected String getIdProperty() {
+        final ClassMetadata metadata = m_sessionFactory.getClassMetadata(getDaoClass());
+        return metadata != null && metadata.getIdentifierPropertyName() != null ? metadata.getIdentifierPropertyName() : "id";
+    }
+
     @GET
     @Path("count")
     @Produces({MediaType.TEXT_PLAIN})
@@ -281,6 +462,64 @@ public abstract class AbstractDaoRestServiceWithDTO<T,D,Q,K extends Serializable
         return Response.ok(String.valueOf(getDao().countMatching(getCriteria(uriInfo, searchContext)))).build();
     }
 
+    /**
+     * Streams all matching entities as newline-delimited JSON.
+     *
+     * The rows are read with a forward-only cursor from a dedicated read-only session
+     * that is cleared after every batch, so that the memory used does not depend on
+     * the number of exported entities. The {@code limit} and {@code offset} parameters
+     * are only applied when given explicitly.
+     */
+    @GET
+    @Path("export")
+    @Produces({NDJSON_MEDIA_TYPE})
+    public Response export(@Context final UriInfo uriInfo, @Context final SearchContext searchContext) {
+        final Criteria crit = getCriteria(uriInfo, searchContext);
+        if (!uriInfo.getQueryParameters().containsKey("limit")) {
+            crit.setLimit(null);
+        }
+        // Collection fetches would duplicate the root entities of a scrolled result
+        crit.setFetchTypes(Collections.emptyList());
+
+        final StreamingOutput output = out -> {
+            final Session session = m_sessionFactory.openSession();
+            try {
+                session.setDefaultReadOnly(true);
+                session.setFlushMode(FlushMode.MANUAL);
+                final Transaction tx = session.beginTransaction();
+                try {
+                    final org.hibernate.Criteria hibernateCriteria = new HibernateCriteriaConverter().convert(crit, session);
+                    hibernateCriteria.setFetchSize(EXPORT_BATCH_SIZE);
+                    hibernateCriteria.setReadOnly(true);
+
+                    final Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                    final ScrollableResults results = hibernateCriteria.scroll(ScrollMode.FORWARD_ONLY);
+                    try {
+                        int count = 0;
+                        while (results.next()) {
+                            @SuppressWarnings("unchecked")
+                            final T entity = (T)results.get(0);
+                            writer.write(EXPORT_MAPPER.writeValueAsString(mapEntityToDTO(entity)));
+                            writer.write('\n');
+                            if (++count % EXPORT_BATCH_SIZE == 0) {
+                                writer.flush();
+                                session.clear();
+                            }
+                        }
+                    } finally {
+                        results.close();
+                    }
+                    writer.flush();
+                } finally {
+                    tx.rollback();
+                }
+            } finally {
+                session.close();
+            }
+        };
+        return Response.ok(output, NDJSON_MEDIA_TYPE).build();
+    }
+
     @GET
     @Path("properties")
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
@@ -463,6 +702,11 @@ public abstract class AbstractDaoRestServiceWithDTO<T,D,Q,K extends Serializable
         writeLock();
         try {
             Criteria crit = getCriteria(uriInfo, searchContext);
+            final Map<String, Object> values = getBulkUpdateValues(params);
+            if (values != null) {
+                final int updated = executeBulk(crit, "update %s set " + values.keySet().stream().map(p -> p + " = :" + p).collect(Collectors.joining(", ")) + " where %s in (:ids)", values);
+                return updated > 0 ? Response.noContent().build() : Response.status(Status.NOT_FOUND).build();
+            }
             final List<T> objects = getDao().findMatching(crit);
             if (objects == null || objects.size() == 0) {
                 return Response.status(Status.NOT_FOUND).build();
@@ -513,6 +757,10 @@ public abstract class AbstractDaoRestServiceWithDTO<T,D,Q,K extends Serializable
         writeLock();
         try {
             Criteria crit = getCriteria(uriInfo, searchContext);
+            if (isBulkDeleteSupported()) {
+                final int deleted = executeBulk(crit, "delete from %s where %s in (:ids)", Collections.emptyMap());
+                return deleted > 0 ? Response.noContent().build() : Response.status(Status.NOT_FOUND).build();
+            }
             final List<T> objects = getDao().findMatching(crit);
             if (objects == null || objects.size() == 0) {
                 return Response.status(Status.NOT_FOUND).build();
@@ -542,6 +790,101 @@ public abstract class AbstractDaoRestServiceWithDTO<T,D,Q,K extends Serializable
         }
     }
 
+    /**
+     * <p>Properties of the entity which {@link #updateMany} may change for all
+     * matching entities with a single bulk statement instead of loading each entity
+     * and calling {@link #doUpdateProperties}.</p>
+     *
+     * <p>Only properties whose update does not require any of the side effects of
+     * {@link #doUpdateProperties} may be listed. Requests touching any other
+     * parameter are handled entity by entity.</p>
+     *
+     * @return the names of the properties, empty by default
+     */
+    protected Set<String> getBulkUpdateProperties() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * <p>Whether {@link #deleteMany} may remove all matching entities with a single
+     * bulk statement instead of loading each entity and calling {@link #doDelete}.</p>
+     *
+     * <p>Bulk statements bypass Hibernate cascades and interceptors, only entities
+     * without dependent rows or side effects on deletion qualify.</p>
+     *
+     * @return false by default
+     */
+    protected boolean isBulkDeleteSupported() {
+        return false;
+    }
+
+    /**
+     * Converts the parameters of a bulk update to the values of the entity properties.
+     *
+     * @return the values keyed by property name, or null if the update can not be performed in bulk
+     */
+    private Map<String, Object> getBulkUpdateValues(final MultivaluedMapImpl params) {
+        final Set<String> bulkProperties = getBulkUpdateProperties();
+        if (bulkProperties.isEmpty() || params.isEmpty()) {
+            return null;
+        }
+        final Map<String, String> propertyNames = new LinkedHashMap<>();
+        for (final String key : params.keySet()) {
+            final String propertyName = RestUtils.convertNameToPropertyName(key);
+            if (!bulkProperties.contains(propertyName)) {
+                return null;
+            }
+            propertyNames.put(key, propertyName);
+        }
+
+        // Let the bean conversion rules of the per-entity update parse the values
+        final T prototype = BeanUtils.instantiateClass(getDaoClass());
+        RestUtils.setBeanProperties(prototype, params);
+        final BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(prototype);
+        final Map<String, Object> values = new LinkedHashMap<>();
+        for (final String propertyName : propertyNames.values()) {
+            values.put(propertyName, wrapper.getPropertyValue(propertyName));
+        }
+        return values;
+    }
+
+    /**
+     * Executes a bulk statement for the entities matching the given criteria.
+     *
+     * The identifiers of the matching entities are selected with the same criteria
+     * as the per-entity path, including ordering, limit and offset, and the statement
+     * is then executed for batches of identifiers.
+     *
+     * @param statement the HQL statement, formatted with the entity name and the
+     *   identifier property and expecting the identifiers in the {@code ids} parameter
+     * @param values additional named parameters of the statement
+     * @return the number of affected entities
+     */
+    private int executeBulk(final Criteria crit, final String statement, final Map<String, Object> values) {
+        final ClassMetadata metadata = m_sessionFactory.getClassMetadata(getDaoClass());
+        final String hql = String.format(statement, metadata.getEntityName(), metadata.getIdentifierPropertyName());
+        return new HibernateTemplate(m_sessionFactory).execute(session -> {
+            final org.hibernate.Criteria hibernateCriteria = new HibernateCriteriaConverter().convert(crit, session);
+            hibernateCriteria.setProjection(Projections.id());
+            final List<?> ids = hibernateCriteria.list();
+
+            // Make sure pending changes are written before the statement bypasses the session
+            session.flush();
+            int affected = 0;
+            for (final List<?> batch : Lists.partition(ids, BULK_BATCH_SIZE)) {
+                final Query query = session.createQuery(hql);
+                for (final Map.Entry<String, Object> value : values.entrySet()) {
+                    query.setParameter(value.getKey(), value.getValue(), metadata.getPropertyType(value.getKey()));
+                }
+                query.setParameterList("ids", batch);
+                affected += query.executeUpdate();
+            }
+            // Entities loaded before the statement no longer reflect the database
+            session.clear();
+            return affected;
+        });
+    }
+
     public static void applyLimitOffsetOrderBy(final MultivaluedMap<String,String> p, final CriteriaBuilder builder) {
         applyLimitOffsetOrderBy(p, builder, DEFAULT_LIMIT);
     }
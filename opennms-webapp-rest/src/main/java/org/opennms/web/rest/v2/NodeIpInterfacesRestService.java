@@ -22,6 +22,7 @@
 package org.opennms.web.rest.v2;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -150,6 +151,12 @@ public class NodeIpInterfacesRestService extends AbstractNodeDependentRestServic
         return Response.noContent().build();
     }
 
+    @Override
+    protected Set<String> getBulkUpdateProperties() {
+        // Changing the management flag has no side effects
+        return Collections.singleton("isManaged");
+    }
+
     @Override
     protected void doDelete(SecurityContext securityContext, UriInfo uriInfo, OnmsIpInterface intf) {
         intf.getNode().getIpInterfaces().remove(intf);
@@ -0,0 +1,267 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.web.rest.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.opennms.core.criteria.Order;
+import org.opennms.core.criteria.restrictions.AllRestriction;
+import org.opennms.core.criteria.restrictions.AnyRestriction;
+import org.opennms.core.criteria.restrictions.EqRestriction;
+import org.opennms.core.criteria.restrictions.GtRestriction;
+import org.opennms.core.criteria.restrictions.LtRestriction;
+import org.opennms.core.criteria.restrictions.NotNullRestriction;
+import org.opennms.core.criteria.restrictions.NullRestriction;
+import org.opennms.core.criteria.restrictions.Restriction;
+import org.opennms.core.criteria.restrictions.Restrictions;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.NullValueInNestedPathException;
+
+public class KeysetCursorTest {
+
+    public enum Color { RED, GREEN, BLUE }
+
+    public static class Row {
+        private final Integer m_id;
+        private final String m_label;
+        private final Color m_color;
+        private final Date m_time;
+        private final Row m_parent;
+
+        public Row(final Integer id, final String label, final Color color, final Date time, final Row parent) {
+            m_id = id;
+            m_label = label;
+            m_color = color;
+            m_time = time;
+            m_parent = parent;
+        }
+
+        public Integer getId() {
+            return m_id;
+        }
+
+        public String getLabel() {
+            return m_label;
+        }
+
+        public Color getColor() {
+            return m_color;
+        }
+
+        public Date getTime() {
+            return m_time;
+        }
+
+        public Row getParent() {
+            return m_parent;
+        }
+
+        @Override
+        public String toString() {
+            return "Row[" + m_id + "]";
+        }
+    }
+
+    @Test
+    public void shouldAppendTheIdentifier() {
+        assertEquals(Arrays.asList(Order.desc("label"), Order.asc("id")),
+                KeysetCursor.withTiebreaker(Arrays.asList(Order.desc("label")), "id"));
+        assertEquals(Arrays.asList(Order.desc("id"), Order.asc("label")),
+                KeysetCursor.withTiebreaker(Arrays.asList(Order.desc("id"), Order.asc("label")), "id"));
+    }
+
+    @Test
+    public void shouldRoundTripValues() {
+        final List<Order> orders = Arrays.asList(Order.asc("label"), Order.desc("color"), Order.asc("time"), Order.asc("parent.label"), Order.asc("id"));
+        final Row row = new Row(42, "a|b~\u00e9 %2F", Color.GREEN, new Date(1234567890123L), null);
+
+        final KeysetCursor cursor = KeysetCursor.after(orders, row);
+        final KeysetCursor decoded = KeysetCursor.decode(cursor.encode(), orders, Row.class);
+
+        assertEquals(Arrays.asList("a|b~\u00e9 %2F", Color.GREEN, new Date(1234567890123L), null, 42), decoded.getValues());
+        assertEquals(cursor.toRestriction(), decoded.toRestriction());
+    }
+
+    @Test
+    public void shouldKeepTimestampPrecision() {
+        final List<Order> orders = Arrays.asList(Order.asc("time"), Order.asc("id"));
+        final Timestamp time = new Timestamp(1234567890123L);
+        time.setNanos(123456000);
+
+        final String cursor = KeysetCursor.after(orders, new Row(1, null, null, time, null)).encode();
+        assertEquals(time, KeysetCursor.decode(cursor, orders, Row.class).getValues().get(0));
+    }
+
+    @Test
+    public void shouldRejectInvalidCursors() {
+        final List<Order> orders = Arrays.asList(Order.asc("label"), Order.asc("id"));
+        final String cursor = KeysetCursor.after(orders, new Row(1, "a", null, null, null)).encode();
+
+        assertInvalid(cursor, Arrays.asList(Order.desc("label"), Order.asc("id")));
+        assertInvalid(cursor, Arrays.asList(Order.asc("id")));
+        assertInvalid("not a cursor!", orders);
+        assertInvalid(KeysetCursor.after(orders, new Row(1, "a", null, null, null)).encode().substring(4), orders);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void shouldRejectUnknownProperties() {
+        KeysetCursor.validate(Arrays.asList(Order.asc("snmpInterface.ifIndex")), Row.class);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void shouldRejectUnsupportedTypes() {
+        KeysetCursor.validate(Arrays.asList(Order.asc("parent")), Row.class);
+    }
+
+    @Test
+    public void shouldBuildLexicographicRestriction() {
+        final List<Order> orders = Arrays.asList(Order.desc("label"), Order.asc("id"));
+        assertEquals(Restrictions.or(Restrictions.lt("label", "a"), Restrictions.and(Restrictions.eq("label", "a"),
+                Restrictions.or(Restrictions.gt("id", 7), Restrictions.isNull("id")))),
+                KeysetCursor.after(orders, new Row(7, "a", null, null, null)).toRestriction());
+
+        // Nothing sorts after a NULL in ascending order
+        assertNull(KeysetCursor.after(Arrays.asList(Order.asc("label")), new Row(7, null, null, null, null)).toRestriction());
+    }
+
+    /**
+     * Walks through the rows page by page and verifies that every row is returned
+     * exactly once and in order, including rows with NULL values and duplicates.
+     */
+    @Test
+    public void shouldPageThroughAllRows() {
+        final Row parent = new Row(100, "p", null, null, null);
+        final List<Row> rows = new ArrayList<>();
+        final String[] labels = { "b", null, "a", "b", null, "c", "a", "b" };
+        final Color[] colors = { Color.RED, null, Color.BLUE, Color.RED, Color.GREEN, null, Color.BLUE, Color.GREEN };
+        for (int i = 0; i < labels.length; i++) {
+            rows.add(new Row(i + 1, labels[i], colors[i], i % 3 == 0 ? null : new Date(1000L * (i % 2)), i % 2 == 0 ? parent : null));
+        }
+
+        for (final List<Order> requested : Arrays.asList(
+                Arrays.asList(Order.asc("label")),
+                Arrays.asList(Order.desc("label")),
+                Arrays.asList(Order.asc("color"), Order.desc("label")),
+                Arrays.asList(Order.desc("time"), Order.asc("parent.label"), Order.desc("color")),
+                Arrays.<Order>asList())) {
+            final List<Order> orders = KeysetCursor.withTiebreaker(requested, "id");
+            final List<Row> expected = rows.stream().sorted(comparator(orders)).collect(Collectors.toList());
+
+            for (int pageSize = 1; pageSize <= 3; pageSize++) {
+                final List<Row> actual = new ArrayList<>();
+                Restriction after = null;
+                boolean first = true;
+                while (first || after != null) {
+                    final Restriction restriction = after;
+                    final boolean all = first;
+                    final List<Row> page = rows.stream()
+                            .filter(r -> all || matches(restriction, r))
+                            .sorted(comparator(orders))
+                            .limit(pageSize)
+                            .collect(Collectors.toList());
+                    if (page.isEmpty()) {
+                        break;
+                    }
+                    actual.addAll(page);
+                    final String cursor = KeysetCursor.after(orders, page.get(page.size() - 1)).encode();
+                    after = KeysetCursor.decode(cursor, orders, Row.class).toRestriction();
+                    first = false;
+                }
+                assertEquals("ordering " + orders + ", page size " + pageSize, expected, actual);
+            }
+        }
+    }
+
+    private static void assertInvalid(final String cursor, final List<Order> orders) {
+        try {
+            KeysetCursor.decode(cursor, orders, Row.class);
+            fail("Cursor should have been rejected: " + cursor);
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static Object getValue(final Row row, final String attribute) {
+        try {
+            return new BeanWrapperImpl(row).getPropertyValue(attribute);
+        } catch (final NullValueInNestedPathException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Sorts like PostgreSQL: NULLs last when ascending, first when descending.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Comparator<Row> comparator(final List<Order> orders) {
+        return (a, b) -> {
+            for (final Order order : orders) {
+                final Comparable va = (Comparable)getValue(a, order.getAttribute());
+                final Comparable vb = (Comparable)getValue(b, order.getAttribute());
+                int result;
+                if (va == null || vb == null) {
+                    result = va == vb ? 0 : (va == null ? 1 : -1);
+                } else {
+                    result = va.compareTo(vb);
+                }
+                if (result != 0) {
+                    return order.asc() ? result : -result;
+                }
+            }
+            return 0;
+        };
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static boolean matches(final Restriction restriction, final Row row) {
+        if (restriction instanceof AllRestriction) {
+            return ((AllRestriction)restriction).getRestrictions().stream().allMatch(r -> matches(r, row));
+        } else if (restriction instanceof AnyRestriction) {
+            return ((AnyRestriction)restriction).getRestrictions().stream().anyMatch(r -> matches(r, row));
+        } else if (restriction instanceof NullRestriction) {
+            return getValue(row, ((NullRestriction)restriction).getAttribute()) == null;
+        } else if (restriction instanceof NotNullRestriction) {
+            return getValue(row, ((NotNullRestriction)restriction).getAttribute()) != null;
+        } else if (restriction instanceof EqRestriction) {
+            final Comparable value = (Comparable)getValue(row, ((EqRestriction)restriction).getAttribute());
+            return value != null && value.compareTo(((EqRestriction)restriction).getValue()) == 0;
+        } else if (restriction instanceof GtRestriction) {
+            final Comparable value = (Comparable)getValue(row, ((GtRestriction)restriction).getAttribute());
+            return value != null && value.compareTo(((GtRestriction)restriction).getValue()) > 0;
+        } else if (restriction instanceof LtRestriction) {
+            final Comparable value = (Comparable)getValue(row, ((LtRestriction)restriction).getAttribute());
+            return value != null && value.compareTo(((LtRestriction)restriction).getValue()) < 0;
+        }
+        throw new IllegalArgumentException("Unexpected restriction " + restriction);
+    }
+}
@@ -22,7 +22,18 @@
 package org.opennms.web.rest.v2;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.ws.rs.core.MediaType;
+
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -33,6 +44,8 @@ import org.opennms.core.test.rest.AbstractSpringJerseyRestTestCase;
 import org.opennms.test.JUnitConfigurationEnvironment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.web.WebAppConfiguration;
 
@@ -140,4 +153,111 @@ public class IpInterfaceRestServiceIT extends AbstractSpringJerseyRestTestCase {
         final JSONObject response = new org.json.JSONObject(jsonResponse);
         assertEquals(2, response.getInt("count"));
     }
-}
\ No newline at end of file
+
+    @Test
+    @JUnitTemporaryDatabase
+    public void testKeysetPagination() throws Exception {
+        createIpInterfaces();
+
+        final Set<Integer> ids = new HashSet<>();
+        MockHttpServletResponse response = get("/ipinterfaces", "limit=3&cursor=", MediaType.APPLICATION_JSON);
+        assertEquals(200, response.getStatus());
+        JSONObject page = new JSONObject(response.getContentAsString());
+        assertEquals(3, page.getInt("count"));
+        assertEquals(4, page.getInt("totalCount"));
+        collectIds(page, ids);
+
+        // The next page is selected by the cursor of the link
+        final String link = (String) response.getHeaderValue("Link");
+        final Matcher cursor = Pattern.compile("cursor=([^&>]+)").matcher(link);
+        assertTrue(link, link.contains("rel=\"next\"") && cursor.find());
+
+        response = get("/ipinterfaces", "limit=3&cursor=" + cursor.group(1), MediaType.APPLICATION_JSON);
+        assertEquals(200, response.getStatus());
+        page = new JSONObject(response.getContentAsString());
+        assertEquals(1, page.getInt("count"));
+        collectIds(page, ids);
+        // The last page has no next link
+        assertNull(response.getHeaderValue("Link"));
+        assertEquals(4, ids.size());
+
+        // Cursors can not be combined with an offset
+        assertEquals(400, get("/ipinterfaces", "limit=3&offset=3&cursor=", MediaType.APPLICATION_JSON).getStatus());
+        // Malformed cursors are rejected
+        assertEquals(400, get("/ipinterfaces", "limit=3&cursor=not-a-cursor", MediaType.APPLICATION_JSON).getStatus());
+    }
+
+    @Test
+    @JUnitTemporaryDatabase
+    public void testExport() throws Exception {
+        createIpInterfaces();
+
+        final MockHttpServletResponse response = get("/ipinterfaces/export", "", AbstractDaoRestServiceWithDTO.NDJSON_MEDIA_TYPE);
+        assertEquals(200, response.getStatus());
+
+        final Set<String> addresses = new HashSet<>();
+        for (final String line : response.getContentAsString().split("\n")) {
+            addresses.add(new JSONObject(line).getString("ipAddress"));
+        }
+        assertEquals(new HashSet<>(Arrays.asList("10.0.0.1", "10.0.0.2", "10.0.0.3", "10.0.0.4")), addresses);
+
+        // Explicit limits are applied
+        assertEquals(2, get("/ipinterfaces/export", "limit=2", AbstractDaoRestServiceWithDTO.NDJSON_MEDIA_TYPE).getContentAsString().split("\n").length);
+    }
+
+    @Test
+    @JUnitTemporaryDatabase
+    public void testBulkUpdateAndDelete() throws Exception {
+        createIpInterfaces();
+
+        // The management flag is updated with a single statement
+        sendPut("/nodes/1/ipinterfaces", "isManaged=U", 204);
+        final JSONArray ifaces = new JSONObject(sendRequest(GET, "/nodes/1/ipinterfaces", 200)).getJSONArray("ipInterface");
+        assertEquals(3, ifaces.length());
+        for (int i = 0; i < ifaces.length(); i++) {
+            assertEquals("U", ifaces.getJSONObject(i).getString("isManaged"));
+        }
+        // Interfaces of other nodes are not touched
+        assertEquals("M", new JSONObject(sendRequest(GET, "/nodes/2/ipinterfaces", 200)).getJSONArray("ipInterface").getJSONObject(0).getString("isManaged"));
+
+        sendRequest(DELETE, "/nodes/1/ipinterfaces", 204);
+        sendRequest(GET, "/nodes/1/ipinterfaces", 204);
+        sendRequest(DELETE, "/nodes/1/ipinterfaces", 404);
+        assertEquals(1, new JSONObject(sendRequest(GET, "/ipinterfaces", 200)).getInt("count"));
+    }
+
+    /**
+     * Creates two nodes, the first with three IP interfaces and the second with one.
+     */
+    private void createIpInterfaces() throws Exception {
+        for (int nodeId = 1; nodeId <= 2; nodeId++) {
+            sendPost("/nodes", "<node type=\"A\" label=\"TestMachine" + nodeId + "\" foreignSource=\"JUnit\" foreignId=\"TestMachine" + nodeId + "\">" +
+                    "<location>Default</location>" +
+                    "<labelSource>H</labelSource>" +
+                    "</node>", 201);
+        }
+        for (int i = 1; i <= 4; i++) {
+            final int nodeId = i <= 3 ? 1 : 2;
+            sendPost("/nodes/" + nodeId + "/ipinterfaces", "<ipInterface isManaged=\"M\">" +
+                    "<ipAddress>10.0.0." + i + "</ipAddress>" +
+                    "<nodeId>" + nodeId + "</nodeId>" +
+                    "</ipInterface>", 201);
+        }
+    }
+
+    private MockHttpServletResponse get(final String url, final String query, final String accept) throws Exception {
+        final MockHttpServletRequest request = createRequest(servletContext, GET, url, parseParamData(query), getUser(), getUserRoles());
+        request.setQueryString(query);
+        request.addHeader(ACCEPT, accept);
+        final MockHttpServletResponse response = createResponse();
+        dispatch(request, response);
+        return response;
+    }
+
+    private static void collectIds(final JSONObject page, final Set<Integer> ids) {
+        final JSONArray ifaces = page.getJSONArray("ipInterface");
+        for (int i = 0; i < ifaces.length(); i++) {
+            assertTrue("Duplicate interface on pages", ids.add(ifaces.getJSONObject(i).getInt("id")));
+        }
+    }
+}
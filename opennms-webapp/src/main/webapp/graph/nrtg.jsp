@@ -105,6 +105,123 @@ pageContext.setAttribute("resourceId", resourceId);
         return "<%= baseHref %>";
     }
 
+    /*
+     * Backshift polls the starter for new measurement sets. The measurement sets are collected
+     * at the interval of the graph instead and pushed over a server-sent event stream per
+     * collection task, the polls are answered from that stream.
+     */
+    var nrtgPollingInterval = defaultPollingInterval,
+            nrtgStreams = {};
+
+    function getQueryParameter(query, name) {
+        var match = new RegExp('[?&]' + name + '=([^&]*)').exec('&' + query);
+        return match ? decodeURIComponent(match[1]) : null;
+    }
+
+    function getNrtgStream(collectionTaskId) {
+        if (!nrtgStreams[collectionTaskId]) {
+            nrtgStreams[collectionTaskId] = {
+                measurementSets: [],
+                callback: null,
+                timer: null,
+                source: null,
+                open: function () {
+                    var self = this;
+                    if (!this.source) {
+                        this.source = new EventSource(getBaseHref() + 'nrt/starter?nrtCollectionTaskId='
+                                + encodeURIComponent(collectionTaskId) + '&stream=true');
+                        this.source.onmessage = function (event) {
+                            Array.prototype.push.apply(self.measurementSets, JSON.parse(event.data).measurement_sets);
+                            self.flush();
+                        };
+                    }
+                },
+                close: function () {
+                    if (this.source) {
+                        this.source.close();
+                        this.source = null;
+                    }
+                    this.flush();
+                },
+                poll: function (callback) {
+                    var self = this;
+                    this.open();
+                    this.callback = callback;
+                    if (this.measurementSets.length > 0) {
+                        this.flush();
+                    } else {
+                        // Answer with what was pushed until then, if the collection is late
+                        this.timer = setTimeout(function () {
+                            self.flush();
+                        }, nrtgPollingInterval);
+                    }
+                },
+                cancel: function () {
+                    clearTimeout(this.timer);
+                    this.callback = null;
+                },
+                flush: function () {
+                    var callback = this.callback,
+                            measurementSets = this.measurementSets;
+                    if (callback) {
+                        this.cancel();
+                        this.measurementSets = [];
+                        callback(measurementSets);
+                    }
+                }
+            };
+        }
+        return nrtgStreams[collectionTaskId];
+    }
+
+    function updateNrtgStreams(data) {
+        jQuery.each(nrtgStreams, function (collectionTaskId, stream) {
+            if (data.unsubscribe) {
+                stream.close();
+            }
+            jQuery.ajax({
+                url: getBaseHref() + 'nrt/starter',
+                data: jQuery.extend({nrtCollectionTaskId: collectionTaskId}, data)
+            });
+        });
+    }
+
+    // Collect at the interval of the graph
+    jQuery.ajaxPrefilter(function (options) {
+        if (options.url.indexOf('nrt/starter') < 0) {
+            return;
+        }
+        var data = typeof options.data === 'string' ? options.data : '',
+                query = (options.url.split('?')[1] || '') + '&' + data;
+        if (getQueryParameter(query, 'resourceId') !== null && getQueryParameter(query, 'interval') === null) {
+            options.data = (data ? data + '&' : '') + 'interval=' + nrtgPollingInterval;
+        }
+    });
+
+    // Answer the polls from the stream of the collection task
+    jQuery.ajaxTransport('+*', function (options) {
+        if (options.url.indexOf('nrt/starter') < 0 || !window.EventSource) {
+            return;
+        }
+        var query = options.url.split('?')[1] || '',
+                collectionTaskId = getQueryParameter(query, 'nrtCollectionTaskId');
+        if (collectionTaskId === null || getQueryParameter(query, 'poll') !== 'true') {
+            return;
+        }
+        var stream = getNrtgStream(collectionTaskId);
+        return {
+            send: function (headers, complete) {
+                stream.poll(function (measurementSets) {
+                    complete(200, 'OK', {text: JSON.stringify({measurement_sets: measurementSets})},
+                            'Content-Type: application/json');
+                });
+            },
+            abort: function () {
+                stream.cancel();
+            }
+        };
+    });
+
     $(document).ready(function () {
         var first = true;
         jQuery("div[data-graph-report]").each(function () {
@@ -155,7 +272,9 @@ pageContext.setAttribute("resourceId", resourceId);
                 nrtgInterval.val(defaultPollingInterval);
                 nrtgInterval.bind('change', function() {
                     console.log("Updating NRTG polling interval to " + nrtgInterval.val() + "ms");
-                    ds.updatePollingInterval(nrtgInterval.val());
+                    nrtgPollingInterval = parseInt(nrtgInterval.val(), 10);
+                    ds.updatePollingInterval(nrtgPollingInterval);
+                    updateNrtgStreams({interval: nrtgPollingInterval});
                 });
 
                 var nrtgPause = jQuery('#nrtgPause');
@@ -165,6 +284,7 @@ pageContext.setAttribute("resourceId", resourceId);
                     if (isPaused) {
                         console.log("Pausing NRTG stream.");
                         ds.stopStreaming();
+                        updateNrtgStreams({unsubscribe: true});
                     } else {
                         console.log("Resuming NRTG stream.");
                         ds.startStreaming();
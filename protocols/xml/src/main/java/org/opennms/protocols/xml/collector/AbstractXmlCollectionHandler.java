@@ -50,7 +50,6 @@ import javax.xml.transform.stream.StreamSource;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
@@ -207,23 +206,82 @@ public abstract class AbstractXmlCollectionHandler implements XmlCollectionHandl
      */
     protected void fillCollectionSet(CollectionAgent agent, CollectionSetBuilder builder, XmlSource source, Document doc) throws XPathExpressionException, ParseException {
         NamespaceContext nc = new DocumentNamespaceResolver(doc);
-        XPath xpath = XPathFactory.newInstance().newXPath();
-        xpath.setNamespaceContext(nc);
         for (XmlGroup group : source.getXmlGroups()) {
             LOG.debug("fillCollectionSet: getting resources for XML group {} using XPATH {}", group.getName(), group.getResourceXpath());
-            Date timestamp = getTimeStamp(doc, xpath, group);
-            NodeList resourceList = (NodeList) xpath.evaluate(group.getResourceXpath(), doc, XPathConstants.NODESET);
-            for (int j = 0; j < resourceList.getLength(); j++) {
-                Node resource = resourceList.item(j);
-                String resourceName = getResourceName(xpath, group, resource);
-                final Resource collectionResource = getCollectionResource(agent, resourceName, group.getResourceType(), timestamp);
+            final XmlGroupPlan plan = XmlGroupPlan.forGroup(group);
+            final XmlGroupPlan.Expressions xpath = plan.borrow(nc);
+            try {
+                Date timestamp = getTimeStamp(doc, xpath, group);
+                NodeList resourceList = (NodeList) xpath.getResource().evaluate(doc, XPathConstants.NODESET);
+                for (int j = 0; j < resourceList.getLength(); j++) {
+                    Node resource = resourceList.item(j);
+                    String resourceName = getResourceName(xpath, group, resource);
+                    final Resource collectionResource = getCollectionResource(agent, resourceName, group.getResourceType(), timestamp);
+                    LOG.debug("fillCollectionSet: processing resource {}", collectionResource);
+                    final List<XmlObject> objects = group.getXmlObjects();
+                    for (int k = 0; k < objects.size(); k++) {
+                        final XmlObject object = objects.get(k);
+                        final String value = object.map((String) xpath.getObject(k).evaluate(resource, XPathConstants.STRING));
+
+                        builder.withAttribute(collectionResource, group.getName(), object.getName(), value, object.getDataType());
+                    }
+                    processXmlResource(builder, collectionResource, resourceName, group.getName());
+                }
+            } finally {
+                plan.release(xpath);
+            }
+        }
+        LOG.debug("fillCollectionSet: finishing collection set with {} resources and {} attributes on {}", builder.getNumResources(), builder.getNumAttributes(), agent);
+    }
+
+    /**
+     * Fill collection set.
+     * <p>When enabled, the groups are evaluated with the {@link StreamingXmlEvaluator} without
+     * building a DOM. Documents or groups which cannot be streamed are evaluated on the DOM.</p>
+     *
+     * @param agent the agent
+     * @param builder the collection set builder
+     * @param source the source
+     * @param contents the XML document
+     * @throws Exception the exception
+     */
+    protected void fillCollectionSet(CollectionAgent agent, CollectionSetBuilder builder, XmlSource source, String contents) throws Exception {
+        if (StreamingXmlEvaluator.isEnabled()) {
+            final List<XmlGroupPlan> plans = new ArrayList<>(source.getXmlGroups().size());
+            for (XmlGroup group : source.getXmlGroups()) {
+                plans.add(XmlGroupPlan.forGroup(group));
+            }
+            final List<StreamingXmlEvaluator.GroupResult> results = StreamingXmlEvaluator.evaluate(contents.getBytes(StandardCharsets.UTF_8), plans);
+            if (results != null) {
+                fillCollectionSet(agent, builder, source, results);
+                return;
+            }
+            LOG.debug("fillCollectionSet: falling back to DOM for source url '{}'", source.getUrl());
+        }
+        fillCollectionSet(agent, builder, source, parseXmlDocument(contents));
+    }
+
+    private void fillCollectionSet(CollectionAgent agent, CollectionSetBuilder builder, XmlSource source, List<StreamingXmlEvaluator.GroupResult> results) {
+        for (int i = 0; i < results.size(); i++) {
+            final XmlGroup group = source.getXmlGroups().get(i);
+            final StreamingXmlEvaluator.GroupResult result = results.get(i);
+            LOG.debug("fillCollectionSet: getting resources for XML group {} using XPATH {}", group.getName(), group.getResourceXpath());
+            Date timestamp = null;
+            if (group.getTimestampXpath() != null) {
+                LOG.debug("getTimeStamp: retrieving custom timestamp to be used when updating RRDs using XPATH {} and pattern {}", group.getTimestampXpath(), getTimestampPattern(group));
+                timestamp = toTimeStamp(group, result.getTimestamp());
+            }
+            for (StreamingXmlEvaluator.ResourceResult resource : result.getResources()) {
+                final Resource collectionResource = getCollectionResource(agent, resource.getName(), group.getResourceType(), timestamp);
                 LOG.debug("fillCollectionSet: processing resource {}", collectionResource);
-                for (XmlObject object : group.getXmlObjects()) {
-                    final String value = object.map((String) xpath.evaluate(object.getXpath(), resource, XPathConstants.STRING));
+                final List<XmlObject> objects = group.getXmlObjects();
+                for (int k = 0; k < objects.size(); k++) {
+                    final XmlObject object = objects.get(k);
+                    final String value = object.map(resource.getValue(k));
 
                     builder.withAttribute(collectionResource, group.getName(), object.getName(), value, object.getDataType());
                 }
-                processXmlResource(builder, collectionResource, resourceName, group.getName());
+                processXmlResource(builder, collectionResource, resource.getName(), group.getName());
             }
         }
         LOG.debug("fillCollectionSet: finishing collection set with {} resources and {} attributes on {}", builder.getNumResources(), builder.getNumAttributes(), agent);
@@ -232,20 +290,21 @@ public abstract class AbstractXmlCollectionHandler implements XmlCollectionHandl
     /**
      * Gets the resource name.
      *
-     * @param xpath the Xpath
+     * @param xpath the compiled expressions of the group
      * @param group the group
      * @param resource the resource
      * @return the resource name
      * @throws XPathExpressionException the x path expression exception
      */
-    private String getResourceName(XPath xpath, XmlGroup group, Node resource) throws XPathExpressionException {
+    private String getResourceName(XmlGroupPlan.Expressions xpath, XmlGroup group, Node resource) throws XPathExpressionException {
         // Processing multiple-key resource name.
         if (group.hasMultipleResourceKey()) {
             List<String> keys = new ArrayList<>();
-            for (String key : group.getXmlResourceKey().getKeyXpathList()) {
-                LOG.debug("getResourceName: getting key for resource's name using {}", key);
-                Node keyNode = (Node) xpath.evaluate(key, resource, XPathConstants.NODE);
-                keys.add(keyNode.getNodeValue() == null ? keyNode.getTextContent() : keyNode.getNodeValue());
+            List<String> keyXpaths = group.getXmlResourceKey().getKeyXpathList();
+            for (int i = 0; i < keyXpaths.size(); i++) {
+                LOG.debug("getResourceName: getting key for resource's name using {}", keyXpaths.get(i));
+                Node keyNode = (Node) xpath.getKey(i).evaluate(resource, XPathConstants.NODE);
+                keys.add(getNodeValue(keyNode));
             }
             return StringUtils.join(keys, "_");
         }
@@ -256,8 +315,12 @@ public abstract class AbstractXmlCollectionHandler implements XmlCollectionHandl
         }
         // Processing single-key resource name.
         LOG.debug("getResourceName: getting key for resource's name using {}", group.getKeyXpath());
-        Node keyNode = (Node) xpath.evaluate(group.getKeyXpath(), resource, XPathConstants.NODE);
-        return keyNode.getNodeValue() == null ? keyNode.getTextContent() : keyNode.getNodeValue();
+        Node keyNode = (Node) xpath.getKey(0).evaluate(resource, XPathConstants.NODE);
+        return getNodeValue(keyNode);
+    }
+
+    private static String getNodeValue(Node node) {
+        return node.getNodeValue() == null ? node.getTextContent() : node.getNodeValue();
     }
 
     /**
@@ -316,15 +379,38 @@ public abstract class AbstractXmlCollectionHandler implements XmlCollectionHandl
         if (group.getTimestampXpath() == null) {
             return null;
         }
-        String pattern = group.getTimestampFormat() == null ? "yyyy-MM-dd HH:mm:ss" : group.getTimestampFormat();
-        LOG.debug("getTimeStamp: retrieving custom timestamp to be used when updating RRDs using XPATH {} and pattern {}", group.getTimestampXpath(), pattern);
+        LOG.debug("getTimeStamp: retrieving custom timestamp to be used when updating RRDs using XPATH {} and pattern {}", group.getTimestampXpath(), getTimestampPattern(group));
         Node tsNode = (Node) xpath.evaluate(group.getTimestampXpath(), doc, XPathConstants.NODE);
-        if (tsNode == null) {
+        return toTimeStamp(group, tsNode == null ? null : getNodeValue(tsNode));
+    }
+
+    private Date getTimeStamp(Document doc, XmlGroupPlan.Expressions xpath, XmlGroup group) throws XPathExpressionException {
+        if (group.getTimestampXpath() == null) {
+            return null;
+        }
+        LOG.debug("getTimeStamp: retrieving custom timestamp to be used when updating RRDs using XPATH {} and pattern {}", group.getTimestampXpath(), getTimestampPattern(group));
+        Node tsNode = (Node) xpath.getTimestamp().evaluate(doc, XPathConstants.NODE);
+        return toTimeStamp(group, tsNode == null ? null : getNodeValue(tsNode));
+    }
+
+    private static String getTimestampPattern(XmlGroup group) {
+        return group.getTimestampFormat() == null ? "yyyy-MM-dd HH:mm:ss" : group.getTimestampFormat();
+    }
+
+    /**
+     * Converts the value of the custom timestamp.
+     *
+     * @param group the group
+     * @param value the value of the timestamp, null if it was not found
+     * @return the time stamp
+     */
+    private Date toTimeStamp(XmlGroup group, String value) {
+        if (value == null) {
             LOG.warn("getTimeStamp: can't find the custom timestamp using XPATH {}",  group.getTimestampXpath());
             return null;
         }
+        String pattern = getTimestampPattern(group);
         Date date = null;
-        String value = tsNode.getNodeValue() == null ? tsNode.getTextContent() : tsNode.getNodeValue();
         LOG.debug("getTimeStamp: time stamp value is {}", value);
         try {
             DateTimeFormatter dtf = DateTimeFormat.forPattern(pattern);
@@ -469,6 +555,28 @@ public abstract class AbstractXmlCollectionHandler implements XmlCollectionHandl
         }
     }
 
+    /**
+     * Gets the XML contents.
+     *
+     * @param urlString the URL string
+     * @param request the request
+     * @return the XML document, pre-processed and transformed
+     * @throws Exception the exception
+     */
+    protected String getXmlContents(String urlString, Request request) throws Exception {
+        InputStream is = null;
+        URLConnection c = null;
+        try {
+            URL url = UrlFactory.getUrl(urlString, request);
+            c = url.openConnection();
+            is = c.getInputStream();
+            return getXmlContents(is, request);
+        } finally {
+            IOUtils.closeQuietly(is);
+            UrlFactory.disconnect(c);
+        }
+    }
+
     /**
      * Gets the XML document.
      *
@@ -478,15 +586,37 @@ public abstract class AbstractXmlCollectionHandler implements XmlCollectionHandl
      * @throws Exception the exception
      */
     protected Document getXmlDocument(InputStream is, Request request) throws Exception {
+        return parseXmlDocument(getXmlContents(is, request));
+    }
+
+    /**
+     * Gets the XML contents.
+     *
+     * @param is the input stream
+     * @param request the request
+     * @return the XML document, pre-processed and transformed
+     * @throws Exception the exception
+     */
+    protected String getXmlContents(InputStream is, Request request) throws Exception {
         is = preProcessHtml(request, is);
         is = applyXsltTransformation(request, is);
+        StringWriter writer = new StringWriter();
+        IOUtils.copy(is, writer, StandardCharsets.UTF_8);
+        return writer.toString();
+    }
+
+    /**
+     * Parses the XML document.
+     *
+     * @param contents the XML contents
+     * @return the XML document
+     * @throws Exception the exception
+     */
+    protected Document parseXmlDocument(String contents) throws Exception {
         DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
         factory.setIgnoringComments(true);
         factory.setNamespaceAware(true);
         DocumentBuilder builder = factory.newDocumentBuilder();
-        StringWriter writer = new StringWriter();
-        IOUtils.copy(is, writer, StandardCharsets.UTF_8);
-        String contents = writer.toString();
         Document doc = builder.parse(IOUtils.toInputStream(contents, StandardCharsets.UTF_8));
         // Ugly hack to deal with DOM & XPath 1.0's battle royale 
         // over handling namespaces without a prefix. 
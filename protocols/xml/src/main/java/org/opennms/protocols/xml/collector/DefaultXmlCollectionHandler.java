@@ -45,6 +45,12 @@ public class DefaultXmlCollectionHandler extends AbstractXmlCollectionHandler {
 
     @Override
     protected void fillCollectionSet(String urlString, Request request, CollectionAgent agent, CollectionSetBuilder builder, XmlSource source) throws Exception {
+        if (StreamingXmlEvaluator.isEnabled()) {
+            final String contents = getXmlContents(urlString, request);
+            LOG.debug("fillCollectionSet: retrieved document for source url '{}' collection", urlString);
+            fillCollectionSet(agent, builder, source, contents);
+            return;
+        }
         final Document doc = getXmlDocument(urlString, request);
         LOG.debug("fillCollectionSet: parsed document for source url '{}' collection", urlString);
         fillCollectionSet(agent, builder, source, doc);
@@ -86,8 +86,12 @@ public class Sftp3gppXmlCollectionHandler extends AbstractXmlCollectionHandler {
                 if (lastFile == null) {
                     lastFile = connection.get3gppFileName();
                     LOG.debug("collect(single): retrieving file from {}{}{} from {}", url.getPath(), File.separatorChar, lastFile, agent.getHostAddress());
-                    Document doc = getXmlDocument(urlStr, request);
-                    fillCollectionSet(agent, builder, source, doc);
+                    if (StreamingXmlEvaluator.isEnabled()) {
+                        fillCollectionSet(agent, builder, source, getXmlContents(urlStr, request));
+                    } else {
+                        Document doc = getXmlDocument(urlStr, request);
+                        fillCollectionSet(agent, builder, source, doc);
+                    }
                     Sftp3gppUtils.setLastFilename(getBlobStore(), getServiceName(), resourcePath, url.getPath(), lastFile);
                     Sftp3gppUtils.deleteFile(connection, lastFile);
                 } else {
@@ -100,9 +104,15 @@ public class Sftp3gppXmlCollectionHandler extends AbstractXmlCollectionHandler {
                             LOG.debug("collect(multiple): retrieving file {} from {}", fileName, agent.getHostAddress());
                             InputStream is = connection.getFile(fileName);
                             try {
-                                Document doc = getXmlDocument(is, request);
-                                IOUtils.closeQuietly(is);
-                                fillCollectionSet(agent, builder, source, doc);
+                                if (StreamingXmlEvaluator.isEnabled()) {
+                                    String contents = getXmlContents(is, request);
+                                    IOUtils.closeQuietly(is);
+                                    fillCollectionSet(agent, builder, source, contents);
+                                } else {
+                                    Document doc = getXmlDocument(is, request);
+                                    IOUtils.closeQuietly(is);
+                                    fillCollectionSet(agent, builder, source, doc);
+                                }
                             } finally {
                                 IOUtils.closeQuietly(is);
                             }
@@ -0,0 +1,459 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.protocols.xml.collector;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Evaluates the plans of the groups of an XML source in a single StAX pass over a document,
+ * without building a DOM.
+ *
+ * <p>The results are the same as the ones of the XPath evaluation on the DOM: the first match in
+ * document order is used for keys, objects and the timestamp, the value of an element is the
+ * concatenation of all its descendant text and a missing object yields an empty string.</p>
+ *
+ * <p>Documents which cannot be evaluated that way are rejected and must be evaluated on the DOM.
+ * This is the case for documents declaring namespaces or a DTD, documents in which a resource
+ * contains another resource of the same group and documents with a missing resource key.
+ * Malformed documents are rejected as well, so that the DOM parser reports the error.</p>
+ *
+ * <p>The evaluation is enabled with the {@value #STREAMING_SYS_PROP} system property.</p>
+ */
+public class StreamingXmlEvaluator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreamingXmlEvaluator.class);
+
+    protected static final String STREAMING_SYS_PROP = "org.opennms.protocols.xml.streaming";
+
+    /** The number of attribute predicates which can be tracked per element. */
+    private static final int MAX_PREDICATES = Long.SIZE;
+
+    private static final ThreadLocal<XMLInputFactory> FACTORY = ThreadLocal.withInitial(() -> {
+        final XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    });
+
+    /** The values of a group extracted from a document. */
+    public static class GroupResult {
+        private final String m_timestamp;
+        private final List<ResourceResult> m_resources;
+
+        private GroupResult(String timestamp, List<ResourceResult> resources) {
+            m_timestamp = timestamp;
+            m_resources = Collections.unmodifiableList(resources);
+        }
+
+        /**
+         * @return the value of the timestamp, or null if it was not found
+         */
+        public String getTimestamp() {
+            return m_timestamp;
+        }
+
+        /**
+         * @return the resources in document order
+         */
+        public List<ResourceResult> getResources() {
+            return m_resources;
+        }
+    }
+
+    /** The values of a resource extracted from a document. */
+    public static class ResourceResult {
+        private final String m_name;
+        private final String[] m_values;
+
+        private ResourceResult(String name, String[] values) {
+            m_name = name;
+            m_values = values;
+        }
+
+        public String getName() {
+            return m_name;
+        }
+
+        /**
+         * @param index the index of the object within the group
+         * @return the raw value of the object
+         */
+        public String getValue(int index) {
+            return m_values[index];
+        }
+
+        @Override
+        public String toString() {
+            return "ResourceResult[name=" + m_name + ", values=" + Arrays.toString(m_values) + "]";
+        }
+    }
+
+    /** Thrown when the document cannot be evaluated without a DOM. */
+    private static class NotStreamableException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private NotStreamableException(String reason) {
+            super(reason, null, false, false);
+        }
+    }
+
+    /** A path bound to the attribute predicates of an evaluation. */
+    private static class Matcher {
+        private final boolean m_descendant;
+        private final String[] m_names;
+        private final long[] m_predicates;
+        private final String m_attribute;
+
+        private Matcher(XmlPath path, List<XmlPath.Predicate> predicates) throws NotStreamableException {
+            m_descendant = path.isDescendant();
+            m_names = new String[path.getSteps().size()];
+            m_predicates = new long[m_names.length];
+            for (int i = 0; i < m_names.length; i++) {
+                final XmlPath.Step step = path.getSteps().get(i);
+                m_names[i] = step.getName();
+                for (final XmlPath.Predicate predicate : step.getPredicates()) {
+                    int id = predicates.indexOf(predicate);
+                    if (id < 0) {
+                        if (predicates.size() == MAX_PREDICATES) {
+                            throw new NotStreamableException("too many predicates");
+                        }
+                        id = predicates.size();
+                        predicates.add(predicate);
+                    }
+                    m_predicates[i] |= 1L << id;
+                }
+            }
+            m_attribute = path.getAttribute();
+        }
+
+        private int length() {
+            return m_names.length;
+        }
+
+        /**
+         * @return true if the steps match the elements ending at the given depth
+         */
+        private boolean matchesAt(String[] names, long[] masks, int depth) {
+            final int offset = depth - m_names.length;
+            for (int i = 0; i < m_names.length; i++) {
+                final int level = offset + i + 1;
+                if (m_names[i] != null && !m_names[i].equals(names[level])) {
+                    return false;
+                }
+                if ((masks[level] & m_predicates[i]) != m_predicates[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean matchesAbsolute(String[] names, long[] masks, int depth) {
+            if (m_descendant ? depth < m_names.length : depth != m_names.length) {
+                return false;
+            }
+            return matchesAt(names, masks, depth);
+        }
+    }
+
+    /** The values of the resource being read. */
+    private static class Record {
+        private final int m_depth;
+        private final String[] m_values;
+        private final boolean[] m_claimed;
+
+        private Record(int depth, int size) {
+            m_depth = depth;
+            m_values = new String[size];
+            m_claimed = new boolean[size];
+        }
+    }
+
+    /** The text of an element being read. */
+    private static class Capture {
+        private final int m_depth;
+        private final String[] m_target;
+        private final int m_index;
+        private final StringBuilder m_text = new StringBuilder();
+
+        private Capture(int depth, String[] target, int index) {
+            m_depth = depth;
+            m_target = target;
+            m_index = index;
+        }
+    }
+
+    /** The evaluation state of a group. */
+    private static class GroupState {
+        private final Matcher m_resource;
+        private final Matcher m_timestamp;
+        private final Matcher[] m_fields;
+        private final int m_keyCount;
+        private final String[] m_timestampValue = new String[1];
+        private final boolean[] m_timestampClaimed = new boolean[1];
+        private final List<ResourceResult> m_resources = new ArrayList<>();
+        private Record m_open;
+
+        private GroupState(XmlGroupPlan plan, List<XmlPath.Predicate> predicates) throws NotStreamableException {
+            m_resource = new Matcher(plan.getResourcePath(), predicates);
+            m_timestamp = plan.getTimestampPath() == null ? null : new Matcher(plan.getTimestampPath(), predicates);
+            m_keyCount = plan.getKeyCount();
+            m_fields = new Matcher[m_keyCount + plan.getObjectCount()];
+            for (int i = 0; i < m_keyCount; i++) {
+                m_fields[i] = new Matcher(plan.getKeyPaths().get(i), predicates);
+            }
+            for (int i = m_keyCount; i < m_fields.length; i++) {
+                m_fields[i] = new Matcher(plan.getObjectPaths().get(i - m_keyCount), predicates);
+            }
+        }
+    }
+
+    private final GroupState[] m_groups;
+    private final XmlPath.Predicate[] m_predicates;
+    private final List<Capture> m_captures = new ArrayList<>();
+    private XMLStreamReader m_reader;
+    private String[] m_names = new String[16];
+    private long[] m_masks = new long[16];
+    private int m_depth;
+
+    private StreamingXmlEvaluator(List<XmlGroupPlan> plans) throws NotStreamableException {
+        final List<XmlPath.Predicate> predicates = new ArrayList<>();
+        m_groups = new GroupState[plans.size()];
+        for (int i = 0; i < m_groups.length; i++) {
+            m_groups[i] = new GroupState(plans.get(i), predicates);
+        }
+        m_predicates = predicates.toArray(new XmlPath.Predicate[0]);
+    }
+
+    /**
+     * @return true if documents should be evaluated without building a DOM when possible
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(STREAMING_SYS_PROP);
+    }
+
+    /**
+     * Evaluates the plans of the groups of a source.
+     *
+     * <p>The document is decoded from its UTF-8 representation, like it is by the DOM parser, so
+     * the encoding declared by the document applies the same way.</p>
+     *
+     * @param contents the XML document
+     * @param plans the plans of the groups of the source
+     * @return the results of each group in the order of the plans, or null if the document must
+     * be evaluated on the DOM
+     */
+    public static List<GroupResult> evaluate(byte[] contents, List<XmlGroupPlan> plans) {
+        for (final XmlGroupPlan plan : plans) {
+            if (!plan.isStreamable()) {
+                LOG.debug("evaluate: {} can't be streamed", plan);
+                return null;
+            }
+        }
+        try {
+            return new StreamingXmlEvaluator(plans).evaluate(contents);
+        } catch (NotStreamableException e) {
+            LOG.debug("evaluate: document can't be streamed: {}", e.getMessage());
+            return null;
+        } catch (XMLStreamException e) {
+            LOG.debug("evaluate: document can't be streamed", e);
+            return null;
+        }
+    }
+
+    private List<GroupResult> evaluate(byte[] contents) throws XMLStreamException, NotStreamableException {
+        m_reader = FACTORY.get().createXMLStreamReader(new ByteArrayInputStream(contents));
+        try {
+            while (m_reader.hasNext()) {
+                switch (m_reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    startElement();
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    endElement();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (!m_captures.isEmpty()) {
+                        characters();
+                    }
+                    break;
+                case XMLStreamConstants.DTD:
+                    throw new NotStreamableException("the document declares a DTD");
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    throw new NotStreamableException("the document contains entity references");
+                default:
+                    break;
+                }
+            }
+        } finally {
+            m_reader.close();
+        }
+
+        final List<GroupResult> results = new ArrayList<>(m_groups.length);
+        for (final GroupState group : m_groups) {
+            results.add(new GroupResult(group.m_timestampValue[0], group.m_resources));
+        }
+        return results;
+    }
+
+    private void startElement() throws NotStreamableException {
+        if (m_reader.getNamespaceCount() > 0 || !isEmpty(m_reader.getPrefix())) {
+            throw new NotStreamableException("the document uses namespaces");
+        }
+        final int attributes = m_reader.getAttributeCount();
+        for (int i = 0; i < attributes; i++) {
+            if (!isEmpty(m_reader.getAttributePrefix(i))) {
+                throw new NotStreamableException("the document uses namespaces");
+            }
+        }
+
+        final int depth = ++m_depth;
+        if (depth == m_names.length) {
+            m_names = Arrays.copyOf(m_names, depth * 2);
+            m_masks = Arrays.copyOf(m_masks, depth * 2);
+        }
+        m_names[depth] = m_reader.getLocalName();
+        long mask = 0L;
+        if (attributes > 0) {
+            for (int i = 0; i < m_predicates.length; i++) {
+                final String value = m_reader.getAttributeValue(null, m_predicates[i].getAttribute());
+                if (value != null && m_predicates[i].matches(value)) {
+                    mask |= 1L << i;
+                }
+            }
+        }
+        m_masks[depth] = mask;
+
+        for (final GroupState group : m_groups) {
+            if (group.m_timestamp != null && !group.m_timestampClaimed[0]
+                    && group.m_timestamp.matchesAbsolute(m_names, m_masks, depth)) {
+                claim(group.m_timestamp, group.m_timestampValue, group.m_timestampClaimed, 0);
+            }
+            final Record open = group.m_open;
+            if (open != null) {
+                final int relativeDepth = depth - open.m_depth;
+                for (int i = 0; i < group.m_fields.length; i++) {
+                    final Matcher field = group.m_fields[i];
+                    if (!open.m_claimed[i] && field.length() == relativeDepth && field.matchesAt(m_names, m_masks, depth)) {
+                        claim(field, open.m_values, open.m_claimed, i);
+                    }
+                }
+            }
+            if (group.m_resource.matchesAbsolute(m_names, m_masks, depth)) {
+                if (open != null) {
+                    throw new NotStreamableException("a resource contains another resource");
+                }
+                final Record record = new Record(depth, group.m_fields.length);
+                for (int i = 0; i < group.m_fields.length; i++) {
+                    if (group.m_fields[i].length() == 0) {
+                        claim(group.m_fields[i], record.m_values, record.m_claimed, i);
+                    }
+                }
+                group.m_open = record;
+            }
+        }
+    }
+
+    private void claim(Matcher matcher, String[] values, boolean[] claimed, int index) {
+        if (matcher.m_attribute != null) {
+            final String value = m_reader.getAttributeValue(null, matcher.m_attribute);
+            if (value != null) {
+                values[index] = value;
+                claimed[index] = true;
+            }
+        } else {
+            claimed[index] = true;
+            m_captures.add(new Capture(m_depth, values, index));
+        }
+    }
+
+    private void characters() {
+        final char[] text = m_reader.getTextCharacters();
+        final int start = m_reader.getTextStart();
+        final int length = m_reader.getTextLength();
+        for (final Capture capture : m_captures) {
+            capture.m_text.append(text, start, length);
+        }
+    }
+
+    private void endElement() throws NotStreamableException {
+        final int depth = m_depth;
+        for (int i = m_captures.size() - 1; i >= 0 && m_captures.get(i).m_depth == depth; i--) {
+            final Capture capture = m_captures.remove(i);
+            capture.m_target[capture.m_index] = capture.m_text.toString();
+        }
+        for (final GroupState group : m_groups) {
+            final Record open = group.m_open;
+            if (open != null && open.m_depth == depth) {
+                group.m_open = null;
+                group.m_resources.add(close(group, open));
+            }
+        }
+        m_names[depth] = null;
+        m_depth--;
+    }
+
+    private static ResourceResult close(GroupState group, Record record) throws NotStreamableException {
+        final String name;
+        if (group.m_keyCount == 0) {
+            name = "node"; // CollectionResource.RESOURCE_TYPE_NODE
+        } else {
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < group.m_keyCount; i++) {
+                if (!record.m_claimed[i]) {
+                    throw new NotStreamableException("a resource has no key");
+                }
+                if (i > 0) {
+                    sb.append('_');
+                }
+                sb.append(record.m_values[i]);
+            }
+            name = sb.toString();
+        }
+        final String[] values = new String[group.m_fields.length - group.m_keyCount];
+        for (int i = 0; i < values.length; i++) {
+            final String value = record.m_values[group.m_keyCount + i];
+            values[i] = value == null ? "" : value;
+        }
+        return new ResourceResult(name, values);
+    }
+
+    private static boolean isEmpty(String s) {
+        return s == null || s.isEmpty();
+    }
+}
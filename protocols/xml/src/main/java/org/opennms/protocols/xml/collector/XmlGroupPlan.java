@@ -0,0 +1,305 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.protocols.xml.collector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.opennms.protocols.xml.config.XmlGroup;
+import org.opennms.protocols.xml.config.XmlObject;
+
+/**
+ * The evaluation plan of an XML group.
+ *
+ * <p>A plan is created once for the XPath expressions of a group and cached. It provides
+ * compiled expressions for the evaluation on a DOM and, if all expressions belong to the
+ * streamable subset described in {@link XmlPath}, the paths used by the {@link StreamingXmlEvaluator}.</p>
+ *
+ * <p>Compiled expressions are not thread safe, so they are pooled and borrowed for the
+ * evaluation of a single document. Namespace prefixes are resolved when an expression is
+ * compiled, hence a set of expressions is only reused for documents which bind the prefixes
+ * it resolved to the same URIs.</p>
+ */
+public class XmlGroupPlan {
+
+    private static final int MAX_PLANS = 1024;
+
+    private static final int MAX_POOLED_EXPRESSIONS = 16;
+
+    private static final Map<List<String>, XmlGroupPlan> PLANS = new ConcurrentHashMap<>();
+
+    /**
+     * The compiled expressions of a group, bound to the namespace prefixes of the documents
+     * they were compiled for. Expressions are compiled when first used.
+     */
+    public class Expressions {
+        private final XPath m_xpath = XPathFactory.newInstance().newXPath();
+        private final Map<String, String> m_bindings = new HashMap<>();
+        private final XPathExpression[] m_keys = new XPathExpression[m_keyXpaths.size()];
+        private final XPathExpression[] m_objects = new XPathExpression[m_objectXpaths.size()];
+        private XPathExpression m_resource;
+        private XPathExpression m_timestamp;
+
+        private Expressions() {
+        }
+
+        private boolean isBoundTo(NamespaceContext nc) {
+            for (final Map.Entry<String, String> binding : m_bindings.entrySet()) {
+                if (!Objects.equals(nc.getNamespaceURI(binding.getKey()), binding.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void bind(NamespaceContext nc) {
+            m_xpath.setNamespaceContext(new RecordingNamespaceContext(nc, m_bindings));
+        }
+
+        public XPathExpression getResource() throws XPathExpressionException {
+            if (m_resource == null) {
+                m_resource = m_xpath.compile(m_resourceXpath);
+            }
+            return m_resource;
+        }
+
+        public XPathExpression getTimestamp() throws XPathExpressionException {
+            if (m_timestamp == null) {
+                m_timestamp = m_xpath.compile(m_timestampXpath);
+            }
+            return m_timestamp;
+        }
+
+        public XPathExpression getKey(int index) throws XPathExpressionException {
+            if (m_keys[index] == null) {
+                m_keys[index] = m_xpath.compile(m_keyXpaths.get(index));
+            }
+            return m_keys[index];
+        }
+
+        public XPathExpression getObject(int index) throws XPathExpressionException {
+            if (m_objects[index] == null) {
+                m_objects[index] = m_xpath.compile(m_objectXpaths.get(index));
+            }
+            return m_objects[index];
+        }
+    }
+
+    /**
+     * Delegates to the namespace context of a document and records the resolved prefixes.
+     */
+    private static class RecordingNamespaceContext implements NamespaceContext {
+        private final NamespaceContext m_delegate;
+        private final Map<String, String> m_bindings;
+
+        private RecordingNamespaceContext(NamespaceContext delegate, Map<String, String> bindings) {
+            m_delegate = delegate;
+            m_bindings = bindings;
+        }
+
+        @Override
+        public String getNamespaceURI(String prefix) {
+            final String uri = m_delegate.getNamespaceURI(prefix);
+            m_bindings.put(prefix, uri);
+            return uri;
+        }
+
+        @Override
+        public String getPrefix(String namespaceURI) {
+            return m_delegate.getPrefix(namespaceURI);
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public Iterator getPrefixes(String namespaceURI) {
+            return m_delegate.getPrefixes(namespaceURI);
+        }
+    }
+
+    private final String m_resourceXpath;
+    private final String m_timestampXpath;
+    private final List<String> m_keyXpaths;
+    private final List<String> m_objectXpaths;
+
+    private final XmlPath m_resourcePath;
+    private final XmlPath m_timestampPath;
+    private final List<XmlPath> m_keyPaths;
+    private final List<XmlPath> m_objectPaths;
+
+    private final Queue<Expressions> m_pool = new ConcurrentLinkedQueue<>();
+
+    private XmlGroupPlan(String resourceXpath, String timestampXpath, List<String> keyXpaths, List<String> objectXpaths) {
+        m_resourceXpath = resourceXpath;
+        m_timestampXpath = timestampXpath;
+        m_keyXpaths = keyXpaths;
+        m_objectXpaths = objectXpaths;
+
+        final XmlPath resourcePath = XmlPath.parseAbsolute(resourceXpath);
+        final XmlPath timestampPath = timestampXpath == null ? null : XmlPath.parseAbsolute(timestampXpath);
+        final List<XmlPath> keyPaths = parseRelative(keyXpaths);
+        final List<XmlPath> objectPaths = parseRelative(objectXpaths);
+        if (resourcePath != null && resourcePath.getAttribute() == null
+                && (timestampXpath == null || timestampPath != null)
+                && keyPaths != null && objectPaths != null) {
+            m_resourcePath = resourcePath;
+            m_timestampPath = timestampPath;
+            m_keyPaths = keyPaths;
+            m_objectPaths = objectPaths;
+        } else {
+            m_resourcePath = null;
+            m_timestampPath = null;
+            m_keyPaths = null;
+            m_objectPaths = null;
+        }
+    }
+
+    private static List<XmlPath> parseRelative(List<String> xpaths) {
+        final List<XmlPath> paths = new ArrayList<>(xpaths.size());
+        for (final String xpath : xpaths) {
+            final XmlPath path = XmlPath.parseRelative(xpath);
+            if (path == null) {
+                return null;
+            }
+            paths.add(path);
+        }
+        return Collections.unmodifiableList(paths);
+    }
+
+    /**
+     * Gets the plan of a group.
+     *
+     * <p>Plans are shared by all groups with the same expressions.</p>
+     *
+     * @param group the XML group
+     * @return the plan
+     */
+    public static XmlGroupPlan forGroup(XmlGroup group) {
+        final List<String> keyXpaths;
+        if (group.hasMultipleResourceKey()) {
+            keyXpaths = new ArrayList<>(group.getXmlResourceKey().getKeyXpathList());
+        } else if (group.getKeyXpath() != null) {
+            keyXpaths = Collections.singletonList(group.getKeyXpath());
+        } else {
+            keyXpaths = Collections.emptyList();
+        }
+        final List<String> objectXpaths = new ArrayList<>(group.getXmlObjects().size());
+        for (final XmlObject object : group.getXmlObjects()) {
+            objectXpaths.add(object.getXpath());
+        }
+
+        final List<String> key = new ArrayList<>(3 + keyXpaths.size() + objectXpaths.size());
+        key.add(group.getResourceXpath());
+        key.add(group.getTimestampXpath());
+        key.add(Integer.toString(keyXpaths.size()));
+        key.addAll(keyXpaths);
+        key.addAll(objectXpaths);
+
+        XmlGroupPlan plan = PLANS.get(key);
+        if (plan == null) {
+            if (PLANS.size() >= MAX_PLANS) {
+                PLANS.clear();
+            }
+            plan = PLANS.computeIfAbsent(key, k -> new XmlGroupPlan(group.getResourceXpath(), group.getTimestampXpath(),
+                    Collections.unmodifiableList(keyXpaths), Collections.unmodifiableList(objectXpaths)));
+        }
+        return plan;
+    }
+
+    /**
+     * Borrows a set of compiled expressions for the evaluation of a document.
+     *
+     * @param nc the namespace context of the document
+     * @return the expressions, which must be returned with {@link #release(Expressions)}
+     */
+    public Expressions borrow(NamespaceContext nc) {
+        for (final Expressions expressions : m_pool) {
+            if (expressions.isBoundTo(nc) && m_pool.remove(expressions)) {
+                expressions.bind(nc);
+                return expressions;
+            }
+        }
+        final Expressions expressions = new Expressions();
+        expressions.bind(nc);
+        return expressions;
+    }
+
+    /**
+     * Returns a set of borrowed expressions to the pool.
+     *
+     * @param expressions the expressions
+     */
+    public void release(Expressions expressions) {
+        if (m_pool.size() < MAX_POOLED_EXPRESSIONS) {
+            m_pool.offer(expressions);
+        }
+    }
+
+    /**
+     * @return true if the group can be evaluated by the {@link StreamingXmlEvaluator}
+     */
+    public boolean isStreamable() {
+        return m_resourcePath != null;
+    }
+
+    public int getKeyCount() {
+        return m_keyXpaths.size();
+    }
+
+    public int getObjectCount() {
+        return m_objectXpaths.size();
+    }
+
+    XmlPath getResourcePath() {
+        return m_resourcePath;
+    }
+
+    XmlPath getTimestampPath() {
+        return m_timestampPath;
+    }
+
+    List<XmlPath> getKeyPaths() {
+        return m_keyPaths;
+    }
+
+    List<XmlPath> getObjectPaths() {
+        return m_objectPaths;
+    }
+
+    @Override
+    public String toString() {
+        return "XmlGroupPlan[resource=" + m_resourceXpath + ", streamable=" + isStreamable() + "]";
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.protocols.xml.collector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
+
+/**
+ * The subset of XPath 1.0 which can be evaluated while streaming over a document.
+ *
+ * <p>A path is a sequence of child steps, each one either an element name or <code>*</code>,
+ * optionally followed by attribute equality predicates like <code>[@p=2]</code> or
+ * <code>[@name='value']</code>. The last step may select an attribute. Absolute paths may
+ * start with <code>//</code>, relative paths may be <code>.</code> or start with <code>./</code>.</p>
+ *
+ * <p>Names with a prefix, axes, functions, positional predicates and any other construct
+ * are rejected, and the group using them is evaluated on the DOM instead.</p>
+ */
+final class XmlPath {
+
+    /** An attribute equality predicate. */
+    static final class Predicate {
+        private static final Pattern XPATH_NUMBER = Pattern.compile("-?(\\d+(\\.\\d*)?|\\.\\d+)");
+
+        private final String m_attribute;
+        private final String m_literal;
+        private final double m_number;
+
+        private Predicate(String attribute, String literal, double number) {
+            m_attribute = attribute;
+            m_literal = literal;
+            m_number = number;
+        }
+
+        String getAttribute() {
+            return m_attribute;
+        }
+
+        /**
+         * Compares the value of the attribute like XPath does, as a string against a
+         * literal or converted with <code>number()</code> against a number.
+         *
+         * @param value the value of the attribute
+         * @return true if the predicate holds
+         */
+        boolean matches(String value) {
+            if (m_literal != null) {
+                return m_literal.equals(value);
+            }
+            return toNumber(value) == m_number;
+        }
+
+        static double toNumber(String value) {
+            final String trimmed = trim(value);
+            if (!XPATH_NUMBER.matcher(trimmed).matches()) {
+                return Double.NaN;
+            }
+            return Double.parseDouble(trimmed);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(m_attribute, m_literal, m_number);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Predicate)) {
+                return false;
+            }
+            final Predicate other = (Predicate) obj;
+            return m_attribute.equals(other.m_attribute)
+                    && Objects.equals(m_literal, other.m_literal)
+                    && Double.compare(m_number, other.m_number) == 0;
+        }
+
+        @Override
+        public String toString() {
+            return "[@" + m_attribute + "=" + (m_literal != null ? "'" + m_literal + "'" : m_number) + "]";
+        }
+    }
+
+    /** A child step. */
+    static final class Step {
+        private final String m_name;
+        private final List<Predicate> m_predicates;
+
+        private Step(String name, List<Predicate> predicates) {
+            m_name = name;
+            m_predicates = predicates;
+        }
+
+        /**
+         * @return the name of the element, or null for any element
+         */
+        String getName() {
+            return m_name;
+        }
+
+        List<Predicate> getPredicates() {
+            return m_predicates;
+        }
+    }
+
+    private final boolean m_descendant;
+    private final List<Step> m_steps;
+    private final String m_attribute;
+
+    private XmlPath(boolean descendant, List<Step> steps, String attribute) {
+        m_descendant = descendant;
+        m_steps = Collections.unmodifiableList(steps);
+        m_attribute = attribute;
+    }
+
+    /**
+     * @return true if the first step may match at any depth
+     */
+    boolean isDescendant() {
+        return m_descendant;
+    }
+
+    List<Step> getSteps() {
+        return m_steps;
+    }
+
+    /**
+     * @return the name of the selected attribute, or null if the path selects an element
+     */
+    String getAttribute() {
+        return m_attribute;
+    }
+
+    /**
+     * Parses a path evaluated against the document.
+     *
+     * @param xpath the XPath expression
+     * @return the path, or null if the expression is not streamable
+     */
+    static XmlPath parseAbsolute(String xpath) {
+        if (xpath == null) {
+            return null;
+        }
+        final String s = xpath.trim();
+        final XmlPath path;
+        if (s.startsWith("//")) {
+            path = parse(s, 2, true);
+        } else if (s.startsWith("/")) {
+            path = parse(s, 1, false);
+        } else {
+            // A relative path evaluated against the document node.
+            path = parse(s, 0, false);
+        }
+        return path == null || path.m_steps.isEmpty() ? null : path;
+    }
+
+    /**
+     * Parses a path evaluated against a resource element.
+     *
+     * @param xpath the XPath expression
+     * @return the path, or null if the expression is not streamable
+     */
+    static XmlPath parseRelative(String xpath) {
+        if (xpath == null) {
+            return null;
+        }
+        final String s = xpath.trim();
+        if (".".equals(s)) {
+            return new XmlPath(false, Collections.emptyList(), null);
+        }
+        if (s.startsWith("/")) {
+            return null;
+        }
+        return parse(s, s.startsWith("./") ? 2 : 0, false);
+    }
+
+    private static XmlPath parse(String s, int start, boolean descendant) {
+        final List<Step> steps = new ArrayList<>();
+        int pos = start;
+        while (pos < s.length()) {
+            if (s.charAt(pos) == '@') {
+                final int end = scanName(s, pos + 1);
+                if (end < 0 || end != s.length()) {
+                    return null;
+                }
+                return new XmlPath(descendant, steps, s.substring(pos + 1, end));
+            }
+            final String name;
+            if (s.charAt(pos) == '*') {
+                name = null;
+                pos++;
+            } else {
+                final int end = scanName(s, pos);
+                if (end < 0) {
+                    return null;
+                }
+                name = s.substring(pos, end);
+                pos = end;
+            }
+            final List<Predicate> predicates = new ArrayList<>(0);
+            while (pos < s.length() && s.charAt(pos) == '[') {
+                final int end = s.indexOf(']', pos);
+                if (end < 0) {
+                    return null;
+                }
+                final Predicate predicate = parsePredicate(s.substring(pos + 1, end));
+                if (predicate == null) {
+                    return null;
+                }
+                predicates.add(predicate);
+                pos = end + 1;
+            }
+            steps.add(new Step(name, predicates.isEmpty() ? Collections.emptyList() : predicates));
+            if (pos == s.length()) {
+                break;
+            }
+            if (s.charAt(pos) != '/' || pos + 1 == s.length() || s.charAt(pos + 1) == '/') {
+                return null;
+            }
+            pos++;
+        }
+        return new XmlPath(descendant, steps, null);
+    }
+
+    private static Predicate parsePredicate(String p) {
+        final String s = trim(p);
+        if (!s.startsWith("@")) {
+            return null;
+        }
+        final int end = scanName(s, 1);
+        if (end < 0) {
+            return null;
+        }
+        final String attribute = s.substring(1, end);
+        final String rest = trim(s.substring(end));
+        if (!rest.startsWith("=")) {
+            return null;
+        }
+        final String operand = trim(rest.substring(1));
+        if (operand.length() >= 2 && (operand.charAt(0) == '\'' || operand.charAt(0) == '"')) {
+            final char quote = operand.charAt(0);
+            if (operand.charAt(operand.length() - 1) != quote || operand.indexOf(quote, 1) != operand.length() - 1) {
+                return null;
+            }
+            return new Predicate(attribute, operand.substring(1, operand.length() - 1), Double.NaN);
+        }
+        final double number = Predicate.toNumber(operand);
+        return Double.isNaN(number) ? null : new Predicate(attribute, null, number);
+    }
+
+    /**
+     * @return the index after the name starting at the given position, or -1 if there is no valid name
+     */
+    private static int scanName(String s, int start) {
+        if (start >= s.length()) {
+            return -1;
+        }
+        final char first = s.charAt(start);
+        if (!Character.isLetter(first) && first != '_') {
+            return -1;
+        }
+        int pos = start + 1;
+        while (pos < s.length()) {
+            final char c = s.charAt(pos);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Strips XPath whitespace, which differs from {@link String#trim()}.
+     */
+    private static String trim(String s) {
+        int start = 0;
+        int end = s.length();
+        while (start < end && isXPathWhitespace(s.charAt(start))) {
+            start++;
+        }
+        while (end > start && isXPathWhitespace(s.charAt(end - 1))) {
+            end--;
+        }
+        return s.substring(start, end);
+    }
+
+    private static boolean isXPathWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    @Override
+    public String toString() {
+        final StringJoiner joiner = new StringJoiner("/", m_descendant ? "//" : "", "");
+        for (final Step step : m_steps) {
+            final StringBuilder sb = new StringBuilder(step.m_name == null ? "*" : step.m_name);
+            step.m_predicates.forEach(sb::append);
+            joiner.add(sb);
+        }
+        if (m_attribute != null) {
+            joiner.add("@" + m_attribute);
+        }
+        return joiner.length() > 0 ? joiner.toString() : ".";
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.protocols.xml.collector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.xml.JaxbUtils;
+import org.opennms.netmgt.collection.api.AttributeType;
+import org.opennms.netmgt.collection.api.CollectionAgent;
+import org.opennms.netmgt.collection.api.CollectionSet;
+import org.opennms.netmgt.collection.support.builder.CollectionSetBuilder;
+import org.opennms.protocols.xml.config.XmlDataCollection;
+import org.opennms.protocols.xml.config.XmlDataCollectionConfig;
+import org.opennms.protocols.xml.config.XmlGroup;
+import org.opennms.protocols.xml.config.XmlObject;
+import org.opennms.protocols.xml.config.XmlResourceKey;
+import org.opennms.protocols.xml.config.XmlSource;
+
+/**
+ * Verifies that the streaming evaluation yields the same collection sets as the evaluation on the DOM.
+ */
+public class StreamingXmlEvaluatorTest {
+
+    private final DefaultXmlCollectionHandler m_handler = new DefaultXmlCollectionHandler();
+
+    private CollectionAgent m_agent;
+
+    @Before
+    public void setUp() {
+        m_agent = mock(CollectionAgent.class);
+        when(m_agent.getNodeId()).thenReturn(1);
+        System.setProperty(StreamingXmlEvaluator.STREAMING_SYS_PROP, "true");
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(StreamingXmlEvaluator.STREAMING_SYS_PROP);
+    }
+
+    @Test
+    public void testPaths() {
+        assertEquals("a/b", XmlPath.parseAbsolute("/a/b").toString());
+        assertTrue(XmlPath.parseAbsolute("//a/b").isDescendant());
+        assertEquals("a/b[@id='x y'][@p=2.0]/@v", XmlPath.parseRelative("./a/b[@id = 'x y'][@p=2]/@v").toString());
+        assertEquals(".", XmlPath.parseRelative(".").toString());
+        assertEquals("@name", XmlPath.parseRelative("@name").toString());
+        assertEquals("*", XmlPath.parseRelative("*").toString());
+
+        assertNull(XmlPath.parseAbsolute("/"));
+        assertNull(XmlPath.parseAbsolute("/a//b"));
+        assertNull(XmlPath.parseAbsolute("/dp:a"));
+        assertNull(XmlPath.parseRelative("/a"));
+        assertNull(XmlPath.parseRelative("../a"));
+        assertNull(XmlPath.parseRelative("a/text()"));
+        assertNull(XmlPath.parseRelative("a[1]"));
+        assertNull(XmlPath.parseRelative("a[contains(., 'x')]"));
+        assertNull(XmlPath.parseRelative("a[@p>2]"));
+        assertNull(XmlPath.parseRelative("a/@b/c"));
+        assertNull(XmlPath.parseRelative("child::a"));
+    }
+
+    @Test
+    public void testNumericPredicates() {
+        final XmlPath.Predicate predicate = XmlPath.parseRelative("a[@p=2]").getSteps().get(0).getPredicates().get(0);
+        assertTrue(predicate.matches("2"));
+        assertTrue(predicate.matches(" 2.0\n"));
+        assertTrue(!predicate.matches("2e0"));
+        assertTrue(!predicate.matches("+2"));
+        assertTrue(!predicate.matches("two"));
+    }
+
+    @Test
+    public void testSampleDocuments() throws Exception {
+        assertSameCollectionSet("node-level-datacollection-config.xml", "node-level.xml", true);
+        assertSameCollectionSet("rpc-reply-datacollection-config.xml", "rpc-reply.xml", true);
+        assertSameCollectionSet("solaris-zones-datacollection-config.xml", "solaris-zones.xml", true);
+        assertSameCollectionSet("NMS-14084-xml-datacollection-config.xml", "NMS-14084.xml", true);
+        // Both declare namespaces
+        assertSameCollectionSet("namespace-datacollection-config.xml", "namespace.xml", false);
+        assertSameCollectionSet("3gpp-xml-datacollection-config.xml", "A20111025.0030-0500-0045-0500_MME00001.xml", false);
+    }
+
+    @Test
+    public void testValues() throws Exception {
+        final XmlGroup group = createGroup("//item", "@id", "value", "nested", "missing", "@missing", "flags/flag[@on='yes']/@name", ".", "*[@p=2]");
+        final String contents = "<?xml version=\"1.0\"?>\n"
+                + "<root><!-- comment -->\n"
+                + "  <items>\n"
+                + "    <item id=\"a\"><value>1<![CDATA[2]]>&amp;3</value><nested>x<b>y<?pi z?></b><!-- c -->w</nested>\n"
+                + "      <flags><flag name=\"first\" on=\"no\"/><flag name=\"second\" on=\"yes\"/><flag name=\"third\" on=\"yes\"/></flags>\n"
+                + "      <v p=\"1\">one</v><v p=\" 2.0 \">two</v><value>ignored</value>\n"
+                + "    </item>\n"
+                + "    <item id=\"b\"/>\n"
+                + "  </items>\n"
+                + "  <group><item id=\"c\"><value>\n\t4 </value></item></group>\n"
+                + "</root>\n";
+        assertSameCollectionSet(createSource(group), contents, true);
+    }
+
+    @Test
+    public void testEncoding() throws Exception {
+        final XmlGroup group = createGroup("/root/item", "@name", "value");
+        final String contents = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><root><item name=\"caf\u00e9\"><value>\u00fc</value></item></root>";
+        assertSameCollectionSet(createSource(group), contents, true);
+    }
+
+    @Test
+    public void testMultipleKeysAndTimestamp() throws Exception {
+        final XmlGroup group = createGroup("/data/entry", null, "counter");
+        final XmlResourceKey key = new XmlResourceKey();
+        key.addKeyXpath("@a");
+        key.addKeyXpath("b");
+        group.setXmlResourceKey(key);
+        group.setTimestampXpath("/data/@time");
+        group.setTimestampFormat("yyyy-MM-dd'T'HH:mm:ss");
+        final XmlGroup nodeGroup = createGroup("/data", null, "entry/counter", "missing");
+        nodeGroup.setName("node-group");
+        nodeGroup.setResourceType("node");
+        nodeGroup.setTimestampXpath("/data/missing");
+        final XmlSource source = createSource(group, nodeGroup);
+        final String contents = "<data time=\"2024-01-02T03:04:05\"><entry a=\"x\"><b>1</b><counter>10</counter></entry><entry a=\"y\"><b>2</b><counter>20</counter></entry></data>";
+        assertSameCollectionSet(source, contents, true);
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        final XmlGroup group = createGroup("//item", "@id", "value");
+        // Nested resources
+        assertSameCollectionSet(createSource(group), "<root><item id=\"a\"><value>1</value><item id=\"b\"><value>2</value></item></item></root>", false);
+        // Namespaces
+        assertSameCollectionSet(createSource(group), "<root xmlns=\"urn:test\"><item id=\"a\"><value>1</value></item></root>", false);
+        // Not streamable expressions
+        assertSameCollectionSet(createSource(createGroup("//item", "@id", "value[last()]")), "<root><item id=\"a\"><value>1</value><value>2</value></item></root>", false);
+    }
+
+    private static XmlGroup createGroup(String resourceXpath, String keyXpath, String... objectXpaths) {
+        final XmlGroup group = new XmlGroup();
+        group.setName("test-group");
+        group.setResourceType("testResource");
+        group.setResourceXpath(resourceXpath);
+        group.setKeyXpath(keyXpath);
+        for (int i = 0; i < objectXpaths.length; i++) {
+            final XmlObject object = new XmlObject("object" + i, AttributeType.STRING);
+            object.setXpath(objectXpaths[i]);
+            group.addXmlObject(object);
+        }
+        return group;
+    }
+
+    private static XmlSource createSource(XmlGroup... groups) {
+        final XmlSource source = new XmlSource();
+        source.setUrl("http://localhost/test.xml");
+        for (XmlGroup group : groups) {
+            source.addXmlGroup(group);
+        }
+        return source;
+    }
+
+    private void assertSameCollectionSet(String configFileName, String sampleFileName, boolean streamable) throws Exception {
+        final XmlDataCollectionConfig config = JaxbUtils.unmarshal(XmlDataCollectionConfig.class, new File("src/test/resources", configFileName));
+        final String contents = new String(Files.readAllBytes(new File("src/test/resources", sampleFileName).toPath()), StandardCharsets.UTF_8);
+        for (XmlDataCollection collection : config.getXmlDataCollections()) {
+            for (XmlSource source : collection.getXmlSources()) {
+                assertSameCollectionSet(source, contents, streamable);
+            }
+        }
+    }
+
+    private void assertSameCollectionSet(XmlSource source, String contents, boolean streamable) throws Exception {
+        final List<XmlGroupPlan> plans = new ArrayList<>();
+        for (XmlGroup group : source.getXmlGroups()) {
+            plans.add(XmlGroupPlan.forGroup(group));
+        }
+        final List<StreamingXmlEvaluator.GroupResult> results = StreamingXmlEvaluator.evaluate(contents.getBytes(StandardCharsets.UTF_8), plans);
+        if (streamable) {
+            assertNotNull("the document should be streamed", results);
+        } else {
+            assertNull("the document should not be streamed", results);
+        }
+
+        final CollectionSetBuilder domBuilder = new CollectionSetBuilder(m_agent).withTimestamp(new Date(0));
+        m_handler.fillCollectionSet(m_agent, domBuilder, source, m_handler.parseXmlDocument(contents));
+        final CollectionSet expected = domBuilder.build();
+
+        final CollectionSetBuilder streamingBuilder = new CollectionSetBuilder(m_agent).withTimestamp(new Date(0));
+        m_handler.fillCollectionSet(m_agent, streamingBuilder, source, contents);
+        final CollectionSet actual = streamingBuilder.build();
+
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(expected, actual);
+    }
+}
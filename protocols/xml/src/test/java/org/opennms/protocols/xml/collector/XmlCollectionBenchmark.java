@@ -0,0 +1,185 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.protocols.xml.collector;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opennms.netmgt.collection.api.AttributeType;
+import org.opennms.netmgt.collection.api.CollectionAgent;
+import org.opennms.netmgt.collection.api.CollectionSet;
+import org.opennms.netmgt.collection.support.builder.CollectionSetBuilder;
+import org.opennms.protocols.xml.config.XmlGroup;
+import org.opennms.protocols.xml.config.XmlObject;
+import org.opennms.protocols.xml.config.XmlSource;
+import org.w3c.dom.Document;
+
+/**
+ * Use the Java Microbenchmarking Harness (JMH) to compare the evaluation of an XML source
+ * on the DOM with the streaming evaluation.
+ * <p>
+ * The documents are generated with the given number of resources, each one with a key
+ * attribute, element and attribute values and a few elements which are not collected.
+ * With the default sizes the documents are roughly 0.4, 2 and 5 MB. The time of the DOM
+ * evaluation grows much faster than the size of the document, so every iteration is a single
+ * evaluation.
+ * <p>
+ * The benchmarks are:
+ * <ul>
+ *     <li>parse - building the DOM only, the lower bound of the DOM evaluation</li>
+ *     <li>dom - building the DOM and evaluating the compiled expressions of the groups</li>
+ *     <li>streaming - the evaluation with the {@link StreamingXmlEvaluator}</li>
+ * </ul>
+ * <p>
+ * The arguments are passed to JMH, i.e. <code>XmlCollectionBenchmark streaming -p resources=5000 -prof gc</code>.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class XmlCollectionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class XmlState {
+
+        @Param({"1000", "5000", "12500"})
+        public int resources;
+
+        private final DefaultXmlCollectionHandler handler = new DefaultXmlCollectionHandler();
+
+        private CollectionAgent agent;
+
+        private XmlSource source;
+
+        private String contents;
+
+        @Setup
+        public void setUp() {
+            System.setProperty(StreamingXmlEvaluator.STREAMING_SYS_PROP, "true");
+
+            agent = mock(CollectionAgent.class);
+            when(agent.getNodeId()).thenReturn(1);
+
+            final XmlGroup interfaces = new XmlGroup();
+            interfaces.setName("interfaces");
+            interfaces.setResourceType("benchmarkInterface");
+            interfaces.setResourceXpath("/stats/interfaces/interface");
+            interfaces.setKeyXpath("@name");
+            interfaces.setTimestampXpath("/stats/@time");
+            interfaces.setTimestampFormat("yyyy-MM-dd'T'HH:mm:ss");
+            interfaces.addXmlObject(createObject("inOctets", AttributeType.COUNTER, "counters/in"));
+            interfaces.addXmlObject(createObject("outOctets", AttributeType.COUNTER, "counters/out"));
+            interfaces.addXmlObject(createObject("errors", AttributeType.COUNTER, "counter[@type='errors']/@value"));
+            interfaces.addXmlObject(createObject("speed", AttributeType.GAUGE, "@speed"));
+            interfaces.addXmlObject(createObject("status", AttributeType.STRING, "status"));
+
+            final XmlGroup system = new XmlGroup();
+            system.setName("system");
+            system.setResourceType("node");
+            system.setResourceXpath("/stats/system");
+            system.addXmlObject(createObject("cpu", AttributeType.GAUGE, "cpu"));
+            system.addXmlObject(createObject("memory", AttributeType.GAUGE, "memory/@used"));
+
+            source = new XmlSource();
+            source.setUrl("http://localhost/stats.xml");
+            source.addXmlGroup(interfaces);
+            source.addXmlGroup(system);
+
+            contents = generateDocument(resources, new Random(resources));
+        }
+
+        @TearDown
+        public void tearDown() {
+            System.clearProperty(StreamingXmlEvaluator.STREAMING_SYS_PROP);
+        }
+    }
+
+    private static XmlObject createObject(String name, AttributeType type, String xpath) {
+        final XmlObject object = new XmlObject(name, type);
+        object.setXpath(xpath);
+        return object;
+    }
+
+    static String generateDocument(int resources, Random random) {
+        final StringBuilder sb = new StringBuilder(resources * 400);
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<stats time=\"2024-01-02T03:04:05\">\n");
+        sb.append("  <system><cpu>").append(random.nextInt(100)).append("</cpu><memory used=\"")
+            .append(random.nextInt(1 << 20)).append("\" total=\"1048576\"/></system>\n");
+        sb.append("  <interfaces>\n");
+        for (int i = 0; i < resources; i++) {
+            sb.append("    <interface name=\"eth").append(i).append("\" speed=\"1000000000\" mtu=\"1500\">\n");
+            sb.append("      <description>Interface number ").append(i).append(" of the benchmark</description>\n");
+            sb.append("      <counters>\n");
+            sb.append("        <in>").append(random.nextLong() & Long.MAX_VALUE).append("</in>\n");
+            sb.append("        <out>").append(random.nextLong() & Long.MAX_VALUE).append("</out>\n");
+            sb.append("        <packets>").append(random.nextInt(Integer.MAX_VALUE)).append("</packets>\n");
+            sb.append("      </counters>\n");
+            sb.append("      <counter type=\"discards\" value=\"").append(random.nextInt(1000)).append("\"/>\n");
+            sb.append("      <counter type=\"errors\" value=\"").append(random.nextInt(1000)).append("\"/>\n");
+            sb.append("      <status>").append(random.nextBoolean() ? "up" : "down").append("</status>\n");
+            sb.append("    </interface>\n");
+        }
+        sb.append("  </interfaces>\n");
+        sb.append("</stats>\n");
+        return sb.toString();
+    }
+
+    @Benchmark
+    public Document parse(XmlState state) throws Exception {
+        return state.handler.parseXmlDocument(state.contents);
+    }
+
+    @Benchmark
+    public CollectionSet dom(XmlState state) throws Exception {
+        final CollectionSetBuilder builder = new CollectionSetBuilder(state.agent);
+        state.handler.fillCollectionSet(state.agent, builder, state.source, state.handler.parseXmlDocument(state.contents));
+        return builder.build();
+    }
+
+    @Benchmark
+    public CollectionSet streaming(XmlState state) throws Exception {
+        final CollectionSetBuilder builder = new CollectionSetBuilder(state.agent);
+        state.handler.fillCollectionSet(state.agent, builder, state.source, state.contents);
+        return builder.build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}